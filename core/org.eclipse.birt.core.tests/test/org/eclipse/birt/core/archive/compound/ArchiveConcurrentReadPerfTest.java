@@ -0,0 +1,124 @@
+package org.eclipse.birt.core.archive.compound;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Compare the throughput of reading one V2 archive from multiple threads,
+ * through the block caches and through the memory mapped file.
+ */
+public class ArchiveConcurrentReadPerfTest
+{
+
+	static final String ARCHIVE_FILE = "./utest/perf.rptdocument";
+
+	int STREAM_COUNT = 256;
+	int STREAM_SIZE = 4096 * 64;
+	int BUFFER_SIZE = 512;
+	int ROUND_COUNT = 20;
+
+	@Ignore("ignore performance test")
+	@Test
+	public void testConcurrentRead( ) throws Exception
+	{
+		new File( "./utest/" ).mkdirs( );
+		createArchive( );
+		try
+		{
+			int[] threadCounts = new int[]{1, 2, 4, 8, 16};
+			for ( int threadCount : threadCounts )
+			{
+				System.clearProperty( ArchiveConstants.PROPERTY_MEMORY_MAPPED_READ );
+				long cached = doConcurrentRead( threadCount );
+				System.setProperty( ArchiveConstants.PROPERTY_MEMORY_MAPPED_READ,
+						"true" );
+				long mapped = doConcurrentRead( threadCount );
+				System.out.println( "THREADS:" + threadCount + " CACHED READ:"
+						+ cached + " MAPPED READ:" + mapped );
+			}
+		}
+		finally
+		{
+			System.clearProperty( ArchiveConstants.PROPERTY_MEMORY_MAPPED_READ );
+			new File( ARCHIVE_FILE ).delete( );
+			new File( "./utest/" ).delete( );
+		}
+	}
+
+	void createArchive( ) throws IOException
+	{
+		ArchiveFileV2 archive = new ArchiveFileV2( ARCHIVE_FILE, "rw" );
+		byte[] buffer = new byte[STREAM_SIZE];
+		for ( int i = 0; i < STREAM_COUNT; i++ )
+		{
+			ArchiveEntry entry = archive.createEntry( "/stream/" + i );
+			entry.write( 0, buffer, 0, buffer.length );
+			entry.close( );
+		}
+		archive.close( );
+	}
+
+	/**
+	 * every thread reads all the streams round by round.
+	 *
+	 * @return the consumed time in ms
+	 */
+	long doConcurrentRead( int threadCount ) throws Exception
+	{
+		final ArchiveFileV2 archive = new ArchiveFileV2( ARCHIVE_FILE, "r" );
+		archive.setCacheSize( 16 * 1024 * 1024 );
+		ExecutorService executor = Executors.newFixedThreadPool( threadCount );
+		try
+		{
+			long start = System.currentTimeMillis( );
+			List<Future<Object>> results = new ArrayList<Future<Object>>( );
+			for ( int t = 0; t < threadCount; t++ )
+			{
+				results.add( executor.submit( new Callable<Object>( ) {
+
+					public Object call( ) throws Exception
+					{
+						byte[] buffer = new byte[BUFFER_SIZE];
+						for ( int round = 0; round < ROUND_COUNT; round++ )
+						{
+							for ( int i = 0; i < STREAM_COUNT; i++ )
+							{
+								ArchiveEntry entry = archive.openEntry( "/stream/"
+										+ i );
+								long offset = 0;
+								while ( offset < STREAM_SIZE )
+								{
+									offset += entry.read( offset,
+											buffer,
+											0,
+											BUFFER_SIZE );
+								}
+								entry.close( );
+							}
+						}
+						return null;
+					}
+				} ) );
+			}
+			for ( Future<Object> result : results )
+			{
+				result.get( );
+			}
+			return System.currentTimeMillis( ) - start;
+		}
+		finally
+		{
+			executor.shutdown( );
+			archive.close( );
+		}
+	}
+}
@@ -0,0 +1,203 @@
+package org.eclipse.birt.core.archive.compound;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the read only access of ArchiveFileV2 from multiple threads, through
+ * the striped block caches and through the memory mapped file.
+ */
+public class ArchiveFileV2ReadTest
+{
+
+	static final String ARCHIVE_FOLDER = "./utest/";
+	static final String ARCHIVE_FILE = ARCHIVE_FOLDER + "v2archive.rptdocument";
+
+	static final int ENTRY_COUNT = 32;
+	static final int ENTRY_SIZE = 4096 * 5 + 123;
+	static final int THREAD_COUNT = 8;
+
+	@Before
+	public void setUp( ) throws IOException
+	{
+		new File( ARCHIVE_FOLDER ).mkdirs( );
+		ArchiveFileV2 archive = new ArchiveFileV2( ARCHIVE_FILE, "rw" );
+		for ( int i = 0; i < ENTRY_COUNT; i++ )
+		{
+			ArchiveEntry entry = archive.createEntry( "/entry/" + i );
+			byte[] data = new byte[ENTRY_SIZE];
+			for ( int j = 0; j < ENTRY_SIZE; j++ )
+			{
+				data[j] = getByte( i, j );
+			}
+			entry.write( 0, data, 0, data.length );
+			entry.close( );
+		}
+		archive.close( );
+	}
+
+	@After
+	public void tearDown( )
+	{
+		System.getProperties( ).remove(
+				ArchiveConstants.PROPERTY_MEMORY_MAPPED_READ );
+		new File( ARCHIVE_FILE ).delete( );
+		new File( ARCHIVE_FOLDER ).delete( );
+	}
+
+	@Test
+	public void testCachedRead( ) throws Exception
+	{
+		ArchiveFileV2 archive = new ArchiveFileV2( ARCHIVE_FILE, "r" );
+		assertFalse( archive.isMemoryMapped( ) );
+		archive.setCacheSize( 64 * 1024 );
+		checkConcurrentRead( archive );
+		assertTrue( archive.getUsedCache( ) > 0 );
+		assertTrue( archive.getUsedCache( ) <= 64 * 1024 + 16 * 4096 );
+		archive.close( );
+		assertEquals( 0, archive.getUsedCache( ) );
+	}
+
+	@Test
+	public void testMemoryMappedRead( ) throws Exception
+	{
+		System.setProperty( ArchiveConstants.PROPERTY_MEMORY_MAPPED_READ,
+				"true" );
+		ArchiveFileV2 archive = new ArchiveFileV2( ARCHIVE_FILE, "r" );
+		assertTrue( archive.isMemoryMapped( ) );
+		checkConcurrentRead( archive );
+		archive.close( );
+	}
+
+	@Test
+	public void testReadSharedEntry( ) throws Exception
+	{
+		ArchiveFileV2 archive = new ArchiveFileV2( ARCHIVE_FILE, "r" );
+		final ArchiveEntry entry = archive.openEntry( "/entry/1" );
+		ExecutorService executor = Executors.newFixedThreadPool( THREAD_COUNT );
+		try
+		{
+			List<Future<Object>> results = new ArrayList<Future<Object>>( );
+			for ( int t = 0; t < THREAD_COUNT; t++ )
+			{
+				results.add( executor.submit( new Callable<Object>( ) {
+
+					public Object call( ) throws Exception
+					{
+						checkEntry( entry, 1 );
+						return null;
+					}
+				} ) );
+			}
+			for ( Future<Object> result : results )
+			{
+				result.get( );
+			}
+		}
+		finally
+		{
+			executor.shutdown( );
+			entry.close( );
+		}
+		archive.close( );
+	}
+
+	@Test
+	public void testReadAfterInterrupt( ) throws Exception
+	{
+		ArchiveFileV2 archive = new ArchiveFileV2( ARCHIVE_FILE, "r" );
+		// the interrupted read closes the channel shared by the readers
+		Thread.currentThread( ).interrupt( );
+		try
+		{
+			checkEntry( archive, 0 );
+		}
+		finally
+		{
+			assertTrue( Thread.interrupted( ) );
+		}
+		checkConcurrentRead( archive );
+		archive.close( );
+	}
+
+	private void checkConcurrentRead( final ArchiveFileV2 archive )
+			throws Exception
+	{
+		ExecutorService executor = Executors.newFixedThreadPool( THREAD_COUNT );
+		try
+		{
+			List<Future<Object>> results = new ArrayList<Future<Object>>( );
+			for ( int t = 0; t < THREAD_COUNT; t++ )
+			{
+				final int offset = t;
+				results.add( executor.submit( new Callable<Object>( ) {
+
+					public Object call( ) throws Exception
+					{
+						for ( int i = 0; i < ENTRY_COUNT; i++ )
+						{
+							checkEntry( archive, ( i + offset ) % ENTRY_COUNT );
+						}
+						return null;
+					}
+				} ) );
+			}
+			for ( Future<Object> result : results )
+			{
+				result.get( );
+			}
+		}
+		finally
+		{
+			executor.shutdown( );
+		}
+	}
+
+	private void checkEntry( ArchiveFileV2 archive, int index )
+			throws IOException
+	{
+		ArchiveEntry entry = archive.openEntry( "/entry/" + index );
+		try
+		{
+			checkEntry( entry, index );
+		}
+		finally
+		{
+			entry.close( );
+		}
+	}
+
+	private void checkEntry( ArchiveEntry entry, int index )
+			throws IOException
+	{
+		assertEquals( ENTRY_SIZE, entry.getLength( ) );
+		byte[] buffer = new byte[1000];
+		long pos = 0;
+		while ( pos < ENTRY_SIZE )
+		{
+			int size = entry.read( pos, buffer, 0, buffer.length );
+			for ( int j = 0; j < size; j++ )
+			{
+				assertEquals( getByte( index, (int) pos + j ), buffer[j] );
+			}
+			pos += size;
+		}
+		assertEquals( -1, entry.read( pos, buffer, 0, buffer.length ) );
+	}
+
+	private static byte getByte( int entry, int pos )
+	{
+		return (byte) ( entry * 31 + pos );
+	}
+}
@@ -0,0 +1,251 @@
+package org.eclipse.birt.core.archive.compound;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.eclipse.birt.core.archive.compound.v3.Ext2Constants;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the entries compressed by the block codecs of the V3 archive.
+ */
+public class ArchiveFileV3CompressionTest
+{
+
+	static final String ARCHIVE_FOLDER = "./utest/";
+	static final String ARCHIVE_FILE = ARCHIVE_FOLDER + "v3archive.rptdocument";
+
+	static final int ENTRY_SIZE = 32768 * 4 + 1234;
+
+	@Before
+	public void setUp( )
+	{
+		new File( ARCHIVE_FOLDER ).mkdirs( );
+	}
+
+	@After
+	public void tearDown( )
+	{
+		System.getProperties( ).remove(
+				ArchiveConstants.PROPERTY_BLOCK_COMPRESSION );
+		new File( ARCHIVE_FILE ).delete( );
+		new File( ARCHIVE_FOLDER ).delete( );
+	}
+
+	@Test
+	public void testLZ4( ) throws IOException
+	{
+		checkCodec( Ext2Constants.CODEC_LZ4 );
+	}
+
+	@Test
+	public void testDeflate( ) throws IOException
+	{
+		checkCodec( Ext2Constants.CODEC_DEFLATE );
+	}
+
+	@Test
+	public void testCompressionProperty( ) throws IOException
+	{
+		System.setProperty( ArchiveConstants.PROPERTY_BLOCK_COMPRESSION,
+				"lz4" );
+		ArchiveFileV3 archive = new ArchiveFileV3( ARCHIVE_FILE, "rw" );
+		assertEquals( Ext2Constants.CODEC_LZ4, archive.getCodec( ) );
+		archive.close( );
+
+		ArchiveFileV3 transientArchive = new ArchiveFileV3( ARCHIVE_FILE,
+				"rwt" );
+		assertEquals( Ext2Constants.CODEC_NONE, transientArchive.getCodec( ) );
+		transientArchive.close( );
+	}
+
+	@Test
+	public void testRandomWrite( ) throws IOException
+	{
+		byte[] expected = new byte[ENTRY_SIZE];
+		ArchiveFileV3 archive = new ArchiveFileV3( ARCHIVE_FILE, "rw" );
+		ArchiveEntry entry = archive.createEntry( "/random",
+				Ext2Constants.CODEC_LZ4 );
+		Random random = new Random( 0 );
+		for ( int i = 0; i < 200; i++ )
+		{
+			int pos = random.nextInt( ENTRY_SIZE - 5000 );
+			byte[] data = createData( i, random.nextInt( 5000 ) );
+			entry.write( pos, data, 0, data.length );
+			System.arraycopy( data, 0, expected, pos, data.length );
+		}
+		// the tail of the entry
+		entry.write( ENTRY_SIZE - 1, new byte[]{1}, 0, 1 );
+		expected[ENTRY_SIZE - 1] = 1;
+		entry.close( );
+		archive.close( );
+
+		archive = new ArchiveFileV3( ARCHIVE_FILE, "r" );
+		entry = archive.openEntry( "/random" );
+		checkData( entry, expected );
+		entry.close( );
+		archive.close( );
+	}
+
+	@Test
+	public void testReadWhileWriting( ) throws IOException
+	{
+		ArchiveFileV3 archive = new ArchiveFileV3( ARCHIVE_FILE, "rw" );
+		ArchiveEntry writer = archive.createEntry( "/entry",
+				Ext2Constants.CODEC_LZ4 );
+		ArchiveEntry reader = archive.openEntry( "/entry" );
+		byte[] data = createData( 0, ENTRY_SIZE );
+		byte[] buffer = new byte[1000];
+		for ( int pos = 0; pos < ENTRY_SIZE; pos += buffer.length )
+		{
+			int size = Math.min( buffer.length, ENTRY_SIZE - pos );
+			writer.write( pos, data, pos, size );
+			assertEquals( size, reader.read( pos, buffer, 0, size ) );
+			for ( int i = 0; i < size; i++ )
+			{
+				assertEquals( data[pos + i], buffer[i] );
+			}
+		}
+		writer.close( );
+		checkData( reader, data );
+		reader.close( );
+		archive.close( );
+	}
+
+	@Test
+	public void testTruncate( ) throws IOException
+	{
+		ArchiveFileV3 archive = new ArchiveFileV3( ARCHIVE_FILE, "rw" );
+		ArchiveEntry entry = archive.createEntry( "/entry",
+				Ext2Constants.CODEC_DEFLATE );
+		byte[] data = createData( 0, ENTRY_SIZE );
+		entry.write( 0, data, 0, data.length );
+		entry.setLength( 40000 );
+		entry.setLength( 50000 );
+		entry.close( );
+		archive.close( );
+
+		byte[] expected = new byte[50000];
+		System.arraycopy( data, 0, expected, 0, 40000 );
+		archive = new ArchiveFileV3( ARCHIVE_FILE, "rw+" );
+		entry = archive.openEntry( "/entry" );
+		checkData( entry, expected );
+
+		// recreate the entry without compression
+		entry.close( );
+		entry = archive.createEntry( "/entry" );
+		assertEquals( 0, entry.getLength( ) );
+		entry.write( 0, data, 0, data.length );
+		entry.close( );
+		entry = archive.openEntry( "/entry" );
+		checkData( entry, data );
+		entry.close( );
+		archive.close( );
+	}
+
+	@Test
+	public void testCompressedSize( ) throws IOException
+	{
+		ArchiveFileV3 archive = new ArchiveFileV3( ARCHIVE_FILE, "rw" );
+		byte[] data = createData( 0, 1024 * 1024 );
+		ArchiveEntry entry = archive.createEntry( "/entry",
+				Ext2Constants.CODEC_LZ4 );
+		entry.write( 0, data, 0, data.length );
+		entry.close( );
+		archive.close( );
+		assertTrue( new File( ARCHIVE_FILE ).length( ) < data.length / 2 );
+	}
+
+	private void checkCodec( int codec ) throws IOException
+	{
+		ArchiveFileV3 archive = new ArchiveFileV3( ARCHIVE_FILE, "rw" );
+		byte[] text = createData( 1, ENTRY_SIZE );
+		byte[] noise = new byte[ENTRY_SIZE];
+		new Random( 1 ).nextBytes( noise );
+		writeEntry( archive.createEntry( "/text", codec ), text );
+		writeEntry( archive.createEntry( "/noise", codec ), noise );
+		writeEntry( archive.createEntry( "/empty", codec ), new byte[0] );
+		archive.close( );
+
+		archive = new ArchiveFileV3( ARCHIVE_FILE, "r" );
+		ArchiveEntry entry = archive.openEntry( "/text" );
+		checkData( entry, text );
+		// read from random positions
+		Random random = new Random( 2 );
+		byte[] buffer = new byte[100];
+		for ( int i = 0; i < 100; i++ )
+		{
+			int pos = random.nextInt( ENTRY_SIZE - buffer.length );
+			assertEquals( buffer.length, entry.read( pos, buffer, 0,
+					buffer.length ) );
+			for ( int j = 0; j < buffer.length; j++ )
+			{
+				assertEquals( text[pos + j], buffer[j] );
+			}
+		}
+		entry.close( );
+		entry = archive.openEntry( "/noise" );
+		checkData( entry, noise );
+		entry.close( );
+		entry = archive.openEntry( "/empty" );
+		assertEquals( 0, entry.getLength( ) );
+		assertEquals( -1, entry.read( 0, buffer, 0, buffer.length ) );
+		entry.close( );
+		archive.close( );
+	}
+
+	private void writeEntry( ArchiveEntry entry, byte[] data )
+			throws IOException
+	{
+		int pos = 0;
+		while ( pos < data.length )
+		{
+			int size = Math.min( 3000, data.length - pos );
+			entry.write( pos, data, pos, size );
+			pos += size;
+		}
+		entry.close( );
+	}
+
+	private void checkData( ArchiveEntry entry, byte[] expected )
+			throws IOException
+	{
+		assertEquals( expected.length, entry.getLength( ) );
+		byte[] buffer = new byte[4000];
+		long pos = 0;
+		while ( pos < expected.length )
+		{
+			int size = entry.read( pos, buffer, 0, buffer.length );
+			for ( int i = 0; i < size; i++ )
+			{
+				assertEquals( expected[(int) pos + i], buffer[i] );
+			}
+			pos += size;
+		}
+		assertEquals( -1, entry.read( pos, buffer, 0, buffer.length ) );
+	}
+
+	/**
+	 * create the repetitive data like the content streams
+	 */
+	private static byte[] createData( int seed, int size )
+	{
+		StringBuilder sb = new StringBuilder( );
+		int row = seed;
+		while ( sb.length( ) < size )
+		{
+			sb.append( "<row id=\"" ).append( row++ ).append(
+					"\"><cell>value</cell></row>" );
+		}
+		byte[] data = new byte[size];
+		for ( int i = 0; i < size; i++ )
+		{
+			data[i] = (byte) sb.charAt( i );
+		}
+		return data;
+	}
+}
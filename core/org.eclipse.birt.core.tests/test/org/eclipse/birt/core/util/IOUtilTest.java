@@ -95,6 +95,33 @@ public class IOUtilTest
 		}
 	}
 
+	/*
+	 * Test method for 'org.eclipse.birt.core.util.IOUtil.readVarLong(InputStream)'
+	 */
+	@Test
+    public void testRWVarLong( ) throws IOException
+	{
+		long[] testValues = new long[]{
+				0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE,
+				Long.MAX_VALUE, -1, Long.MIN_VALUE
+		};
+		int[] testSizes = new int[]{
+				1, 1, 1, 2, 2, 3, 5, 9, 10, 10
+		};
+
+		for ( int i = 0; i < testValues.length; i++ )
+		{
+			ByteArrayOutputStream bos = new ByteArrayOutputStream( );
+			IOUtil.writeVarLong( bos, testValues[i] );
+			byte[] content = bos.toByteArray( );
+			assertEquals( testSizes[i], content.length );
+
+			ByteArrayInputStream bis = new ByteArrayInputStream( content );
+			assertEquals( testValues[i], IOUtil.readVarLong( bis ) );
+			assertEquals( -1, bis.read( ) );
+		}
+	}
+
 	/*
 	 * Test method for 'org.eclipse.birt.core.util.IOUtil.readBool(InputStream)'
 	 */
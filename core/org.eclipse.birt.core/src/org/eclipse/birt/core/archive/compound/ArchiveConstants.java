@@ -28,6 +28,19 @@ interface ArchiveConstants
 	 * the system property defines the block size, it should be times of 1024.
 	 */
 	static final String PROPERTY_DEFAULT_BLOCK_SIZE = "org.eclipse.birt.core.archive.compound.DEFAULT_BLOCK_SIZE";
+
+	/**
+	 * the system property defines if the archive file opened for read only is
+	 * memory mapped, the value is "true" or "false".
+	 */
+	static final String PROPERTY_MEMORY_MAPPED_READ = "org.eclipse.birt.core.archive.compound.MEMORY_MAPPED_READ";
+
+	/**
+	 * the system property defines the codec used to compress the entries
+	 * created in the V3 archive file, the value is "lz4", "deflate" or "none".
+	 * The entries of the transient archive are never compressed.
+	 */
+	static final String PROPERTY_BLOCK_COMPRESSION = "org.eclipse.birt.core.archive.compound.BLOCK_COMPRESSION";
 	
 	/**
 	 * Size of a physical block, counted in bytes.
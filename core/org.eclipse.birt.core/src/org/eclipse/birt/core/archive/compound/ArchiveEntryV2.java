@@ -73,7 +73,22 @@ class ArchiveEntryV2 extends ArchiveEntry implements ArchiveConstants
 		// TODO: support refresh in future.
 	}
 
-	public synchronized int read( long pos, byte[] b, int off, int len )
+	public int read( long pos, byte[] b, int off, int len )
+			throws IOException
+	{
+		if ( af.isReadOnly( ) )
+		{
+			// the entry is not changed once the archive is opened for read
+			// only, so the readers share it without lock
+			return readBlocks( pos, b, off, len );
+		}
+		synchronized ( this )
+		{
+			return readBlocks( pos, b, off, len );
+		}
+	}
+
+	private int readBlocks( long pos, byte[] b, int off, int len )
 			throws IOException
 	{
 		long length = entry.getLength( );
@@ -101,16 +116,14 @@ class ArchiveEntryV2 extends ArchiveEntry implements ArchiveConstants
 		{
 			readSize = len;
 		}
-		Block block = loadBlock( blockId );
-		block.read( blockOff, b, off, readSize );
+		readBlock( blockId, blockOff, b, off, readSize );
 		int remainSize = len - readSize;
 
 		// read blocks
 		while ( remainSize >= BLOCK_SIZE )
 		{
 			blockId++;
-			block = loadBlock( blockId );
-			block.read( 0, b, off + readSize, BLOCK_SIZE );
+			readBlock( blockId, 0, b, off + readSize, BLOCK_SIZE );
 			readSize += BLOCK_SIZE;
 			remainSize -= BLOCK_SIZE;
 		}
@@ -119,14 +132,76 @@ class ArchiveEntryV2 extends ArchiveEntry implements ArchiveConstants
 		if ( remainSize > 0 )
 		{
 			blockId++;
-			block = loadBlock( blockId );
-			block.read( 0, b, off + readSize, remainSize );
+			readBlock( blockId, 0, b, off + readSize, remainSize );
 			readSize += remainSize;
 		}
 
 		return readSize;
 	}
 
+	/**
+	 * read the data in a block. The block is read from the file directly if
+	 * the file is memory mapped, otherwise it is loaded through the cache.
+	 */
+	private void readBlock( int blockId, int blockOff, byte[] b, int off,
+			int len ) throws IOException
+	{
+		if ( af.isMemoryMapped( ) )
+		{
+			af.read( getFileBlock( blockId ), blockOff, b, off, len );
+			return;
+		}
+		if ( af.isReadOnly( ) )
+		{
+			Block block = loadSharedBlock( blockId );
+			block.read( blockOff, b, off, len );
+			return;
+		}
+		Block block = loadBlock( blockId );
+		block.read( blockOff, b, off, len );
+	}
+
+	/**
+	 * load the block of a read only archive. Only the switch of the cached
+	 * block is locked, the block is loaded and read without lock. The data of
+	 * a read only block never changes, so a block released by another reader
+	 * can still be read.
+	 */
+	private Block loadSharedBlock( int blockId ) throws IOException
+	{
+		synchronized ( this )
+		{
+			if ( cachedBlockId == blockId )
+			{
+				return cachedBlock;
+			}
+		}
+		Block block = af.loadBlock( getFileBlock( blockId ) );
+		Block oldBlock;
+		synchronized ( this )
+		{
+			oldBlock = cachedBlock;
+			cachedBlockId = blockId;
+			cachedBlock = block;
+		}
+		if ( oldBlock != null )
+		{
+			af.unloadBlock( oldBlock );
+		}
+		return block;
+	}
+
+	private int getFileBlock( int blockId ) throws IOException
+	{
+		int fileBlockId = index.getBlock( blockId );
+		if ( fileBlockId != -1 )
+		{
+			return fileBlockId;
+		}
+		throw new IOException( CoreMessages.getFormattedString(
+				ResourceConstants.INVALID_INDEX, new Object[]{blockId} ) );
+	}
+
 	public synchronized void write( long pos, byte[] b, int off, int len )
 			throws IOException
 	{
@@ -207,14 +282,8 @@ class ArchiveEntryV2 extends ArchiveEntry implements ArchiveConstants
 		}
 
 		cachedBlockId = blockId;
-		int fileBlockId = index.getBlock( blockId );
-		if ( fileBlockId != -1 )
-		{
-			cachedBlock = af.loadBlock( fileBlockId );
-			return cachedBlock;
-		}
-		throw new IOException( CoreMessages.getFormattedString(
-				ResourceConstants.INVALID_INDEX, new Object[]{blockId} ) );
+		cachedBlock = af.loadBlock( getFileBlock( blockId ) );
+		return cachedBlock;
 	}
 
 }
@@ -40,6 +40,13 @@ public class ArchiveEntryV3 extends ArchiveEntry
 		file.close( );
 	}
 
+	@Override
+	public void flush( ) throws IOException
+	{
+		super.flush( );
+		file.flush( );
+	}
+
 	@Override
 	public int read( long pos, byte[] b, int off, int len ) throws IOException
 	{
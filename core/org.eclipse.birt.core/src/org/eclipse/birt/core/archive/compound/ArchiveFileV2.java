@@ -15,6 +15,9 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.ArrayList;
@@ -37,8 +40,11 @@ import org.eclipse.birt.core.i18n.ResourceConstants;
 public class ArchiveFileV2 implements IArchiveFile, ArchiveConstants
 {
 
-	/** the physical file correspond to this compound file system */
-	protected RandomAccessFile rf;
+	/**
+	 * the physical file correspond to this compound file system. It is
+	 * reopened if the channel is closed by an interrupted reader.
+	 */
+	protected volatile RandomAccessFile rf;
 
 	/**
 	 * if the file is closed.
@@ -91,6 +97,30 @@ public class ArchiveFileV2 implements IArchiveFile, ArchiveConstants
 	 */
 	protected FileCacheManager caches;
 
+	/**
+	 * the block caches of the archive file opened for read only. The blocks
+	 * are distributed to the caches by block id, so that the threads reading
+	 * different blocks don't contend on the same lock.
+	 */
+	protected FileCacheManager[] readCaches;
+
+	/**
+	 * the number of read caches, it must be power of 2.
+	 */
+	protected static final int READ_CACHE_STRIPES = 16;
+
+	/**
+	 * the memory mapped segments of the archive file opened for read only,
+	 * null if the file is not memory mapped. It is read without lock, the
+	 * segment size is set before the segments are published.
+	 */
+	protected volatile ByteBuffer[] mappedSegments;
+
+	/**
+	 * the size of a mapped segment, which is times of block size.
+	 */
+	protected int mappedSegmentSize;
+
 	/**
 	 * the total blocks exits in this file
 	 */
@@ -254,17 +284,30 @@ public class ArchiveFileV2 implements IArchiveFile, ArchiveConstants
 		long cacheBlocks = ( cacheSize + BLOCK_SIZE - 1 ) / BLOCK_SIZE;
 		if ( cacheBlocks > Integer.MAX_VALUE )
 		{
-			caches.setMaxCacheSize( Integer.MAX_VALUE );
+			cacheBlocks = Integer.MAX_VALUE;
 		}
-		else
+		if ( readCaches != null )
 		{
-			caches.setMaxCacheSize( (int) cacheBlocks );
+			int stripeBlocks = (int) ( ( cacheBlocks + READ_CACHE_STRIPES - 1 ) / READ_CACHE_STRIPES );
+			for ( FileCacheManager readCache : readCaches )
+			{
+				readCache.setMaxCacheSize( stripeBlocks );
+			}
 		}
+		caches.setMaxCacheSize( (int) cacheBlocks );
 	}
 
 	public long getUsedCache( )
 	{
-		return (long) caches.getUsedCacheSize( ) * BLOCK_SIZE;
+		long usedBlocks = caches.getUsedCacheSize( );
+		if ( readCaches != null )
+		{
+			for ( FileCacheManager readCache : readCaches )
+			{
+				usedBlocks += readCache.getUsedCacheSize( );
+			}
+		}
+		return usedBlocks * BLOCK_SIZE;
 	}
 
 	public String getDependId( )
@@ -315,6 +358,10 @@ public class ArchiveFileV2 implements IArchiveFile, ArchiveConstants
 			BLOCK_SIZE = head.blockSize;
 			totalBlocks = (int) ( ( rf.length( ) + BLOCK_SIZE - 1 ) / BLOCK_SIZE );
 			totalDiskBlocks = totalBlocks;
+			if ( !isWritable )
+			{
+				setupReadAccess( );
+			}
 			allocTbl = AllocTable.loadTable( this );
 			entryTbl = NameTable.loadTable( this );
 			entries = new HashMap<String, NameEntry>( );
@@ -334,6 +381,83 @@ public class ArchiveFileV2 implements IArchiveFile, ArchiveConstants
 		}
 	}
 
+	/**
+	 * setup the lock striped block caches and the memory mapped segments of
+	 * the archive file opened for read only.
+	 * 
+	 * @throws IOException
+	 */
+	private void setupReadAccess( ) throws IOException
+	{
+		readCaches = new FileCacheManager[READ_CACHE_STRIPES];
+		for ( int i = 0; i < READ_CACHE_STRIPES; i++ )
+		{
+			readCaches[i] = new FileCacheManager( );
+			readCaches[i].setCacheListener( new ArchiveFileV2CacheListener( ) );
+		}
+		if ( isMemoryMappedRead( ) )
+		{
+			mapSegments( );
+		}
+	}
+
+	/**
+	 * map the whole file into memory. The file is mapped into segments as a
+	 * mapped buffer can't exceed 2G bytes.
+	 * 
+	 * @throws IOException
+	 */
+	private void mapSegments( ) throws IOException
+	{
+		FileChannel channel = rf.getChannel( );
+		long fileLength = channel.size( );
+		mappedSegmentSize = ( 1 << 30 ) / BLOCK_SIZE * BLOCK_SIZE;
+		int segmentCount = (int) ( ( fileLength + mappedSegmentSize - 1 ) / mappedSegmentSize );
+		ByteBuffer[] segments = new ByteBuffer[segmentCount];
+		for ( int i = 0; i < segmentCount; i++ )
+		{
+			long start = (long) i * mappedSegmentSize;
+			long size = Math.min( mappedSegmentSize, fileLength - start );
+			segments[i] = channel.map( FileChannel.MapMode.READ_ONLY,
+					start,
+					size );
+		}
+		mappedSegments = segments;
+	}
+
+	/**
+	 * @return true if the archive file is read through memory mapped segments,
+	 *         then the blocks are read from the segments directly without
+	 *         cache.
+	 */
+	boolean isMemoryMapped( )
+	{
+		return mappedSegments != null;
+	}
+
+	/**
+	 * @return true if the archive file is opened for read only, then the
+	 *         blocks are shared through the read caches and the entries can be
+	 *         read in parallel.
+	 */
+	boolean isReadOnly( )
+	{
+		return readCaches != null;
+	}
+
+	private boolean isMemoryMappedRead( )
+	{
+		String value = (String) AccessController
+				.doPrivileged( new PrivilegedAction<Object>( ) {
+
+					public Object run( )
+					{
+						return System.getProperty( PROPERTY_MEMORY_MAPPED_READ );
+					}
+				} );
+		return "true".equalsIgnoreCase( value );
+	}
+
 	/**
 	 * create the document
 	 * 
@@ -416,6 +540,14 @@ public class ArchiveFileV2 implements IArchiveFile, ArchiveConstants
 		{
 			caches.clear( );
 		}
+		if ( readCaches != null )
+		{
+			for ( FileCacheManager readCache : readCaches )
+			{
+				readCache.clear( );
+			}
+		}
+		mappedSegments = null;
 		isClosed = true;
 	}
 
@@ -451,6 +583,11 @@ public class ArchiveFileV2 implements IArchiveFile, ArchiveConstants
 		{
 			totalBlocks = (int) ( ( rf.length( ) + BLOCK_SIZE - 1 ) / BLOCK_SIZE );
 			totalDiskBlocks = totalBlocks;
+			if ( mappedSegments != null )
+			{
+				// the file may be appended by the writer
+				mapSegments( );
+			}
 			head.refresh( this );
 			allocTbl.refresh( );
 			entryTbl.refresh( );
@@ -615,8 +752,111 @@ public class ArchiveFileV2 implements IArchiveFile, ArchiveConstants
 	 *            read length
 	 * @throws IOException
 	 */
-	synchronized int read( int blockId, int blockOff, byte[] b, int off, int len )
+	int read( int blockId, int blockOff, byte[] b, int off, int len )
+			throws IOException
+	{
+		ByteBuffer[] segments = mappedSegments;
+		if ( segments != null )
+		{
+			return readMappedSegments( segments, blockId, blockOff, b, off, len );
+		}
+		if ( readCaches != null )
+		{
+			return readChannel( blockId, blockOff, b, off, len );
+		}
+		return readFile( blockId, blockOff, b, off, len );
+	}
+
+	/**
+	 * read the data of the archive file opened for read only. It doesn't need
+	 * lock as the channel reads from the position without moving the file
+	 * pointer, so the blocks missed by the read caches are read in parallel.
+	 * 
+	 * The channel is closed for all the readers once a reader is interrupted
+	 * in the read, for example when the tasks are cancelled. The file is
+	 * reopened for the other readers and the data is read with the file lock.
+	 */
+	private int readChannel( int blockId, int blockOff, byte[] b, int off,
+			int len ) throws IOException
+	{
+		assertOpen( );
+		RandomAccessFile file = rf;
+		long pos = (long) blockId * BLOCK_SIZE + blockOff;
+		ByteBuffer buffer = ByteBuffer.wrap( b, off, len );
+		int readSize = 0;
+		try
+		{
+			FileChannel channel = file.getChannel( );
+			while ( buffer.hasRemaining( ) )
+			{
+				int size = channel.read( buffer, pos + readSize );
+				if ( size < 0 )
+				{
+					break;
+				}
+				readSize += size;
+			}
+			return readSize;
+		}
+		catch ( ClosedChannelException ex )
+		{
+			reopenFile( file );
+			return readFile( blockId, blockOff, b, off, len );
+		}
+	}
+
+	/**
+	 * reopen the archive file whose channel has been closed by an interrupted
+	 * reader.
+	 * 
+	 * @param file
+	 *            the file used by the failed read
+	 * @throws IOException
+	 */
+	synchronized private void reopenFile( RandomAccessFile file )
 			throws IOException
+	{
+		assertOpen( );
+		if ( rf == file && !file.getChannel( ).isOpen( ) )
+		{
+			rf = new RandomAccessFile( archiveName, "r" );
+		}
+	}
+
+	/**
+	 * read the data from the memory mapped segments. It doesn't need lock as
+	 * every read uses its own view of the segment.
+	 */
+	private int readMappedSegments( ByteBuffer[] segments, int blockId,
+			int blockOff, byte[] b, int off, int len ) throws IOException
+	{
+		assertOpen( );
+		long pos = (long) blockId * BLOCK_SIZE + blockOff;
+		int readSize = 0;
+		while ( readSize < len )
+		{
+			int segmentId = (int) ( pos / mappedSegmentSize );
+			if ( segmentId >= segments.length )
+			{
+				break;
+			}
+			ByteBuffer segment = segments[segmentId].duplicate( );
+			int segmentOff = (int) ( pos % mappedSegmentSize );
+			if ( segmentOff >= segment.limit( ) )
+			{
+				break;
+			}
+			segment.position( segmentOff );
+			int size = Math.min( len - readSize, segment.remaining( ) );
+			segment.get( b, off + readSize, size );
+			readSize += size;
+			pos += size;
+		}
+		return readSize;
+	}
+
+	synchronized private int readFile( int blockId, int blockOff, byte[] b,
+			int off, int len ) throws IOException
 	{
 		assertOpen( );
 		long pos = (long) blockId * BLOCK_SIZE + blockOff;
@@ -670,24 +910,76 @@ public class ArchiveFileV2 implements IArchiveFile, ArchiveConstants
 		return block;
 	}
 
-	synchronized protected void unloadBlock( Block block ) throws IOException
+	protected void unloadBlock( Block block ) throws IOException
+	{
+		if ( readCaches != null )
+		{
+			getReadCache( block.id ).releaseCache( block );
+			return;
+		}
+		synchronized ( this )
+		{
+			caches.releaseCache( block );
+		}
+	}
+
+	Block loadBlock( int blockId ) throws IOException
 	{
-		caches.releaseCache( block );
+		if ( readCaches != null )
+		{
+			return loadReadOnlyBlock( blockId );
+		}
+		synchronized ( this )
+		{
+			Object cacheKey = Integer.valueOf( blockId );
+			Block block = (Block) caches.getCache( cacheKey );
+			if ( block == null )
+			{
+				block = new Block( this, blockId, BLOCK_SIZE );
+				block.refresh( );
+				caches.addCache( block );
+			}
+			return block;
+		}
 	}
 
-	synchronized Block loadBlock( int blockId ) throws IOException
+	/**
+	 * load the block through the read cache it belongs to. The block data is
+	 * read without holding the cache lock, if two threads load the same block
+	 * at the same time, the block added first is shared.
+	 * 
+	 * @param blockId
+	 * @return
+	 * @throws IOException
+	 */
+	private Block loadReadOnlyBlock( int blockId ) throws IOException
 	{
+		FileCacheManager readCache = getReadCache( blockId );
 		Object cacheKey = Integer.valueOf( blockId );
-		Block block = (Block) caches.getCache( cacheKey );
-		if ( block == null )
+		Block block = (Block) readCache.getCache( cacheKey );
+		if ( block != null )
 		{
-			block = new Block( this, blockId, BLOCK_SIZE );
-			block.refresh( );
-			caches.addCache( block );
+			return block;
+		}
+		block = new Block( this, readCache, blockId, BLOCK_SIZE );
+		block.refresh( );
+		synchronized ( readCache )
+		{
+			Block cachedBlock = (Block) readCache.getCache( cacheKey );
+			if ( cachedBlock != null )
+			{
+				return cachedBlock;
+			}
+			readCache.addCache( block );
 		}
 		return block;
 	}
 
+	private FileCacheManager getReadCache( int blockId )
+	{
+		return readCaches[blockId & ( READ_CACHE_STRIPES - 1 )];
+	}
+
 	private void ensureFileCreated( ) throws IOException
 	{
 		if ( rf != null )
@@ -14,10 +14,13 @@ package org.eclipse.birt.core.archive.compound;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 
+import org.eclipse.birt.core.archive.compound.v3.Ext2Constants;
 import org.eclipse.birt.core.archive.compound.v3.Ext2Entry;
 import org.eclipse.birt.core.archive.compound.v3.Ext2File;
 import org.eclipse.birt.core.archive.compound.v3.Ext2FileSystem;
@@ -30,6 +33,10 @@ public class ArchiveFileV3 implements IArchiveFile
 
 	protected Ext2FileSystem fs;
 	protected HashSet<ArchiveEntryV3> openedEntries = new HashSet<ArchiveEntryV3>( );
+	/**
+	 * the codec used to compress the created entries
+	 */
+	protected int codec = Ext2Constants.CODEC_NONE;
 
 	public ArchiveFileV3( String fileName, String mode ) throws IOException
 
@@ -46,6 +53,47 @@ public class ArchiveFileV3 implements IArchiveFile
 		{
 			fs.setCacheSize( ArchiveFile.FILE_CACHE_SIZE );
 		}
+		if ( !fs.isReadOnly( ) && !fs.isRemoveOnExit( ) )
+		{
+			codec = getDefaultCodec( );
+		}
+	}
+
+	private int getDefaultCodec( )
+	{
+		String value = (String) AccessController
+				.doPrivileged( new PrivilegedAction<Object>( ) {
+
+					public Object run( )
+					{
+						return System.getProperty( ArchiveConstants.PROPERTY_BLOCK_COMPRESSION );
+					}
+				} );
+		if ( "lz4".equalsIgnoreCase( value ) )
+		{
+			return Ext2Constants.CODEC_LZ4;
+		}
+		if ( "deflate".equalsIgnoreCase( value ) )
+		{
+			return Ext2Constants.CODEC_DEFLATE;
+		}
+		return Ext2Constants.CODEC_NONE;
+	}
+
+	/**
+	 * set the codec used to compress the entries created later.
+	 * 
+	 * @param codec
+	 *            one of Ext2Constants.CODEC_NONE, CODEC_LZ4 and CODEC_DEFLATE
+	 */
+	public void setCodec( int codec )
+	{
+		this.codec = codec;
+	}
+
+	public int getCodec( )
+	{
+		return codec;
 	}
 
 	synchronized public void close( ) throws IOException
@@ -79,7 +127,23 @@ public class ArchiveFileV3 implements IArchiveFile
 
 	synchronized public ArchiveEntry createEntry( String name ) throws IOException
 	{
-		Ext2File file = fs.createFile( name );
+		return createEntry( name, codec );
+	}
+
+	/**
+	 * create an entry whose data is compressed by the codec.
+	 * 
+	 * @param name
+	 *            the entry name
+	 * @param codec
+	 *            one of Ext2Constants.CODEC_NONE, CODEC_LZ4 and CODEC_DEFLATE
+	 * @return the created entry
+	 * @throws IOException
+	 */
+	synchronized public ArchiveEntry createEntry( String name, int codec )
+			throws IOException
+	{
+		Ext2File file = fs.createFile( name, codec );
 		return new ArchiveEntryV3( this, file );
 	}
 
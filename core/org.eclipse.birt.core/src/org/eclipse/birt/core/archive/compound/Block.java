@@ -14,6 +14,7 @@ package org.eclipse.birt.core.archive.compound;
 import java.io.IOException;
 
 import org.eclipse.birt.core.archive.cache.Cacheable;
+import org.eclipse.birt.core.archive.cache.FileCacheManager;
 
 /**
  * A physical block in a physical compound file, might be stream items block,
@@ -49,7 +50,22 @@ public class Block extends Cacheable implements ArchiveConstants
 	 */
 	Block( ArchiveFileV2 af, int blockId, int size )
 	{
-		super( af.caches, Integer.valueOf( blockId ) );
+		this( af, af.caches, blockId, size );
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param af
+	 *            the compound file system it belongs to
+	 * @param caches
+	 *            the cache manager which the block is added to
+	 * @param blockId
+	 *            the block ID
+	 */
+	Block( ArchiveFileV2 af, FileCacheManager caches, int blockId, int size )
+	{
+		super( caches, Integer.valueOf( blockId ) );
 		this.af = af;
 		blockSize = size;
 		blockData = new byte[size];
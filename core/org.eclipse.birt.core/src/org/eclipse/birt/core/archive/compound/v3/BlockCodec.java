@@ -0,0 +1,308 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.archive.compound.v3;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * compress and decompress the chunks of a compressed file.
+ *
+ * The codec object keeps the working buffers of the algorithm, so it can't be
+ * shared by multiple threads.
+ */
+abstract class BlockCodec implements Ext2Constants
+{
+
+	/**
+	 * compress the data
+	 *
+	 * @param src
+	 *            the source data
+	 * @param srcLen
+	 *            the size of the source data
+	 * @param dst
+	 *            the buffer of the compressed data
+	 * @return the size of the compressed data, -1 if the compressed data can't
+	 *         fit in the buffer.
+	 */
+	abstract int compress( byte[] src, int srcLen, byte[] dst );
+
+	/**
+	 * decompress the data
+	 *
+	 * @param src
+	 *            the compressed data
+	 * @param srcLen
+	 *            the size of the compressed data
+	 * @param dst
+	 *            the buffer of the decompressed data
+	 * @param dstLen
+	 *            the size of the decompressed data
+	 * @throws IOException
+	 *             the data is corrupted
+	 */
+	abstract void decompress( byte[] src, int srcLen, byte[] dst, int dstLen )
+			throws IOException;
+
+	/**
+	 * release the resources used by the codec.
+	 */
+	void end( )
+	{
+	}
+
+	static BlockCodec createCodec( int codec )
+	{
+		switch ( codec )
+		{
+			case CODEC_LZ4 :
+				return new LZ4Codec( );
+			case CODEC_DEFLATE :
+				return new DeflateCodec( );
+		}
+		throw new IllegalArgumentException( "unsupported codec " + codec );
+	}
+
+	/**
+	 * a byte oriented LZ77 codec using the LZ4 block format. It trades the
+	 * compression ratio for the speed: a match is searched only in one hash
+	 * slot.
+	 */
+	static class LZ4Codec extends BlockCodec
+	{
+
+		static final int MIN_MATCH = 4;
+		static final int LAST_LITERALS = 5;
+		static final int MF_LIMIT = 12;
+		static final int MAX_DISTANCE = 0xFFFF;
+		static final int HASH_BITS = 12;
+
+		private final int[] hashTable = new int[1 << HASH_BITS];
+
+		int compress( byte[] src, int srcLen, byte[] dst )
+		{
+			Arrays.fill( hashTable, -1 );
+			int ip = 0;
+			int anchor = 0;
+			int op = 0;
+			int matchLimit = srcLen - LAST_LITERALS;
+			int mfLimit = srcLen - MF_LIMIT;
+			while ( ip < mfLimit )
+			{
+				int sequence = readInt( src, ip );
+				int hash = ( sequence * -1640531535 ) >>> ( 32 - HASH_BITS );
+				int ref = hashTable[hash];
+				hashTable[hash] = ip;
+				if ( ref < 0 || ip - ref > MAX_DISTANCE
+						|| readInt( src, ref ) != sequence )
+				{
+					ip++;
+					continue;
+				}
+				int matchLen = MIN_MATCH;
+				while ( ip + matchLen < matchLimit
+						&& src[ref + matchLen] == src[ip + matchLen] )
+				{
+					matchLen++;
+				}
+				int literalLen = ip - anchor;
+				// token, literals, offset and the length bytes
+				if ( op + 3 + literalLen + ( literalLen + matchLen ) / 255 + 2 > dst.length )
+				{
+					return -1;
+				}
+				int token = op++;
+				op = writeLength( dst, op, literalLen );
+				System.arraycopy( src, anchor, dst, op, literalLen );
+				op += literalLen;
+				int offset = ip - ref;
+				dst[op++] = (byte) offset;
+				dst[op++] = (byte) ( offset >>> 8 );
+				int tokenMatch = matchLen - MIN_MATCH;
+				op = writeLength( dst, op, tokenMatch );
+				dst[token] = (byte) ( ( Math.min( literalLen, 15 ) << 4 ) | Math
+						.min( tokenMatch, 15 ) );
+				ip += matchLen;
+				anchor = ip;
+			}
+			// the last literals
+			int literalLen = srcLen - anchor;
+			if ( op + 1 + literalLen + literalLen / 255 + 1 > dst.length )
+			{
+				return -1;
+			}
+			dst[op++] = (byte) ( Math.min( literalLen, 15 ) << 4 );
+			op = writeLength( dst, op, literalLen );
+			System.arraycopy( src, anchor, dst, op, literalLen );
+			op += literalLen;
+			return op;
+		}
+
+		void decompress( byte[] src, int srcLen, byte[] dst, int dstLen )
+				throws IOException
+		{
+			int ip = 0;
+			int op = 0;
+			try
+			{
+				while ( ip < srcLen )
+				{
+					int token = src[ip++] & 0xFF;
+					int literalLen = token >>> 4;
+					if ( literalLen == 15 )
+					{
+						int b;
+						do
+						{
+							b = src[ip++] & 0xFF;
+							literalLen += b;
+						} while ( b == 255 );
+					}
+					System.arraycopy( src, ip, dst, op, literalLen );
+					ip += literalLen;
+					op += literalLen;
+					if ( ip >= srcLen )
+					{
+						break;
+					}
+					int offset = ( src[ip++] & 0xFF )
+							| ( ( src[ip++] & 0xFF ) << 8 );
+					int matchLen = token & 0x0F;
+					if ( matchLen == 15 )
+					{
+						int b;
+						do
+						{
+							b = src[ip++] & 0xFF;
+							matchLen += b;
+						} while ( b == 255 );
+					}
+					matchLen += MIN_MATCH;
+					int ref = op - offset;
+					if ( offset == 0 || ref < 0 || op + matchLen > dstLen )
+					{
+						throw new IOException( "corrupted compressed block" );
+					}
+					if ( offset >= matchLen )
+					{
+						System.arraycopy( dst, ref, dst, op, matchLen );
+						op += matchLen;
+					}
+					else
+					{
+						// the match overlaps the output, copy byte by byte
+						for ( int i = 0; i < matchLen; i++ )
+						{
+							dst[op++] = dst[ref++];
+						}
+					}
+				}
+			}
+			catch ( IndexOutOfBoundsException ex )
+			{
+				throw new IOException( "corrupted compressed block" );
+			}
+			if ( op != dstLen )
+			{
+				throw new IOException( "corrupted compressed block" );
+			}
+		}
+
+		private static int readInt( byte[] b, int off )
+		{
+			return ( b[off] & 0xFF ) | ( ( b[off + 1] & 0xFF ) << 8 )
+					| ( ( b[off + 2] & 0xFF ) << 16 ) | ( b[off + 3] << 24 );
+		}
+
+		private static int writeLength( byte[] dst, int op, int length )
+		{
+			if ( length >= 15 )
+			{
+				length -= 15;
+				while ( length >= 255 )
+				{
+					dst[op++] = (byte) 255;
+					length -= 255;
+				}
+				dst[op++] = (byte) length;
+			}
+			return op;
+		}
+	}
+
+	/**
+	 * the deflate codec, which is slower than LZ4 but has a better compression
+	 * ratio.
+	 */
+	static class DeflateCodec extends BlockCodec
+	{
+
+		private final Deflater deflater = new Deflater( );
+		private final Inflater inflater = new Inflater( );
+
+		int compress( byte[] src, int srcLen, byte[] dst )
+		{
+			deflater.reset( );
+			deflater.setInput( src, 0, srcLen );
+			deflater.finish( );
+			int size = 0;
+			while ( !deflater.finished( ) )
+			{
+				if ( size == dst.length )
+				{
+					return -1;
+				}
+				size += deflater.deflate( dst, size, dst.length - size );
+			}
+			return size;
+		}
+
+		void decompress( byte[] src, int srcLen, byte[] dst, int dstLen )
+				throws IOException
+		{
+			inflater.reset( );
+			inflater.setInput( src, 0, srcLen );
+			try
+			{
+				int size = 0;
+				while ( size < dstLen && !inflater.finished( ) )
+				{
+					int inflated = inflater.inflate( dst, size, dstLen - size );
+					if ( inflated == 0 && inflater.needsInput( ) )
+					{
+						break;
+					}
+					size += inflated;
+				}
+				if ( size != dstLen )
+				{
+					throw new IOException( "corrupted compressed block" );
+				}
+			}
+			catch ( DataFormatException ex )
+			{
+				throw new IOException( "corrupted compressed block: "
+						+ ex.getMessage( ) );
+			}
+		}
+
+		void end( )
+		{
+			deflater.end( );
+			inflater.end( );
+		}
+	}
+}
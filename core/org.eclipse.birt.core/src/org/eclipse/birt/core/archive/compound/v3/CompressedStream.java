@@ -0,0 +1,554 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.archive.compound.v3;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * the data of a compressed file.
+ *
+ * The logical data is split into chunks of CHUNK_SIZE bytes, each chunk is
+ * compressed separately and appended to the blocks of the node. The blocks
+ * are organized as:
+ *
+ * <pre>
+ *  header: index offset(long), chunk count(int), chunk size bits(int)
+ *  compressed chunks
+ *  index: for each chunk, offset(long), stored size(int), raw size(int), codec(byte)
+ * </pre>
+ *
+ * The index is kept in memory, so seeking in the file only changes the
+ * position, and reading at any position decompresses one chunk at most. The
+ * node length is the logical length of the file.
+ *
+ * A chunk is compressed when the writer moves to another chunk, or when the
+ * file is flushed. A rewritten chunk is saved into its old place if it fits,
+ * otherwise it is appended to the end. The chunk which doesn't become smaller
+ * is saved uncompressed.
+ *
+ * The object is shared by all the opened files of the same node. It reads and
+ * writes the blocks of the file system, so it is guarded by the file system
+ * lock instead of its own to keep a single lock order.
+ */
+class CompressedStream implements Ext2Constants
+{
+
+	static final int CHUNK_SIZE_BITS = 15;
+	static final int CHUNK_SIZE = 1 << CHUNK_SIZE_BITS;
+	static final int CHUNK_OFFSET_MASK = CHUNK_SIZE - 1;
+	static final int HEADER_SIZE = 16;
+	static final int INDEX_ENTRY_SIZE = 17;
+
+	static final int BLOCK_SIZE = Ext2FileSystem.BLOCK_SIZE;
+	static final int BLOCK_SIZE_BITS = Ext2FileSystem.BLOCK_SIZE_BITS;
+	static final int BLOCK_OFFSET_MASK = Ext2FileSystem.BLOCK_OFFSET_MASK;
+
+	private final Ext2FileSystem fs;
+	private final Ext2Node node;
+	private final FatBlockList blocks;
+	private final int codecType;
+	private BlockCodec codec;
+
+	/**
+	 * the chunk index
+	 */
+	private int chunkCount;
+	private long[] chunkOffsets = new long[16];
+	private int[] storedSizes = new int[16];
+	private int[] rawSizes = new int[16];
+	private byte[] chunkCodecs = new byte[16];
+	private boolean indexDirty;
+	/**
+	 * the end of the compressed chunks
+	 */
+	private long dataEnd;
+	/**
+	 * increased once a chunk is saved, the chunks cached by the readers are
+	 * invalid after that.
+	 */
+	private int version;
+
+	/**
+	 * the chunk being written
+	 */
+	private int writeChunkId = -1;
+	private byte[] writeChunk;
+	private boolean writeChunkDirty;
+
+	/**
+	 * buffer of the compressed data
+	 */
+	private byte[] compressBuffer;
+
+	/**
+	 * the files which are sharing the stream
+	 */
+	int refCount;
+
+	CompressedStream( Ext2FileSystem fs, Ext2Node node ) throws IOException
+	{
+		this.fs = fs;
+		this.node = node;
+		this.blocks = new FatBlockList( fs, node );
+		this.codecType = node.getCodec( );
+		if ( node.getBlockCount( ) == 0 || node.getLength( ) == 0 )
+		{
+			dataEnd = HEADER_SIZE;
+			indexDirty = true;
+		}
+		else
+		{
+			readIndex( );
+		}
+	}
+
+	int getCodec( )
+	{
+		return codecType;
+	}
+
+	/**
+	 * the chunk cached by a reader.
+	 */
+	static class ChunkCache
+	{
+
+		int chunkId = -1;
+		int version;
+		byte[] data;
+	}
+
+	void read( ChunkCache cache, long position, byte[] buffer,
+			int off, int size ) throws IOException
+	{
+		synchronized ( fs )
+		{
+			while ( size > 0 )
+			{
+				int chunkId = (int) ( position >> CHUNK_SIZE_BITS );
+				int chunkOff = (int) ( position & CHUNK_OFFSET_MASK );
+				int readSize = Math.min( size, CHUNK_SIZE - chunkOff );
+				byte[] data;
+				if ( chunkId == writeChunkId )
+				{
+					data = writeChunk;
+				}
+				else
+				{
+					if ( cache.chunkId != chunkId || cache.version != version )
+					{
+						if ( cache.data == null )
+						{
+							cache.data = new byte[CHUNK_SIZE];
+						}
+						loadChunk( chunkId, cache.data );
+						cache.chunkId = chunkId;
+						cache.version = version;
+					}
+					data = cache.data;
+				}
+				System.arraycopy( data, chunkOff, buffer, off, readSize );
+				position += readSize;
+				off += readSize;
+				size -= readSize;
+			}
+		}
+	}
+
+	void write( long position, byte[] buffer, int off, int size )
+			throws IOException
+	{
+		synchronized ( fs )
+		{
+			while ( size > 0 )
+			{
+				int chunkId = (int) ( position >> CHUNK_SIZE_BITS );
+				int chunkOff = (int) ( position & CHUNK_OFFSET_MASK );
+				int writeSize = Math.min( size, CHUNK_SIZE - chunkOff );
+				if ( chunkId != writeChunkId )
+				{
+					saveWriteChunk( );
+					if ( writeChunk == null )
+					{
+						writeChunk = new byte[CHUNK_SIZE];
+					}
+					if ( writeSize == CHUNK_SIZE )
+					{
+						// the whole chunk is overwritten
+						Arrays.fill( writeChunk, (byte) 0 );
+					}
+					else
+					{
+						loadChunk( chunkId, writeChunk );
+					}
+					writeChunkId = chunkId;
+				}
+				System.arraycopy( buffer, off, writeChunk, chunkOff, writeSize );
+				writeChunkDirty = true;
+				position += writeSize;
+				off += writeSize;
+				size -= writeSize;
+				// the saved chunk size is decided by the length
+				if ( position > node.getLength( ) )
+				{
+					node.setLength( position );
+				}
+			}
+		}
+	}
+
+	void setLength( long length ) throws IOException
+	{
+		synchronized ( fs )
+		{
+			if ( length < node.getLength( ) )
+			{
+				int count = (int) ( ( length + CHUNK_SIZE - 1 ) >> CHUNK_SIZE_BITS );
+				if ( writeChunkId >= count )
+				{
+					writeChunkId = -1;
+					writeChunkDirty = false;
+				}
+				if ( count < chunkCount )
+				{
+					chunkCount = count;
+					indexDirty = true;
+				}
+				if ( chunkCount == 0 )
+				{
+					dataEnd = HEADER_SIZE;
+				}
+				int tailOff = (int) ( length & CHUNK_OFFSET_MASK );
+				if ( tailOff != 0
+						&& ( count - 1 < chunkCount || count - 1 == writeChunkId ) )
+				{
+					// clear the truncated data of the last chunk
+					int chunkId = count - 1;
+					if ( writeChunkId != chunkId )
+					{
+						saveWriteChunk( );
+						if ( writeChunk == null )
+						{
+							writeChunk = new byte[CHUNK_SIZE];
+						}
+						loadChunk( chunkId, writeChunk );
+						writeChunkId = chunkId;
+					}
+					Arrays.fill( writeChunk, tailOff, CHUNK_SIZE, (byte) 0 );
+					writeChunkDirty = true;
+				}
+				version++;
+			}
+			node.setLength( length );
+		}
+	}
+
+	/**
+	 * save the pending chunk and the index.
+	 */
+	void flush( ) throws IOException
+	{
+		synchronized ( fs )
+		{
+			saveWriteChunk( );
+			if ( indexDirty )
+			{
+				writeIndex( );
+			}
+		}
+	}
+
+	/**
+	 * flush the data and release the buffers.
+	 */
+	void close( ) throws IOException
+	{
+		synchronized ( fs )
+		{
+			try
+			{
+				if ( !fs.isReadOnly( ) )
+				{
+					flush( );
+				}
+			}
+			finally
+			{
+				writeChunk = null;
+				writeChunkId = -1;
+				compressBuffer = null;
+				if ( codec != null )
+				{
+					codec.end( );
+					codec = null;
+				}
+				blocks.clear( );
+			}
+		}
+	}
+
+	private void loadChunk( int chunkId, byte[] data ) throws IOException
+	{
+		if ( chunkId >= chunkCount || storedSizes[chunkId] == 0 )
+		{
+			Arrays.fill( data, (byte) 0 );
+			return;
+		}
+		int storedSize = storedSizes[chunkId];
+		int rawSize = rawSizes[chunkId];
+		if ( chunkCodecs[chunkId] == CODEC_NONE )
+		{
+			readPhysical( chunkOffsets[chunkId], data, 0, storedSize );
+		}
+		else
+		{
+			byte[] compressed = getCompressBuffer( );
+			readPhysical( chunkOffsets[chunkId], compressed, 0, storedSize );
+			getCodec( chunkCodecs[chunkId] ).decompress( compressed,
+					storedSize, data, rawSize );
+		}
+		if ( rawSize < CHUNK_SIZE )
+		{
+			Arrays.fill( data, rawSize, CHUNK_SIZE, (byte) 0 );
+		}
+	}
+
+	private void saveWriteChunk( ) throws IOException
+	{
+		if ( !writeChunkDirty )
+		{
+			return;
+		}
+		writeChunkDirty = false;
+		int chunkId = writeChunkId;
+		long chunkStart = ( (long) chunkId ) << CHUNK_SIZE_BITS;
+		int rawSize = (int) Math.min( CHUNK_SIZE, node.getLength( )
+				- chunkStart );
+		if ( rawSize <= 0 )
+		{
+			return;
+		}
+
+		byte[] data = writeChunk;
+		int storedSize = -1;
+		int chunkCodec = codecType;
+		if ( chunkCodec != CODEC_NONE )
+		{
+			storedSize = getCodec( chunkCodec ).compress( writeChunk, rawSize,
+					getCompressBuffer( ) );
+			data = compressBuffer;
+		}
+		if ( storedSize < 0 || storedSize >= rawSize )
+		{
+			data = writeChunk;
+			storedSize = rawSize;
+			chunkCodec = CODEC_NONE;
+		}
+
+		ensureChunkCount( chunkId + 1 );
+		long offset;
+		if ( storedSizes[chunkId] >= storedSize )
+		{
+			offset = chunkOffsets[chunkId];
+		}
+		else
+		{
+			offset = dataEnd;
+			dataEnd += storedSize;
+		}
+		writePhysical( offset, data, 0, storedSize );
+		chunkOffsets[chunkId] = offset;
+		storedSizes[chunkId] = storedSize;
+		rawSizes[chunkId] = rawSize;
+		chunkCodecs[chunkId] = (byte) chunkCodec;
+		indexDirty = true;
+		version++;
+	}
+
+	private void ensureChunkCount( int count )
+	{
+		if ( count > chunkOffsets.length )
+		{
+			int capacity = Math.max( count, chunkOffsets.length * 2 );
+			long[] offsets = new long[capacity];
+			int[] stored = new int[capacity];
+			int[] raw = new int[capacity];
+			byte[] codecs = new byte[capacity];
+			System.arraycopy( chunkOffsets, 0, offsets, 0, chunkCount );
+			System.arraycopy( storedSizes, 0, stored, 0, chunkCount );
+			System.arraycopy( rawSizes, 0, raw, 0, chunkCount );
+			System.arraycopy( chunkCodecs, 0, codecs, 0, chunkCount );
+			chunkOffsets = offsets;
+			storedSizes = stored;
+			rawSizes = raw;
+			chunkCodecs = codecs;
+		}
+		if ( count > chunkCount )
+		{
+			for ( int i = chunkCount; i < count; i++ )
+			{
+				chunkOffsets[i] = 0;
+				storedSizes[i] = 0;
+				rawSizes[i] = 0;
+				chunkCodecs[i] = CODEC_NONE;
+			}
+			chunkCount = count;
+		}
+	}
+
+	private BlockCodec getCodec( int chunkCodec ) throws IOException
+	{
+		if ( chunkCodec != codecType )
+		{
+			throw new IOException( "unsupported codec " + chunkCodec );
+		}
+		if ( codec == null )
+		{
+			codec = BlockCodec.createCodec( codecType );
+		}
+		return codec;
+	}
+
+	private byte[] getCompressBuffer( )
+	{
+		if ( compressBuffer == null )
+		{
+			compressBuffer = new byte[CHUNK_SIZE];
+		}
+		return compressBuffer;
+	}
+
+	private void readIndex( ) throws IOException
+	{
+		byte[] header = new byte[HEADER_SIZE];
+		readPhysical( 0, header, 0, HEADER_SIZE );
+		DataInputStream in = new DataInputStream( new ByteArrayInputStream(
+				header ) );
+		long indexOffset = in.readLong( );
+		int count = in.readInt( );
+		int chunkSizeBits = in.readInt( );
+		if ( chunkSizeBits != CHUNK_SIZE_BITS )
+		{
+			throw new IOException( "unsupported chunk size " + chunkSizeBits );
+		}
+
+		byte[] index = new byte[count * INDEX_ENTRY_SIZE];
+		readPhysical( indexOffset, index, 0, index.length );
+		in = new DataInputStream( new ByteArrayInputStream( index ) );
+		ensureChunkCount( count );
+		for ( int i = 0; i < count; i++ )
+		{
+			chunkOffsets[i] = in.readLong( );
+			storedSizes[i] = in.readInt( );
+			rawSizes[i] = in.readInt( );
+			chunkCodecs[i] = in.readByte( );
+		}
+		dataEnd = indexOffset;
+		indexDirty = false;
+	}
+
+	/**
+	 * the index is saved after the last chunk and is overwritten by the chunks
+	 * appended later.
+	 */
+	private void writeIndex( ) throws IOException
+	{
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream( chunkCount
+				* INDEX_ENTRY_SIZE );
+		DataOutputStream out = new DataOutputStream( buffer );
+		for ( int i = 0; i < chunkCount; i++ )
+		{
+			out.writeLong( chunkOffsets[i] );
+			out.writeInt( storedSizes[i] );
+			out.writeInt( rawSizes[i] );
+			out.writeByte( chunkCodecs[i] );
+		}
+		byte[] index = buffer.toByteArray( );
+		writePhysical( dataEnd, index, 0, index.length );
+
+		buffer = new ByteArrayOutputStream( HEADER_SIZE );
+		out = new DataOutputStream( buffer );
+		out.writeLong( dataEnd );
+		out.writeInt( chunkCount );
+		out.writeInt( CHUNK_SIZE_BITS );
+		byte[] header = buffer.toByteArray( );
+		writePhysical( 0, header, 0, header.length );
+		indexDirty = false;
+	}
+
+	private void readPhysical( long position, byte[] buffer, int off, int size )
+			throws IOException
+	{
+		while ( size > 0 )
+		{
+			int blockId = (int) ( position >> BLOCK_SIZE_BITS );
+			int blockOff = (int) ( position & BLOCK_OFFSET_MASK );
+			int readSize = Math.min( size, BLOCK_SIZE - blockOff );
+			int fileBlockId = blocks.getFileBlock( blockId );
+			if ( fileBlockId == -1 )
+			{
+				throw new IOException( "corrupted compressed file" );
+			}
+			DataBlock block = fs.loadDataBlock( fileBlockId );
+			try
+			{
+				block.read( blockOff, buffer, off, readSize );
+			}
+			finally
+			{
+				fs.unloadBlock( block );
+			}
+			position += readSize;
+			off += readSize;
+			size -= readSize;
+		}
+	}
+
+	private void writePhysical( long position, byte[] buffer, int off,
+			int size ) throws IOException
+	{
+		while ( size > 0 )
+		{
+			int blockId = (int) ( position >> BLOCK_SIZE_BITS );
+			int blockOff = (int) ( position & BLOCK_OFFSET_MASK );
+			int writeSize = Math.min( size, BLOCK_SIZE - blockOff );
+			int fileBlockId = blocks.getFileBlock( blockId );
+			DataBlock block;
+			if ( fileBlockId == -1 )
+			{
+				block = fs.createDataBlock( );
+				node.setBlockCount( node.getBlockCount( ) + 1 );
+				blocks.setFileBlock( blockId, block.getBlockId( ) );
+			}
+			else
+			{
+				block = fs.loadDataBlock( fileBlockId );
+			}
+			try
+			{
+				block.write( blockOff, buffer, off, writeSize );
+			}
+			finally
+			{
+				fs.unloadBlock( block );
+			}
+			position += writeSize;
+			off += writeSize;
+			size -= writeSize;
+		}
+	}
+}
@@ -17,5 +17,12 @@ public interface Ext2Constants
 	static final int EXT2_MAGIC_TAG = 0xEF53;
 	static final int EXT2_VERSION_0 = 0;
 
+	/**
+	 * the codec used to compress the data of a file, which is saved in the
+	 * node of the file.
+	 */
+	static final int CODEC_NONE = 0;
+	static final int CODEC_LZ4 = 1;
+	static final int CODEC_DEFLATE = 2;
 
 }
@@ -31,7 +31,7 @@ import org.eclipse.birt.core.i18n.ResourceConstants;
  * there is only one Ext2File is opened as write, so we needn't synchronize the
  * FAT node list
  */
-public class Ext2File
+public class Ext2File implements Ext2Constants
 {
 
 	static final int BLOCK_SIZE = Ext2FileSystem.BLOCK_SIZE;
@@ -69,6 +69,15 @@ public class Ext2File
 	 */
 	private DataBlock cachedBlock;
 
+	/**
+	 * the compressed data, null if the data is not compressed
+	 */
+	private CompressedStream compressed;
+	/**
+	 * the decompressed chunk at the current position
+	 */
+	private CompressedStream.ChunkCache cachedChunk;
+
 	Ext2File( Ext2FileSystem fs, int inode, boolean enableCache )
 			throws IOException
 	{
@@ -92,6 +101,11 @@ public class Ext2File
 		this.enableCache = enableCache;
 		this.cachedBlockId = -1;
 		this.cachedBlock = DataBlock.READ_ONLY_BLOCK;
+		if ( node.getCodec( ) != CODEC_NONE )
+		{
+			this.compressed = fs.openCompressedStream( node );
+			this.cachedChunk = new CompressedStream.ChunkCache( );
+		}
 	}
 
 	public Ext2Entry getEntry( )
@@ -117,6 +131,13 @@ public class Ext2File
 		}
 		try
 		{
+			if ( compressed != null )
+			{
+				CompressedStream stream = compressed;
+				compressed = null;
+				cachedChunk = null;
+				fs.closeCompressedStream( node, stream );
+			}
 			if ( cachedBlock != DataBlock.READ_ONLY_BLOCK )
 			{
 				fs.unloadBlock( cachedBlock );
@@ -132,6 +153,27 @@ public class Ext2File
 		}
 	}
 
+	/**
+	 * save the data which is compressed in memory.
+	 * 
+	 * @throws IOException
+	 */
+	public void flush( ) throws IOException
+	{
+		if ( compressed != null && !fs.isReadOnly( ) )
+		{
+			compressed.flush( );
+		}
+	}
+
+	/**
+	 * @return the codec used to compress the data.
+	 */
+	public int getCodec( )
+	{
+		return node.getCodec( );
+	}
+
 	public long length( ) throws IOException
 	{
 		return node.getLength( );
@@ -150,7 +192,14 @@ public class Ext2File
 			throw new IOException(
 					CoreMessages.getString( ResourceConstants.FILE_IN_READONLY_MODE ) );
 		}
-		node.setLength( length );
+		if ( compressed != null )
+		{
+			compressed.setLength( length );
+		}
+		else
+		{
+			node.setLength( length );
+		}
 		if ( position >= length )
 		{
 			position = length;
@@ -184,6 +233,10 @@ public class Ext2File
 			return 0;
 		}
 
+		if ( compressed != null )
+		{
+			return read_compressed( buffer, off, size );
+		}
 		if ( enableCache )
 		{
 			return read_with_cache( buffer, off, size );
@@ -191,6 +244,23 @@ public class Ext2File
 		return read_without_cache( buffer, off, size );
 	}
 
+	private int read_compressed( byte[] buffer, int off, int size )
+			throws IOException
+	{
+		long length = node.getLength( );
+		if ( position + size > length )
+		{
+			size = (int) ( length - position );
+			if ( size <= 0 )
+			{
+				return -1;
+			}
+		}
+		compressed.read( cachedChunk, position, buffer, off, size );
+		position += size;
+		return size;
+	}
+
 	private int read_without_cache( byte[] buffer, int off, int size )
 			throws IOException
 	{
@@ -313,7 +383,12 @@ public class Ext2File
 			return;
 		}
 
-		if ( enableCache )
+		if ( compressed != null )
+		{
+			compressed.write( position, buffer, off, size );
+			position += size;
+		}
+		else if ( enableCache )
 		{
 			write_with_cache( buffer, off, size );
 		}
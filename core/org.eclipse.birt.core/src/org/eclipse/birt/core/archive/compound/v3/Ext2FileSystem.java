@@ -72,6 +72,11 @@ public class Ext2FileSystem
 	 */
 	private final HashSet<Ext2File> openedFiles = new HashSet<Ext2File>( );
 
+	/**
+	 * the data of the opened compressed files, the key is the node id
+	 */
+	private final HashMap<Integer, CompressedStream> compressedStreams = new HashMap<Integer, CompressedStream>( );
+
 	/**
 	 * mode
 	 * 
@@ -259,6 +264,12 @@ public class Ext2FileSystem
 			}
 
 			ensureFileOpened( );
+			// save the pending chunks and the chunk index of the compressed
+			// files before the node table is written
+			for ( CompressedStream stream : compressedStreams.values( ) )
+			{
+				stream.flush( );
+			}
 			// flush all the cached data into disk
 			writeProperties( );
 			entryTable.write( );
@@ -305,6 +316,22 @@ public class Ext2FileSystem
 	}
 
 	synchronized public Ext2File createFile( String name ) throws IOException
+	{
+		return createFile( name, Ext2Constants.CODEC_NONE );
+	}
+
+	/**
+	 * create a file whose data is compressed by the codec.
+	 * 
+	 * @param name
+	 *            the file name
+	 * @param codec
+	 *            one of Ext2Constants.CODEC_NONE, CODEC_LZ4 and CODEC_DEFLATE
+	 * @return the created file
+	 * @throws IOException
+	 */
+	synchronized public Ext2File createFile( String name, int codec )
+			throws IOException
 	{
 		if ( readOnly )
 		{
@@ -319,6 +346,17 @@ public class Ext2FileSystem
 			entryTable.addEntry( entry );
 		}
 		Ext2Node node = nodeTable.getNode( entry.inode );
+		if ( node.getCodec( ) != codec )
+		{
+			if ( compressedStreams.containsKey( node.getNodeId( ) ) )
+			{
+				throw new IOException( "can't change the codec of opened file "
+						+ name );
+			}
+			// the existing data can't be read by the new codec
+			node.setLength( 0 );
+			node.setCodec( codec );
+		}
 		Ext2File file = new Ext2File( this, entry, node );
 		file.setLength( 0 );
 		return file;
@@ -340,6 +378,34 @@ public class Ext2FileSystem
 		throw new FileNotFoundException( name );
 	}
 
+	synchronized CompressedStream openCompressedStream( Ext2Node node )
+			throws IOException
+	{
+		Integer key = Integer.valueOf( node.getNodeId( ) );
+		CompressedStream stream = compressedStreams.get( key );
+		if ( stream == null )
+		{
+			stream = new CompressedStream( this, node );
+			compressedStreams.put( key, stream );
+		}
+		stream.refCount++;
+		return stream;
+	}
+
+	synchronized void closeCompressedStream( Ext2Node node,
+			CompressedStream stream ) throws IOException
+	{
+		if ( !readOnly )
+		{
+			stream.flush( );
+		}
+		if ( --stream.refCount == 0 )
+		{
+			compressedStreams.remove( Integer.valueOf( node.getNodeId( ) ) );
+			stream.close( );
+		}
+	}
+
 	synchronized public boolean existFile( String name )
 	{
 		return entryTable.getEntry( name ) != null;
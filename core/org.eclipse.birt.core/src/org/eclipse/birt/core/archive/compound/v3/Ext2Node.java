@@ -26,6 +26,12 @@ public class Ext2Node implements Ext2Constants
 	static final int STATUS_UNUSED = 0;
 	static final int STATUS_USED = 1;
 
+	/**
+	 * the codec of a used node is saved in the second byte of the status.
+	 */
+	static final int STATUS_MASK = 0xFF;
+	static final int CODEC_SHIFT = 8;
+
 	static final int NODE_SIZE = 64;
 	static final int DIRECT_BLOCK_COUNT = 9;
 	static final int INDIRECT_BLOCK_COUNT = 3;
@@ -105,7 +111,7 @@ public class Ext2Node implements Ext2Constants
 
 	int getStatus( )
 	{
-		return status;
+		return status & STATUS_MASK;
 	}
 
 	void setStatus( int status )
@@ -114,6 +120,21 @@ public class Ext2Node implements Ext2Constants
 		this.dirty = true;
 	}
 
+	/**
+	 * @return the codec used to compress the file data, CODEC_NONE if the
+	 *         data is not compressed.
+	 */
+	public int getCodec( )
+	{
+		return ( status >>> CODEC_SHIFT ) & 0xFF;
+	}
+
+	void setCodec( int codec )
+	{
+		this.status = ( status & STATUS_MASK ) | ( codec << CODEC_SHIFT );
+		this.dirty = true;
+	}
+
 	public long getLength( )
 	{
 		return length;
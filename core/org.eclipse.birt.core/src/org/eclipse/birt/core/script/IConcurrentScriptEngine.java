@@ -0,0 +1,37 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.script;
+
+/**
+ * A script engine which can evaluate the scripts in threads other than the
+ * one created it.
+ *
+ * The scopes of the engine are shared by all the threads, the engine only
+ * prepares the per thread state needed by the script runtime. The caller
+ * must make sure the scripts evaluated concurrently do not change the same
+ * objects.
+ */
+public interface IConcurrentScriptEngine extends IScriptEngine
+{
+
+	/**
+	 * Prepares the current thread to evaluate the scripts of this engine.
+	 * Each call must be paired with a call of exitThread() in the same
+	 * thread.
+	 */
+	void enterThread( );
+
+	/**
+	 * Releases the state prepared by enterThread() for the current thread.
+	 */
+	void exitThread( );
+}
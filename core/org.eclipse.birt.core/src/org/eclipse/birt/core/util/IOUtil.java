@@ -238,6 +238,60 @@ public class IOUtil
 		outputStream.write( ( value >>> 0 ) & 0xFF );
 	}
 
+	/**
+	 * Read a variable length long value from an input stream. The value is
+	 * stored in groups of 7 bits, the lowest group first, and the high bit of
+	 * each byte is set if more bytes follow.
+	 * 
+	 * @param inputStream
+	 * @return long value
+	 * @throws IOException
+	 */
+	public final static long readVarLong( InputStream inputStream )
+			throws IOException
+	{
+		long value = 0;
+		int shift = 0;
+		while ( true )
+		{
+			int ch = inputStream.read( );
+			if ( ch == -1 )
+			{
+				throw new EOFException( );
+			}
+			value |= (long) ( ch & 0x7F ) << shift;
+			if ( ( ch & 0x80 ) == 0 )
+			{
+				return value;
+			}
+			shift += 7;
+			if ( shift > 63 )
+			{
+				throw new IOException( "Malformed variable length long" );
+			}
+		}
+	}
+
+	/**
+	 * Write a variable length long value to an output stream. The small
+	 * values take less bytes, a value less than 128 takes one byte. The
+	 * negative values always take 10 bytes.
+	 * 
+	 * @param outputStream
+	 * @param value
+	 * @throws IOException
+	 */
+	public final static void writeVarLong( OutputStream outputStream,
+			long value ) throws IOException
+	{
+		while ( ( value & ~0x7FL ) != 0 )
+		{
+			outputStream.write( (int) ( ( value & 0x7F ) | 0x80 ) );
+			value >>>= 7;
+		}
+		outputStream.write( (int) value );
+	}
+
 	/**
 	 * Assemble four bytes to an int value, make sure that the passed bytes
 	 * length is 4.
@@ -0,0 +1,531 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.aggregation.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.eclipse.birt.core.util.IOUtil;
+import org.eclipse.birt.data.engine.api.DataEngineThreadLocal;
+import org.eclipse.birt.data.engine.api.ICloseListener;
+import org.eclipse.birt.data.engine.cache.Constants;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.core.security.FileSecurity;
+import org.eclipse.birt.data.engine.i18n.ResourceConstants;
+
+/**
+ * The values of a holistic aggregation which are spilled to temporary files
+ * as sorted runs once there are more of them than the aggregation buffer
+ * holds. The runs and the values still in memory are read back in sorted
+ * order by merging them, so the aggregation computes the exact value in one
+ * pass while its memory stays bounded.
+ */
+public class SortedValueRuns implements ICloseListener
+{
+
+	/**
+	 * The values are ordered by their class names first, so the values of
+	 * different types, which are never equal, can be sorted together.
+	 */
+	public static final Comparator TYPED_ORDER = new Comparator( ) {
+
+		public int compare( Object o1, Object o2 )
+		{
+			if ( o1.getClass( ) != o2.getClass( ) )
+				return o1.getClass( )
+						.getName( )
+						.compareTo( o2.getClass( ).getName( ) );
+			return ( (Comparable) o1 ).compareTo( o2 );
+		}
+	};
+
+	// the max number of runs of a level, they are merged into one run of the
+	// next level
+	static final int MAX_RUNS = 64;
+
+	private Comparator comparator;
+	private String tempDir;
+	private List<File> runFiles = new ArrayList<File>( );
+	// the level and the number of values of the runs, a run spilled from
+	// memory is of level 0, and a merged run is one level above its runs
+	private List<Integer> runLevels = new ArrayList<Integer>( );
+	private List<Integer> runSizes = new ArrayList<Integer>( );
+	private int runId;
+	private long size;
+
+	/**
+	 *
+	 * @param comparator
+	 *            the order of the values, null for their natural order
+	 */
+	public SortedValueRuns( Comparator comparator )
+	{
+		this.comparator = comparator;
+	}
+
+	/**
+	 *
+	 * @return the number of values the aggregation holds in memory before it
+	 *         spills them
+	 */
+	public static int getBufferSize( )
+	{
+		return Constants.AGGREGATION_BUFFER_SIZE;
+	}
+
+	/**
+	 * Sorts the values and writes them to a new run.
+	 *
+	 * @param values
+	 * @param count
+	 *            the number of values in the array
+	 * @throws DataException
+	 */
+	public void spill( Object[] values, int count ) throws DataException
+	{
+		Arrays.sort( values, 0, count, comparator );
+		File file = newRunFile( );
+		try
+		{
+			DataOutputStream dos = new DataOutputStream( new BufferedOutputStream( FileSecurity.createFileOutputStream( file ) ) );
+			try
+			{
+				IOUtil.writeInt( dos, count );
+				for ( int i = 0; i < count; i++ )
+				{
+					writeValue( dos, values[i] );
+				}
+			}
+			finally
+			{
+				dos.close( );
+			}
+		}
+		catch ( IOException e )
+		{
+			throw new DataException( ResourceConstants.WRITE_TEMPFILE_ERROR, e );
+		}
+		addRun( file, 0, count );
+		size += count;
+		// only the runs of the full level are merged, so a value is rewritten
+		// once per level rather than every time the runs are merged
+		for ( int level = 0; getRunCount( level ) >= MAX_RUNS; level++ )
+		{
+			mergeRuns( level );
+		}
+	}
+
+	/**
+	 *
+	 * @return whether any value has been spilled
+	 */
+	public boolean hasRuns( )
+	{
+		return !runFiles.isEmpty( );
+	}
+
+	/**
+	 *
+	 * @return the number of the spilled values
+	 */
+	public long size( )
+	{
+		return size;
+	}
+
+	/**
+	 * Returns the reader of the spilled values and the values in memory in
+	 * sorted order. The reader should be closed after use.
+	 *
+	 * @param values
+	 *            the values in memory, which are sorted in place
+	 * @param count
+	 *            the number of values in the array
+	 * @return
+	 * @throws DataException
+	 */
+	public ValueReader read( Object[] values, int count ) throws DataException
+	{
+		List<Run> runs = openRuns( runFiles );
+		if ( count > 0 )
+		{
+			Arrays.sort( values, 0, count, comparator );
+			runs.add( new ArrayRun( values, count ) );
+		}
+		return new ValueReader( runs );
+	}
+
+	private List<Run> openRuns( List<File> files ) throws DataException
+	{
+		List<Run> runs = new ArrayList<Run>( );
+		boolean opened = false;
+		try
+		{
+			for ( int i = 0; i < files.size( ); i++ )
+			{
+				runs.add( new FileRun( files.get( i ) ) );
+			}
+			opened = true;
+		}
+		catch ( IOException e )
+		{
+			throw new DataException( ResourceConstants.READ_TEMPFILE_ERROR, e );
+		}
+		finally
+		{
+			if ( !opened )
+			{
+				for ( int i = 0; i < runs.size( ); i++ )
+				{
+					runs.get( i ).close( );
+				}
+			}
+		}
+		return runs;
+	}
+
+	/**
+	 * Deletes all the runs.
+	 */
+	public void reset( )
+	{
+		for ( int i = 0; i < runFiles.size( ); i++ )
+		{
+			safeDelete( runFiles.get( i ) );
+		}
+		runFiles.clear( );
+		runLevels.clear( );
+		runSizes.clear( );
+		size = 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.api.ICloseListener#close()
+	 */
+	public void close( ) throws IOException
+	{
+		reset( );
+		if ( tempDir != null )
+			safeDelete( new File( tempDir ) );
+	}
+
+	/**
+	 * Writes a spilled value.
+	 *
+	 * @param dos
+	 * @param value
+	 * @throws IOException
+	 */
+	protected void writeValue( DataOutputStream dos, Object value )
+			throws IOException
+	{
+		IOUtil.writeObject( dos, value );
+	}
+
+	/**
+	 * Reads a spilled value.
+	 *
+	 * @param dis
+	 * @return
+	 * @throws IOException
+	 */
+	protected Object readValue( DataInputStream dis ) throws IOException
+	{
+		return IOUtil.readObject( dis );
+	}
+
+	private void addRun( File file, int level, int count )
+	{
+		runFiles.add( file );
+		runLevels.add( Integer.valueOf( level ) );
+		runSizes.add( Integer.valueOf( count ) );
+	}
+
+	private int getRunCount( int level )
+	{
+		int count = 0;
+		for ( int i = 0; i < runLevels.size( ); i++ )
+		{
+			if ( runLevels.get( i ).intValue( ) == level )
+				count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Merges the runs of a level into one run of the next level, so the
+	 * number of the open files stays bounded when the runs are read. The
+	 * runs of the other levels are not rewritten.
+	 *
+	 * @param level
+	 * @throws DataException
+	 */
+	private void mergeRuns( int level ) throws DataException
+	{
+		List<File> files = new ArrayList<File>( );
+		int count = 0;
+		for ( int i = 0; i < runFiles.size( ); i++ )
+		{
+			if ( runLevels.get( i ).intValue( ) == level )
+			{
+				files.add( runFiles.get( i ) );
+				count += runSizes.get( i ).intValue( );
+			}
+		}
+		File file = newRunFile( );
+		ValueReader reader = new ValueReader( openRuns( files ) );
+		try
+		{
+			DataOutputStream dos = new DataOutputStream( new BufferedOutputStream( FileSecurity.createFileOutputStream( file ) ) );
+			try
+			{
+				IOUtil.writeInt( dos, count );
+				Object value;
+				while ( ( value = reader.next( ) ) != null )
+				{
+					writeValue( dos, value );
+				}
+			}
+			finally
+			{
+				dos.close( );
+			}
+		}
+		catch ( IOException e )
+		{
+			throw new DataException( ResourceConstants.WRITE_TEMPFILE_ERROR, e );
+		}
+		finally
+		{
+			reader.close( );
+		}
+		for ( int i = runFiles.size( ) - 1; i >= 0; i-- )
+		{
+			if ( runLevels.get( i ).intValue( ) == level )
+			{
+				safeDelete( runFiles.remove( i ) );
+				runLevels.remove( i );
+				runSizes.remove( i );
+			}
+		}
+		addRun( file, level + 1, count );
+	}
+
+	private File newRunFile( ) throws DataException
+	{
+		if ( tempDir == null )
+		{
+			if ( DataEngineThreadLocal.getInstance( ).getPathManager( ) != null )
+			{
+				tempDir = DataEngineThreadLocal.getInstance( )
+						.getPathManager( )
+						.getTempFileName( "AggregationPlugin_runs", //$NON-NLS-1$
+								this.hashCode( ),
+								null )
+						+ File.separator;
+			}
+			else
+			{
+				tempDir = System.getProperty( "java.io.tmpdir" ) //$NON-NLS-1$
+						+ "AggregationPlugin_runs" + this.hashCode( ) //$NON-NLS-1$
+						+ File.separator;
+			}
+			DataEngineThreadLocal.getInstance( ).getCloseListener( ).add( this );
+		}
+		File dir = new File( tempDir );
+		if ( !FileSecurity.fileExist( dir ) && !FileSecurity.fileMakeDirs( dir ) )
+		{
+			throw new DataException( ResourceConstants.WRITE_TEMPFILE_ERROR,
+					tempDir );
+		}
+		return new File( dir, "run" + ( runId++ ) ); //$NON-NLS-1$
+	}
+
+	private static void safeDelete( File file )
+	{
+		if ( !FileSecurity.fileDelete( file ) )
+		{
+			FileSecurity.fileDeleteOnExit( file );
+		}
+	}
+
+	private int compare( Object o1, Object o2 )
+	{
+		if ( comparator == null )
+			return ( (Comparable) o1 ).compareTo( o2 );
+		return comparator.compare( o1, o2 );
+	}
+
+	/**
+	 * Reads the values of all the runs in sorted order.
+	 */
+	public class ValueReader
+	{
+
+		private PriorityQueue<Run> queue;
+
+		ValueReader( List<Run> runs ) throws DataException
+		{
+			queue = new PriorityQueue<Run>( Math.max( 1, runs.size( ) ),
+					new Comparator<Run>( ) {
+
+						public int compare( Run r1, Run r2 )
+						{
+							return SortedValueRuns.this.compare( r1.current,
+									r2.current );
+						}
+					} );
+			try
+			{
+				for ( int i = 0; i < runs.size( ); i++ )
+				{
+					Run run = runs.get( i );
+					if ( run.advance( ) )
+						queue.add( run );
+					else
+						run.close( );
+				}
+			}
+			catch ( IOException e )
+			{
+				close( );
+				throw new DataException( ResourceConstants.READ_TEMPFILE_ERROR,
+						e );
+			}
+		}
+
+		/**
+		 *
+		 * @return the next value, or null if all the values have been read
+		 * @throws DataException
+		 */
+		public Object next( ) throws DataException
+		{
+			Run run = queue.poll( );
+			if ( run == null )
+				return null;
+			Object value = run.current;
+			try
+			{
+				if ( run.advance( ) )
+					queue.add( run );
+				else
+					run.close( );
+			}
+			catch ( IOException e )
+			{
+				run.close( );
+				throw new DataException( ResourceConstants.READ_TEMPFILE_ERROR,
+						e );
+			}
+			return value;
+		}
+
+		/**
+		 * Closes the files of the runs not read to the end.
+		 */
+		public void close( )
+		{
+			Run run;
+			while ( ( run = queue.poll( ) ) != null )
+			{
+				run.close( );
+			}
+		}
+	}
+
+	private static abstract class Run
+	{
+
+		Object current;
+
+		/**
+		 * Moves to the next value.
+		 *
+		 * @return false if there are no more values
+		 * @throws IOException
+		 */
+		abstract boolean advance( ) throws IOException;
+
+		abstract void close( );
+	}
+
+	private static class ArrayRun extends Run
+	{
+
+		private Object[] values;
+		private int count;
+		private int index = -1;
+
+		ArrayRun( Object[] values, int count )
+		{
+			this.values = values;
+			this.count = count;
+		}
+
+		boolean advance( )
+		{
+			if ( ++index >= count )
+				return false;
+			current = values[index];
+			return true;
+		}
+
+		void close( )
+		{
+			values = null;
+		}
+	}
+
+	private class FileRun extends Run
+	{
+
+		private DataInputStream dis;
+		private int remaining;
+
+		FileRun( File file ) throws IOException, DataException
+		{
+			dis = new DataInputStream( new BufferedInputStream( FileSecurity.createFileInputStream( file ) ) );
+			remaining = IOUtil.readInt( dis );
+		}
+
+		boolean advance( ) throws IOException
+		{
+			if ( remaining == 0 )
+				return false;
+			remaining--;
+			current = readValue( dis );
+			return true;
+		}
+
+		void close( )
+		{
+			try
+			{
+				dis.close( );
+			}
+			catch ( IOException e )
+			{
+			}
+		}
+	}
+}
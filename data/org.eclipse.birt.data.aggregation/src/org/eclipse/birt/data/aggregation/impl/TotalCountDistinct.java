@@ -76,11 +76,15 @@ public class TotalCountDistinct extends AggrFunction
     {
         private Set set;
         private boolean hasNullValue = false;
+        // the distinct values spilled when the set is full
+        private SortedValueRuns runs = new SortedValueRuns( SortedValueRuns.TYPED_ORDER );
+        private int count;
         
         public void start()
         {
             super.start();
             set = new HashSet();
+            runs.reset( );
             this.hasNullValue = false;
         }
         
@@ -90,6 +94,11 @@ public class TotalCountDistinct extends AggrFunction
         	if(args[0] instanceof Comparable)
         	{
         		set.add(args[0]);
+        		if ( set.size( ) >= SortedValueRuns.getBufferSize( ) )
+        		{
+        			runs.spill( set.toArray( ), set.size( ) );
+        			set.clear( );
+        		}
         	}
         	else
         	{
@@ -106,12 +115,59 @@ public class TotalCountDistinct extends AggrFunction
         }
 
 
+        public void finish( ) throws DataException
+        {
+        	count = runs.hasRuns( ) ? countSpilledValues( ) : set.size( );
+        	super.finish( );
+        }
+
+        /**
+         * Counts the distinct values by reading the spilled values and the
+         * values in the set in sorted order, a value may have been spilled
+         * more than once.
+         * 
+         * @return
+         * @throws DataException
+         */
+        private int countSpilledValues( ) throws DataException
+        {
+        	SortedValueRuns.ValueReader reader = runs.read( set.toArray( ),
+        			set.size( ) );
+        	set = new HashSet( );
+        	try
+        	{
+        		int result = 0;
+        		// the values which are equal in the order but may not be
+        		// equal to each other
+        		Set equalValues = new HashSet( );
+        		Object previous = null;
+        		Object value;
+        		while ( ( value = reader.next( ) ) != null )
+        		{
+        			if ( previous != null
+        					&& SortedValueRuns.TYPED_ORDER.compare( previous, value ) != 0 )
+        			{
+        				result += equalValues.size( );
+        				equalValues.clear( );
+        			}
+        			equalValues.add( value );
+        			previous = value;
+        		}
+        		return result + equalValues.size( );
+        	}
+        	finally
+        	{
+        		reader.close( );
+        		runs.reset( );
+        	}
+        }
+
         /* (non-Javadoc)
          * @see org.eclipse.birt.data.engine.aggregation.SummaryAccumulator#getSummaryValue()
          */
         public Object getSummaryValue()
         {
-            return Integer.valueOf( set.size( ) + ( this.hasNullValue ? 1 : 0 ) );
+            return Integer.valueOf( count + ( this.hasNullValue ? 1 : 0 ) );
         }
     }
 
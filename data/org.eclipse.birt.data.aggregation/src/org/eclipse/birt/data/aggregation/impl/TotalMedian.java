@@ -93,6 +93,9 @@ public class TotalMedian extends AggrFunction
     {
         private List list;
 
+        // the values spilled when the list is full
+        private SortedValueRuns runs = new SortedValueRuns( null );
+
         private Object ret = null;
 
         MyAccumulator( ICalculator calc )
@@ -104,6 +107,7 @@ public class TotalMedian extends AggrFunction
         {
             super.start();
             list = new ArrayList();
+            runs.reset( );
             ret = null;
         }
 
@@ -118,11 +122,24 @@ public class TotalMedian extends AggrFunction
 			if ( args[0] != null )
 			{
 				list.add( calculator.getTypedObject( args[0] ) );
+				if ( list.size( ) >= SortedValueRuns.getBufferSize( ) )
+				{
+					runs.spill( list.toArray( ), list.size( ) );
+					list.clear( );
+				}
 			}
 		}
 
         public void finish( ) throws DataException
 		{
+			if ( runs.hasRuns( ) )
+			{
+				ret = getSpilledMedian( );
+				list = null;
+				runs.reset( );
+				super.finish( );
+				return;
+			}
 			int size = list.size( );
 			if ( size > 0 )
 			{
@@ -145,6 +162,41 @@ public class TotalMedian extends AggrFunction
 			super.finish( );
 		}
 
+        /**
+         * Finds the median by reading the spilled values and the values in
+         * the list in sorted order.
+         * 
+         * @return
+         * @throws DataException
+         */
+        private Object getSpilledMedian( ) throws DataException
+		{
+			long size = runs.size( ) + list.size( );
+			long index = ( size - 1 ) / 2;
+			SortedValueRuns.ValueReader reader = runs.read( list.toArray( ),
+					list.size( ) );
+			try
+			{
+				for ( long i = 0; i < index; i++ )
+				{
+					reader.next( );
+				}
+				Object d1 = reader.next( );
+				if ( size % 2 == 0 )
+				{
+					Object d2 = reader.next( );
+					return calculator.divide(
+							calculator.add( calculator.getTypedObject( d1 ), calculator.getTypedObject( d2 ) ),
+							calculator.getTypedObject( 2 ) );
+				}
+				return calculator.getTypedObject( d1 );
+			}
+			finally
+			{
+				reader.close( );
+			}
+		}
+
         /*
 		 * (non-Javadoc)
 		 * 
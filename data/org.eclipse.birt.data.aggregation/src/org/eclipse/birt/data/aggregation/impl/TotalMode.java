@@ -13,12 +13,20 @@
  */
 package org.eclipse.birt.data.aggregation.impl;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.eclipse.birt.core.data.DataType;
 import org.eclipse.birt.data.aggregation.api.IBuildInAggregation;
+import org.eclipse.birt.core.util.IOUtil;
 import org.eclipse.birt.data.aggregation.i18n.Messages;
+import org.eclipse.birt.data.aggregation.i18n.ResourceConstants;
 import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
 import org.eclipse.birt.data.engine.api.aggregation.IParameterDefn;
 import org.eclipse.birt.data.engine.core.DataException;
@@ -93,6 +101,10 @@ public class TotalMode extends AggrFunction
         private Object mode;
 		private int maxCount;
 		private boolean multiMaxValue;
+		// the counts spilled when the map is full, the entries of a spilled
+		// map are ordered by the first appearances of their values
+		private SortedValueRuns runs = new ModeEntryRuns( );
+		private long spilledEntries;
 
         public void start()
         {
@@ -101,6 +113,8 @@ public class TotalMode extends AggrFunction
             mode = null;
             cacheMap = new LinkedHashMap();
             multiMaxValue = false;
+            runs.reset( );
+            spilledEntries = 0;
         }
 
         /*
@@ -133,14 +147,114 @@ public class TotalMode extends AggrFunction
 				{
 					multiMaxValue = true;
 				}
+				if ( cacheMap.size( ) >= SortedValueRuns.getBufferSize( ) )
+				{
+					ModeEntry[] entries = toEntries( );
+					runs.spill( entries, entries.length );
+					cacheMap.clear( );
+				}
             }
         }
 
         public void finish() throws DataException
         {
+        	if ( runs.hasRuns( ) )
+        	{
+        		findSpilledMode( );
+        		cacheMap = null;
+        	}
             super.finish();
         }
 
+        /**
+         * Converts the counts in the map to the entries in the order of the
+         * first appearances of the values.
+         * 
+         * @return
+         * @throws DataException
+         */
+        private ModeEntry[] toEntries( ) throws DataException
+		{
+			ModeEntry[] entries = new ModeEntry[cacheMap.size( )];
+			int index = 0;
+			for ( Iterator i = cacheMap.entrySet( ).iterator( ); i.hasNext( ); )
+			{
+				Map.Entry entry = (Map.Entry) i.next( );
+				if ( !( entry.getKey( ) instanceof Comparable ) )
+					throw new DataException( ResourceConstants.UNSUPPORTED_DATA_TYPE,
+							entry.getKey( ).getClass( ).getName( ) );
+				entries[index++] = new ModeEntry( entry.getKey( ),
+						( (Integer) entry.getValue( ) ).intValue( ),
+						spilledEntries++ );
+			}
+			return entries;
+		}
+
+        /**
+         * Sums the counts of each value by reading the spilled entries and
+         * the entries of the map in sorted order. The mode is the value of
+         * the max count which appears first.
+         * 
+         * @throws DataException
+         */
+        private void findSpilledMode( ) throws DataException
+		{
+			ModeEntry[] entries = toEntries( );
+			SortedValueRuns.ValueReader reader = runs.read( entries,
+					entries.length );
+			maxCount = 0;
+			mode = null;
+			long modeOrder = Long.MAX_VALUE;
+			try
+			{
+				// the values which are equal in the order but may not be
+				// equal to each other
+				Map equalValues = new HashMap( );
+				ModeEntry previous = null;
+				ModeEntry entry;
+				while ( true )
+				{
+					entry = (ModeEntry) reader.next( );
+					if ( previous != null
+							&& ( entry == null || SortedValueRuns.TYPED_ORDER.compare( previous.value,
+									entry.value ) != 0 ) )
+					{
+						for ( Iterator i = equalValues.values( ).iterator( ); i.hasNext( ); )
+						{
+							ModeEntry sum = (ModeEntry) i.next( );
+							if ( sum.count > maxCount
+									|| ( sum.count == maxCount && sum.order < modeOrder ) )
+							{
+								mode = sum.value;
+								maxCount = sum.count;
+								modeOrder = sum.order;
+							}
+						}
+						equalValues.clear( );
+					}
+					if ( entry == null )
+						break;
+					ModeEntry sum = (ModeEntry) equalValues.get( entry.value );
+					if ( sum == null )
+					{
+						equalValues.put( entry.value, entry );
+					}
+					else
+					{
+						sum.count += entry.count;
+						sum.order = Math.min( sum.order, entry.order );
+					}
+					previous = entry;
+				}
+			}
+			finally
+			{
+				reader.close( );
+				runs.reset( );
+			}
+			multiMaxValue = false;
+		}
+
         /*
          * (non-Javadoc)
          * 
@@ -173,6 +287,56 @@ public class TotalMode extends AggrFunction
 
     }
 
+    /**
+     * The count of a value and the order of its first appearance.
+     */
+    private static class ModeEntry
+	{
+
+		Object value;
+		int count;
+		long order;
+
+		ModeEntry( Object value, int count, long order )
+		{
+			this.value = value;
+			this.count = count;
+			this.order = order;
+		}
+	}
+
+    private static class ModeEntryRuns extends SortedValueRuns
+	{
+
+		ModeEntryRuns( )
+		{
+			super( new Comparator( ) {
+
+				public int compare( Object o1, Object o2 )
+				{
+					return TYPED_ORDER.compare( ( (ModeEntry) o1 ).value,
+							( (ModeEntry) o2 ).value );
+				}
+			} );
+		}
+
+		protected void writeValue( DataOutputStream dos, Object value )
+				throws IOException
+		{
+			ModeEntry entry = (ModeEntry) value;
+			IOUtil.writeObject( dos, entry.value );
+			IOUtil.writeInt( dos, entry.count );
+			IOUtil.writeLong( dos, entry.order );
+		}
+
+		protected Object readValue( DataInputStream dis ) throws IOException
+		{
+			Object value = IOUtil.readObject( dis );
+			int count = IOUtil.readInt( dis );
+			return new ModeEntry( value, count, IOUtil.readLong( dis ) );
+		}
+	}
+
     /*
      * (non-Javadoc)
      * @see org.eclipse.birt.data.engine.api.aggregation.IAggrFunction#getDescription()
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.aggregation.impl.rank;
+
+import org.eclipse.birt.data.aggregation.calculator.ICalculator;
+import org.eclipse.birt.data.aggregation.impl.SummaryAccumulator;
+import org.eclipse.birt.data.aggregation.impl.sketch.TDigest;
+import org.eclipse.birt.data.engine.core.DataException;
+
+/**
+ * Accumulator that is used by ApproxPercentile and ApproxQuartile. The values
+ * are summarized in a t-digest, the estimated percentile follows the same
+ * convention as PercentileAccumulator and is exact for a small number of
+ * values.
+ */
+abstract class ApproxPercentileAccumulator extends SummaryAccumulator
+{
+
+	private double pct;
+	private TDigest digest;
+
+	public ApproxPercentileAccumulator( ICalculator calc )
+	{
+		super( calc );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.aggregation.SummaryAccumulator#start()
+	 */
+	public void start( )
+	{
+		super.start( );
+
+		pct = -1D;
+		digest = new TDigest( );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.eclipse.birt.data.engine.aggregation.Accumulator#onRow(java.lang.Object[])
+	 */
+	public void onRow( Object[] args ) throws DataException
+	{
+		assert ( args.length == 2 );
+		if ( args[0] != null )
+		{
+			Object value = calculator.getTypedObject( args[0] );
+			if ( value instanceof Number )
+				digest.add( ( (Number) value ).doubleValue( ) );
+		}
+		if ( pct == -1 )
+		{
+			Double pctValue = RankAggregationUtil.getNumericValue( args[1] );
+			pct = getPctValue( pctValue );
+		}
+	}
+
+	protected abstract double getPctValue( Double d ) throws DataException;
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.eclipse.birt.data.engine.aggregation.SummaryAccumulator#getSummaryValue()
+	 */
+	public Object getSummaryValue( ) throws DataException
+	{
+		if ( digest.size( ) == 0 )
+		{
+			return null;
+		}
+		return Double.valueOf( digest.quantile( pct ) );
+	}
+
+}
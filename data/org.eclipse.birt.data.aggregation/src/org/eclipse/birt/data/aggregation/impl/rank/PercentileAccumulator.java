@@ -18,6 +18,7 @@ import org.eclipse.birt.data.aggregation.calculator.CalculatorFactory;
 import org.eclipse.birt.data.aggregation.calculator.ICalculator;
 import org.eclipse.birt.data.aggregation.i18n.ResourceConstants;
 import org.eclipse.birt.data.aggregation.impl.AggrException;
+import org.eclipse.birt.data.aggregation.impl.SortedValueRuns;
 import org.eclipse.birt.data.aggregation.impl.SummaryAccumulator;
 import org.eclipse.birt.data.engine.core.DataException;
 
@@ -41,6 +42,11 @@ abstract class PercentileAccumulator extends SummaryAccumulator
 	//
 	private Double pct;
 	private List cachedValues;
+	// the values spilled when the list is full
+	private SortedValueRuns runs = new SortedValueRuns( new ValueComparator( ) );
+	// the value computed from the spilled values when the accumulator finishes
+	private Object spilledValue;
+	private boolean spilled;
 
 	public PercentileAccumulator( ICalculator calc )
 	{
@@ -56,6 +62,9 @@ abstract class PercentileAccumulator extends SummaryAccumulator
 
 		pct = -1D;
 		cachedValues = new ArrayList( );
+		runs.reset( );
+		spilledValue = null;
+		spilled = false;
 	}
 
 	/*
@@ -71,6 +80,18 @@ abstract class PercentileAccumulator extends SummaryAccumulator
 			Number d = calculator.add( calculator.getTypedObject( 0 ), calculator.getTypedObject( args[0] ) );
 			if ( d != null )
 				cachedValues.add( d );
+			if ( cachedValues.size( ) >= SortedValueRuns.getBufferSize( ) )
+			{
+				try
+				{
+					runs.spill( cachedValues.toArray( ), cachedValues.size( ) );
+				}
+				catch ( DataComparisonException e )
+				{
+					throw e.getWrappedException( );
+				}
+				cachedValues.clear( );
+			}
 		}
 		if ( pct == -1 )
 		{
@@ -81,6 +102,33 @@ abstract class PercentileAccumulator extends SummaryAccumulator
 
 	protected abstract double getPctValue( Double d ) throws DataException;
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.eclipse.birt.data.engine.aggregation.SummaryAccumulator#finish()
+	 */
+	public void finish( ) throws DataException
+	{
+		if ( runs.hasRuns( ) )
+		{
+			try
+			{
+				spilledValue = getSpilledSummaryValue( );
+			}
+			catch ( DataComparisonException e )
+			{
+				throw e.getWrappedException( );
+			}
+			finally
+			{
+				cachedValues = new ArrayList( );
+				runs.reset( );
+			}
+			spilled = true;
+		}
+		super.finish( );
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -88,6 +136,10 @@ abstract class PercentileAccumulator extends SummaryAccumulator
 	 */
 	public Object getSummaryValue( ) throws DataException
 	{
+		if ( spilled )
+		{
+			return spilledValue;
+		}
 		Object[] sortedObjs = this.cachedValues.toArray( );
 		if ( sortedObjs.length == 0 )
 		{
@@ -108,4 +160,41 @@ abstract class PercentileAccumulator extends SummaryAccumulator
 		return calculator.add( calculator.getTypedObject( sortedObjs[k - 1] ), calculator.getTypedObject( adjustment ) );
 	}
 
+	/**
+	 * Reads the spilled values and the cached values in sorted order up to
+	 * the k-th value and the next one.
+	 * 
+	 * @return
+	 * @throws DataException
+	 */
+	private Object getSpilledSummaryValue( ) throws DataException
+	{
+		long size = runs.size( ) + cachedValues.size( );
+		double n = pct * ( size - 1 ) + 1;
+		long k = (long) Math.floor( n );
+		double fraction = n - k;
+
+		SortedValueRuns.ValueReader reader = runs.read( cachedValues.toArray( ),
+				cachedValues.size( ) );
+		try
+		{
+			for ( long i = 1; i < k; i++ )
+			{
+				reader.next( );
+			}
+			Object value = reader.next( );
+			Number adjustment = 0;
+			if ( fraction != 0 )
+			{
+				adjustment = calculator.multiply( calculator.getTypedObject( fraction ),
+						calculator.subtract( calculator.getTypedObject( reader.next( ) ), calculator.getTypedObject( value ) ) );
+			}
+			return calculator.add( calculator.getTypedObject( value ), calculator.getTypedObject( adjustment ) );
+		}
+		finally
+		{
+			reader.close( );
+		}
+	}
+
 }
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.aggregation.impl.rank;
+
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.data.aggregation.api.IBuildInAggregation;
+import org.eclipse.birt.data.aggregation.calculator.CalculatorFactory;
+import org.eclipse.birt.data.aggregation.calculator.ICalculator;
+import org.eclipse.birt.data.aggregation.i18n.Messages;
+import org.eclipse.birt.data.aggregation.i18n.ResourceConstants;
+import org.eclipse.birt.data.aggregation.impl.AggrException;
+import org.eclipse.birt.data.aggregation.impl.AggrFunction;
+import org.eclipse.birt.data.aggregation.impl.Constants;
+import org.eclipse.birt.data.aggregation.impl.ParameterDefn;
+import org.eclipse.birt.data.aggregation.impl.SupportedDataTypes;
+import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
+import org.eclipse.birt.data.engine.api.aggregation.IParameterDefn;
+import org.eclipse.birt.data.engine.core.DataException;
+
+/**
+ * Implements the built-in Total.ApproxPercentile aggregation, which estimates the
+ * percentile in a t-digest of a bounded size.
+ */
+public class TotalApproxPercentile extends AggrFunction
+{
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.eclipse.birt.data.engine.aggregation.Aggregation#getName()
+	 */
+	public String getName( )
+	{
+		return IBuildInAggregation.TOTAL_APPROX_PERCENTILE_FUNC;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.eclipse.birt.data.engine.aggregation.Aggregation#getType()
+	 */
+	public int getType( )
+	{
+		return SUMMARY_AGGR;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.eclipse.birt.data.engine.api.aggregation.IAggregation#getDataType()
+	 */
+	public int getDataType( )
+	{
+		return DataType.DOUBLE_TYPE;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.eclipse.birt.data.engine.aggregation.Aggregation#getParameterDefn()
+	 */
+	public IParameterDefn[] getParameterDefn( )
+	{
+		return new IParameterDefn[]{
+				new ParameterDefn( Constants.EXPRESSION_NAME,
+						Constants.EXPRESSION_DISPLAY_NAME,
+						false,
+						true,
+						SupportedDataTypes.CALCULATABLE,
+						"" ), //$NON-NLS-1$
+				new ParameterDefn( "percentage", Messages.getString( "TotalPercentile.param.percentage" ), false, false, SupportedDataTypes.CALCULATABLE, "" ) //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		};
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.eclipse.birt.data.engine.aggregation.Aggregation#newAccumulator()
+	 */
+	public Accumulator newAccumulator( )
+	{
+		return new MyAccumulator( CalculatorFactory.getCalculator( getDataType( ) ) );
+	}
+
+	private static class MyAccumulator extends ApproxPercentileAccumulator
+	{
+		MyAccumulator( ICalculator calc )
+		{
+			super( calc );
+		}
+
+		protected double getPctValue( Double d ) throws DataException
+		{
+			if ( d == null )
+				throw DataException.wrap( new AggrException( ResourceConstants.INVALID_PERCENTILE_ARGUMENT ) );
+			double pct = d.doubleValue( );
+			if ( pct < 0 || pct > 1 )
+				throw DataException.wrap( new AggrException( ResourceConstants.INVALID_PERCENTILE_ARGUMENT ) );
+			return pct;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.eclipse.birt.data.engine.api.aggregation.IAggrFunction#getDescription()
+	 */
+	public String getDescription( )
+	{
+		return Messages.getString( "TotalApproxPercentile.description" ); //$NON-NLS-1$
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.eclipse.birt.data.engine.api.aggregation.IAggrFunction#getDisplayName()
+	 */
+	public String getDisplayName( )
+	{
+		return Messages.getString( "TotalApproxPercentile.displayName" ); //$NON-NLS-1$
+	}
+}
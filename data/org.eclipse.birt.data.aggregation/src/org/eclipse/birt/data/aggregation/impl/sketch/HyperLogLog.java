@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.aggregation.impl.sketch;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * HyperLogLog sketch that estimates the number of distinct values in a fixed
+ * number of registers. With the default precision the sketch takes 4K bytes
+ * and the standard error of the estimate is about 1.6%. Two sketches of the
+ * same precision can be merged, the result is the sketch of both the value
+ * sets.
+ */
+public class HyperLogLog
+{
+
+	public static final int DEFAULT_PRECISION = 12;
+
+	private final int precision;
+	private final byte[] registers;
+
+	public HyperLogLog( )
+	{
+		this( DEFAULT_PRECISION );
+	}
+
+	/**
+	 *
+	 * @param precision
+	 *            the number of index bits, there are 2^precision registers
+	 */
+	public HyperLogLog( int precision )
+	{
+		if ( precision < 4 || precision > 18 )
+			throw new IllegalArgumentException( "precision: " + precision ); //$NON-NLS-1$
+		this.precision = precision;
+		this.registers = new byte[1 << precision];
+	}
+
+	/**
+	 *
+	 * @param value
+	 *            a non-null value
+	 */
+	public void add( Object value )
+	{
+		addHash( hash( value ) );
+	}
+
+	/**
+	 *
+	 * @param hash
+	 *            the 64 bits hash of a value
+	 */
+	public void addHash( long hash )
+	{
+		int index = (int) ( hash >>> ( 64 - precision ) );
+		// the position of the first 1 bit in the rest bits, the appended 1
+		// bit limits it
+		long rest = ( hash << precision ) | ( 1L << ( precision - 1 ) );
+		byte rank = (byte) ( Long.numberOfLeadingZeros( rest ) + 1 );
+		if ( rank > registers[index] )
+			registers[index] = rank;
+	}
+
+	/**
+	 * Adds the values of another sketch to this one.
+	 *
+	 * @param other
+	 */
+	public void merge( HyperLogLog other )
+	{
+		if ( other.precision != precision )
+			throw new IllegalArgumentException( "precision: " + other.precision ); //$NON-NLS-1$
+		for ( int i = 0; i < registers.length; i++ )
+		{
+			if ( other.registers[i] > registers[i] )
+				registers[i] = other.registers[i];
+		}
+	}
+
+	/**
+	 *
+	 * @return the estimated number of distinct values
+	 */
+	public long cardinality( )
+	{
+		int m = registers.length;
+		double sum = 0;
+		int zeros = 0;
+		for ( int i = 0; i < m; i++ )
+		{
+			sum += 1.0 / ( 1L << registers[i] );
+			if ( registers[i] == 0 )
+				zeros++;
+		}
+		double estimate = alpha( m ) * m * m / sum;
+		if ( estimate <= 2.5 * m && zeros > 0 )
+		{
+			// linear counting is more accurate for small cardinalities
+			estimate = m * Math.log( (double) m / zeros );
+		}
+		return Math.round( estimate );
+	}
+
+	/**
+	 *
+	 * @return the precision of the sketch
+	 */
+	public int getPrecision( )
+	{
+		return precision;
+	}
+
+	private static double alpha( int m )
+	{
+		switch ( m )
+		{
+			case 16 :
+				return 0.673;
+			case 32 :
+				return 0.697;
+			case 64 :
+				return 0.709;
+			default :
+				return 0.7213 / ( 1 + 1.079 / m );
+		}
+	}
+
+	/**
+	 * Returns the 64 bits hash of a value. The equal values of the same type
+	 * have the same hash.
+	 *
+	 * @param value
+	 * @return
+	 */
+	public static long hash( Object value )
+	{
+		long h;
+		if ( value instanceof String )
+		{
+			String s = (String) value;
+			h = 0xcbf29ce484222325L;
+			for ( int i = 0; i < s.length( ); i++ )
+			{
+				h ^= s.charAt( i );
+				h *= 0x100000001b3L;
+			}
+		}
+		else if ( value instanceof Double || value instanceof Float )
+		{
+			h = Double.doubleToLongBits( ( (Number) value ).doubleValue( ) );
+		}
+		else if ( value instanceof BigDecimal )
+		{
+			h = ( (BigDecimal) value ).stripTrailingZeros( ).hashCode( );
+		}
+		else if ( value instanceof Number )
+		{
+			h = ( (Number) value ).longValue( );
+		}
+		else if ( value instanceof Date )
+		{
+			h = ( (Date) value ).getTime( );
+		}
+		else
+		{
+			h = value.hashCode( );
+		}
+		return mix( h ^ value.getClass( ).getName( ).hashCode( ) );
+	}
+
+	/**
+	 * The finalizer of MurmurHash3 which spreads the bits of a value over the
+	 * 64 bits.
+	 */
+	private static long mix( long h )
+	{
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
@@ -0,0 +1,254 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.aggregation.impl.sketch;
+
+import java.util.Arrays;
+
+/**
+ * t-digest sketch that estimates the quantiles of a set of values. The values
+ * are merged into centroids sorted by their means, a centroid near the median
+ * may hold many values while the centroids at the tails hold few, so the
+ * estimates of the extreme quantiles are the most accurate. The number of
+ * centroids is bounded by about the compression. Two digests can be merged,
+ * the result is the digest of both the value sets.
+ *
+ * When no values have been merged into a centroid yet, the quantiles are
+ * exact and interpolated between the closest ranks as the Percentile
+ * aggregation does.
+ */
+public class TDigest
+{
+
+	public static final double DEFAULT_COMPRESSION = 100;
+
+	private final double compression;
+
+	// the centroids sorted by their means
+	private double[] means;
+	private double[] weights;
+	private int centroidCount;
+
+	// the values not merged into the centroids yet
+	private double[] buffer;
+	private int bufferSize;
+
+	private double totalWeight;
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+
+	public TDigest( )
+	{
+		this( DEFAULT_COMPRESSION );
+	}
+
+	/**
+	 *
+	 * @param compression
+	 *            the larger it is, the more accurate the estimates are
+	 */
+	public TDigest( double compression )
+	{
+		if ( compression < 10 )
+			throw new IllegalArgumentException( "compression: " + compression ); //$NON-NLS-1$
+		this.compression = compression;
+		int capacity = (int) Math.ceil( compression * 2 ) + 10;
+		this.means = new double[capacity];
+		this.weights = new double[capacity];
+		this.buffer = new double[capacity * 5];
+	}
+
+	/**
+	 *
+	 * @param value
+	 */
+	public void add( double value )
+	{
+		if ( Double.isNaN( value ) )
+			return;
+		if ( bufferSize == buffer.length )
+			compress( );
+		buffer[bufferSize++] = value;
+		totalWeight++;
+		min = Math.min( min, value );
+		max = Math.max( max, value );
+	}
+
+	/**
+	 * Adds the values of another digest to this one.
+	 *
+	 * @param other
+	 */
+	public void merge( TDigest other )
+	{
+		if ( other.totalWeight == 0 )
+			return;
+		other.compress( );
+		compress( );
+		totalWeight += other.totalWeight;
+		min = Math.min( min, other.min );
+		max = Math.max( max, other.max );
+		mergeCentroids( other.means, other.weights, other.centroidCount );
+	}
+
+	/**
+	 *
+	 * @return the number of values
+	 */
+	public long size( )
+	{
+		return (long) totalWeight;
+	}
+
+	/**
+	 * Returns the estimated value at the specified quantile, the value at
+	 * rank q * ( n - 1 ) of the n sorted values.
+	 *
+	 * @param q
+	 *            between 0 and 1
+	 * @return the estimated value, or NaN if there are no values
+	 */
+	public double quantile( double q )
+	{
+		if ( q < 0 || q > 1 )
+			throw new IllegalArgumentException( "q: " + q ); //$NON-NLS-1$
+		if ( totalWeight == 0 )
+			return Double.NaN;
+		compress( );
+
+		double rank = q * ( totalWeight - 1 );
+		// the centroids are placed at the middle of the ranks of their values
+		double prevRank = 0;
+		double prevMean = min;
+		double cumulative = 0;
+		for ( int i = 0; i < centroidCount; i++ )
+		{
+			double centerRank = cumulative + ( weights[i] - 1 ) / 2;
+			if ( rank <= centerRank )
+			{
+				return interpolate( rank, prevRank, prevMean, centerRank, means[i] );
+			}
+			prevRank = centerRank;
+			prevMean = means[i];
+			cumulative += weights[i];
+		}
+		return interpolate( rank, prevRank, prevMean, totalWeight - 1, max );
+	}
+
+	/**
+	 *
+	 * @return the number of centroids
+	 */
+	public int getCentroidCount( )
+	{
+		compress( );
+		return centroidCount;
+	}
+
+	private static double interpolate( double rank, double rank1,
+			double value1, double rank2, double value2 )
+	{
+		if ( rank2 <= rank1 )
+			return value2;
+		return value1 + ( rank - rank1 ) / ( rank2 - rank1 ) * ( value2 - value1 );
+	}
+
+	/**
+	 * The scale function which is steep at the tails, so the centroids there
+	 * hold fewer values. It ranges over compression / 2.
+	 */
+	private double scale( double q )
+	{
+		return compression / ( 2 * Math.PI ) * Math.asin( 2 * q - 1 );
+	}
+
+	/**
+	 * Merges the buffered values into the centroids.
+	 */
+	private void compress( )
+	{
+		if ( bufferSize == 0 )
+			return;
+		Arrays.sort( buffer, 0, bufferSize );
+		double[] bufferWeights = new double[bufferSize];
+		Arrays.fill( bufferWeights, 1 );
+		int size = bufferSize;
+		bufferSize = 0;
+		mergeCentroids( buffer, bufferWeights, size );
+	}
+
+	/**
+	 * Merges the sorted centroids with the centroids of this digest. Two
+	 * adjacent centroids are combined if the quantiles of the result span at
+	 * most 1 in the scale of the digest. The total weight should include the
+	 * weights of the new centroids.
+	 */
+	private void mergeCentroids( double[] otherMeans, double[] otherWeights,
+			int otherCount )
+	{
+		int count = centroidCount + otherCount;
+		double[] resultMeans = new double[Math.max( means.length, count )];
+		double[] resultWeights = new double[resultMeans.length];
+		int resultCount = 0;
+		double weightSoFar = 0;
+
+		int i = 0, j = 0;
+		while ( i < centroidCount || j < otherCount )
+		{
+			double mean, weight;
+			if ( j >= otherCount
+					|| ( i < centroidCount && means[i] <= otherMeans[j] ) )
+			{
+				mean = means[i];
+				weight = weights[i];
+				i++;
+			}
+			else
+			{
+				mean = otherMeans[j];
+				weight = otherWeights[j];
+				j++;
+			}
+
+			if ( resultCount > 0 )
+			{
+				int last = resultCount - 1;
+				double merged = resultWeights[last] + weight;
+				double qLeft = weightSoFar / totalWeight;
+				double qRight = Math.min( 1, ( weightSoFar + merged )
+						/ totalWeight );
+				if ( scale( qRight ) - scale( qLeft ) <= 1 )
+				{
+					resultMeans[last] += ( mean - resultMeans[last] )
+							* weight / merged;
+					resultWeights[last] = merged;
+					continue;
+				}
+				weightSoFar += resultWeights[last];
+			}
+			resultMeans[resultCount] = mean;
+			resultWeights[resultCount] = weight;
+			resultCount++;
+		}
+
+		if ( resultCount > means.length )
+		{
+			means = resultMeans;
+			weights = resultWeights;
+		}
+		else
+		{
+			System.arraycopy( resultMeans, 0, means, 0, resultCount );
+			System.arraycopy( resultWeights, 0, weights, 0, resultCount );
+		}
+		centroidCount = resultCount;
+	}
+}
@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.aggregation;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.eclipse.birt.data.aggregation.impl.sketch.HyperLogLog;
+import org.eclipse.birt.data.aggregation.impl.sketch.TDigest;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the sketches behind the approximate aggregations
+ */
+public class SketchTest
+{
+
+	@Test
+	public void testHyperLogLogCardinality( )
+	{
+		HyperLogLog sketch = new HyperLogLog( );
+		assertEquals( 0, sketch.cardinality( ) );
+		for ( int i = 0; i < 1000; i++ )
+		{
+			sketch.add( Integer.valueOf( i % 100 ) );
+		}
+		assertEquals( 100, sketch.cardinality( ), 2 );
+
+		for ( int i = 0; i < 1000000; i++ )
+		{
+			sketch.add( "value" + i );
+		}
+		assertEquals( 1000100, sketch.cardinality( ), 1000100 * 0.05 );
+	}
+
+	@Test
+	public void testHyperLogLogMerge( )
+	{
+		HyperLogLog sketch1 = new HyperLogLog( );
+		HyperLogLog sketch2 = new HyperLogLog( );
+		for ( int i = 0; i < 100000; i++ )
+		{
+			sketch1.add( Long.valueOf( i ) );
+			sketch2.add( Long.valueOf( i + 50000 ) );
+		}
+		sketch1.merge( sketch2 );
+		assertEquals( 150000, sketch1.cardinality( ), 150000 * 0.05 );
+
+		try
+		{
+			sketch1.merge( new HyperLogLog( 10 ) );
+			fail( "should not arrive here" );
+		}
+		catch ( IllegalArgumentException e )
+		{
+		}
+	}
+
+	@Test
+	public void testTDigestSmall( )
+	{
+		TDigest digest = new TDigest( );
+		assertTrue( Double.isNaN( digest.quantile( 0.5 ) ) );
+		for ( int i = 10; i >= 1; i-- )
+		{
+			digest.add( i );
+		}
+		assertEquals( 10, digest.size( ) );
+		assertEquals( 1, digest.quantile( 0 ), 0 );
+		assertEquals( 3.25, digest.quantile( 0.25 ), 0 );
+		assertEquals( 5.5, digest.quantile( 0.5 ), 0 );
+		assertEquals( 9.1, digest.quantile( 0.9 ), 1E-9 );
+		assertEquals( 10, digest.quantile( 1 ), 0 );
+	}
+
+	@Test
+	public void testTDigestLarge( )
+	{
+		TDigest digest = new TDigest( );
+		Random random = new Random( 0 );
+		double[] values = new double[1000000];
+		for ( int i = 0; i < values.length; i++ )
+		{
+			values[i] = random.nextGaussian( );
+			digest.add( values[i] );
+		}
+		Arrays.sort( values );
+		double[] qs = new double[]{
+				0.01, 0.25, 0.5, 0.75, 0.99
+		};
+		for ( int i = 0; i < qs.length; i++ )
+		{
+			double expected = values[(int) ( qs[i] * ( values.length - 1 ) )];
+			assertEquals( expected, digest.quantile( qs[i] ), 0.01 );
+		}
+		assertEquals( values[0], digest.quantile( 0 ), 0 );
+		assertEquals( values[values.length - 1], digest.quantile( 1 ), 0 );
+		// the memory is bounded
+		assertTrue( digest.getCentroidCount( ) <= TDigest.DEFAULT_COMPRESSION );
+	}
+
+	@Test
+	public void testTDigestMerge( )
+	{
+		TDigest digest1 = new TDigest( );
+		TDigest digest2 = new TDigest( );
+		for ( int i = 0; i < 100000; i++ )
+		{
+			digest1.add( i );
+			digest2.add( i + 100000 );
+		}
+		digest1.merge( digest2 );
+		assertEquals( 200000, digest1.size( ) );
+		assertEquals( 100000, digest1.quantile( 0.5 ), 200 );
+		assertEquals( 20000, digest1.quantile( 0.1 ), 200 );
+		assertEquals( 199999, digest1.quantile( 1 ), 0 );
+	}
+}
@@ -12,6 +12,7 @@ import org.eclipse.birt.data.aggregation.api.IBuildInAggregation;
 import org.eclipse.birt.data.aggregation.impl.BuildInAggregationFactory;
 import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
 import org.eclipse.birt.data.engine.api.aggregation.IAggrFunction;
+import org.eclipse.birt.data.engine.cache.Constants;
 import org.eclipse.birt.data.engine.core.DataException;
 
 import org.junit.After;
@@ -2237,6 +2238,242 @@ public class TotalTest {
         assertTrue( ret instanceof Double );
         assertEquals( 4.0D, ret );
      }
+
+	@Test
+    public void testTotalSpilledValues() throws Exception
+    {
+        Object[] values = new Object[1000];
+        Object[] mixedValues = new Object[1000];
+        for(int i=0; i<values.length; i++)
+        {
+            values[i] = new Double((i * 37) % 101);
+            mixedValues[i] = i % 3 == 0 ? (Object) String.valueOf(i % 7)
+                    : (i % 3 == 1 ? (Object) new Integer(i % 11) : new Double(i % 13));
+        }
+        String[] names = {"median", "mode", "countdistinct"};
+        int bufferSize = Constants.AGGREGATION_BUFFER_SIZE;
+        for(int i=0; i<names.length; i++)
+        {
+            IAggrFunction ag = buildInAggrFactory.getAggregation(names[i]);
+            Object[][] arrays = names[i].equals("median") ? new Object[][]{
+                    values, doubleArray3} : new Object[][]{values, mixedValues, anyObjectArray2};
+            for(int j=0; j<arrays.length; j++)
+            {
+                Object expected = aggregate(ag, arrays[j], null);
+                try
+                {
+                    // the values are spilled into many sorted runs
+                    Constants.AGGREGATION_BUFFER_SIZE = 3;
+                    assertEquals(expected, aggregate(ag, arrays[j], null));
+                }
+                finally
+                {
+                    Constants.AGGREGATION_BUFFER_SIZE = bufferSize;
+                }
+            }
+        }
+
+        IAggrFunction ag = buildInAggrFactory.getAggregation("percentile");
+        double[] pcts = {0, 0.1, 0.5, 0.75, 1};
+        for(int i=0; i<pcts.length; i++)
+        {
+            Object expected = aggregate(ag, values, new Double(pcts[i]));
+            try
+            {
+                Constants.AGGREGATION_BUFFER_SIZE = 7;
+                assertEquals(expected, aggregate(ag, values, new Double(pcts[i])));
+            }
+            finally
+            {
+                Constants.AGGREGATION_BUFFER_SIZE = bufferSize;
+            }
+        }
+
+        // the spilled values are released when the accumulator finishes, and
+        // it is reused by the next group
+        Object[][] groups = {values, doubleArray3};
+        Object[] expectedValues = new Object[groups.length];
+        for(int i=0; i<groups.length; i++)
+        {
+            expectedValues[i] = aggregate(ag, groups[i], new Double(0.5));
+        }
+        try
+        {
+            Constants.AGGREGATION_BUFFER_SIZE = 7;
+            Accumulator ac = ag.newAccumulator();
+            for(int i=0; i<groups.length; i++)
+            {
+                Object[] groupValues = groups[i];
+                Object expected = expectedValues[i];
+                ac.start();
+                for(int j=0; j<groupValues.length; j++)
+                {
+                    ac.onRow(new Object[]{groupValues[j], new Double(0.5)});
+                }
+                ac.finish();
+                assertEquals(expected, ac.getValue());
+                assertEquals(expected, ac.getValue());
+            }
+        }
+        finally
+        {
+            Constants.AGGREGATION_BUFFER_SIZE = bufferSize;
+        }
+    }
+
+    private static Object aggregate( IAggrFunction ag, Object[] values, Object arg ) throws Exception
+    {
+        Accumulator ac = ag.newAccumulator();
+        ac.start();
+        for(int i=0; i<values.length; i++)
+        {
+            ac.onRow(arg == null ? new Object[]{values[i]} : new Object[]{values[i], arg});
+        }
+        ac.finish();
+        return ac.getValue();
+    }
+
+	@Test
+    public void testTotalApproxCountDistinct() throws Exception
+    {
+        IAggrFunction ag = buildInAggrFactory.getAggregation("approxcountdistinct");
+        Accumulator ac = ag.newAccumulator();
+        assertEquals(IBuildInAggregation.TOTAL_APPROX_COUNTDISTINCT_FUNC, ag.getName());
+        assertEquals(IAggrFunction.SUMMARY_AGGR, ag.getType());
+        assertEquals(1, ag.getParameterDefn().length);
+        assertEquals(new Integer(0), ag.getDefaultValue());
+
+        // small cardinalities are counted exactly
+        ac.start();
+        for(int i=0; i<doubleArray1.length; i++)
+        {
+            ac.onRow(new Double[]{new Double(doubleArray1[i])});
+        }
+        ac.finish();
+        assertEquals(new Integer(9), ac.getValue());
+
+        ac.start();
+        for(int i=0; i<anyObjectArray2.length; i++)
+        {
+            ac.onRow(new Object[]{anyObjectArray2[i]});
+        }
+        ac.finish();
+        assertEquals(new Integer(8), ac.getValue());
+
+        ac.start();
+        for(int i=0; i<200000; i++)
+        {
+            ac.onRow(new Object[]{"value" + ( i % 100000 )});
+        }
+        ac.finish();
+        int count = ((Integer) ac.getValue()).intValue();
+        assertTrue(Math.abs(count - 100000) < 5000);
+    }
+
+	@Test
+    public void testTotalApproxMedian() throws Exception
+    {
+        IAggrFunction ag = buildInAggrFactory.getAggregation("approxmedian");
+        Accumulator ac = ag.newAccumulator();
+        assertEquals(IBuildInAggregation.TOTAL_APPROX_MEDIAN_FUNC, ag.getName());
+        assertEquals(IAggrFunction.SUMMARY_AGGR, ag.getType());
+        assertEquals(1, ag.getParameterDefn().length);
+
+        // same results as MEDIAN for a small number of values
+        ac.start();
+        for(int i=0; i<doubleArray1.length; i++)
+        {
+            ac.onRow(new Double[]{new Double(doubleArray1[i])});
+        }
+        ac.finish();
+        assertEquals(new Double(5.0), ac.getValue());
+
+        ac.start();
+        for(int i=0; i<str1.length; i++)
+        {
+            ac.onRow(new Object[]{str1[i]});
+        }
+        ac.finish();
+        assertEquals(new Double(3.5D), ac.getValue());
+
+        ac.start();
+        ac.finish();
+        assertEquals(null, ac.getValue());
+
+        ac.start();
+        for(int i=0; i<=100000; i++)
+        {
+            ac.onRow(new Object[]{new Integer((i * 7919) % 100001)});
+        }
+        ac.finish();
+        assertEquals(50000, ((Double) ac.getValue()).doubleValue(), 500);
+    }
+
+	@Test
+    public void testTotalApproxPercentile() throws Exception
+    {
+        IAggrFunction ag = buildInAggrFactory.getAggregation("approxpercentile");
+        Accumulator ac = ag.newAccumulator();
+        assertEquals(IBuildInAggregation.TOTAL_APPROX_PERCENTILE_FUNC, ag.getName());
+        assertEquals(IAggrFunction.SUMMARY_AGGR, ag.getType());
+        assertEquals(2, ag.getParameterDefn().length);
+        assertFalse( ag.getParameterDefn( )[1].isOptional( ) );
+
+        double[] pcts = {0, 0.1, 0.5, 0.9, 1};
+        IAggrFunction percentile = buildInAggrFactory.getAggregation("percentile");
+        Accumulator exact = percentile.newAccumulator();
+        for(int i=0; i<pcts.length; i++)
+        {
+            ac.start();
+            exact.start();
+            for(int j=0; j<doubleArray3.length; j++)
+            {
+                ac.onRow(new Object[]{doubleArray3[j], new Double(pcts[i])});
+                exact.onRow(new Object[]{doubleArray3[j], new Double(pcts[i])});
+            }
+            ac.finish();
+            exact.finish();
+            assertEquals(((Double) exact.getValue()).doubleValue(),
+                    ((Double) ac.getValue()).doubleValue(), 1E-9);
+        }
+
+        try{
+            ac.start();
+            ac.onRow(new Object[]{doubleArray3[0], new Double(1.5)});
+            fail("should not arrive here");
+        }catch ( DataException e )
+        {}
+    }
+
+	@Test
+    public void testTotalApproxQuartile() throws Exception
+    {
+        IAggrFunction ag = buildInAggrFactory.getAggregation("approxquartile");
+        Accumulator ac = ag.newAccumulator();
+        assertEquals(IBuildInAggregation.TOTAL_APPROX_QUARTILE_FUNC, ag.getName());
+        assertEquals(IAggrFunction.SUMMARY_AGGR, ag.getType());
+        assertEquals(2, ag.getParameterDefn().length);
+
+        double[] expected = {10, 12.5, 30, 85, 300};
+        for(int i=0; i<expected.length; i++)
+        {
+            ac.start();
+            for(int j=0; j<doubleArray3.length; j++)
+            {
+                ac.onRow(new Object[]{doubleArray3[j], new Double(i)});
+            }
+            ac.finish();
+            assertEquals(new Double(expected[i]), ac.getValue());
+        }
+
+        try{
+            ac.start();
+            ac.onRow(new Object[]{doubleArray3[0], new Double(5)});
+            fail("should not arrive here");
+        }catch ( DataException e )
+        {}
+    }
+
 	@Test
     public void testTotalRunningCount() throws Exception
     {
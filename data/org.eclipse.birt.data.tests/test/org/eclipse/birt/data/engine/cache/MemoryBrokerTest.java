@@ -0,0 +1,205 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.cache;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the reservation and spill policy of MemoryBroker
+ */
+public class MemoryBrokerTest
+{
+
+	private static final long MB = 1024 * 1024;
+
+	@Test
+	public void testReserveWithinLimit( )
+	{
+		MemoryBroker broker = new MemoryBroker( 10 * MB );
+		MemoryReservation reservation = broker.newReservation( "test" );
+		for ( int i = 0; i < 1000; i++ )
+		{
+			assertTrue( reservation.reserve( 1000 ) );
+		}
+		assertEquals( 1000 * 1000, reservation.getReservedSize( ) );
+		assertTrue( broker.getUsedMemory( ) >= 1000 * 1000 );
+		assertEquals( 1, broker.getConsumerCount( ) );
+
+		reservation.close( );
+		assertEquals( 0, broker.getUsedMemory( ) );
+		assertEquals( 0, broker.getConsumerCount( ) );
+	}
+
+	@Test
+	public void testRefuseLargestRequester( )
+	{
+		MemoryBroker broker = new MemoryBroker( 2 * MB );
+		MemoryReservation large = broker.newReservation( "large" );
+		MemoryReservation small = broker.newReservation( "small" );
+		assertTrue( small.reserve( MB / 2 ) );
+		assertTrue( large.reserve( MB ) );
+
+		// the requester is the largest consumer, so it has to spill itself
+		assertFalse( large.reserve( MB ) );
+		assertFalse( small.isSpillRequested( ) );
+		assertEquals( 0, broker.getSpillCount( ) );
+	}
+
+	@Test
+	public void testSpillLargestConsumerFirst( )
+	{
+		MemoryBroker broker = new MemoryBroker( 2 * MB );
+		MemoryReservation large = broker.newReservation( "large" );
+		MemoryReservation medium = broker.newReservation( "medium" );
+		MemoryReservation small = broker.newReservation( "small" );
+		assertTrue( large.reserve( MB ) );
+		assertTrue( medium.reserve( MB / 2 ) );
+
+		assertTrue( small.reserve( MB ) );
+		assertTrue( large.isSpillRequested( ) );
+		assertFalse( medium.isSpillRequested( ) );
+		assertEquals( 1, broker.getSpillCount( ) );
+
+		// the consumer asked to spill is refused until it releases its memory
+		assertFalse( large.reserve( 1 ) );
+		large.close( );
+		assertTrue( small.reserve( MB / 2 ) );
+	}
+
+	@Test
+	public void testNotSpillable( )
+	{
+		MemoryBroker broker = new MemoryBroker( 2 * MB );
+		MemoryReservation loaded = broker.newReservation( "loaded" );
+		MemoryReservation loading = broker.newReservation( "loading" );
+		assertTrue( loaded.reserve( MB + MB / 2 ) );
+		loaded.setSpillable( false );
+
+		assertTrue( loading.reserve( MB / 4 ) );
+		assertFalse( loading.reserve( MB ) );
+		assertFalse( loaded.isSpillRequested( ) );
+	}
+
+	@Test
+	public void testClearSpillRequest( )
+	{
+		MemoryBroker broker = new MemoryBroker( 2 * MB );
+		MemoryReservation large = broker.newReservation( "large" );
+		MemoryReservation medium = broker.newReservation( "medium" );
+		MemoryReservation small = broker.newReservation( "small" );
+		assertTrue( large.reserve( MB ) );
+		assertTrue( medium.reserve( MB / 2 ) );
+		assertTrue( small.reserve( MB ) );
+		assertTrue( large.isSpillRequested( ) );
+
+		// the request is cleared once the spilled memory is released
+		large.release( MB );
+		assertFalse( large.isSpillRequested( ) );
+		assertEquals( 3 * MB / 2, broker.getUsedMemory( ) );
+		assertTrue( large.reserve( MB / 4 ) );
+		assertTrue( small.reserve( MB / 4 ) );
+		assertEquals( 2 * MB, broker.getUsedMemory( ) );
+		assertEquals( 1, broker.getSpillCount( ) );
+	}
+
+	@Test
+	public void testKeepSpillRequestUntilTarget( )
+	{
+		MemoryBroker broker = new MemoryBroker( 2 * MB );
+		MemoryReservation large = broker.newReservation( "large" );
+		MemoryReservation medium = broker.newReservation( "medium" );
+		MemoryReservation small = broker.newReservation( "small" );
+		assertTrue( large.reserve( MB ) );
+		assertTrue( medium.reserve( MB / 2 ) );
+		assertTrue( small.reserve( MB ) );
+		assertTrue( large.isSpillRequested( ) );
+
+		// the broker is short of half a MB, a smaller release is not enough
+		large.release( MB / 4 );
+		assertTrue( large.isSpillRequested( ) );
+		assertFalse( large.reserve( 1 ) );
+		large.release( MB / 4 );
+		assertFalse( large.isSpillRequested( ) );
+		assertEquals( 2 * MB, broker.getUsedMemory( ) );
+	}
+
+	@Test
+	public void testAcknowledgeSpill( )
+	{
+		MemoryBroker broker = new MemoryBroker( 2 * MB );
+		MemoryReservation large = broker.newReservation( "large" );
+		MemoryReservation medium = broker.newReservation( "medium" );
+		MemoryReservation small = broker.newReservation( "small" );
+		assertTrue( large.reserve( MB ) );
+		assertTrue( medium.reserve( MB / 2 ) );
+		assertTrue( small.reserve( MB ) );
+		assertTrue( large.isSpillRequested( ) );
+
+		// the consumer can't spill the memory it still uses
+		large.acknowledgeSpill( );
+		assertFalse( large.isSpillRequested( ) );
+		assertEquals( MB, large.getReservedSize( ) );
+		assertEquals( 5 * MB / 2, broker.getUsedMemory( ) );
+	}
+
+	@Test
+	public void testDisabledBroker( )
+	{
+		MemoryBroker broker = new MemoryBroker( 0 );
+		assertFalse( broker.isEnabled( ) );
+		MemoryReservation reservation = broker.newReservation( "test" );
+		assertTrue( reservation.reserve( 10 * MB ) );
+		assertEquals( 10 * MB, broker.getUsedMemory( ) );
+		assertEquals( 0, broker.getSpillCount( ) );
+	}
+
+	@Test
+	public void testReleaseUnclosedReservation( )
+	{
+		MemoryBroker broker = new MemoryBroker( 10 * MB );
+		MemoryReservation reservation = broker.newReservation( "test" );
+		assertTrue( reservation.reserve( MB ) );
+
+		// as if the reservation is garbage collected
+		broker.enqueue( reservation );
+		assertEquals( 0, broker.getUsedMemory( ) );
+		assertEquals( 0, broker.getConsumerCount( ) );
+		assertFalse( reservation.reserve( 1 ) );
+	}
+
+	@Test
+	public void testTaskMemoryUsage( )
+	{
+		MemoryBroker broker = new MemoryBroker( 10 * MB );
+		Object task = new Object( ) {
+
+			public String toString( )
+			{
+				return "task";
+			}
+		};
+		MemoryReservation r1 = broker.newReservation( "r1", task );
+		MemoryReservation r2 = broker.newReservation( "r2", task );
+		MemoryReservation r3 = broker.newReservation( "r3" );
+		assertTrue( r1.reserve( MB ) );
+		assertTrue( r2.reserve( MB ) );
+		assertTrue( r3.reserve( MB ) );
+
+		// the reservations of one task are reported together, no matter which
+		// thread created them
+		String[] usage = broker.getTaskMemoryUsage( );
+		assertEquals( 2, usage.length );
+		assertEquals( "task: " + 2 * MB, usage[0] );
+		assertEquals( "r3: " + MB, usage[1] );
+	}
+}
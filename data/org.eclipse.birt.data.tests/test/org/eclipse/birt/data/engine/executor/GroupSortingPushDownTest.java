@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.birt.data.engine.api.APITestCase;
+import org.eclipse.birt.data.engine.api.DataEngine;
+import org.eclipse.birt.data.engine.api.IBinding;
+import org.eclipse.birt.data.engine.api.IResultIterator;
+import org.eclipse.birt.data.engine.api.ISortDefinition;
+import org.eclipse.birt.data.engine.api.querydefn.Binding;
+import org.eclipse.birt.data.engine.api.querydefn.GroupDefinition;
+import org.eclipse.birt.data.engine.api.querydefn.OdaDataSetDesign;
+import org.eclipse.birt.data.engine.api.querydefn.QueryDefinition;
+import org.eclipse.birt.data.engine.api.querydefn.ScriptExpression;
+import org.eclipse.birt.data.engine.executor.QueryExecutionStrategyUtil.Strategy;
+import org.eclipse.birt.data.engine.impl.DataEngineImpl;
+import org.eclipse.birt.data.engine.impl.DataEngineSession;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+import org.eclipse.datatools.connectivity.oda.IDataSetMetaData;
+import org.eclipse.datatools.connectivity.oda.SortSpec;
+
+import testutil.ConfigText;
+import testutil.JDBCOdaDataSource;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the group key sorting pushed down to the data source
+ */
+public class GroupSortingPushDownTest extends APITestCase
+{
+
+	protected DataSourceInfo getDataSourceInfo( )
+	{
+		return new DataSourceInfo( ConfigText.getString( "Api.TestData.TableName" ),
+				ConfigText.getString( "Api.TestData.TableSQL" ),
+				ConfigText.getString( "Api.TestData.TestDataFileName" ) );
+	}
+
+	/**
+	 * The groups are calculated while the rows are fetched if the rows arrive
+	 * in the pushed order, otherwise the rows are cached and sorted.
+	 */
+	@Test
+	public void testStreamingStrategy( ) throws Exception
+	{
+		QueryDefinition query = createQuery( "AMOUNT" );
+		DataEngineSession session = ( (DataEngineImpl) dataEngine ).getSession( );
+		assertEquals( Strategy.Complex,
+				QueryExecutionStrategyUtil.getQueryExecutionStrategy( session,
+						query,
+						dataSet ) );
+
+		List<ISortDefinition> sortHints = QueryExecutionStrategyUtil.getGroupSortingSequence( session,
+				query,
+				dataSet );
+		assertNotNull( sortHints );
+		assertTrue( Strategy.Complex != QueryExecutionStrategyUtil.getQueryExecutionStrategy( session,
+				query,
+				dataSet,
+				sortHints ) );
+	}
+
+	/**
+	 * Only the keys on the numeric, date and boolean columns are sorted by the
+	 * data source, and only if it is enabled.
+	 */
+	@Test
+	public void testGroupSortSpec( ) throws Exception
+	{
+		List<ResultFieldMetadata> columns = new ArrayList<ResultFieldMetadata>( );
+		columns.add( new ResultFieldMetadata( 1,
+				"COUNTRY",
+				"COUNTRY",
+				String.class,
+				null,
+				false ) );
+		columns.add( new ResultFieldMetadata( 2,
+				"AMOUNT",
+				"AMOUNT",
+				Integer.class,
+				null,
+				false ) );
+		IResultClass resultClass = new ResultClass( columns );
+		DataEngineSession session = ( (DataEngineImpl) dataEngine ).getSession( );
+
+		List<ISortDefinition> sortHints = QueryExecutionStrategyUtil.getGroupSortingSequence( session,
+				createQuery( "AMOUNT" ),
+				dataSet );
+		SortSpec sortSpec = DataSourceQuery.createGroupSortSpec( sortHints,
+				IDataSetMetaData.sortModeColumnOrder,
+				resultClass,
+				dataSet );
+		assertEquals( 1, sortSpec.getSortKeyCount( ) );
+		assertEquals( "AMOUNT", sortSpec.getSortColumn( 1 ) );
+		assertEquals( SortSpec.sortAsc, sortSpec.getSortOrder( 1 ) );
+		assertNull( DataSourceQuery.createGroupSortSpec( sortHints,
+				IDataSetMetaData.sortModeNone,
+				resultClass,
+				dataSet ) );
+
+		// the strings may be sorted in another collation
+		sortHints = QueryExecutionStrategyUtil.getGroupSortingSequence( session,
+				createQuery( "COUNTRY" ),
+				dataSet );
+		assertNull( DataSourceQuery.createGroupSortSpec( sortHints,
+				IDataSetMetaData.sortModeColumnOrder,
+				resultClass,
+				dataSet ) );
+
+		Map appContext = new HashMap( );
+		assertFalse( DataSourceQuery.isGroupSortingPushedDown( appContext,
+				session ) );
+		appContext.put( DataEngine.GROUP_SORTING_PUSH_DOWN, "true" );
+		assertTrue( DataSourceQuery.isGroupSortingPushedDown( appContext,
+				session ) );
+	}
+
+	/**
+	 * The groups calculated on the rows sorted by the data source are the
+	 * same as the groups calculated after the rows are cached and sorted.
+	 */
+	@Test
+	public void testGroupingMatchesSortedCache( ) throws Exception
+	{
+		DataEngineSession session = ( (DataEngineImpl) dataEngine ).getSession( );
+		List<ISortDefinition> sortHints = QueryExecutionStrategyUtil.getGroupSortingSequence( session,
+				createQuery( "AMOUNT" ),
+				dataSet );
+
+		// the rows sorted by the data source in the pushed order
+		OdaDataSetDesign sortedDataSet = new OdaDataSetDesign( "sortedDataSet" );
+		sortedDataSet.setDataSource( dataSource.getName( ) );
+		sortedDataSet.setQueryText( "select * from " + getTestTableName( )
+				+ " order by AMOUNT" );
+		sortedDataSet.setExtensionID( JDBCOdaDataSource.DATA_SET_TYPE );
+		for ( ISortDefinition sortHint : sortHints )
+		{
+			sortedDataSet.addSortHint( sortHint );
+		}
+		dataEngine.defineDataSet( sortedDataSet );
+
+		QueryDefinition sortedQuery = createQuery( "AMOUNT" );
+		sortedQuery.setDataSetName( sortedDataSet.getName( ) );
+		assertTrue( Strategy.Complex != QueryExecutionStrategyUtil.getQueryExecutionStrategy( session,
+				sortedQuery,
+				sortedDataSet ) );
+
+		assertEquals( getGroups( createQuery( "AMOUNT" ) ),
+				getGroups( sortedQuery ) );
+	}
+
+	private QueryDefinition createQuery( String column ) throws Exception
+	{
+		QueryDefinition query = newReportQuery( );
+		query.addBinding( new Binding( column, new ScriptExpression( "dataSetRow[\""
+				+ column + "\"]" ) ) );
+		GroupDefinition group = new GroupDefinition( "G1" );
+		group.setKeyExpression( "row[\"" + column + "\"]" );
+		query.addGroup( group );
+		IBinding count = new Binding( "COUNT" );
+		count.setAggrFunction( "COUNT" );
+		count.addAggregateOn( "G1" );
+		query.addBinding( count );
+		return query;
+	}
+
+	/**
+	 * @param query
+	 * @return the key and the row count of the groups in their order
+	 */
+	private List<String> getGroups( QueryDefinition query ) throws Exception
+	{
+		List<String> groups = new ArrayList<String>( );
+		IResultIterator result = executeQuery( query );
+		while ( result.next( ) )
+		{
+			if ( result.getStartingGroupLevel( ) <= 1 )
+			{
+				groups.add( result.getValue( "AMOUNT" ) + ":"
+						+ result.getValue( "COUNT" ) );
+			}
+		}
+		result.close( );
+		return groups;
+	}
+}
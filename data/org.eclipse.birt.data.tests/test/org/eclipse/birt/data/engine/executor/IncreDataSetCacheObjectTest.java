@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the segments of the incremental data set cache
+ */
+public class IncreDataSetCacheObjectTest
+{
+
+	private IncreDataSetCacheObject cacheObject;
+
+	@Before
+	public void increDataSetCacheObjectSetUp( )
+	{
+		cacheObject = new IncreDataSetCacheObject( System.getProperty( "java.io.tmpdir" ) );
+	}
+
+	@After
+	public void increDataSetCacheObjectTearDown( )
+	{
+		cacheObject.release( );
+	}
+
+	@Test
+	public void testAppendSegments( ) throws IOException
+	{
+		assertEquals( 0, cacheObject.getSegmentCount( ) );
+		assertEquals( "", read( cacheObject.openSegments( ) ) );
+		addSegment( "abc" );
+		addSegment( "de" );
+		// a segment which is not added is not read
+		File file = cacheObject.newSegmentFile( );
+		write( file, "x" );
+		assertEquals( 2, cacheObject.getSegmentCount( ) );
+		assertEquals( "abcde", read( cacheObject.openSegments( ) ) );
+		assertEquals( 5, cacheObject.getDataSize( ) );
+		cacheObject.addSegment( file );
+		assertEquals( "abcdex", read( cacheObject.openSegments( ) ) );
+	}
+
+	@Test
+	public void testCompactSegments( ) throws IOException
+	{
+		for ( int i = 0; i < 10; i++ )
+		{
+			addSegment( String.valueOf( i ) );
+		}
+		InputStream opened = cacheObject.openSegments( );
+		cacheObject.compactSegments( );
+		assertEquals( 1, cacheObject.getSegmentCount( ) );
+		assertEquals( "0123456789", read( cacheObject.openSegments( ) ) );
+		// the stream opened before the compaction is still readable
+		assertEquals( "0123456789", read( opened ) );
+
+		addSegment( "a" );
+		assertEquals( 2, cacheObject.getSegmentCount( ) );
+		assertEquals( "0123456789a", read( cacheObject.openSegments( ) ) );
+	}
+
+	@Test
+	public void testCompactTailSegments( ) throws IOException
+	{
+		File base = cacheObject.newSegmentFile( );
+		write( base, "0123456789" );
+		cacheObject.addSegment( base );
+		addSegment( "a" );
+		addSegment( "b" );
+		addSegment( "c" );
+		cacheObject.compactSegments( );
+		// the base segment is larger than the segments after it, it is kept
+		assertEquals( 2, cacheObject.getSegmentCount( ) );
+		assertTrue( base.exists( ) );
+		assertEquals( "0123456789abc", read( cacheObject.openSegments( ) ) );
+		assertEquals( 13, cacheObject.getDataSize( ) );
+	}
+
+	@Test
+	public void testCompactSegmentsLater( ) throws Exception
+	{
+		StringBuffer expected = new StringBuffer( );
+		for ( int i = 0; i <= IncreDataSetCacheObject.MAX_SEGMENTS; i++ )
+		{
+			addSegment( String.valueOf( i ) );
+			expected.append( i );
+		}
+		cacheObject.compactSegmentsLater( );
+		for ( int i = 0; i < 100 && cacheObject.getSegmentCount( ) > 1; i++ )
+		{
+			Thread.sleep( 50 );
+		}
+		assertEquals( 1, cacheObject.getSegmentCount( ) );
+		assertEquals( expected.toString( ),
+				read( cacheObject.openSegments( ) ) );
+	}
+
+	@Test
+	public void testDataFileSavedBeforeSegments( ) throws IOException
+	{
+		write( cacheObject.getDataFile( ), "abc" );
+		assertEquals( 1, cacheObject.getSegmentCount( ) );
+		addSegment( "de" );
+		assertEquals( "abcde", read( cacheObject.openSegments( ) ) );
+
+		IncreDataSetCacheObject.deleteSegments( cacheObject.getCacheDir( ) );
+		assertEquals( 0, cacheObject.getSegmentCount( ) );
+		assertFalse( cacheObject.getDataFile( ).exists( ) );
+	}
+
+	private void addSegment( String data ) throws IOException
+	{
+		File file = cacheObject.newSegmentFile( );
+		write( file, data );
+		cacheObject.addSegment( file );
+	}
+
+	private static void write( File file, String data ) throws IOException
+	{
+		FileOutputStream out = new FileOutputStream( file );
+		out.write( data.getBytes( "UTF-8" ) );
+		out.close( );
+	}
+
+	private static String read( InputStream in ) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream( );
+		int b;
+		while ( ( b = in.read( ) ) >= 0 )
+		{
+			out.write( b );
+		}
+		in.close( );
+		return new String( out.toByteArray( ), "UTF-8" );
+	}
+}
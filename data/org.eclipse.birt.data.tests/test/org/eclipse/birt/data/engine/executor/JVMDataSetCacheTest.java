@@ -0,0 +1,271 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the eviction, expiration and request coalescing of JVMDataSetCache
+ */
+public class JVMDataSetCacheTest
+{
+
+	private IResultClass resultClass;
+
+	@Before
+	public void jvmDataSetCacheSetUp( ) throws DataException
+	{
+		List columnsList = new ArrayList( );
+		columnsList.add( new ResultFieldMetadata( 1,
+				"col1",
+				"col1",
+				DataType.getClass( DataType.INTEGER_TYPE ),
+				"Integer" /* nativeTypeName */,
+				true ) );
+		resultClass = new ResultClass( columnsList );
+	}
+
+	@Test
+	public void testEvictLeastRecentlyUsed( )
+	{
+		long weight = newCacheObject( ).getEstimatedSize( );
+		assertTrue( weight > 0 );
+		JVMDataSetCache cache = new JVMDataSetCache( 3 * weight, Long.MAX_VALUE );
+		cache.put( newKey( "a" ), newCacheObject( ), 0 );
+		cache.put( newKey( "b" ), newCacheObject( ), 0 );
+		cache.put( newKey( "c" ), newCacheObject( ), 0 );
+		assertNotNull( cache.get( newKey( "a" ), this ) );
+
+		// b is the least recently used one
+		cache.put( newKey( "d" ), newCacheObject( ), 0 );
+		assertNull( cache.get( newKey( "b" ), this ) );
+		assertNotNull( cache.peek( newKey( "a" ) ) );
+		assertNotNull( cache.peek( newKey( "c" ) ) );
+		assertNotNull( cache.peek( newKey( "d" ) ) );
+		assertEquals( 3, cache.getEntryCount( ) );
+		assertEquals( 3 * weight, cache.getMemorySize( ) );
+		assertEquals( 1, cache.getEvictionCount( ) );
+		assertEquals( 1, cache.getHitCount( ) );
+		assertEquals( 1, cache.getMissCount( ) );
+
+		// a data set larger than the cache is not cached
+		cache.setMaxMemorySize( weight - 1 );
+		assertEquals( 0, cache.getEntryCount( ) );
+		cache.put( newKey( "e" ), newCacheObject( ), 0 );
+		assertNull( cache.peek( newKey( "e" ) ) );
+		assertEquals( 0, cache.getMemorySize( ) );
+	}
+
+	@Test
+	public void testDataSetBeingReadIsNotEvicted( )
+	{
+		long weight = newCacheObject( ).getEstimatedSize( );
+		JVMDataSetCache cache = new JVMDataSetCache( 2 * weight, Long.MAX_VALUE );
+		cache.put( newKey( "a" ), newCacheObject( ), 0 );
+		cache.put( newKey( "b" ), newCacheObject( ), 0 );
+		Object reading = cache.startReading( newKey( "a" ) );
+		assertNotNull( reading );
+		cache.put( newKey( "c" ), newCacheObject( ), 0 );
+		assertNotNull( cache.peek( newKey( "a" ) ) );
+		assertNull( cache.peek( newKey( "b" ) ) );
+
+		cache.finishReading( reading );
+		cache.put( newKey( "d" ), newCacheObject( ), 0 );
+		assertNull( cache.peek( newKey( "a" ) ) );
+		assertNotNull( cache.peek( newKey( "c" ) ) );
+		assertNotNull( cache.peek( newKey( "d" ) ) );
+	}
+
+	@Test
+	public void testRemovedDataSetIsReleasedAfterReading( )
+	{
+		final int[] released = new int[1];
+		MemoryDataSetCacheObject cacheObject = new MemoryDataSetCacheObject( 100 ) {
+
+			public void release( )
+			{
+				released[0]++;
+			}
+		};
+		JVMDataSetCache cache = new JVMDataSetCache( Long.MAX_VALUE,
+				Long.MAX_VALUE );
+		cache.put( newKey( "a" ), cacheObject, 0 );
+		Object reading1 = cache.startReading( newKey( "a" ) );
+		Object reading2 = cache.startReading( newKey( "a" ) );
+		assertTrue( cache.remove( newKey( "a" ) ) );
+		assertNull( cache.peek( newKey( "a" ) ) );
+		assertEquals( 0, cache.getMemorySize( ) );
+		cache.finishReading( reading1 );
+		assertEquals( 0, released[0] );
+		cache.finishReading( reading2 );
+		assertEquals( 1, released[0] );
+
+		// a data set which is not read is released when it is removed
+		cache.put( newKey( "b" ), cacheObject, 0 );
+		cache.clear( );
+		assertEquals( 2, released[0] );
+		assertNull( cache.startReading( newKey( "b" ) ) );
+	}
+
+	@Test
+	public void testTimeToLive( )
+	{
+		final long[] now = new long[]{1000};
+		JVMDataSetCache cache = new JVMDataSetCache( Long.MAX_VALUE,
+				Long.MAX_VALUE ) {
+
+			long currentTimeMillis( )
+			{
+				return now[0];
+			}
+		};
+		cache.put( newKey( "a" ), newCacheObject( ), 1 );
+		cache.put( newKey( "b" ), newCacheObject( ), 0 );
+		cache.setDefaultTimeToLive( 1 );
+		cache.put( newKey( "c" ), newCacheObject( ), 0 );
+		assertNotNull( cache.peek( newKey( "a" ) ) );
+		now[0] += 1;
+		assertNull( cache.get( newKey( "a" ), this ) );
+		assertNotNull( cache.get( newKey( "b" ), this ) );
+		assertNull( cache.get( newKey( "c" ), this ) );
+		assertEquals( 2, cache.getExpirationCount( ) );
+		assertEquals( 1, cache.getEntryCount( ) );
+		assertEquals( newCacheObject( ).getEstimatedSize( ),
+				cache.getMemorySize( ) );
+	}
+
+	@Test
+	public void testCoalesceConcurrentQueries( ) throws InterruptedException
+	{
+		JVMDataSetCache cache = new JVMDataSetCache( Long.MAX_VALUE,
+				Long.MAX_VALUE );
+		Object owner = new Object( );
+		cache.startLoading( newKey( "a" ), owner );
+
+		// the owner does not wait for itself
+		assertNull( cache.get( newKey( "a" ), owner ) );
+
+		Waiter waiter = new Waiter( cache, newKey( "a" ) );
+		waiter.awaitWaiting( );
+		IDataSetCacheObject cacheObject = newCacheObject( );
+		cache.put( newKey( "a" ), cacheObject, 0 );
+		cache.finishLoading( newKey( "a" ), owner );
+		assertSame( cacheObject, waiter.awaitResult( ) );
+		assertEquals( 1, cache.getCoalescedCount( ) );
+		assertEquals( 1, cache.getHitCount( ) );
+
+		// a failed query notifies the waiting queries
+		cache.startLoading( newKey( "b" ), owner );
+		waiter = new Waiter( cache, newKey( "b" ) );
+		waiter.awaitWaiting( );
+		cache.finishLoading( newKey( "b" ), owner );
+		assertNull( waiter.awaitResult( ) );
+
+		// so does a query which is shut down
+		cache.startLoading( newKey( "c" ), owner );
+		waiter = new Waiter( cache, newKey( "c" ) );
+		waiter.awaitWaiting( );
+		cache.finishLoading( owner );
+		assertNull( waiter.awaitResult( ) );
+		assertEquals( 1, cache.getCoalescedCount( ) );
+	}
+
+	@Test
+	public void testClear( )
+	{
+		JVMDataSetCache cache = new JVMDataSetCache( Long.MAX_VALUE,
+				Long.MAX_VALUE );
+		cache.put( newKey( "a" ), newCacheObject( ), 0 );
+		cache.put( newKey( "b" ), newCacheObject( ), 0 );
+		assertEquals( 2, cache.getKeys( ).length );
+		cache.clear( );
+		assertEquals( 0, cache.getEntryCount( ) );
+		assertEquals( 0, cache.getMemorySize( ) );
+	}
+
+	private MemoryDataSetCacheObject newCacheObject( )
+	{
+		MemoryDataSetCacheObject cacheObject = new MemoryDataSetCacheObject( 100 );
+		cacheObject.setResultClass( resultClass );
+		for ( int i = 0; i < 10; i++ )
+		{
+			cacheObject.populateResult( new ResultObject( resultClass,
+					new Object[]{
+						Integer.valueOf( i )
+					} ) );
+		}
+		return cacheObject;
+	}
+
+	private static DataSourceAndDataSet newKey( String cacheScopeID )
+	{
+		return DataSourceAndDataSet.newInstance( null,
+				null,
+				null,
+				cacheScopeID,
+				true );
+	}
+
+	/**
+	 * A query which gets a data set in another thread.
+	 */
+	private static class Waiter extends Thread
+	{
+
+		private JVMDataSetCache cache;
+		private DataSourceAndDataSet key;
+		private IDataSetCacheObject result;
+		private CountDownLatch done = new CountDownLatch( 1 );
+
+		Waiter( JVMDataSetCache cache, DataSourceAndDataSet key )
+		{
+			this.cache = cache;
+			this.key = key;
+			start( );
+		}
+
+		public void run( )
+		{
+			result = cache.get( key, this );
+			done.countDown( );
+		}
+
+		/**
+		 * Waits until the query waits for the data set to be cached.
+		 */
+		void awaitWaiting( )
+		{
+			while ( getState( ) != Thread.State.TIMED_WAITING )
+			{
+				assertEquals( 1, done.getCount( ) );
+				Thread.yield( );
+			}
+		}
+
+		IDataSetCacheObject awaitResult( ) throws InterruptedException
+		{
+			assertTrue( done.await( 10, TimeUnit.SECONDS ) );
+			return result;
+		}
+	}
+}
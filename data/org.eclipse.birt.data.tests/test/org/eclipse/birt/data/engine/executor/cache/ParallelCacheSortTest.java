@@ -0,0 +1,35 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.birt.data.engine.api.DataEngine;
+import org.eclipse.birt.data.engine.regre.SortTest;
+
+/**
+ * Test sort on disk cache with parallel merge sort enabled
+ */
+public class ParallelCacheSortTest extends SortTest
+{
+
+	protected Map getAppContext()
+	{
+		Map appContext = new HashMap();
+		appContext.put( "birt.data.engine.test.memcachesize", "20000" );
+		appContext.put( DataEngine.DISK_SORT_PARALLELISM, "4" );
+		// force the runs to be pre-merged before the final merge
+		appContext.put( DataEngine.DISK_SORT_MERGE_FAN_IN, "2" );
+		return appContext;
+	}
+	
+}
@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.expression;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+import org.eclipse.birt.core.script.JavascriptEvalUtil;
+import org.eclipse.birt.core.script.ScriptContext;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.NativeObject;
+import org.mozilla.javascript.Scriptable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the expressions evaluated natively, the results must be the same as
+ * the ones evaluated by the script engine.
+ */
+public class NativeExpressionTest
+{
+
+	private static final String[] NATIVE_EXPRESSIONS = new String[]{
+			"row.a + row.b",
+			"row[\"a\"] * 2 - row.c / 4",
+			"row[1] + row[\"2\"]",
+			"row.a % 2 == 1",
+			"row.s + row.a",
+			"\"x\" + row.n + row.c",
+			"row.n == null",
+			"row.n === null",
+			"row.a != row.c && row.s != \"abc\"",
+			"row.a < 10 ? row.s : row.b",
+			"row.a > 10 || row.s",
+			"!row.flag",
+			"-row.c + +row.s2",
+			"row.c >= 1.5",
+			"row.s < \"b\"",
+			"row.c / 0",
+			"row.a + row.d",
+			"row.s2 * 2 == row.a + 1",
+			"dataSetRow.a + dataSetRow[\"b\"]"
+	};
+
+	private static final String[] SCRIPT_EXPRESSIONS = new String[]{
+			"Math.abs( row.a ) + 1",
+			"row.a + x",
+			"row.s.length + 1",
+			"row[row.s] + 1",
+			"typeof row.a"
+	};
+
+	private ExpressionCompiler compiler;
+	private ScriptContext cx;
+	private Scriptable scope;
+	private NativeObject row;
+
+	@Before
+	public void nativeExpressionSetUp( ) throws Exception
+	{
+		compiler = new ExpressionCompiler( );
+		cx = new ScriptContext( );
+		cx.compile( "javascript", null, 0, "1 == 1;" );
+		scope = Context.getCurrentContext( ).initStandardObjects( );
+		row = new NativeObject( );
+		row.put( "a", row, Integer.valueOf( 3 ) );
+		row.put( "b", row, new Double( 4.5 ) );
+		row.put( "c", row, new BigDecimal( "1.25" ) );
+		row.put( "d", row, Boolean.TRUE );
+		row.put( "s", row, "abc" );
+		row.put( "s2", row, "2" );
+		row.put( "n", row, null );
+		row.put( "flag", row, Boolean.FALSE );
+		row.put( 1, row, Integer.valueOf( 10 ) );
+		row.put( 2, row, Integer.valueOf( 20 ) );
+		scope.put( "row", scope, row );
+		scope.put( "dataSetRow", scope, row );
+	}
+
+	@After
+	public void nativeExpressionTearDown( ) throws Exception
+	{
+		cx.close( );
+	}
+
+	@Test
+	public void testNativeExpressions( ) throws Exception
+	{
+		for ( int i = 0; i < NATIVE_EXPRESSIONS.length; i++ )
+		{
+			String text = NATIVE_EXPRESSIONS[i];
+			CompiledExpression expr = compiler.compile( text, null, cx );
+			assertTrue( text, expr instanceof BytecodeExpression );
+			assertTrue( text, ( (BytecodeExpression) expr ).isNative( ) );
+			assertResult( text, expr );
+			assertTrue( text, ( (BytecodeExpression) expr ).isNative( ) );
+		}
+	}
+
+	@Test
+	public void testScriptExpressions( ) throws Exception
+	{
+		scope.put( "x", scope, Integer.valueOf( 1 ) );
+		for ( int i = 0; i < SCRIPT_EXPRESSIONS.length; i++ )
+		{
+			String text = SCRIPT_EXPRESSIONS[i];
+			CompiledExpression expr = compiler.compile( text, null, cx );
+			assertFalse( text, ( (BytecodeExpression) expr ).isNative( ) );
+			assertResult( text, expr );
+		}
+	}
+
+	@Test
+	public void testFallbackToScript( ) throws Exception
+	{
+		// the dates are handled by the script engine
+		row.put( "date", row, new Date( 0 ) );
+		CompiledExpression expr = compiler.compile( "row.date + 1", null, cx );
+		assertTrue( ( (BytecodeExpression) expr ).isNative( ) );
+		assertResult( "row.date + 1", expr );
+		assertFalse( ( (BytecodeExpression) expr ).isNative( ) );
+
+		// the undefined column is handled by the script engine
+		expr = compiler.compile( "row.undefinedColumn + 1", null, cx );
+		assertTrue( ( (BytecodeExpression) expr ).isNative( ) );
+		assertResult( "row.undefinedColumn + 1", expr );
+		assertFalse( ( (BytecodeExpression) expr ).isNative( ) );
+
+		// the row object is not defined
+		expr = compiler.compile( "row.a + 1", null, cx );
+		Scriptable emptyScope = Context.getCurrentContext( )
+				.initStandardObjects( );
+		try
+		{
+			expr.evaluate( cx, emptyScope );
+			fail( "row should not be defined" );
+		}
+		catch ( Exception ex )
+		{
+		}
+	}
+
+	@Test
+	public void testValueChanged( ) throws Exception
+	{
+		CompiledExpression expr = compiler.compile( "row.a * row.b > 10",
+				null,
+				cx );
+		assertEquals( Boolean.TRUE, expr.evaluate( cx, scope ) );
+		row.put( "a", row, Integer.valueOf( 2 ) );
+		assertEquals( Boolean.FALSE, expr.evaluate( cx, scope ) );
+	}
+
+	private void assertResult( String text, CompiledExpression expr )
+			throws Exception
+	{
+		Object expected = JavascriptEvalUtil.convertJavascriptValue( Context.getCurrentContext( )
+				.evaluateString( scope, text, "test", 1, null ) );
+		Object result = expr.evaluate( cx, scope );
+		if ( expected instanceof Number && result instanceof Number )
+		{
+			assertEquals( text,
+					( (Number) expected ).doubleValue( ),
+					( (Number) result ).doubleValue( ),
+					0 );
+		}
+		else if ( expected instanceof CharSequence )
+		{
+			assertEquals( text, expected.toString( ), result.toString( ) );
+		}
+		else
+		{
+			assertEquals( text, expected, result );
+		}
+	}
+}
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.impl;
+
+import java.util.List;
+
+import org.eclipse.birt.data.engine.api.IGroupDefinition;
+import org.eclipse.birt.data.engine.api.ISortDefinition;
+import org.eclipse.birt.data.engine.api.querydefn.Binding;
+import org.eclipse.birt.data.engine.api.querydefn.GroupDefinition;
+import org.eclipse.birt.data.engine.api.querydefn.OdaDataSetDesign;
+import org.eclipse.birt.data.engine.api.querydefn.QueryDefinition;
+import org.eclipse.birt.data.engine.api.querydefn.QueryExecutionHints;
+import org.eclipse.birt.data.engine.api.querydefn.ScriptExpression;
+import org.eclipse.birt.data.engine.api.querydefn.SortDefinition;
+import org.eclipse.birt.data.engine.core.DataException;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the order of the data set rows required by the groups of a query
+ */
+public class SortingOptimizerTest
+{
+
+	private OdaDataSetDesign dataSet;
+	private QueryDefinition query;
+
+	@Before
+	public void sortingOptimizerSetUp( ) throws DataException
+	{
+		dataSet = new OdaDataSetDesign( "dataSet" );
+		query = new QueryDefinition( );
+		query.setDataSetName( "dataSet" );
+		String[] columns = new String[]{
+				"A", "B", "C"
+		};
+		for ( int i = 0; i < columns.length; i++ )
+		{
+			query.addBinding( new Binding( columns[i],
+					new ScriptExpression( "dataSetRow[\"" + columns[i] + "\"]" ) ) );
+		}
+	}
+
+	@Test
+	public void testGroupSortingSequence( )
+	{
+		query.addGroup( newGroup( "A", ISortDefinition.SORT_ASC ) );
+		query.addGroup( newGroup( "B", ISortDefinition.SORT_DESC ) );
+		SortDefinition sort = new SortDefinition( );
+		sort.setExpression( "row[\"C\"]" );
+		sort.setSortDirection( ISortDefinition.SORT_ASC );
+		query.addSort( sort );
+
+		List<ISortDefinition> sortHints = new SortingOptimizer( dataSet, query ).getGroupSortingSequence( );
+		assertEquals( 3, sortHints.size( ) );
+		assertSortHint( "A", ISortDefinition.SORT_ASC, sortHints.get( 0 ) );
+		assertSortHint( "B", ISortDefinition.SORT_DESC, sortHints.get( 1 ) );
+		assertSortHint( "C", ISortDefinition.SORT_ASC, sortHints.get( 2 ) );
+
+		// the data set rows in this order need not be sorted
+		assertFalse( new SortingOptimizer( dataSet, query ).acceptGroupSorting( ) );
+		SortingOptimizer opt = new SortingOptimizer( dataSet, query, sortHints );
+		assertTrue( opt.acceptGroupSorting( ) );
+	}
+
+	@Test
+	public void testGroupInterval( )
+	{
+		GroupDefinition group = newGroup( "A", ISortDefinition.SORT_ASC );
+		group.setInterval( IGroupDefinition.NUMERIC_INTERVAL );
+		query.addGroup( group );
+		assertNull( new SortingOptimizer( dataSet, query ).getGroupSortingSequence( ) );
+	}
+
+	@Test
+	public void testNoSortBeforeGrouping( )
+	{
+		query.addGroup( newGroup( "A", ISortDefinition.SORT_ASC ) );
+		QueryExecutionHints hints = new QueryExecutionHints( );
+		hints.setSortBeforeGrouping( false );
+		query.setQueryExecutionHints( hints );
+		assertNull( new SortingOptimizer( dataSet, query ).getGroupSortingSequence( ) );
+	}
+
+	@Test
+	public void testNoGroup( )
+	{
+		assertNull( new SortingOptimizer( dataSet, query ).getGroupSortingSequence( ) );
+	}
+
+	private static GroupDefinition newGroup( String column, int direction )
+	{
+		GroupDefinition group = new GroupDefinition( );
+		group.setKeyExpression( "row[\"" + column + "\"]" );
+		group.setSortDirection( direction );
+		return group;
+	}
+
+	private static void assertSortHint( String column, int direction,
+			ISortDefinition sortHint )
+	{
+		assertEquals( "dataSetRow[\"" + column + "\"]",
+				sortHint.getExpression( ).getText( ) );
+		assertEquals( direction, sortHint.getSortDirection( ) );
+	}
+}
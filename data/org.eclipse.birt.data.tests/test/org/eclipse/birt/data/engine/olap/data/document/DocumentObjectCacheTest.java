@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.document;
+
+import org.eclipse.birt.data.engine.cache.MemoryBroker;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the buffers of DocumentObjectCache reserved from the memory broker
+ */
+public class DocumentObjectCacheTest
+{
+
+	private static final int OBJECT_COUNT = 20;
+
+	private IDocumentManager documentManager;
+
+	@Before
+	public void documentObjectCacheSetUp( ) throws Exception
+	{
+		documentManager = DocumentManagerFactory.createFileDocumentManager( );
+	}
+
+	@After
+	public void documentObjectCacheTearDown( ) throws Exception
+	{
+		documentManager.close( );
+	}
+
+	@Test
+	public void testReserveBuffers( ) throws Exception
+	{
+		MemoryBroker broker = new MemoryBroker( 10 * 1024 * 1024 );
+		DocumentObjectCache cache = new DocumentObjectCache( documentManager,
+				0,
+				broker );
+		IDocumentObject documentObject = cache.getIDocumentObject( "obj0" );
+		// the buffer is reserved rather than the length of the object
+		assertEquals( 0, documentObject.length( ) );
+		assertTrue( documentObject.getBufferSize( ) > 0 );
+		assertTrue( broker.getUsedMemory( ) >= documentObject.getBufferSize( ) );
+		cache.closeAll( );
+		assertEquals( 0, broker.getUsedMemory( ) );
+	}
+
+	@Test
+	public void testEvictUntilReserved( ) throws Exception
+	{
+		// the broker grants the memory of a few buffers only
+		MemoryBroker broker = new MemoryBroker( 100 * 1024 );
+		DocumentObjectCache cache = new DocumentObjectCache( documentManager,
+				0,
+				broker );
+		for ( int i = 0; i < OBJECT_COUNT; i++ )
+		{
+			IDocumentObject documentObject = cache.getIDocumentObject( "obj"
+					+ i );
+			documentObject.writeInt( i );
+			assertTrue( broker.getUsedMemory( ) <= broker.getMemoryLimit( ) );
+		}
+		assertTrue( cache.getEvictionCount( ) > 0 );
+		assertTrue( cache.getEvictionCount( ) < OBJECT_COUNT );
+		cache.closeAll( );
+		assertEquals( 0, broker.getUsedMemory( ) );
+	}
+}
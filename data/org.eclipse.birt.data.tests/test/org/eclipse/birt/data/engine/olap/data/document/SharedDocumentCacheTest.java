@@ -0,0 +1,251 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.document;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.eclipse.birt.core.archive.IDocArchiveReader;
+import org.eclipse.birt.data.engine.cache.MemoryBroker;
+import org.eclipse.birt.data.engine.cache.MemoryReservation;
+import org.eclipse.birt.data.engine.core.DataException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+
+public class SharedDocumentCacheTest
+{
+
+	private IDocumentManager documentManager;
+	private IDocumentManager documentManager2;
+
+	@Before
+	public void sharedDocumentCacheSetUp( ) throws IOException, DataException
+	{
+		documentManager = DocumentManagerFactory.createFileDocumentManager( );
+		documentManager2 = DocumentManagerFactory.createFileDocumentManager( );
+	}
+
+	@After
+	public void sharedDocumentCacheTearDown( ) throws IOException
+	{
+		documentManager.close( );
+		documentManager2.close( );
+	}
+
+	@Test
+	public void testLeastRecentlyUsed( )
+	{
+		SharedDocumentCache cache = new SharedDocumentCache( 300,
+				new MemoryBroker( 1024 * 1024 ) );
+		cache.put( documentManager, "a", "A", 100 );
+		cache.put( documentManager, "b", "B", 100 );
+		cache.put( documentManager, "c", "C", 100 );
+		assertEquals( "A", cache.get( documentManager, "a" ) );
+		// b is the least recently used one
+		cache.put( documentManager, "d", "D", 100 );
+		assertNull( cache.get( documentManager, "b" ) );
+		assertEquals( "A", cache.get( documentManager, "a" ) );
+		assertEquals( "C", cache.get( documentManager, "c" ) );
+		assertEquals( "D", cache.get( documentManager, "d" ) );
+		assertEquals( 4, cache.getHitCount( ) );
+		assertEquals( 1, cache.getMissCount( ) );
+		assertEquals( 1, cache.getEvictionCount( ) );
+		assertEquals( 300, cache.getCachedSize( ) );
+
+		// an object larger than the quota is not cached
+		cache.put( documentManager, "e", "E", 301 );
+		assertNull( cache.get( documentManager, "e" ) );
+		assertEquals( 300, cache.getCachedSize( ) );
+	}
+
+	@Test
+	public void testQuotaOfDocument( )
+	{
+		SharedDocumentCache cache = new SharedDocumentCache( 200,
+				new MemoryBroker( 1024 * 1024 ) );
+		cache.put( documentManager, "a", "A", 200 );
+		cache.put( documentManager2, "a", "A2", 200 );
+		assertEquals( "A", cache.get( documentManager, "a" ) );
+		assertEquals( "A2", cache.get( documentManager2, "a" ) );
+		assertEquals( 400, cache.getCachedSize( ) );
+
+		cache.invalidate( documentManager2 );
+		assertNull( cache.get( documentManager2, "a" ) );
+		assertEquals( "A", cache.get( documentManager, "a" ) );
+		assertEquals( 200, cache.getCachedSize( ) );
+	}
+
+	@Test
+	public void testHotObjectsArePinned( )
+	{
+		SharedDocumentCache cache = new SharedDocumentCache( 300,
+				new MemoryBroker( 1024 * 1024 ) );
+		cache.put( documentManager, "hot", "H", 100 );
+		for ( int i = 0; i < SharedDocumentCache.HOT_HITS; i++ )
+		{
+			assertEquals( "H", cache.get( documentManager, "hot" ) );
+		}
+		cache.put( documentManager, "a", "A", 100 );
+		cache.put( documentManager, "b", "B", 100 );
+		// the pinned object is the least recently used one
+		cache.put( documentManager, "c", "C", 100 );
+		assertEquals( "H", cache.get( documentManager, "hot" ) );
+		assertNull( cache.get( documentManager, "a" ) );
+
+		// the pinned objects can not take the whole quota
+		cache.put( documentManager, "d", "D", 250 );
+		assertNull( cache.get( documentManager, "d" ) );
+		assertEquals( "H", cache.get( documentManager, "hot" ) );
+	}
+
+	@Test
+	public void testMemoryBroker( )
+	{
+		SharedDocumentCache cache = new SharedDocumentCache( 1024 * 1024,
+				new MemoryBroker( 200 * 1024 ) );
+		cache.put( documentManager, "a", "A", 100 * 1024 );
+		cache.put( documentManager, "b", "B", 100 * 1024 );
+		// the broker does not grant more memory
+		cache.put( documentManager, "c", "C", 100 * 1024 );
+		assertNull( cache.get( documentManager, "a" ) );
+		assertEquals( "C", cache.get( documentManager, "c" ) );
+	}
+
+	@Test
+	public void testCreatedDocumentObjectIsRemoved( ) throws IOException
+	{
+		SharedDocumentCache cache = SharedDocumentCache.getInstance( );
+		cache.put( documentManager, "obj", "O", 10 );
+		assertEquals( "O", cache.get( documentManager, "obj" ) );
+		documentManager.createDocumentObject( "obj" ).close( );
+		assertNull( cache.get( documentManager, "obj" ) );
+
+		// all the objects decoded from the document object are removed
+		cache.put( documentManager, "obj", Integer.valueOf( 1 ), "O1", 10, false );
+		cache.put( documentManager, "obj", Integer.valueOf( 2 ), "O2", 10, false );
+		assertEquals( "O2", cache.get( documentManager, "obj", Integer.valueOf( 2 ) ) );
+		documentManager.createDocumentObject( "obj" ).close( );
+		assertNull( cache.get( documentManager, "obj", Integer.valueOf( 1 ) ) );
+		assertNull( cache.get( documentManager, "obj", Integer.valueOf( 2 ) ) );
+	}
+
+	@Test
+	public void testQuotaOfCube( ) throws IOException, DataException
+	{
+		SharedDocumentCache cache = new SharedDocumentCache( 200,
+				new MemoryBroker( 1024 * 1024 ) );
+		cache.setQuota( "cube2", 100 );
+		assertEquals( 200, cache.getQuota( "cube1" ) );
+		assertEquals( 100, cache.getQuota( "cube2" ) );
+
+		IDocArchiveReader reader = createArchiveReader( );
+		IDocumentManager cube1 = DocumentManagerFactory.createRADocumentManager( "cube1",
+				reader );
+		IDocumentManager cube2 = DocumentManagerFactory.createRADocumentManager( "cube2",
+				reader );
+		cache.put( cube1, "a", "A", 200 );
+		cache.put( cube2, "a", "A2", 200 );
+		assertEquals( "A", cache.get( cube1, "a" ) );
+		assertNull( cache.get( cube2, "a" ) );
+		cache.put( cube2, "a", "A2", 100 );
+		assertEquals( "A2", cache.get( cube2, "a" ) );
+
+		// the queries of the same cube share the objects
+		IDocumentManager query = DocumentManagerFactory.createRADocumentManager( "cube1",
+				reader );
+		assertEquals( "A", cache.get( query, "a" ) );
+		assertEquals( 300, cache.getCachedSize( ) );
+	}
+
+	@Test
+	public void testPinnedObjects( )
+	{
+		SharedDocumentCache cache = new SharedDocumentCache( 300,
+				new MemoryBroker( 1024 * 1024 ) );
+		cache.put( documentManager, "index", Integer.valueOf( 0 ), "I", 100, true );
+		cache.put( documentManager, "a", "A", 100 );
+		cache.put( documentManager, "b", "B", 100 );
+		cache.put( documentManager, "c", "C", 100 );
+		assertEquals( "I", cache.get( documentManager, "index", Integer.valueOf( 0 ) ) );
+		assertNull( cache.get( documentManager, "a" ) );
+
+		// the pinned objects take no more than half of the quota
+		cache.put( documentManager, "index", Integer.valueOf( 1 ), "I1", 100, true );
+		cache.put( documentManager, "d", "D", 100 );
+		cache.put( documentManager, "e", "E", 100 );
+		assertNull( cache.get( documentManager, "index", Integer.valueOf( 1 ) ) );
+		assertEquals( "I", cache.get( documentManager, "index", Integer.valueOf( 0 ) ) );
+	}
+
+	@Test
+	public void testSpillWithPinnedObjects( )
+	{
+		MemoryBroker broker = new MemoryBroker( 200 * 1024 );
+		SharedDocumentCache cache = new SharedDocumentCache( 1024 * 1024,
+				broker );
+		cache.put( documentManager, "hot", null, "H", 100 * 1024, true );
+		// the cache is asked to spill, but the pinned object is kept
+		MemoryReservation other = broker.newReservation( "other" );
+		assertTrue( other.reserve( 150 * 1024 ) );
+		cache.put( documentManager, "a", "A", 10 * 1024 );
+		assertEquals( "H", cache.get( documentManager, "hot" ) );
+		assertEquals( "A", cache.get( documentManager, "a" ) );
+		other.close( );
+	}
+
+	@Test
+	public void testCollectedDocumentIsReleased( ) throws Exception
+	{
+		SharedDocumentCache cache = new SharedDocumentCache( 1024 * 1024,
+				new MemoryBroker( 1024 * 1024 ) );
+		cache.put( DocumentManagerFactory.createRADocumentManager( "cube",
+				createArchiveReader( ) ), "a", "A", 100 * 1024 );
+		assertEquals( 100 * 1024, cache.getCachedSize( ) );
+		for ( int i = 0; i < 100 && cache.getCachedSize( ) > 0; i++ )
+		{
+			System.gc( );
+			Thread.sleep( 10 );
+		}
+		assertEquals( 0, cache.getCachedSize( ) );
+	}
+
+	private static IDocArchiveReader createArchiveReader( )
+	{
+		return (IDocArchiveReader) Proxy.newProxyInstance( IDocArchiveReader.class.getClassLoader( ),
+				new Class[]{IDocArchiveReader.class},
+				new InvocationHandler( ) {
+
+					public Object invoke( Object proxy, Method method,
+							Object[] args )
+					{
+						if ( "equals".equals( method.getName( ) ) )
+						{
+							return Boolean.valueOf( proxy == args[0] );
+						}
+						if ( "hashCode".equals( method.getName( ) ) )
+						{
+							return Integer.valueOf( System.identityHashCode( proxy ) );
+						}
+						return null;
+					}
+				} );
+	}
+}
@@ -16,7 +16,9 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.birt.core.archive.IDocArchiveWriter;
 import org.eclipse.birt.core.archive.compound.ArchiveFile;
@@ -56,6 +58,7 @@ import org.eclipse.birt.data.engine.olap.data.api.cube.IHierarchy;
 import org.eclipse.birt.data.engine.olap.data.api.cube.ILevelDefn;
 import org.eclipse.birt.data.engine.olap.data.document.DocumentManagerFactory;
 import org.eclipse.birt.data.engine.olap.data.document.IDocumentManager;
+import org.eclipse.birt.data.engine.olap.data.impl.aggregation.CubeRollup;
 import org.eclipse.birt.data.engine.olap.data.impl.aggregation.filter.LevelFilter;
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.Dimension;
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.DimensionFactory;
@@ -453,6 +456,141 @@ public class CubeAggregationTest extends BaseTestCase
 			resultSet[i].close( );
 		}
 	}
+	@Test
+    public void testCube1AggregationInPartitions( ) throws IOException, DataException, BirtException
+	{
+		IAggregationResultSet[] serialResult = executeCube1SumAggregation( 1 );
+		IAggregationResultSet[] parallelResult = executeCube1SumAggregation( 4 );
+		assertEquals( serialResult.length, parallelResult.length );
+		for ( int i = 0; i < serialResult.length; i++ )
+		{
+			assertEquals( serialResult[i].length( ), parallelResult[i].length( ) );
+			for ( int j = 0; j < serialResult[i].length( ); j++ )
+			{
+				serialResult[i].seek( j );
+				parallelResult[i].seek( j );
+				assertEquals( serialResult[i].getLevelKeyValue( 0 ) == null ? null
+						: serialResult[i].getLevelKeyValue( 0 )[0],
+						parallelResult[i].getLevelKeyValue( 0 ) == null ? null
+								: parallelResult[i].getLevelKeyValue( 0 )[0] );
+				assertEquals( serialResult[i].getAggregationValue( 0 ),
+						parallelResult[i].getAggregationValue( 0 ) );
+			}
+			serialResult[i].close( );
+			parallelResult[i].close( );
+		}
+		parallelResult = executeCube1SumAggregation( 4 );
+		parallelResult[0].seek( 0 );
+		assertEquals( parallelResult[0].getLevelKeyValue( 0 )[0], "1" );
+		assertEquals( parallelResult[0].getAggregationValue( 0 ), new Double(6) );
+		parallelResult[0].seek( 1 );
+		assertEquals( parallelResult[0].getLevelKeyValue( 0 )[0], "2" );
+		assertEquals( parallelResult[0].getAggregationValue( 0 ), new Double(22) );
+		parallelResult[2].seek( 0 );
+		assertEquals( parallelResult[2].getAggregationValue( 0 ), new Double(28) );
+		for ( int i = 0; i < parallelResult.length; i++ )
+		{
+			parallelResult[i].close( );
+		}
+	}
+	
+	private IAggregationResultSet[] executeCube1SumAggregation( int parallelism ) throws IOException, DataException, BirtException
+	{
+		CubeQueryExecutorHelper cubeQueryExcutorHelper = new CubeQueryExecutorHelper( 
+				CubeQueryExecutorHelper.loadCube( "cube1", documentManager, new StopSign( ) ) );
+		Map appContext = new HashMap( );
+		appContext.put( DataEngine.CUBE_AGGREGATION_PARALLELISM, new Integer( parallelism ) );
+		cubeQueryExcutorHelper.setAppContext( appContext );
+		ISelection[] filter = new ISelection[1];
+		filter[0] = SelectionFactory.createRangeSelection(  new Object[]{"1"},
+				 new Object[]{"3"},
+				true,
+				false );
+		cubeQueryExcutorHelper.addFilter( new LevelFilter(dimLevel21, filter) );
+		
+		AggregationDefinition[] aggregations = new AggregationDefinition[3];
+		AggregationFunctionDefinition[] funcitons = new AggregationFunctionDefinition[]{
+			new AggregationFunctionDefinition( "measure1", IBuildInAggregation.TOTAL_SUM_FUNC )
+		};
+		aggregations[0] = new AggregationDefinition( new DimLevel[]{dimLevel21},
+				new int[]{IDimensionSortDefn.SORT_ASC}, funcitons );
+		aggregations[1] = new AggregationDefinition( new DimLevel[]{dimLevel31},
+				new int[]{IDimensionSortDefn.SORT_ASC}, funcitons );
+		aggregations[2] = new AggregationDefinition( null, null, funcitons );
+		return cubeQueryExcutorHelper.execute( aggregations, new StopSign( ) );
+	}
+	
+	@Test
+    public void testCube1AggregationOnRollups( ) throws IOException, DataException, BirtException
+	{
+		IAggregationResultSet[] expected = executeCube1UnfilteredAggregation( );
+		
+		Cube cube = (Cube) CubeQueryExecutorHelper.loadCube( "cube1", documentManager, new StopSign( ) );
+		String[] measureNames = new String[]{"measure1", "measure2"};
+		IAggregationResultSet[] rollups = new CubeQueryExecutorHelper( cube ).execute( new AggregationDefinition[]{
+				CubeRollup.createAggregation( new DimLevel[]{dimLevel11, dimLevel21, dimLevel31}, measureNames ),
+				CubeRollup.createAggregation( new DimLevel[]{dimLevel21, dimLevel31}, measureNames )
+		}, new StopSign( ) );
+		CubeRollup.save( documentManager, "cube1", measureNames, rollups );
+		documentManager.flush( );
+		
+		cube = (Cube) CubeQueryExecutorHelper.loadCube( "cube1", documentManager, new StopSign( ) );
+		assertEquals( 2, cube.getRollups( ).length );
+		// the smallest rollup covering the levels is used
+		AggregationDefinition aggregation = new AggregationDefinition( new DimLevel[]{dimLevel21}, null, null );
+		assertSame( cube.getRollups( )[1], CubeRollup.find( cube.getRollups( ), aggregation ) );
+		
+		IAggregationResultSet[] result = executeCube1UnfilteredAggregation( );
+		assertEquals( expected.length, result.length );
+		for ( int i = 0; i < expected.length; i++ )
+		{
+			assertEquals( expected[i].length( ), result[i].length( ) );
+			for ( int j = 0; j < expected[i].length( ); j++ )
+			{
+				expected[i].seek( j );
+				result[i].seek( j );
+				for ( int k = 0; k < expected[i].getLevelCount( ); k++ )
+				{
+					assertTrue( Arrays.equals( expected[i].getLevelKeyValue( k ),
+							result[i].getLevelKeyValue( k ) ) );
+				}
+				for ( int k = 0; k < expected[i].getAggregationCount( ); k++ )
+				{
+					assertEquals( expected[i].getAggregationValue( k ),
+							result[i].getAggregationValue( k ) );
+				}
+			}
+			expected[i].close( );
+			result[i].close( );
+		}
+		
+		CubeRollup.clear( documentManager, "cube1" );
+		cube = (Cube) CubeQueryExecutorHelper.loadCube( "cube1", documentManager, new StopSign( ) );
+		assertEquals( 0, cube.getRollups( ).length );
+	}
+	
+	private IAggregationResultSet[] executeCube1UnfilteredAggregation( ) throws IOException, DataException, BirtException
+	{
+		CubeQueryExecutorHelper cubeQueryExcutorHelper = new CubeQueryExecutorHelper( 
+				CubeQueryExecutorHelper.loadCube( "cube1", documentManager, new StopSign( ) ) );
+		AggregationDefinition[] aggregations = new AggregationDefinition[3];
+		aggregations[0] = new AggregationDefinition( new DimLevel[]{dimLevel21},
+				new int[]{IDimensionSortDefn.SORT_ASC}, new AggregationFunctionDefinition[]{
+					new AggregationFunctionDefinition( "measure1", IBuildInAggregation.TOTAL_SUM_FUNC ),
+					new AggregationFunctionDefinition( "measure2", IBuildInAggregation.TOTAL_MAX_FUNC )
+				} );
+		aggregations[1] = new AggregationDefinition( new DimLevel[]{dimLevel31, dimLevel21},
+				new int[]{IDimensionSortDefn.SORT_DESC, IDimensionSortDefn.SORT_ASC}, new AggregationFunctionDefinition[]{
+					new AggregationFunctionDefinition( "measure1", IBuildInAggregation.TOTAL_COUNT_FUNC ),
+					new AggregationFunctionDefinition( "measure2", IBuildInAggregation.TOTAL_MIN_FUNC )
+				} );
+		aggregations[2] = new AggregationDefinition( null, null, new AggregationFunctionDefinition[]{
+					new AggregationFunctionDefinition( "measure2", IBuildInAggregation.TOTAL_SUM_FUNC ),
+					new AggregationFunctionDefinition( "measure1", IBuildInAggregation.TOTAL_COUNT_FUNC )
+				} );
+		return cubeQueryExcutorHelper.execute( aggregations, new StopSign( ) );
+	}
+	
 	@Test
     public void testCube1AggregationWithFunctionFilter( ) throws IOException, DataException, BirtException
 	{
@@ -58,6 +58,7 @@ import org.eclipse.birt.data.engine.olap.data.impl.dimension.DimensionResultIter
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.Level;
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.LevelDefinition;
 import org.eclipse.birt.data.engine.olap.data.util.BufferedPrimitiveDiskArray;
+import org.eclipse.birt.data.engine.olap.data.util.CubeBuildContext;
 import org.eclipse.birt.data.engine.olap.data.util.DataType;
 import org.eclipse.birt.data.engine.olap.data.util.IDiskArray;
 import org.mozilla.javascript.Context;
@@ -101,13 +102,38 @@ public class FactTableHelperTest2 extends BaseTestCase
 	{
 		IDocumentManager documentManager = DocumentManagerFactory.createFileDocumentManager( );
 		
-		testFactTableSaveAndLoad( documentManager );
+		testFactTableSaveAndLoad( documentManager, null );
 		
 		documentManager.close( );
 	}
 	
+	/**
+	 * The segments written by the build threads are read as the ones written
+	 * in a single thread.
+	 * 
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	@Test
+    public void testFactTableSaveAndLoadInParallel( ) throws IOException, BirtException
+	{
+		IDocumentManager documentManager = DocumentManagerFactory.createFileDocumentManager( );
+		CubeBuildContext buildContext = new CubeBuildContext( 4,
+				System.getProperty( "java.io.tmpdir" ) );
+		try
+		{
+			testFactTableSaveAndLoad( documentManager, buildContext );
+			assertTrue( buildContext.getPhaseTimes( ).containsKey( "fact table write" ) );
+		}
+		finally
+		{
+			buildContext.shutdown( );
+			documentManager.close( );
+		}
+	}
 
-	private void testFactTableSaveAndLoad( IDocumentManager documentManager ) throws IOException, BirtException
+	private void testFactTableSaveAndLoad( IDocumentManager documentManager,
+			CubeBuildContext buildContext ) throws IOException, BirtException
 	{
 		Dimension[] dimensions = new Dimension[3];
 		
@@ -168,6 +194,7 @@ public class FactTableHelperTest2 extends BaseTestCase
 		measureColumnName[0] = "measure1";
 		measureColumnName[1] = "measure2";
 		FactTableAccessor factTableConstructor = new FactTableAccessor( documentManager );
+		factTableConstructor.setBuildContext( buildContext );
 		FactTable factTable = factTableConstructor.saveFactTable( NamingUtil.getFactTableName( "bigThreeDimensions" ),
 				CubeUtility.getKeyColNames(dimensions),
 				CubeUtility.getKeyColNames(dimensions),
@@ -18,6 +18,7 @@ import java.util.Date;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.olap.data.api.*;
 import org.eclipse.birt.data.engine.olap.data.document.DocumentManagerFactory;
+import org.eclipse.birt.data.engine.olap.data.document.IDocumentManager;
 import org.eclipse.birt.data.engine.olap.data.impl.SelectionFactory;
 import org.eclipse.birt.data.engine.olap.data.util.BufferedStructureArray;
 import org.eclipse.birt.data.engine.olap.data.util.Bytes;
@@ -764,4 +765,103 @@ public class DiskIndexTest {
 		keyList.clear( );
 		keyList.close( );
 	}
+	
+	@Test
+    public void testFindPositions( ) throws IOException, DataException
+	{
+		int keyNumber = 2000;
+		BufferedStructureArray keyList = new BufferedStructureArray( IndexKey.getCreator( ),
+				keyNumber );
+		for ( int i = 0; i < keyNumber; i++ )
+		{
+			IndexKey key = new IndexKey( );
+			key.setKey( new Object[]{new Integer( i )} );
+			key.setDimensionPos( new int[]{ i * 2, i * 2 + 1 } );
+			key.setOffset( new int[]{ i * 4, i * 4 } );
+			keyList.add( key );
+		}
+		DiskIndex indexTree = DiskIndex.createIndex( DocumentManagerFactory.createFileDocumentManager( ),
+				"position_index",
+				keyList,
+				true,
+				true );
+		ISelection[] selections = new ISelection[3];
+		selections[0] = SelectionFactory.createRangeSelection( new Object[]{new Integer( 10 )},
+				new Object[]{new Integer( 1500 )},
+				false,
+				true );
+		selections[1] = SelectionFactory.createOneKeySelection( new Object[]{new Integer( 1800 )} );
+		selections[2] = SelectionFactory.createMutiKeySelection( new Object[][]{
+				{new Integer( 5 )}, {new Integer( 1900 )}
+		} );
+		PositionBitmap positions = indexTree.findPositions( selections );
+		assertEquals( ( 1490 + 3 ) * 2, positions.size( ) );
+		assertEquals( new Integer( 10 ), positions.get( 0 ) );
+		assertEquals( new Integer( 22 ), positions.get( 2 ) );
+		assertEquals( new Integer( 3001 ), positions.get( 2981 ) );
+		assertTrue( positions.contains( 3600 ) );
+		assertTrue( positions.contains( 3801 ) );
+		assertFalse( positions.contains( 20 ) );
+		assertFalse( positions.contains( 3002 ) );
+
+		// the same positions are found without the bitmaps
+		DiskIndex indexTree2 = DiskIndex.createIndex( DocumentManagerFactory.createFileDocumentManager( ),
+				"position_index2",
+				keyList,
+				true );
+		PositionBitmap positions2 = indexTree2.findPositions( selections );
+		assertEquals( positions.size( ), positions2.size( ) );
+		for ( int i = 0; i < positions.size( ); i++ )
+		{
+			assertEquals( positions.get( i ), positions2.get( i ) );
+		}
+		keyList.clear( );
+		keyList.close( );
+	}
+
+	@Test
+    public void testRebuildWithoutPositionBitmaps( ) throws IOException, DataException
+	{
+		IDocumentManager documentManager = DocumentManagerFactory.createFileDocumentManager( );
+		DiskIndex.createIndex( documentManager,
+				"rebuilt_index",
+				createPositionKeys( 2000, 2 ),
+				true,
+				true );
+		// the bitmaps saved by the first build are not used
+		DiskIndex.createIndex( documentManager,
+				"rebuilt_index",
+				createPositionKeys( 2000, 3 ),
+				true,
+				false );
+		DiskIndex indexTree = DiskIndex.loadIndex( documentManager,
+				"rebuilt_index" );
+		ISelection[] selections = new ISelection[]{
+			SelectionFactory.createRangeSelection( new Object[]{new Integer( 0 )},
+					new Object[]{new Integer( 1999 )},
+					true,
+					true )
+		};
+		PositionBitmap positions = indexTree.findPositions( selections );
+		assertEquals( 2000, positions.size( ) );
+		assertTrue( positions.contains( 3000 ) );
+		assertFalse( positions.contains( 3001 ) );
+		documentManager.close( );
+	}
+
+	private BufferedStructureArray createPositionKeys( int keyNumber, int step )
+			throws IOException
+	{
+		BufferedStructureArray keyList = new BufferedStructureArray( IndexKey.getCreator( ),
+				keyNumber );
+		for ( int i = 0; i < keyNumber; i++ )
+		{
+			IndexKey key = new IndexKey( );
+			key.setKey( new Object[]{new Integer( i )} );
+			key.setDimensionPos( new int[]{ i * step } );
+			key.setOffset( new int[]{ i * 4 } );
+			keyList.add( key );
+		}
+		return keyList;
+	}
 }
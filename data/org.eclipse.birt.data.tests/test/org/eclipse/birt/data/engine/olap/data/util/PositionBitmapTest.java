@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.util;
+
+import java.io.IOException;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+
+public class PositionBitmapTest
+{
+
+	@Test
+	public void testAddAndGet( ) throws IOException
+	{
+		PositionBitmap bitmap = new PositionBitmap( );
+		// sparse and dense groups, added out of order
+		for ( int i = 19999; i >= 0; i-- )
+		{
+			bitmap.add( i * 3 );
+		}
+		bitmap.add( Integer.valueOf( 300000 ) );
+		bitmap.add( 3 );
+		assertEquals( 20001, bitmap.size( ) );
+		for ( int i = 0; i < 20000; i++ )
+		{
+			assertEquals( Integer.valueOf( i * 3 ), bitmap.get( i ) );
+		}
+		assertEquals( Integer.valueOf( 300000 ), bitmap.get( 20000 ) );
+		assertEquals( Integer.valueOf( 30 ), bitmap.get( 10 ) );
+		assertTrue( bitmap.contains( 59997 ) );
+		assertFalse( bitmap.contains( 59998 ) );
+		assertFalse( bitmap.contains( -1 ) );
+		try
+		{
+			bitmap.get( 20001 );
+			fail( );
+		}
+		catch ( IndexOutOfBoundsException e )
+		{
+		}
+		bitmap.close( );
+		assertEquals( 0, bitmap.size( ) );
+	}
+
+	@Test
+	public void testAndOr( ) throws IOException
+	{
+		PositionBitmap bitmap1 = new PositionBitmap( );
+		PositionBitmap bitmap2 = new PositionBitmap( );
+		for ( int i = 0; i < 200000; i++ )
+		{
+			if ( i % 2 == 0 )
+			{
+				bitmap1.add( i );
+			}
+			if ( i % 3 == 0 )
+			{
+				bitmap2.add( i );
+			}
+		}
+		PositionBitmap and = PositionBitmap.and( bitmap1, bitmap2 );
+		PositionBitmap or = PositionBitmap.or( bitmap1, bitmap2 );
+		assertEquals( 33334, and.size( ) );
+		for ( int i = 0; i < and.size( ); i++ )
+		{
+			assertEquals( Integer.valueOf( i * 6 ), and.get( i ) );
+		}
+		int count = 0;
+		for ( int i = 0; i < 200000; i++ )
+		{
+			if ( i % 2 == 0 || i % 3 == 0 )
+			{
+				assertEquals( Integer.valueOf( i ), or.get( count++ ) );
+			}
+		}
+		assertEquals( count, or.size( ) );
+		// the inputs are not changed
+		assertEquals( 100000, bitmap1.size( ) );
+		assertEquals( 66667, bitmap2.size( ) );
+	}
+
+	@Test
+	public void testAddAll( ) throws IOException
+	{
+		PositionBitmap result = new PositionBitmap( );
+		PositionBitmap expected = new PositionBitmap( );
+		// sparse and dense groups, some of them overlap
+		for ( int block = 0; block < 20; block++ )
+		{
+			PositionBitmap bitmap = new PositionBitmap( );
+			int step = block % 2 == 0 ? 7 : 2;
+			for ( int i = block * 30000; i < block * 30000 + 60000; i += step )
+			{
+				bitmap.add( i );
+			}
+			int size = bitmap.size( );
+			result.addAll( bitmap );
+			expected = PositionBitmap.or( expected, bitmap );
+			// the added bitmap is not changed
+			assertEquals( size, bitmap.size( ) );
+			assertEquals( expected.size( ), result.size( ) );
+		}
+		for ( int i = 0; i < expected.size( ); i++ )
+		{
+			assertEquals( expected.get( i ), result.get( i ) );
+		}
+	}
+
+	@Test
+	public void testBytes( ) throws IOException
+	{
+		PositionBitmap bitmap = new PositionBitmap( );
+		for ( int i = 0; i < 10000; i++ )
+		{
+			bitmap.add( i );
+		}
+		bitmap.add( 1000000 );
+		PositionBitmap copy = PositionBitmap.fromBytes( bitmap.toBytes( ) );
+		assertEquals( bitmap.size( ), copy.size( ) );
+		for ( int i = 0; i < copy.size( ); i++ )
+		{
+			assertEquals( bitmap.get( i ), copy.get( i ) );
+		}
+	}
+
+	@Test
+	public void testIntersection( ) throws IOException
+	{
+		IDiskArray array = new BufferedPrimitiveDiskArray( );
+		for ( int i = 0; i < 100; i++ )
+		{
+			array.add( Integer.valueOf( i * 2 ) );
+		}
+		PositionBitmap bitmap = PositionBitmap.valueOf( array );
+		PositionBitmap bitmap2 = new PositionBitmap( );
+		for ( int i = 0; i < 100; i++ )
+		{
+			bitmap2.add( i * 5 );
+		}
+		IDiskArray result = SetUtil.getIntersection( bitmap, bitmap2 );
+		assertTrue( result instanceof PositionBitmap );
+		assertEquals( 20, result.size( ) );
+		for ( int i = 0; i < result.size( ); i++ )
+		{
+			assertEquals( Integer.valueOf( i * 10 ), result.get( i ) );
+		}
+	}
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.perf;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.birt.data.engine.api.APITestCase;
+import org.eclipse.birt.data.engine.api.DataEngine;
+import org.eclipse.birt.data.engine.api.IResultIterator;
+import org.eclipse.birt.data.engine.api.ISortDefinition;
+import org.eclipse.birt.data.engine.api.querydefn.QueryDefinition;
+import org.eclipse.birt.data.engine.api.querydefn.ScriptExpression;
+import org.eclipse.birt.data.engine.api.querydefn.SortDefinition;
+
+import testutil.ConfigText;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Bench mark of the disk based sort, which compares the serial level merge
+ * sort with the parallel k-way merge sort. A tiny memory buffer is used so
+ * that the whole data set is spilled to disk.
+ */
+@Ignore("Ignore performance test")
+public class DiskSortPerfTest extends APITestCase
+{
+	private static final int ROUNDS = 20;
+	
+	private Map appContext;
+	
+	/*
+	 * @see org.eclipse.birt.data.engine.api.APITestCase#getDataSourceInfo()
+	 */
+	protected DataSourceInfo getDataSourceInfo( )
+	{
+		return new DataSourceInfo( ConfigText.getString( "Api.TestData2.TableName" ),
+				ConfigText.getString( "Api.TestData2.TableSQL" ),
+				ConfigText.getString( "Api.TestData2.TestDataFileName" ) );
+	}
+	
+	/*
+	 * @see org.eclipse.birt.data.engine.api.APITestCase#getAppContext()
+	 */
+	protected Map getAppContext( )
+	{
+		return appContext;
+	}
+	
+	/**
+	 * @throws Exception
+	 */
+	@Test
+    public void testLevelMergeSort( ) throws Exception
+	{
+		appContext = newAppContext( 1 );
+		System.out.println( "time bench mark of level merge sort: "
+				+ runSortQuery( ) + "ms" );
+	}
+	
+	/**
+	 * @throws Exception
+	 */
+	@Test
+    public void testParallelMergeSort( ) throws Exception
+	{
+		int parallelism = Runtime.getRuntime( ).availableProcessors( );
+		appContext = newAppContext( Math.max( 2, parallelism ) );
+		System.out.println( "time bench mark of parallel merge sort with "
+				+ parallelism + " threads: " + runSortQuery( ) + "ms" );
+	}
+	
+	/**
+	 * @param parallelism
+	 * @return
+	 */
+	private static Map newAppContext( int parallelism )
+	{
+		Map context = new HashMap( );
+		context.put( "birt.data.engine.test.memcachesize", "10000" );
+		context.put( DataEngine.DISK_SORT_PARALLELISM, "" + parallelism );
+		return context;
+	}
+	
+	/**
+	 * @return the average time of one query in ms
+	 * @throws Exception
+	 */
+	private long runSortQuery( ) throws Exception
+	{
+		QueryDefinition queryDefn = newReportQuery( );
+		queryDefn.addResultSetExpression( "ID",
+				new ScriptExpression( "dataSetRow.ID" ) );
+		queryDefn.addResultSetExpression( "AMOUNT1",
+				new ScriptExpression( "dataSetRow.AMOUNT1" ) );
+		queryDefn.addResultSetExpression( "AMOUNT2",
+				new ScriptExpression( "dataSetRow.AMOUNT2" ) );
+		
+		SortDefinition sd = new SortDefinition( );
+		sd.setExpression( "dataSetRow.AMOUNT1" );
+		sd.setSortDirection( ISortDefinition.SORT_DESC );
+		queryDefn.addSort( sd );
+		
+		long total = 0;
+		for ( int i = 0; i < ROUNDS; i++ )
+		{
+			long start = System.currentTimeMillis( );
+			IResultIterator ri = executeQuery( queryDefn );
+			while ( ri.next( ) )
+			{
+				ri.getValue( "AMOUNT1" );
+			}
+			ri.close( );
+			total += System.currentTimeMillis( ) - start;
+		}
+		return total / ROUNDS;
+	}
+}
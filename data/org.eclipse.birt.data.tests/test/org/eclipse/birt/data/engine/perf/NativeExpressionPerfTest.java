@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.perf;
+
+import org.eclipse.birt.core.script.ScriptContext;
+import org.eclipse.birt.data.engine.expression.CompiledExpression;
+import org.eclipse.birt.data.engine.expression.ExpressionCompiler;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.NativeObject;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Bench mark of the per row cost of the simple expressions, which compares
+ * the expressions evaluated natively with the ones evaluated by the script
+ * engine, on 10M rows.
+ */
+@Ignore("Ignore performance test")
+public class NativeExpressionPerfTest
+{
+	private static final int ROW_COUNT = 10000000;
+
+	private static final String[] EXPRESSIONS = new String[]{
+			"row[\"PRICE\"] * row[\"QUANTITY\"]",
+			"row[\"PRICE\"] * row[\"QUANTITY\"] > 1000 && row[\"COUNTRY\"] == \"US\"",
+			"row[\"COUNTRY\"] + \"-\" + row[\"CITY\"]",
+			"row[\"DISCOUNT\"] == null ? row[\"PRICE\"] : row[\"PRICE\"] - row[\"DISCOUNT\"]"
+	};
+
+	private static final String[] COUNTRIES = new String[]{
+			"US", "CN", "UK", "DE"
+	};
+
+	private ScriptContext cx;
+	private Scriptable scope;
+	private NativeObject row;
+
+	@Before
+    public void nativeExpressionPerfSetUp( ) throws Exception
+	{
+		cx = new ScriptContext( );
+		cx.compile( "javascript", null, 0, "1 == 1;" );
+		scope = Context.getCurrentContext( ).initStandardObjects( );
+		row = new NativeObject( );
+		scope.put( "row", scope, row );
+	}
+
+	@After
+    public void nativeExpressionPerfTearDown( ) throws Exception
+	{
+		cx.close( );
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+    public void testExpressionPerRowCost( ) throws Exception
+	{
+		ExpressionCompiler compiler = new ExpressionCompiler( );
+		for ( int i = 0; i < EXPRESSIONS.length; i++ )
+		{
+			CompiledExpression expr = compiler.compile( EXPRESSIONS[i], null, cx );
+			Script script = Context.getCurrentContext( )
+					.compileString( EXPRESSIONS[i], "perf", 1, null );
+
+			long start = System.nanoTime( );
+			for ( int r = 0; r < ROW_COUNT; r++ )
+			{
+				setRow( r );
+				expr.evaluate( cx, scope );
+			}
+			long nativeTime = System.nanoTime( ) - start;
+
+			start = System.nanoTime( );
+			for ( int r = 0; r < ROW_COUNT; r++ )
+			{
+				setRow( r );
+				script.exec( Context.getCurrentContext( ), scope );
+			}
+			long scriptTime = System.nanoTime( ) - start;
+
+			System.out.println( EXPRESSIONS[i] + ": native "
+					+ nativeTime / ROW_COUNT + "ns/row, script "
+					+ scriptTime / ROW_COUNT + "ns/row" );
+		}
+	}
+
+	private void setRow( int r )
+	{
+		row.put( "PRICE", row, new Double( r % 1000 + 0.5 ) );
+		row.put( "QUANTITY", row, Integer.valueOf( r % 7 ) );
+		row.put( "COUNTRY", row, COUNTRIES[r % COUNTRIES.length] );
+		row.put( "CITY", row, "CITY" + r % 100 );
+		row.put( "DISCOUNT", row, r % 3 == 0 ? null : new Double( r % 10 ) );
+	}
+}
@@ -30,7 +30,19 @@ public class CloseListenerManager
 	{
 		list.add( stream );
 	}
-	
+
+	/**
+	 * Moves the listeners added in other thread to this manager, so they are
+	 * closed with the data engine of this thread.
+	 *
+	 * @param manager
+	 */
+	public void moveFrom( CloseListenerManager manager )
+	{
+		list.addAll( manager.list );
+		manager.list.clear( );
+	}
+
 	public void closeAll( ) throws IOException
 	{
 		for( int i = 0; i < list.size( ); i++ )
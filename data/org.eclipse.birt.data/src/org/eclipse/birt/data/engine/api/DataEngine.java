@@ -66,6 +66,28 @@ abstract public class DataEngine
 	 */
 	public static String DATA_SET_CACHE_ROW_LIMIT = "org.eclipse.birt.data.cache.RowLimit";
 
+	/**
+	 * The seconds a data set stays in the data set cache shared by the
+	 * process, after which it is retrieved again. The value under the key
+	 * followed by "." and the data set name applies to that data set only.
+	 * Zero or absent: the data set does not expire.
+	 */
+	public static String DATA_SET_CACHE_TIME_TO_LIVE = "org.eclipse.birt.data.cache.TimeToLive";
+
+	/**
+	 * The max memory, in MB, of the data sets cached in memory by the data set
+	 * cache shared by the process. It is read from the system property, the
+	 * default value is a quarter of the max heap size.
+	 */
+	public static String DATA_SET_CACHE_MEMORY_LIMIT = "org.eclipse.birt.data.cache.memory.limit";
+
+	/**
+	 * The max disk space, in MB, of the data sets cached on disk by the data
+	 * set cache shared by the process. It is read from the system property,
+	 * the default value is 2048.
+	 */
+	public static String DATA_SET_CACHE_DISK_LIMIT = "org.eclipse.birt.data.cache.disk.limit";
+
 	/**
 	 * Indicate the size of data cached for each result set.We only accept non-negative integer as input, 
 	 * the unit of which would be MB. 
@@ -81,6 +103,76 @@ abstract public class DataEngine
 	
 	
 	public static String DATA_SET_CACHE_DELTA_FILE = "org.eclipse.birt.data.cache.DeltaFile";
+
+	/**
+	 * The number of threads used to sort the data which is spilled to disk
+	 * because it exceeds the result buffer size.
+	 *
+	 * Integer greater than 1: the sorted runs are produced concurrently and
+	 * merged by a single pass k-way merge.
+	 *
+	 * Otherwise: the sort is done in the calling thread by level merge.
+	 */
+	public static String DISK_SORT_PARALLELISM = "org.eclipse.birt.data.cache.disk.sort.parallelism";
+
+	/**
+	 * The max number of sorted runs which are merged at one time by the
+	 * parallel disk sort. It only takes effect when DISK_SORT_PARALLELISM is
+	 * set.
+	 */
+	public static String DISK_SORT_MERGE_FAN_IN = "org.eclipse.birt.data.cache.disk.sort.fanIn";
+
+	/**
+	 * The size of the read ahead buffer of each sorted run in the parallel disk
+	 * sort, the unit of which is KB. It only takes effect when
+	 * DISK_SORT_PARALLELISM is set.
+	 */
+	public static String DISK_SORT_READ_AHEAD_SIZE = "org.eclipse.birt.data.cache.disk.sort.readAhead";
+
+	/**
+	 * The format of the data which is spilled to disk because it exceeds the
+	 * result buffer size. It can be set in the app context, or be set on the
+	 * data engine session to apply to all queries of the session.
+	 *
+	 * SPILL_FORMAT_ROW: the rows are written one by one, which is the default.
+	 *
+	 * SPILL_FORMAT_COLUMNAR: the rows are written in blocks, and the values of
+	 * one column are stored together, with dictionary encoding for repeated
+	 * strings and null bitmaps.
+	 */
+	public static String SPILL_FORMAT = "org.eclipse.birt.data.cache.spill.format";
+
+	public static String SPILL_FORMAT_ROW = "row";
+
+	public static String SPILL_FORMAT_COLUMNAR = "columnar";
+
+	/**
+	 * The max memory, in MB, which can be used by all the in memory caches of
+	 * the process before they spill to disk. As the budget is shared by the
+	 * process, it is read from the system property rather than the app
+	 * context. The default value is half of the max heap size; a value of 0
+	 * disables the broker.
+	 */
+	public static String MEMORY_BROKER_LIMIT = "org.eclipse.birt.data.memory.broker.limit";
+
+	/**
+	 * Whether the simple expressions, such as the arithmetic and comparisons
+	 * of the row columns, are evaluated in Java rather than by the script
+	 * engine. It is read from the system property, the default value is
+	 * "true".
+	 */
+	public static String NATIVE_EXPRESSION = "org.eclipse.birt.data.expression.native";
+	
+	/**
+	 * Whether the data source is asked to sort the rows of a grouped query by
+	 * the group keys when the data set declares no sort hints, so that the
+	 * groups are calculated while the rows are fetched. Only the keys on the
+	 * numeric, date and boolean columns are sorted by the data source, as it
+	 * may compare the strings in another collation. The rows with a null key
+	 * still form one group, but the group is placed where the data source
+	 * sorts the nulls. The default value is "false".
+	 */
+	public static String GROUP_SORTING_PUSH_DOWN = "org.eclipse.birt.data.query.groupSortingPushDown";
 	
 	/**
 	 * Indicates whether memory data set cache function need to be used:
@@ -156,6 +248,39 @@ abstract public class DataEngine
 	 */
 	public static String IN_MEMORY_CUBE_SIZE = "org.eclipse.birt.data.engine.cube.inmemory.size";
 	
+	/**
+	 * The number of threads used to materialize a cube. The level indexes, the
+	 * dimension keys and the fact table segments are built concurrently when
+	 * the value is greater than 1. The default value is 1, in which case the
+	 * cube is built in the calling thread.
+	 */
+	public static String CUBE_BUILD_PARALLELISM = "org.eclipse.birt.data.engine.cube.build.parallelism";
+	
+	/**
+	 * The number of threads used to aggregate the fact table of a cube query.
+	 * The segments of the fact table are scanned concurrently when the value
+	 * is greater than 1 and all the aggregations of the query use the same
+	 * SUM, MAX or MIN function. The default value is 1.
+	 */
+	public static String CUBE_AGGREGATION_PARALLELISM = "org.eclipse.birt.data.engine.cube.aggregation.parallelism";
+	
+	/**
+	 * Whether the level indexes of a materialized cube are saved with the
+	 * bitmaps of the dimension positions, which make the range filters on the
+	 * levels faster at the cost of a larger cube. The default value is false.
+	 */
+	public static String CUBE_LEVEL_POSITION_BITMAPS = "org.eclipse.birt.data.engine.cube.level.positionBitmaps";
+	
+	/**
+	 * The levels of the pre-aggregated rollups built with a materialized
+	 * cube, such as "Time/year,Region/region;Time/year". The rollups are
+	 * separated by ';' and their levels by ',', each level is written as
+	 * dimension/level. The unfiltered aggregations on the levels of a rollup
+	 * or on a subset of them are computed from the rollup rather than from
+	 * the fact table. By default no rollup is built.
+	 */
+	public static String CUBE_ROLLUP_LEVELS = "org.eclipse.birt.data.engine.cube.rollupLevels";
+	
 	/**
 	 * Creates a new instance of DataEngine, using the specified
 	 * DataEngineContext as its running environment
@@ -69,6 +69,8 @@ public class AggregationManager
 			"MODE",
 			"STDDEV",
 			"VARIANCE",
+			"APPROXCOUNTDISTINCT",
+			"APPROXMEDIAN",
 	//		"RANK",
 	//		"RUNNINGSUM"
 	};
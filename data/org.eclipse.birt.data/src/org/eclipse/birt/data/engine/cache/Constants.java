@@ -21,6 +21,8 @@ public class Constants
 	public static int MAX_LIST_BUFFER_SIZE = 6000;
 	public static int FACT_TABLE_BUFFER_SIZE = 40000;
 	public static int MAX_DIMENSION_LENGTH = 1000000;
+	// the number of values a holistic aggregation holds before it spills them
+	public static int AGGREGATION_BUFFER_SIZE = 200000;
 	
 	public static final int FACT_TABLE_BLOCK_SIZE = 2048;
 	public static final int MAX_FACT_TABLE_BLOCK_SIZE = 8192;
@@ -37,6 +39,7 @@ public class Constants
 		LIST_BUFFER_SIZE = 2000000;
 		MAX_LIST_BUFFER_SIZE = 2000000;
 		FACT_TABLE_BUFFER_SIZE = 2000000;
+		AGGREGATION_BUFFER_SIZE = 2000000;
 		aggressiveMemoryUsage = true;
 	}
 	
@@ -45,6 +48,7 @@ public class Constants
 		LIST_BUFFER_SIZE = 4000;
 		MAX_LIST_BUFFER_SIZE = 6000;
 		FACT_TABLE_BUFFER_SIZE = 40000;
+		AGGREGATION_BUFFER_SIZE = 200000;
 		aggressiveMemoryUsage = false;
 	}
 	
@@ -53,6 +57,7 @@ public class Constants
 		LIST_BUFFER_SIZE = 4000;
 		MAX_LIST_BUFFER_SIZE = 6000;
 		FACT_TABLE_BUFFER_SIZE = 40000;
+		AGGREGATION_BUFFER_SIZE = 200000;
 		aggressiveMemoryUsage = false;
 	}
 }
@@ -0,0 +1,451 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.cache;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.ObjectName;
+
+import org.eclipse.birt.data.engine.api.DataEngine;
+
+/**
+ * Process wide memory budget which is shared by all the data engine tasks.
+ * Every consumer which holds data in memory, and is able to spill it to disk,
+ * reserves memory from the broker through a MemoryReservation. When the
+ * budget is used up, the largest spillable consumer is asked to spill first;
+ * the reservation is refused when the requester itself is the largest one.
+ * The usage of every task is reported through JMX.
+ * <p>
+ * A consumer asked to spill only needs to return the memory the broker is
+ * short of, so the request is kept until its reserved memory drops to the
+ * spill target.
+ */
+public class MemoryBroker implements MemoryBrokerMBean
+{
+	public static final String OBJECT_NAME = "org.eclipse.birt.data:type=MemoryBroker";
+
+	private static Logger logger = Logger.getLogger( MemoryBroker.class.getName( ) );
+
+	private static MemoryBroker instance;
+
+	private long memoryLimit;
+	private long usedMemory;
+	private long peakUsedMemory;
+	private long spillCount;
+
+	// the account of every open reservation and its weak reference
+	private Map accounts = new LinkedHashMap( );
+	private ReferenceQueue queue = new ReferenceQueue( );
+
+	/**
+	 * @return the broker shared by the process
+	 */
+	public static synchronized MemoryBroker getInstance( )
+	{
+		if ( instance == null )
+		{
+			instance = new MemoryBroker( getDefaultMemoryLimit( ) );
+			registerMBean( instance );
+		}
+		return instance;
+	}
+
+	/**
+	 * Create a standalone broker. getInstance() should be used to get the
+	 * broker shared by the process.
+	 *
+	 * @param memoryLimit
+	 *            the max number of bytes which can be reserved
+	 */
+	public MemoryBroker( long memoryLimit )
+	{
+		this.memoryLimit = memoryLimit;
+	}
+
+	/**
+	 * @return the limit set by system property DataEngine.MEMORY_BROKER_LIMIT,
+	 *         or half of the max heap size
+	 */
+	private static long getDefaultMemoryLimit( )
+	{
+		String value = System.getProperty( DataEngine.MEMORY_BROKER_LIMIT );
+		if ( value != null )
+		{
+			try
+			{
+				return Long.parseLong( value.trim( ) ) * 1024 * 1024;
+			}
+			catch ( NumberFormatException e )
+			{
+				logger.log( Level.WARNING, "Invalid memory broker limit: "
+						+ value );
+			}
+		}
+		return Runtime.getRuntime( ).maxMemory( ) / 2;
+	}
+
+	/**
+	 * @param broker
+	 */
+	private static void registerMBean( MemoryBroker broker )
+	{
+		try
+		{
+			ManagementFactory.getPlatformMBeanServer( )
+					.registerMBean( broker, new ObjectName( OBJECT_NAME ) );
+		}
+		catch ( Exception e )
+		{
+			// the broker works without JMX, for example when another class
+			// loader has registered the name
+			logger.log( Level.FINE, e.getMessage( ), e );
+		}
+	}
+
+	/**
+	 * Create a reservation for a consumer which is not bound to a task. The
+	 * consumer is reported as a task of its own. Nothing is reserved until
+	 * MemoryReservation.reserve is called.
+	 *
+	 * @param consumerName
+	 * @return
+	 */
+	public MemoryReservation newReservation( String consumerName )
+	{
+		return newReservation( consumerName, null );
+	}
+
+	/**
+	 * Create a reservation for a consumer of a task. The usage of the
+	 * reservations created with the same task object is reported together.
+	 * Nothing is reserved until MemoryReservation.reserve is called.
+	 *
+	 * @param consumerName
+	 * @param task
+	 *            the object which identifies the task, for example the data
+	 *            engine session; null if the consumer is not bound to a task
+	 * @return
+	 */
+	public MemoryReservation newReservation( String consumerName, Object task )
+	{
+		Account account = new Account( consumerName, task );
+		MemoryReservation reservation = new MemoryReservation( this, account );
+		synchronized ( this )
+		{
+			expungeStaleAccounts( );
+			accounts.put( account, new AccountReference( reservation,
+					account,
+					queue ) );
+		}
+		return reservation;
+	}
+
+	/**
+	 * @return false if the memory limit is not positive, then the consumers
+	 *         are only limited by their own budget
+	 */
+	public synchronized boolean isEnabled( )
+	{
+		return memoryLimit > 0;
+	}
+
+	/**
+	 * @param account
+	 * @param size
+	 * @return
+	 */
+	synchronized boolean reserve( Account account, long size )
+	{
+		expungeStaleAccounts( );
+		if ( !accounts.containsKey( account ) )
+			return false;
+
+		// memory held by consumers which have been asked to spill will be
+		// returned soon
+		long pendingMemory = 0;
+		Iterator it = accounts.keySet( ).iterator( );
+		while ( it.hasNext( ) )
+		{
+			Account a = (Account) it.next( );
+			if ( a.spillRequested )
+				pendingMemory += Math.max( 0, a.size - a.spillTarget );
+		}
+
+		while ( memoryLimit > 0
+				&& usedMemory + size > memoryLimit + pendingMemory )
+		{
+			Account largest = getLargestSpillableAccount( );
+			if ( largest == null || largest == account )
+				return false;
+			// only the memory the broker is short of is asked for
+			long spillSize = Math.min( largest.size, usedMemory
+					+ size
+					- memoryLimit
+					- pendingMemory );
+			largest.spillTarget = largest.size - spillSize;
+			largest.spillRequested = true;
+			pendingMemory += spillSize;
+			spillCount++;
+			logger.fine( "Ask " + largest.name + " of " + largest.taskName
+					+ " to spill " + spillSize + " bytes" );
+		}
+
+		account.size += size;
+		usedMemory += size;
+		peakUsedMemory = Math.max( peakUsedMemory, usedMemory );
+		return true;
+	}
+
+	/**
+	 * @return
+	 */
+	private Account getLargestSpillableAccount( )
+	{
+		Account largest = null;
+		Iterator it = accounts.keySet( ).iterator( );
+		while ( it.hasNext( ) )
+		{
+			Account a = (Account) it.next( );
+			if ( a.spillable
+					&& !a.spillRequested
+					&& ( largest == null || a.size > largest.size ) )
+				largest = a;
+		}
+		return largest;
+	}
+
+	/**
+	 * Return the memory of a consumer. The spill request of the consumer is
+	 * cleared once its reserved memory drops to the spill target.
+	 *
+	 * @param account
+	 * @param size
+	 */
+	synchronized void release( Account account, long size )
+	{
+		if ( !accounts.containsKey( account ) )
+		{
+			account.spillRequested = false;
+			return;
+		}
+		size = Math.min( size, account.size );
+		account.size -= size;
+		usedMemory -= size;
+		if ( account.size <= account.spillTarget )
+			account.spillRequested = false;
+	}
+
+	/**
+	 * Return the memory of a consumer which has spilled all it can, and clear
+	 * its spill request even if its reserved memory is still above the spill
+	 * target.
+	 *
+	 * @param account
+	 * @param size
+	 */
+	synchronized void acknowledgeSpill( Account account, long size )
+	{
+		release( account, size );
+		account.spillRequested = false;
+	}
+
+	/**
+	 * @param account
+	 */
+	synchronized void close( Account account )
+	{
+		if ( accounts.remove( account ) != null )
+			usedMemory -= account.size;
+		account.size = 0;
+		account.spillRequested = false;
+	}
+
+	/**
+	 * @param account
+	 * @param spillable
+	 */
+	synchronized void setSpillable( Account account, boolean spillable )
+	{
+		account.spillable = spillable;
+		if ( !spillable )
+			account.spillRequested = false;
+	}
+
+	/**
+	 * Enqueue the reference of the reservation as the garbage collector does
+	 * when the reservation is collected. It is used by the tests.
+	 *
+	 * @param reservation
+	 */
+	synchronized void enqueue( MemoryReservation reservation )
+	{
+		AccountReference ref = (AccountReference) accounts.get( reservation
+				.getAccount( ) );
+		if ( ref != null )
+			ref.enqueue( );
+	}
+
+	/**
+	 * Release the accounts whose reservations have been garbage collected
+	 * without being closed.
+	 */
+	private void expungeStaleAccounts( )
+	{
+		AccountReference ref;
+		while ( ( ref = (AccountReference) queue.poll( ) ) != null )
+		{
+			close( ref.account );
+		}
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.cache.MemoryBrokerMBean#getMemoryLimit()
+	 */
+	public synchronized long getMemoryLimit( )
+	{
+		return memoryLimit;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.cache.MemoryBrokerMBean#setMemoryLimit(long)
+	 */
+	public synchronized void setMemoryLimit( long memoryLimit )
+	{
+		this.memoryLimit = memoryLimit;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.cache.MemoryBrokerMBean#getUsedMemory()
+	 */
+	public synchronized long getUsedMemory( )
+	{
+		expungeStaleAccounts( );
+		return usedMemory;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.cache.MemoryBrokerMBean#getPeakUsedMemory()
+	 */
+	public synchronized long getPeakUsedMemory( )
+	{
+		return peakUsedMemory;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.cache.MemoryBrokerMBean#getSpillCount()
+	 */
+	public synchronized long getSpillCount( )
+	{
+		return spillCount;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.cache.MemoryBrokerMBean#getConsumerCount()
+	 */
+	public synchronized int getConsumerCount( )
+	{
+		expungeStaleAccounts( );
+		int count = 0;
+		Iterator it = accounts.keySet( ).iterator( );
+		while ( it.hasNext( ) )
+		{
+			if ( ( (Account) it.next( ) ).size > 0 )
+				count++;
+		}
+		return count;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.cache.MemoryBrokerMBean#getTaskMemoryUsage()
+	 */
+	public synchronized String[] getTaskMemoryUsage( )
+	{
+		expungeStaleAccounts( );
+		// the tasks are identified by their objects rather than their names
+		Map taskUsage = new IdentityHashMap( );
+		Map taskNames = new LinkedHashMap( );
+		Iterator it = accounts.keySet( ).iterator( );
+		while ( it.hasNext( ) )
+		{
+			Account a = (Account) it.next( );
+			Object task = a.task == null ? a : a.task;
+			Long size = (Long) taskUsage.get( task );
+			taskUsage.put( task,
+					Long.valueOf( size == null ? a.size : size.longValue( )
+							+ a.size ) );
+			if ( size == null )
+				taskNames.put( task, a.taskName );
+		}
+		List result = new ArrayList( );
+		it = taskNames.entrySet( ).iterator( );
+		while ( it.hasNext( ) )
+		{
+			Map.Entry entry = (Map.Entry) it.next( );
+			result.add( entry.getValue( ) + ": "
+					+ taskUsage.get( entry.getKey( ) ) );
+		}
+		return (String[]) result.toArray( new String[result.size( )] );
+	}
+
+	/**
+	 * The state of one reservation which is kept by the broker. It outlives
+	 * the reservation so that the memory of a reservation which is not closed
+	 * can be released.
+	 */
+	static class Account
+	{
+		String name;
+		Object task;
+		String taskName;
+
+		// guarded by the broker
+		long size;
+		long spillTarget;
+		boolean spillable = true;
+
+		// read by the consumer without lock
+		volatile boolean spillRequested;
+
+		Account( String name, Object task )
+		{
+			this.name = name;
+			this.task = task;
+			this.taskName = task == null ? name : String.valueOf( task );
+		}
+	}
+
+	/**
+	 * Weak reference to a reservation, which is enqueued when the reservation
+	 * is garbage collected.
+	 */
+	private static class AccountReference extends WeakReference
+	{
+		Account account;
+
+		AccountReference( MemoryReservation reservation, Account account,
+				ReferenceQueue queue )
+		{
+			super( reservation, queue );
+			this.account = account;
+		}
+	}
+}
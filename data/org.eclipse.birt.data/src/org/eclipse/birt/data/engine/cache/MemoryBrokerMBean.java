@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.cache;
+
+/**
+ * Management interface of MemoryBroker, which is registered to the platform
+ * MBean server under the name MemoryBroker.OBJECT_NAME.
+ */
+public interface MemoryBrokerMBean
+{
+
+	/**
+	 * @return the max number of bytes which can be reserved by all consumers
+	 */
+	public long getMemoryLimit( );
+
+	/**
+	 * @param memoryLimit
+	 *            the max number of bytes which can be reserved by all
+	 *            consumers
+	 */
+	public void setMemoryLimit( long memoryLimit );
+
+	/**
+	 * @return the number of bytes reserved by all consumers
+	 */
+	public long getUsedMemory( );
+
+	/**
+	 * @return the max number of bytes which have been reserved at one time
+	 */
+	public long getPeakUsedMemory( );
+
+	/**
+	 * @return the number of times a consumer has been asked to spill
+	 */
+	public long getSpillCount( );
+
+	/**
+	 * @return the number of consumers which hold reserved memory
+	 */
+	public int getConsumerCount( );
+
+	/**
+	 * @return the reserved memory of every task, in the form of
+	 *         "task: bytes"
+	 */
+	public String[] getTaskMemoryUsage( );
+}
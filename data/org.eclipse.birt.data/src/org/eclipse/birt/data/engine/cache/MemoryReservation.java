@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.cache;
+
+/**
+ * The memory reserved by one consumer from MemoryBroker. A reservation is used
+ * by one thread: the consumer reserves memory before it holds more data in
+ * memory, and starts to spill its data to disk once a reservation is refused.
+ * Memory is reserved from the broker in chunks so that the broker is not
+ * visited for every row. The reservation should be closed when the data is
+ * released; a reservation which is garbage collected without being closed is
+ * released by the broker.
+ */
+public class MemoryReservation
+{
+	// memory is reserved from the broker in chunks of this size
+	static final long CHUNK_SIZE = 64 * 1024;
+
+	private MemoryBroker broker;
+	private MemoryBroker.Account account;
+
+	// the bytes used by the consumer, which are no more than granted bytes
+	private long usedSize;
+	private long grantedSize;
+
+	/**
+	 * @param broker
+	 * @param account
+	 */
+	MemoryReservation( MemoryBroker broker, MemoryBroker.Account account )
+	{
+		this.broker = broker;
+		this.account = account;
+	}
+
+	/**
+	 * Reserve memory for the data which is going to be held in memory.
+	 *
+	 * @param size
+	 *            the number of bytes
+	 * @return false if the memory can not be reserved, or if the broker asks
+	 *         this consumer to spill. The consumer should not hold more data
+	 *         in memory until it has released the spilled data.
+	 */
+	public boolean reserve( long size )
+	{
+		if ( account.spillRequested )
+			return false;
+		if ( usedSize + size <= grantedSize )
+		{
+			usedSize += size;
+			return true;
+		}
+		long request = Math.max( CHUNK_SIZE, usedSize + size - grantedSize );
+		if ( !broker.reserve( account, request ) )
+			return false;
+		grantedSize += request;
+		usedSize += size;
+		return true;
+	}
+
+	/**
+	 * Return memory which is no longer used.
+	 *
+	 * @param size
+	 *            the number of bytes
+	 */
+	public void release( long size )
+	{
+		usedSize = Math.max( 0, usedSize - size );
+		if ( account.spillRequested )
+		{
+			// the consumer has spilled its data, all the memory it does not
+			// use is returned and it can reserve memory again
+			broker.release( account, grantedSize - usedSize );
+			grantedSize = usedSize;
+		}
+		else if ( grantedSize - usedSize > 2 * CHUNK_SIZE )
+		{
+			long surplus = grantedSize - usedSize - CHUNK_SIZE;
+			broker.release( account, surplus );
+			grantedSize -= surplus;
+		}
+	}
+
+	/**
+	 * Tell the broker that the consumer has spilled all the data it is able to
+	 * spill. The memory which is not used is returned and the spill request is
+	 * cleared, so the consumer can reserve memory again although it still
+	 * holds more than the broker asked for.
+	 */
+	public void acknowledgeSpill( )
+	{
+		broker.acknowledgeSpill( account, grantedSize - usedSize );
+		grantedSize = usedSize;
+	}
+
+	/**
+	 * Return all the reserved memory. The reservation can not be used any
+	 * more.
+	 */
+	public void close( )
+	{
+		broker.close( account );
+		usedSize = 0;
+		grantedSize = 0;
+	}
+
+	/**
+	 * @return the account of the reservation kept by the broker
+	 */
+	MemoryBroker.Account getAccount( )
+	{
+		return account;
+	}
+
+	/**
+	 * @return the number of bytes used by the consumer
+	 */
+	public long getReservedSize( )
+	{
+		return usedSize;
+	}
+
+	/**
+	 * @return true if the broker asks this consumer to spill its data
+	 */
+	public boolean isSpillRequested( )
+	{
+		return account.spillRequested;
+	}
+
+	/**
+	 * Set whether the consumer is still able to spill its data. The broker
+	 * only asks spillable consumers to spill. A consumer which has finished
+	 * loading its data, and keeps it in memory until it is closed, is not
+	 * spillable.
+	 *
+	 * @param spillable
+	 */
+	public void setSpillable( boolean spillable )
+	{
+		broker.setSpillable( account, spillable );
+	}
+}
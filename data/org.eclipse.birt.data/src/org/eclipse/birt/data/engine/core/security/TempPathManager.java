@@ -34,6 +34,11 @@ public class TempPathManager
 		}
 	}
 
+	public String getTempPath( )
+	{
+		return tmpPath;
+	}
+
 	public String getTempFileName( String fileNamePrefix, int objectID,
 			String extName )
 	{
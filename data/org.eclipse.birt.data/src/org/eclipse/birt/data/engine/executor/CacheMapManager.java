@@ -13,7 +13,6 @@ package org.eclipse.birt.data.engine.executor;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -30,36 +29,31 @@ public class CacheMapManager
 	 * Please notice that we must use static variable here for the sharing of
 	 * cached data set would be cross data set session.
 	 */
-	private static Map JVMLevelCacheMap = Collections.synchronizedMap( new HashMap( ) );
+	private static JVMDataSetCache JVMLevelCache = JVMDataSetCache.getInstance( );
 	private static Map<DataSourceAndDataSet, Integer> lockedDataSetCacheMap = Collections.synchronizedMap( new HashMap( ) );	
 	
+	// the cache map of data engine level cache, the data sets of JVM level
+	// cache are kept in JVMLevelCache
 	private Map<DataSourceAndDataSet, IDataSetCacheObject> cacheMap;
 	// use this field temporarily keep the data set object need to be saved in
 	// cache. After the data set result has been cached, saved data set object
 	// into cachedMap
 	private Map<DataSourceAndDataSet, IDataSetCacheObject> tempDataSetCacheMap;
+	// the data sets of JVM level cache which are being read by the queries of
+	// this manager, they are released after they are read
+	private Map<DataSourceAndDataSet, List<Object>> readings = new HashMap<DataSourceAndDataSet, List<Object>>( );
 	
 	private boolean useJVMLevelCache;
 	
-	//ensure that JVMLevelCache will be clear when JVM shutdown
-	static
-	{
-		new ShutdownHook( JVMLevelCacheMap );
-	}
-	
 	/**
 	 * construction
 	 */
 	CacheMapManager( boolean useJVMLevelCache )
 	{
 		this.useJVMLevelCache = useJVMLevelCache;
-		if( useJVMLevelCache )
-		{
-			cacheMap = JVMLevelCacheMap;
-		}
-		else
+		if( !useJVMLevelCache )
 		{
-			cacheMap = new HashMap( );
+			cacheMap = new HashMap<DataSourceAndDataSet, IDataSetCacheObject>( );
 		}
 		tempDataSetCacheMap = new HashMap<DataSourceAndDataSet, IDataSetCacheObject>( );
 	}
@@ -75,9 +69,9 @@ public class CacheMapManager
 	boolean doesSaveToCache( DataSourceAndDataSet dsAndDs,
 			DataSetCacheConfig dscc) throws DataException
 	{		
-		synchronized ( cacheMap )
+		synchronized ( this )
 		{
-			IDataSetCacheObject cacheObject = (IDataSetCacheObject)cacheMap.get( dsAndDs );
+			IDataSetCacheObject cacheObject = peekCacheObject( dsAndDs );
 			if (cacheObject != null)
 			{
 				return cacheObject.needUpdateCache( dscc.getCacheCapability( ) );
@@ -87,7 +81,13 @@ public class CacheMapManager
 				if( !tempDataSetCacheMap.containsKey( dsAndDs ) )
 				{
 					IDataSetCacheObject dsco = dscc.createDataSetCacheObject( );
-					tempDataSetCacheMap.put( dsAndDs, dsco );					
+					tempDataSetCacheMap.put( dsAndDs, dsco );
+					// the concurrent queries on the same data set wait for it
+					// rather than executing the data set again
+					if ( useJVMLevelCache )
+					{
+						JVMLevelCache.startLoading( dsAndDs, this );
+					}
 				}
 				return true;
 			}
@@ -100,50 +100,47 @@ public class CacheMapManager
 	 */
 	boolean doesLoadFromCache( DataSourceAndDataSet dsAndDs, int requiredCapability )
 	{
-		synchronized ( cacheMap )
+		// waits out of the lock if another query is caching the data set
+		IDataSetCacheObject cacheObject = getCacheObject( dsAndDs );
+		if ( cacheObject == null )
 		{
-			IDataSetCacheObject cacheObject = (IDataSetCacheObject)cacheMap.get( dsAndDs );
-			if (cacheObject != null)
+			return false;
+		}
+		synchronized ( this )
+		{
+			boolean reusable = cacheObject.isCachedDataReusable( requiredCapability );
+			if ( !reusable )
 			{
-				boolean reusable = cacheObject.isCachedDataReusable( requiredCapability );
-				if ( !reusable )
+				if ( useJVMLevelCache )
 				{
-					if ( useJVMLevelCache )
+					synchronized ( lockedDataSetCacheMap )
 					{
-						synchronized ( lockedDataSetCacheMap )
+						if ( lockedDataSetCacheMap.containsKey( dsAndDs ) )
 						{
-							if ( lockedDataSetCacheMap.containsKey( dsAndDs ) )
+							try
 							{
-								try
-								{
-									// waiting for 60s
-									lockedDataSetCacheMap.wait( 60000 );
-								}
-								catch ( InterruptedException e )
-								{
-								}
-								lockedDataSetCacheMap.remove( dsAndDs );
+								// waiting for 60s
+								lockedDataSetCacheMap.wait( 60000 );
 							}
+							catch ( InterruptedException e )
+							{
+							}
+							lockedDataSetCacheMap.remove( dsAndDs );
 						}
 					}
-					cacheObject.release( );
-					tempDataSetCacheMap.remove( dsAndDs );
-					cacheMap.remove( dsAndDs );
 				}
-				else
-				if ( this.useJVMLevelCache )
-				{
-					if ( !lockedDataSetCacheMap.containsKey( dsAndDs ) )
-					{
-						lockedDataSetCacheMap.put( dsAndDs, 0 );
-					}
-				}
-				return reusable;
+				tempDataSetCacheMap.remove( dsAndDs );
+				removeCacheObject( dsAndDs, cacheObject );
 			}
 			else
+			if ( this.useJVMLevelCache )
 			{
-				return false;
+				if ( !lockedDataSetCacheMap.containsKey( dsAndDs ) )
+				{
+					lockedDataSetCacheMap.put( dsAndDs, 0 );
+				}
 			}
+			return reusable;
 		}
 	}
 	
@@ -152,18 +149,60 @@ public class CacheMapManager
 	 */
 	IDataSetCacheObject getSavedCacheObject( DataSourceAndDataSet dsAndDs )
 	{	
-		synchronized ( cacheMap )
+		synchronized ( this )
 		{
 			return tempDataSetCacheMap.get( dsAndDs );
 		}
 	}
 	
+	/**
+	 * @param dsAndDs
+	 * @param dsco
+	 * @param timeToLive
+	 *            the milliseconds the data set is cached in JVM level cache,
+	 *            0 means the default time to live of the cache
+	 */
 	void saveFinishOnCache( DataSourceAndDataSet dsAndDs,
-			IDataSetCacheObject dsco )
+			IDataSetCacheObject dsco, long timeToLive )
+	{
+		synchronized ( this )
+		{
+			if ( useJVMLevelCache )
+			{
+				JVMLevelCache.put( dsAndDs, dsco, timeToLive );
+				JVMLevelCache.finishLoading( dsAndDs, this );
+			}
+			else
+			{
+				cacheMap.put( dsAndDs, dsco );
+			}
+		}
+	}
+	
+	/**
+	 * Notifies the queries waiting for a data set which failed to be cached,
+	 * and discards what has been saved.
+	 * 
+	 * @param dsAndDs
+	 */
+	void saveFailOnCache( DataSourceAndDataSet dsAndDs )
 	{
-		synchronized ( cacheMap )
+		IDataSetCacheObject dsco;
+		synchronized ( this )
 		{
-			cacheMap.put( dsAndDs, dsco );
+			dsco = tempDataSetCacheMap.remove( dsAndDs );
+			if ( useJVMLevelCache )
+			{
+				JVMLevelCache.finishLoading( dsAndDs, this );
+			}
+			if ( dsco == peekCacheObject( dsAndDs ) )
+			{
+				return;
+			}
+		}
+		if ( dsco != null )
+		{
+			dsco.release( );
 		}
 	}
 	
@@ -181,6 +220,21 @@ public class CacheMapManager
 					lockedDataSetCacheMap.put( dsAndDs, count + 1 );
 				}
 			}
+			// the data set is not evicted or released while it is being read
+			Object reading = JVMLevelCache.startReading( dsAndDs );
+			if ( reading != null )
+			{
+				synchronized ( this )
+				{
+					List<Object> list = readings.get( dsAndDs );
+					if ( list == null )
+					{
+						list = new ArrayList<Object>( );
+						readings.put( dsAndDs, list );
+					}
+					list.add( reading );
+				}
+			}
 		}
 	}
 
@@ -206,6 +260,20 @@ public class CacheMapManager
 					}
 				}
 			}
+			Object reading = null;
+			synchronized ( this )
+			{
+				List<Object> list = readings.get( dsAndDs );
+				if ( list != null )
+				{
+					reading = list.remove( list.size( ) - 1 );
+					if ( list.isEmpty( ) )
+					{
+						readings.remove( dsAndDs );
+					}
+				}
+			}
+			JVMLevelCache.finishReading( reading );
 		}
 	}
 	
@@ -215,7 +283,7 @@ public class CacheMapManager
 	 */
 	IDataSetCacheObject getloadedCacheObject( DataSourceAndDataSet dsAndDs )
 	{	
-		return (IDataSetCacheObject) cacheMap.get( dsAndDs );
+		return peekCacheObject( dsAndDs );
 	}
 	
 	/**
@@ -225,24 +293,42 @@ public class CacheMapManager
 	void clearCache( DataSourceAndDataSet dsAndDs )
 	{
 		List cacheObjects = new ArrayList( );
-		synchronized ( cacheMap )
+		synchronized ( this )
 		{
-			Object key = getKey(dsAndDs);
+			DataSourceAndDataSet key = getKey(dsAndDs);
 			while ( key != null )
 			{
-				cacheObjects.add( cacheMap.remove( key ) );
+				cacheObjects.add( removeCacheObject( key ) );
 				tempDataSetCacheMap.remove( key );
 				key = getKey(dsAndDs);
 			}
+			// the data sets this manager failed to cache
+			if ( useJVMLevelCache )
+			{
+				JVMLevelCache.finishLoading( this );
+			}
 		}
 		for ( int i = 0; i < cacheObjects.size( ); i++ )
 		{
 			IDataSetCacheObject cacheObject = (IDataSetCacheObject)cacheObjects.get( i );
-			cacheObject.release( );
+			if ( cacheObject != null )
+				cacheObject.release( );
 		}
 
 	}
 	
+	/**
+	 * Notifies the queries waiting for the data sets this manager has not
+	 * finished caching, which is called when the data engine is shut down.
+	 */
+	void cancelLoading( )
+	{
+		if ( useJVMLevelCache )
+		{
+			JVMLevelCache.finishLoading( this );
+		}
+	}
+	
 	/**
 	 * Reset for test case
 	 */
@@ -250,7 +336,14 @@ public class CacheMapManager
 	{
 		synchronized ( this )
 		{
-			cacheMap.clear( );
+			if ( useJVMLevelCache )
+			{
+				JVMLevelCache.clear( );
+			}
+			else
+			{
+				cacheMap.clear( );
+			}
 			tempDataSetCacheMap.clear( );
 		}
 	}
@@ -268,10 +361,10 @@ public class CacheMapManager
 			throws DataException
 	{
 		IDataSetCacheObject cacheObject = null;
-		Object key = getKey( dsAndDs );
+		DataSourceAndDataSet key = getKey( dsAndDs );
 		if ( key != null )
 		{
-			cacheObject = (IDataSetCacheObject)cacheMap.get( key );
+			cacheObject = peekCacheObject( key );
 		}
 		if (cacheObject != null)
 		{
@@ -288,30 +381,117 @@ public class CacheMapManager
 	 * @param dsAndDs
 	 * @return
 	 */
-	private Object getKey ( DataSourceAndDataSet dsAndDs )
+	private DataSourceAndDataSet getKey ( DataSourceAndDataSet dsAndDs )
 	{
-		synchronized ( cacheMap )
+		DataSourceAndDataSet[] keys = getCachedKeys( );
+		for ( int i = 0; i < keys.length; i++ )
 		{
-			for ( Iterator it = cacheMap.keySet( ).iterator( ); it.hasNext( ); )
+			if ( keys[i].isDataSourceDataSetEqual( dsAndDs, false ) )
 			{
-				DataSourceAndDataSet temp = (DataSourceAndDataSet) it.next( );
-				if ( temp.isDataSourceDataSetEqual( dsAndDs, false ) )
-				{
-					return temp;
-				}
+				return keys[i];
 			}
+		}
+		return null;
+	}
+	
+	/**
+	 * @param dsAndDs
+	 * @return the cached data set, the JVM level cache waits for the data set
+	 *         if another query is caching it
+	 */
+	private IDataSetCacheObject getCacheObject( DataSourceAndDataSet dsAndDs )
+	{
+		if ( useJVMLevelCache )
+		{
+			return JVMLevelCache.get( dsAndDs, this );
+		}
+		synchronized ( this )
+		{
+			return cacheMap.get( dsAndDs );
+		}
+	}
+	
+	/**
+	 * @param dsAndDs
+	 * @return the cached data set
+	 */
+	private IDataSetCacheObject peekCacheObject( DataSourceAndDataSet dsAndDs )
+	{
+		if ( useJVMLevelCache )
+		{
+			return JVMLevelCache.peek( dsAndDs );
+		}
+		synchronized ( this )
+		{
+			return cacheMap.get( dsAndDs );
+		}
+	}
+	
+	/**
+	 * @param dsAndDs
+	 * @return the removed data set which should be released, null if it is
+	 *         released by the JVM level cache once it is not read
+	 */
+	private IDataSetCacheObject removeCacheObject( DataSourceAndDataSet dsAndDs )
+	{
+		if ( useJVMLevelCache )
+		{
+			JVMLevelCache.remove( dsAndDs );
 			return null;
 		}
+		synchronized ( this )
+		{
+			return cacheMap.remove( dsAndDs );
+		}
+	}
+	
+	/**
+	 * Removes and releases a data set if it is still cached, the data sets of
+	 * JVM level cache are released once they are not read.
+	 * 
+	 * @param dsAndDs
+	 * @param cacheObject
+	 */
+	private void removeCacheObject( DataSourceAndDataSet dsAndDs,
+			IDataSetCacheObject cacheObject )
+	{
+		if ( useJVMLevelCache )
+		{
+			JVMLevelCache.remove( dsAndDs, cacheObject );
+			return;
+		}
+		synchronized ( this )
+		{
+			if ( cacheMap.get( dsAndDs ) != cacheObject )
+			{
+				return;
+			}
+			cacheMap.remove( dsAndDs );
+		}
+		cacheObject.release( );
+	}
+	
+	/**
+	 * @return
+	 */
+	private DataSourceAndDataSet[] getCachedKeys( )
+	{
+		if ( useJVMLevelCache )
+		{
+			return JVMLevelCache.getKeys( );
+		}
+		synchronized ( this )
+		{
+			return cacheMap.keySet( ).toArray( new DataSourceAndDataSet[0] );
+		}
 	}
 	
 	public static void clearCache( Set<String> cacheIDs ) 
 	{
-		List<IDataSetCacheObject> removed = new ArrayList<IDataSetCacheObject>( );
-		
-		Object[] keyArray = JVMLevelCacheMap.keySet( ).toArray( new DataSourceAndDataSet[]{} );
-		for( Object dsAndDs : keyArray )
+		DataSourceAndDataSet[] keyArray = JVMLevelCache.getKeys( );
+		for( DataSourceAndDataSet dsAndDs : keyArray )
 		{
-			if( cacheIDs.contains( ((DataSourceAndDataSet)dsAndDs).getCacheScopeID( ) ))
+			if( cacheIDs.contains( dsAndDs.getCacheScopeID( ) ))
 			{
 				// here we do not use while clause to avoid thread suspending if
 				// cached is not properly closed.
@@ -330,34 +510,32 @@ public class CacheMapManager
 		             lockedDataSetCacheMap.remove( dsAndDs );
 			      }
 				}
-				IDataSetCacheObject cacheObj = (IDataSetCacheObject) JVMLevelCacheMap.remove( dsAndDs );
-				if( cacheObj != null )
-					removed.add( cacheObj );
-				
+				// released once it is not read
+				JVMLevelCache.remove( dsAndDs );
 			}
 		}
-		
-		for( IDataSetCacheObject dataSetCacheObject : removed )
-		{
-			dataSetCacheObject.release( );
-		}
 	}
 	
 	void clearCache( )
 	{
 		List cacheObjects = new ArrayList( );
-		synchronized ( cacheMap )
+		synchronized ( this )
 		{
-			for ( DataSourceAndDataSet dataSetAndSource : cacheMap.keySet( ).toArray( new DataSourceAndDataSet[0] ) )
+			for ( DataSourceAndDataSet dataSetAndSource : getCachedKeys( ) )
  			{
-				cacheObjects.add( cacheMap.remove( dataSetAndSource ) );
+				cacheObjects.add( removeCacheObject( dataSetAndSource ) );
 				tempDataSetCacheMap.remove( dataSetAndSource );
  			}
+			if ( useJVMLevelCache )
+			{
+				JVMLevelCache.finishLoading( this );
+			}
 		}
 		for ( int i = 0; i < cacheObjects.size( ); i++ )
 		{
 			IDataSetCacheObject cacheObject = (IDataSetCacheObject)cacheObjects.get( i );
-			cacheObject.release( );
+			if ( cacheObject != null )
+				cacheObject.release( );
 		}
 	}
 }
@@ -368,27 +546,16 @@ public class CacheMapManager
  */
 class ShutdownHook implements Runnable
 {
-	private Map<DataSourceAndDataSet, IDataSetCacheObject> cacheMap;
+	private JVMDataSetCache cache;
 
-	ShutdownHook(
-			Map<DataSourceAndDataSet, IDataSetCacheObject> jvmLevelCacheMap )
+	ShutdownHook( JVMDataSetCache jvmLevelCache )
 	{
-		cacheMap = jvmLevelCacheMap;
+		cache = jvmLevelCache;
 		Runtime.getRuntime( ).addShutdownHook( new Thread( this ) );
 	}
 
 	public void run( )
 	{
-		List<IDataSetCacheObject> cacheObjects = new ArrayList<IDataSetCacheObject>( );
-		for ( DataSourceAndDataSet dataSetAndSource : cacheMap.keySet( )
-				.toArray( new DataSourceAndDataSet[0] ) )
-		{
-			cacheObjects.add( cacheMap.remove( dataSetAndSource ) );
-		}
-		for ( int i = 0; i < cacheObjects.size( ); i++ )
-		{
-			IDataSetCacheObject cacheObject = (IDataSetCacheObject) cacheObjects.get( i );
-			cacheObject.release( );
-		}
+		cache.clear( );
 	}
 }
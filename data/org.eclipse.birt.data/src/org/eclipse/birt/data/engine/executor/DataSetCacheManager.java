@@ -89,6 +89,7 @@ public class DataSetCacheManager
 			{
 				try
 				{
+					jvmLevelCacheMapManager.cancelLoading( );
 					dteLevelCacheMapManager.clearCache( );
 				}
 				catch ( Exception e )
@@ -329,7 +330,22 @@ public class DataSetCacheManager
 		
 		cacheMapManager.saveFinishOnCache( DataSourceAndDataSet.newInstance( this.dataSourceDesign,
 				this.dataSetDesign,
-				this.parameterHints, this.cacheID, this.enableSamplePreview ), dsco );
+				this.parameterHints, this.cacheID, this.enableSamplePreview ),
+				dsco,
+				DataSetCacheUtil.getDataSetCacheTimeToLive( appContext,
+						dataSetDesign ) );
+	}
+	
+	/**
+	 * Notifies the queries waiting for the current data set, which failed to
+	 * be cached.
+	 */
+	public void saveFailed( )
+	{
+		// only the queries on JVM level cache wait for each other
+		jvmLevelCacheMapManager.saveFailOnCache( DataSourceAndDataSet.newInstance( this.dataSourceDesign,
+				this.dataSetDesign,
+				this.parameterHints, this.cacheID, this.enableSamplePreview ) );
 	}
 	
 	/**
@@ -185,6 +185,14 @@ class DataSource implements IDataSource
 	    appContext = context;
 	}
 
+	/**
+	 * @return the app context set by setAppContext
+	 */
+	Map getAppContext( )
+	{
+		return appContext;
+	}
+
     /*
      * @see org.eclipse.birt.data.engine.odi.IDataSource#isOpen()
      */
@@ -26,10 +26,15 @@ import java.util.logging.Logger;
 
 import org.eclipse.birt.core.data.DataType;
 import org.eclipse.birt.core.data.DataTypeUtil;
+import org.eclipse.birt.core.data.ExpressionUtil;
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.data.engine.api.DataEngine;
 import org.eclipse.birt.data.engine.api.DataEngineContext;
+import org.eclipse.birt.data.engine.api.IBaseDataSetDesign;
 import org.eclipse.birt.data.engine.api.IColumnDefinition;
 import org.eclipse.birt.data.engine.api.IOdaDataSetDesign;
 import org.eclipse.birt.data.engine.api.IQueryDefinition;
+import org.eclipse.birt.data.engine.api.ISortDefinition;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.executor.DataSource.CacheConnection;
 import org.eclipse.birt.data.engine.executor.QueryExecutionStrategyUtil.Strategy;
@@ -59,6 +64,7 @@ import org.eclipse.birt.data.engine.odi.IResultClass;
 import org.eclipse.birt.data.engine.odi.IResultIterator;
 import org.eclipse.datatools.connectivity.oda.IBlob;
 import org.eclipse.datatools.connectivity.oda.IClob;
+import org.eclipse.datatools.connectivity.oda.IDataSetMetaData;
 import org.eclipse.datatools.connectivity.oda.spec.QuerySpecification;
 import org.eclipse.datatools.connectivity.oda.spec.basequery.CombinedQuery;
 
@@ -166,6 +172,10 @@ public class DataSourceQuery extends BaseQuery implements IDataSourceQuery, IPre
     
 	private QuerySpecification querySpecificaton;
 	
+	// the order of the rows required from the data source, so that the groups
+	// can be calculated while the rows are fetched
+	private List<ISortDefinition> pushedSortHints;
+	
 	// input parameter values
 	private Collection inputParamValues;
 	
@@ -390,10 +400,167 @@ public class DataSourceQuery extends BaseQuery implements IDataSourceQuery, IPre
             // Assume metadata not available at prepare time; ignore the exception
         	resultMetadata = null;
         }
+        
+        if ( !session.getStopSign( ).isStopped( ) )
+        	pushDownGroupSorting( );
         logger.fine( "Prepare ODA Query uses:" + ( System.currentTimeMillis( ) - start) + " ms " );
         return this;
     }
 
+	/**
+	 * Requires the data source to sort the rows by the group keys if the data
+	 * set does not declare the order of its rows, so that the groups can be
+	 * calculated while the rows are fetched rather than after all the rows are
+	 * cached and sorted. It is enabled by DataEngine.GROUP_SORTING_PUSH_DOWN,
+	 * and nothing is required if the driver does not support the sort keys.
+	 * 
+	 * @throws DataException
+	 */
+	private void pushDownGroupSorting( ) throws DataException
+	{
+		if ( !isGroupSortingPushedDown( dataSource.getAppContext( ), session )
+				|| !( this.getQueryDefinition( ) instanceof IQueryDefinition )
+				|| resultMetadata == null
+				|| session.getDataSetCacheManager( ).doesSaveToCache( )
+				|| ( session.getEngineContext( ).getMode( ) != DataEngineContext.DIRECT_PRESENTATION && session.getEngineContext( )
+						.getMode( ) != DataEngineContext.MODE_GENERATION ) )
+			return;
+
+		IQueryDefinition queryDefn = (IQueryDefinition) this.getQueryDefinition( );
+		if ( queryDefn.getDataSetName( ) == null )
+			return;
+		IBaseDataSetDesign dataSetDesign = ( (DataEngineImpl) this.session.getEngine( ) ).getDataSetDesign( queryDefn.getDataSetName( ) );
+		List<ISortDefinition> sortHints = QueryExecutionStrategyUtil.getGroupSortingSequence( this.session,
+				queryDefn,
+				dataSetDesign );
+		if ( sortHints == null )
+			return;
+
+		org.eclipse.datatools.connectivity.oda.SortSpec sortSpec = createGroupSortSpec( sortHints,
+				odaStatement.getSortMode( ),
+				resultMetadata,
+				dataSetDesign );
+		if ( sortSpec == null )
+			return;
+
+		try
+		{
+			odaStatement.setSortSpec( sortSpec );
+			this.pushedSortHints = sortHints;
+		}
+		catch ( DataException e )
+		{
+			// The rows are sorted after they are cached
+			logger.log( Level.FINE, e.getMessage( ), e );
+		}
+	}
+
+	/**
+	 * The option set in the app context takes precedence over the one set on
+	 * the session.
+	 * 
+	 * @param appContext
+	 * @param session
+	 * @return whether DataEngine.GROUP_SORTING_PUSH_DOWN is enabled
+	 */
+	static boolean isGroupSortingPushedDown( Map appContext,
+			DataEngineSession session )
+	{
+		Object value = appContext == null ? null
+				: appContext.get( DataEngine.GROUP_SORTING_PUSH_DOWN );
+		if ( value == null && session != null )
+			value = session.get( DataEngine.GROUP_SORTING_PUSH_DOWN );
+		return value != null
+				&& "true".equalsIgnoreCase( value.toString( ).trim( ) );
+	}
+
+	/**
+	 * 
+	 * @param sortHints
+	 *            the order of the data set rows required by the groups
+	 * @param sortMode
+	 *            the sort mode of the driver
+	 * @param resultMetadata
+	 * @param dataSetDesign
+	 * @return the sort spec set on the statement, or null if the driver can
+	 *         not sort the rows in this order
+	 * @throws DataException
+	 */
+	static org.eclipse.datatools.connectivity.oda.SortSpec createGroupSortSpec(
+			List<ISortDefinition> sortHints, int sortMode,
+			IResultClass resultMetadata, IBaseDataSetDesign dataSetDesign )
+			throws DataException
+	{
+		if ( sortMode == IDataSetMetaData.sortModeNone
+				|| ( sortMode == IDataSetMetaData.sortModeSingleColumn && sortHints.size( ) > 1 ) )
+			return null;
+		org.eclipse.datatools.connectivity.oda.SortSpec sortSpec = new org.eclipse.datatools.connectivity.oda.SortSpec( sortMode );
+		for ( ISortDefinition sortHint : sortHints )
+		{
+			String columnName = getOdaColumnName( sortHint,
+					resultMetadata,
+					dataSetDesign );
+			if ( columnName == null )
+				return null;
+			if ( sortMode == IDataSetMetaData.sortModeSingleOrder
+					&& sortHint.getSortDirection( ) != sortHints.get( 0 )
+							.getSortDirection( ) )
+				return null;
+			sortSpec.addSortKey( columnName,
+					sortHint.getSortDirection( ) == ISortDefinition.SORT_DESC
+							? org.eclipse.datatools.connectivity.oda.SortSpec.sortDesc
+							: org.eclipse.datatools.connectivity.oda.SortSpec.sortAsc );
+		}
+		return sortSpec;
+	}
+
+	/**
+	 * 
+	 * @param sortHint
+	 * @param resultMetadata
+	 * @param dataSetDesign
+	 * @return the name of the sort column in the data source, or null if the
+	 *         sort key is not a column of the data source, or the data source
+	 *         may not compare its values as the data engine does
+	 * @throws DataException
+	 */
+	private static String getOdaColumnName( ISortDefinition sortHint,
+			IResultClass resultMetadata, IBaseDataSetDesign dataSetDesign )
+			throws DataException
+	{
+		String columnName;
+		try
+		{
+			columnName = ExpressionUtil.getColumnName( sortHint.getExpression( )
+					.getText( ) );
+		}
+		catch ( BirtException e )
+		{
+			return null;
+		}
+		if ( columnName == null )
+			return null;
+		int index = resultMetadata.getFieldIndex( columnName );
+		if ( index <= 0 || resultMetadata.isCustomField( index ) )
+			return null;
+		// the strings may be sorted in the collation of the data source
+		Class valueClass = resultMetadata.getFieldValueClass( index );
+		if ( valueClass == null
+				|| !( Number.class.isAssignableFrom( valueClass )
+						|| Date.class.isAssignableFrom( valueClass ) || Boolean.class.equals( valueClass ) ) )
+			return null;
+
+		List hintList = dataSetDesign.getResultSetHints( );
+		for ( int i = 0; hintList != null && i < hintList.size( ); i++ )
+		{
+			IColumnDefinition columnDefinition = (IColumnDefinition) hintList.get( i );
+			if ( columnName.equals( columnDefinition.getColumnName( ) )
+					&& columnDefinition.getColumnNativeName( ) != null )
+				return columnDefinition.getColumnNativeName( );
+		}
+		return columnName;
+	}
+
 	private boolean canAccessResultSetByName( IOdaDataSetDesign design )
 			throws DataException
 	{
@@ -1052,7 +1219,8 @@ public class DataSourceQuery extends BaseQuery implements IDataSourceQuery, IPre
 				Strategy strategy = QueryExecutionStrategyUtil.getQueryExecutionStrategy( this.session, queryDefn,
 						queryDefn.getDataSetName( ) == null
 						? null
-						: ( (DataEngineImpl) this.session.getEngine( ) ).getDataSetDesign( queryDefn.getDataSetName( ) ) );
+						: ( (DataEngineImpl) this.session.getEngine( ) ).getDataSetDesign( queryDefn.getDataSetName( ) ),
+						this.pushedSortHints );
 				if ( strategy  != Strategy.Complex )
 				{
 					SimpleResultSet simpleResult = new SimpleResultSet( this,
@@ -11,15 +11,46 @@
 
 package org.eclipse.birt.data.engine.executor;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.core.security.FileSecurity;
 import org.eclipse.birt.data.engine.impl.DataSetCacheUtil;
 import org.eclipse.birt.data.engine.odi.IResultClass;
 
 /**
  * This IncreDataSetCacheObject serves for incremental data set cache.
+ * 
+ * The rows are saved in segments, each refresh appends the delta rows as a new
+ * segment, so its cost is proportional to the new rows. The names of the
+ * segments are listed in SEGMENTS_DATA in the order of the rows, and the
+ * segments are read as one stream. When there are more than MAX_SEGMENTS
+ * segments, the small segments at the tail are compacted into one in the
+ * background.
+ * 
+ * The objects working on the same cache directory share one lock, which is
+ * held when the segments are listed or changed.
  */
 public class IncreDataSetCacheObject implements IDataSetCacheObject
 {
@@ -27,8 +58,23 @@ public class IncreDataSetCacheObject implements IDataSetCacheObject
 	public static final String TIMESTAMP_DATA = "timestamp.data";
 	public static final String META_DATA = "meta.data";
 	public static final String DATA_DATA = "data.data";
+	public static final String SEGMENTS_DATA = "segments.data";
+	private static final String SEGMENT_PREFIX = "data_";
+	private static final String SEGMENT_SUFFIX = ".data";
 	private static final char PATH_SEP = File.separatorChar;
+
+	static final int MAX_SEGMENTS = 8;
+
+	private static Logger logger = Logger.getLogger( IncreDataSetCacheObject.class.getName( ) );
+
+	private static ExecutorService compactor;
+
+	// the locks of the cache directories, keyed by the canonical path
+	private static Map<String, CacheDirLock> dirLocks = new HashMap<String, CacheDirLock>( );
+
 	private String cacheDir;
+	private CacheDirLock lock;
+	private boolean released;
 
 	/**
 	 * 
@@ -39,6 +85,7 @@ public class IncreDataSetCacheObject implements IDataSetCacheObject
 	{
 		this.cacheDir = cacheDir + PATH_SEP + "DataSetCacheObject_" + this.hashCode( ) ;
 		FileSecurity.fileMakeDirs( new File( this.cacheDir ));
+		this.lock = acquireLock( this.cacheDir );
 	}
 
 	/**
@@ -52,7 +99,8 @@ public class IncreDataSetCacheObject implements IDataSetCacheObject
 
 	/**
 	 * 
-	 * @return
+	 * @return the data file of the caches saved before the rows were
+	 *         segmented, it is the first segment of such a cache
 	 */
 	public File getDataFile( )
 	{
@@ -89,11 +137,537 @@ public class IncreDataSetCacheObject implements IDataSetCacheObject
 
 	public void release( )
 	{
-		DataSetCacheUtil.deleteFile( cacheDir );
+		synchronized ( lock )
+		{
+			DataSetCacheUtil.deleteFile( cacheDir );
+			if ( released )
+			{
+				return;
+			}
+			released = true;
+		}
+		releaseLock( lock );
+	}
+
+	/**
+	 * 
+	 * @return the lock of the cache directory, it is shared by the objects
+	 *         working on the same directory
+	 */
+	public Object getLock( )
+	{
+		return lock;
 	}
 
 	public IResultClass getResultClass( )
 	{
 		return null;
 	}
+
+	/**
+	 * Creates the file of a new segment, which is not read until it is added
+	 * by addSegment.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public File newSegmentFile( ) throws IOException
+	{
+		synchronized ( lock )
+		{
+			if ( lock.lastSegment < 0 )
+			{
+				for ( String name : readSegmentNames( cacheDir ) )
+				{
+					lock.lastSegment = Math.max( lock.lastSegment,
+							getSegmentSequence( name ) );
+				}
+			}
+			File file;
+			do
+			{
+				lock.lastSegment++;
+				file = new File( cacheDir + PATH_SEP + SEGMENT_PREFIX
+						+ lock.lastSegment + SEGMENT_SUFFIX );
+			} while ( FileSecurity.fileExist( file ) );
+			return file;
+		}
+	}
+
+	/**
+	 * Appends a segment whose rows have been saved. The row count in the meta
+	 * file should be updated after that.
+	 * 
+	 * @param segment
+	 * @throws IOException
+	 */
+	public void addSegment( File segment ) throws IOException
+	{
+		synchronized ( lock )
+		{
+			List<String> names = readSegmentNames( cacheDir );
+			names.add( segment.getName( ) );
+			writeSegmentNames( cacheDir, names );
+		}
+	}
+
+	/**
+	 * Opens the segments as one stream of rows.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public InputStream openSegments( ) throws IOException
+	{
+		Vector<InputStream> streams = new Vector<InputStream>( );
+		synchronized ( lock )
+		{
+			try
+			{
+				// all the segments are opened at once, so they can be read
+				// after they are compacted
+				for ( String name : readSegmentNames( cacheDir ) )
+				{
+					streams.add( FileSecurity.createFileInputStream( new File( cacheDir
+							+ PATH_SEP + name ) ) );
+				}
+			}
+			catch ( IOException e )
+			{
+				for ( InputStream stream : streams )
+				{
+					stream.close( );
+				}
+				throw e;
+			}
+		}
+		return new SequenceInputStream( streams.elements( ) );
+	}
+
+	/**
+	 * 
+	 * @return the bytes of the segments
+	 */
+	public long getDataSize( )
+	{
+		long size = 0;
+		try
+		{
+			synchronized ( lock )
+			{
+				for ( String name : readSegmentNames( cacheDir ) )
+				{
+					size += getSegmentSize( name );
+				}
+			}
+		}
+		catch ( IOException e )
+		{
+			logger.log( Level.FINE, e.getMessage( ), e );
+		}
+		return size;
+	}
+
+	/**
+	 * 
+	 * @return the number of segments
+	 * @throws IOException
+	 */
+	public int getSegmentCount( ) throws IOException
+	{
+		synchronized ( lock )
+		{
+			return readSegmentNames( cacheDir ).size( );
+		}
+	}
+
+	/**
+	 * Compacts the segments in the background if there are more than
+	 * MAX_SEGMENTS segments.
+	 * 
+	 * @throws IOException
+	 */
+	public void compactSegmentsLater( ) throws IOException
+	{
+		synchronized ( lock )
+		{
+			if ( lock.compacting || getSegmentCount( ) <= MAX_SEGMENTS )
+			{
+				return;
+			}
+			lock.compacting = true;
+		}
+		getCompactor( ).submit( new Runnable( ) {
+
+			public void run( )
+			{
+				try
+				{
+					compactSegments( );
+				}
+				catch ( IOException e )
+				{
+					logger.log( Level.WARNING, e.getMessage( ), e );
+				}
+				finally
+				{
+					synchronized ( lock )
+					{
+						lock.compacting = false;
+					}
+				}
+			}
+		} );
+	}
+
+	/**
+	 * Copies the small segments at the tail into one, the large segments
+	 * before them are kept. The segments added during the copy are kept after
+	 * the compacted one.
+	 * 
+	 * @throws IOException
+	 */
+	void compactSegments( ) throws IOException
+	{
+		List<String> compacted;
+		int start;
+		File target;
+		synchronized ( lock )
+		{
+			List<String> names = readSegmentNames( cacheDir );
+			if ( names.size( ) <= 1 )
+			{
+				return;
+			}
+			start = getCompactStart( names );
+			compacted = new ArrayList<String>( names.subList( start,
+					names.size( ) ) );
+			target = newSegmentFile( );
+		}
+		copySegments( compacted, target );
+		synchronized ( lock )
+		{
+			List<String> names = readSegmentNames( cacheDir );
+			int end = start + compacted.size( );
+			if ( names.size( ) < end
+					|| !names.subList( start, end ).equals( compacted ) )
+			{
+				// the segments have been deleted
+				DataSetCacheUtil.deleteFile( target );
+				return;
+			}
+			List<String> result = new ArrayList<String>( );
+			result.addAll( names.subList( 0, start ) );
+			result.add( target.getName( ) );
+			result.addAll( names.subList( end, names.size( ) ) );
+			writeSegmentNames( cacheDir, result );
+		}
+		for ( String name : compacted )
+		{
+			// the segments opened by the readers are deleted when the JVM exits
+			// if they can not be deleted now
+			DataSetCacheUtil.deleteFile( new File( cacheDir + PATH_SEP + name ) );
+		}
+	}
+
+	/**
+	 * A segment is kept if it is not smaller than all the segments after it,
+	 * so the sizes of the kept segments at least halve from the head to the
+	 * tail, and a row is copied by a few compactions only.
+	 * 
+	 * @param names
+	 * @return the index of the first segment to compact, at least two
+	 *         segments are compacted
+	 */
+	private int getCompactStart( List<String> names )
+	{
+		long[] tailSizes = new long[names.size( ) + 1];
+		for ( int i = names.size( ) - 1; i >= 0; i-- )
+		{
+			tailSizes[i] = tailSizes[i + 1] + getSegmentSize( names.get( i ) );
+		}
+		int start = 0;
+		while ( start < names.size( ) - 2
+				&& tailSizes[start] - tailSizes[start + 1] >= tailSizes[start + 1] )
+		{
+			start++;
+		}
+		return start;
+	}
+
+	private long getSegmentSize( String name )
+	{
+		return new File( cacheDir + PATH_SEP + name ).length( );
+	}
+
+	private void copySegments( List<String> names, File target )
+			throws IOException
+	{
+		BufferedOutputStream out = new BufferedOutputStream( FileSecurity.createFileOutputStream( target ) );
+		try
+		{
+			byte[] buffer = new byte[8192];
+			for ( String name : names )
+			{
+				FileInputStream in = FileSecurity.createFileInputStream( new File( cacheDir
+						+ PATH_SEP + name ) );
+				try
+				{
+					int length;
+					while ( ( length = in.read( buffer ) ) > 0 )
+					{
+						out.write( buffer, 0, length );
+					}
+				}
+				finally
+				{
+					in.close( );
+				}
+			}
+		}
+		finally
+		{
+			out.close( );
+		}
+	}
+
+	/**
+	 * Deletes the rows of an incremental cache.
+	 * 
+	 * @param cacheDir
+	 */
+	public static void deleteSegments( String cacheDir )
+	{
+		CacheDirLock lock = acquireLock( cacheDir );
+		try
+		{
+			synchronized ( lock )
+			{
+				try
+				{
+					for ( String name : readSegmentNames( cacheDir ) )
+					{
+						DataSetCacheUtil.deleteFile( new File( cacheDir
+								+ PATH_SEP + name ) );
+					}
+				}
+				catch ( IOException e )
+				{
+					logger.log( Level.FINE, e.getMessage( ), e );
+				}
+				DataSetCacheUtil.deleteFile( new File( cacheDir + PATH_SEP
+						+ SEGMENTS_DATA ) );
+				DataSetCacheUtil.deleteFile( new File( cacheDir + PATH_SEP
+						+ SEGMENTS_DATA + ".tmp" ) );
+				DataSetCacheUtil.deleteFile( new File( cacheDir + PATH_SEP
+						+ DATA_DATA ) );
+			}
+		}
+		finally
+		{
+			releaseLock( lock );
+		}
+	}
+
+	/**
+	 * @param cacheDir
+	 * @return the names of the segments in the order of the rows
+	 * @throws IOException
+	 */
+	private static List<String> readSegmentNames( String cacheDir )
+			throws IOException
+	{
+		File file = new File( cacheDir + PATH_SEP + SEGMENTS_DATA );
+		if ( FileSecurity.fileExist( file ) )
+		{
+			return readSegmentNames( file );
+		}
+		// the list was being replaced, the temporary file is complete if it
+		// is the only list
+		file = new File( cacheDir + PATH_SEP + SEGMENTS_DATA + ".tmp" );
+		if ( FileSecurity.fileExist( file ) )
+		{
+			try
+			{
+				return readSegmentNames( file );
+			}
+			catch ( EOFException e )
+			{
+				// the first list was not written completely
+			}
+		}
+		// the cache is saved before the rows were segmented
+		List<String> names = new ArrayList<String>( );
+		if ( FileSecurity.fileExist( new File( cacheDir + PATH_SEP + DATA_DATA ) ) )
+		{
+			names.add( DATA_DATA );
+		}
+		return names;
+	}
+
+	private static List<String> readSegmentNames( File file )
+			throws IOException
+	{
+		List<String> names = new ArrayList<String>( );
+		DataInputStream in = new DataInputStream( new BufferedInputStream( FileSecurity.createFileInputStream( file ) ) );
+		try
+		{
+			int count = in.readInt( );
+			for ( int i = 0; i < count; i++ )
+			{
+				names.add( in.readUTF( ) );
+			}
+		}
+		finally
+		{
+			in.close( );
+		}
+		return names;
+	}
+
+	/**
+	 * Replaces the list of the segments. The list is written to a temporary
+	 * file and synchronized to the disk, then it replaces the old list by a
+	 * rename, so the list read is either the old one or the new one.
+	 * 
+	 * @param cacheDir
+	 * @param names
+	 * @throws IOException
+	 */
+	private static void writeSegmentNames( String cacheDir, List<String> names )
+			throws IOException
+	{
+		File file = new File( cacheDir + PATH_SEP + SEGMENTS_DATA );
+		File tempFile = new File( cacheDir + PATH_SEP + SEGMENTS_DATA + ".tmp" );
+		FileOutputStream fos = FileSecurity.createFileOutputStream( tempFile );
+		DataOutputStream out = new DataOutputStream( new BufferedOutputStream( fos ) );
+		try
+		{
+			out.writeInt( names.size( ) );
+			for ( String name : names )
+			{
+				out.writeUTF( name );
+			}
+			out.flush( );
+			fos.getFD( ).sync( );
+		}
+		finally
+		{
+			out.close( );
+		}
+		// the rename replaces the existing file at once on most platforms
+		if ( tempFile.renameTo( file ) )
+		{
+			return;
+		}
+		// otherwise the old list is deleted first, the complete temporary
+		// file is read until it is renamed
+		if ( FileSecurity.fileExist( file ) && !FileSecurity.fileDelete( file ) )
+		{
+			throw new IOException( "Can not replace " + file );
+		}
+		if ( !tempFile.renameTo( file ) )
+		{
+			throw new IOException( "Can not rename " + tempFile );
+		}
+	}
+
+	private static int getSegmentSequence( String name )
+	{
+		if ( name.startsWith( SEGMENT_PREFIX ) && name.endsWith( SEGMENT_SUFFIX ) )
+		{
+			try
+			{
+				return Integer.parseInt( name.substring( SEGMENT_PREFIX.length( ),
+						name.length( ) - SEGMENT_SUFFIX.length( ) ) );
+			}
+			catch ( NumberFormatException e )
+			{
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Gets the lock of a cache directory, it should be released by
+	 * releaseLock.
+	 * 
+	 * @param cacheDir
+	 * @return
+	 */
+	private static CacheDirLock acquireLock( String cacheDir )
+	{
+		String path;
+		try
+		{
+			path = FileSecurity.fileGetCanonicalPath( new File( cacheDir ) );
+		}
+		catch ( IOException e )
+		{
+			path = new File( cacheDir ).getAbsolutePath( );
+		}
+		catch ( DataException e )
+		{
+			path = new File( cacheDir ).getAbsolutePath( );
+		}
+		synchronized ( dirLocks )
+		{
+			CacheDirLock lock = dirLocks.get( path );
+			if ( lock == null )
+			{
+				lock = new CacheDirLock( path );
+				dirLocks.put( path, lock );
+			}
+			lock.users++;
+			return lock;
+		}
+	}
+
+	private static void releaseLock( CacheDirLock lock )
+	{
+		synchronized ( dirLocks )
+		{
+			if ( lock.users > 0 && --lock.users == 0 )
+			{
+				dirLocks.remove( lock.path );
+			}
+		}
+	}
+
+	private static synchronized ExecutorService getCompactor( )
+	{
+		if ( compactor == null )
+		{
+			compactor = Executors.newSingleThreadExecutor( new ThreadFactory( ) {
+
+				public Thread newThread( Runnable r )
+				{
+					Thread thread = new Thread( r, "BIRT-IncrementalCacheCompactor" );
+					thread.setDaemon( true );
+					return thread;
+				}
+			} );
+		}
+		return compactor;
+	}
+
+	/**
+	 * The lock of a cache directory and the state of its segments shared by
+	 * the objects working on the directory.
+	 */
+	private static class CacheDirLock
+	{
+
+		private String path;
+		private int users;
+
+		// the sequence of the last segment created in the directory
+		private int lastSegment = -1;
+		private boolean compacting;
+
+		CacheDirLock( String path )
+		{
+			this.path = path;
+		}
+	}
 }
@@ -0,0 +1,764 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.ObjectName;
+
+import org.eclipse.birt.data.engine.api.DataEngine;
+import org.eclipse.birt.data.engine.core.security.FileSecurity;
+
+/**
+ * The data set cache shared by all the data engines of the process.
+ *
+ * The data sets cached in memory and on disk have their own budget of bytes.
+ * When a budget is used up, the least recently used data sets of the same
+ * kind are evicted, except the ones which are being read. A data set may have
+ * a time to live, after which it is removed when it is accessed. The
+ * incremental caches keep the state of their data sets, so they are neither
+ * evicted nor expired. A data set which is removed while it is being read is
+ * released once the last query finishes reading it.
+ *
+ * A query which is going to cache a data set registers it as loading, so the
+ * concurrent queries on the same data set wait for it to be cached rather than
+ * executing the data set again.
+ *
+ * The statistics are reported through JMX.
+ */
+public class JVMDataSetCache implements JVMDataSetCacheMBean
+{
+
+	public static final String OBJECT_NAME = "org.eclipse.birt.data:type=JVMDataSetCache";
+
+	/**
+	 * the max milliseconds to wait for another query, the same as the wait of
+	 * the locked data sets in CacheMapManager
+	 */
+	static final long LOCK_TIMEOUT = 60000;
+
+	private static final long DEFAULT_MAX_DISK_SIZE = 2048L * 1024 * 1024;
+
+	private static Logger logger = Logger.getLogger( JVMDataSetCache.class.getName( ) );
+
+	private static JVMDataSetCache instance;
+
+	private ConcurrentMap<DataSourceAndDataSet, Entry> entries = new ConcurrentHashMap<DataSourceAndDataSet, Entry>( );
+	private ConcurrentMap<DataSourceAndDataSet, Loading> loadings = new ConcurrentHashMap<DataSourceAndDataSet, Loading>( );
+
+	private volatile long maxMemorySize;
+	private volatile long maxDiskSize;
+	private volatile long defaultTimeToLive;
+
+	// the sequence of the accesses, which orders the data sets to evict
+	private AtomicLong accessSequence = new AtomicLong( );
+	private AtomicLong memorySize = new AtomicLong( );
+	private AtomicLong diskSize = new AtomicLong( );
+
+	private AtomicLong hitCount = new AtomicLong( );
+	private AtomicLong missCount = new AtomicLong( );
+	private AtomicLong evictionCount = new AtomicLong( );
+	private AtomicLong expirationCount = new AtomicLong( );
+	private AtomicLong coalescedCount = new AtomicLong( );
+
+	/**
+	 * @return the cache shared by the process
+	 */
+	public static synchronized JVMDataSetCache getInstance( )
+	{
+		if ( instance == null )
+		{
+			instance = new JVMDataSetCache( getSizeProperty( DataEngine.DATA_SET_CACHE_MEMORY_LIMIT,
+					Runtime.getRuntime( ).maxMemory( ) / 4 ),
+					getSizeProperty( DataEngine.DATA_SET_CACHE_DISK_LIMIT,
+							DEFAULT_MAX_DISK_SIZE ) );
+			registerMBean( instance );
+			// ensure that the cache will be cleared when JVM shutdown
+			new ShutdownHook( instance );
+		}
+		return instance;
+	}
+
+	/**
+	 * Create a standalone cache. getInstance() should be used to get the
+	 * cache shared by the process.
+	 *
+	 * @param maxMemorySize
+	 *            the max number of bytes of the data sets cached in memory
+	 * @param maxDiskSize
+	 *            the max number of bytes of the data sets cached on disk
+	 */
+	JVMDataSetCache( long maxMemorySize, long maxDiskSize )
+	{
+		this.maxMemorySize = maxMemorySize;
+		this.maxDiskSize = maxDiskSize;
+	}
+
+	/**
+	 * @param name
+	 * @param defaultValue
+	 * @return the value in MB of the system property in bytes
+	 */
+	private static long getSizeProperty( String name, long defaultValue )
+	{
+		String value = System.getProperty( name );
+		if ( value != null )
+		{
+			try
+			{
+				return Long.parseLong( value.trim( ) ) * 1024 * 1024;
+			}
+			catch ( NumberFormatException e )
+			{
+				logger.log( Level.WARNING, "Invalid data set cache limit: "
+						+ value );
+			}
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * @param cache
+	 */
+	private static void registerMBean( JVMDataSetCache cache )
+	{
+		try
+		{
+			ManagementFactory.getPlatformMBeanServer( )
+					.registerMBean( cache, new ObjectName( OBJECT_NAME ) );
+		}
+		catch ( Exception e )
+		{
+			// the cache works without JMX, for example when another class
+			// loader has registered the name
+			logger.log( Level.FINE, e.getMessage( ), e );
+		}
+	}
+
+	/**
+	 * Returns a cached data set. If the data set is not cached but another
+	 * query is caching it, waits until it is cached.
+	 *
+	 * @param key
+	 * @param owner
+	 *            the cache map manager of the query, which does not wait for
+	 *            the data sets loaded by itself
+	 * @return null if the data set is not cached or has expired
+	 */
+	IDataSetCacheObject get( DataSourceAndDataSet key, Object owner )
+	{
+		Entry entry = getEntry( key );
+		if ( entry == null && awaitLoading( key, owner ) )
+		{
+			entry = getEntry( key );
+			if ( entry != null )
+			{
+				coalescedCount.incrementAndGet( );
+			}
+		}
+		if ( entry == null )
+		{
+			missCount.incrementAndGet( );
+			return null;
+		}
+		hitCount.incrementAndGet( );
+		entry.lastAccess = System.currentTimeMillis( );
+		entry.lastUse = accessSequence.incrementAndGet( );
+		return entry.cacheObject;
+	}
+
+	/**
+	 * Returns a cached data set without changing the statistics and the
+	 * order of eviction.
+	 *
+	 * @param key
+	 * @return
+	 */
+	IDataSetCacheObject peek( DataSourceAndDataSet key )
+	{
+		Entry entry = getEntry( key );
+		return entry == null ? null : entry.cacheObject;
+	}
+
+	/**
+	 * Caches a data set. The least recently used data sets are evicted if the
+	 * cache is beyond its size, and the data set is released rather than
+	 * cached if it can not fit.
+	 *
+	 * @param key
+	 * @param cacheObject
+	 * @param timeToLive
+	 *            the milliseconds the data set is cached, 0 means the default
+	 *            time to live is used
+	 */
+	void put( DataSourceAndDataSet key, IDataSetCacheObject cacheObject,
+			long timeToLive )
+	{
+		Entry entry = new Entry( cacheObject, getWeight( cacheObject ) );
+		entry.lastUse = accessSequence.incrementAndGet( );
+		if ( timeToLive <= 0 )
+		{
+			timeToLive = defaultTimeToLive;
+		}
+		if ( timeToLive > 0 && !entry.persistent )
+		{
+			entry.expireTime = currentTimeMillis( ) + timeToLive;
+		}
+		if ( !entry.persistent && entry.weight > getMaxSize( entry.inMemory ) )
+		{
+			cacheObject.release( );
+			return;
+		}
+		Entry old = entries.put( key, entry );
+		if ( old != null )
+		{
+			if ( old.cacheObject == cacheObject )
+			{
+				getSize( old.inMemory ).addAndGet( -old.weight );
+			}
+			else
+			{
+				release( old );
+			}
+		}
+		getSize( entry.inMemory ).addAndGet( entry.weight );
+		evict( entry.inMemory );
+	}
+
+	/**
+	 * Removes a data set, which is released once it is not being read.
+	 *
+	 * @param key
+	 * @return true if the data set has been removed
+	 */
+	boolean remove( DataSourceAndDataSet key )
+	{
+		Entry entry = entries.remove( key );
+		if ( entry == null )
+		{
+			return false;
+		}
+		release( entry );
+		return true;
+	}
+
+	/**
+	 * Removes a data set if it is still cached with the key, which is
+	 * released once it is not being read.
+	 *
+	 * @param key
+	 * @param cacheObject
+	 * @return true if the data set has been removed
+	 */
+	boolean remove( DataSourceAndDataSet key, IDataSetCacheObject cacheObject )
+	{
+		Entry entry = entries.get( key );
+		if ( entry == null
+				|| entry.cacheObject != cacheObject
+				|| !entries.remove( key, entry ) )
+		{
+			return false;
+		}
+		release( entry );
+		return true;
+	}
+
+	/**
+	 * @return the keys of the cached data sets
+	 */
+	DataSourceAndDataSet[] getKeys( )
+	{
+		return entries.keySet( ).toArray( new DataSourceAndDataSet[0] );
+	}
+
+	/**
+	 * Marks a data set as being read, so it is not evicted and it is not
+	 * released if it is removed until finishReading is called.
+	 *
+	 * @param key
+	 * @return the reading passed to finishReading, null if the data set is
+	 *         not cached
+	 */
+	Object startReading( DataSourceAndDataSet key )
+	{
+		Entry entry = entries.get( key );
+		if ( entry == null || !entry.startReading( ) )
+		{
+			return null;
+		}
+		entry.lastAccess = System.currentTimeMillis( );
+		entry.lastUse = accessSequence.incrementAndGet( );
+		return entry;
+	}
+
+	/**
+	 * Releases the data set if it has been removed while it was read.
+	 *
+	 * @param reading
+	 *            the value returned by startReading
+	 */
+	void finishReading( Object reading )
+	{
+		Entry entry = (Entry) reading;
+		if ( entry != null && entry.finishReading( ) )
+		{
+			entry.cacheObject.release( );
+		}
+	}
+
+	/**
+	 * Registers a data set which is going to be cached by a query.
+	 *
+	 * @param key
+	 * @param owner
+	 *            the cache map manager of the query
+	 */
+	void startLoading( DataSourceAndDataSet key, Object owner )
+	{
+		Loading loading = new Loading( owner );
+		Loading old = loadings.putIfAbsent( key, loading );
+		if ( old != null
+				&& ( old.owner == owner || loading.startTime - old.startTime > LOCK_TIMEOUT )
+				&& loadings.replace( key, old, loading ) )
+		{
+			old.finish( );
+		}
+	}
+
+	/**
+	 * Notifies the queries waiting for a data set, which has been cached or
+	 * failed to be cached.
+	 *
+	 * @param key
+	 * @param owner
+	 */
+	void finishLoading( DataSourceAndDataSet key, Object owner )
+	{
+		Loading loading = loadings.get( key );
+		if ( loading != null
+				&& loading.owner == owner
+				&& loadings.remove( key, loading ) )
+		{
+			loading.finish( );
+		}
+	}
+
+	/**
+	 * Notifies the queries waiting for all the data sets of an owner.
+	 *
+	 * @param owner
+	 */
+	void finishLoading( Object owner )
+	{
+		for ( Map.Entry<DataSourceAndDataSet, Loading> e : loadings.entrySet( ) )
+		{
+			if ( e.getValue( ).owner == owner )
+			{
+				finishLoading( e.getKey( ), owner );
+			}
+		}
+	}
+
+	/**
+	 * @param key
+	 * @param owner
+	 * @return true if another query was caching the data set
+	 */
+	private boolean awaitLoading( DataSourceAndDataSet key, Object owner )
+	{
+		Loading loading = loadings.get( key );
+		if ( loading == null || loading.owner == owner )
+		{
+			return false;
+		}
+		loading.await( LOCK_TIMEOUT );
+		return true;
+	}
+
+	/**
+	 * @param key
+	 * @return the entry which has not expired
+	 */
+	private Entry getEntry( DataSourceAndDataSet key )
+	{
+		Entry entry = entries.get( key );
+		if ( entry != null && entry.expireTime <= currentTimeMillis( ) )
+		{
+			if ( entries.remove( key, entry ) )
+			{
+				expirationCount.incrementAndGet( );
+				release( entry );
+			}
+			return null;
+		}
+		return entry;
+	}
+
+	/**
+	 * Evicts the least recently used data sets of a kind until they are in
+	 * their budget.
+	 *
+	 * @param inMemory
+	 */
+	private synchronized void evict( boolean inMemory )
+	{
+		long now = System.currentTimeMillis( );
+		while ( getSize( inMemory ).get( ) > getMaxSize( inMemory ) )
+		{
+			DataSourceAndDataSet eldestKey = null;
+			Entry eldest = null;
+			for ( Map.Entry<DataSourceAndDataSet, Entry> e : entries.entrySet( ) )
+			{
+				Entry entry = e.getValue( );
+				if ( entry.inMemory != inMemory
+						|| entry.persistent
+						|| ( entry.getReaders( ) > 0 && now - entry.lastAccess < LOCK_TIMEOUT ) )
+				{
+					continue;
+				}
+				if ( eldest == null || entry.lastUse < eldest.lastUse )
+				{
+					eldestKey = e.getKey( );
+					eldest = entry;
+				}
+			}
+			if ( eldest == null )
+			{
+				return;
+			}
+			if ( entries.remove( eldestKey, eldest ) )
+			{
+				evictionCount.incrementAndGet( );
+				release( eldest );
+			}
+		}
+	}
+
+	/**
+	 * Releases a removed entry, or defers it until the entry is not read.
+	 *
+	 * @param entry
+	 */
+	private void release( Entry entry )
+	{
+		getSize( entry.inMemory ).addAndGet( -entry.weight );
+		if ( entry.remove( ) )
+		{
+			entry.cacheObject.release( );
+		}
+	}
+
+	/**
+	 * @return the time the data sets expire by
+	 */
+	long currentTimeMillis( )
+	{
+		return System.currentTimeMillis( );
+	}
+
+	private AtomicLong getSize( boolean inMemory )
+	{
+		return inMemory ? memorySize : diskSize;
+	}
+
+	private long getMaxSize( boolean inMemory )
+	{
+		return inMemory ? maxMemorySize : maxDiskSize;
+	}
+
+	/**
+	 * @param cacheObject
+	 * @return the estimated bytes of the rows in memory, or the bytes of the
+	 *         cache files
+	 */
+	private static long getWeight( IDataSetCacheObject cacheObject )
+	{
+		if ( cacheObject instanceof MemoryDataSetCacheObject )
+		{
+			return ( (MemoryDataSetCacheObject) cacheObject ).getEstimatedSize( );
+		}
+		if ( cacheObject instanceof DiskDataSetCacheObject )
+		{
+			DiskDataSetCacheObject diskObject = (DiskDataSetCacheObject) cacheObject;
+			return getLength( diskObject.getDataFile( ) )
+					+ getLength( diskObject.getMetaFile( ) );
+		}
+		if ( cacheObject instanceof IncreDataSetCacheObject )
+		{
+			IncreDataSetCacheObject increObject = (IncreDataSetCacheObject) cacheObject;
+			return increObject.getDataSize( )
+					+ getLength( increObject.getMetaFile( ) );
+		}
+		return 0;
+	}
+
+	private static long getLength( File file )
+	{
+		return FileSecurity.fileExist( file ) ? file.length( ) : 0;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.JVMDataSetCacheMBean#getMaxMemorySize()
+	 */
+	public long getMaxMemorySize( )
+	{
+		return maxMemorySize;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.JVMDataSetCacheMBean#setMaxMemorySize(long)
+	 */
+	public void setMaxMemorySize( long maxMemorySize )
+	{
+		this.maxMemorySize = maxMemorySize;
+		evict( true );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.JVMDataSetCacheMBean#getMaxDiskSize()
+	 */
+	public long getMaxDiskSize( )
+	{
+		return maxDiskSize;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.JVMDataSetCacheMBean#setMaxDiskSize(long)
+	 */
+	public void setMaxDiskSize( long maxDiskSize )
+	{
+		this.maxDiskSize = maxDiskSize;
+		evict( false );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.JVMDataSetCacheMBean#getDefaultTimeToLive()
+	 */
+	public long getDefaultTimeToLive( )
+	{
+		return defaultTimeToLive;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.JVMDataSetCacheMBean#setDefaultTimeToLive(long)
+	 */
+	public void setDefaultTimeToLive( long timeToLive )
+	{
+		this.defaultTimeToLive = Math.max( 0, timeToLive );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.JVMDataSetCacheMBean#getEntryCount()
+	 */
+	public int getEntryCount( )
+	{
+		return entries.size( );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.JVMDataSetCacheMBean#getMemorySize()
+	 */
+	public long getMemorySize( )
+	{
+		return memorySize.get( );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.JVMDataSetCacheMBean#getDiskSize()
+	 */
+	public long getDiskSize( )
+	{
+		return diskSize.get( );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.JVMDataSetCacheMBean#getHitCount()
+	 */
+	public long getHitCount( )
+	{
+		return hitCount.get( );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.JVMDataSetCacheMBean#getMissCount()
+	 */
+	public long getMissCount( )
+	{
+		return missCount.get( );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.JVMDataSetCacheMBean#getEvictionCount()
+	 */
+	public long getEvictionCount( )
+	{
+		return evictionCount.get( );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.JVMDataSetCacheMBean#getExpirationCount()
+	 */
+	public long getExpirationCount( )
+	{
+		return expirationCount.get( );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.JVMDataSetCacheMBean#getCoalescedCount()
+	 */
+	public long getCoalescedCount( )
+	{
+		return coalescedCount.get( );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.JVMDataSetCacheMBean#clear()
+	 */
+	public void clear( )
+	{
+		List<Entry> removed = new ArrayList<Entry>( );
+		Iterator<Map.Entry<DataSourceAndDataSet, Entry>> it = entries.entrySet( )
+				.iterator( );
+		while ( it.hasNext( ) )
+		{
+			Map.Entry<DataSourceAndDataSet, Entry> e = it.next( );
+			if ( entries.remove( e.getKey( ), e.getValue( ) ) )
+			{
+				removed.add( e.getValue( ) );
+			}
+		}
+		for ( Entry entry : removed )
+		{
+			release( entry );
+		}
+	}
+
+	/**
+	 * A cached data set.
+	 */
+	private static class Entry
+	{
+
+		private IDataSetCacheObject cacheObject;
+		private long weight;
+		private boolean inMemory;
+		private boolean persistent;
+		private long expireTime = Long.MAX_VALUE;
+		private volatile long lastAccess = System.currentTimeMillis( );
+		private volatile long lastUse;
+		private int readers;
+		private boolean removed;
+
+		Entry( IDataSetCacheObject cacheObject, long weight )
+		{
+			this.cacheObject = cacheObject;
+			this.weight = weight;
+			this.inMemory = cacheObject instanceof MemoryDataSetCacheObject;
+			this.persistent = cacheObject instanceof IncreDataSetCacheObject;
+		}
+
+		synchronized int getReaders( )
+		{
+			return readers;
+		}
+
+		/**
+		 * @return false if the entry has been released
+		 */
+		synchronized boolean startReading( )
+		{
+			if ( removed && readers == 0 )
+			{
+				return false;
+			}
+			readers++;
+			return true;
+		}
+
+		/**
+		 * @return true if the entry has been removed and should be released
+		 */
+		synchronized boolean finishReading( )
+		{
+			if ( readers == 0 )
+			{
+				return false;
+			}
+			readers--;
+			return removed && readers == 0;
+		}
+
+		/**
+		 * @return true if the entry is not read and should be released
+		 */
+		synchronized boolean remove( )
+		{
+			if ( removed )
+			{
+				return false;
+			}
+			removed = true;
+			return readers == 0;
+		}
+	}
+
+	/**
+	 * A data set which is being cached by a query.
+	 */
+	private static class Loading
+	{
+
+		private Object owner;
+		private long startTime = System.currentTimeMillis( );
+		private boolean finished;
+
+		Loading( Object owner )
+		{
+			this.owner = owner;
+		}
+
+		synchronized void await( long timeout )
+		{
+			long endTime = System.currentTimeMillis( ) + timeout;
+			long remaining = timeout;
+			while ( !finished && remaining > 0 )
+			{
+				try
+				{
+					wait( remaining );
+				}
+				catch ( InterruptedException e )
+				{
+					Thread.currentThread( ).interrupt( );
+					return;
+				}
+				remaining = endTime - System.currentTimeMillis( );
+			}
+		}
+
+		synchronized void finish( )
+		{
+			finished = true;
+			notifyAll( );
+		}
+	}
+}
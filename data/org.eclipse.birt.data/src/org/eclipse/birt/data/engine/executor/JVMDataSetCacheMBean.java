@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor;
+
+/**
+ * Management interface of JVMDataSetCache, which is registered to the
+ * platform MBean server under the name JVMDataSetCache.OBJECT_NAME.
+ */
+public interface JVMDataSetCacheMBean
+{
+
+	/**
+	 * @return the max number of bytes of the data sets cached in memory
+	 */
+	public long getMaxMemorySize( );
+
+	/**
+	 * @param maxMemorySize
+	 *            the max number of bytes of the data sets cached in memory
+	 */
+	public void setMaxMemorySize( long maxMemorySize );
+
+	/**
+	 * @return the max number of bytes of the data sets cached on disk
+	 */
+	public long getMaxDiskSize( );
+
+	/**
+	 * @param maxDiskSize
+	 *            the max number of bytes of the data sets cached on disk
+	 */
+	public void setMaxDiskSize( long maxDiskSize );
+
+	/**
+	 * @return the milliseconds a data set is cached when its data set does
+	 *         not specify it, 0 means the data set does not expire
+	 */
+	public long getDefaultTimeToLive( );
+
+	/**
+	 * @param timeToLive
+	 *            the milliseconds a data set is cached when its data set does
+	 *            not specify it, 0 means the data set does not expire
+	 */
+	public void setDefaultTimeToLive( long timeToLive );
+
+	/**
+	 * @return the number of cached data sets
+	 */
+	public int getEntryCount( );
+
+	/**
+	 * @return the estimated bytes of the data sets cached in memory
+	 */
+	public long getMemorySize( );
+
+	/**
+	 * @return the bytes of the data sets cached on disk
+	 */
+	public long getDiskSize( );
+
+	/**
+	 * @return the number of queries which loaded a data set from the cache
+	 */
+	public long getHitCount( );
+
+	/**
+	 * @return the number of queries which did not find a data set in the
+	 *         cache
+	 */
+	public long getMissCount( );
+
+	/**
+	 * @return the number of data sets evicted to keep the cache in its size
+	 */
+	public long getEvictionCount( );
+
+	/**
+	 * @return the number of data sets removed after their time to live
+	 */
+	public long getExpirationCount( );
+
+	/**
+	 * @return the number of queries which waited for the same data set to be
+	 *         cached by another query, rather than executing the data set
+	 */
+	public long getCoalescedCount( );
+
+	/**
+	 * Removes all the cached data sets.
+	 */
+	public void clear( );
+}
@@ -15,6 +15,8 @@ import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.cache.SizeOfUtil;
 import org.eclipse.birt.data.engine.odi.IResultClass;
 import org.eclipse.birt.data.engine.odi.IResultObject;
 
@@ -28,6 +30,10 @@ public class MemoryDataSetCacheObject implements IDataSetCacheObject
 	
 	private int cacheCapability;
 	
+	// the estimated memory of the cached rows
+	private long estimatedSize;
+	private SizeOfUtil sizeOfUtil;
+	
 	public MemoryDataSetCacheObject( int cacheCapability )
 	{
 		assert cacheCapability > 0;
@@ -67,7 +73,35 @@ public class MemoryDataSetCacheObject implements IDataSetCacheObject
 	public void populateResult( IResultObject ro )
 	{
 		if ( ro != null )
+		{
 			this.getCachedResult( ).add( ro );
+			this.estimatedSize += sizeOf( ro );
+		}
+	}
+
+	/**
+	 * @return the estimated bytes of the cached rows
+	 */
+	public long getEstimatedSize( )
+	{
+		return this.estimatedSize;
+	}
+
+	private int sizeOf( IResultObject ro )
+	{
+		try
+		{
+			if ( this.sizeOfUtil == null )
+			{
+				this.sizeOfUtil = new SizeOfUtil( rs == null
+						? ro.getResultClass( ) : rs );
+			}
+			return this.sizeOfUtil.sizeOf( ro ) + SizeOfUtil.POINTER_SIZE;
+		}
+		catch ( DataException e )
+		{
+			return 0;
+		}
 	}
 
 	public boolean isCachedDataReusable( int requiredCapability )
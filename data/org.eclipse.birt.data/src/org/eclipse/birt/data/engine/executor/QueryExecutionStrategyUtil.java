@@ -33,6 +33,7 @@ import org.eclipse.birt.data.engine.api.IFilterDefinition;
 import org.eclipse.birt.data.engine.api.IGroupDefinition;
 import org.eclipse.birt.data.engine.api.IQueryDefinition;
 import org.eclipse.birt.data.engine.api.IScriptExpression;
+import org.eclipse.birt.data.engine.api.ISortDefinition;
 import org.eclipse.birt.data.engine.api.aggregation.AggregationManager;
 import org.eclipse.birt.data.engine.api.aggregation.IAggrFunction;
 import org.eclipse.birt.data.engine.core.DataException;
@@ -68,11 +69,28 @@ public final class QueryExecutionStrategyUtil
 	 */
 	public static Strategy getQueryExecutionStrategy( DataEngineSession session, IQueryDefinition query,
 			IBaseDataSetDesign dataSet ) throws DataException
+	{
+		return getQueryExecutionStrategy( session, query, dataSet, null );
+	}
+
+	/**
+	 * 
+	 * @param session
+	 * @param query
+	 * @param dataSet
+	 * @param sortHints
+	 *            the order in which the data source returns the rows, if it is
+	 *            null the sort hints of the data set are used
+	 * @return
+	 * @throws DataException
+	 */
+	public static Strategy getQueryExecutionStrategy( DataEngineSession session, IQueryDefinition query,
+			IBaseDataSetDesign dataSet, List<ISortDefinition> sortHints ) throws DataException
 	{
 		/*if ( session.getEngineContext( ).getDataEngineOption( ) > 4 )
 			return Strategy.Complex;*/
 		
-		SortingOptimizer opt = new SortingOptimizer( dataSet, query );
+		SortingOptimizer opt = new SortingOptimizer( dataSet, query, sortHints );
 
 		if ( session.getEngineContext( ).getMode( ) == DataEngineContext.MODE_UPDATE )
 			return Strategy.Complex;
@@ -247,6 +265,34 @@ public final class QueryExecutionStrategyUtil
 		return hasAggregation?Strategy.SimpleLookingFoward:Strategy.SimpleNoLookingFoward;
 	}
 	
+	/**
+	 * Returns the order of the data set rows which allows the groups of the
+	 * query to be calculated while the rows are fetched, rather than after
+	 * all the rows are cached and sorted. It is used when the data set does not
+	 * declare the order of its rows, and the data source can sort them.
+	 * 
+	 * @param session
+	 * @param query
+	 * @param dataSet
+	 * @return the sort keys on the data set rows, or null if the query can not
+	 *         be executed without the cache even if the rows are sorted
+	 * @throws DataException
+	 */
+	public static List<ISortDefinition> getGroupSortingSequence(
+			DataEngineSession session, IQueryDefinition query,
+			IBaseDataSetDesign dataSet ) throws DataException
+	{
+		if ( dataSet == null
+				|| ( dataSet.getSortHints( ) != null && !dataSet.getSortHints( )
+						.isEmpty( ) ) )
+			return null;
+		List<ISortDefinition> sortHints = new SortingOptimizer( dataSet, query ).getGroupSortingSequence( );
+		if ( sortHints == null
+				|| getQueryExecutionStrategy( session, query, dataSet, sortHints ) == Strategy.Complex )
+			return null;
+		return sortHints;
+	}
+
 	private static boolean isDirectColumnRefGroupKey(IGroupDefinition group,IQueryDefinition query )
 	{
 		String expr = getGroupKeyExpression(group);
@@ -39,6 +39,9 @@ public class CacheUtil
 	private static final String PATH_SEP = File.separator;
 	private static final String TEST_MEM_BUFFER_SIZE = "birt.data.engine.test.memcachesize";
 	private static final int MAGIC_NUMBER = 2000000000;
+	private static final int DEFAULT_DISK_SORT_MERGE_FAN_IN = 256;
+	// the unit is KB
+	private static final int DEFAULT_DISK_SORT_READ_AHEAD_SIZE = 32;
 	/**
 	 * timestamp.data file will be used in incremental cache, while
 	 * time.data file will be used in disk cache.
@@ -115,7 +118,87 @@ public class CacheUtil
 	}
 
 	/**
+	 * @param appContext
+	 * @return the number of threads used by disk sort, 1 indicates the serial
+	 *         level merge sort is used
+	 */
+	public static int getDiskSortParallelism( Map appContext )
+	{
+		return Math.max( 1, getIntProperty( appContext,
+				DataEngine.DISK_SORT_PARALLELISM,
+				1 ) );
+	}
+
+	/**
+	 * @param appContext
+	 * @return the max number of sorted runs merged at one time
+	 */
+	public static int getDiskSortMergeFanIn( Map appContext )
+	{
+		return Math.max( 2, getIntProperty( appContext,
+				DataEngine.DISK_SORT_MERGE_FAN_IN,
+				DEFAULT_DISK_SORT_MERGE_FAN_IN ) );
+	}
+
+	/**
+	 * @param appContext
+	 * @return the read ahead buffer size of one sorted run in bytes
+	 */
+	public static int getDiskSortReadAheadSize( Map appContext )
+	{
+		return Math.max( 1, getIntProperty( appContext,
+				DataEngine.DISK_SORT_READ_AHEAD_SIZE,
+				DEFAULT_DISK_SORT_READ_AHEAD_SIZE ) ) * 1024;
+	}
+
+	/**
+	 * The spill format set in the app context takes precedence over the one
+	 * set on the session.
 	 * 
+	 * @param appContext
+	 * @param session
+	 * @return DataEngine.SPILL_FORMAT_COLUMNAR or DataEngine.SPILL_FORMAT_ROW
+	 */
+	public static String getSpillFormat( Map appContext,
+			DataEngineSession session )
+	{
+		Object value = appContext == null ? null
+				: appContext.get( DataEngine.SPILL_FORMAT );
+		if ( value == null && session != null )
+			value = session.get( DataEngine.SPILL_FORMAT );
+		if ( value != null
+				&& DataEngine.SPILL_FORMAT_COLUMNAR.equalsIgnoreCase( value.toString( )
+						.trim( ) ) )
+			return DataEngine.SPILL_FORMAT_COLUMNAR;
+		return DataEngine.SPILL_FORMAT_ROW;
+	}
+
+	/**
+	 * @param appContext
+	 * @param key
+	 * @param defaultValue
+	 * @return
+	 */
+	private static int getIntProperty( Map appContext, String key,
+			int defaultValue )
+	{
+		if ( appContext == null )
+			return defaultValue;
+		Object value = appContext.get( key );
+		if ( value == null )
+			return defaultValue;
+		try
+		{
+			return Integer.parseInt( value.toString( ).trim( ) );
+		}
+		catch ( NumberFormatException e )
+		{
+			return defaultValue;
+		}
+	}
+
+	/**
+	 *
 	 * @param propValue
 	 * @return
 	 */
@@ -0,0 +1,523 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.core.data.DataTypeUtil;
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.core.util.IOUtil;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.impl.document.stream.VersionManager;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * Column oriented serialization of a block of result objects, which is used by
+ * the columnar spill format. The values of one column are stored together:
+ * integer, double, boolean and date columns as primitive arrays, string
+ * columns as dictionary indexes when the values repeat enough, and the null
+ * values of every column in a bitmap. Columns of other types fall back to the
+ * per value serialization of ResultObjectUtil. The values read back are the
+ * same as the ones read back from the row format.
+ */
+class ColumnBlockCodec
+{
+	private static final byte ENCODING_GENERIC = 0;
+	private static final byte ENCODING_INT = 1;
+	private static final byte ENCODING_DOUBLE = 2;
+	private static final byte ENCODING_BOOLEAN = 3;
+	private static final byte ENCODING_DATE = 4;
+	private static final byte ENCODING_PLAIN_STRING = 5;
+	private static final byte ENCODING_DICTIONARY_STRING = 6;
+
+	private Class[] typeArray;
+
+	/**
+	 * @param typeArray
+	 *            data type array of result set
+	 */
+	ColumnBlockCodec( Class[] typeArray )
+	{
+		this.typeArray = typeArray;
+	}
+
+	/**
+	 * Convert the field values of a row to the field types, in the same way as
+	 * the row format does.
+	 *
+	 * @param resultObject
+	 * @return
+	 * @throws DataException
+	 */
+	Object[] convert( IResultObject resultObject ) throws DataException
+	{
+		Object[] values = new Object[typeArray.length];
+		for ( int col = 0; col < typeArray.length; col++ )
+		{
+			values[col] = convert( resultObject.getFieldValue( col + 1 ),
+					typeArray[col] );
+		}
+		return values;
+	}
+
+	/**
+	 * Serialize the converted rows column by column.
+	 *
+	 * @param dos
+	 * @param rows
+	 *            the rows converted by convert( IResultObject )
+	 * @param count
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	void write( DataOutputStream dos, Object[][] rows, int count )
+			throws IOException, DataException
+	{
+		IOUtil.writeInt( dos, count );
+		Object[] values = new Object[count];
+		for ( int col = 0; col < typeArray.length; col++ )
+		{
+			for ( int i = 0; i < count; i++ )
+			{
+				values[i] = rows[i][col];
+			}
+			writeColumn( dos, values, count, typeArray[col] );
+		}
+	}
+
+	/**
+	 * Deserialize the values of a block, which are returned row by row.
+	 *
+	 * @param dis
+	 * @param classLoader
+	 * @return
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	Object[][] read( DataInputStream dis, ClassLoader classLoader )
+			throws IOException, DataException
+	{
+		int count = IOUtil.readInt( dis );
+		Object[][] rows = new Object[count][typeArray.length];
+		for ( int col = 0; col < typeArray.length; col++ )
+		{
+			readColumn( dis, rows, col, typeArray[col], classLoader );
+		}
+		return rows;
+	}
+
+	/**
+	 * @param dos
+	 * @param values
+	 *            the converted values of one column
+	 * @param count
+	 * @param fieldType
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void writeColumn( DataOutputStream dos, Object[] values,
+			int count, Class fieldType ) throws IOException, DataException
+	{
+		byte encoding = getEncoding( values, count, fieldType );
+		dos.writeByte( encoding );
+		if ( encoding == ENCODING_GENERIC )
+		{
+			for ( int i = 0; i < count; i++ )
+			{
+				ResultObjectUtil.writeObject( dos,
+						values[i],
+						fieldType,
+						VersionManager.getLatestVersion( ) );
+			}
+			return;
+		}
+
+		writeNullBitmap( dos, values, count );
+		switch ( encoding )
+		{
+			case ENCODING_INT :
+				for ( int i = 0; i < count; i++ )
+				{
+					if ( values[i] != null )
+						dos.writeInt( ( (Integer) values[i] ).intValue( ) );
+				}
+				break;
+			case ENCODING_DOUBLE :
+				for ( int i = 0; i < count; i++ )
+				{
+					if ( values[i] != null )
+						dos.writeDouble( ( (Double) values[i] ).doubleValue( ) );
+				}
+				break;
+			case ENCODING_BOOLEAN :
+				writeBooleans( dos, values, count );
+				break;
+			case ENCODING_DATE :
+				for ( int i = 0; i < count; i++ )
+				{
+					if ( values[i] != null )
+						dos.writeLong( ( (Date) values[i] ).getTime( ) );
+				}
+				break;
+			case ENCODING_PLAIN_STRING :
+				for ( int i = 0; i < count; i++ )
+				{
+					if ( values[i] != null )
+						IOUtil.writeString( dos, values[i].toString( ) );
+				}
+				break;
+			case ENCODING_DICTIONARY_STRING :
+				writeDictionaryStrings( dos, values, count );
+				break;
+		}
+	}
+
+	/**
+	 * @param dis
+	 * @param rows
+	 * @param col
+	 * @param fieldType
+	 * @param classLoader
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void readColumn( DataInputStream dis, Object[][] rows, int col,
+			Class fieldType, ClassLoader classLoader ) throws IOException,
+			DataException
+	{
+		int count = rows.length;
+		byte encoding = dis.readByte( );
+		if ( encoding == ENCODING_GENERIC )
+		{
+			for ( int i = 0; i < count; i++ )
+			{
+				rows[i][col] = ResultObjectUtil.readObject( dis,
+						fieldType,
+						classLoader,
+						VersionManager.getLatestVersion( ) );
+			}
+			return;
+		}
+
+		boolean[] nulls = readNullBitmap( dis, count );
+		switch ( encoding )
+		{
+			case ENCODING_INT :
+				for ( int i = 0; i < count; i++ )
+				{
+					if ( !nulls[i] )
+						rows[i][col] = Integer.valueOf( dis.readInt( ) );
+				}
+				break;
+			case ENCODING_DOUBLE :
+				for ( int i = 0; i < count; i++ )
+				{
+					if ( !nulls[i] )
+						rows[i][col] = new Double( dis.readDouble( ) );
+				}
+				break;
+			case ENCODING_BOOLEAN :
+				readBooleans( dis, rows, col, nulls );
+				break;
+			case ENCODING_DATE :
+				for ( int i = 0; i < count; i++ )
+				{
+					if ( !nulls[i] )
+						rows[i][col] = newDate( fieldType, dis.readLong( ) );
+				}
+				break;
+			case ENCODING_PLAIN_STRING :
+				for ( int i = 0; i < count; i++ )
+				{
+					if ( !nulls[i] )
+						rows[i][col] = IOUtil.readString( dis );
+				}
+				break;
+			case ENCODING_DICTIONARY_STRING :
+				readDictionaryStrings( dis, rows, col, nulls );
+				break;
+			default :
+				throw new IOException( "Unknown column encoding: " + encoding );
+		}
+	}
+
+	/**
+	 * @param values
+	 * @param count
+	 * @param fieldType
+	 * @return the encoding of the column
+	 */
+	private static byte getEncoding( Object[] values, int count,
+			Class fieldType )
+	{
+		if ( fieldType.equals( Integer.class ) )
+			return ENCODING_INT;
+		if ( fieldType.equals( Double.class ) )
+			return ENCODING_DOUBLE;
+		if ( fieldType.equals( Boolean.class ) )
+			return ENCODING_BOOLEAN;
+		if ( Date.class.isAssignableFrom( fieldType ) )
+			return ENCODING_DATE;
+		if ( fieldType.equals( String.class ) )
+		{
+			// use dictionary when at least half of the values are repeated
+			Map<String, Integer> distinct = new HashMap<String, Integer>( );
+			int nonNullCount = 0;
+			for ( int i = 0; i < count; i++ )
+			{
+				if ( values[i] != null )
+				{
+					nonNullCount++;
+					distinct.put( values[i].toString( ), null );
+				}
+			}
+			return distinct.size( ) * 2 <= nonNullCount
+					? ENCODING_DICTIONARY_STRING : ENCODING_PLAIN_STRING;
+		}
+		return ENCODING_GENERIC;
+	}
+
+	/**
+	 * Convert the value to field type in the same way as the row format does.
+	 *
+	 * @param value
+	 * @param fieldType
+	 * @return
+	 * @throws DataException
+	 */
+	private static Object convert( Object value, Class fieldType )
+			throws DataException
+	{
+		if ( value == null )
+			return null;
+		try
+		{
+			if ( fieldType.equals( Integer.class ) )
+				return DataTypeUtil.convert( value, DataType.INTEGER_TYPE );
+			if ( fieldType.equals( Double.class ) )
+				return DataTypeUtil.convert( value, DataType.DOUBLE_TYPE );
+			if ( Date.class.isAssignableFrom( fieldType ) )
+				return DataTypeUtil.convert( value, DataType.DATE_TYPE );
+			if ( fieldType.equals( Boolean.class ) )
+				return DataTypeUtil.convert( value, DataType.BOOLEAN_TYPE );
+		}
+		catch ( BirtException e )
+		{
+			throw DataException.wrap( e );
+		}
+		// other types are converted by ResultObjectUtil.writeObject
+		return value;
+	}
+
+	/**
+	 * @param fieldType
+	 * @param time
+	 * @return the date object of field type
+	 * @throws DataException
+	 */
+	private static Object newDate( Class fieldType, long time )
+			throws DataException
+	{
+		if ( fieldType.equals( Time.class ) )
+			return new Time( time );
+		if ( fieldType.equals( Timestamp.class ) )
+			return new Timestamp( time );
+		if ( fieldType.equals( java.sql.Date.class ) )
+		{
+			try
+			{
+				return DataTypeUtil.toSqlDate( new java.sql.Date( time ) );
+			}
+			catch ( BirtException e )
+			{
+				throw DataException.wrap( e );
+			}
+		}
+		return new Date( time );
+	}
+
+	/**
+	 * Write a flag which indicates whether there is null value, followed by
+	 * the null bitmap if any.
+	 *
+	 * @param dos
+	 * @param values
+	 * @param count
+	 * @throws IOException
+	 */
+	private static void writeNullBitmap( DataOutputStream dos,
+			Object[] values, int count ) throws IOException
+	{
+		byte[] bitmap = new byte[( count + 7 ) / 8];
+		boolean hasNull = false;
+		for ( int i = 0; i < count; i++ )
+		{
+			if ( values[i] == null )
+			{
+				bitmap[i >> 3] |= 1 << ( i & 7 );
+				hasNull = true;
+			}
+		}
+		dos.writeBoolean( hasNull );
+		if ( hasNull )
+			dos.write( bitmap );
+	}
+
+	/**
+	 * @param dis
+	 * @param count
+	 * @return
+	 * @throws IOException
+	 */
+	private static boolean[] readNullBitmap( DataInputStream dis, int count )
+			throws IOException
+	{
+		boolean[] nulls = new boolean[count];
+		if ( dis.readBoolean( ) )
+		{
+			byte[] bitmap = new byte[( count + 7 ) / 8];
+			dis.readFully( bitmap );
+			for ( int i = 0; i < count; i++ )
+			{
+				nulls[i] = ( bitmap[i >> 3] & ( 1 << ( i & 7 ) ) ) != 0;
+			}
+		}
+		return nulls;
+	}
+
+	/**
+	 * @param dos
+	 * @param values
+	 * @param count
+	 * @throws IOException
+	 */
+	private static void writeBooleans( DataOutputStream dos, Object[] values,
+			int count ) throws IOException
+	{
+		byte[] bits = new byte[( count + 7 ) / 8];
+		for ( int i = 0; i < count; i++ )
+		{
+			if ( values[i] != null && ( (Boolean) values[i] ).booleanValue( ) )
+				bits[i >> 3] |= 1 << ( i & 7 );
+		}
+		dos.write( bits );
+	}
+
+	/**
+	 * @param dis
+	 * @param rows
+	 * @param col
+	 * @param nulls
+	 * @throws IOException
+	 */
+	private static void readBooleans( DataInputStream dis, Object[][] rows,
+			int col, boolean[] nulls ) throws IOException
+	{
+		byte[] bits = new byte[( rows.length + 7 ) / 8];
+		dis.readFully( bits );
+		for ( int i = 0; i < rows.length; i++ )
+		{
+			if ( !nulls[i] )
+				rows[i][col] = Boolean.valueOf( ( bits[i >> 3] & ( 1 << ( i & 7 ) ) ) != 0 );
+		}
+	}
+
+	/**
+	 * Write the distinct values followed by the dictionary index of every non
+	 * null value. The width of the index depends on the dictionary size.
+	 *
+	 * @param dos
+	 * @param values
+	 * @param count
+	 * @throws IOException
+	 */
+	private static void writeDictionaryStrings( DataOutputStream dos,
+			Object[] values, int count ) throws IOException
+	{
+		Map<String, Integer> dictionary = new HashMap<String, Integer>( );
+		List<String> entries = new ArrayList<String>( );
+		int[] indexes = new int[count];
+		for ( int i = 0; i < count; i++ )
+		{
+			if ( values[i] == null )
+				continue;
+			String value = values[i].toString( );
+			Integer index = dictionary.get( value );
+			if ( index == null )
+			{
+				index = Integer.valueOf( entries.size( ) );
+				dictionary.put( value, index );
+				entries.add( value );
+			}
+			indexes[i] = index.intValue( );
+		}
+
+		IOUtil.writeInt( dos, entries.size( ) );
+		for ( int i = 0; i < entries.size( ); i++ )
+		{
+			IOUtil.writeString( dos, entries.get( i ) );
+		}
+		int size = entries.size( );
+		for ( int i = 0; i < count; i++ )
+		{
+			if ( values[i] == null )
+				continue;
+			if ( size <= 256 )
+				dos.writeByte( indexes[i] );
+			else if ( size <= 65536 )
+				dos.writeShort( indexes[i] );
+			else
+				dos.writeInt( indexes[i] );
+		}
+	}
+
+	/**
+	 * @param dis
+	 * @param rows
+	 * @param col
+	 * @param nulls
+	 * @throws IOException
+	 */
+	private static void readDictionaryStrings( DataInputStream dis,
+			Object[][] rows, int col, boolean[] nulls ) throws IOException
+	{
+		int size = IOUtil.readInt( dis );
+		String[] entries = new String[size];
+		for ( int i = 0; i < size; i++ )
+		{
+			entries[i] = IOUtil.readString( dis );
+		}
+		for ( int i = 0; i < rows.length; i++ )
+		{
+			if ( nulls[i] )
+				continue;
+			int index;
+			if ( size <= 256 )
+				index = dis.readUnsignedByte( );
+			else if ( size <= 65536 )
+				index = dis.readUnsignedShort( );
+			else
+				index = dis.readInt( );
+			rows[i][col] = entries[index];
+		}
+	}
+}
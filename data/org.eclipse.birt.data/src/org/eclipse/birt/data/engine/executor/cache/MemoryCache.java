@@ -23,6 +23,7 @@ import java.util.Set;
 import org.eclipse.birt.core.archive.RAOutputStream;
 import org.eclipse.birt.core.util.IOUtil;
 import org.eclipse.birt.data.engine.api.IBinding;
+import org.eclipse.birt.data.engine.cache.MemoryReservation;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.i18n.ResourceConstants;
 import org.eclipse.birt.data.engine.impl.StringTable;
@@ -44,6 +45,9 @@ public class MemoryCache implements ResultSetCache
 	private IResultObject currResultObject;
 	private IResultObject[] resultObjects;
 	
+	// the memory reserved for the rows, which is released on close
+	private MemoryReservation reservation;
+	
 	/**
 	 * @param resultObjects
 	 * @param comparator
@@ -51,6 +55,20 @@ public class MemoryCache implements ResultSetCache
 	public MemoryCache( IResultObject[] resultObjects, IResultClass rsMeta,
 			Comparator comparator )
 	{
+		this( resultObjects, rsMeta, comparator, null );
+	}
+	
+	/**
+	 * @param resultObjects
+	 * @param rsMeta
+	 * @param comparator
+	 * @param reservation
+	 *            the memory reserved for the rows, which can be null
+	 */
+	public MemoryCache( IResultObject[] resultObjects, IResultClass rsMeta,
+			Comparator comparator, MemoryReservation reservation )
+	{
+		this.reservation = reservation;
 		this.resultObjects = resultObjects;
 		this.rsMeta = rsMeta;
 		this.countOfResult = resultObjects.length;
@@ -165,6 +183,11 @@ public class MemoryCache implements ResultSetCache
 	{
 		reset( );
 		resultObjects = null;
+		if ( reservation != null )
+		{
+			reservation.close( );
+			reservation = null;
+		}
 	}
 	
 	/*
@@ -62,6 +62,12 @@ public class ResultObjectUtil
 
 	private DataEngineSession session;
 	
+	// whether spilled rows are serialized in column blocks
+	private boolean columnarSpill;
+	
+	// codec of column blocks, which is created lazily
+	private ColumnBlockCodec columnBlockCodec;
+	
 	/**
 	 * In serializaing data to file and deserializing it from file, metadata
 	 * information is necessary to know which data type a column is, and then
@@ -115,6 +121,101 @@ public class ResultObjectUtil
 		return new ResultObject( rsMetaData, rowData );
 	}
 
+	/**
+	 * Set whether the rows spilled to disk are serialized in column blocks
+	 * rather than row by row.
+	 * 
+	 * @param columnarSpill
+	 */
+	public void setColumnarSpill( boolean columnarSpill )
+	{
+		this.columnarSpill = columnarSpill;
+	}
+	
+	/**
+	 * @return whether the rows spilled to disk are serialized in column
+	 *         blocks
+	 */
+	public boolean isColumnarSpill( )
+	{
+		return columnarSpill;
+	}
+	
+	/**
+	 * Convert the field values of a result object to the field types. The
+	 * converted values are buffered until a column block is written.
+	 * 
+	 * @param resultObject
+	 * @return
+	 * @throws DataException
+	 */
+	public Object[] toColumnBlockRow( IResultObject resultObject )
+			throws DataException
+	{
+		return getColumnBlockCodec( ).convert( resultObject );
+	}
+	
+	/**
+	 * Serialize a block of rows column by column. The block is preceded by its
+	 * length so that it can be read back by readColumnBlock.
+	 * 
+	 * @param bos
+	 * @param rows
+	 *            the rows returned by toColumnBlockRow
+	 * @param count
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	public void writeColumnBlock( OutputStream bos, Object[][] rows, int count )
+			throws IOException, DataException
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream( );
+		DataOutputStream dos = new DataOutputStream( baos );
+		getColumnBlockCodec( ).write( dos, rows, count );
+		dos.flush( );
+
+		byte[] blockBytes = baos.toByteArray( );
+		IOUtil.writeInt( bos, blockBytes.length );
+		bos.write( blockBytes );
+	}
+	
+	/**
+	 * Deserialize a block of result objects which is written by
+	 * writeColumnBlock.
+	 * 
+	 * @param bis
+	 * @param classLoader
+	 * @return
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	public IResultObject[] readColumnBlock( InputStream bis,
+			ClassLoader classLoader ) throws IOException, DataException
+	{
+		int blockLen = IOUtil.readInt( bis );
+		byte[] blockBytes = new byte[blockLen];
+		new DataInputStream( bis ).readFully( blockBytes );
+
+		Object[][] rows = getColumnBlockCodec( ).read( new DataInputStream( new ByteArrayInputStream( blockBytes ) ),
+				classLoader );
+		IResultObject[] resultObjects = new IResultObject[rows.length];
+		for ( int i = 0; i < rows.length; i++ )
+		{
+			resultObjects[i] = newResultObject( rows[i] );
+		}
+		return resultObjects;
+	}
+	
+	/**
+	 * @return
+	 */
+	private ColumnBlockCodec getColumnBlockCodec( )
+	{
+		if ( columnBlockCodec == null )
+			columnBlockCodec = new ColumnBlockCodec( typeArray );
+		return columnBlockCodec;
+	}
+	
 	/**
 	 * Deserialze result object array from input stream. The reading procedure
 	 * is strictly sequential, that means there is no random access.
@@ -18,6 +18,8 @@ import java.util.Map;
 import java.util.logging.Logger;
 
 import org.eclipse.birt.data.engine.api.IBinding;
+import org.eclipse.birt.data.engine.cache.MemoryBroker;
+import org.eclipse.birt.data.engine.cache.MemoryReservation;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.executor.ResultObject;
 import org.eclipse.birt.data.engine.executor.cache.disk.SimpleDiskCache;
@@ -44,6 +46,9 @@ public class SimpleSmartCache implements ResultSetCache
 	private SizeOfUtil sizeOfUtil;
 	private int maxRows;
 	private SimpleDiskCache diskCache;
+	private boolean useBroker;
+	private MemoryReservation reservation;
+	private boolean reserved = true;
 
 	// log instance
 	private static Logger logger = Logger.getLogger( SimpleSmartCache.class.getName( ) );
@@ -63,22 +68,38 @@ public class SimpleSmartCache implements ResultSetCache
 		this.rsMeta = rsMeta;
 		this.sizeOfUtil = new SizeOfUtil( rsMeta );
 		this.maxRows = CacheUtil.getMaxRows( eventHandler.getAppContext( ) );
+		// the memory of rows is reserved from the process wide broker, and
+		// memoryCacheSize is an extra limit of this task
+		MemoryBroker broker = MemoryBroker.getInstance( );
+		this.useBroker = broker.isEnabled( );
+		this.reservation = broker.newReservation( "SimpleSmartCache", session );
 	}
 
 	public void add( IResultObject odaObject ) throws DataException
 	{
-		if ( memoryCacheSize == 0 || usedMemorySize < memoryCacheSize )
+		if ( reserved
+				&& ( memoryCacheSize == 0 || usedMemorySize < memoryCacheSize ) )
 		{
 			count++;
 			if ( maxRows > 0 && count > maxRows )
 			{
+				reservation.close( );
 				throw new DataException( ResourceConstants.EXCEED_MAX_DATA_OBJECT_ROWS );
 			}
-			addToMemoryCache( odaObject );
+			long rowSize = addToMemoryCache( odaObject );
+			if ( useBroker )
+			{
+				reserved = reservation.reserve( rowSize );
+			}
 		}
 		else
 		{
 			count++;
+			if ( diskCache == null )
+			{
+				// the rows in memory are moved to the disk cache
+				reservation.close( );
+			}
 			addToDiskCache( odaObject );
 		}
 	}
@@ -100,7 +121,10 @@ public class SimpleSmartCache implements ResultSetCache
 		diskCache.add( resultObjects );
 	}
 
-	private void addToMemoryCache( IResultObject odaObject )
+	/**
+	 * @return the size of the row, or 0 if the rows are not measured
+	 */
+	private long addToMemoryCache( IResultObject odaObject )
 			throws DataException
 	{
 		// the followed variable is for performance
@@ -117,8 +141,14 @@ public class SimpleSmartCache implements ResultSetCache
 			odaObject = new ResultObject( rsMeta, obs );
 		}
 		resultObjectsList.add( odaObject );
-		if ( memoryCacheSize != 0 )
-			usedMemorySize += sizeOfUtil.sizeOf( odaObject );
+		// the rows are not measured when the memory is not limited
+		long rowSize = 0;
+		if ( memoryCacheSize != 0 || useBroker )
+		{
+			rowSize = sizeOfUtil.sizeOf( odaObject );
+			usedMemorySize += rowSize;
+		}
+		return rowSize;
 	}
 
 	/*
@@ -141,7 +171,12 @@ public class SimpleSmartCache implements ResultSetCache
 				logger.fine( "MemoryCache is used" );
 
 				IResultObject[] resultObjects = (IResultObject[]) resultObjectsList.toArray( new IResultObject[0] );
-				resultSetCache = new MemoryCache( resultObjects, rsMeta, null );
+				// the rows are kept in memory until the cache is closed
+				reservation.setSpillable( false );
+				resultSetCache = new MemoryCache( resultObjects,
+						rsMeta,
+						null,
+						reservation );
 			}
 			else
 			{
@@ -16,6 +16,8 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.logging.Logger;
 
+import org.eclipse.birt.data.engine.cache.MemoryBroker;
+import org.eclipse.birt.data.engine.cache.MemoryReservation;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.executor.ResultObject;
 import org.eclipse.birt.data.engine.executor.cache.disk.DiskCache;
@@ -26,7 +28,6 @@ import org.eclipse.birt.data.engine.odaconsumer.ResultSet;
 import org.eclipse.birt.data.engine.odi.IEventHandler;
 import org.eclipse.birt.data.engine.odi.IResultClass;
 import org.eclipse.birt.data.engine.odi.IResultObject;
-import org.eclipse.birt.data.engine.script.ScriptEvalUtil;
 
 /**
  * Help SmartCache to get the ResultSetCache, the real data cache.
@@ -313,20 +314,32 @@ class SmartCacheHelper
 
 		int dataCount = 0;
 		long usedMemorySize = 0;
+		
+		// the memory of rows is reserved from the process wide broker, which
+		// refuses the reservation when other tasks have used up the memory;
+		// memoryCacheSize is an extra limit of this task
+		MemoryBroker broker = MemoryBroker.getInstance( );
+		boolean useBroker = broker.isEnabled( );
+		MemoryReservation reservation = broker.newReservation( "SmartCache",
+				session );
+		boolean reserved = true;
 
 		while ( !session.getStopSign( ).isStopped( )
 				&& ( odaObject = rowResultSet.next( ) ) != null )
 		{
-			if ( memoryCacheSize == 0 || usedMemorySize < memoryCacheSize )
+			if ( reserved
+					&& ( memoryCacheSize == 0 || usedMemorySize < memoryCacheSize ) )
 			{
 				dataCount++;
 				if( maxRows > 0 && dataCount > maxRows )
 				{
+					reservation.close( );
 					throw new DataException( ResourceConstants.EXCEED_MAX_DATA_OBJECT_ROWS );
 				}
 				//the followed variable is for performance
 				int odaObjectFieldCount = odaObject.getResultClass( ).getFieldCount( );
 				int metaFieldCount = rsMeta.getFieldCount( );
+				IResultObject rowObject = odaObject;
 				if(odaObjectFieldCount < metaFieldCount)
 				{
 					//Populate Data according to the given meta data.
@@ -335,22 +348,24 @@ class SmartCacheHelper
 					{
 						obs[i - 1] = odaObject.getFieldValue( i );
 					}
-					ResultObject temp = new ResultObject( rsMeta, obs );
-					resultObjectsList.add( temp );
-					if( memoryCacheSize != 0 )
-						usedMemorySize += sizeOfUtil.sizeOf( temp );
+					rowObject = new ResultObject( rsMeta, obs );
 				}
-				else
+				resultObjectsList.add( rowObject );
+				// the rows are not measured when the memory is not limited
+				if ( memoryCacheSize != 0 || useBroker )
 				{
-					resultObjectsList.add( odaObject );
-					if( memoryCacheSize != 0 )
-						usedMemorySize += sizeOfUtil.sizeOf( odaObject );
+					long rowSize = sizeOfUtil.sizeOf( rowObject );
+					usedMemorySize += rowSize;
+					if ( useBroker )
+					{
+						reserved = reservation.reserve( rowSize );
+					}
 				}
-				
 			}
 			else
 			{
 				logger.fine( "DiskCache is used" );
+				reservation.close( );
 
 				resultObjects = (IResultObject[]) resultObjectsList.toArray( new IResultObject[0] );
 				// the order is: resultObjects, odaObject, rowResultSet
@@ -361,7 +376,9 @@ class SmartCacheHelper
 						getComparator( sortSpec, eventHandler ),
 						dataCount,
 						maxRows,
-						this.session );
+						this.session,
+						eventHandler == null ? null
+								: eventHandler.getAppContext( ) );
 				break;
 			}
 		}
@@ -372,9 +389,12 @@ class SmartCacheHelper
 
 			resultObjects = (IResultObject[]) resultObjectsList.toArray( new IResultObject[0] );
 
+			// the rows are kept in memory until the cache is closed
+			reservation.setSpillable( false );
 			resultSetCache = new MemoryCache( resultObjects,
 					rsMeta,
-					getComparator( sortSpec, eventHandler ) );
+					getComparator( sortSpec, eventHandler ),
+					reservation );
 		}
 
 		odaObject = null;
@@ -392,77 +412,16 @@ class SmartCacheHelper
 	 *         no need to do sorting
 	 */
 	private static Comparator getComparator( SortSpec sortSpec,
-			final IEventHandler eventHandler )
+			IEventHandler eventHandler )
 	{
 		if ( sortSpec == null )
 			return null;
 
-		final int[] sortKeyIndexes = sortSpec.getSortKeyIndexes();
-		final String[] sortKeyColumns = sortSpec.getSortKeyColumns();
+		int[] sortKeyIndexes = sortSpec.getSortKeyIndexes();
 
 		if ( sortKeyIndexes == null || sortKeyIndexes.length == 0 )
 			return null;
 
-		final int[] sortAscending = sortSpec.getSortAscending();
-		final CompareHints[] comparators = sortSpec.getComparator( );
-		Comparator comparator = new Comparator( ) {
-
-			/**
-			 * compares two row indexes, actually compares two rows pointed by
-			 * the two row indexes
-			 */
-			public int compare( Object obj1, Object obj2 )
-			{
-				IResultObject row1 = (IResultObject) obj1;
-				IResultObject row2 = (IResultObject) obj2;
-
-				// compare group keys first
-				for ( int i = 0; i < sortKeyIndexes.length; i++ )
-				{
-					int colIndex = sortKeyIndexes[i];
-					String colName = sortKeyColumns[i];
-					try
-					{
-						Object colObj1 = null;
-						Object colObj2 = null;
-
-						if ( eventHandler != null )
-						{
-							colObj1 = eventHandler.getValue( row1,
-									colIndex,
-									colName );
-							colObj2 = eventHandler.getValue( row2,
-									colIndex,
-									colName );
-						}
-						else
-						{
-							colObj1 = row1.getFieldValue( colIndex );
-							colObj2 = row2.getFieldValue( colIndex );
-						}
-
-						int result = ScriptEvalUtil.compare( colObj1, colObj2, comparators[i] );
-						if ( result != 0 )
-						{
-							if( sortAscending[i] == SortSpec.SORT_DISABLE )
-							{
-								return 0;
-							}
-							return sortAscending[i] == SortSpec.SORT_ASC ? result : -result;
-						}
-					}
-					catch ( DataException e )
-					{
-						// Should never get here
-						// colIndex is always valid
-					}
-				}
-
-				// all equal, so return 0
-				return 0;
-			}
-		};
-
-		return comparator;
+		return new SortKeyComparator( sortSpec, eventHandler );
 	}
 }
@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.util.Comparator;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.expression.CompareHints;
+import org.eclipse.birt.data.engine.odi.IEventHandler;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+import org.eclipse.birt.data.engine.script.ScriptEvalUtil;
+
+/**
+ * Comparator of result objects based on a sort specification. Besides the
+ * plain row comparison, the sort key evaluation and the key comparison are
+ * exposed separately. Evaluating sort keys might go through the script engine
+ * and therefore must stay on the thread which owns the event handler, while
+ * the comparison of already evaluated keys can be done by any thread as long
+ * as {@link #isKeyComparisonThreadSafe()} returns true.
+ */
+public class SortKeyComparator implements Comparator
+{
+	private int[] sortKeyIndexes;
+	private String[] sortKeyColumns;
+	private int[] sortAscending;
+	private CompareHints[] comparators;
+	private IEventHandler eventHandler;
+
+	/**
+	 * @param sortSpec
+	 * @param eventHandler
+	 */
+	public SortKeyComparator( SortSpec sortSpec, IEventHandler eventHandler )
+	{
+		this.sortKeyIndexes = sortSpec.getSortKeyIndexes( );
+		this.sortKeyColumns = sortSpec.getSortKeyColumns( );
+		this.sortAscending = sortSpec.getSortAscending( );
+		this.comparators = sortSpec.getComparator( );
+		this.eventHandler = eventHandler;
+	}
+
+	/**
+	 * compares two row indexes, actually compares two rows pointed by the two
+	 * row indexes
+	 */
+	public int compare( Object obj1, Object obj2 )
+	{
+		IResultObject row1 = (IResultObject) obj1;
+		IResultObject row2 = (IResultObject) obj2;
+
+		// compare group keys first
+		for ( int i = 0; i < sortKeyIndexes.length; i++ )
+		{
+			try
+			{
+				int result = ScriptEvalUtil.compare( getKeyValue( row1, i ),
+						getKeyValue( row2, i ),
+						comparators[i] );
+				if ( result != 0 )
+					return applyDirection( i, result );
+			}
+			catch ( DataException e )
+			{
+				// Should never get here
+				// colIndex is always valid
+			}
+		}
+
+		// all equal, so return 0
+		return 0;
+	}
+
+	/**
+	 * Evaluate all the sort key values of a row. This method must be called
+	 * on the thread which owns the event handler.
+	 *
+	 * @param row
+	 * @return
+	 */
+	public Object[] getSortKeys( IResultObject row )
+	{
+		Object[] keys = new Object[sortKeyIndexes.length];
+		for ( int i = 0; i < keys.length; i++ )
+		{
+			try
+			{
+				keys[i] = getKeyValue( row, i );
+			}
+			catch ( DataException e )
+			{
+				// Should never get here
+				// colIndex is always valid
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * Compare two arrays of sort key values which are got from
+	 * {@link #getSortKeys(IResultObject)}. The result is the same as comparing
+	 * the rows the keys are evaluated from.
+	 *
+	 * @param keys1
+	 * @param keys2
+	 * @return
+	 */
+	public int compareSortKeys( Object[] keys1, Object[] keys2 )
+	{
+		for ( int i = 0; i < sortKeyIndexes.length; i++ )
+		{
+			try
+			{
+				int result = ScriptEvalUtil.compare( keys1[i],
+						keys2[i],
+						comparators[i] );
+				if ( result != 0 )
+					return applyDirection( i, result );
+			}
+			catch ( DataException e )
+			{
+				// Should never get here
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * @return true if evaluated sort keys can be compared concurrently, which
+	 *         is not the case when a user defined comparator, such as a
+	 *         collator, is involved in the comparison.
+	 */
+	public boolean isKeyComparisonThreadSafe( )
+	{
+		if ( comparators == null )
+			return true;
+		for ( int i = 0; i < comparators.length; i++ )
+		{
+			if ( comparators[i] != null
+					&& comparators[i].getComparator( ) != null )
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @param row
+	 * @param keyIndex
+	 * @return
+	 * @throws DataException
+	 */
+	private Object getKeyValue( IResultObject row, int keyIndex )
+			throws DataException
+	{
+		if ( eventHandler != null )
+			return eventHandler.getValue( row,
+					sortKeyIndexes[keyIndex],
+					sortKeyColumns[keyIndex] );
+		return row.getFieldValue( sortKeyIndexes[keyIndex] );
+	}
+
+	/**
+	 * @param keyIndex
+	 * @param result
+	 *            the non-zero compared result of the key values
+	 * @return
+	 */
+	private int applyDirection( int keyIndex, int result )
+	{
+		if ( sortAscending[keyIndex] == SortSpec.SORT_DISABLE )
+		{
+			return 0;
+		}
+		return sortAscending[keyIndex] == SortSpec.SORT_ASC ? result : -result;
+	}
+}
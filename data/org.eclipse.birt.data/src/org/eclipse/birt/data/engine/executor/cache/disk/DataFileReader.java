@@ -35,6 +35,13 @@ class DataFileReader
 
 	private ResultObjectUtil resultObjectUtil;
 	
+	// the size of read buffer, non-positive value means default size
+	private int bufferSize;
+	
+	// the decoded column block in columnar format
+	private IResultObject[] currentBlock;
+	private int blockPos;
+	
 	/**
 	 * A util method to new instance of DataFileReader
 	 * 
@@ -47,6 +54,23 @@ class DataFileReader
 		return new DataFileReader( file, resultObjectUtil );
 	}
 	
+	/**
+	 * A util method to new instance of DataFileReader with specified read
+	 * buffer size.
+	 * 
+	 * @param file
+	 * @param resultObjectUtil
+	 * @param bufferSize
+	 * @return DataFileReader instance
+	 */
+	static DataFileReader newInstance( File file,
+			ResultObjectUtil resultObjectUtil, int bufferSize )
+	{
+		DataFileReader reader = new DataFileReader( file, resultObjectUtil );
+		reader.bufferSize = bufferSize;
+		return reader;
+	}
+	
 	/**
 	 * Construction
 	 * 
@@ -97,12 +121,45 @@ class DataFileReader
 				// normally this exception will never be thrown
 				// since file will always exist
 			}
-			bis = new BufferedInputStream( fis );
+			bis = bufferSize > 0
+					? new BufferedInputStream( fis, bufferSize )
+					: new BufferedInputStream( fis );
 			isOpen = true;
 		}
 
+		if ( resultObjectUtil.isColumnarSpill( ) )
+			return readFromColumnBlocks( length );
 		return resultObjectUtil.readData( bis, null, length );
 	}
+	
+	/**
+	 * Read the rows from column blocks, a new block is decoded when the rows
+	 * of current block are used up.
+	 * 
+	 * @param length
+	 * @return
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private IResultObject[] readFromColumnBlocks( int length )
+			throws IOException, DataException
+	{
+		IResultObject[] rowDatas = new IResultObject[length];
+		int count = 0;
+		while ( count < length )
+		{
+			if ( currentBlock == null || blockPos == currentBlock.length )
+			{
+				currentBlock = resultObjectUtil.readColumnBlock( bis, null );
+				blockPos = 0;
+			}
+			int size = Math.min( length - count, currentBlock.length - blockPos );
+			System.arraycopy( currentBlock, blockPos, rowDatas, count, size );
+			blockPos += size;
+			count += size;
+		}
+		return rowDatas;
+	}
 
 	/**
 	 * Close current input file.
@@ -118,6 +175,8 @@ class DataFileReader
 				bis.close( );
 				fis.close( );
 				isOpen = false;
+				currentBlock = null;
+				blockPos = 0;
 			}
 			catch ( IOException e )
 			{
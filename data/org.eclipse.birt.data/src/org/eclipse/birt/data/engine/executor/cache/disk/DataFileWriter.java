@@ -35,6 +35,13 @@ class DataFileWriter
 
 	private ResultObjectUtil resultObjectUtil;
 	
+	// the number of rows in one column block of columnar format
+	static final int COLUMN_BLOCK_SIZE = 1024;
+	
+	// converted rows which are not written yet in columnar format
+	private Object[][] pendingRows;
+	private int pendingCount;
+	
 	/**
 	 * A util method to new instance of DataFileWriter
 	 * 
@@ -102,7 +109,74 @@ class DataFileWriter
 			isOpen = true;
 		}
 
-		resultObjectUtil.writeData( bos, resultObjects, count );
+		if ( resultObjectUtil.isColumnarSpill( ) )
+			writeToColumnBlocks( resultObjects, count );
+		else
+			resultObjectUtil.writeData( bos, resultObjects, count );
+	}
+	
+	/**
+	 * Buffer the rows and write them out once a column block is full.
+	 * 
+	 * @param resultObjects
+	 * @param count
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void writeToColumnBlocks( IResultObject[] resultObjects, int count )
+			throws IOException, DataException
+	{
+		if ( pendingRows == null )
+			pendingRows = new Object[COLUMN_BLOCK_SIZE][];
+		for ( int i = 0; i < count; i++ )
+		{
+			pendingRows[pendingCount++] = resultObjectUtil.toColumnBlockRow( resultObjects[i] );
+			if ( pendingCount == COLUMN_BLOCK_SIZE )
+				flushColumnBlock( );
+		}
+	}
+	
+	/**
+	 * Write the buffered rows as one column block.
+	 * 
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void flushColumnBlock( ) throws IOException, DataException
+	{
+		if ( pendingCount == 0 )
+			return;
+		try
+		{
+			resultObjectUtil.writeColumnBlock( bos, pendingRows, pendingCount );
+		}
+		finally
+		{
+			clearColumnBlock( );
+		}
+	}
+
+	private void clearColumnBlock( )
+	{
+		for ( int i = 0; i < pendingCount; i++ )
+			pendingRows[i] = null;
+		pendingCount = 0;
+	}
+
+	/**
+	 * Write out the rows still buffered. It should be called before the
+	 * writer is closed, otherwise the buffered rows are discarded.
+	 * 
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	void flush( ) throws IOException, DataException
+	{
+		if ( isOpen )
+		{
+			flushColumnBlock( );
+			bos.flush( );
+		}
 	}
 
 	/**
@@ -116,6 +190,7 @@ class DataFileWriter
 		{
 			try
 			{
+				clearColumnBlock( );
 				bos.close( );
 				fos.close( );
 				isOpen = false;
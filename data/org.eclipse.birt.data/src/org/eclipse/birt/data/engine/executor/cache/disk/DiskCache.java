@@ -99,12 +99,44 @@ public class DiskCache implements ResultSetCache
 			IRowResultSet rowResultSet, IResultClass rsMeta,
 			Comparator comparator, int MemoryCacheRowCount,int maxRows, DataEngineSession session )
 			throws DataException
+	{
+		this( resultObjects,
+				resultObject,
+				rowResultSet,
+				rsMeta,
+				comparator,
+				MemoryCacheRowCount,
+				maxRows,
+				session,
+				null );
+	}
+	
+	/**
+	 * The appContext carries the optional disk sort settings, see
+	 * DataEngine.DISK_SORT_PARALLELISM.
+	 * 
+	 * @param resultObjects
+	 * @param resultObject
+	 * @param rowResultSet
+	 * @param rsMeta
+	 * @param comparator
+	 * @param MemoryCacheRowCount
+	 * @param maxRows
+	 * @param session
+	 * @param appContext
+	 * @throws DataException
+	 */
+	public DiskCache( IResultObject[] resultObjects, IResultObject resultObject,
+			IRowResultSet rowResultSet, IResultClass rsMeta,
+			Comparator comparator, int MemoryCacheRowCount, int maxRows,
+			DataEngineSession session, Map appContext ) throws DataException
 	{
 		//this.rsMeta = rsMeta;
 		this.MemoryCacheRowCount = MemoryCacheRowCount;
 		this.rsMeta = rsMeta;
 		this.session = session;
-		this.diskBasedResultSet = new DiskCacheResultSet( getInfoMap( ), session );
+		this.diskBasedResultSet = new DiskCacheResultSet( getInfoMap( appContext ),
+				session );
 		
 		try
 		{
@@ -349,9 +381,11 @@ public class DiskCache implements ResultSetCache
 	 * 		tempDir, to generated temp file in DiskMergeSort
 	 * 		goalFile, to generate the end result file
 	 * 		dataCountOfUnit, to indicate how many rows can be loaded into memory
+	 * 		sortParallelism, mergeFanIn and readAheadSize, to tune disk sort
+	 * 		spillFormat, to indicate the format of the spilled data
 	 * @throws DataException 
 	 */
-	private Map getInfoMap( ) throws DataException
+	private Map getInfoMap( Map appContext ) throws DataException
 	{
 		Map infoMap = new HashMap( );
 
@@ -359,6 +393,14 @@ public class DiskCache implements ResultSetCache
 		goalFileStr = getGoalFileStr( );
 		infoMap.put( "goalFile", goalFileStr );
 		infoMap.put( "dataCountOfUnit", "" + MemoryCacheRowCount );
+		infoMap.put( "sortParallelism", ""
+				+ CacheUtil.getDiskSortParallelism( appContext ) );
+		infoMap.put( "mergeFanIn", ""
+				+ CacheUtil.getDiskSortMergeFanIn( appContext ) );
+		infoMap.put( "readAheadSize", ""
+				+ CacheUtil.getDiskSortReadAheadSize( appContext ) );
+		infoMap.put( "spillFormat", CacheUtil.getSpillFormat( appContext,
+				session ) );
 
 		return infoMap;
 	}
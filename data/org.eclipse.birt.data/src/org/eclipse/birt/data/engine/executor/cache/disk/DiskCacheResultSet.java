@@ -14,6 +14,7 @@ import java.io.IOException;
 import java.util.Comparator;
 import java.util.Map;
 
+import org.eclipse.birt.data.engine.api.DataEngine;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.executor.cache.IRowResultSet;
 import org.eclipse.birt.data.engine.executor.cache.ResultObjectUtil;
@@ -59,6 +60,7 @@ class DiskCacheResultSet
 		IResultClass rsMetaData = resultObjects[0].getResultClass( );
 		assert rsMetaData != null;
 		this.resultObjectUtil = ResultObjectUtil.newInstance( rsMetaData, session );
+		this.resultObjectUtil.setColumnarSpill( DataEngine.SPILL_FORMAT_COLUMNAR.equals( infoMap.get( "spillFormat" ) ) );
 		
 		databaseExport = DiskDataExport.newInstance( infoMap,
 				comparator,
@@ -17,6 +17,7 @@ import java.util.Map;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.executor.cache.IRowResultSet;
 import org.eclipse.birt.data.engine.executor.cache.ResultObjectUtil;
+import org.eclipse.birt.data.engine.executor.cache.SortKeyComparator;
 import org.eclipse.birt.data.engine.i18n.ResourceConstants;
 import org.eclipse.birt.data.engine.impl.DataEngineSession;
 import org.eclipse.birt.data.engine.odi.IResultClass;
@@ -34,7 +35,9 @@ abstract class DiskDataExport
 	
 	/**
 	 * According to the parameter of comparator to generate the instance, which
-	 * is disk-based direct output instance or disk-based merge instance.
+	 * is disk-based direct output instance or disk-based merge instance. The
+	 * parallel merge instance is used when it is enabled in infoMap and the
+	 * comparator supports it.
 	 * 
 	 * @param infoMap
 	 * @param comparator
@@ -47,7 +50,16 @@ abstract class DiskDataExport
 	{
 		DiskDataExport dbExport;
 		if ( comparator != null )
-			dbExport = new DiskSortExport2( infoMap, comparator, resultObjectUtil );
+		{
+			if ( ParallelDiskSortExport.isApplicable( infoMap, comparator ) )
+				dbExport = new ParallelDiskSortExport( infoMap,
+						(SortKeyComparator) comparator,
+						resultObjectUtil );
+			else
+				dbExport = new DiskSortExport2( infoMap,
+						comparator,
+						resultObjectUtil );
+		}
 		else
 			dbExport = new DiskDirectExport( infoMap, resultObjectUtil );
 
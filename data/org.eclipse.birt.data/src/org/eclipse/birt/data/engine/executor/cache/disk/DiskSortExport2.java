@@ -224,8 +224,11 @@ class DiskSortExport2 extends DiskDataExport
 	 * file and initialize row buffer.
 	 * 
 	 * @param cacheSize
+	 * @throws IOException
+	 * @throws DataException
 	 */
-	private void prepareNewTempRowFile( int cacheSize )
+	private void prepareNewTempRowFile( int cacheSize ) throws IOException,
+			DataException
 	{
 		if ( currRowFiles.size( ) > 0 )
 		{
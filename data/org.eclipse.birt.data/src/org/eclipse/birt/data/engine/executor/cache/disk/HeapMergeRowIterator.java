@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache.disk;
+
+import java.io.IOException;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.cache.SortKeyComparator;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * K-way merge of sorted row iterators based on a binary min heap. The sort key
+ * values of the head row of every iterator are evaluated once when the row is
+ * read, so each row costs one key evaluation and log(k) key comparisons. Rows
+ * with equal keys are returned in the order of their iterators, which keeps
+ * the merge stable.
+ */
+class HeapMergeRowIterator implements IRowIterator
+{
+	private IRowIterator[] subRowIterators;
+	private SortKeyComparator comparator;
+
+	// heap[0..heapSize) is the min heap of the head rows
+	private HeadRow[] heap;
+	private int heapSize;
+
+	/**
+	 * @param subRowIterators
+	 *            the rows of every iterator are sorted
+	 * @param comparator
+	 */
+	HeapMergeRowIterator( IRowIterator[] subRowIterators,
+			SortKeyComparator comparator )
+	{
+		assert subRowIterators != null;
+
+		this.subRowIterators = subRowIterators;
+		this.comparator = comparator;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.IRowIterator#reset()
+	 */
+	public void reset( ) throws DataException
+	{
+		for ( int i = 0; i < subRowIterators.length; i++ )
+		{
+			subRowIterators[i].reset( );
+		}
+		heap = null;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.IRowIterator#fetch()
+	 */
+	public IResultObject fetch( ) throws IOException, DataException
+	{
+		if ( heap == null )
+		{
+			prepareFirstFetch( );
+		}
+		if ( heapSize == 0 )
+		{
+			return null;
+		}
+
+		HeadRow top = heap[0];
+		IResultObject value = top.row;
+
+		IResultObject next = subRowIterators[top.index].fetch( );
+		if ( next == null )
+		{
+			heapSize--;
+			heap[0] = heap[heapSize];
+			heap[heapSize] = null;
+		}
+		else
+		{
+			top.row = next;
+			top.keys = comparator.getSortKeys( next );
+		}
+		if ( heapSize > 0 )
+		{
+			siftDown( 0 );
+		}
+		return value;
+	}
+
+	/**
+	 * Read the first row of every iterator and build the heap.
+	 *
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void prepareFirstFetch( ) throws IOException, DataException
+	{
+		heap = new HeadRow[subRowIterators.length];
+		heapSize = 0;
+		for ( int i = 0; i < subRowIterators.length; i++ )
+		{
+			IResultObject row = subRowIterators[i].fetch( );
+			if ( row != null )
+			{
+				heap[heapSize++] = new HeadRow( row,
+						comparator.getSortKeys( row ),
+						i );
+			}
+		}
+		for ( int i = heapSize / 2 - 1; i >= 0; i-- )
+		{
+			siftDown( i );
+		}
+	}
+
+	/**
+	 * @param pos
+	 */
+	private void siftDown( int pos )
+	{
+		HeadRow node = heap[pos];
+		int half = heapSize / 2;
+		while ( pos < half )
+		{
+			int child = 2 * pos + 1;
+			int right = child + 1;
+			if ( right < heapSize && compare( heap[right], heap[child] ) < 0 )
+			{
+				child = right;
+			}
+			if ( compare( node, heap[child] ) <= 0 )
+			{
+				break;
+			}
+			heap[pos] = heap[child];
+			pos = child;
+		}
+		heap[pos] = node;
+	}
+
+	/**
+	 * @param row1
+	 * @param row2
+	 * @return
+	 */
+	private int compare( HeadRow row1, HeadRow row2 )
+	{
+		int result = comparator.compareSortKeys( row1.keys, row2.keys );
+		if ( result == 0 )
+		{
+			return row1.index < row2.index ? -1
+					: ( row1.index == row2.index ? 0 : 1 );
+		}
+		return result;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.IRowIterator#close()
+	 */
+	public void close( ) throws DataException
+	{
+		if ( subRowIterators == null )
+			return;
+		for ( int i = 0; i < subRowIterators.length; i++ )
+		{
+			subRowIterators[i].close( );
+		}
+		subRowIterators = null;
+		heap = null;
+	}
+
+	/**
+	 * The current head row of one sub iterator.
+	 */
+	private static class HeadRow
+	{
+		IResultObject row;
+		Object[] keys;
+		int index;
+
+		HeadRow( IResultObject row, Object[] keys, int index )
+		{
+			this.row = row;
+			this.keys = keys;
+			this.index = index;
+		}
+	}
+}
@@ -14,6 +14,8 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.eclipse.birt.data.engine.cache.MemoryBroker;
+import org.eclipse.birt.data.engine.cache.MemoryReservation;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.impl.DataEngineSession;
 import org.eclipse.birt.data.engine.odi.IResultObject;
@@ -33,6 +35,12 @@ class MergeSortImpl
 	// this value, max.
 	private final static int maxOpenFile = 500;
 	
+	// the memory held by one open temp file in merge, mainly its read buffer
+	private final static long openFileMemory = 8 * 1024;
+	
+	// the memory reserved for the open temp files of current merge level
+	private MemoryReservation reservation;
+	
 	private DataEngineSession session;
 	/**
 	 * @param dataCountOfUnit
@@ -64,34 +72,51 @@ class MergeSortImpl
 		
 		int granularity = 0;
 		boolean finish = false;
-		do
+		reservation = MemoryBroker.getInstance( ).newReservation( "MergeSort",
+				session );
+		try
 		{
-			tempFileUtil.newMergeLevel( );
-			granularity = getMergeGranularity( );
-			if ( granularity == tempRowFiles.size( ) )
+			do
 			{
-				goalFile = new MergeSortRowFiles( getSubList( tempRowFiles,
-						0,
-						tempRowFiles.size( ) - 1 ), mergeSortUtil );
-				tempRowFiles.clear( );
-				finish = true;
-			}
-			else
-			{
-				levelMergeSort( granularity );
-			}
-		} while ( !finish );
+				tempFileUtil.newMergeLevel( );
+				granularity = getMergeGranularity( );
+				if ( granularity == tempRowFiles.size( ) )
+				{
+					goalFile = new MergeSortRowFiles( getSubList( tempRowFiles,
+							0,
+							tempRowFiles.size( ) - 1 ), mergeSortUtil );
+					tempRowFiles.clear( );
+					finish = true;
+				}
+				else
+				{
+					levelMergeSort( granularity );
+				}
+				reservation.release( reservation.getReservedSize( ) );
+			} while ( !finish );
+		}
+		finally
+		{
+			reservation.close( );
+		}
 		
 		return goalFile;
 	}
 
 	/**
-	 * @return the granularity of merge unit
+	 * @return the granularity of merge unit, which is reduced when the memory
+	 *         for the open files can not be reserved
 	 */
 	private int getMergeGranularity( )
 	{
-		return Math.min( dataCountOfUnit, Math.min( maxOpenFile,
+		int granularity = Math.min( dataCountOfUnit, Math.min( maxOpenFile,
 				tempRowFiles.size( ) ) );
+		while ( granularity > 2
+				&& !reservation.reserve( granularity * openFileMemory ) )
+		{
+			granularity = Math.max( 2, granularity / 2 );
+		}
+		return granularity;
 	}
 
 	/**
@@ -59,12 +59,22 @@ class MergeTempFileUtil
 	 */
 	RowFile newTempFile( int cacheSize )
 	{
-		return new RowFile( new File( tempDirStr, tempFilePrefix
-				+ "_" + curLevel + "_" + curIndex++ ),
+		return new RowFile( newTempFilePath( ),
 				resultObjectUtil,
 				cacheSize );
 	}
 	
+	/**
+	 * Get the path of a new temp file without creating the file.
+	 * 
+	 * @return temp file path
+	 */
+	File newTempFilePath( )
+	{
+		return new File( tempDirStr, tempFilePrefix
+				+ "_" + curLevel + "_" + curIndex++ );
+	}
+	
 	/**
 	 * Start new merge level.
 	 * 
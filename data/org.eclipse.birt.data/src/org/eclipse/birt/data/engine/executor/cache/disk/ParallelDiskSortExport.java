@@ -0,0 +1,498 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache.disk;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.cache.IRowResultSet;
+import org.eclipse.birt.data.engine.executor.cache.ResultObjectUtil;
+import org.eclipse.birt.data.engine.executor.cache.SortKeyComparator;
+import org.eclipse.birt.data.engine.i18n.ResourceConstants;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * One implementation of DiskDataExport which sorts the data by a parallel
+ * external merge sort. The fetched rows are cut into runs, and every run is
+ * sorted and written to its own temp file by a worker thread while the
+ * calling thread goes on fetching. The sorted runs are then merged by a single
+ * pass k-way heap merge when the result is read, so each row is written to
+ * disk only once as long as the number of runs does not exceed the merge fan
+ * in.
+ *
+ * The sort key values are evaluated in the calling thread, since they might be
+ * computed by the script engine. The worker threads only compare the
+ * evaluated keys and serialize the rows.
+ */
+class ParallelDiskSortExport extends DiskDataExport
+{
+	private static final int MIN_ROWS_OF_RUN = 2;
+
+	private static AtomicInteger threadCount = new AtomicInteger( 0 );
+
+	private int parallelism;
+	private int mergeFanIn;
+	private int readAheadSize;
+	private int rowsOfRun;
+
+	private SortKeyComparator comparator;
+	private MergeTempFileUtil tempFileUtil;
+
+	private ExecutorService executor;
+
+	// the runs which are being sorted, in fetching order
+	private List<Future<SortedRun>> pendingRuns;
+
+	// the runs which have been written, in fetching order
+	private List<SortedRun> sortedRuns;
+
+	private KeyedRow[] runBuffer;
+	private int runBufferPos;
+
+	// the goal iterator
+	private IRowIterator goalRowIterator;
+
+	private static Logger logger = Logger.getLogger( ParallelDiskSortExport.class.getName( ) );
+
+	/**
+	 * @param infoMap
+	 * @param comparator
+	 * @return true if the parallel sort is enabled and can be used with the
+	 *         comparator
+	 */
+	static boolean isApplicable( Map infoMap, Comparator comparator )
+	{
+		return getIntInfo( infoMap, "sortParallelism", 1 ) > 1
+				&& comparator instanceof SortKeyComparator
+				&& ( (SortKeyComparator) comparator ).isKeyComparisonThreadSafe( );
+	}
+
+	/**
+	 * @param infoMap
+	 * @param comparator
+	 * @param resultObjectUtil
+	 */
+	ParallelDiskSortExport( Map infoMap, SortKeyComparator comparator,
+			ResultObjectUtil resultObjectUtil )
+	{
+		int dataCountOfUnit = getIntInfo( infoMap, "dataCountOfUnit", 0 );
+		this.parallelism = getIntInfo( infoMap, "sortParallelism", 1 );
+		this.mergeFanIn = getIntInfo( infoMap, "mergeFanIn", 2 );
+		this.readAheadSize = getIntInfo( infoMap, "readAheadSize", 0 );
+
+		// the rows which are being sorted and the rows which are being
+		// fetched share the memory of one unit
+		this.rowsOfRun = Math.max( MIN_ROWS_OF_RUN, dataCountOfUnit
+				/ ( parallelism + 1 ) );
+
+		this.comparator = comparator;
+		this.tempFileUtil = new MergeTempFileUtil( (String) ( infoMap.get( "tempDir" ) ),
+				resultObjectUtil );
+		this.pendingRuns = new ArrayList<Future<SortedRun>>( );
+		this.sortedRuns = new ArrayList<SortedRun>( );
+		this.runBuffer = new KeyedRow[rowsOfRun];
+		this.runBufferPos = 0;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.DiskDataExport#exportStartDataToDisk(org.eclipse.birt.data.engine.odi.IResultObject[])
+	 */
+	public void exportStartDataToDisk( IResultObject[] resultObjects )
+			throws IOException, DataException
+	{
+		try
+		{
+			for ( int i = 0; i < resultObjects.length; i++ )
+			{
+				addNewRow( resultObjects[i] );
+			}
+		}
+		catch ( IOException e )
+		{
+			abort( );
+			throw e;
+		}
+		catch ( DataException e )
+		{
+			abort( );
+			throw e;
+		}
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.DiskDataExport#exportRestDataToDisk(org.eclipse.birt.data.engine.odi.IResultObject,
+	 *      org.eclipse.birt.data.engine.executor.cache.IRowResultSet, int)
+	 */
+	public int exportRestDataToDisk( IResultObject resultObject,
+			IRowResultSet rs, int maxRows ) throws DataException, IOException
+	{
+		long startTime = System.currentTimeMillis( );
+		int dataCountOfRest;
+		try
+		{
+			dataCountOfRest = innerExportRestData( resultObject, rs, 0, maxRows );
+			submitRun( );
+			while ( !pendingRuns.isEmpty( ) )
+			{
+				collectOldestRun( );
+			}
+			shutdownExecutor( );
+
+			logger.fine( sortedRuns.size( )
+					+ " sorted runs are produced in "
+					+ ( System.currentTimeMillis( ) - startTime ) + " ms" );
+
+			goalRowIterator = mergeRuns( );
+		}
+		catch ( IOException e )
+		{
+			abort( );
+			throw e;
+		}
+		catch ( DataException e )
+		{
+			abort( );
+			throw e;
+		}
+		return dataCountOfRest;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.DiskDataExport#innerExportRestData(org.eclipse.birt.data.engine.odi.IResultObject,
+	 *      org.eclipse.birt.data.engine.executor.cache.IRowResultSet, int,
+	 *      int)
+	 */
+	protected int innerExportRestData( IResultObject resultObject,
+			IRowResultSet rs, int dataCountOfUnit, int maxRows )
+			throws DataException, IOException
+	{
+		addNewRow( resultObject );
+
+		int columnCount = rs.getMetaData( ).getFieldCount( );
+		int currDataCount = 1;
+		IResultObject odaObject = null;
+
+		while ( ( odaObject = rs.next( ) ) != null )
+		{
+			if ( maxRows > 0 && currDataCount > maxRows )
+				throw new DataException( ResourceConstants.EXCEED_MAX_DATA_OBJECT_ROWS );
+			if ( session.getStopSign( ).isStopped( ) )
+				return 0;
+			Object[] ob = new Object[columnCount];
+			for ( int i = 0; i < columnCount; i++ )
+				ob[i] = odaObject.getFieldValue( i + 1 );
+
+			addNewRow( resultObjectUtil.newResultObject( ob ) );
+			currDataCount++;
+		}
+		return currDataCount;
+	}
+
+	/**
+	 * Evaluate the sort keys of the row and put it into current run. The run
+	 * is handed over to a worker when it is full.
+	 *
+	 * @param resultObject
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void addNewRow( IResultObject resultObject ) throws IOException,
+			DataException
+	{
+		runBuffer[runBufferPos++] = new KeyedRow( resultObject,
+				comparator.getSortKeys( resultObject ) );
+		if ( runBufferPos == rowsOfRun )
+		{
+			submitRun( );
+		}
+	}
+
+	/**
+	 * Hand over the rows of current run to a worker, which sorts them and
+	 * writes them to a temp file. At most parallelism runs are in process at
+	 * one time, otherwise the calling thread waits for the oldest one.
+	 *
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void submitRun( ) throws IOException, DataException
+	{
+		if ( runBufferPos == 0 )
+			return;
+
+		while ( pendingRuns.size( ) >= parallelism )
+		{
+			collectOldestRun( );
+		}
+
+		SortedRun run = new SortedRun( tempFileUtil.newTempFilePath( ),
+				resultObjectUtil,
+				readAheadSize );
+		pendingRuns.add( getExecutor( ).submit( new RunWriter( run,
+				runBuffer,
+				runBufferPos,
+				comparator ) ) );
+
+		runBuffer = new KeyedRow[rowsOfRun];
+		runBufferPos = 0;
+	}
+
+	/**
+	 * Wait for the oldest pending run to be written.
+	 *
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void collectOldestRun( ) throws IOException, DataException
+	{
+		Future<SortedRun> future = pendingRuns.remove( 0 );
+		try
+		{
+			sortedRuns.add( future.get( ) );
+		}
+		catch ( InterruptedException e )
+		{
+			Thread.currentThread( ).interrupt( );
+			throw new DataException( ResourceConstants.WRITE_TEMPFILE_ERROR, e );
+		}
+		catch ( ExecutionException e )
+		{
+			Throwable cause = e.getCause( );
+			if ( cause instanceof IOException )
+				throw (IOException) cause;
+			if ( cause instanceof DataException )
+				throw (DataException) cause;
+			if ( cause instanceof RuntimeException )
+				throw (RuntimeException) cause;
+			throw new DataException( ResourceConstants.WRITE_TEMPFILE_ERROR,
+					cause );
+		}
+	}
+
+	/**
+	 * Reduce the number of sorted runs to no more than merge fan in, and
+	 * return the k-way merge iterator on the rest runs.
+	 *
+	 * @return
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private IRowIterator mergeRuns( ) throws IOException, DataException
+	{
+		List<SortedRun> runs = sortedRuns;
+		while ( runs.size( ) > mergeFanIn )
+		{
+			tempFileUtil.newMergeLevel( );
+			List<SortedRun> mergedRuns = new ArrayList<SortedRun>( );
+			for ( int start = 0; start < runs.size( ); start += mergeFanIn )
+			{
+				List<SortedRun> group = runs.subList( start,
+						Math.min( start + mergeFanIn, runs.size( ) ) );
+				SortedRun target = new SortedRun( tempFileUtil.newTempFilePath( ),
+						resultObjectUtil,
+						readAheadSize );
+				IRowIterator source = newMergeIterator( group );
+				target.write( source );
+				source.close( );
+				mergedRuns.add( target );
+				if ( session.getStopSign( ).isStopped( ) )
+					break;
+			}
+			runs = mergedRuns;
+		}
+		sortedRuns = runs;
+		return newMergeIterator( runs );
+	}
+
+	/**
+	 * @param runs
+	 * @return
+	 */
+	private IRowIterator newMergeIterator( List<SortedRun> runs )
+	{
+		return new HeapMergeRowIterator( runs.toArray( new IRowIterator[runs.size( )] ),
+				comparator );
+	}
+
+	/**
+	 * @return the executor of this sort, which is created lazily
+	 */
+	private ExecutorService getExecutor( )
+	{
+		if ( executor == null )
+		{
+			executor = Executors.newFixedThreadPool( parallelism,
+					new ThreadFactory( ) {
+
+						public Thread newThread( Runnable r )
+						{
+							Thread thread = new Thread( r, "BIRT-DiskSort-"
+									+ threadCount.incrementAndGet( ) );
+							thread.setDaemon( true );
+							return thread;
+						}
+					} );
+		}
+		return executor;
+	}
+
+	/**
+	 * Shutdown the executor since all the runs have been written.
+	 */
+	private void shutdownExecutor( )
+	{
+		if ( executor != null )
+		{
+			executor.shutdown( );
+			executor = null;
+		}
+	}
+
+	/**
+	 * Stop the workers and release the written runs after failure.
+	 */
+	private void abort( )
+	{
+		for ( int i = 0; i < pendingRuns.size( ); i++ )
+		{
+			pendingRuns.get( i ).cancel( true );
+		}
+		pendingRuns.clear( );
+		if ( executor != null )
+		{
+			executor.shutdownNow( );
+			executor = null;
+		}
+		for ( int i = 0; i < sortedRuns.size( ); i++ )
+		{
+			sortedRuns.get( i ).close( );
+		}
+		sortedRuns.clear( );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.DiskDataExport#outputResultObjects(org.eclipse.birt.data.engine.odi.IResultObject[],
+	 *      int)
+	 */
+	protected void outputResultObjects( IResultObject[] resultObjects,
+			int indexOfUnit ) throws IOException
+	{
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.DiskDataExport#getRowIterator()
+	 */
+	public IRowIterator getRowIterator( )
+	{
+		return goalRowIterator;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.DiskDataExport#close()
+	 */
+	public void close( )
+	{
+		abort( );
+		tempFileUtil.clearTempDir( );
+	}
+
+	/**
+	 * @param infoMap
+	 * @param key
+	 * @param defaultValue
+	 * @return
+	 */
+	private static int getIntInfo( Map infoMap, String key, int defaultValue )
+	{
+		Object value = infoMap.get( key );
+		if ( value == null )
+			return defaultValue;
+		try
+		{
+			return Integer.parseInt( value.toString( ) );
+		}
+		catch ( NumberFormatException e )
+		{
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * A fetched row with its evaluated sort keys.
+	 */
+	private static class KeyedRow
+	{
+		IResultObject row;
+		Object[] keys;
+
+		KeyedRow( IResultObject row, Object[] keys )
+		{
+			this.row = row;
+			this.keys = keys;
+		}
+	}
+
+	/**
+	 * The task which sorts one run and writes it to disk.
+	 */
+	private static class RunWriter implements Callable<SortedRun>
+	{
+		private SortedRun run;
+		private KeyedRow[] rows;
+		private int count;
+		private SortKeyComparator comparator;
+
+		RunWriter( SortedRun run, KeyedRow[] rows, int count,
+				SortKeyComparator comparator )
+		{
+			this.run = run;
+			this.rows = rows;
+			this.count = count;
+			this.comparator = comparator;
+		}
+
+		public SortedRun call( ) throws IOException, DataException
+		{
+			// Arrays.sort on objects is stable, so rows with equal keys keep
+			// the fetching order
+			Arrays.sort( rows, 0, count, new Comparator<KeyedRow>( ) {
+
+				public int compare( KeyedRow row1, KeyedRow row2 )
+				{
+					return comparator.compareSortKeys( row1.keys, row2.keys );
+				}
+			} );
+
+			IResultObject[] resultObjects = new IResultObject[count];
+			for ( int i = 0; i < count; i++ )
+			{
+				resultObjects[i] = rows[i].row;
+				rows[i] = null;
+			}
+			run.write( resultObjects, count );
+			return run;
+		}
+	}
+}
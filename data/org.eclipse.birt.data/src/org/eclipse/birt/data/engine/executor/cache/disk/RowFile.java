@@ -169,9 +169,16 @@ class RowFile implements IRowIterator, ICloseListener
 
 	/**
 	 * End write operation. This mothed must be called before fetching row object.
+	 * 
+	 * @throws IOException
+	 * @throws DataException
 	 */
-	void endWrite( )
+	void endWrite( ) throws IOException, DataException
 	{
+		if ( dfw != null )
+		{
+			dfw.flush( );
+		}
 		closeWriter();
 	}
 	
@@ -201,6 +201,7 @@ class SortDataProvider
 				dfw.setWriteFile( outputFile );
 
 			dfw.write( resultObjects, count );
+			dfw.flush( );
 			dfw.close( );
 		}
 		else
@@ -209,6 +210,7 @@ class SortDataProvider
 				dfw.setWriteFile( goalFile );
 
 			dfw.write( resultObjects, count );
+			dfw.flush( );
 		}
 	}
 
@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache.disk;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.core.security.FileSecurity;
+import org.eclipse.birt.data.engine.executor.cache.ResultObjectUtil;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * A file of sorted rows which is produced by ParallelDiskSortExport. Unlike
+ * RowFile, it is written once by exactly one thread and then only read, and
+ * the reading goes through a read ahead buffer of configurable size.
+ */
+class SortedRun implements IRowIterator
+{
+	private File file;
+	private ResultObjectUtil resultObjectUtil;
+	private int readAheadSize;
+
+	private int rowCount;
+	private int readPos;
+
+	private DataFileReader dfr;
+
+	/**
+	 * @param file
+	 * @param resultObjectUtil
+	 * @param readAheadSize
+	 *            read buffer size in bytes
+	 */
+	SortedRun( File file, ResultObjectUtil resultObjectUtil, int readAheadSize )
+	{
+		assert file != null;
+
+		this.file = file;
+		this.resultObjectUtil = resultObjectUtil;
+		this.readAheadSize = readAheadSize;
+	}
+
+	/**
+	 * Write all the rows to the run file. This method is called once before
+	 * any reading operation.
+	 *
+	 * @param resultObjects
+	 * @param count
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	void write( IResultObject[] resultObjects, int count ) throws IOException,
+			DataException
+	{
+		DataFileWriter dfw = DataFileWriter.newInstance( file, resultObjectUtil );
+		try
+		{
+			dfw.write( resultObjects, count );
+			dfw.flush( );
+		}
+		finally
+		{
+			dfw.close( );
+		}
+		rowCount = count;
+	}
+
+	/**
+	 * Write all the rows of the source iterator to the run file. This method
+	 * is called once before any reading operation.
+	 *
+	 * @param source
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	void write( IRowIterator source ) throws IOException, DataException
+	{
+		DataFileWriter dfw = DataFileWriter.newInstance( file, resultObjectUtil );
+		IResultObject[] rowHolder = new IResultObject[1];
+		int count = 0;
+		try
+		{
+			while ( ( rowHolder[0] = source.fetch( ) ) != null )
+			{
+				dfw.write( rowHolder, 1 );
+				count++;
+			}
+			dfw.flush( );
+		}
+		finally
+		{
+			dfw.close( );
+		}
+		rowCount = count;
+	}
+
+	/**
+	 * @return the number of rows in this run
+	 */
+	int getRowCount( )
+	{
+		return rowCount;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.IRowIterator#reset()
+	 */
+	public void reset( )
+	{
+		closeReader( );
+		readPos = 0;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.IRowIterator#fetch()
+	 */
+	public IResultObject fetch( ) throws IOException, DataException
+	{
+		if ( readPos >= rowCount )
+		{
+			return null;
+		}
+		if ( dfr == null )
+		{
+			dfr = DataFileReader.newInstance( file,
+					resultObjectUtil,
+					readAheadSize );
+		}
+		readPos++;
+		return ( dfr.read( 1 ) )[0];
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.IRowIterator#close()
+	 */
+	public void close( )
+	{
+		closeReader( );
+		if ( file != null )
+		{
+			FileSecurity.fileDelete( file );
+			file = null;
+		}
+	}
+
+	/**
+	 * Close current reader object
+	 */
+	private void closeReader( )
+	{
+		if ( dfr != null )
+		{
+			dfr.close( );
+			dfr = null;
+		}
+	}
+}
@@ -278,11 +278,13 @@ class CacheUtilFactory
 		}
 	}
 	/**
-	 * Helper class to save result set to cache file.
+	 * Helper class to save result set to cache file. The rows are saved as a
+	 * new segment of the cache.
 	 *
 	 */
 	private static class IncreCacheSaveUtil implements ISaveUtil
 	{
+		private IncreDataSetCacheObject cacheObject;
 		private File file;
 		private File metaFile;
 		
@@ -296,7 +298,7 @@ class CacheUtilFactory
 		private DataEngineSession session;
 		public IncreCacheSaveUtil( IncreDataSetCacheObject cacheObject, IResultClass rs, DataEngineSession session )
 		{
-			this.file = cacheObject.getDataFile( );
+			this.cacheObject = cacheObject;
 			this.metaFile = cacheObject.getMetaFile( );
 			this.rsMeta = rs;
 			this.rowCount = 0;
@@ -317,8 +319,8 @@ class CacheUtilFactory
 				roUtil = ResultObjectUtil.newInstance( rsMeta, session );
 				try
 				{
-					bos = new BufferedOutputStream( FileSecurity.createFileOutputStream( file,
-							true ) );
+					file = cacheObject.newSegmentFile( );
+					bos = new BufferedOutputStream( FileSecurity.createFileOutputStream( file ) );
 				}
 				catch ( Exception e )
 				{
@@ -346,33 +348,11 @@ class CacheUtilFactory
 		{			
 			try
 			{
-				if ( bos != null )
-				{
-					bos.close( );
-				}
-				if ( FileSecurity.fileExist( metaFile ) )
+				synchronized ( cacheObject.getLock( ) )
 				{
-					FileInputStream fis1 = FileSecurity.createFileInputStream( metaFile );
-					BufferedInputStream bis1 = new BufferedInputStream( fis1 );
-					int oldCount = IOUtil.readInt( bis1 );
-					rowCount += oldCount;
-					bis1.close( );
-					fis1.close( );
+					save( );
 				}
-				FileOutputStream fos1 = FileSecurity.createFileOutputStream( metaFile );
-				BufferedOutputStream bos1 = new BufferedOutputStream( fos1 );
-
-				// save the count of data
-				IOUtil.writeInt( bos1, this.rowCount );
-				// save the meta data of result
-			
-				( (ResultClass) rsMeta ).doSave( bos1, populateDataSetRowMapping( rsMeta ), 0 );
-
-				bos1.close( );
-				fos1.close( );
-				
-				// save the current time as the timestamp
-				CacheUtil.saveCurrentTimestamp( this.tempDir );
+				cacheObject.compactSegmentsLater( );
 			}
 			catch ( IOException e )
 			{
@@ -380,6 +360,42 @@ class CacheUtilFactory
 						e );
 			}			
 		}
+		
+		/**
+		 * @throws IOException
+		 * @throws DataException
+		 */
+		private void save( ) throws IOException, DataException
+		{
+			if ( bos != null )
+			{
+				bos.close( );
+				cacheObject.addSegment( file );
+			}
+			if ( FileSecurity.fileExist( metaFile ) )
+			{
+				FileInputStream fis1 = FileSecurity.createFileInputStream( metaFile );
+				BufferedInputStream bis1 = new BufferedInputStream( fis1 );
+				int oldCount = IOUtil.readInt( bis1 );
+				rowCount += oldCount;
+				bis1.close( );
+				fis1.close( );
+			}
+			FileOutputStream fos1 = FileSecurity.createFileOutputStream( metaFile );
+			BufferedOutputStream bos1 = new BufferedOutputStream( fos1 );
+
+			// save the count of data
+			IOUtil.writeInt( bos1, this.rowCount );
+			// save the meta data of result
+		
+			( (ResultClass) rsMeta ).doSave( bos1, populateDataSetRowMapping( rsMeta ), 0 );
+
+			bos1.close( );
+			fos1.close( );
+			
+			// save the current time as the timestamp
+			CacheUtil.saveCurrentTimestamp( this.tempDir );
+		}
 	}
 	/**
 	 * Helper class to load result set from cache file. 
@@ -387,10 +403,9 @@ class CacheUtilFactory
 	 */
 	private static class IncreCacheLoadUtil implements ILoadUtil
 	{
-		private File file;
+		private IncreDataSetCacheObject cacheObject;
 		private File metaFile;
 		
-		private FileInputStream fis;
 		private BufferedInputStream bis;
 		
 		private ResultObjectUtil roUtil;
@@ -404,7 +419,7 @@ class CacheUtilFactory
 		public IncreCacheLoadUtil( IncreDataSetCacheObject cacheObject, DataEngineSession session )
 		{
 			assert cacheObject != null;
-			this.file = cacheObject.getDataFile( );
+			this.cacheObject = cacheObject;
 			this.metaFile = cacheObject.getMetaFile( );
 			this.rowCount = 0;
 			this.currIndex = -1;
@@ -466,8 +481,9 @@ class CacheUtilFactory
 				if ( rowCount > 0 )
 				{
 					roUtil = ResultObjectUtil.newInstance( rsClass, session );
-					fis = FileSecurity.createFileInputStream( file );
-					bis = new BufferedInputStream( fis );
+					// the segments are appended before the rows are counted,
+					// so they contain all the counted rows
+					bis = new BufferedInputStream( cacheObject.openSegments( ) );
 				}
 			}
 			catch ( FileNotFoundException e )
@@ -492,7 +508,6 @@ class CacheUtilFactory
 				try
 				{
 					bis.close( );
-					fis.close( );
 				}
 				catch ( IOException e )
 				{
@@ -271,9 +271,11 @@ public class DataSetToCache
 	{
 		if ( saveUtil != null )
 		{
-			getDataSetCacheManager( ).saveFinished( dataSetCachedObject );
+			// the cache files are complete before the data set is visible to
+			// other queries
 			saveUtil.close( );
 			saveUtil = null;
+			getDataSetCacheManager( ).saveFinished( dataSetCachedObject );
 		}
 	}
 
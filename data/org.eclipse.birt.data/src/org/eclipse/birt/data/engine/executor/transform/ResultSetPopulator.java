@@ -220,9 +220,23 @@ public class ResultSetPopulator
 	
 	public DataSetFromCache cacheDataSet( DataSetToCache dstc ) throws DataException
 	{
-		PassManager.populateDataSetResultSet( this, new OdiResultSetWrapper( dstc ) );
-		CachedResultSet itr = this.getResultIterator( );
-		dstc.saveDataSetResult( itr );
+		boolean saved = false;
+		try
+		{
+			PassManager.populateDataSetResultSet( this, new OdiResultSetWrapper( dstc ) );
+			CachedResultSet itr = this.getResultIterator( );
+			dstc.saveDataSetResult( itr );
+			saved = true;
+		}
+		finally
+		{
+			if ( !saved )
+			{
+				// the queries waiting for the data set do not wait for the
+				// timeout
+				session.getDataSetCacheManager( ).saveFailed( );
+			}
+		}
 		return new DataSetFromCache( session );
 	}
 
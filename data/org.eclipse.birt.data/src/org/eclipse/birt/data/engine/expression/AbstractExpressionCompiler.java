@@ -463,6 +463,9 @@ abstract class AbstractExpressionCompiler
 			CompiledExpression expr )
 	{
 		assert ( expr instanceof BytecodeExpression );
+		// the tree is transformed by the compiler, so compile it natively
+		// first
+		( (BytecodeExpression) expr ).setNativeExpression( NativeExpression.compile( tree ) );
 		CompilerEnvirons compilerEnv = getCompilerEnv( context );
 		Interpreter compiler = new Interpreter( );
 		Object compiledOb = compiler.compile( compilerEnv, tree, null, false );
@@ -24,6 +24,7 @@ import org.mozilla.javascript.Scriptable;
 public abstract class BytecodeExpression extends CompiledExpression
 {
 	private Script m_script;
+	private volatile NativeExpression m_nativeExpr;
 	  
 	protected static Logger logger = Logger.getLogger( BytecodeExpression.class.getName( ) );
 	/**
@@ -37,12 +38,46 @@ public abstract class BytecodeExpression extends CompiledExpression
     	m_script = script;
     }
 
+	/**
+	 * Sets the Java expression tree which evaluates the expression without
+	 * the script engine.
+	 * 
+	 * @param nativeExpr
+	 *            the native expression, null if it is not supported.
+	 */
+	void setNativeExpression( NativeExpression nativeExpr )
+	{
+		m_nativeExpr = nativeExpr;
+	}
+
+	/**
+	 * @return true if the expression is evaluated without the script engine.
+	 */
+	boolean isNative( )
+	{
+		return m_nativeExpr != null;
+	}
+
 	/**
 	 * Evaluates the compiled byte code
 	 */
 	public Object evaluate( ScriptContext context, Scriptable scope ) 
 		throws DataException
 	{
+		NativeExpression nativeExpr = m_nativeExpr;
+		if ( nativeExpr != null )
+		{
+			try
+			{
+				return nativeExpr.evaluate( scope );
+			}
+			catch ( NativeExpression.UnsupportedValueException e )
+			{
+				// the values are not supported, such as the dates, use the
+				// compiled script from now on
+				m_nativeExpr = null;
+			}
+		}
 	    try
 	    {
 	    	Object result = JavascriptEvalUtil.convertJavascriptValue(
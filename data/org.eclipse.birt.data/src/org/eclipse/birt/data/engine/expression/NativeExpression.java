@@ -0,0 +1,670 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.expression;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.core.script.JavascriptEvalUtil;
+import org.eclipse.birt.core.script.functionservice.IScriptFunction;
+import org.eclipse.birt.core.script.functionservice.IScriptFunctionContext;
+import org.eclipse.birt.core.script.functionservice.impl.FunctionProvider;
+import org.eclipse.birt.data.engine.api.DataEngine;
+import org.eclipse.birt.data.engine.core.security.PropertySecurity;
+import org.mozilla.javascript.Node;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.Token;
+import org.mozilla.javascript.ast.ScriptNode;
+
+/**
+ * A Java expression tree compiled from the script tree of a simple expression,
+ * which is evaluated without the script engine.
+ *
+ * The supported expressions are the constants, the columns of the "row" and
+ * "dataSetRow" objects, the arithmetic, string concatenation, comparison and
+ * logical operators, and the calls of the BirtComp and BirtMath functions.
+ * The operators follow the Javascript semantics by the Rhino runtime.
+ *
+ * An expression is evaluated by the script engine if it is not supported at
+ * compile time. If a value which is not a number, string, boolean or null is
+ * met at runtime, the evaluation fails with UnsupportedValueException, and
+ * the caller should evaluate it by the script engine.
+ */
+final class NativeExpression
+{
+
+	private static Logger logger = Logger.getLogger( NativeExpression.class.getName( ) );
+
+	private static final String[] ROW_NAMES = new String[]{
+			AbstractExpressionCompiler.STRING_ROW,
+			AbstractExpressionCompiler.STRING_DATASETROW
+	};
+
+	private static final String[] FUNCTION_CATEGORIES = new String[]{
+			"BirtComp", "BirtMath"
+	};
+
+	private static final String COMPARE_LOCALE = "compare_locale";
+
+	private static final boolean enabled = !"false".equalsIgnoreCase( PropertySecurity.getSystemProperty( DataEngine.NATIVE_EXPRESSION ) );
+
+	private static final UnsupportedValueException UNSUPPORTED_VALUE = new UnsupportedValueException( );
+
+	private final Operand root;
+
+	private NativeExpression( Operand root )
+	{
+		this.root = root;
+	}
+
+	/**
+	 * compile the script tree to a native expression.
+	 *
+	 * @param tree
+	 *            the script tree, it must be called before the tree is
+	 *            compiled by the script engine, which transforms the tree.
+	 * @return the native expression, null if the expression is not supported.
+	 */
+	static NativeExpression compile( ScriptNode tree )
+	{
+		if ( !enabled || tree.getFunctionCount( ) > 0 )
+			return null;
+		Node exprNode = tree.getFirstChild( );
+		if ( exprNode == null
+				|| exprNode != tree.getLastChild( )
+				|| exprNode.getType( ) != Token.EXPR_RESULT )
+			return null;
+		Node child = exprNode.getFirstChild( );
+		if ( child == null || child.getNext( ) != null )
+			return null;
+		Operand root = compileNode( child );
+		if ( root == null )
+			return null;
+		return new NativeExpression( root );
+	}
+
+	/**
+	 * evaluate the expression in the scope.
+	 *
+	 * @param scope
+	 *            the scope which defines the row objects.
+	 * @return the value of the expression
+	 * @throws UnsupportedValueException
+	 *             the expression can't be evaluated natively, it must be
+	 *             evaluated by the script engine.
+	 */
+	Object evaluate( Scriptable scope ) throws UnsupportedValueException
+	{
+		try
+		{
+			return root.evaluate( new Frame( scope ) );
+		}
+		catch ( RuntimeException ex )
+		{
+			// let the script engine report the error
+			logger.log( Level.FINE, ex.getMessage( ), ex );
+			throw UNSUPPORTED_VALUE;
+		}
+	}
+
+	private static Operand compileNode( Node node )
+	{
+		switch ( node.getType( ) )
+		{
+			case Token.NUMBER :
+				return new Constant( new Double( node.getDouble( ) ) );
+			case Token.STRING :
+				return new Constant( node.getString( ) );
+			case Token.NULL :
+				return new Constant( null );
+			case Token.TRUE :
+				return new Constant( Boolean.TRUE );
+			case Token.FALSE :
+				return new Constant( Boolean.FALSE );
+			case Token.GETPROP :
+			case Token.GETELEM :
+				return compileColumn( node );
+			case Token.ADD :
+			case Token.SUB :
+			case Token.MUL :
+			case Token.DIV :
+			case Token.MOD :
+			case Token.EQ :
+			case Token.NE :
+			case Token.SHEQ :
+			case Token.SHNE :
+			case Token.LT :
+			case Token.LE :
+			case Token.GT :
+			case Token.GE :
+			case Token.AND :
+			case Token.OR :
+			{
+				Node left = node.getFirstChild( );
+				if ( left == null || left.getNext( ) != node.getLastChild( ) )
+					return null;
+				Operand leftOperand = compileNode( left );
+				Operand rightOperand = compileNode( node.getLastChild( ) );
+				if ( leftOperand == null || rightOperand == null )
+					return null;
+				return new Binary( node.getType( ), leftOperand, rightOperand );
+			}
+			case Token.NOT :
+			case Token.NEG :
+			case Token.POS :
+			{
+				Node child = node.getFirstChild( );
+				if ( child == null || child.getNext( ) != null )
+					return null;
+				Operand operand = compileNode( child );
+				if ( operand == null )
+					return null;
+				return new Unary( node.getType( ), operand );
+			}
+			case Token.HOOK :
+			{
+				Node test = node.getFirstChild( );
+				if ( test == null
+						|| test.getNext( ) == null
+						|| test.getNext( ).getNext( ) != node.getLastChild( ) )
+					return null;
+				Operand testOperand = compileNode( test );
+				Operand trueOperand = compileNode( test.getNext( ) );
+				Operand falseOperand = compileNode( node.getLastChild( ) );
+				if ( testOperand == null
+						|| trueOperand == null || falseOperand == null )
+					return null;
+				return new Hook( testOperand, trueOperand, falseOperand );
+			}
+			case Token.CALL :
+				return compileCall( node );
+		}
+		return null;
+	}
+
+	/**
+	 * compile row["name"], row.name and row[index]
+	 */
+	private static Operand compileColumn( Node node )
+	{
+		Node rowNode = node.getFirstChild( );
+		Node columnNode = node.getLastChild( );
+		if ( rowNode.getType( ) != Token.NAME || rowNode.getNext( ) != columnNode )
+			return null;
+		int row = getRowIndex( rowNode.getString( ) );
+		if ( row == -1 )
+			return null;
+		if ( columnNode.getType( ) == Token.STRING )
+		{
+			String name = columnNode.getString( );
+			if ( node.getType( ) == Token.GETELEM )
+			{
+				// row["1"] is the same as row[1]
+				int index = getArrayIndex( name );
+				if ( index != -1 )
+					return new Column( row, null, index );
+			}
+			return new Column( row, name, -1 );
+		}
+		if ( columnNode.getType( ) == Token.NUMBER
+				&& node.getType( ) == Token.GETELEM )
+		{
+			double value = columnNode.getDouble( );
+			int index = (int) value;
+			if ( index == value && index >= 0 )
+				return new Column( row, null, index );
+		}
+		return null;
+	}
+
+	/**
+	 * compile BirtComp.xxx( ... ) and BirtMath.xxx( ... )
+	 */
+	private static Operand compileCall( Node node )
+	{
+		Node functionNode = node.getFirstChild( );
+		if ( functionNode.getType( ) != Token.GETPROP )
+			return null;
+		Node categoryNode = functionNode.getFirstChild( );
+		Node nameNode = functionNode.getLastChild( );
+		if ( categoryNode.getType( ) != Token.NAME
+				|| nameNode.getType( ) != Token.STRING )
+			return null;
+		IScriptFunction function = getFunction( categoryNode.getString( ),
+				nameNode.getString( ) );
+		if ( function == null )
+			return null;
+		List<Operand> arguments = new ArrayList<Operand>( );
+		Node argument = functionNode.getNext( );
+		while ( argument != null )
+		{
+			Operand operand = compileNode( argument );
+			if ( operand == null )
+				return null;
+			arguments.add( operand );
+			argument = argument.getNext( );
+		}
+		return new Call( function,
+				arguments.toArray( new Operand[arguments.size( )] ) );
+	}
+
+	private static IScriptFunction getFunction( String category, String name )
+	{
+		for ( int i = 0; i < FUNCTION_CATEGORIES.length; i++ )
+		{
+			if ( !FUNCTION_CATEGORIES[i].equals( category ) )
+				continue;
+			try
+			{
+				IScriptFunction[] functions = FunctionProvider.getFunctions( category );
+				for ( int j = 0; j < functions.length; j++ )
+				{
+					if ( name.equals( functions[j].getName( ) ) )
+						return functions[j];
+				}
+			}
+			catch ( BirtException ex )
+			{
+				logger.log( Level.FINE, ex.getMessage( ), ex );
+			}
+		}
+		return null;
+	}
+
+	private static int getRowIndex( String name )
+	{
+		for ( int i = 0; i < ROW_NAMES.length; i++ )
+		{
+			if ( ROW_NAMES[i].equals( name ) )
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the array index represented by the string, -1 if it is not an
+	 *         array index.
+	 */
+	private static int getArrayIndex( String name )
+	{
+		int length = name.length( );
+		if ( length == 0 || length > 10 )
+			return -1;
+		if ( length > 1 && name.charAt( 0 ) == '0' )
+			return -1;
+		long index = 0;
+		for ( int i = 0; i < length; i++ )
+		{
+			char c = name.charAt( i );
+			if ( c < '0' || c > '9' )
+				return -1;
+			index = index * 10 + ( c - '0' );
+		}
+		return index > Integer.MAX_VALUE ? -1 : (int) index;
+	}
+
+	/**
+	 * @return the value if it is a number, string, boolean or null
+	 * @throws UnsupportedValueException
+	 *             the value is of other types
+	 */
+	private static Object toPrimitive( Object value )
+			throws UnsupportedValueException
+	{
+		if ( value == null
+				|| value instanceof Number || value instanceof String
+				|| value instanceof Boolean )
+			return value;
+		if ( value instanceof CharSequence )
+			return value.toString( );
+		throw UNSUPPORTED_VALUE;
+	}
+
+	/**
+	 * find the variable from the scope chain like the script engine.
+	 */
+	private static Object getVariable( Scriptable scope, String name )
+	{
+		while ( scope != null )
+		{
+			Object value = ScriptableObject.getProperty( scope, name );
+			if ( value != Scriptable.NOT_FOUND )
+				return value;
+			scope = scope.getParentScope( );
+		}
+		return Scriptable.NOT_FOUND;
+	}
+
+	static class UnsupportedValueException extends Exception
+	{
+
+		private static final long serialVersionUID = 1L;
+
+		public Throwable fillInStackTrace( )
+		{
+			// it is thrown as a signal, so the stack trace is useless
+			return this;
+		}
+	}
+
+	/**
+	 * the state of one evaluation
+	 */
+	private static class Frame
+	{
+
+		final Scriptable scope;
+		final Scriptable[] rows = new Scriptable[ROW_NAMES.length];
+		IScriptFunctionContext functionContext;
+		boolean functionContextResolved;
+
+		Frame( Scriptable scope )
+		{
+			this.scope = scope;
+		}
+
+		Scriptable getRow( int index ) throws UnsupportedValueException
+		{
+			Scriptable row = rows[index];
+			if ( row == null )
+			{
+				Object value = getVariable( scope, ROW_NAMES[index] );
+				if ( !( value instanceof Scriptable ) )
+					throw UNSUPPORTED_VALUE;
+				row = (Scriptable) value;
+				rows[index] = row;
+			}
+			return row;
+		}
+
+		/**
+		 * @return the function context like the one passed to the functions
+		 *         by the script engine.
+		 */
+		IScriptFunctionContext getFunctionContext( )
+		{
+			if ( !functionContextResolved )
+			{
+				functionContextResolved = true;
+				Object value = getVariable( scope,
+						IScriptFunctionContext.FUNCTION_BEAN_NAME );
+				if ( value != Scriptable.NOT_FOUND )
+				{
+					Object context = JavascriptEvalUtil.convertJavascriptValue( value );
+					if ( context instanceof IScriptFunctionContext )
+						functionContext = new ScopeFunctionContext( scope,
+								(IScriptFunctionContext) context );
+				}
+			}
+			return functionContext;
+		}
+	}
+
+	private static class ScopeFunctionContext implements IScriptFunctionContext
+	{
+
+		private final Scriptable scope;
+		private final IScriptFunctionContext context;
+
+		ScopeFunctionContext( Scriptable scope, IScriptFunctionContext context )
+		{
+			this.scope = scope;
+			this.context = context;
+		}
+
+		public Object findProperty( String name )
+		{
+			if ( COMPARE_LOCALE.equals( name ) )
+			{
+				// the collator is defined in the prototype of the scopes
+				Scriptable current = scope;
+				while ( current != null )
+				{
+					Scriptable prototype = current.getPrototype( );
+					if ( prototype != null )
+					{
+						Object value = prototype.get( COMPARE_LOCALE, prototype );
+						if ( value != Scriptable.NOT_FOUND )
+							return JavascriptEvalUtil.convertJavascriptValue( value );
+					}
+					current = current.getParentScope( );
+				}
+				return null;
+			}
+			Object value = context.findProperty( name );
+			if ( value == null )
+			{
+				Scriptable current = scope;
+				while ( current != null )
+				{
+					value = current.get( name, scope );
+					if ( value != Scriptable.NOT_FOUND )
+						return value;
+					current = current.getParentScope( );
+				}
+			}
+			return value;
+		}
+	}
+
+	private static abstract class Operand
+	{
+
+		abstract Object evaluate( Frame frame )
+				throws UnsupportedValueException;
+	}
+
+	private static class Constant extends Operand
+	{
+
+		private final Object value;
+
+		Constant( Object value )
+		{
+			this.value = value;
+		}
+
+		Object evaluate( Frame frame )
+		{
+			return value;
+		}
+	}
+
+	private static class Column extends Operand
+	{
+
+		private final int row;
+		private final String name;
+		private final int index;
+
+		Column( int row, String name, int index )
+		{
+			this.row = row;
+			this.name = name;
+			this.index = index;
+		}
+
+		Object evaluate( Frame frame ) throws UnsupportedValueException
+		{
+			Scriptable rowObject = frame.getRow( row );
+			Object value = name != null
+					? ScriptableObject.getProperty( rowObject, name )
+					: ScriptableObject.getProperty( rowObject, index );
+			// the dates and undefined values are handled by the script
+			// engine
+			return toPrimitive( value );
+		}
+	}
+
+	private static class Unary extends Operand
+	{
+
+		private final int operator;
+		private final Operand operand;
+
+		Unary( int operator, Operand operand )
+		{
+			this.operator = operator;
+			this.operand = operand;
+		}
+
+		Object evaluate( Frame frame ) throws UnsupportedValueException
+		{
+			Object value = toPrimitive( operand.evaluate( frame ) );
+			switch ( operator )
+			{
+				case Token.NOT :
+					return Boolean.valueOf( !ScriptRuntime.toBoolean( value ) );
+				case Token.NEG :
+					return new Double( -ScriptRuntime.toNumber( value ) );
+				default :
+					return new Double( ScriptRuntime.toNumber( value ) );
+			}
+		}
+	}
+
+	private static class Binary extends Operand
+	{
+
+		private final int operator;
+		private final Operand left;
+		private final Operand right;
+
+		Binary( int operator, Operand left, Operand right )
+		{
+			this.operator = operator;
+			this.left = left;
+			this.right = right;
+		}
+
+		Object evaluate( Frame frame ) throws UnsupportedValueException
+		{
+			Object leftValue = toPrimitive( left.evaluate( frame ) );
+			switch ( operator )
+			{
+				case Token.AND :
+					return ScriptRuntime.toBoolean( leftValue )
+							? toPrimitive( right.evaluate( frame ) )
+							: leftValue;
+				case Token.OR :
+					return ScriptRuntime.toBoolean( leftValue )
+							? leftValue : toPrimitive( right.evaluate( frame ) );
+			}
+			Object rightValue = toPrimitive( right.evaluate( frame ) );
+			switch ( operator )
+			{
+				case Token.ADD :
+					if ( leftValue instanceof String
+							|| rightValue instanceof String )
+						return ScriptRuntime.toString( leftValue )
+								.concat( ScriptRuntime.toString( rightValue ) );
+					return new Double( ScriptRuntime.toNumber( leftValue )
+							+ ScriptRuntime.toNumber( rightValue ) );
+				case Token.SUB :
+					return new Double( ScriptRuntime.toNumber( leftValue )
+							- ScriptRuntime.toNumber( rightValue ) );
+				case Token.MUL :
+					return new Double( ScriptRuntime.toNumber( leftValue )
+							* ScriptRuntime.toNumber( rightValue ) );
+				case Token.DIV :
+					return new Double( ScriptRuntime.toNumber( leftValue )
+							/ ScriptRuntime.toNumber( rightValue ) );
+				case Token.MOD :
+					return new Double( ScriptRuntime.toNumber( leftValue )
+							% ScriptRuntime.toNumber( rightValue ) );
+				case Token.EQ :
+					return Boolean.valueOf( ScriptRuntime.eq( leftValue,
+							rightValue ) );
+				case Token.NE :
+					return Boolean.valueOf( !ScriptRuntime.eq( leftValue,
+							rightValue ) );
+				case Token.SHEQ :
+					return Boolean.valueOf( ScriptRuntime.shallowEq( leftValue,
+							rightValue ) );
+				case Token.SHNE :
+					return Boolean.valueOf( !ScriptRuntime.shallowEq( leftValue,
+							rightValue ) );
+				case Token.LT :
+					return Boolean.valueOf( ScriptRuntime.cmp_LT( leftValue,
+							rightValue ) );
+				case Token.LE :
+					return Boolean.valueOf( ScriptRuntime.cmp_LE( leftValue,
+							rightValue ) );
+				case Token.GT :
+					return Boolean.valueOf( ScriptRuntime.cmp_LT( rightValue,
+							leftValue ) );
+				default :
+					return Boolean.valueOf( ScriptRuntime.cmp_LE( rightValue,
+							leftValue ) );
+			}
+		}
+	}
+
+	private static class Hook extends Operand
+	{
+
+		private final Operand test;
+		private final Operand trueOperand;
+		private final Operand falseOperand;
+
+		Hook( Operand test, Operand trueOperand, Operand falseOperand )
+		{
+			this.test = test;
+			this.trueOperand = trueOperand;
+			this.falseOperand = falseOperand;
+		}
+
+		Object evaluate( Frame frame ) throws UnsupportedValueException
+		{
+			if ( ScriptRuntime.toBoolean( toPrimitive( test.evaluate( frame ) ) ) )
+				return trueOperand.evaluate( frame );
+			return falseOperand.evaluate( frame );
+		}
+	}
+
+	private static class Call extends Operand
+	{
+
+		private final IScriptFunction function;
+		private final Operand[] arguments;
+
+		Call( IScriptFunction function, Operand[] arguments )
+		{
+			this.function = function;
+			this.arguments = arguments;
+		}
+
+		Object evaluate( Frame frame ) throws UnsupportedValueException
+		{
+			Object[] values = new Object[arguments.length];
+			for ( int i = 0; i < arguments.length; i++ )
+			{
+				values[i] = arguments[i].evaluate( frame );
+			}
+			try
+			{
+				return function.execute( values, frame.getFunctionContext( ) );
+			}
+			catch ( BirtException ex )
+			{
+				// let the script engine report the error
+				logger.log( Level.FINE, ex.getMessage( ), ex );
+				throw UNSUPPORTED_VALUE;
+			}
+		}
+	}
+}
@@ -374,7 +374,14 @@ public class DataEngineSession
 	
 	public static ClassLoader getCurrentClassLoader( )
 	{
-		return classLoaderHolder.get( );
+		ClassLoader loader = classLoaderHolder.get( );
+		if ( loader == null )
+		{
+			// the queries executed in other threads, such as the prefetched
+			// queries of the report engine, use the thread's class loader
+			loader = Thread.currentThread( ).getContextClassLoader( );
+		}
+		return loader;
 	}
 	
 	/**
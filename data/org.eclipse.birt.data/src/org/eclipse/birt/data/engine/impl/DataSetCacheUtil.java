@@ -131,6 +131,47 @@ public class DataSetCacheUtil
 	}
 	
 	
+	/**
+	 * Returns the time to live of a data set in the JVM level cache, which is
+	 * set by DataEngine.DATA_SET_CACHE_TIME_TO_LIVE for the data set or for all
+	 * the data sets.
+	 * 
+	 * @param appContext
+	 * @param dataSetDesign
+	 * @return the milliseconds, 0 means the default time to live of the cache
+	 * @throws DataException
+	 */
+	public static long getDataSetCacheTimeToLive( Map appContext,
+			IBaseDataSetDesign dataSetDesign ) throws DataException
+	{
+		if ( appContext == null )
+		{
+			return 0;
+		}
+		Object option = null;
+		if ( dataSetDesign != null )
+		{
+			option = appContext.get( DataEngine.DATA_SET_CACHE_TIME_TO_LIVE
+					+ "." + dataSetDesign.getName( ) );
+		}
+		if ( option == null )
+		{
+			option = appContext.get( DataEngine.DATA_SET_CACHE_TIME_TO_LIVE );
+		}
+		if ( option == null )
+		{
+			return 0;
+		}
+		try
+		{
+			return Math.max( 0, Long.parseLong( option.toString( ).trim( ) ) * 1000 );
+		}
+		catch ( NumberFormatException e )
+		{
+			throw new DataException( e.getLocalizedMessage( ), e );
+		}
+	}
+	
 	/**
 	 * 
 	 * @param dir
@@ -11,7 +11,6 @@
 
 package org.eclipse.birt.data.engine.impl;
 
-import java.io.File;
 import java.util.Map;
 import java.util.logging.Level;
 
@@ -19,7 +18,6 @@ import org.eclipse.birt.data.engine.api.IBaseDataSetDesign;
 import org.eclipse.birt.data.engine.api.IPreparedQuery;
 import org.eclipse.birt.data.engine.api.IQueryDefinition;
 import org.eclipse.birt.data.engine.core.DataException;
-import org.eclipse.birt.data.engine.core.security.FileSecurity;
 import org.eclipse.birt.data.engine.executor.IncreDataSetCacheObject;
 import org.eclipse.birt.data.engine.executor.cache.CacheUtil;
 import org.eclipse.birt.data.engine.odi.IQuery;
@@ -85,15 +83,10 @@ public class PreparedIncreCacheDSQuery extends PreparedOdaDSQuery
 			}
 			catch ( DataException e )
 			{
-				File dataFile = new File( cacheDir,
-						IncreDataSetCacheObject.DATA_DATA );
-				if ( FileSecurity.fileExist( dataFile ) )
-				{
-					FileSecurity.fileDelete( dataFile );
-					logger.log( Level.WARNING,
-							"Incremental cache data file was deleted! path: "
-									+ FileSecurity.fileGetAbsolutePath( dataFile ) );
-				}
+				IncreDataSetCacheObject.deleteSegments( cacheDir );
+				logger.log( Level.WARNING,
+						"Incremental cache data files were deleted! path: "
+								+ cacheDir );
 				queryText = icDataSetDesign.getQueryText( );
 			}
 			String dataSetType = extDataSet.getExtensionID( );
@@ -418,49 +418,54 @@ public abstract class QueryExecutor implements IQueryExecutor
 		// dataSource = findDataSource( );
 		if ( dataSource != null )
 		{
-			// TODO: potential bug
-			if ( !dataSource.isOpen( ) )
+			// The queries prefetched by the report engine are executed
+			// concurrently, the data source is opened by one of them and
+			// shared by the others
+			synchronized ( dataSource )
 			{
-				// Data source is not open; create an Odi Data Source and open it
-				// We should run the beforeOpen script now to give it a chance to modify
-				// runtime data source properties
-				dataSourceBeforeOpen( );
+				if ( !dataSource.isOpen( ) )
+				{
+					// Data source is not open; create an Odi Data Source and open it
+					// We should run the beforeOpen script now to give it a chance to modify
+					// runtime data source properties
+					dataSourceBeforeOpen( );
 
-				// Let subclass create a new unopened odi data source
-				odiDataSource = createOdiDataSource( );
+					// Let subclass create a new unopened odi data source
+					odiDataSource = createOdiDataSource( );
 
-				// Passes thru the prepared query executor's 
-				// context to the new odi data source
-				odiDataSource.setAppContext( queryAppContext );
+					// Passes thru the prepared query executor's 
+					// context to the new odi data source
+					odiDataSource.setAppContext( queryAppContext );
 
-				// Open the odi data source
-				dataSource.openOdiDataSource( odiDataSource );
+					// Open the odi data source
+					dataSource.openOdiDataSource( odiDataSource );
 
-				dataSourceAfterOpen( );
-			}
-			else if ( session.getDataSetCacheManager( ).needsToCache( ) )
-			{
-				// bugzilla #439765, for cached dataset, we skip the scripting
-				// execution but still create a new odi data source
+					dataSourceAfterOpen( );
+				}
+				else if ( session.getDataSetCacheManager( ).needsToCache( ) )
+				{
+					// bugzilla #439765, for cached dataset, we skip the scripting
+					// execution but still create a new odi data source
 				
-				// Let subclass create a new unopened odi data source
-				odiDataSource = createOdiDataSource( );
+					// Let subclass create a new unopened odi data source
+					odiDataSource = createOdiDataSource( );
 
-				// Passes thru the prepared query executor's 
-				// context to the new odi data source
-				odiDataSource.setAppContext( queryAppContext );
+					// Passes thru the prepared query executor's 
+					// context to the new odi data source
+					odiDataSource.setAppContext( queryAppContext );
 
-				// Open the odi data source
-				dataSource.openOdiDataSource( odiDataSource );
-			}
-			else
-			{
-				// Use existing odiDataSource created for the data source runtime
-				odiDataSource = dataSource.getOdiDataSource( );
+					// Open the odi data source
+					dataSource.openOdiDataSource( odiDataSource );
+				}
+				else
+				{
+					// Use existing odiDataSource created for the data source runtime
+					odiDataSource = dataSource.getOdiDataSource( );
 
-				// Passes thru the prepared query executor's 
-				// current context to existing data source
-				odiDataSource.setAppContext( queryAppContext );
+					// Passes thru the prepared query executor's 
+					// current context to existing data source
+					odiDataSource.setAppContext( queryAppContext );
+				}
 			}
 		}
 	}
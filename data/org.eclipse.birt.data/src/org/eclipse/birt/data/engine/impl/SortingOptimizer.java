@@ -28,6 +28,7 @@ import org.eclipse.birt.data.engine.api.IGroupDefinition;
 import org.eclipse.birt.data.engine.api.IQueryExecutionHints;
 import org.eclipse.birt.data.engine.api.IScriptExpression;
 import org.eclipse.birt.data.engine.api.ISortDefinition;
+import org.eclipse.birt.data.engine.api.querydefn.SortDefinition;
 import org.eclipse.birt.data.engine.core.DataException;
 
 
@@ -44,16 +45,28 @@ public class SortingOptimizer
 		private IBaseDataSetDesign dataSet = null;
 
 		public SortingOptimizer ( IBaseDataSetDesign dataSet, IBaseQueryDefinition query )
+		{
+			this( dataSet, query, null );
+		}
+
+		/**
+		 * @param dataSet
+		 * @param query
+		 * @param sortHints
+		 *            the order of the data set rows, if it is null the sort
+		 *            hints of the data set are used
+		 */
+		public SortingOptimizer ( IBaseDataSetDesign dataSet, IBaseQueryDefinition query, List<ISortDefinition> sortHints )
 		{
 			if( dataSet== null || query == null )
 				return;
-			this.sortHints =  dataSet.getSortHints( );
+			this.sortHints = sortHints == null ? dataSet.getSortHints( ) : sortHints;
 			this.dataSet = dataSet;
 			this.baseQuery = query;
 			this.groups = query.getGroups( );
 			this.sortings = query.getSorts( );
 			this.queryExeHint = query.getQueryExecutionHints( );
-			hintsMatcher = new SortMatcher( sortHints );
+			hintsMatcher = new SortMatcher( this.sortHints );
 		}
 
 		public boolean acceptGroupSorting( )
@@ -97,6 +110,54 @@ public class SortingOptimizer
 			return optimizeGroupSorting;
 		}
 
+		/**
+		 * Returns the order of the data set rows which makes the group sorting
+		 * and the query sorting unnecessary, so that it can be required from
+		 * the data source.
+		 * 
+		 * @return the sort keys on the data set rows, or null if the groups
+		 *         can not be sorted by the data set rows
+		 */
+		public List<ISortDefinition> getGroupSortingSequence( )
+		{
+			if ( groups == null || groups.isEmpty( ) )
+				return null;
+
+			if ( queryExeHint != null && !queryExeHint.doSortBeforeGrouping( ) )
+				return null;
+
+			for ( Object o : groups )
+			{
+				IGroupDefinition g = (IGroupDefinition) o;
+				if ( g.getInterval( ) != IGroupDefinition.NO_INTERVAL )
+					return null;
+			}
+
+			List<?> sorts = groups;
+			if ( sortings != null && !sortings.isEmpty( ) )
+			{
+				GroupSortingCaculator calc = new GroupSortingCaculator( groups );
+				sorts = calc.getSortingSequence( sortings,
+						new SortDefnMatchInfo( ) );
+			}
+
+			MatchInfo info = new GroupDefnSortDefnMatchInfo( );
+			List<ISortDefinition> result = new ArrayList<ISortDefinition>( );
+			for ( Object o : sorts )
+			{
+				String key = info.getKey( o );
+				int direction = info.getDirection( o );
+				if ( key == null
+						|| ( direction != ISortDefinition.SORT_ASC && direction != ISortDefinition.SORT_DESC ) )
+					return null;
+				SortDefinition sort = new SortDefinition( );
+				sort.setExpression( key );
+				sort.setSortDirection( direction );
+				result.add( sort );
+			}
+			return result;
+		}
+
 		public boolean acceptQuerySorting() throws DataException
 		{
 			if ( sortHints == null || sortings == null )
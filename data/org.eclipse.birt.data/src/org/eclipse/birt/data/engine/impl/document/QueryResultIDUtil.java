@@ -40,7 +40,7 @@ public class QueryResultIDUtil
 	/**
 	 * @return
 	 */
-	public String nextID( )
+	public synchronized String nextID( )
 	{
 		return QURE_ID_PREFIX + ( currentId++ );
 	}
@@ -40,6 +40,7 @@ import org.eclipse.birt.data.engine.odi.IResultClass;
 import org.eclipse.datatools.connectivity.oda.IAdvancedQuery;
 import org.eclipse.datatools.connectivity.oda.IBlob;
 import org.eclipse.datatools.connectivity.oda.IClob;
+import org.eclipse.datatools.connectivity.oda.IDataSetMetaData;
 import org.eclipse.datatools.connectivity.oda.IParameterMetaData;
 import org.eclipse.datatools.connectivity.oda.IQuery;
 import org.eclipse.datatools.connectivity.oda.IResultSet;
@@ -1365,6 +1366,36 @@ public class PreparedStatement extends ExceptionHandler
         return m_supportsNamedResults.booleanValue();
 	}
 	
+	/**
+	 * Returns the sort mode supported by the underlying ODA driver, as
+	 * indicated in its implementation of
+	 * {@link org.eclipse.datatools.connectivity.oda.IDataSetMetaData#getSortMode()}.
+	 * @return one of the sort mode constants defined in <code>IDataSetMetaData</code>;
+	 * 			<code>IDataSetMetaData.sortModeNone</code> if the driver does not 
+	 * 			support sorting
+	 * @throws DataException
+	 */
+	public int getSortMode() throws DataException
+	{
+		final String methodName = "getSortMode"; //$NON-NLS-1$
+        getLogger().entering( sm_className, methodName );
+        
+        int sortMode = IDataSetMetaData.sortModeNone;
+        try
+        {
+        	sortMode = m_connection.getMetaData( m_dataSetType ).getSortMode();
+        }
+        catch( UnsupportedOperationException ex )
+        {
+			getLogger().logp( Level.INFO, sm_className, methodName, 
+							"Cannot get sort mode.", ex ); //$NON-NLS-1$
+        }
+        
+        getLogger().exiting( sm_className, methodName, Integer.valueOf( sortMode ) );
+        
+        return sortMode;
+	}
+	
 	/**
      * Indicates whether this statement supports input parameter(s).
      * This can only support input parameters if the underlying ODA driver has indicated so in its 
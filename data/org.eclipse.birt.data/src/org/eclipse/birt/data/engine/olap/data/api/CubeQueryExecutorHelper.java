@@ -27,8 +27,11 @@ import org.eclipse.birt.core.archive.FileArchiveReader;
 import org.eclipse.birt.core.archive.FileArchiveWriter;
 import org.eclipse.birt.core.archive.IDocArchiveReader;
 import org.eclipse.birt.core.archive.IDocArchiveWriter;
+import org.eclipse.birt.core.data.DataTypeUtil;
 import org.eclipse.birt.core.data.ExpressionUtil;
 import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.data.engine.api.DataEngine;
+import org.eclipse.birt.data.engine.api.DataEngineThreadLocal;
 import org.eclipse.birt.data.engine.api.IBaseExpression;
 import org.eclipse.birt.data.engine.api.IShutdownListener;
 import org.eclipse.birt.data.engine.cache.Constants;
@@ -53,6 +56,7 @@ import org.eclipse.birt.data.engine.olap.data.impl.aggregation.AggregationResult
 import org.eclipse.birt.data.engine.olap.data.impl.aggregation.AggregationResultRowComparator;
 import org.eclipse.birt.data.engine.olap.data.impl.aggregation.AggregationResultSet;
 import org.eclipse.birt.data.engine.olap.data.impl.aggregation.CubeDimensionReader;
+import org.eclipse.birt.data.engine.olap.data.impl.aggregation.CubeRollup;
 import org.eclipse.birt.data.engine.olap.data.impl.aggregation.DataSetFromOriginalCube;
 import org.eclipse.birt.data.engine.olap.data.impl.aggregation.IDataSet4Aggregation;
 import org.eclipse.birt.data.engine.olap.data.impl.aggregation.filter.AggrMeasureFilterHelper;
@@ -68,9 +72,12 @@ import org.eclipse.birt.data.engine.olap.data.impl.dimension.DimensionRow;
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.Level;
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.Member;
 import org.eclipse.birt.data.engine.olap.data.impl.facttable.FactTableRowIterator;
+import org.eclipse.birt.data.engine.olap.data.util.BufferedPrimitiveDiskArray;
 import org.eclipse.birt.data.engine.olap.data.util.BufferedStructureArray;
+import org.eclipse.birt.data.engine.olap.data.util.CubeBuildContext;
 import org.eclipse.birt.data.engine.olap.data.util.DiskSortedStack;
 import org.eclipse.birt.data.engine.olap.data.util.IDiskArray;
+import org.eclipse.birt.data.engine.olap.data.util.PositionBitmap;
 import org.eclipse.birt.data.engine.olap.impl.query.CubeQueryExecutor;
 import org.eclipse.birt.data.engine.olap.util.OlapExpressionCompiler;
 import org.eclipse.birt.data.engine.olap.util.filter.BaseDimensionFilterEvalHelper;
@@ -481,8 +488,14 @@ public class CubeQueryExecutorHelper implements ICubeQueryExcutorHelper
 			AggregationDefinition[] aggregations, StopSign stopSign )
 			throws IOException, BirtException
 	{
-		IAggregationResultSet[] resultSet = onePassExecute( aggregations,
-				stopSign );
+		IAggregationResultSet[] resultSet = executeOnRollups( aggregations );
+		if ( resultSet != null )
+		{
+			applyAggrSort( resultSet );
+			return resultSet;
+		}
+		
+		resultSet = onePassExecute( aggregations, stopSign );
 		
 		resultSet = processDimensionFiltersInAggrBindingFilter( resultSet );
 		
@@ -921,6 +934,56 @@ public class CubeQueryExecutorHelper implements ICubeQueryExcutorHelper
 		}
 	}
 
+	/**
+	 * Computes the aggregations from the pre-aggregated rollups of the cube,
+	 * without scanning the fact table. It is only done if there is no filter
+	 * and no computed measure, and every aggregation is covered by a rollup.
+	 * 
+	 * @param aggregations
+	 * @return null if the aggregations can not be computed from the rollups
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private IAggregationResultSet[] executeOnRollups(
+			AggregationDefinition[] aggregations ) throws IOException,
+			DataException
+	{
+		// the rollups are computed from all the rows of the fact table
+		if ( cube instanceof SecuredCube
+				|| computedMeasureHelper != null
+				|| !levelFilters.isEmpty( )
+				|| !simpleLevelFilters.isEmpty( )
+				|| !measureFilters.isEmpty( )
+				|| !dimJSFilterMap.isEmpty( )
+				|| !aggrFilterHelpers.isEmpty( )
+				|| !aggrMeasureFilters.isEmpty( )
+				|| ( cubePosFilters != null && !cubePosFilters.isEmpty( ) ) )
+		{
+			return null;
+		}
+		CubeRollup[] rollups = cube.getRollups( );
+		if ( rollups.length == 0 )
+		{
+			return null;
+		}
+		CubeRollup[] selected = new CubeRollup[aggregations.length];
+		for ( int i = 0; i < aggregations.length; i++ )
+		{
+			selected[i] = CubeRollup.find( rollups, aggregations[i] );
+			if ( selected[i] == null )
+			{
+				return null;
+			}
+		}
+		IAggregationResultSet[] resultSet = new IAggregationResultSet[aggregations.length];
+		for ( int i = 0; i < aggregations.length; i++ )
+		{
+			resultSet[i] = selected[i].aggregate( aggregations[i],
+					memoryCacheSize );
+		}
+		return resultSet;
+	}
+
 	/**
 	 * This method is responsible for computing the aggregation result according
 	 * to the specified aggregation definitions.
@@ -959,9 +1022,128 @@ public class CubeQueryExecutorHelper implements ICubeQueryExcutorHelper
 		
 		aggregationCalculatorExecutor.setMaxDataObjectRows( maxDataObjectRows );
 		
+		int parallelism = getAggregationParallelism( );
+		if ( parallelism > 1
+				&& computedMeasureHelper == null && measureFilters.isEmpty( )
+				&& aggregationCalculatorExecutor.isMergeable( ) )
+		{
+			CubeBuildContext context = new CubeBuildContext( parallelism,
+					DataEngineThreadLocal.getInstance( )
+							.getPathManager( )
+							.getTempPath( ) );
+			try
+			{
+				aggregationCalculatorExecutor.setPartitions( populatePartitions( factTableRowIterator,
+						dimensionResultIterators,
+						dimPosition,
+						parallelism,
+						stopSign ),
+						context );
+				return aggregationCalculatorExecutor.execute( stopSign );
+			}
+			finally
+			{
+				context.shutdown( );
+			}
+		}
 		return aggregationCalculatorExecutor.execute( stopSign );
 	}
 
+	/**
+	 * Splits the segments of the fact table into the partitions aggregated
+	 * concurrently. The given fact table iterator reads the first partition,
+	 * and the data sets of the other partitions are returned. Every partition
+	 * has its own copy of the dimension positions, and its dimension rows are
+	 * read in this thread.
+	 * 
+	 * @param factTableRowIterator
+	 * @param dimensionResultIterators
+	 * @param dimPosition
+	 * @param partitionCount
+	 * @param stopSign
+	 * @return
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private IDataSet4Aggregation[] populatePartitions(
+			FactTableRowIterator factTableRowIterator,
+			DimensionResultIterator[] dimensionResultIterators,
+			IDiskArray[] dimPosition, int partitionCount, StopSign stopSign )
+			throws IOException, DataException
+	{
+		IDataSet4Aggregation[] partitions = new IDataSet4Aggregation[partitionCount - 1];
+		for ( int i = 0; i < partitions.length; i++ )
+		{
+			IDiskArray[] position = new IDiskArray[dimPosition.length];
+			for ( int j = 0; j < position.length; j++ )
+			{
+				position[j] = copyPosition( dimPosition[j] );
+			}
+			FactTableRowIterator partitionIterator = populateFactTableIterator( stopSign,
+					position );
+			partitionIterator.setSegmentPartition( i + 1, partitionCount );
+			DimensionResultIterator[] partitionDimensions = populateDimensionResultIterator( position,
+					stopSign );
+			loadDimensionRows( partitionDimensions );
+			partitions[i] = new DataSetFromOriginalCube( partitionIterator,
+					partitionDimensions,
+					null );
+		}
+		factTableRowIterator.setSegmentPartition( 0, partitionCount );
+		loadDimensionRows( dimensionResultIterators );
+		return partitions;
+	}
+
+	private static void loadDimensionRows(
+			DimensionResultIterator[] dimensionResultIterators )
+			throws IOException
+	{
+		for ( int i = 0; i < dimensionResultIterators.length; i++ )
+		{
+			dimensionResultIterators[i].loadDimensionRows( );
+		}
+	}
+
+	private static IDiskArray copyPosition( IDiskArray position )
+			throws IOException
+	{
+		if ( position == null )
+		{
+			return null;
+		}
+		if ( position instanceof PositionBitmap )
+		{
+			// the bitmaps keep a read cursor, so they are not shared either
+			return PositionBitmap.or( (PositionBitmap) position,
+					new PositionBitmap( ) );
+		}
+		IDiskArray result = new BufferedPrimitiveDiskArray( );
+		for ( int i = 0; i < position.size( ); i++ )
+		{
+			result.add( position.get( i ) );
+		}
+		return result;
+	}
+
+	/**
+	 * 
+	 * @return the number of threads aggregating the fact table
+	 * @throws BirtException
+	 */
+	private int getAggregationParallelism( ) throws BirtException
+	{
+		if ( appContext == null )
+		{
+			return 1;
+		}
+		Object value = appContext.get( DataEngine.CUBE_AGGREGATION_PARALLELISM );
+		if ( value == null )
+		{
+			return 1;
+		}
+		return Math.max( 1, DataTypeUtil.toInteger( value ).intValue( ) );
+	}
+
 	/**
 	 * 
 	 * @param stopSign
@@ -13,7 +13,11 @@ package org.eclipse.birt.data.engine.olap.data.api.cube;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.eclipse.birt.core.archive.IDocArchiveWriter;
 import org.eclipse.birt.core.archive.RAOutputStream;
@@ -24,14 +28,22 @@ import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.i18n.ResourceConstants;
 import org.eclipse.birt.data.engine.impl.DataEngineImpl;
 import org.eclipse.birt.data.engine.impl.StopSign;
+import org.eclipse.birt.data.engine.olap.data.api.CubeQueryExecutorHelper;
+import org.eclipse.birt.data.engine.olap.data.api.DimLevel;
+import org.eclipse.birt.data.engine.olap.data.api.IAggregationResultSet;
 import org.eclipse.birt.data.engine.olap.data.api.ILevel;
+import org.eclipse.birt.data.engine.olap.data.api.MeasureInfo;
 import org.eclipse.birt.data.engine.olap.data.document.DocumentManagerFactory;
 import org.eclipse.birt.data.engine.olap.data.document.IDocumentManager;
 import org.eclipse.birt.data.engine.olap.data.document.IDocumentObject;
+import org.eclipse.birt.data.engine.olap.data.impl.AggregationDefinition;
 import org.eclipse.birt.data.engine.olap.data.impl.Cube;
 import org.eclipse.birt.data.engine.olap.data.impl.NamingUtil;
+import org.eclipse.birt.data.engine.olap.data.impl.aggregation.CubeRollup;
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.Dimension;
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.Hierarchy;
+import org.eclipse.birt.data.engine.olap.data.util.CubeBuildContext;
+import org.eclipse.birt.data.engine.olap.data.util.DataType;
 
 /**
  * 
@@ -39,8 +51,12 @@ import org.eclipse.birt.data.engine.olap.data.impl.dimension.Hierarchy;
 
 public class CubeMaterializer
 {
+	private static Logger logger = Logger.getLogger( CubeMaterializer.class.getName( ) );
+	
 	private IDocumentManager documentManager;
 	private DataEngine dataEngine;
+	private CubeBuildContext buildContext;
+	private DimLevel[][] rollupLevels;
 	
 	/**
 	 * 
@@ -68,6 +84,7 @@ public class CubeMaterializer
 		setShutdownListener( );
 		DataEngineThreadLocal.getInstance( ).getPathManager( ).setTempPath( dataEngine.getSession( ).getTempDir( ) );
 		documentManager = DocumentManagerFactory.createFileDocumentManager( dataEngine.getSession( ).getTempDir( ), managerName, cacheSize );
+		buildContext = new CubeBuildContext( 1, dataEngine.getSession( ).getTempDir( ) );
 		if ( this.dataEngine != null )
 		{
 			DocManagerMap.getDocManagerMap( )
@@ -86,6 +103,7 @@ public class CubeMaterializer
 		this.dataEngine = dataEngine;
 		setShutdownListener( );
 		documentManager = DocumentManagerFactory.createFileDocumentManager( dataEngine.getSession( ).getTempDir( ));
+		buildContext = new CubeBuildContext( 1, dataEngine.getSession( ).getTempDir( ) );
 	}
 
 	/**
@@ -107,6 +125,57 @@ public class CubeMaterializer
 		return documentManager;
 	}
 	
+	/**
+	 * Sets the number of threads used to build the cubes. If it is greater
+	 * than 1, the level indexes of a hierarchy, the dimension keys of the fact
+	 * table and the fact table segments are built concurrently.
+	 * 
+	 * @param parallelism
+	 */
+	public void setParallelism( int parallelism )
+	{
+		buildContext.setParallelism( parallelism );
+	}
+	
+	/**
+	 * Sets whether the level indexes of the cubes are saved with the bitmaps
+	 * of the dimension positions, which make the range filters on the levels
+	 * faster.
+	 * 
+	 * @param savePositionBitmaps
+	 */
+	public void setSavePositionBitmaps( boolean savePositionBitmaps )
+	{
+		buildContext.setSavePositionBitmaps( savePositionBitmaps );
+	}
+	
+	/**
+	 * Sets the levels of the rollups built with the cubes. Each rollup holds
+	 * the SUM, COUNT, MIN and MAX of the numeric measures grouped by its
+	 * levels, and answers the unfiltered aggregations on the same levels or
+	 * on a subset of them without scanning the fact table. The rollups whose
+	 * levels are not all in a cube are not built for it.
+	 * 
+	 * @param rollupLevels
+	 *            the levels of each rollup, null means no rollup
+	 */
+	public void setRollupLevels( DimLevel[][] rollupLevels )
+	{
+		this.rollupLevels = rollupLevels;
+	}
+	
+	/**
+	 * Returns the time spent in each phase of the builds done by this
+	 * materializer, such as the hierarchy of each dimension, the sort and the
+	 * write of the fact table.
+	 * 
+	 * @return phase name -> milliseconds
+	 */
+	public Map<String, Long> getPhaseTimes( )
+	{
+		return buildContext.getPhaseTimes( );
+	}
+	
 	/**
 	 * @param dimensionName
 	 * @param hierarchyName
@@ -122,11 +191,14 @@ public class CubeMaterializer
 			ILevelDefn[] levelDefs, StopSign stopSign ) throws IOException,
 			BirtException
 	{
+		long startTime = System.nanoTime( );
 		Hierarchy hierarchy = new Hierarchy( documentManager, dimensionName, hierarchyName ); 
+		hierarchy.setBuildContext( buildContext );
 		hierarchy.createAndSaveHierarchy( 
 				iterator,
 				levelDefs,
 				stopSign );
+		buildContext.addPhaseTime( "hierarchy " + dimensionName, startTime );
 		return hierarchy;
 	}
 	
@@ -234,10 +306,131 @@ public class CubeMaterializer
 			throw new DataException( ResourceConstants.MISSING_DIMENSION_IN_CUBE, name );
 		}
 		Cube cube = new Cube( name, documentManager );
+		cube.setBuildContext( buildContext );
 		cube.create(factTableJointColumnNames, DimJointColumnNames, dimensions,
 				factTable, measureColumns, calculatedMeasure, measureAggrFunctionNames, cacheSize, stopSign);
 		cube.close( );
 		documentManager.flush( );
+		createRollups( name, stopSign );
+		if ( logger.isLoggable( Level.FINE ) )
+		{
+			logger.fine( "cube " + name + " is built in phases "
+					+ buildContext.getPhaseTimes( ) + " (ms)" );
+		}
+	}
+	
+	/**
+	 * Builds the rollups of a cube from its fact table. The rollups of the
+	 * previous build are removed first, so they are not used to compute the
+	 * new ones.
+	 * 
+	 * @param cubeName
+	 * @param stopSign
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	private void createRollups( String cubeName, StopSign stopSign )
+			throws IOException, BirtException
+	{
+		CubeRollup.clear( documentManager, cubeName );
+		if ( rollupLevels == null || rollupLevels.length == 0 )
+		{
+			return;
+		}
+		long startTime = System.nanoTime( );
+		Cube cube = new Cube( cubeName, documentManager );
+		cube.load( stopSign );
+		try
+		{
+			String[] measureNames = getRollupMeasureNames( cube );
+			List<AggregationDefinition> aggregations = new ArrayList<AggregationDefinition>( );
+			for ( int i = 0; i < rollupLevels.length; i++ )
+			{
+				if ( containsLevels( cube, rollupLevels[i] ) )
+				{
+					aggregations.add( CubeRollup.createAggregation( rollupLevels[i],
+							measureNames ) );
+				}
+				else if ( logger.isLoggable( Level.FINE ) )
+				{
+					logger.fine( "the levels of rollup " + i
+							+ " are not in cube " + cubeName );
+				}
+			}
+			if ( aggregations.isEmpty( ) )
+			{
+				return;
+			}
+			CubeQueryExecutorHelper executorHelper = new CubeQueryExecutorHelper( cube );
+			IAggregationResultSet[] resultSets = executorHelper.execute( aggregations.toArray( new AggregationDefinition[aggregations.size( )] ),
+					stopSign );
+			try
+			{
+				CubeRollup.save( documentManager,
+						cubeName,
+						measureNames,
+						resultSets );
+			}
+			finally
+			{
+				for ( int i = 0; i < resultSets.length; i++ )
+				{
+					resultSets[i].close( );
+				}
+				executorHelper.close( );
+			}
+		}
+		finally
+		{
+			cube.close( );
+		}
+		documentManager.flush( );
+		buildContext.addPhaseTime( "rollup", startTime );
+	}
+	
+	private static String[] getRollupMeasureNames( Cube cube )
+	{
+		MeasureInfo[] measureInfo = cube.getFactTable( ).getMeasureInfo( );
+		List<String> result = new ArrayList<String>( );
+		for ( int i = 0; i < measureInfo.length; i++ )
+		{
+			int dataType = measureInfo[i].getDataType( );
+			if ( dataType == DataType.INTEGER_TYPE
+					|| dataType == DataType.DOUBLE_TYPE
+					|| dataType == DataType.BIGDECIMAL_TYPE )
+			{
+				result.add( measureInfo[i].getMeasureName( ) );
+			}
+		}
+		return result.toArray( new String[result.size( )] );
+	}
+	
+	private static boolean containsLevels( Cube cube, DimLevel[] levels )
+	{
+		IDimension[] dimensions = cube.getDimesions( );
+		for ( int i = 0; i < levels.length; i++ )
+		{
+			boolean found = false;
+			for ( int j = 0; j < dimensions.length && !found; j++ )
+			{
+				if ( !dimensions[j].getName( )
+						.equals( levels[i].getDimensionName( ) ) )
+				{
+					continue;
+				}
+				ILevel[] cubeLevels = dimensions[j].getHierarchy( ).getLevels( );
+				for ( int k = 0; k < cubeLevels.length && !found; k++ )
+				{
+					found = cubeLevels[k].getName( )
+							.equals( levels[i].getLevelName( ) );
+				}
+			}
+			if ( !found )
+			{
+				return false;
+			}
+		}
+		return true;
 	}
 	
 	/**
@@ -291,9 +484,26 @@ public class CubeMaterializer
 						levels[j].getName( ) ),
 						writer,
 						stopSign );
+				// the position bitmaps are optional
+				String bitmapDocName = NamingUtil.getLevelIndexBitmapDocName( dimensions[i].getName( ),
+						levels[j].getName( ) );
+				if ( documentManager.exist( bitmapDocName ) )
+				{
+					saveDocObjToReportDocument( bitmapDocName, writer, stopSign );
+				}
 				
 			}
 		}
+		//save rollups
+		CubeRollup[] rollups = cube.getRollups( );
+		if ( documentManager.exist( NamingUtil.getRollupListDocName( cubeName ) ) )
+		{
+			saveDocObjToReportDocument( NamingUtil.getRollupListDocName( cubeName ), writer, stopSign );
+		}
+		for ( int i = 0; i < rollups.length; i++ )
+		{
+			saveDocObjToReportDocument( NamingUtil.getRollupDocName( cubeName, i ), writer, stopSign );
+		}
 		
 		writer.flush( );
 	}
@@ -334,6 +544,7 @@ public class CubeMaterializer
 	 */
 	public void close( ) throws IOException
 	{
+		buildContext.shutdown( );
 		documentManager.flush( );
 	}
 }
\ No newline at end of file
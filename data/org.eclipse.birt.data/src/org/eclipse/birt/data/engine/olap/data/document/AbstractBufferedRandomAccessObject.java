@@ -638,6 +638,14 @@ public abstract class AbstractBufferedRandomAccessObject implements IRandomDataA
 		}
 	}
 	
+	/*
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomDataAccessObject#getBufferSize()
+	 */
+	public int getBufferSize( )
+	{
+		return currBuf.bytes.length;
+	}
+	
 	public void writeObject( Object o ) throws IOException
 	{
 		ByteArrayOutputStream buff = new ByteArrayOutputStream( );
@@ -22,6 +22,9 @@ import org.eclipse.birt.data.engine.olap.data.util.BufferedRandomAccessFile;
  * An implementation of the <tt>IRandomAccessObject</tt> interface. The
  * instance of this class allcoates some blocks from a BufferedRandomAccessFile
  * and use these blocks to save data.
+ * 
+ * The data file is shared by the objects of the same allocation table, so the
+ * accesses to it are synchronized on the allocation table.
  */
 
 public class BlockRandomAccessObject implements IRandomAccessObject
@@ -85,36 +88,39 @@ public class BlockRandomAccessObject implements IRandomAccessObject
 	 */
 	public int read( byte[] b, int off, int len ) throws IOException
 	{
-		if( len == 0 )
+		synchronized ( documentObjectAllocatedTable )
 		{
-			return 0;
-		}
-		if( position >= length )
-		{
-			return -1;
-		}
-		int remainSizeOfCurrentBlock = FileDocumentManager.BLOCK_SIZE
-				- (int) ( position % FileDocumentManager.BLOCK_SIZE );
-		dataFileSeek( );
-		if( remainSizeOfCurrentBlock >= len || position + remainSizeOfCurrentBlock >= length )
-		{
-			int readSize = (int) Math.min( length - position, len );
-			position += readSize;
-			return dataFile.read( b, off, readSize );
-		}
-		else
-		{
-			dataFile.read( b, off, remainSizeOfCurrentBlock );
-			position += remainSizeOfCurrentBlock;
-			int readSize = read( b, off + remainSizeOfCurrentBlock, len
-					- remainSizeOfCurrentBlock );
-			if( readSize == -1 )
+			if( len == 0 )
 			{
-				return remainSizeOfCurrentBlock;
+				return 0;
+			}
+			if( position >= length )
+			{
+				return -1;
+			}
+			int remainSizeOfCurrentBlock = FileDocumentManager.BLOCK_SIZE
+					- (int) ( position % FileDocumentManager.BLOCK_SIZE );
+			dataFileSeek( );
+			if( remainSizeOfCurrentBlock >= len || position + remainSizeOfCurrentBlock >= length )
+			{
+				int readSize = (int) Math.min( length - position, len );
+				position += readSize;
+				return dataFile.read( b, off, readSize );
 			}
 			else
 			{
-				return remainSizeOfCurrentBlock + readSize;
+				dataFile.read( b, off, remainSizeOfCurrentBlock );
+				position += remainSizeOfCurrentBlock;
+				int readSize = read( b, off + remainSizeOfCurrentBlock, len
+						- remainSizeOfCurrentBlock );
+				if( readSize == -1 )
+				{
+					return remainSizeOfCurrentBlock;
+				}
+				else
+				{
+					return remainSizeOfCurrentBlock + readSize;
+				}
 			}
 		}
 	}
@@ -156,20 +162,23 @@ public class BlockRandomAccessObject implements IRandomAccessObject
 	 */
 	public void setLength( long newLength ) throws IOException
 	{
-		assert newLength > 0;
-		int needBlockCount = (int) ( (newLength - 1) / FileDocumentManager.BLOCK_SIZE ) + 1;
-		if ( needBlockCount > blockList.size( ) )
+		synchronized ( documentObjectAllocatedTable )
 		{
-			int lastBlockNumber = ( (Integer) blockList.get( blockList.size( ) - 1 ) ).intValue( );
-			int moreBlockCount = needBlockCount - blockList.size( );
-			for ( int i = 0; i < moreBlockCount; i++ )
+			assert newLength > 0;
+			int needBlockCount = (int) ( (newLength - 1) / FileDocumentManager.BLOCK_SIZE ) + 1;
+			if ( needBlockCount > blockList.size( ) )
 			{
-				lastBlockNumber = documentObjectAllocatedTable.allocateBlock( lastBlockNumber );
-				blockList.add( Integer.valueOf( lastBlockNumber ) );
+				int lastBlockNumber = ( (Integer) blockList.get( blockList.size( ) - 1 ) ).intValue( );
+				int moreBlockCount = needBlockCount - blockList.size( );
+				for ( int i = 0; i < moreBlockCount; i++ )
+				{
+					lastBlockNumber = documentObjectAllocatedTable.allocateBlock( lastBlockNumber );
+					blockList.add( Integer.valueOf( lastBlockNumber ) );
+				}
 			}
+			length = newLength;
+			documentObjectAllocatedTable.setObjectLength( name, length );
 		}
-		length = newLength;
-		documentObjectAllocatedTable.setObjectLength( name, length );
 	}
 	
 	/*
@@ -178,29 +187,32 @@ public class BlockRandomAccessObject implements IRandomAccessObject
 	 */
 	public void write( byte[] b, int off, int len ) throws IOException
 	{
-		if( len == 0 )
-		{
-			return;
-		}
-		if( position + len > length )
+		synchronized ( documentObjectAllocatedTable )
 		{
-			setLength( position + len );
-		}
-		int remainSizeOfCurrentBlock = FileDocumentManager.BLOCK_SIZE
-				- (int) ( position % FileDocumentManager.BLOCK_SIZE );
-		dataFileSeek( );
-		if( remainSizeOfCurrentBlock >= len || position + remainSizeOfCurrentBlock >= length )
-		{
-			len = (int) Math.min( length - position, len );
-			position += len;
-			dataFile.write( b, off, len );
-		}
-		else
-		{
-			dataFile.write( b, off, remainSizeOfCurrentBlock );
-			position += remainSizeOfCurrentBlock;
-			write( b, off + remainSizeOfCurrentBlock, len
-					- remainSizeOfCurrentBlock );
+			if( len == 0 )
+			{
+				return;
+			}
+			if( position + len > length )
+			{
+				setLength( position + len );
+			}
+			int remainSizeOfCurrentBlock = FileDocumentManager.BLOCK_SIZE
+					- (int) ( position % FileDocumentManager.BLOCK_SIZE );
+			dataFileSeek( );
+			if( remainSizeOfCurrentBlock >= len || position + remainSizeOfCurrentBlock >= length )
+			{
+				len = (int) Math.min( length - position, len );
+				position += len;
+				dataFile.write( b, off, len );
+			}
+			else
+			{
+				dataFile.write( b, off, remainSizeOfCurrentBlock );
+				position += remainSizeOfCurrentBlock;
+				write( b, off + remainSizeOfCurrentBlock, len
+						- remainSizeOfCurrentBlock );
+			}
 		}
 	}
 
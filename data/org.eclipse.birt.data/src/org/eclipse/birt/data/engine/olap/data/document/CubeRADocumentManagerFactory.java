@@ -18,6 +18,6 @@ public class CubeRADocumentManagerFactory
 {
 	public static IDocumentManager createRADocumentManager( String cubeName, IDocArchiveReader reader ) throws DataException, IOException
 	{
-		return DocumentManagerFactory.createRADocumentManager( reader );
+		return DocumentManagerFactory.createRADocumentManager( cubeName, reader );
 	}
 }
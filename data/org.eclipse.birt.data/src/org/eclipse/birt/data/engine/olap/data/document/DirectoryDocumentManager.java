@@ -59,7 +59,7 @@ public class DirectoryDocumentManager implements IDocumentManager
 
 	public void close( ) throws IOException
 	{
-		
+		SharedDocumentCache.getInstance( ).invalidate( this );
 	}
 	
 	/*
@@ -68,6 +68,7 @@ public class DirectoryDocumentManager implements IDocumentManager
 	 */
 	public IDocumentObject createDocumentObject( String documentObjectName ) throws IOException
 	{
+		SharedDocumentCache.getInstance( ).remove( this, documentObjectName );
 		File file =  new File(documentDir + File.separatorChar + documentObjectName);
 		if ( FileSecurity.fileExist( file ) )
 		{
@@ -90,6 +90,21 @@ public class DocumentManagerFactory
 		return new RADocumentManager( reader );
 	}
 	
+	/**
+	 * 
+	 * @param cubeName
+	 *            the name of the cube saved in the archive
+	 * @param reader
+	 * @return
+	 * @throws DataException
+	 * @throws IOException
+	 */
+	static public IDocumentManager createRADocumentManager( String cubeName,
+			IDocArchiveReader reader ) throws DataException, IOException
+	{
+		return new RADocumentManager( cubeName, reader );
+	}
+	
 	/**
 	 * 
 	 * @return
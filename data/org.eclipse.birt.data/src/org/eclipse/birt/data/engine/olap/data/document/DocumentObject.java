@@ -306,6 +306,15 @@ public class DocumentObject implements IDocumentObject
 		delegate.flush( );
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.olap.data.document.IDocumentObject#getBufferSize()
+	 */
+	public int getBufferSize( )
+	{
+		return delegate.getBufferSize( );
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.eclipse.birt.data.olap.data.document.IDocumentObject#readBytes()
@@ -12,14 +12,21 @@
 package org.eclipse.birt.data.engine.olap.data.document;
 
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.birt.data.engine.cache.MemoryBroker;
+import org.eclipse.birt.data.engine.cache.MemoryReservation;
 
 /**
- * A cache that keeps a collection of at most maximumCapacity document object.
- * When the number of entries exceeds that limit, least recently used entries
- * are removed so the current size is the same as the maximum capacity.
+ * A cache that keeps the document objects opened for writing within a size
+ * limit. When the cached objects exceed the limit, the least recently used
+ * objects are closed. The document objects grow while they are written by
+ * the threads using the cache, so the sizes of all the cached objects are
+ * updated before an object is opened. The memory buffers of the cached
+ * objects are reserved from the process wide broker, the objects are also
+ * closed when the broker refuses the reservation.
  */
 
 public class DocumentObjectCache
@@ -27,8 +34,15 @@ public class DocumentObjectCache
 
 	private IDocumentManager documentManager = null;
 	private long cachedSize;
-	private LinkedList linkedList = null;
-	private HashMap map = null;
+	// in access order, the least recently used object is the first one
+	private LinkedHashMap<String, Entry> map = null;
+	private long totalSize;
+	// the buffers of cached objects are reserved from the process wide broker
+	private MemoryReservation reservation = null;
+
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
 
 	public DocumentObjectCache( IDocumentManager documentManager )
 	{
@@ -37,12 +51,26 @@ public class DocumentObjectCache
 	
 	public DocumentObjectCache( IDocumentManager documentManager,
 			long cachedSize )
+	{
+		this( documentManager, cachedSize, MemoryBroker.getInstance( ) );
+	}
+
+	/**
+	 * 
+	 * @param documentManager
+	 * @param cachedSize
+	 *            the maximum length of the cached objects, 0 if not limited
+	 * @param broker
+	 *            the broker which the buffers are reserved from
+	 */
+	public DocumentObjectCache( IDocumentManager documentManager,
+			long cachedSize, MemoryBroker broker )
 	{
 		this.documentManager = documentManager;
 		this.cachedSize = cachedSize;
 
-		linkedList = new LinkedList( );
-		map = new HashMap( );
+		map = new LinkedHashMap<String, Entry>( 16, 0.75f, true );
+		reservation = broker.newReservation( "DocumentObjectCache" );
 	}
 
 	/**
@@ -51,25 +79,25 @@ public class DocumentObjectCache
 	 * @return
 	 * @throws IOException
 	 */
-	public IDocumentObject getIDocumentObject( String name )
+	public synchronized IDocumentObject getIDocumentObject( String name )
 			throws IOException
 	{
-		Object cachedObject = map.get( name );
-		if ( cachedObject != null )
+		Entry entry = map.get( name );
+		if ( entry != null )
 		{
-			return (IDocumentObject) cachedObject;
+			hitCount++;
+			return entry.documentObject;
 		}
+		missCount++;
 		
-		if( cachedSize!=0 )
-		{		
-			long size = calculateDocumentObjectsSize( );
-			if ( size >= cachedSize )
-			{
-				String lastName = (String) linkedList.getLast( );
-				linkedList.removeLast( );
-				( (IDocumentObject) map.get( lastName ) ).close( );
-				map.remove( lastName );
-			}
+		// the objects returned before may have been written by any thread
+		for ( Entry cachedEntry : map.values( ) )
+		{
+			updateSize( cachedEntry );
+		}
+		if ( cachedSize != 0 && totalSize >= cachedSize )
+		{
+			evict( );
 		}
 
 		IDocumentObject newDocumentObject = documentManager.openDocumentObject( name );
@@ -78,21 +106,93 @@ public class DocumentObjectCache
 			newDocumentObject = documentManager.createDocumentObject( name );
 		}
 		newDocumentObject.seek( newDocumentObject.length( ) );
-		map.put( name, newDocumentObject );
-		linkedList.addFirst( name );
+		entry = new Entry( newDocumentObject );
+		entry.size = newDocumentObject.length( );
+		reserve( entry );
+		totalSize += entry.size;
+		map.put( name, entry );
 		return newDocumentObject;
 	}
 	
-	private long calculateDocumentObjectsSize( ) throws IOException
+	/**
+	 * Closes the least recently used object.
+	 * 
+	 * @throws IOException
+	 */
+	private void evict( ) throws IOException
 	{
-		Iterator allOjbects = map.values( ).iterator( );
-
-		long size = 0;
-		while ( allOjbects.hasNext( ) )
+		Iterator<Entry> entries = map.values( ).iterator( );
+		if ( entries.hasNext( ) )
+		{
+			Entry eldest = entries.next( );
+			entries.remove( );
+			totalSize -= eldest.size;
+			reservation.release( eldest.reservedSize );
+			eldest.documentObject.close( );
+			evictionCount++;
+		}
+	}
+	
+	private void updateSize( Entry entry ) throws IOException
+	{
+		long size = entry.documentObject.length( );
+		totalSize += size - entry.size;
+		entry.size = size;
+	}
+	
+	/**
+	 * Reserve the buffer of a new object. The least recently used objects are
+	 * closed until the memory is reserved or no other object is left.
+	 * 
+	 * @param entry
+	 * @throws IOException
+	 */
+	private void reserve( Entry entry ) throws IOException
+	{
+		int bufferSize = entry.documentObject.getBufferSize( );
+		while ( !reservation.reserve( bufferSize ) )
 		{
-			size += ( (IDocumentObject) allOjbects.next( ) ).length( );
+			if ( map.isEmpty( ) )
+			{
+				// nothing is left to spill, the object is used without
+				// reservation if the broker still refuses it
+				reservation.acknowledgeSpill( );
+				if ( reservation.reserve( bufferSize ) )
+				{
+					entry.reservedSize = bufferSize;
+				}
+				return;
+			}
+			evict( );
 		}
-		return size;
+		entry.reservedSize = bufferSize;
+	}
+
+	/**
+	 * 
+	 * @return the number of calls which returned a cached object
+	 */
+	public synchronized long getHitCount( )
+	{
+		return hitCount;
+	}
+
+	/**
+	 * 
+	 * @return the number of calls which opened the object
+	 */
+	public synchronized long getMissCount( )
+	{
+		return missCount;
+	}
+
+	/**
+	 * 
+	 * @return the number of objects closed to open other objects
+	 */
+	public synchronized long getEvictionCount( )
+	{
+		return evictionCount;
 	}
 
 	/**
@@ -100,15 +200,27 @@ public class DocumentObjectCache
 	 * 
 	 * @throws IOException
 	 */
-	public void closeAll( ) throws IOException
+	public synchronized void closeAll( ) throws IOException
 	{
-		Iterator allOjbects = map.values( ).iterator( );
-
-		while ( allOjbects.hasNext( ) )
+		for ( Map.Entry<String, Entry> entry : map.entrySet( ) )
 		{
-			( (IDocumentObject) allOjbects.next( ) ).close( );
+			entry.getValue( ).documentObject.close( );
 		}
 		map.clear( );
+		totalSize = 0;
+		reservation.close( );
 	}
 
+	private static class Entry
+	{
+
+		private IDocumentObject documentObject;
+		private long size;
+		private long reservedSize;
+
+		Entry( IDocumentObject documentObject )
+		{
+			this.documentObject = documentObject;
+		}
+	}
 }
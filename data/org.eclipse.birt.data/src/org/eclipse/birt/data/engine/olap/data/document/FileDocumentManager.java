@@ -24,6 +24,11 @@ import org.eclipse.birt.data.engine.i18n.ResourceConstants;
 /**
  * An implementation of the <tt>IDocumentManager</tt> interface. This class 
  * use three files to save any number of document objects.
+ * 
+ * The files are shared by all the document objects, so the methods accessing
+ * them are synchronized on the manager. The document objects lock the
+ * manager too, which allows the objects to be written by different threads
+ * when a cube is built concurrently.
  */
 
 public class FileDocumentManager implements IDocumentManager, IObjectAllocTable
@@ -181,8 +186,9 @@ public class FileDocumentManager implements IDocumentManager, IObjectAllocTable
 	 * (non-Javadoc)
 	 * @see org.eclipse.birt.data.olap.data.document.IDocumentManager#close()
 	 */
-	public void close( ) throws IOException
+	public synchronized void close( ) throws IOException
 	{
+		SharedDocumentCache.getInstance( ).invalidate( this );
 		objectAccessFile.close( );
 		oatAccessFile.close( );
 		dataAccessFile.close( );
@@ -215,8 +221,9 @@ public class FileDocumentManager implements IDocumentManager, IObjectAllocTable
 	 * (non-Javadoc)
 	 * @see org.eclipse.birt.data.olap.data.document.IDocumentManager#createDocumentObject(java.lang.String)
 	 */
-	public IDocumentObject createDocumentObject( String documentObjectName ) throws IOException
+	public synchronized IDocumentObject createDocumentObject( String documentObjectName ) throws IOException
 	{
+		SharedDocumentCache.getInstance( ).remove( this, documentObjectName );
 		ObjectStructure objectStructure = new ObjectStructure( );
 		objectStructure.name = documentObjectName;
 		objectStructure.firstBlock = findFreeBlock( );
@@ -276,7 +283,7 @@ public class FileDocumentManager implements IDocumentManager, IObjectAllocTable
 	 * (non-Javadoc)
 	 * @see org.eclipse.birt.data.olap.data.document.IDocumentManager#openDocumentObject(java.lang.String)
 	 */
-	public IDocumentObject openDocumentObject( String documentObjectName )
+	public synchronized IDocumentObject openDocumentObject( String documentObjectName )
 			throws IOException
 	{
 		ObjectStructure objectStructure = (ObjectStructure) this.documentObjectMap.get( documentObjectName );
@@ -296,7 +303,7 @@ public class FileDocumentManager implements IDocumentManager, IObjectAllocTable
 	 * (non-Javadoc)
 	 * @see org.eclipse.birt.data.olap.data.document.IDocumentManager#exist(java.lang.String)
 	 */
-	public boolean exist( String documentObjectName )
+	public synchronized boolean exist( String documentObjectName )
 	{
 		return this.documentObjectMap.get( documentObjectName ) != null;
 	}
@@ -305,7 +312,7 @@ public class FileDocumentManager implements IDocumentManager, IObjectAllocTable
 	 * (non-Javadoc)
 	 * @see org.eclipse.birt.data.olap.data.document.IObjectAllocTable#getNextBlock(int)
 	 */
-	public int getNextBlock( int blockNo ) throws IOException
+	public synchronized int getNextBlock( int blockNo ) throws IOException
 	{
 		oatAccessFile.seek( blockNo * 4L );
 		return oatAccessFile.readInt( );
@@ -315,7 +322,7 @@ public class FileDocumentManager implements IDocumentManager, IObjectAllocTable
 	 * (non-Javadoc)
 	 * @see org.eclipse.birt.data.olap.data.document.IObjectAllocTable#allocateBlock(int)
 	 */
-	public int allocateBlock( int blockNo ) throws IOException
+	public synchronized int allocateBlock( int blockNo ) throws IOException
 	{
 		int newBlock = findFreeBlock( );
 		oatAccessFile.seek( blockNo * 4L );
@@ -327,7 +334,7 @@ public class FileDocumentManager implements IDocumentManager, IObjectAllocTable
 	 * (non-Javadoc)
 	 * @see org.eclipse.birt.data.olap.data.document.IObjectAllocTable#setObjectLength(java.lang.String, long)
 	 */
-	public void setObjectLength( String documentObjectName, long length ) throws IOException
+	public synchronized void setObjectLength( String documentObjectName, long length ) throws IOException
 	{
 		ObjectStructure objectStructure = (ObjectStructure) documentObjectMap.get( documentObjectName );
 		if ( objectStructure == null )
@@ -343,7 +350,7 @@ public class FileDocumentManager implements IDocumentManager, IObjectAllocTable
 	 * (non-Javadoc)
 	 * @see org.eclipse.birt.data.engine.olap.data.document.IDocumentManager#flush()
 	 */
-	public void flush( ) throws IOException
+	public synchronized void flush( ) throws IOException
 	{
 		objectAccessFile.flush( );
 		oatAccessFile.flush( );
@@ -235,4 +235,10 @@ public interface IDocumentObject
 	 * @throws IOException
 	 */
 	public void flush( ) throws IOException;
+	
+	/**
+	 * 
+	 * @return the number of bytes buffered in memory
+	 */
+	public int getBufferSize( );
 }
@@ -71,5 +71,11 @@ public interface IRandomDataAccessObject extends DataInput, DataOutput, IRandomA
 	
 	public void writeObject( Object o ) throws IOException;
 	
+	/**
+	 * 
+	 * @return the number of bytes buffered in memory
+	 */
+	public int getBufferSize( );
+	
 
 }
@@ -23,6 +23,7 @@ import org.eclipse.birt.core.archive.RAInputStream;
 public class RADocumentManager implements IDocumentManager
 {
 	private IDocArchiveReader archiveReader;
+	private String cubeName;
 	
 	/**
 	 * 
@@ -31,6 +32,20 @@ public class RADocumentManager implements IDocumentManager
 	 */
 	RADocumentManager( IDocArchiveReader reader ) throws IOException
 	{
+		this( null, reader );
+	}
+	
+	/**
+	 * 
+	 * @param cubeName
+	 *            the name of the cube saved in the archive, it may be null.
+	 * @param reader
+	 * @throws IOException
+	 */
+	RADocumentManager( String cubeName, IDocArchiveReader reader )
+			throws IOException
+	{
+		this.cubeName = cubeName;
 		this.archiveReader = reader;
 	}
 	
@@ -42,6 +57,24 @@ public class RADocumentManager implements IDocumentManager
 	{
 		//archiveReader.close( );
 	}
+	
+	/**
+	 * 
+	 * @return the archive holding the document objects
+	 */
+	IDocArchiveReader getArchiveReader( )
+	{
+		return archiveReader;
+	}
+	
+	/**
+	 * 
+	 * @return the name of the cube, null if it is unknown
+	 */
+	String getCubeName( )
+	{
+		return cubeName;
+	}
 
 	/*
 	 * (non-Javadoc)
@@ -794,4 +794,12 @@ public class RandomDataAccessObject implements IRandomDataAccessObject
 		
 	}
 
+	/*
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomDataAccessObject#getBufferSize()
+	 */
+	public int getBufferSize( )
+	{
+		return 0;
+	}
+
 }
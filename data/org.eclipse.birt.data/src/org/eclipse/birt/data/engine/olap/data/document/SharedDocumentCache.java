@@ -0,0 +1,577 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.document;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.birt.data.engine.cache.MemoryBroker;
+import org.eclipse.birt.data.engine.cache.MemoryReservation;
+
+/**
+ * A process wide cache of the objects decoded from the cube documents, which
+ * is shared by all the queries on the same document. The cached objects must
+ * not be changed by their users. An object is identified by the name of the
+ * document object it is decoded from and an optional part, so several objects
+ * may be decoded from one document object.
+ *
+ * Each cube of a document has its own least recently used list and a quota of
+ * bytes, the quota of a cube can be set by its name. An object which is hit
+ * HOT_HITS times, or which is put as pinned such as the nodes of the dimension
+ * indexes, is pinned. It is not evicted while the pinned objects of its cube
+ * take no more than half of the quota. The cached bytes are also reserved from
+ * the process wide memory broker.
+ *
+ * The documents of a report document are identified by the archive reader,
+ * so the queries of the same report share the cached objects. The objects of
+ * a document are removed and their bytes are released when the document is
+ * garbage collected or closed, and the objects decoded from a document object
+ * are removed when the document object is created again.
+ */
+
+public class SharedDocumentCache
+{
+
+	/**
+	 * the default quota of a cube, 16M bytes
+	 */
+	public static final long DEFAULT_QUOTA = 16 * 1024 * 1024;
+
+	static final int HOT_HITS = 8;
+
+	private static SharedDocumentCache instance;
+
+	private long quota;
+	// the quotas set for the cubes by name
+	private Map<String, Long> cubeQuotas = new HashMap<String, Long>( );
+	private Map<RegionKey, Region> regions = new HashMap<RegionKey, Region>( );
+	// the keys of the regions whose documents have been collected
+	private ReferenceQueue<Object> queue = new ReferenceQueue<Object>( );
+	private MemoryReservation reservation;
+
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+
+	/**
+	 *
+	 * @return the cache shared by the queries of the process
+	 */
+	public static synchronized SharedDocumentCache getInstance( )
+	{
+		if ( instance == null )
+		{
+			instance = new SharedDocumentCache( DEFAULT_QUOTA,
+					MemoryBroker.getInstance( ) );
+		}
+		return instance;
+	}
+
+	/**
+	 *
+	 * @param quota
+	 *            the maximum bytes cached for one cube of a document
+	 * @param broker
+	 */
+	public SharedDocumentCache( long quota, MemoryBroker broker )
+	{
+		this.quota = quota;
+		this.reservation = broker.newReservation( "SharedDocumentCache" );
+	}
+
+	/**
+	 * Returns a cached object.
+	 *
+	 * @param documentManager
+	 * @param name
+	 *            the name of the document object the value is decoded from
+	 * @return null if the object is not cached
+	 */
+	public Object get( IDocumentManager documentManager, String name )
+	{
+		return get( documentManager, name, null );
+	}
+
+	/**
+	 * Returns a cached object.
+	 *
+	 * @param documentManager
+	 * @param name
+	 *            the name of the document object the value is decoded from
+	 * @param part
+	 *            identifies the value among the values decoded from the
+	 *            document object, it may be null.
+	 * @return null if the object is not cached
+	 */
+	public synchronized Object get( IDocumentManager documentManager,
+			String name, Object part )
+	{
+		Region region = getRegion( documentManager, false );
+		Entry entry = region == null ? null : region.entries.get( new EntryKey( name,
+				part ) );
+		if ( entry == null )
+		{
+			missCount++;
+			return null;
+		}
+		hitCount++;
+		entry.hits++;
+		if ( !entry.pinned && entry.hits >= HOT_HITS )
+		{
+			pin( region, entry );
+		}
+		return entry.value;
+	}
+
+	/**
+	 * Caches an object. The least recently used objects of the cube which are
+	 * not pinned are evicted to keep it in the quota, and the object is not
+	 * cached if it can not fit.
+	 *
+	 * @param documentManager
+	 * @param name
+	 *            the name of the document object the value is decoded from
+	 * @param value
+	 * @param weight
+	 *            the estimated bytes of the value
+	 */
+	public void put( IDocumentManager documentManager, String name,
+			Object value, long weight )
+	{
+		put( documentManager, name, null, value, weight, false );
+	}
+
+	/**
+	 * Caches an object. The least recently used objects of the cube which are
+	 * not pinned are evicted to keep it in the quota, and the object is not
+	 * cached if it can not fit.
+	 *
+	 * @param documentManager
+	 * @param name
+	 *            the name of the document object the value is decoded from
+	 * @param part
+	 *            identifies the value among the values decoded from the
+	 *            document object, it may be null.
+	 * @param value
+	 * @param weight
+	 *            the estimated bytes of the value
+	 * @param pinned
+	 *            whether the object is pinned once it is cached, it is pinned
+	 *            only if the pinned objects still take no more than half of
+	 *            the quota.
+	 */
+	public synchronized void put( IDocumentManager documentManager,
+			String name, Object part, Object value, long weight, boolean pinned )
+	{
+		Region region = getRegion( documentManager, true );
+		long regionQuota = getQuota( region.cubeName );
+		if ( weight > regionQuota )
+		{
+			return;
+		}
+		EntryKey key = new EntryKey( name, part );
+		Entry oldEntry = region.entries.remove( key );
+		if ( oldEntry != null )
+		{
+			release( region, oldEntry );
+		}
+		if ( reservation.isSpillRequested( ) )
+		{
+			spill( );
+		}
+		Iterator<Entry> entries = region.entries.values( ).iterator( );
+		while ( region.size + weight > regionQuota
+				|| !reservation.reserve( weight ) )
+		{
+			Entry eldest = null;
+			while ( eldest == null && entries.hasNext( ) )
+			{
+				Entry entry = entries.next( );
+				if ( !entry.pinned )
+				{
+					eldest = entry;
+				}
+			}
+			if ( eldest == null )
+			{
+				return;
+			}
+			entries.remove( );
+			release( region, eldest );
+			evictionCount++;
+		}
+		Entry entry = new Entry( key, value, weight );
+		region.entries.put( key, entry );
+		region.size += weight;
+		if ( pinned )
+		{
+			pin( region, entry );
+		}
+	}
+
+	/**
+	 * Removes the objects decoded from a document object, which is called
+	 * when the document object is changed.
+	 *
+	 * @param documentManager
+	 * @param name
+	 */
+	public synchronized void remove( IDocumentManager documentManager,
+			String name )
+	{
+		Region region = getRegion( documentManager, false );
+		if ( region == null )
+		{
+			return;
+		}
+		Iterator<Entry> entries = region.entries.values( ).iterator( );
+		while ( entries.hasNext( ) )
+		{
+			Entry entry = entries.next( );
+			if ( entry.key.name.equals( name ) )
+			{
+				entries.remove( );
+				release( region, entry );
+			}
+		}
+	}
+
+	/**
+	 * Removes all the objects of a document.
+	 *
+	 * @param documentManager
+	 */
+	public synchronized void invalidate( IDocumentManager documentManager )
+	{
+		expungeStaleRegions( );
+		Object document = getDocument( documentManager );
+		Iterator<Map.Entry<RegionKey, Region>> iter = regions.entrySet( )
+				.iterator( );
+		while ( iter.hasNext( ) )
+		{
+			Map.Entry<RegionKey, Region> region = iter.next( );
+			if ( region.getKey( ).get( ) == document )
+			{
+				iter.remove( );
+				reservation.release( region.getValue( ).size );
+			}
+		}
+	}
+
+	/**
+	 * Sets the maximum bytes cached for one cube of a document, the objects
+	 * beyond the new quota are evicted when the objects are cached later.
+	 *
+	 * @param quota
+	 */
+	public synchronized void setQuota( long quota )
+	{
+		this.quota = quota;
+	}
+
+	/**
+	 *
+	 * @return the maximum bytes cached for one cube of a document
+	 */
+	public synchronized long getQuota( )
+	{
+		return quota;
+	}
+
+	/**
+	 * Sets the maximum bytes cached for a cube in each document, which
+	 * overrides the quota of the cache.
+	 *
+	 * @param cubeName
+	 * @param quota
+	 */
+	public synchronized void setQuota( String cubeName, long quota )
+	{
+		cubeQuotas.put( cubeName, Long.valueOf( quota ) );
+	}
+
+	/**
+	 *
+	 * @param cubeName
+	 * @return the maximum bytes cached for the cube in each document
+	 */
+	public synchronized long getQuota( String cubeName )
+	{
+		Long cubeQuota = cubeQuotas.get( cubeName );
+		return cubeQuota == null ? quota : cubeQuota.longValue( );
+	}
+
+	/**
+	 *
+	 * @return the number of get calls which returned a cached object
+	 */
+	public synchronized long getHitCount( )
+	{
+		return hitCount;
+	}
+
+	/**
+	 *
+	 * @return the number of get calls which did not find the object
+	 */
+	public synchronized long getMissCount( )
+	{
+		return missCount;
+	}
+
+	/**
+	 *
+	 * @return the number of objects evicted to cache other objects
+	 */
+	public synchronized long getEvictionCount( )
+	{
+		return evictionCount;
+	}
+
+	/**
+	 *
+	 * @return the bytes of the cached objects
+	 */
+	public synchronized long getCachedSize( )
+	{
+		expungeStaleRegions( );
+		long size = 0;
+		for ( Region region : regions.values( ) )
+		{
+			size += region.size;
+		}
+		return size;
+	}
+
+	/**
+	 * Evicts the objects which are not pinned when the memory broker asks the
+	 * cache to spill, then the cache may reserve memory again.
+	 */
+	private void spill( )
+	{
+		for ( Region region : regions.values( ) )
+		{
+			Iterator<Entry> entries = region.entries.values( ).iterator( );
+			while ( entries.hasNext( ) )
+			{
+				Entry entry = entries.next( );
+				if ( !entry.pinned )
+				{
+					entries.remove( );
+					release( region, entry );
+					evictionCount++;
+				}
+			}
+		}
+		// only the pinned objects are left, which can't be spilled
+		reservation.acknowledgeSpill( );
+	}
+
+	private Region getRegion( IDocumentManager documentManager, boolean create )
+	{
+		expungeStaleRegions( );
+		Object document = getDocument( documentManager );
+		String cubeName = getCubeName( documentManager );
+		Region region = regions.get( new RegionKey( document, cubeName, null ) );
+		if ( region == null && create )
+		{
+			region = new Region( cubeName );
+			regions.put( new RegionKey( document, cubeName, queue ), region );
+		}
+		return region;
+	}
+
+	private void pin( Region region, Entry entry )
+	{
+		if ( region.pinnedSize + entry.weight <= getQuota( region.cubeName ) / 2 )
+		{
+			entry.pinned = true;
+			region.pinnedSize += entry.weight;
+		}
+	}
+
+	private void release( Region region, Entry entry )
+	{
+		region.size -= entry.weight;
+		if ( entry.pinned )
+		{
+			region.pinnedSize -= entry.weight;
+		}
+		reservation.release( entry.weight );
+	}
+
+	/**
+	 * Removes the regions whose documents have been collected and releases
+	 * their bytes.
+	 */
+	private void expungeStaleRegions( )
+	{
+		if ( queue.poll( ) == null )
+		{
+			return;
+		}
+		while ( queue.poll( ) != null )
+		{
+		}
+		Iterator<Map.Entry<RegionKey, Region>> iter = regions.entrySet( )
+				.iterator( );
+		while ( iter.hasNext( ) )
+		{
+			Map.Entry<RegionKey, Region> region = iter.next( );
+			if ( region.getKey( ).get( ) == null )
+			{
+				iter.remove( );
+				reservation.release( region.getValue( ).size );
+			}
+		}
+	}
+
+	/**
+	 * The document managers of a report document are created for each query,
+	 * so the archive reader identifies the document.
+	 *
+	 * @param documentManager
+	 * @return
+	 */
+	private static Object getDocument( IDocumentManager documentManager )
+	{
+		if ( documentManager instanceof RADocumentManager
+				&& ( (RADocumentManager) documentManager ).getArchiveReader( ) != null )
+		{
+			return ( (RADocumentManager) documentManager ).getArchiveReader( );
+		}
+		return documentManager;
+	}
+
+	private static String getCubeName( IDocumentManager documentManager )
+	{
+		if ( documentManager instanceof RADocumentManager )
+		{
+			return ( (RADocumentManager) documentManager ).getCubeName( );
+		}
+		return null;
+	}
+
+	/**
+	 * Weakly refers to the document, the key is enqueued once the document is
+	 * collected.
+	 */
+	private static class RegionKey extends WeakReference<Object>
+	{
+
+		private final String cubeName;
+		private final int hashCode;
+
+		RegionKey( Object document, String cubeName,
+				ReferenceQueue<Object> queue )
+		{
+			super( document, queue );
+			this.cubeName = cubeName;
+			this.hashCode = System.identityHashCode( document )
+					* 31
+					+ ( cubeName == null ? 0 : cubeName.hashCode( ) );
+		}
+
+		public int hashCode( )
+		{
+			return hashCode;
+		}
+
+		public boolean equals( Object obj )
+		{
+			if ( this == obj )
+			{
+				return true;
+			}
+			if ( !( obj instanceof RegionKey ) )
+			{
+				return false;
+			}
+			RegionKey key = (RegionKey) obj;
+			Object document = get( );
+			return hashCode == key.hashCode
+					&& document != null
+					&& document == key.get( )
+					&& ( cubeName == null ? key.cubeName == null
+							: cubeName.equals( key.cubeName ) );
+		}
+	}
+
+	private static class Region
+	{
+
+		private String cubeName;
+		// in access order, the least recently used object is the first one
+		private LinkedHashMap<EntryKey, Entry> entries = new LinkedHashMap<EntryKey, Entry>( 16,
+				0.75f,
+				true );
+		private long size;
+		private long pinnedSize;
+
+		Region( String cubeName )
+		{
+			this.cubeName = cubeName;
+		}
+	}
+
+	private static class EntryKey
+	{
+
+		private final String name;
+		private final Object part;
+
+		EntryKey( String name, Object part )
+		{
+			this.name = name;
+			this.part = part;
+		}
+
+		public int hashCode( )
+		{
+			return name.hashCode( ) * 31
+					+ ( part == null ? 0 : part.hashCode( ) );
+		}
+
+		public boolean equals( Object obj )
+		{
+			if ( !( obj instanceof EntryKey ) )
+			{
+				return false;
+			}
+			EntryKey key = (EntryKey) obj;
+			return name.equals( key.name )
+					&& ( part == null ? key.part == null
+							: part.equals( key.part ) );
+		}
+	}
+
+	private static class Entry
+	{
+
+		private EntryKey key;
+		private Object value;
+		private long weight;
+		private int hits;
+		private boolean pinned;
+
+		Entry( EntryKey key, Object value, long weight )
+		{
+			this.key = key;
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+}
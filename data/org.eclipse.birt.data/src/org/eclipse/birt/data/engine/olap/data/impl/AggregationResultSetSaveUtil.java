@@ -140,6 +140,20 @@ public class AggregationResultSetSaveUtil
 		}
 	}
 
+	/**
+	 * Loads one result set written by saveResultSet.
+	 * 
+	 * @param inputStream
+	 * @param memoryCacheSize
+	 * @return
+	 * @throws IOException
+	 */
+	public static IAggregationResultSet loadResultSet(
+			DataInputStream inputStream, long memoryCacheSize ) throws IOException
+	{
+		return loadOneResultSet( inputStream, memoryCacheSize );
+	}
+
 	private static IAggregationResultSet loadOneResultSet(
 			DataInputStream dataInputStream, long memoryCacheSize ) throws IOException
 	{
@@ -260,6 +274,18 @@ public class AggregationResultSetSaveUtil
 		saveAggregationRowSet( outputStream, resultSet );
 	}
 	
+	/**
+	 * Saves one result set to the stream, which can be read by loadResultSet.
+	 * 
+	 * @param outputStream
+	 * @param resultSet
+	 * @throws IOException
+	 */
+	public static void saveResultSet( DataOutputStream outputStream, IAggregationResultSet resultSet ) throws IOException
+	{
+		saveOneResultSet( outputStream, resultSet );
+	}
+	
 	/**
 	 * 
 	 * @param outputStream
@@ -24,10 +24,12 @@ import org.eclipse.birt.data.engine.olap.data.api.cube.IDatasetIterator;
 import org.eclipse.birt.data.engine.olap.data.api.cube.IDimension;
 import org.eclipse.birt.data.engine.olap.data.document.IDocumentManager;
 import org.eclipse.birt.data.engine.olap.data.document.IDocumentObject;
+import org.eclipse.birt.data.engine.olap.data.impl.aggregation.CubeRollup;
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.Dimension;
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.DimensionFactory;
 import org.eclipse.birt.data.engine.olap.data.impl.facttable.FactTable;
 import org.eclipse.birt.data.engine.olap.data.impl.facttable.FactTableAccessor;
+import org.eclipse.birt.data.engine.olap.data.util.CubeBuildContext;
 
 /**
  * Default implements of ICube interface.
@@ -39,6 +41,8 @@ public class Cube implements ICube
 	protected IDocumentManager documentManager;
 	protected IDimension[] dimension;
 	private FactTable factTable;
+	private CubeBuildContext buildContext;
+	private CubeRollup[] rollups;
 
 	private static Logger logger = Logger.getLogger( Cube.class.getName( ) );
 
@@ -58,6 +62,16 @@ public class Cube implements ICube
 		logger.exiting( Cube.class.getName( ), "Cube" );
 	}
 
+	/**
+	 * Sets the context used to build the fact table of the cube.
+	 * 
+	 * @param buildContext
+	 */
+	public void setBuildContext( CubeBuildContext buildContext )
+	{
+		this.buildContext = buildContext;
+	}
+
 	/**
 	 * 
 	 * @param keyColumnNames
@@ -124,6 +138,7 @@ public class Cube implements ICube
 		}
 		FactTableAccessor factTableConstructor = new FactTableAccessor( documentManager );
 		factTableConstructor.setMemoryCacheSize( cacheSize );
+		factTableConstructor.setBuildContext( buildContext );
 		factTable = factTableConstructor.saveFactTable( name,
 				factTableJointColumnNames,
 				DimJointColumnNames,
@@ -220,6 +235,20 @@ public class Cube implements ICube
 		return factTable;
 	}
 
+	/**
+	 * 
+	 * @return the pre-aggregated rollups saved with the cube
+	 * @throws IOException
+	 */
+	public synchronized CubeRollup[] getRollups( ) throws IOException
+	{
+		if ( rollups == null )
+		{
+			rollups = CubeRollup.load( documentManager, name );
+		}
+		return rollups;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.eclipse.birt.data.engine.olap.data.api.ICube#close()
@@ -17,11 +17,16 @@ import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.data.engine.aggregation.AggregationUtil;
 import org.eclipse.birt.data.engine.api.aggregation.AggregationManager;
+import org.eclipse.birt.data.engine.cache.MemoryBroker;
+import org.eclipse.birt.data.engine.cache.MemoryReservation;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.executor.ComparatorUtil;
 import org.eclipse.birt.data.engine.executor.cache.SizeOfUtil;
@@ -38,6 +43,7 @@ import org.eclipse.birt.data.engine.olap.data.impl.AggregationFunctionDefinition
 import org.eclipse.birt.data.engine.olap.data.impl.DimColumn;
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.Member;
 import org.eclipse.birt.data.engine.olap.data.util.BufferedStructureArray;
+import org.eclipse.birt.data.engine.olap.data.util.CubeBuildContext;
 import org.eclipse.birt.data.engine.olap.data.util.DataType;
 import org.eclipse.birt.data.engine.olap.data.util.DiskSortedStack;
 import org.eclipse.birt.data.engine.olap.data.util.IDiskArray;
@@ -74,6 +80,15 @@ public class AggregationExecutor
 	public Row4Aggregation[] aggregationRow;
 	private AggregationFunctionDefinition simpleFunc;
 	private boolean existReferenceDate = false;
+	private int mergeBufferSize;
+	
+	//the memory of the sort buffers reserved from the process wide broker
+	private MemoryReservation reservation;
+	private static final int MIN_SORT_BUFFER_SIZE = 100;
+	
+	//the other partitions of the fact table, scanned concurrently with dataSet4Aggregation
+	private IDataSet4Aggregation[] partitions;
+	private CubeBuildContext partitionContext;
 	
 	private static String[] simpleFuncNames = new String[]{
 		"SUM",
@@ -157,6 +172,63 @@ public class AggregationExecutor
 				"AggregationExecutor" );
 	}
 	
+	/**
+	 * Whether the rows of the fact table can be aggregated in partitions. It is
+	 * true if all the aggregations use the same SUM, MAX or MIN function, whose
+	 * partial results are merged by MergeRow4Aggregation regardless of the
+	 * order of the rows. Other functions, such as median or FIRST, are
+	 * calculated from the rows of a single scan.
+	 * 
+	 * @return
+	 */
+	public boolean isMergeable( )
+	{
+		if ( simpleFunc == null || existReferenceDate )
+		{
+			return false;
+		}
+		String funcName = simpleFunc.getFunctionName( );
+		return "SUM".equals( funcName )
+				|| "MAX".equals( funcName ) || "MIN".equals( funcName );
+	}
+	
+	/**
+	 * Sets the other partitions of the fact table. The partitions are scanned
+	 * by the threads of the context together with the data set of this
+	 * executor, and closed by the executor. It is only used if isMergeable()
+	 * returns true.
+	 * 
+	 * @param partitions
+	 *            the data sets of the segments not read by the data set of
+	 *            this executor
+	 * @param context
+	 */
+	public void setPartitions( IDataSet4Aggregation[] partitions,
+			CubeBuildContext context )
+	{
+		this.partitions = partitions;
+		this.partitionContext = context;
+	}
+	
+	private void closePartitions( ) throws IOException, DataException
+	{
+		if ( partitions == null )
+		{
+			return;
+		}
+		try
+		{
+			for ( int i = 0; i < partitions.length; i++ )
+			{
+				partitions[i].close( );
+			}
+		}
+		finally
+		{
+			partitions = null;
+		}
+	}
+	
 	private static boolean existReferenceDate( AggregationDefinition[] aggregations ) throws DataException
 	{
 		for( int i = 0; i < aggregations.length; i++ )
@@ -340,6 +412,11 @@ public class AggregationExecutor
 		}
 		
 		this.dataSet4Aggregation.close( );
+		if ( reservation != null )
+		{
+			reservation.close( );
+			reservation = null;
+		}
 		return resultSets;
 	}
 	
@@ -685,12 +762,90 @@ public class AggregationExecutor
 //				facttableRowIterator, parameterColIndexs );
 
 		prepareSortedStacks( );
-		int measureCount = dataSet4Aggregation.getMetaInfo( ).getMeasureInfos( ).length;
-		int factRowCount = 0;
 		if( this.aggregationRow == null )
 		{
 			this.aggregationRow = new Row4Aggregation[allSortedFactRows.size( )];
 		}
+		AtomicInteger factRowCount = new AtomicInteger( );
+		if ( partitions != null && partitions.length > 0 )
+		{
+			populateSortedFactRowsConcurrently( factRowCount, stopSign );
+		}
+		else
+		{
+			populateSortedFactRows( dataSet4Aggregation,
+					aggregationRow,
+					mergeRow4Aggregations,
+					factRowCount,
+					stopSign );
+		}
+	}
+
+	/**
+	 * Scans the rows of the partitions in the threads of the context. Every
+	 * thread merges the rows of its own partition, and pushes the merged rows
+	 * to the shared sorted stacks.
+	 * 
+	 * @param factRowCount
+	 * @param stopSign
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void populateSortedFactRowsConcurrently(
+			final AtomicInteger factRowCount, final StopSign stopSign )
+			throws IOException, DataException
+	{
+		final IDataSet4Aggregation[] dataSets = new IDataSet4Aggregation[partitions.length + 1];
+		dataSets[0] = dataSet4Aggregation;
+		System.arraycopy( partitions, 0, dataSets, 1, partitions.length );
+		final int bufferSize = Math.max( 1, mergeBufferSize / dataSets.length );
+		// the partitions have their own merge buffers
+		this.mergeRow4Aggregations = null;
+		List<Future<Object>> futures = new ArrayList<Future<Object>>( );
+		try
+		{
+			for ( int i = 0; i < dataSets.length; i++ )
+			{
+				final IDataSet4Aggregation dataSet = dataSets[i];
+				futures.add( partitionContext.submit( new Callable<Object>( ) {
+
+					public Object call( ) throws Exception
+					{
+						populateSortedFactRows( dataSet,
+								new Row4Aggregation[allSortedFactRows.size( )],
+								createMergeRow4Aggregations( bufferSize ),
+								factRowCount,
+								stopSign );
+						return null;
+					}
+				} ) );
+			}
+			for ( int i = 0; i < futures.size( ); i++ )
+			{
+				partitionContext.get( futures.get( i ) );
+			}
+		}
+		catch ( BirtException e )
+		{
+			throw DataException.wrap( e );
+		}
+		finally
+		{
+			for ( int i = 0; i < futures.size( ); i++ )
+			{
+				futures.get( i ).cancel( false );
+			}
+			closePartitions( );
+		}
+	}
+
+	private void populateSortedFactRows( IDataSet4Aggregation dataSet,
+			Row4Aggregation[] aggregationRow,
+			MergeRow4Aggregation[] mergeRow4Aggregations,
+			AtomicInteger factRowCount, StopSign stopSign ) throws IOException,
+			DataException
+	{
+		int measureCount = dataSet.getMetaInfo( ).getMeasureInfos( ).length;
 		DiskSortedStackWrapper[] diskSortedStackWrapper = new DiskSortedStackWrapper[allSortedFactRows.size( )];
 		for ( int i = 0; i < allSortedFactRows.size( ); i++ )
 		{
@@ -698,28 +853,28 @@ public class AggregationExecutor
 		}
 		try
 		{
-			while ( dataSet4Aggregation.next( ) && !stopSign.isStopped( ) )
+			while ( dataSet.next( ) && !stopSign.isStopped( ) )
 			{
 				for ( int i = 0; i < allSortedFactRows.size( ); i++ )
 				{
 					int[] levelIndex = diskSortedStackWrapper[i].levelIndex;
-					if( !dataSet4Aggregation.isDuplicatedRow() )
+					if( !dataSet.isDuplicatedRow() )
 					{
-						Member[] members = getLevelMembers( levelIndex );
+						Member[] members = getLevelMembers( dataSet, levelIndex );
 						if( aggregationRow[i] != null )
 						{
 							if( existReferenceDate )
 							{
-								diskSortedStackWrapper[i].diskSortedStack.push( aggregationRow[i] );
+								diskSortedStackWrapper[i].push( aggregationRow[i] );
 							}
 							else
 							{
-								Row4Aggregation popRow = this.mergeRow4Aggregations[i].push( aggregationRow[i] );
+								Row4Aggregation popRow = mergeRow4Aggregations[i].push( aggregationRow[i] );
 								if( popRow != null )
-									diskSortedStackWrapper[i].diskSortedStack.push( popRow );
+									diskSortedStackWrapper[i].push( popRow );
 							}
 						}
-						aggregationRow[i] = createRow4Aggregation( );
+						aggregationRow[i] = createRow4Aggregation( dataSet );
 						aggregationRow[i].setLevelMembers( members );
 						if ( aggregationRow[i].getLevelMembers( ) == null )
 						{
@@ -728,9 +883,9 @@ public class AggregationExecutor
 						aggregationRow[i].setMeasures( new Object[measureCount] );
 						for ( int j = 0; j < measureCount; j++ )
 						{
-							aggregationRow[i].getMeasures( )[j] = dataSet4Aggregation.getMeasureValue( j );
+							aggregationRow[i].getMeasures( )[j] = dataSet.getMeasureValue( j );
 						}
-						aggregationRow[i].setParameterValues( getParameterValues( ) );
+						aggregationRow[i].setParameterValues( getParameterValues( dataSet ) );
 
 					}
 					else
@@ -738,14 +893,13 @@ public class AggregationExecutor
 						Object[] measures = new Object[measureCount];
 						for ( int j = 0; j < measureCount; j++ )
 						{
-							measures[j] = dataSet4Aggregation.getMeasureValue( j );
+							measures[j] = dataSet.getMeasureValue( j );
 						}
 						aggregationRow[i].addMeasure( measures );
 						addPosition( aggregationRow[i] );
 					}
 				}
-				factRowCount++;
-				if( maxDataObjectRows >0 && factRowCount > maxDataObjectRows )
+				if( maxDataObjectRows >0 && factRowCount.incrementAndGet( ) > maxDataObjectRows )
 					throw new DataException( ResourceConstants.EXCEED_MAX_DATA_OBJECT_ROWS );
 			}
 			for ( int i = 0; i < allSortedFactRows.size( ); i++ )
@@ -754,23 +908,23 @@ public class AggregationExecutor
 				{
 					if( existReferenceDate )
 					{
-						diskSortedStackWrapper[i].diskSortedStack.push( aggregationRow[i] );
+						diskSortedStackWrapper[i].push( aggregationRow[i] );
 					}
 					else
 					{
-						Row4Aggregation popRow = this.mergeRow4Aggregations[i].push( aggregationRow[i] );
+						Row4Aggregation popRow = mergeRow4Aggregations[i].push( aggregationRow[i] );
 						if( popRow != null )
-							diskSortedStackWrapper[i].diskSortedStack.push( popRow );
+							diskSortedStackWrapper[i].push( popRow );
 					}
 				}
 				if( !existReferenceDate )
 				{
-					List<Row4Aggregation> remainRows = this.mergeRow4Aggregations[i].getAll( );
+					List<Row4Aggregation> remainRows = mergeRow4Aggregations[i].getAll( );
 					for( int j = 0; j < remainRows.size(); j++ )
 					{
-						diskSortedStackWrapper[i].diskSortedStack.push( remainRows.get( j ) );
+						diskSortedStackWrapper[i].push( remainRows.get( j ) );
 					}
-					this.mergeRow4Aggregations[i] = null;
+					mergeRow4Aggregations[i] = null;
 				}
 			}
 		}
@@ -780,10 +934,10 @@ public class AggregationExecutor
 		}
 	}
 	
-	protected Row4Aggregation createRow4Aggregation( )
+	protected Row4Aggregation createRow4Aggregation( IDataSet4Aggregation dataSet )
 	{
 		Row4Aggregation aggregationRow = new Row4Aggregation( );
-		aggregationRow.setDimPos( dataSet4Aggregation.getDimensionPosition( ) );
+		aggregationRow.setDimPos( dataSet.getDimensionPosition( ) );
 		return aggregationRow;
 	}
 
@@ -793,14 +947,14 @@ public class AggregationExecutor
 	}
 	
 	
-	Member[] getLevelMembers( int[] levelIndex ) throws BirtException, IOException 
+	Member[] getLevelMembers( IDataSet4Aggregation dataSet, int[] levelIndex ) throws BirtException, IOException 
 	{
 		Member[] result = new Member[levelIndex.length / 2];
 		for ( int i = 0; i < result.length; i++ )
 		{
 			int dim = levelIndex[i * 2];
 			int level = levelIndex[i * 2 + 1];
-			result[i] = dataSet4Aggregation.getMember( dim, level );
+			result[i] = dataSet.getMember( dim, level );
 			if ( result[i] == null )
 			{
 				return null;
@@ -809,7 +963,7 @@ public class AggregationExecutor
 		return result;
 	}
 	
-	Object[] getParameterValues( ) throws BirtException, IOException
+	Object[] getParameterValues( IDataSet4Aggregation dataSet ) throws BirtException, IOException
 	{
 		if( paraInfos == null || paraInfos.length == 0 )
 		{
@@ -818,7 +972,7 @@ public class AggregationExecutor
 		Object[] reValues = new Object[paraInfos.length];
 		for ( int i = 0; i < reValues.length; i++ )
 		{
-			Member member = dataSet4Aggregation.getMember( paraInfos[i].getDimIndex( ), paraInfos[i].getLevelIndex( ) );
+			Member member = dataSet.getMember( paraInfos[i].getDimIndex( ), paraInfos[i].getLevelIndex( ) );
 			if( paraInfos[i].isKey( ) )
 			{
 				reValues[i] = member.getKeyValues( )[paraInfos[i].getColumnIndex( )];
@@ -844,6 +998,9 @@ public class AggregationExecutor
 		allSortedFactRows = new ArrayList( );
 		int levelSize = 0;
 		int measureSize = 0;
+		// memoryCacheSize is an extra limit of this task, the sort buffers are
+		// also limited by the process wide broker
+		boolean useBroker = MemoryBroker.getInstance( ).isEnabled( );
 		while ( true )
 		{
 			int maxLevelCount = -1;
@@ -869,7 +1026,7 @@ public class AggregationExecutor
 			{
 				break;
 			}
-			if ( memoryCacheSize != 0 )
+			if ( memoryCacheSize != 0 || useBroker )
 			{
 				if( levelSize == 0 )
 					levelSize = getLevelSize( aggregationCalculators[aggregationIndex].aggregation.getLevels( ) );
@@ -893,7 +1050,7 @@ public class AggregationExecutor
 					false,
 					comparator,
 					Row4Aggregation.getCreator( ) );
-			if ( memoryCacheSize == 0 )
+			if ( memoryCacheSize == 0 && !useBroker )
 			{
 				diskSortedStack.setBufferSize( 10000 );
 				diskSortedStack.setUseMemoryOnly( true );
@@ -913,16 +1070,22 @@ public class AggregationExecutor
 				}
 			}
 		}
-		mergeRow4Aggregations = new MergeRow4Aggregation[allSortedFactRows.size()];
 		int bufferSize = 10000;
-		if ( memoryCacheSize > 0 )
+		if ( memoryCacheSize > 0 || useBroker )
 		{
 			int rowSize = 16 + ( 4 + ( levelSize + measureSize ) - 1 ) / 8 * 8;
-			bufferSize = (int) (this.memoryCacheSize*4/5/rowSize);
-			if( !this.existReferenceDate )
+			if ( memoryCacheSize > 0 )
 			{
-				if( this.simpleFunc == null )
-					bufferSize /= 5;
+				bufferSize = (int) (this.memoryCacheSize*4/5/rowSize);
+				if( !this.existReferenceDate )
+				{
+					if( this.simpleFunc == null )
+						bufferSize /= 5;
+				}
+			}
+			if ( useBroker )
+			{
+				bufferSize = reserveSortBuffers( bufferSize, rowSize );
 			}
 			for (int i = 0; i < allSortedFactRows.size( ); i++)
 			{
@@ -931,11 +1094,48 @@ public class AggregationExecutor
 				diskSortedStackReader.getDiskSortedStack().setBufferSize( bufferSize );
 			}
 		}
+		mergeBufferSize = bufferSize;
+		mergeRow4Aggregations = createMergeRow4Aggregations( bufferSize );
+	}
+	
+	/**
+	 * Reserve the memory of the sort buffers from the process wide broker. The
+	 * buffers are made smaller until the memory is granted.
+	 * 
+	 * @param bufferSize
+	 *            the number of rows of every buffer
+	 * @param rowSize
+	 *            the estimated size of a row
+	 * @return the number of rows of every buffer which can be reserved
+	 */
+	private int reserveSortBuffers( int bufferSize, int rowSize )
+	{
+		if ( reservation != null )
+		{
+			reservation.close( );
+		}
+		reservation = MemoryBroker.getInstance( )
+				.newReservation( "AggregationExecutor" );
+		int stackCount = Math.max( 1, allSortedFactRows.size( ) );
+		while ( bufferSize > MIN_SORT_BUFFER_SIZE
+				&& !reservation.reserve( (long) bufferSize * rowSize * stackCount ) )
+		{
+			bufferSize = Math.max( MIN_SORT_BUFFER_SIZE, bufferSize / 2 );
+		}
+		// the buffers are allocated at once, they can't spill on request
+		reservation.setSpillable( false );
+		return Math.max( MIN_SORT_BUFFER_SIZE, bufferSize );
+	}
+	
+	private MergeRow4Aggregation[] createMergeRow4Aggregations( int bufferSize ) throws DataException
+	{
+		MergeRow4Aggregation[] result = new MergeRow4Aggregation[allSortedFactRows.size()];
 		for (int i = 0; i < allSortedFactRows.size( ); i++)
 		{
-			mergeRow4Aggregations[i] = new MergeRow4Aggregation( bufferSize, simpleFunc,
+			result[i] = new MergeRow4Aggregation( bufferSize, simpleFunc,
 					measureIndexes4Merge, parameterColIndex4Merge );
 		}
+		return result;
 	}
 	
 	private int getMeasureSize( ) throws IOException
@@ -1202,6 +1402,20 @@ class DiskSortedStackWrapper
 		return this.diskSortedStack;
 	}
 	
+	/**
+	 * Pushes a row to the stack, the rows may be pushed by several threads.
+	 * 
+	 * @param o
+	 * @throws IOException
+	 */
+	void push( Object o ) throws IOException
+	{
+		synchronized ( diskSortedStack )
+		{
+			diskSortedStack.push( o );
+		}
+	}
+	
 	/**
 	 * 
 	 * @return
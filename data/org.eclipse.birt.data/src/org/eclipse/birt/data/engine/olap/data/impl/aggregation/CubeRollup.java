@@ -0,0 +1,530 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.impl.aggregation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
+import org.eclipse.birt.data.engine.api.aggregation.AggregationManager;
+import org.eclipse.birt.data.engine.api.aggregation.IAggrFunction;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.i18n.DataResourceHandle;
+import org.eclipse.birt.data.engine.i18n.ResourceConstants;
+import org.eclipse.birt.data.engine.olap.data.api.DimLevel;
+import org.eclipse.birt.data.engine.olap.data.api.IAggregationResultRow;
+import org.eclipse.birt.data.engine.olap.data.api.IAggregationResultSet;
+import org.eclipse.birt.data.engine.olap.data.document.IDocumentManager;
+import org.eclipse.birt.data.engine.olap.data.document.IDocumentObject;
+import org.eclipse.birt.data.engine.olap.data.impl.AggregationDefinition;
+import org.eclipse.birt.data.engine.olap.data.impl.AggregationFunctionDefinition;
+import org.eclipse.birt.data.engine.olap.data.impl.AggregationResultSetSaveUtil;
+import org.eclipse.birt.data.engine.olap.data.impl.NamingUtil;
+import org.eclipse.birt.data.engine.olap.data.impl.dimension.Member;
+import org.eclipse.birt.data.engine.olap.data.util.BufferedStructureArray;
+import org.eclipse.birt.data.engine.olap.data.util.Bytes;
+import org.eclipse.birt.data.engine.olap.data.util.IDiskArray;
+
+/**
+ * A pre-aggregated rollup of a cube, which holds the SUM, COUNT, MIN and MAX
+ * of every measure grouped by some levels. It is built with the cube and
+ * saved in the cube document, and answers the aggregations on the same
+ * levels or on a subset of them without scanning the fact table, by
+ * aggregating the rows of the rollup again.
+ *
+ * Only the aggregations which do not depend on the single fact rows can be
+ * answered: no filter, no parameter column, no time function and no
+ * computed measure. The checks on the filters are done by the caller.
+ */
+
+public class CubeRollup
+{
+
+	private static final String[] FUNCTIONS = {
+			"SUM", "COUNT", "MIN", "MAX" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+	};
+	private static final String COUNT = "COUNT"; //$NON-NLS-1$
+
+	private static final CubeRollup[] EMPTY = new CubeRollup[0];
+
+	private IDocumentManager documentManager;
+	private String docName;
+	private DimLevel[] levels;
+	private String[] measureNames;
+	private int rowCount;
+	private IAggregationResultSet resultSet;
+
+	private CubeRollup( IDocumentManager documentManager, String docName,
+			DimLevel[] levels, String[] measureNames, int rowCount )
+	{
+		this.documentManager = documentManager;
+		this.docName = docName;
+		this.levels = levels;
+		this.measureNames = measureNames;
+		this.rowCount = rowCount;
+	}
+
+	/**
+	 * Creates the aggregation which computes a rollup.
+	 *
+	 * @param levels
+	 * @param measureNames
+	 *            the measures of the cube
+	 * @return
+	 */
+	public static AggregationDefinition createAggregation( DimLevel[] levels,
+			String[] measureNames )
+	{
+		AggregationFunctionDefinition[] functions = new AggregationFunctionDefinition[measureNames.length
+				* FUNCTIONS.length];
+		for ( int i = 0; i < measureNames.length; i++ )
+		{
+			for ( int j = 0; j < FUNCTIONS.length; j++ )
+			{
+				functions[i * FUNCTIONS.length + j] = new AggregationFunctionDefinition( getAggregationName( measureNames[i],
+						FUNCTIONS[j] ),
+						measureNames[i],
+						FUNCTIONS[j] );
+			}
+		}
+		return new AggregationDefinition( levels, null, functions );
+	}
+
+	/**
+	 * Saves the rollups of a cube, computed by the aggregations created by
+	 * createAggregation. The rollups saved before are replaced.
+	 *
+	 * @param documentManager
+	 * @param cubeName
+	 * @param measureNames
+	 * @param resultSets
+	 * @throws IOException
+	 */
+	public static void save( IDocumentManager documentManager,
+			String cubeName, String[] measureNames,
+			IAggregationResultSet[] resultSets ) throws IOException
+	{
+		IDocumentObject listDocument = documentManager.createDocumentObject( NamingUtil.getRollupListDocName( cubeName ) );
+		listDocument.writeInt( resultSets.length );
+		listDocument.writeInt( measureNames.length );
+		for ( int i = 0; i < measureNames.length; i++ )
+		{
+			listDocument.writeString( measureNames[i] );
+		}
+		for ( int i = 0; i < resultSets.length; i++ )
+		{
+			DimLevel[] levels = resultSets[i].getAllLevels( );
+			int levelCount = levels == null ? 0 : levels.length;
+			listDocument.writeInt( levelCount );
+			for ( int j = 0; j < levelCount; j++ )
+			{
+				listDocument.writeString( levels[j].getDimensionName( ) );
+				listDocument.writeString( levels[j].getLevelName( ) );
+			}
+			listDocument.writeInt( resultSets[i].length( ) );
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream( );
+			DataOutputStream outputStream = new DataOutputStream( bytes );
+			AggregationResultSetSaveUtil.saveResultSet( outputStream,
+					resultSets[i] );
+			outputStream.close( );
+			IDocumentObject document = documentManager.createDocumentObject( NamingUtil.getRollupDocName( cubeName,
+					i ) );
+			document.writeBytes( new Bytes( bytes.toByteArray( ) ) );
+			document.close( );
+		}
+		listDocument.close( );
+	}
+
+	/**
+	 * Removes the rollups saved by a previous build of the cube.
+	 *
+	 * @param documentManager
+	 * @param cubeName
+	 * @throws IOException
+	 */
+	public static void clear( IDocumentManager documentManager,
+			String cubeName ) throws IOException
+	{
+		if ( documentManager.exist( NamingUtil.getRollupListDocName( cubeName ) ) )
+		{
+			save( documentManager,
+					cubeName,
+					new String[0],
+					new IAggregationResultSet[0] );
+		}
+	}
+
+	/**
+	 *
+	 * @param documentManager
+	 * @param cubeName
+	 * @return the rollups saved with the cube, or an empty array
+	 * @throws IOException
+	 */
+	public static CubeRollup[] load( IDocumentManager documentManager,
+			String cubeName ) throws IOException
+	{
+		String listDocName = NamingUtil.getRollupListDocName( cubeName );
+		if ( !documentManager.exist( listDocName ) )
+		{
+			return EMPTY;
+		}
+		IDocumentObject listDocument = documentManager.openDocumentObject( listDocName );
+		try
+		{
+			CubeRollup[] result = new CubeRollup[listDocument.readInt( )];
+			String[] measureNames = new String[listDocument.readInt( )];
+			for ( int i = 0; i < measureNames.length; i++ )
+			{
+				measureNames[i] = listDocument.readString( );
+			}
+			for ( int i = 0; i < result.length; i++ )
+			{
+				DimLevel[] levels = new DimLevel[listDocument.readInt( )];
+				for ( int j = 0; j < levels.length; j++ )
+				{
+					String dimensionName = listDocument.readString( );
+					levels[j] = new DimLevel( dimensionName,
+							listDocument.readString( ) );
+				}
+				result[i] = new CubeRollup( documentManager,
+						NamingUtil.getRollupDocName( cubeName, i ),
+						levels,
+						measureNames,
+						listDocument.readInt( ) );
+			}
+			return result;
+		}
+		finally
+		{
+			listDocument.close( );
+		}
+	}
+
+	/**
+	 * Finds the smallest rollup which can answer the aggregation.
+	 *
+	 * @param rollups
+	 * @param aggregation
+	 * @return null if no rollup can answer the aggregation
+	 */
+	public static CubeRollup find( CubeRollup[] rollups,
+			AggregationDefinition aggregation )
+	{
+		if ( !isSupported( aggregation ) )
+		{
+			return null;
+		}
+		CubeRollup result = null;
+		for ( int i = 0; i < rollups.length; i++ )
+		{
+			if ( rollups[i].covers( aggregation )
+					&& ( result == null || rollups[i].rowCount < result.rowCount ) )
+			{
+				result = rollups[i];
+			}
+		}
+		return result;
+	}
+
+	private static boolean isSupported( AggregationDefinition aggregation )
+	{
+		if ( aggregation.getDrilledInfo( ) != null
+				|| aggregation.getAggregationTimeFunctions( ) != null )
+		{
+			return false;
+		}
+		AggregationFunctionDefinition[] functions = aggregation.getAggregationFunctions( );
+		if ( functions == null )
+		{
+			return true;
+		}
+		for ( int i = 0; i < functions.length; i++ )
+		{
+			if ( functions[i].getMeasureName( ) == null
+					|| functions[i].getParaCol( ) != null
+					|| functions[i].getFilterEvalHelper( ) != null
+					|| functions[i].getTimeFunction( ) != null
+					|| functions[i].getTimeFunctionFilter( ) != null
+					|| indexOf( FUNCTIONS, functions[i].getFunctionName( ) ) < 0 )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean covers( AggregationDefinition aggregation )
+	{
+		DimLevel[] targetLevels = aggregation.getLevels( );
+		if ( targetLevels != null )
+		{
+			for ( int i = 0; i < targetLevels.length; i++ )
+			{
+				if ( targetLevels[i].getAttrName( ) != null
+						|| indexOf( levels, targetLevels[i] ) < 0 )
+				{
+					return false;
+				}
+			}
+		}
+		AggregationFunctionDefinition[] functions = aggregation.getAggregationFunctions( );
+		if ( functions != null )
+		{
+			for ( int i = 0; i < functions.length; i++ )
+			{
+				if ( indexOf( measureNames, functions[i].getMeasureName( ) ) < 0 )
+				{
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Computes the aggregation from the rows of the rollup. The rows of the
+	 * result are sorted as the rows computed from the fact table.
+	 *
+	 * @param aggregation
+	 *            an aggregation covered by this rollup
+	 * @param memoryCacheSize
+	 * @return
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	public IAggregationResultSet aggregate( AggregationDefinition aggregation,
+			long memoryCacheSize ) throws IOException, DataException
+	{
+		IAggregationResultSet rollup = getResultSet( );
+
+		DimLevel[] targetLevels = aggregation.getLevels( );
+		int levelCount = targetLevels == null ? 0 : targetLevels.length;
+		int[] levelIndex = new int[levelCount];
+		String[][] keyNames = new String[levelCount][];
+		String[][] attributeNames = new String[levelCount][];
+		for ( int i = 0; i < levelCount; i++ )
+		{
+			levelIndex[i] = indexOf( levels, targetLevels[i] );
+			keyNames[i] = rollup.getKeyNames( )[levelIndex[i]];
+			attributeNames[i] = rollup.getAttributeNames( )[levelIndex[i]];
+		}
+
+		AggregationFunctionDefinition[] functions = aggregation.getAggregationFunctions( );
+		int functionCount = functions == null ? 0 : functions.length;
+		int[] valueIndex = new int[functionCount];
+		IAggrFunction[] aggrFunctions = new IAggrFunction[functionCount];
+		for ( int i = 0; i < functionCount; i++ )
+		{
+			valueIndex[i] = rollup.getAggregationIndex( getAggregationName( functions[i].getMeasureName( ),
+					functions[i].getFunctionName( ) ) );
+			if ( !COUNT.equals( functions[i].getFunctionName( ) ) )
+			{
+				aggrFunctions[i] = AggregationManager.getInstance( )
+						.getAggregation( functions[i].getFunctionName( ) );
+				if ( aggrFunctions[i] == null )
+				{
+					throw new DataException( DataResourceHandle.getInstance( )
+							.getMessage( ResourceConstants.UNSUPPORTED_FUNCTION )
+							+ functions[i].getFunctionName( ) );
+				}
+			}
+		}
+
+		// the partial SUM, MIN and MAX values are merged by the same
+		// function, as the partitions of a fact table are
+		Map<RowHashKey, Accumulator[]> groups = new HashMap<RowHashKey, Accumulator[]>( );
+		List<AggregationResultRow> rows = new ArrayList<AggregationResultRow>( );
+		List<Accumulator[]> rowAccumulators = new ArrayList<Accumulator[]>( );
+		for ( int i = 0; i < rollup.length( ); i++ )
+		{
+			rollup.seek( i );
+			IAggregationResultRow rollupRow = rollup.getCurrentRow( );
+			Member[] members = new Member[levelCount];
+			for ( int j = 0; j < levelCount; j++ )
+			{
+				members[j] = rollupRow.getLevelMembers( )[levelIndex[j]];
+			}
+			RowHashKey key = new RowHashKey( members, null );
+			Accumulator[] accumulators = groups.get( key );
+			if ( accumulators == null )
+			{
+				accumulators = new Accumulator[functionCount];
+				for ( int j = 0; j < functionCount; j++ )
+				{
+					accumulators[j] = aggrFunctions[j] == null
+							? new CountAccumulator( )
+							: aggrFunctions[j].newAccumulator( );
+					accumulators[j].start( );
+				}
+				groups.put( key, accumulators );
+				rows.add( new AggregationResultRow( levelCount == 0 ? null
+						: members, null ) );
+				rowAccumulators.add( accumulators );
+			}
+			for ( int j = 0; j < functionCount; j++ )
+			{
+				accumulators[j].onRow( new Object[]{
+					rollupRow.getAggregationValues( )[valueIndex[j]]
+				} );
+			}
+		}
+		if ( functionCount > 0 )
+		{
+			for ( int i = 0; i < rows.size( ); i++ )
+			{
+				Accumulator[] accumulators = rowAccumulators.get( i );
+				Object[] values = new Object[functionCount];
+				for ( int j = 0; j < functionCount; j++ )
+				{
+					accumulators[j].finish( );
+					values[j] = accumulators[j].getValue( );
+				}
+				rows.get( i ).setAggregationValues( values );
+			}
+		}
+		if ( levelCount > 0 )
+		{
+			int[] keyLevelIndexs = new int[levelCount];
+			for ( int i = 0; i < levelCount; i++ )
+			{
+				keyLevelIndexs[i] = i;
+			}
+			Collections.sort( rows,
+					new AggregationResultRowComparator( keyLevelIndexs,
+							aggregation.getSortTypes( ) ) );
+		}
+
+		IDiskArray result = createResultArray( levelCount,
+				functionCount,
+				memoryCacheSize );
+		for ( AggregationResultRow row : rows )
+		{
+			result.add( row );
+		}
+		return new AggregationResultSet( aggregation,
+				result,
+				keyNames,
+				attributeNames );
+	}
+
+	/**
+	 *
+	 * @return the levels of the rollup
+	 */
+	public DimLevel[] getLevels( )
+	{
+		return levels;
+	}
+
+	/**
+	 *
+	 * @return the number of rows in the rollup
+	 */
+	public int getRowCount( )
+	{
+		return rowCount;
+	}
+
+	private synchronized IAggregationResultSet getResultSet( )
+			throws IOException
+	{
+		if ( resultSet == null )
+		{
+			IDocumentObject document = documentManager.openDocumentObject( docName );
+			try
+			{
+				DataInputStream inputStream = new DataInputStream( new ByteArrayInputStream( document.readBytes( )
+						.bytesValue( ) ) );
+				// the rollups are small, they are kept in memory
+				resultSet = AggregationResultSetSaveUtil.loadResultSet( inputStream,
+						0 );
+			}
+			finally
+			{
+				document.close( );
+			}
+		}
+		return resultSet;
+	}
+
+	private static IDiskArray createResultArray( int levelCount,
+			int functionCount, long memoryCacheSize )
+	{
+		int rowSize = 16 + ( 4 + ( levelCount * 64 + functionCount * 64 ) - 1 )
+				/ 8 * 8;
+		int bufferSize = (int) ( memoryCacheSize / rowSize );
+		if ( bufferSize != 0 )
+		{
+			return new BufferedStructureArray( AggregationResultRow.getCreator( ),
+					bufferSize );
+		}
+		BufferedStructureArray result = new BufferedStructureArray( AggregationResultRow.getCreator( ),
+				1000 );
+		result.setUseMemoryOnly( true );
+		return result;
+	}
+
+	private static String getAggregationName( String measureName,
+			String functionName )
+	{
+		return "_${ROLLUP}$_" + functionName + "_" + measureName; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private static int indexOf( Object[] array, Object value )
+	{
+		for ( int i = 0; i < array.length; i++ )
+		{
+			if ( array[i].equals( value ) )
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Sums the partial counts.
+	 */
+	private static class CountAccumulator extends Accumulator
+	{
+
+		private int count;
+
+		public void start( ) throws DataException
+		{
+			count = 0;
+		}
+
+		public void onRow( Object[] args ) throws DataException
+		{
+			if ( args[0] instanceof Number )
+			{
+				count += ( (Number) args[0] ).intValue( );
+			}
+		}
+
+		public Object getValue( ) throws DataException
+		{
+			return Integer.valueOf( count );
+		}
+	}
+}
@@ -26,10 +26,10 @@ import org.eclipse.birt.data.engine.olap.data.impl.dimension.Dimension;
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.DimensionRow;
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.Level;
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.Member;
-import org.eclipse.birt.data.engine.olap.data.util.BufferedPrimitiveDiskArray;
 import org.eclipse.birt.data.engine.olap.data.util.CompareUtil;
 import org.eclipse.birt.data.engine.olap.data.util.IDiskArray;
 import org.eclipse.birt.data.engine.olap.data.util.OrderedDiskArray;
+import org.eclipse.birt.data.engine.olap.data.util.PositionBitmap;
 import org.eclipse.birt.data.engine.olap.data.util.SelectionUtil;
 import org.eclipse.birt.data.engine.olap.data.util.SetUtil;
 import org.eclipse.birt.data.engine.olap.util.filter.IJSDimensionFilterHelper;
@@ -117,7 +117,7 @@ public class LevelFilterHelper
 	private IDiskArray getDimFilterPositions( List dimFilterList )
 			throws IOException, DataException
 	{
-		IDiskArray result = new BufferedPrimitiveDiskArray( dimPosition.size( ) );
+		IDiskArray result = new PositionBitmap( );
 		for ( int i = 0; i < dimPosition.size( ); i++ )
 		{
 			Integer pos = (Integer) dimPosition.get( i );
@@ -180,7 +180,7 @@ public class LevelFilterHelper
 			IJSTopBottomFilterHelper filterHelper ) throws IOException
 	{
 		// final selection positions
-		IDiskArray dimPositionArray = new OrderedDiskArray( );
+		IDiskArray dimPositionArray = new PositionBitmap( );
 		for ( Iterator itr = dimValueArrayList.iterator( ); itr.hasNext( ); )
 		{
 			IDiskArray dimValues = (IDiskArray) itr.next( );
@@ -325,7 +325,7 @@ public class LevelFilterHelper
 	private IDiskArray populateValidPositions( Map validFilterMap )
 			throws IOException
 	{
-		IDiskArray selectedPositions = new BufferedPrimitiveDiskArray( );
+		IDiskArray selectedPositions = new PositionBitmap( );
 		ILevel[] levels = dimension.getHierarchy( ).getLevels( );
 		for ( int i = 0; i < dimPosition.size( ); i++ )
 		{
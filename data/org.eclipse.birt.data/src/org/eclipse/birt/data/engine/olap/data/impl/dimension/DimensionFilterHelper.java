@@ -12,15 +12,11 @@
 package org.eclipse.birt.data.engine.olap.data.impl.dimension;
 
 import java.io.IOException;
-import java.util.ArrayList;
 
-import org.eclipse.birt.data.engine.cache.Constants;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.olap.data.api.ISelection;
-import org.eclipse.birt.data.engine.olap.data.util.BaseDiskSortedStack;
 import org.eclipse.birt.data.engine.olap.data.util.IDiskArray;
-import org.eclipse.birt.data.engine.olap.data.util.IndexKey;
-import org.eclipse.birt.data.engine.olap.data.util.PrimitiveDiskSortedStack;
+import org.eclipse.birt.data.engine.olap.data.util.PositionBitmap;
 import org.eclipse.birt.data.engine.olap.data.util.SetUtil;
 
 /**
@@ -33,31 +29,18 @@ public class DimensionFilterHelper
 	 * 
 	 * @param levels
 	 * @param filters
-	 * @return
+	 * @return the positions selected by all the levels
 	 * @throws IOException
 	 * @throws DataException
 	 */
 	public static IDiskArray find( Level[] levels, ISelection[][] filters ) throws IOException, DataException
 	{
-		ArrayList filterResults = new ArrayList( );
+		PositionBitmap[] filterResults = new PositionBitmap[levels.length];
 		for ( int i = 0; i < levels.length; i++ )
 		{
-			filterResults.add( find(levels[i], filters[i]) );
-		}
-		PrimitiveDiskSortedStack[] stackResults = new PrimitiveDiskSortedStack[filterResults.size( )];
-		System.arraycopy( filterResults.toArray( ),
-				0,
-				stackResults,
-				0,
-				stackResults.length );
-		int maxLen = 0;
-		for( int i = 0; i < stackResults.length; i++ )
-		{
-			if( maxLen < stackResults[i].size( ) )
-				maxLen = stackResults[i].size( );
+			filterResults[i] = find( levels[i], filters[i] );
 		}
-		IDiskArray AndFilterResults = SetUtil.getIntersection( stackResults, maxLen );
-		return AndFilterResults;
+		return SetUtil.getIntersection( filterResults );
 	}
 	
 	/**
@@ -68,36 +51,12 @@ public class DimensionFilterHelper
 	 * @throws IOException
 	 * @throws DataException
 	 */
-	private static BaseDiskSortedStack find(Level level, ISelection[] filter) throws IOException, DataException
+	private static PositionBitmap find( Level level, ISelection[] filter ) throws IOException, DataException
 	{
-		IDiskArray indexKeyArray = null;
-		if( level.getDiskIndex() != null )
-			indexKeyArray = level.getDiskIndex().find( filter );
-		if ( indexKeyArray != null )
-		{
-			int len = 0;
-			for ( int i = 0; i < indexKeyArray.size( ); i++ )
-			{
-				IndexKey key = (IndexKey) indexKeyArray.get( i );
-				len += key.getDimensionPos().length;
-			}
-			PrimitiveDiskSortedStack resultStack = new PrimitiveDiskSortedStack( len,
-					true,
-					true );
-			for ( int i = 0; i < indexKeyArray.size( ); i++ )
-			{
-				IndexKey key = (IndexKey) indexKeyArray.get( i );
-				int[] pos = key.getDimensionPos( );
-				for( int j = 0; j < pos.length; j++ )
-				{
-					resultStack.push( Integer.valueOf( pos[j] ) );
-				}
-			}
-			return resultStack;
-		}
-		else
+		if ( level.getDiskIndex( ) == null )
 		{
-			return new PrimitiveDiskSortedStack( 1, true, true );
+			return new PositionBitmap( );
 		}
+		return level.getDiskIndex( ).findPositions( filter );
 	}
 }
@@ -81,6 +81,18 @@ public class DimensionResultIterator implements IDimensionResultIterator
 		}
 	}
 	
+	/**
+	 * Reads the rows of the selected positions from the dimension. The rows are
+	 * otherwise read when they are first accessed, which is not safe if the
+	 * iterators of a dimension are used by different threads.
+	 * 
+	 * @throws IOException
+	 */
+	public void loadDimensionRows( ) throws IOException
+	{
+		initDimensionRows( );
+	}
+	
 	/*
 	 * (non-Javadoc)
 	 * @see org.eclipse.birt.data.olap.data.api.IDimesionResulttSet#close()
@@ -14,6 +14,8 @@ package org.eclipse.birt.data.engine.olap.data.impl.dimension;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.data.engine.cache.Constants;
@@ -29,6 +31,7 @@ import org.eclipse.birt.data.engine.olap.data.document.IDocumentManager;
 import org.eclipse.birt.data.engine.olap.data.document.IDocumentObject;
 import org.eclipse.birt.data.engine.olap.data.impl.NamingUtil;
 import org.eclipse.birt.data.engine.olap.data.util.BufferedStructureArray;
+import org.eclipse.birt.data.engine.olap.data.util.CubeBuildContext;
 import org.eclipse.birt.data.engine.olap.data.util.DiskIndex;
 import org.eclipse.birt.data.engine.olap.data.util.DiskSortedStack;
 import org.eclipse.birt.data.engine.olap.data.util.IDiskArray;
@@ -47,6 +50,7 @@ public class Hierarchy implements IHierarchy
 	private String name = null;
 	private Map levelMap = new HashMap( );
 	private String dimensionName;
+	private CubeBuildContext buildContext;
 	
 	public Hierarchy( IDocumentManager documentManager, String dimensionName, String hierarchyName )
 	{
@@ -55,6 +59,17 @@ public class Hierarchy implements IHierarchy
 		this.name = hierarchyName;
 	}
 	
+	/**
+	 * Sets the context of the cube build, the indexes of the levels are
+	 * created concurrently if the build is parallel.
+	 * 
+	 * @param buildContext
+	 */
+	public void setBuildContext( CubeBuildContext buildContext )
+	{
+		this.buildContext = buildContext;
+	}
+	
 	/*
 	 * (non-Javadoc)
 	 * @see org.eclipse.birt.data.olap.data.api.IHierarchy#getLevels()
@@ -367,15 +382,7 @@ public class Hierarchy implements IHierarchy
 			currentIndex++;
 		}
 		validateDimensionMembers( sortedDimMembers );
-		DiskIndex[] diskIndex = new DiskIndex[indexKeyLists.length];
-		for ( int i = 0; i < indexKeyLists.length; i++ )
-		{
-			// create index for this level
-			diskIndex[i] = DiskIndex.createIndex( documentManager,
-					NamingUtil.getLevelIndexDocName( dimensionName, levelDefs[i].getLevelName( ) ),
-					indexKeyLists[i],
-					false );
-		}
+		DiskIndex[] diskIndex = createLevelIndexes( levelDefs, indexKeyLists );
 		levels = new Level[levelDefs.length];
 		for ( int i = 0; i < levels.length; i++ )
 		{
@@ -394,6 +401,73 @@ public class Hierarchy implements IHierarchy
 		return currentIndex;
 	}
 	
+	/**
+	 * Creates the index of each level. The indexes are independent from each
+	 * other, so they are created by the build threads when there are more
+	 * than one.
+	 * 
+	 * @param levelDefs
+	 * @param indexKeyLists
+	 * @return
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	private DiskIndex[] createLevelIndexes( ILevelDefn[] levelDefs,
+			final IDiskArray[] indexKeyLists ) throws IOException, BirtException
+	{
+		DiskIndex[] diskIndex = new DiskIndex[indexKeyLists.length];
+		final boolean savePositionBitmaps = buildContext != null
+				&& buildContext.isSavePositionBitmaps( );
+		if ( buildContext == null || !buildContext.isParallel( )
+				|| indexKeyLists.length < 2 )
+		{
+			for ( int i = 0; i < indexKeyLists.length; i++ )
+			{
+				// create index for this level
+				diskIndex[i] = DiskIndex.createIndex( documentManager,
+						NamingUtil.getLevelIndexDocName( dimensionName, levelDefs[i].getLevelName( ) ),
+						indexKeyLists[i],
+						false,
+						savePositionBitmaps );
+			}
+			return diskIndex;
+		}
+		Future[] futures = new Future[indexKeyLists.length];
+		for ( int i = 0; i < indexKeyLists.length; i++ )
+		{
+			final IDiskArray keyList = indexKeyLists[i];
+			final String indexName = NamingUtil.getLevelIndexDocName( dimensionName,
+					levelDefs[i].getLevelName( ) );
+			futures[i] = buildContext.submit( new Callable<DiskIndex>( ) {
+
+				public DiskIndex call( ) throws Exception
+				{
+					return DiskIndex.createIndex( documentManager,
+							indexName,
+							keyList,
+							false,
+							savePositionBitmaps );
+				}
+			} );
+		}
+		try
+		{
+			for ( int i = 0; i < futures.length; i++ )
+			{
+				diskIndex[i] = (DiskIndex) buildContext.get( futures[i] );
+			}
+		}
+		finally
+		{
+			// the remain indexes are useless if one of them failed
+			for ( int i = 0; i < futures.length; i++ )
+			{
+				futures[i].cancel( false );
+			}
+		}
+		return diskIndex;
+	}
+	
 	/**
 	 * 
 	 * @param sortedDimMembers
@@ -22,6 +22,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 import org.eclipse.birt.core.exception.BirtException;
@@ -49,6 +51,7 @@ import org.eclipse.birt.data.engine.olap.data.impl.facttable.DimensionDivider.Di
 import org.eclipse.birt.data.engine.olap.data.impl.facttable.DimensionDivision.IntRange;
 import org.eclipse.birt.data.engine.olap.data.util.BufferedStructureArray;
 import org.eclipse.birt.data.engine.olap.data.util.Bytes;
+import org.eclipse.birt.data.engine.olap.data.util.CubeBuildContext;
 import org.eclipse.birt.data.engine.olap.data.util.DiskSortedStack;
 import org.eclipse.birt.data.engine.olap.data.util.IDiskArray;
 import org.eclipse.birt.data.engine.olap.data.util.StructureDiskArray;
@@ -62,6 +65,7 @@ public class FactTableAccessor
 	private IDocumentManager documentManager =null;
 	private static Logger logger = Logger.getLogger( FactTableAccessor.class.getName( ) );
 	private long memoryCacheSize = 0;
+	private CubeBuildContext buildContext = null;
 	
 	public FactTableAccessor( IDocumentManager documentManager )
 	{
@@ -89,6 +93,7 @@ public class FactTableAccessor
 			String[] measureColumnName, Map calculatedMeasure, String[] measureColumnAggregations, StopSign stopSign )
 			throws BirtException, IOException
 	{
+		long startTime = System.nanoTime( );
 		FacttableRowContainer sortedFactTableRows = null;
 		if ( measureColumnAggregations == null || measureColumnAggregations.length == 0)
 		{
@@ -105,6 +110,8 @@ public class FactTableAccessor
 					measureColumnAggregations,
 					stopSign );
 		}
+		addPhaseTime( "fact table sort", startTime );
+		startTime = System.nanoTime( );
 		int segmentCount = getSegmentCount( sortedFactTableRows.size( ) );
 
 		DimensionInfo[] dimensionInfo = getDimensionInfo( dimensions );
@@ -121,62 +128,100 @@ public class FactTableAccessor
 				segmentCount );
 		
 		int[][][] columnIndex = getColumnIndex( DimJointColumnNames, dimensions );
-		DimensionPositionSeeker[] dimensionSeekers = new DimensionPositionSeeker[dimensions.length];
-		for ( int i = 0; i < dimensionSeekers.length; i++ )
-		{
-			dimensionSeekers[i] = new DimensionPositionSeeker( getDimCombinatedKey( columnIndex[i],
-					dimensions[i].getAllRows( stopSign ) ) );
-		}
+		DimensionPositionSeeker[] dimensionSeekers = createDimensionSeekers( columnIndex,
+				dimensions,
+				stopSign );
+		addPhaseTime( "fact table dimension keys", startTime );
+		startTime = System.nanoTime( );
 		
 		int[] dimensionPosition = new int[dimensions.length];
-		DocumentObjectCache documentObjectManager = new DocumentObjectCache( documentManager, (long) ( memoryCacheSize* 0.25 ) );
 		CombinedPositionContructor combinedPositionCalculator = new CombinedPositionContructor( subDimensions );
+		DocumentObjectCache documentObjectManager = null;
+		FactTableSegmentWriter segmentWriter = null;
+		if ( buildContext != null && buildContext.isParallel( ) )
+		{
+			// the segments are written by the build threads
+			segmentWriter = new FactTableSegmentWriter( buildContext,
+					documentManager,
+					combinedPositionCalculator,
+					measureInfo,
+					(long) ( memoryCacheSize * 0.25 ) );
+		}
+		else
+		{
+			documentObjectManager = new DocumentObjectCache( documentManager, (long) ( memoryCacheSize* 0.25 ) );
+		}
 		
 		FTSUNameSaveHelper saveHelper = new FTSUNameSaveHelper( documentManager, factTableName );
-		FactTableRow currentRow = sortedFactTableRows.pop( );
 		boolean invalidDimensionKey = false;
 		int invalidRowNumber = 0;
-		while ( currentRow != null && !stopSign.isStopped( ) )
-		{			
-			invalidDimensionKey = false;
-			for ( int i = 0; i < dimensionPosition.length; i++ )
-			{
-				dimensionPosition[i] = dimensionSeekers[i].find( currentRow.getDimensionKeys()[i] );
-				if ( dimensionPosition[i] < 0 )
+		boolean finished = false;
+		try
+		{
+			FactTableRow currentRow = sortedFactTableRows.pop( );
+			while ( currentRow != null && !stopSign.isStopped( ) )
+			{			
+				invalidDimensionKey = false;
+				for ( int i = 0; i < dimensionPosition.length; i++ )
 				{
-					invalidDimensionKey = true;
-					logger.fine( "The fact table of cube " 
-							+ factTableName + 
-							" has an invalid data row where the value of dimension key " + 
-							Arrays.toString( factTableJointColumnNames[i] ) + " is " + 
-							currentRow.getDimensionKeys()[i].toString( ) + 
-							" which however does not exist in dimension "+ 
-							dimensions[i].getName( ) +"." );
+					dimensionPosition[i] = dimensionSeekers[i].find( currentRow.getDimensionKeys()[i] );
+					if ( dimensionPosition[i] < 0 )
+					{
+						invalidDimensionKey = true;
+						logger.fine( "The fact table of cube " 
+								+ factTableName + 
+								" has an invalid data row where the value of dimension key " + 
+								Arrays.toString( factTableJointColumnNames[i] ) + " is " + 
+								currentRow.getDimensionKeys()[i].toString( ) + 
+								" which however does not exist in dimension "+ 
+								dimensions[i].getName( ) +"." );
+					}
 				}
+				if( invalidDimensionKey )
+				{
+					currentRow = sortedFactTableRows.pop( );
+					invalidRowNumber ++;
+					continue;
+				}
+				int[] subDimensionIndex = getSubDimensionIndex( dimensionPosition,
+						subDimensions );
+				String FTSUDocName = FTSUDocumentObjectNamingUtil.getDocumentObjectName( 
+						NamingUtil.getFactTableName( factTableName ),
+						subDimensionIndex );
+				saveHelper.add( FTSUDocName );
+			
+				if ( segmentWriter != null )
+				{
+					segmentWriter.write( FTSUDocName,
+							subDimensionIndex,
+							dimensionPosition,
+							currentRow.getMeasures( ) );
+					currentRow = sortedFactTableRows.pop( );
+					continue;
+				}
+				IDocumentObject documentObject = documentObjectManager.getIDocumentObject( FTSUDocName );
+				documentObject.writeBytes( new Bytes( combinedPositionCalculator.
+						calculateCombinedPosition( subDimensionIndex, dimensionPosition ).toByteArray( ) ) );
+				for( int i=0;i<measureInfo.length;i++)
+				{
+					DocumentObjectUtil.writeValue( documentObject,
+							measureInfo[i].getDataType(),
+							currentRow.getMeasures()[i] );
+				}
+				currentRow = sortedFactTableRows.pop( );
 			}
-			if( invalidDimensionKey )
+			if ( segmentWriter != null )
 			{
-				currentRow = sortedFactTableRows.pop( );
-				invalidRowNumber ++;
-				continue;
+				segmentWriter.finish( );
 			}
-			int[] subDimensionIndex = getSubDimensionIndex( dimensionPosition,
-					subDimensions );
-			String FTSUDocName = FTSUDocumentObjectNamingUtil.getDocumentObjectName( 
-					NamingUtil.getFactTableName( factTableName ),
-					subDimensionIndex );
-			saveHelper.add( FTSUDocName );
-			
-			IDocumentObject documentObject = documentObjectManager.getIDocumentObject( FTSUDocName );
-			documentObject.writeBytes( new Bytes( combinedPositionCalculator.
-					calculateCombinedPosition( subDimensionIndex, dimensionPosition ).toByteArray( ) ) );
-			for( int i=0;i<measureInfo.length;i++)
+			finished = true;
+		}
+		finally
+		{
+			if ( segmentWriter != null && !finished )
 			{
-				DocumentObjectUtil.writeValue( documentObject,
-						measureInfo[i].getDataType(),
-						currentRow.getMeasures()[i] );
+				segmentWriter.abort( );
 			}
-			currentRow = sortedFactTableRows.pop( );
 		}
 		saveHelper.save( );
 		if( invalidRowNumber > 0 )
@@ -186,8 +231,12 @@ public class FactTableAccessor
 				+ " has " + invalidRowNumber 
 				+ "invalid rows where the value of dimension key does not exist in dimension.");
 		}
-		documentObjectManager.closeAll( );
+		if ( documentObjectManager != null )
+		{
+			documentObjectManager.closeAll( );
+		}
 		documentManager.flush( );
+		addPhaseTime( "fact table write", startTime );
 		return new FactTable( factTableName,
 				documentManager,
 				dimensionInfo,
@@ -529,6 +578,81 @@ public class FactTableAccessor
 		this.memoryCacheSize = memoryCacheSize;
 	}
 
+	/**
+	 * Sets the context of the cube build. If the build is parallel, the keys
+	 * of the dimensions are loaded concurrently and the segments of the fact
+	 * table are written by the build threads.
+	 * 
+	 * @param buildContext
+	 */
+	public void setBuildContext( CubeBuildContext buildContext )
+	{
+		this.buildContext = buildContext;
+	}
+
+	private void addPhaseTime( String phase, long startTime )
+	{
+		if ( buildContext != null )
+		{
+			buildContext.addPhaseTime( phase, startTime );
+		}
+	}
+
+	/**
+	 * 
+	 * @param columnIndex
+	 * @param dimensions
+	 * @param stopSign
+	 * @return
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	private DimensionPositionSeeker[] createDimensionSeekers(
+			final int[][][] columnIndex, final Dimension[] dimensions,
+			final StopSign stopSign ) throws IOException, BirtException
+	{
+		DimensionPositionSeeker[] dimensionSeekers = new DimensionPositionSeeker[dimensions.length];
+		if ( buildContext == null || !buildContext.isParallel( )
+				|| dimensions.length < 2 )
+		{
+			for ( int i = 0; i < dimensionSeekers.length; i++ )
+			{
+				dimensionSeekers[i] = new DimensionPositionSeeker( getDimCombinatedKey( columnIndex[i],
+						dimensions[i].getAllRows( stopSign ) ) );
+			}
+			return dimensionSeekers;
+		}
+		// each dimension reads its own document objects
+		Future[] futures = new Future[dimensions.length];
+		for ( int i = 0; i < dimensions.length; i++ )
+		{
+			final int index = i;
+			futures[i] = buildContext.submit( new Callable<DimensionPositionSeeker>( ) {
+
+				public DimensionPositionSeeker call( ) throws Exception
+				{
+					return new DimensionPositionSeeker( getDimCombinatedKey( columnIndex[index],
+							dimensions[index].getAllRows( stopSign ) ) );
+				}
+			} );
+		}
+		try
+		{
+			for ( int i = 0; i < futures.length; i++ )
+			{
+				dimensionSeekers[i] = (DimensionPositionSeeker) buildContext.get( futures[i] );
+			}
+		}
+		finally
+		{
+			for ( int i = 0; i < futures.length; i++ )
+			{
+				futures[i].cancel( false );
+			}
+		}
+		return dimensionSeekers;
+	}
+
 	private static int getObjectSize( int[] dataType) {
 		int size = 0;
 		for( int i = 0; i < dataType.length; i++ )
@@ -37,6 +37,7 @@ import org.eclipse.birt.data.engine.olap.data.impl.facttable.FactTableAccessor.F
 import org.eclipse.birt.data.engine.olap.data.util.Bytes;
 import org.eclipse.birt.data.engine.olap.data.util.DataType;
 import org.eclipse.birt.data.engine.olap.data.util.IDiskArray;
+import org.eclipse.birt.data.engine.olap.data.util.PositionBitmap;
 import org.eclipse.birt.data.engine.olap.util.filter.ICubePosFilter;
 import org.eclipse.birt.data.engine.olap.util.filter.IFacttableRow;
 import org.eclipse.birt.data.engine.olap.util.filter.IJSFacttableFilterEvalHelper;
@@ -88,6 +89,11 @@ public class FactTableRowIterator implements IFactTableRowIterator
 	private boolean lastFilterResult;
 	private boolean isDuplicatedRow;
 	
+	//the segments are read in turn by partitionCount iterators
+	private int partitionIndex = 0;
+	private int partitionCount = 1;
+	private int segmentOrdinal = 0;
+	
 	/**
 	 * 
 	 * @param factTable
@@ -222,6 +228,37 @@ public class FactTableRowIterator implements IFactTableRowIterator
 		traversalor = new Traversalor( selectedSubDimensionCount );
 	}
 
+	/**
+	 * Restricts the iterator to a part of the selected segments, so that the
+	 * segments can be read by several iterators concurrently. The segments are
+	 * assigned to the parts in turn, in the order they are traversed. It
+	 * should be called before the first row is read.
+	 * 
+	 * @param partitionIndex
+	 * @param partitionCount
+	 * @throws IOException
+	 */
+	public void setSegmentPartition( int partitionIndex, int partitionCount )
+			throws IOException
+	{
+		assert partitionIndex >= 0 && partitionIndex < partitionCount;
+		this.partitionIndex = partitionIndex;
+		this.partitionCount = partitionCount;
+		this.segmentOrdinal = 0;
+		int[] selectedSubDimensionCount = new int[selectedSubDim.length];
+		for ( int i = 0; i < selectedSubDim.length; i++ )
+		{
+			selectedSubDimensionCount[i] = selectedSubDim[i].size( );
+		}
+		traversalor = new Traversalor( selectedSubDimensionCount );
+		if ( currentSegment != null )
+		{
+			currentSegment.close( );
+			currentSegment = null;
+		}
+		nextSegment( );
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.eclipse.birt.data.engine.olap.data.impl.facttable.IFactTableRowIterator#next()
@@ -390,7 +427,15 @@ public class FactTableRowIterator implements IFactTableRowIterator
 			{
 				if ( dimensionIndex[i] != -1 )
 				{
-					if( Arrays.binarySearch( selectedPosOfCurSegment[i], currentPos[i] ) < 0 )
+					if ( selectedPosOfCurSegment[i] == null )
+					{
+						if ( !( (PositionBitmap) selectedPos[dimensionIndex[i]] ).contains( currentPos[i] ) )
+						{
+							lastFilterResult = false;
+							return false;
+						}
+					}
+					else if( Arrays.binarySearch( selectedPosOfCurSegment[i], currentPos[i] ) < 0 )
 					{
 						lastFilterResult = false;
 						return false;
@@ -510,6 +555,10 @@ public class FactTableRowIterator implements IFactTableRowIterator
 			{
 				return false;
 			}
+			if ( segmentOrdinal++ % partitionCount != partitionIndex )
+			{
+				continue;
+			}
 			currentSubDim = traversalor.getIntArray( );
 			subDimensionIndex = getSubDimensionIndex( );
 			String FTSUDocName = FTSUDocumentObjectNamingUtil.getDocumentObjectName( NamingUtil.getFactTableName( factTable.getName( ) ),
@@ -523,10 +572,18 @@ public class FactTableRowIterator implements IFactTableRowIterator
 				currentSegment.close( );
 			
 			currentSegment = factTable.getDocumentManager( ).openDocumentObject( FTSUDocName );
+			// the combined positions of different segments are not comparable
+			lastCombinedDimensionPosition = null;
 			
 			for ( int i = 0; i < dimensionIndex.length; i++ )
 			{
-				if ( dimensionIndex[i] != -1 )
+				if ( dimensionIndex[i] != -1
+						&& selectedPos[dimensionIndex[i]] instanceof PositionBitmap )
+				{
+					// the positions are checked in the bitmap
+					selectedPosOfCurSegment[i] = null;
+				}
+				else if ( dimensionIndex[i] != -1 )
 				{
 					SelectedSubDimension selectedSubDimension = ( (SelectedSubDimension) selectedSubDim[i].get( currentSubDim[i] ) );
 					selectedPosOfCurSegment[i] = new int[selectedSubDimension.end
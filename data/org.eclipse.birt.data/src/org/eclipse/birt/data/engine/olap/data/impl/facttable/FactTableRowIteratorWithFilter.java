@@ -17,17 +17,16 @@ import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.impl.StopSign;
 import org.eclipse.birt.data.engine.olap.data.api.MeasureInfo;
 import org.eclipse.birt.data.engine.olap.data.api.cube.IDimension;
-import org.eclipse.birt.data.engine.olap.data.impl.dimension.Dimension;
-import org.eclipse.birt.data.engine.olap.data.impl.dimension.DimensionResultIterator;
-import org.eclipse.birt.data.engine.olap.data.impl.dimension.DimensionRow;
+import org.eclipse.birt.data.engine.olap.data.util.PositionBitmap;
 
 /**
- * 
+ * Filters the rows of a fact table iterator by the selected positions of each
+ * dimension.
  */
 
 public class FactTableRowIteratorWithFilter implements IFactTableRowIterator
 {
-	private DimensionResultIterator[] dimesionResultIterators;
+	private PositionBitmap[] selectedPositions;
 	private IFactTableRowIterator facttableRowIterator;
 	private int[] currentPos = null;
 	private Object[] currentMeasures;
@@ -36,31 +35,28 @@ public class FactTableRowIteratorWithFilter implements IFactTableRowIterator
 	public FactTableRowIteratorWithFilter( IDimension[] dimensions,
 			IFactTableRowIterator facttableRowIterator, StopSign stopSign ) throws IOException
 	{
-		this.dimensions = dimensions;
-		this.dimesionResultIterators = getDimesionResultIterators( stopSign );
-		this.facttableRowIterator = facttableRowIterator;
-		this.currentPos = new int[dimesionResultIterators.length];
-		this.currentMeasures = new Object[facttableRowIterator.getMeasureCount( )];
+		this( dimensions, new PositionBitmap[dimensions.length], facttableRowIterator );
 	}
 	
 	/**
 	 * 
-	 * @param lCube
-	 * @return
-	 * @throws IOException
+	 * @param dimensions
+	 * @param selectedPositions
+	 *            the selected positions of each dimension, null if all the
+	 *            positions of the dimension are selected.
+	 * @param facttableRowIterator
 	 */
-	private DimensionResultIterator[] getDimesionResultIterators( StopSign stopSign ) throws IOException
+	public FactTableRowIteratorWithFilter( IDimension[] dimensions,
+			PositionBitmap[] selectedPositions,
+			IFactTableRowIterator facttableRowIterator )
 	{
-		DimensionResultIterator[] dimesionResultIterators = new DimensionResultIterator[dimensions.length];
-		for( int i=0;i<dimensions.length;i++)
-		{
-			dimesionResultIterators[i] = new DimensionResultIterator( (Dimension) dimensions[i],
-					dimensions[i].findAll( ), stopSign);
-		}
-		return dimesionResultIterators;
+		this.dimensions = dimensions;
+		this.selectedPositions = selectedPositions;
+		this.facttableRowIterator = facttableRowIterator;
+		this.currentPos = new int[dimensions.length];
+		this.currentMeasures = new Object[facttableRowIterator.getMeasureCount( )];
 	}
 	
-	
 	/*
 	 * (non-Javadoc)
 	 * @see org.eclipse.birt.data.engine.olap.data.impl.facttable.IFactTableRowIterator#getDimensionCount()
@@ -157,13 +153,15 @@ public class FactTableRowIteratorWithFilter implements IFactTableRowIterator
 		return hasNext;
 	}
 	
-	private boolean filter( ) throws IOException
+	private boolean filter( )
 	{
-		DimensionRow[] dimRows = new DimensionRow[currentPos.length];
-		for(int i=0;i<currentPos.length;i++)
+		for ( int i = 0; i < currentPos.length; i++ )
 		{
-			dimesionResultIterators[i].seek( currentPos[i] );
-			dimRows[i] = dimesionResultIterators[i].getDimensionRow( );
+			if ( selectedPositions[i] != null
+					&& !selectedPositions[i].contains( currentPos[i] ) )
+			{
+				return false;
+			}
 		}
 		return true;
 	}
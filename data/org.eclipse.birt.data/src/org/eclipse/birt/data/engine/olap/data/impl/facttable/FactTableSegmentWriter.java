@@ -0,0 +1,240 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.impl.facttable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.i18n.ResourceConstants;
+import org.eclipse.birt.data.engine.olap.data.api.MeasureInfo;
+import org.eclipse.birt.data.engine.olap.data.document.DocumentObjectCache;
+import org.eclipse.birt.data.engine.olap.data.document.DocumentObjectUtil;
+import org.eclipse.birt.data.engine.olap.data.document.IDocumentManager;
+import org.eclipse.birt.data.engine.olap.data.document.IDocumentObject;
+import org.eclipse.birt.data.engine.olap.data.impl.facttable.DimensionDivider.CombinedPositionContructor;
+import org.eclipse.birt.data.engine.olap.data.util.Bytes;
+import org.eclipse.birt.data.engine.olap.data.util.CubeBuildContext;
+
+/**
+ * Writes the rows of the fact table segments by the threads of the cube
+ * build.
+ *
+ * Each segment is owned by one thread, which receives the rows of the segment
+ * in the order they are sorted, so the segment documents have the same
+ * content as the ones written by saveFactTable in a single thread.
+ */
+
+class FactTableSegmentWriter
+{
+
+	private static final int BATCH_SIZE = 256;
+	private static final int QUEUE_CAPACITY = 4;
+
+	private CubeBuildContext buildContext;
+	private Writer[] writers;
+
+	/**
+	 *
+	 * @param buildContext
+	 * @param documentManager
+	 * @param combinedPositionCalculator
+	 * @param measureInfo
+	 * @param cacheSize
+	 *            the size of cached document objects shared by the threads
+	 */
+	FactTableSegmentWriter( CubeBuildContext buildContext,
+			IDocumentManager documentManager,
+			CombinedPositionContructor combinedPositionCalculator,
+			MeasureInfo[] measureInfo, long cacheSize )
+	{
+		this.buildContext = buildContext;
+		this.writers = new Writer[buildContext.getParallelism( )];
+		long writerCacheSize = cacheSize == 0 ? 0 : Math.max( 1, cacheSize
+				/ writers.length );
+		for ( int i = 0; i < writers.length; i++ )
+		{
+			writers[i] = new Writer( new DocumentObjectCache( documentManager,
+					writerCacheSize ),
+					combinedPositionCalculator,
+					measureInfo );
+			writers[i].future = buildContext.submit( writers[i] );
+		}
+	}
+
+	/**
+	 * Adds a row to the segment, the row is written later by the thread
+	 * owning the segment.
+	 *
+	 * @param segmentName
+	 * @param subDimensionIndex
+	 * @param dimensionPosition
+	 * @param measures
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	void write( String segmentName, int[] subDimensionIndex,
+			int[] dimensionPosition, Object[] measures ) throws IOException,
+			BirtException
+	{
+		Writer writer = writers[( segmentName.hashCode( ) & Integer.MAX_VALUE )
+				% writers.length];
+		writer.batch.add( new SegmentRow( segmentName,
+				subDimensionIndex,
+				(int[]) dimensionPosition.clone( ),
+				measures ) );
+		if ( writer.batch.size( ) >= BATCH_SIZE )
+		{
+			send( writer, writer.batch );
+			writer.batch = new ArrayList<SegmentRow>( BATCH_SIZE );
+		}
+	}
+
+	/**
+	 * Writes the remain rows and waits until all the segments are closed.
+	 *
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	void finish( ) throws IOException, BirtException
+	{
+		for ( int i = 0; i < writers.length; i++ )
+		{
+			if ( !writers[i].batch.isEmpty( ) )
+			{
+				send( writers[i], writers[i].batch );
+				writers[i].batch = new ArrayList<SegmentRow>( );
+			}
+			// the empty batch stops the thread
+			send( writers[i], new ArrayList<SegmentRow>( ) );
+		}
+		for ( int i = 0; i < writers.length; i++ )
+		{
+			buildContext.get( writers[i].future );
+		}
+	}
+
+	/**
+	 * Stops the threads without waiting for the remain rows.
+	 */
+	void abort( )
+	{
+		for ( int i = 0; i < writers.length; i++ )
+		{
+			writers[i].future.cancel( true );
+		}
+	}
+
+	private void send( Writer writer, List<SegmentRow> rows )
+			throws IOException, BirtException
+	{
+		try
+		{
+			while ( !writer.queue.offer( rows, 100, TimeUnit.MILLISECONDS ) )
+			{
+				if ( writer.future.isDone( ) )
+				{
+					// throws the failure of the thread
+					buildContext.get( writer.future );
+					throw new DataException( ResourceConstants.UNEXPECTED_ERROR );
+				}
+			}
+		}
+		catch ( InterruptedException e )
+		{
+			Thread.currentThread( ).interrupt( );
+			throw new DataException( ResourceConstants.UNEXPECTED_ERROR, e );
+		}
+	}
+
+	private static class SegmentRow
+	{
+
+		String segmentName;
+		int[] subDimensionIndex;
+		int[] dimensionPosition;
+		Object[] measures;
+
+		SegmentRow( String segmentName, int[] subDimensionIndex,
+				int[] dimensionPosition, Object[] measures )
+		{
+			this.segmentName = segmentName;
+			this.subDimensionIndex = subDimensionIndex;
+			this.dimensionPosition = dimensionPosition;
+			this.measures = measures;
+		}
+	}
+
+	private static class Writer implements Callable<Object>
+	{
+
+		private BlockingQueue<List<SegmentRow>> queue = new ArrayBlockingQueue<List<SegmentRow>>( QUEUE_CAPACITY );
+		private DocumentObjectCache documentObjectManager;
+		private CombinedPositionContructor combinedPositionCalculator;
+		private MeasureInfo[] measureInfo;
+
+		// accessed by the thread adding the rows only
+		private List<SegmentRow> batch = new ArrayList<SegmentRow>( BATCH_SIZE );
+		private Future<Object> future;
+
+		Writer( DocumentObjectCache documentObjectManager,
+				CombinedPositionContructor combinedPositionCalculator,
+				MeasureInfo[] measureInfo )
+		{
+			this.documentObjectManager = documentObjectManager;
+			this.combinedPositionCalculator = combinedPositionCalculator;
+			this.measureInfo = measureInfo;
+		}
+
+		public Object call( ) throws Exception
+		{
+			try
+			{
+				List<SegmentRow> rows = queue.take( );
+				while ( !rows.isEmpty( ) )
+				{
+					for ( SegmentRow row : rows )
+					{
+						writeRow( row );
+					}
+					rows = queue.take( );
+				}
+			}
+			finally
+			{
+				documentObjectManager.closeAll( );
+			}
+			return null;
+		}
+
+		private void writeRow( SegmentRow row ) throws IOException
+		{
+			IDocumentObject documentObject = documentObjectManager.getIDocumentObject( row.segmentName );
+			documentObject.writeBytes( new Bytes( combinedPositionCalculator.calculateCombinedPosition( row.subDimensionIndex,
+					row.dimensionPosition )
+					.toByteArray( ) ) );
+			for ( int i = 0; i < measureInfo.length; i++ )
+			{
+				DocumentObjectUtil.writeValue( documentObject,
+						measureInfo[i].getDataType( ),
+						row.measures[i] );
+			}
+		}
+	}
+}
@@ -15,6 +15,9 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.logging.Logger;
 
+import org.eclipse.birt.data.engine.cache.MemoryBroker;
+import org.eclipse.birt.data.engine.cache.MemoryReservation;
+
 /**
  * 
  */
@@ -30,6 +33,14 @@ public class BufferedStructureArray implements IDiskArray
 	private static Logger logger = Logger.getLogger( BufferedStructureArray.class.getName( ) );
 	private boolean useMemoryOnly = false;
 	
+	// the size of structures is unknown, so a rough estimate is reserved for
+	// every structure kept in memory
+	private static final long ESTIMATED_STRUCTURE_SIZE = 64;
+	private MemoryReservation reservation = null;
+	// set when the memory can not be reserved, the structures added
+	// afterwards are written to disk
+	private boolean memoryFull = false;
+	
 	public BufferedStructureArray( IStructureCreator creator, int bufferSize )
 	{
 		if ( bufferSize <= 0 )
@@ -50,14 +61,18 @@ public class BufferedStructureArray implements IDiskArray
 	 */
 	public boolean add( Object o ) throws IOException
 	{
-		if ( bufferPos < buffer.length )
+		if ( !memoryFull && bufferPos < buffer.length )
 		{
-			buffer[bufferPos] = o;
-			bufferPos++;
-			return true;
+			if ( reserve( ) )
+			{
+				buffer[bufferPos] = o;
+				bufferPos++;
+				return true;
+			}
 		}
 		else if( useMemoryOnly )
 		{
+			reserve( );
 			Object tempBuffer[] = new Object[buffer.length*2];
 			System.arraycopy( buffer, 0, tempBuffer, 0, buffer.length );
 			buffer = tempBuffer;
@@ -73,6 +88,29 @@ public class BufferedStructureArray implements IDiskArray
 		return false;
 	}
 
+	/**
+	 * Reserve memory for a structure to be kept in memory.
+	 * 
+	 * @return false if the structure should be written to disk
+	 */
+	private boolean reserve( )
+	{
+		if ( reservation == null )
+		{
+			reservation = MemoryBroker.getInstance( )
+					.newReservation( "BufferedStructureArray" );
+		}
+		if ( reservation.reserve( ESTIMATED_STRUCTURE_SIZE ) || useMemoryOnly )
+		{
+			return true;
+		}
+		// the structures in memory are kept until the array is closed, so
+		// the broker should not ask this array to spill again
+		reservation.setSpillable( false );
+		memoryFull = true;
+		return false;
+	}
+
 	public void setUseMemoryOnly( boolean useMemoryOnly )
 	{
 		this.useMemoryOnly = useMemoryOnly;
@@ -85,9 +123,22 @@ public class BufferedStructureArray implements IDiskArray
 	public void close( ) throws IOException
 	{
 		this.buffer = null;
+		closeReservation( );
 		clearTempDir( );
 	}
 
+	/*
+	 * 
+	 */
+	private void closeReservation( )
+	{
+		if ( reservation != null )
+		{
+			reservation.close( );
+			reservation = null;
+		}
+	}
+
 	/*
 	 * 
 	 */
@@ -131,7 +182,7 @@ public class BufferedStructureArray implements IDiskArray
 			throw new IndexOutOfBoundsException( "Index: "
 					+ index + ", Size: " + size( ) );
 		}
-		return diskList.get( index - buffer.length );
+		return diskList.get( index - bufferPos );
 	}
 
 	/*
@@ -146,7 +197,7 @@ public class BufferedStructureArray implements IDiskArray
 		}
 		else
 		{
-			return buffer.length + diskList.size( );
+			return bufferPos + diskList.size( );
 		}
 	}
 
@@ -158,6 +209,8 @@ public class BufferedStructureArray implements IDiskArray
 	{
 		bufferPos = 0;
 		Arrays.fill( buffer, null );
+		memoryFull = false;
+		closeReservation( );
 		if ( diskList != null )
 		{
 			diskList.clear( );
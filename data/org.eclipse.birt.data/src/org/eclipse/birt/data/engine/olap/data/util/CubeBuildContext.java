@@ -0,0 +1,314 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.data.engine.api.CloseListenerManager;
+import org.eclipse.birt.data.engine.api.DataEngineThreadLocal;
+import org.eclipse.birt.data.engine.core.DataException;
+
+/**
+ * The context shared by the steps of a cube build. It holds the threads used
+ * to build the cube concurrently and records the time spent in each phase of
+ * the build. It is also used to aggregate the partitions of a fact table
+ * concurrently in a cube query.
+ *
+ * The tasks submitted to the context run with the temporary directory of the
+ * cube, and the temporary files they create are closed with the data engine
+ * of the thread which waits for them in get(Future).
+ */
+
+public class CubeBuildContext
+{
+
+	private static Logger logger = Logger.getLogger( CubeBuildContext.class.getName( ) );
+
+	private static final AtomicInteger threadCount = new AtomicInteger( );
+
+	private int parallelism;
+	private String tempDir;
+	private ExecutorService executor;
+	private boolean savePositionBitmaps;
+
+	/**
+	 * the close listeners of the finished tasks, moved to the waiting thread
+	 */
+	private List<CloseListenerManager> closeListeners = new ArrayList<CloseListenerManager>( );
+
+	/**
+	 * phase name -> elapsed nano seconds, in the order of the phases
+	 */
+	private Map<String, Long> phaseTimes = new LinkedHashMap<String, Long>( );
+
+	/**
+	 *
+	 * @param parallelism
+	 *            the maximum number of threads, 1 means the cube is built in
+	 *            the calling thread.
+	 * @param tempDir
+	 */
+	public CubeBuildContext( int parallelism, String tempDir )
+	{
+		this.parallelism = Math.max( 1, parallelism );
+		this.tempDir = tempDir;
+	}
+
+	/**
+	 * Changes the number of threads. The threads created for the previous
+	 * value are stopped, so it should not be called during a build.
+	 *
+	 * @param parallelism
+	 */
+	public synchronized void setParallelism( int parallelism )
+	{
+		parallelism = Math.max( 1, parallelism );
+		if ( this.parallelism != parallelism )
+		{
+			shutdown( );
+			this.parallelism = parallelism;
+		}
+	}
+
+	/**
+	 *
+	 * @return the number of threads building the cube
+	 */
+	public synchronized int getParallelism( )
+	{
+		return parallelism;
+	}
+
+	/**
+	 *
+	 * @return true if the steps of the build should run concurrently
+	 */
+	public synchronized boolean isParallel( )
+	{
+		return parallelism > 1;
+	}
+
+	/**
+	 * Sets whether the position bitmaps of the keys are saved with the level
+	 * indexes.
+	 *
+	 * @param savePositionBitmaps
+	 */
+	public synchronized void setSavePositionBitmaps(
+			boolean savePositionBitmaps )
+	{
+		this.savePositionBitmaps = savePositionBitmaps;
+	}
+
+	/**
+	 *
+	 * @return true if the position bitmaps are saved with the level indexes
+	 */
+	public synchronized boolean isSavePositionBitmaps( )
+	{
+		return savePositionBitmaps;
+	}
+
+	/**
+	 * Submits a task to the build threads.
+	 *
+	 * @param task
+	 * @return
+	 */
+	public <T> Future<T> submit( Callable<T> task )
+	{
+		return getExecutor( ).submit( new BuildTask<T>( task ) );
+	}
+
+	/**
+	 * Waits until the task is finished and returns its result. The failure of
+	 * the task is thrown in the calling thread.
+	 *
+	 * @param future
+	 * @return
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	public <T> T get( Future<T> future ) throws IOException, BirtException
+	{
+		try
+		{
+			return future.get( );
+		}
+		catch ( InterruptedException e )
+		{
+			future.cancel( true );
+			Thread.currentThread( ).interrupt( );
+			throw new DataException( e.getLocalizedMessage( ), e );
+		}
+		catch ( ExecutionException e )
+		{
+			Throwable cause = e.getCause( );
+			if ( cause instanceof IOException )
+			{
+				throw (IOException) cause;
+			}
+			if ( cause instanceof BirtException )
+			{
+				throw (BirtException) cause;
+			}
+			if ( cause instanceof RuntimeException )
+			{
+				throw (RuntimeException) cause;
+			}
+			if ( cause instanceof Error )
+			{
+				throw (Error) cause;
+			}
+			throw new DataException( cause.getLocalizedMessage( ), cause );
+		}
+		finally
+		{
+			moveCloseListeners( );
+		}
+	}
+
+	/**
+	 * Adds the time spent in a phase. The times of the phases with the same
+	 * name are summed.
+	 *
+	 * @param phase
+	 * @param startTime
+	 *            the value of System.nanoTime() when the phase started
+	 */
+	public void addPhaseTime( String phase, long startTime )
+	{
+		long elapsed = System.nanoTime( ) - startTime;
+		synchronized ( phaseTimes )
+		{
+			Long time = phaseTimes.get( phase );
+			phaseTimes.put( phase, Long.valueOf( time == null ? elapsed
+					: time.longValue( ) + elapsed ) );
+		}
+		if ( logger.isLoggable( Level.FINE ) )
+		{
+			logger.fine( "cube build phase \"" + phase + "\" took "
+					+ ( elapsed / 1000000 ) + " ms" );
+		}
+	}
+
+	/**
+	 *
+	 * @return the milliseconds spent in each phase, in the order the phases
+	 *         were first recorded.
+	 */
+	public Map<String, Long> getPhaseTimes( )
+	{
+		Map<String, Long> result = new LinkedHashMap<String, Long>( );
+		synchronized ( phaseTimes )
+		{
+			for ( Map.Entry<String, Long> entry : phaseTimes.entrySet( ) )
+			{
+				result.put( entry.getKey( ),
+						Long.valueOf( entry.getValue( ).longValue( ) / 1000000 ) );
+			}
+		}
+		return Collections.unmodifiableMap( result );
+	}
+
+	/**
+	 * Stops the build threads.
+	 */
+	public synchronized void shutdown( )
+	{
+		if ( executor != null )
+		{
+			executor.shutdownNow( );
+			executor = null;
+		}
+	}
+
+	private synchronized ExecutorService getExecutor( )
+	{
+		if ( executor == null )
+		{
+			executor = Executors.newFixedThreadPool( parallelism,
+					new ThreadFactory( ) {
+
+						public Thread newThread( Runnable r )
+						{
+							Thread thread = new Thread( r, "BIRT-CubeBuild-"
+									+ threadCount.incrementAndGet( ) );
+							thread.setDaemon( true );
+							return thread;
+						}
+					} );
+		}
+		return executor;
+	}
+
+	private void moveCloseListeners( )
+	{
+		CloseListenerManager current = DataEngineThreadLocal.getInstance( )
+				.getCloseListener( );
+		synchronized ( closeListeners )
+		{
+			for ( CloseListenerManager listener : closeListeners )
+			{
+				current.moveFrom( listener );
+			}
+			closeListeners.clear( );
+		}
+	}
+
+	private class BuildTask<T> implements Callable<T>
+	{
+
+		private Callable<T> task;
+
+		BuildTask( Callable<T> task )
+		{
+			this.task = task;
+		}
+
+		public T call( ) throws Exception
+		{
+			DataEngineThreadLocal.getInstance( )
+					.getPathManager( )
+					.setTempPath( tempDir );
+			try
+			{
+				return task.call( );
+			}
+			finally
+			{
+				CloseListenerManager listener = DataEngineThreadLocal.getInstance( )
+						.getCloseListener( );
+				DataEngineThreadLocal.getInstance( ).removeCloseListener( );
+				synchronized ( closeListeners )
+				{
+					closeListeners.add( listener );
+				}
+			}
+		}
+	}
+}
@@ -17,21 +17,31 @@ import java.util.List;
 
 import org.eclipse.birt.data.engine.cache.Constants;
 import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.cache.SizeOfUtil;
 import org.eclipse.birt.data.engine.i18n.ResourceConstants;
 import org.eclipse.birt.data.engine.olap.data.api.ISelection;
 import org.eclipse.birt.data.engine.olap.data.document.DocumentObjectUtil;
 import org.eclipse.birt.data.engine.olap.data.document.IDocumentManager;
 import org.eclipse.birt.data.engine.olap.data.document.IDocumentObject;
+import org.eclipse.birt.data.engine.olap.data.document.SharedDocumentCache;
 import org.eclipse.birt.data.engine.olap.data.impl.OneKeySelection;
+import org.eclipse.birt.data.engine.olap.data.impl.RangeSelection;
 
 /**
  * A disk based index. The index is n-tree which can be used to find element
  * quickly.
+ * 
+ * The index can optionally be saved with the position bitmaps of its keys.
+ * Each bitmap is the union of the dimension positions of a block of
+ * consecutive keys, so the positions of a range of keys are found by
+ * combining the bitmaps instead of reading every key.
  */
 
 public class DiskIndex
 {
 	private static final int VERSION = 10000;
+	// the number of keys whose positions are saved in one bitmap
+	private static final int BITMAP_BLOCK_SIZE = 256;
 	private String name;
 	private int degree;
 	private IDocumentObject documentObject = null;
@@ -42,6 +52,11 @@ public class DiskIndex
 	private int rootNodeOffset;
 	private int numberOfLevel;
 	private int currentVersion = 1;
+	private boolean savePositionBitmaps = false;
+	// the bitmaps are loaded by the first query, and may be read by the
+	// queries of other threads once positionBitmapsLoaded is set
+	private volatile PositionBitmap[] positionBitmaps = null;
+	private volatile boolean positionBitmapsLoaded = false;
 
 	/**
 	 * 
@@ -80,6 +95,32 @@ public class DiskIndex
 		return createIndex( documentManager, name, 3, keyList, isSorted );
 	}
 
+	/**
+	 * 
+	 * @param documentManager
+	 * @param name
+	 * @param keyList
+	 * @param isSorted
+	 * @param savePositionBitmaps
+	 *            whether the position bitmaps of the keys are saved with the
+	 *            index.
+	 * @return
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	public static DiskIndex createIndex( IDocumentManager documentManager,
+			String name, IDiskArray keyList, boolean isSorted,
+			boolean savePositionBitmaps ) throws IOException, DataException
+	{
+		assert keyList.size( ) > 0;
+		return new DiskIndex( documentManager,
+				name,
+				3,
+				keyList,
+				isSorted,
+				savePositionBitmaps );
+	}
+
 	/**
 	 * 
 	 * @param name
@@ -105,10 +146,29 @@ public class DiskIndex
 	 */
 	DiskIndex( IDocumentManager documentManager, String name, int granularity,
 			IDiskArray keyList, boolean isSorted ) throws IOException, DataException
+	{
+		this( documentManager, name, granularity, keyList, isSorted, false );
+	}
+
+	/**
+	 * 
+	 * @param documentManager
+	 * @param name
+	 * @param granularity
+	 * @param keyList
+	 * @param isSorted
+	 * @param savePositionBitmaps
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	DiskIndex( IDocumentManager documentManager, String name, int granularity,
+			IDiskArray keyList, boolean isSorted, boolean savePositionBitmaps )
+			throws IOException, DataException
 	{
 		this.name = name;
 		this.degree = granularity;
 		this.documentManager = documentManager;
+		this.savePositionBitmaps = savePositionBitmaps;
 		produce( keyList, isSorted );
 	}
 
@@ -174,6 +234,11 @@ public class DiskIndex
 		return name + "_offset";
 	}
 	
+	private static String getBitmapDocName( String name )
+	{
+		return name + "_bitmap";
+	}
+	
 	/**
 	 * 
 	 * @param keyList
@@ -229,10 +294,186 @@ public class DiskIndex
 		documentObject.writeShort( numberOfLevel );
 		documentObject.flush( );
 		offsetDocumentObject.flush( );
+		if ( savePositionBitmaps )
+		{
+			writePositionBitmaps( sortedKeyArray );
+		}
+		else
+		{
+			removePositionBitmaps( );
+		}
 		closeWriteDocumentObject( );
 		openReadDocumentObject( );
 	}
 	
+	/**
+	 * Saves the union of the dimension positions of each block of keys.
+	 * 
+	 * @param sortedKeyArray
+	 * @throws IOException
+	 */
+	private void writePositionBitmaps( IDiskArray sortedKeyArray )
+			throws IOException
+	{
+		int blockCount = getBitmapBlockCount( );
+		IDocumentObject bitmapDocumentObject = documentManager.createDocumentObject( getBitmapDocName( name ) );
+		if ( bitmapDocumentObject == null )
+		{
+			// the document manager doesn't replace an existing object
+			return;
+		}
+		PositionBitmap[] bitmaps = new PositionBitmap[blockCount];
+		try
+		{
+			bitmapDocumentObject.writeInt( BITMAP_BLOCK_SIZE );
+			bitmapDocumentObject.writeInt( blockCount );
+			for ( int i = 0; i < blockCount; i++ )
+			{
+				bitmaps[i] = new PositionBitmap( );
+				int end = Math.min( keyCount, ( i + 1 ) * BITMAP_BLOCK_SIZE );
+				for ( int j = i * BITMAP_BLOCK_SIZE; j < end; j++ )
+				{
+					addPositions( bitmaps[i],
+							(IndexKey) sortedKeyArray.get( j ) );
+				}
+				bitmapDocumentObject.writeBytes( new Bytes( bitmaps[i].toBytes( ) ) );
+			}
+			bitmapDocumentObject.flush( );
+		}
+		finally
+		{
+			bitmapDocumentObject.close( );
+		}
+		positionBitmaps = bitmaps;
+		positionBitmapsLoaded = true;
+	}
+	
+	/**
+	 * Invalidates the position bitmaps saved by an earlier build of the index.
+	 * A document object can't be removed, so it is replaced by one without the
+	 * header of the bitmaps.
+	 * 
+	 * @throws IOException
+	 */
+	private void removePositionBitmaps( ) throws IOException
+	{
+		positionBitmaps = null;
+		positionBitmapsLoaded = true;
+		String bitmapDocName = getBitmapDocName( name );
+		if ( !documentManager.exist( bitmapDocName ) )
+		{
+			return;
+		}
+		IDocumentObject bitmapDocumentObject = documentManager.createDocumentObject( bitmapDocName );
+		if ( bitmapDocumentObject == null )
+		{
+			return;
+		}
+		try
+		{
+			bitmapDocumentObject.writeInt( 0 );
+			bitmapDocumentObject.flush( );
+		}
+		finally
+		{
+			bitmapDocumentObject.close( );
+		}
+	}
+	
+	private int getBitmapBlockCount( )
+	{
+		return ( keyCount + BITMAP_BLOCK_SIZE - 1 ) / BITMAP_BLOCK_SIZE;
+	}
+	
+	/**
+	 * Loads the position bitmaps if they are saved with the index.
+	 * 
+	 * @throws IOException
+	 */
+	private void loadPositionBitmaps( ) throws IOException
+	{
+		if ( positionBitmapsLoaded )
+		{
+			return;
+		}
+		try
+		{
+			positionBitmaps = readPositionBitmaps( );
+		}
+		finally
+		{
+			// set once the bitmaps are assigned, the queries of other threads
+			// read the bitmaps without a lock
+			positionBitmapsLoaded = true;
+		}
+	}
+	
+	/**
+	 * 
+	 * @return the position bitmaps saved with the index, null if they are
+	 *         not saved.
+	 * @throws IOException
+	 */
+	private PositionBitmap[] readPositionBitmaps( ) throws IOException
+	{
+		String bitmapDocName = getBitmapDocName( name );
+		// the bitmaps are only read once decoded and pinned, so they are
+		// shared by the queries on the same document
+		SharedDocumentCache cache = SharedDocumentCache.getInstance( );
+		Object cachedBitmaps = cache.get( documentManager, bitmapDocName );
+		if ( cachedBitmaps != null )
+		{
+			return (PositionBitmap[]) cachedBitmaps;
+		}
+		if ( !documentManager.exist( bitmapDocName ) )
+		{
+			return null;
+		}
+		IDocumentObject bitmapDocumentObject = documentManager.openDocumentObject( bitmapDocName );
+		try
+		{
+			bitmapDocumentObject.seek( 0 );
+			if ( bitmapDocumentObject.length( ) < 8
+					|| bitmapDocumentObject.readInt( ) != BITMAP_BLOCK_SIZE )
+			{
+				return null;
+			}
+			int blockCount = bitmapDocumentObject.readInt( );
+			if ( blockCount != getBitmapBlockCount( ) )
+			{
+				return null;
+			}
+			PositionBitmap[] bitmaps = new PositionBitmap[blockCount];
+			long size = 0;
+			for ( int i = 0; i < bitmaps.length; i++ )
+			{
+				byte[] bytes = bitmapDocumentObject.readBytes( ).bytesValue( );
+				bitmaps[i] = PositionBitmap.fromBytes( bytes );
+				size += bytes.length;
+			}
+			cache.put( documentManager, bitmapDocName, null, bitmaps, size, true );
+			return bitmaps;
+		}
+		finally
+		{
+			bitmapDocumentObject.close( );
+		}
+	}
+	
+	/**
+	 * 
+	 * @param bitmap
+	 * @param indexKey
+	 */
+	private static void addPositions( PositionBitmap bitmap, IndexKey indexKey )
+	{
+		int[] dimensionPos = indexKey.getDimensionPos( );
+		for ( int i = 0; i < dimensionPos.length; i++ )
+		{
+			bitmap.add( dimensionPos[i] );
+		}
+	}
+	
 	/**
 	 * 
 	 * @throws IOException
@@ -416,6 +657,38 @@ public class DiskIndex
 		}
 	}
 
+	/**
+	 * 
+	 * @param offset
+	 * @param count
+	 * @return the non leaf nodes saved at the offset
+	 * @throws IOException
+	 */
+	private NonLeafNode[] readNonLeafNodes( int offset, int count )
+			throws IOException
+	{
+		// the nodes are decoded once and pinned, so the queries on the same
+		// document search the upper levels of the dimension index in memory
+		SharedDocumentCache cache = SharedDocumentCache.getInstance( );
+		Integer part = Integer.valueOf( offset );
+		NonLeafNode[] nodes = (NonLeafNode[]) cache.get( documentManager,
+				name,
+				part );
+		if ( nodes != null )
+		{
+			return nodes;
+		}
+		documentObject.seek( offset );
+		nodes = new NonLeafNode[count];
+		for ( int i = 0; i < count; i++ )
+		{
+			nodes[i] = readNonLeafNode( );
+		}
+		long nodeSize = 32 + 2 * SizeOfUtil.getObjectSize( keyDataType );
+		cache.put( documentManager, name, part, nodes, count * nodeSize, true );
+		return nodes;
+	}
+
 	/**
 	 * 
 	 * @return
@@ -594,8 +867,7 @@ public class DiskIndex
 	 */
 	public IndexKey findFirst( Object[] key ) throws IOException, DataException
 	{
-		documentObject.seek( rootNodeOffset );
-		NonLeafNode currentNode = readNonLeafNode( );
+		NonLeafNode currentNode = readNonLeafNodes( rootNodeOffset, 1 )[0];
 		NonLeafNode tempNode = null;
 
 		if ( !checkValid( currentNode ) )
@@ -613,11 +885,11 @@ public class DiskIndex
 		for ( int i = 0; i < numberOfLevel - 1; i++ )
 		{
 			find = false;
-			documentObject.seek( currentNode.offset );
-			for ( int j = 0; j < currentNode.numberOfSon; j++ )
+			NonLeafNode[] sonNodes = readNonLeafNodes( currentNode.offset,
+					currentNode.numberOfSon );
+			for ( int j = 0; j < sonNodes.length; j++ )
 			{
-
-				tempNode = readNonLeafNode( );
+				tempNode = sonNodes[j];
 				if ( isBetween( tempNode, key ) )
 				{
 					find = true;
@@ -677,8 +949,7 @@ public class DiskIndex
 	 */
 	public IDiskArray find( ISelection[] selections ) throws IOException, DataException
 	{
-		documentObject.seek( rootNodeOffset );
-		NonLeafNode currentNode = readNonLeafNode( );
+		NonLeafNode currentNode = readNonLeafNodes( rootNodeOffset, 1 )[0];
 		
 		if ( !checkValid( currentNode ) )
 		{
@@ -751,6 +1022,163 @@ public class DiskIndex
 		return resultList;
 	}
 	
+	/**
+	 * Finds the dimension positions of the selected keys. The ranges of keys
+	 * are found with the position bitmaps if they are saved with the index.
+	 * 
+	 * @param selections
+	 * @return
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	public PositionBitmap findPositions( ISelection[] selections )
+			throws IOException, DataException
+	{
+		PositionBitmap result = new PositionBitmap( );
+		if ( keyCount == 0 )
+		{
+			return result;
+		}
+		loadPositionBitmaps( );
+		PositionBitmap[] bitmaps = positionBitmaps;
+		List<ISelection> otherSelections = new ArrayList<ISelection>( );
+		for ( int i = 0; i < selections.length; i++ )
+		{
+			if ( bitmaps != null
+					&& ( selections[i] instanceof RangeSelection || selections[i] instanceof OneKeySelection ) )
+			{
+				findRangePositions( selections[i], bitmaps, result );
+			}
+			else
+			{
+				otherSelections.add( selections[i] );
+			}
+		}
+		if ( !otherSelections.isEmpty( ) )
+		{
+			IDiskArray indexKeys = find( otherSelections.toArray( new ISelection[otherSelections.size( )] ) );
+			if ( indexKeys != null )
+			{
+				for ( int i = 0; i < indexKeys.size( ); i++ )
+				{
+					addPositions( result, (IndexKey) indexKeys.get( i ) );
+				}
+				indexKeys.close( );
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Finds the positions of the keys between the minimum and maximum keys of
+	 * the selection.
+	 * 
+	 * @param selection
+	 *            a RangeSelection or a OneKeySelection
+	 * @param bitmaps
+	 *            the position bitmaps of the index
+	 * @param result
+	 *            the bitmap the positions are added to
+	 * @throws IOException
+	 */
+	private void findRangePositions( ISelection selection,
+			PositionBitmap[] bitmaps, PositionBitmap result )
+			throws IOException
+	{
+		boolean containsMinKey = true, containsMaxKey = true;
+		if ( selection instanceof RangeSelection )
+		{
+			containsMinKey = ( (RangeSelection) selection ).isContainsMinKey( );
+			containsMaxKey = ( (RangeSelection) selection ).isContainsMaxKey( );
+		}
+		int start = selection.getMin( ) == null ? 0
+				: searchKey( selection.getMin( ), !containsMinKey );
+		int end = selection.getMax( ) == null ? keyCount
+				: searchKey( selection.getMax( ), containsMaxKey );
+		int firstBlock = ( start + BITMAP_BLOCK_SIZE - 1 ) / BITMAP_BLOCK_SIZE;
+		int lastBlock = end / BITMAP_BLOCK_SIZE;
+		if ( firstBlock >= lastBlock )
+		{
+			addPositions( result, start, end );
+			return;
+		}
+		// the keys before the first block and after the last block are read
+		addPositions( result, start, firstBlock * BITMAP_BLOCK_SIZE );
+		for ( int i = firstBlock; i < lastBlock; i++ )
+		{
+			result.addAll( bitmaps[i] );
+		}
+		addPositions( result, lastBlock * BITMAP_BLOCK_SIZE, end );
+	}
+	
+	/**
+	 * Adds the positions of the keys from start (inclusive) to end
+	 * (exclusive).
+	 * 
+	 * @param bitmap
+	 * @param start
+	 * @param end
+	 * @throws IOException
+	 */
+	private void addPositions( PositionBitmap bitmap, int start, int end )
+			throws IOException
+	{
+		if ( start >= end )
+		{
+			return;
+		}
+		// the leaf keys are saved in order
+		addPositions( bitmap, readKeyObject( start ) );
+		for ( int i = start + 1; i < end; i++ )
+		{
+			addPositions( bitmap, readKeyObject( ) );
+		}
+	}
+	
+	/**
+	 * 
+	 * @param key
+	 * @param after
+	 *            whether the keys equal to the key are before the returned
+	 *            index.
+	 * @return the index of the first key which is greater than (or equal to)
+	 *         the key
+	 * @throws IOException
+	 */
+	private int searchKey( Object[] key, boolean after ) throws IOException
+	{
+		int low = 0, high = keyCount;
+		while ( low < high )
+		{
+			int middle = ( low + high ) >>> 1;
+			int ret = CompareUtil.compare( readKeyObject( middle ).getKey( ),
+					key );
+			if ( ret < 0 || ( after && ret == 0 ) )
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+		return low;
+	}
+	
+	/**
+	 * 
+	 * @param index
+	 *            the index of the key in the sorted keys
+	 * @return
+	 * @throws IOException
+	 */
+	private IndexKey readKeyObject( int index ) throws IOException
+	{
+		offsetDocumentObject.seek( index * 4 );
+		documentObject.seek( offsetDocumentObject.readInt( ) );
+		return readKeyObject( );
+	}
+
 	/**
 	 * 
 	 * @param n
@@ -848,10 +1276,11 @@ public class DiskIndex
 		NonLeafNode tempNode = null;
 		NodeSelection tempNodeSelection = null;
 		boolean find = false;
-		documentObject.seek( nodeSelection.node.offset );
-		for ( int i = 0; i < nodeSelection.node.numberOfSon; i++ )
+		NonLeafNode[] sonNodes = readNonLeafNodes( nodeSelection.node.offset,
+				nodeSelection.node.numberOfSon );
+		for ( int i = 0; i < sonNodes.length; i++ )
 		{
-			tempNode = readNonLeafNode( );
+			tempNode = sonNodes[i];
 			tempNodeSelection = new NodeSelection( tempNode, selections.length );
 			find = false;
 			for ( int j = 0; j < nodeSelection.selectionMark.length; j++ )
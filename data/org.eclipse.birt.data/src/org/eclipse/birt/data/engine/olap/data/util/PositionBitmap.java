@@ -0,0 +1,785 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A compressed set of dimension positions, used as a sorted IDiskArray of
+ * Integer.
+ *
+ * The positions are grouped by their high 16 bits like a roaring bitmap. The
+ * low 16 bits of a sparse group are kept in a sorted array, and the ones of a
+ * dense group in a bitmap of 65536 bits, so a set never takes much more than
+ * one bit for each position of the dimension. Intersections and unions are
+ * calculated group by group without sorting. The positions are returned by
+ * get(int) in ascending order, and the sequential access is fast.
+ */
+
+public class PositionBitmap implements IDiskArray
+{
+
+	// the groups with more positions are kept in bitmaps
+	private static final int ARRAY_MAX_SIZE = 4096;
+	private static final int BITMAP_WORD_COUNT = 1024;
+
+	private static final byte ARRAY_CONTAINER = 0;
+	private static final byte BITMAP_CONTAINER = 1;
+
+	// the high 16 bits of the groups, in ascending order
+	private int[] keys;
+	private Container[] containers;
+	private int containerCount;
+	private int size;
+
+	// the group of the last get(int), which makes the sequential access fast
+	private int cursorContainer;
+	private int cursorStart;
+
+	public PositionBitmap( )
+	{
+		this.keys = new int[4];
+		this.containers = new Container[4];
+	}
+
+	/**
+	 * Creates a bitmap from a disk array of Integer.
+	 *
+	 * @param positions
+	 * @return the positions if it is a bitmap already, otherwise a new bitmap
+	 * @throws IOException
+	 */
+	public static PositionBitmap valueOf( IDiskArray positions )
+			throws IOException
+	{
+		if ( positions instanceof PositionBitmap )
+		{
+			return (PositionBitmap) positions;
+		}
+		PositionBitmap result = new PositionBitmap( );
+		if ( positions != null )
+		{
+			for ( int i = 0; i < positions.size( ); i++ )
+			{
+				result.add( ( (Integer) positions.get( i ) ).intValue( ) );
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the positions which are contained by both bitmaps.
+	 *
+	 * @param bitmap1
+	 * @param bitmap2
+	 * @return
+	 */
+	public static PositionBitmap and( PositionBitmap bitmap1,
+			PositionBitmap bitmap2 )
+	{
+		PositionBitmap result = new PositionBitmap( );
+		int i = 0, j = 0;
+		while ( i < bitmap1.containerCount && j < bitmap2.containerCount )
+		{
+			if ( bitmap1.keys[i] < bitmap2.keys[j] )
+			{
+				i++;
+			}
+			else if ( bitmap1.keys[i] > bitmap2.keys[j] )
+			{
+				j++;
+			}
+			else
+			{
+				Container container = bitmap1.containers[i].and( bitmap2.containers[j] );
+				if ( container.cardinality( ) > 0 )
+				{
+					result.append( bitmap1.keys[i], container );
+				}
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the positions which are contained by any of the bitmaps.
+	 *
+	 * @param bitmap1
+	 * @param bitmap2
+	 * @return
+	 */
+	public static PositionBitmap or( PositionBitmap bitmap1,
+			PositionBitmap bitmap2 )
+	{
+		PositionBitmap result = new PositionBitmap( );
+		int i = 0, j = 0;
+		while ( i < bitmap1.containerCount || j < bitmap2.containerCount )
+		{
+			if ( j >= bitmap2.containerCount
+					|| ( i < bitmap1.containerCount && bitmap1.keys[i] < bitmap2.keys[j] ) )
+			{
+				result.append( bitmap1.keys[i], bitmap1.containers[i].copy( ) );
+				i++;
+			}
+			else if ( i >= bitmap1.containerCount
+					|| bitmap1.keys[i] > bitmap2.keys[j] )
+			{
+				result.append( bitmap2.keys[j], bitmap2.containers[j].copy( ) );
+				j++;
+			}
+			else
+			{
+				result.append( bitmap1.keys[i],
+						bitmap1.containers[i].or( bitmap2.containers[j] ) );
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Adds the positions of the other bitmap to this bitmap. Unlike
+	 * or(PositionBitmap, PositionBitmap), only the groups of the other bitmap
+	 * are changed or copied, so many bitmaps are combined in linear time.
+	 *
+	 * @param bitmap
+	 *            the bitmap which is not changed
+	 */
+	public void addAll( PositionBitmap bitmap )
+	{
+		for ( int j = 0; j < bitmap.containerCount; j++ )
+		{
+			int index = findContainer( bitmap.keys[j] );
+			if ( index < 0 )
+			{
+				Container container = bitmap.containers[j].copy( );
+				insertContainer( -index - 1, bitmap.keys[j], container );
+				size += container.cardinality( );
+			}
+			else
+			{
+				int cardinality = containers[index].cardinality( );
+				containers[index] = containers[index].addAll( bitmap.containers[j] );
+				size += containers[index].cardinality( ) - cardinality;
+			}
+		}
+		cursorContainer = 0;
+		cursorStart = 0;
+	}
+
+	/**
+	 * Adds a position to the bitmap.
+	 *
+	 * @param position
+	 *            a position which is not less than 0
+	 */
+	public void add( int position )
+	{
+		assert position >= 0;
+		int key = position >>> 16;
+		int index = findContainer( key );
+		if ( index < 0 )
+		{
+			index = -index - 1;
+			insertContainer( index, key, new ArrayContainer( ) );
+		}
+		Container container = containers[index];
+		int cardinality = container.cardinality( );
+		containers[index] = container.add( position & 0xFFFF );
+		if ( containers[index].cardinality( ) != cardinality )
+		{
+			size++;
+			cursorContainer = 0;
+			cursorStart = 0;
+		}
+	}
+
+	/**
+	 *
+	 * @param position
+	 * @return true if the position is in the bitmap
+	 */
+	public boolean contains( int position )
+	{
+		if ( position < 0 )
+		{
+			return false;
+		}
+		int index = findContainer( position >>> 16 );
+		return index >= 0 && containers[index].contains( position & 0xFFFF );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.util.IDiskArray#add(java.lang.Object)
+	 */
+	public boolean add( Object o ) throws IOException
+	{
+		add( ( (Integer) o ).intValue( ) );
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.util.IDiskArray#get(int)
+	 */
+	public Object get( int index ) throws IOException
+	{
+		if ( index < 0 || index >= size )
+		{
+			throw new IndexOutOfBoundsException( "Index: "
+					+ index + ", Size: " + size );
+		}
+		if ( index < cursorStart )
+		{
+			cursorContainer = 0;
+			cursorStart = 0;
+		}
+		while ( index >= cursorStart
+				+ containers[cursorContainer].cardinality( ) )
+		{
+			cursorStart += containers[cursorContainer].cardinality( );
+			cursorContainer++;
+		}
+		return Integer.valueOf( ( keys[cursorContainer] << 16 )
+				| containers[cursorContainer].select( index - cursorStart ) );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.util.IDiskArray#size()
+	 */
+	public int size( )
+	{
+		return size;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.util.IDiskArray#close()
+	 */
+	public void close( ) throws IOException
+	{
+		clear( );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.util.IDiskArray#clear()
+	 */
+	public void clear( ) throws IOException
+	{
+		keys = new int[4];
+		containers = new Container[4];
+		containerCount = 0;
+		size = 0;
+		cursorContainer = 0;
+		cursorStart = 0;
+	}
+
+	/**
+	 * Serializes the bitmap, it can be read back by fromBytes(byte[]).
+	 *
+	 * @return
+	 * @throws IOException
+	 */
+	public byte[] toBytes( ) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream( );
+		DataOutputStream out = new DataOutputStream( bytes );
+		out.writeInt( containerCount );
+		for ( int i = 0; i < containerCount; i++ )
+		{
+			out.writeInt( keys[i] );
+			containers[i].write( out );
+		}
+		out.flush( );
+		return bytes.toByteArray( );
+	}
+
+	/**
+	 *
+	 * @param bytes
+	 *            the bytes returned by toBytes()
+	 * @return
+	 * @throws IOException
+	 */
+	public static PositionBitmap fromBytes( byte[] bytes ) throws IOException
+	{
+		DataInputStream in = new DataInputStream( new ByteArrayInputStream( bytes ) );
+		PositionBitmap result = new PositionBitmap( );
+		int count = in.readInt( );
+		for ( int i = 0; i < count; i++ )
+		{
+			int key = in.readInt( );
+			byte type = in.readByte( );
+			int cardinality = in.readInt( );
+			Container container;
+			if ( type == ARRAY_CONTAINER )
+			{
+				char[] values = new char[cardinality];
+				for ( int j = 0; j < cardinality; j++ )
+				{
+					values[j] = in.readChar( );
+				}
+				container = new ArrayContainer( values, cardinality );
+			}
+			else
+			{
+				long[] words = new long[BITMAP_WORD_COUNT];
+				for ( int j = 0; j < words.length; j++ )
+				{
+					words[j] = in.readLong( );
+				}
+				container = new BitmapContainer( words, cardinality );
+			}
+			result.append( key, container );
+		}
+		return result;
+	}
+
+	private int findContainer( int key )
+	{
+		// the positions are usually added in ascending order
+		if ( containerCount > 0 && keys[containerCount - 1] == key )
+		{
+			return containerCount - 1;
+		}
+		return Arrays.binarySearch( keys, 0, containerCount, key );
+	}
+
+	private void insertContainer( int index, int key, Container container )
+	{
+		if ( containerCount == keys.length )
+		{
+			int[] newKeys = new int[keys.length * 2];
+			System.arraycopy( keys, 0, newKeys, 0, containerCount );
+			keys = newKeys;
+			Container[] newContainers = new Container[containers.length * 2];
+			System.arraycopy( containers, 0, newContainers, 0, containerCount );
+			containers = newContainers;
+		}
+		System.arraycopy( keys, index, keys, index + 1, containerCount - index );
+		System.arraycopy( containers,
+				index,
+				containers,
+				index + 1,
+				containerCount - index );
+		keys[index] = key;
+		containers[index] = container;
+		containerCount++;
+	}
+
+	private void append( int key, Container container )
+	{
+		insertContainer( containerCount, key, container );
+		size += container.cardinality( );
+	}
+
+	/**
+	 * The low 16 bits of the positions with the same high 16 bits.
+	 */
+	private static abstract class Container
+	{
+
+		abstract int cardinality( );
+
+		/**
+		 *
+		 * @param low
+		 * @return the container which contains the value, it is a new one if
+		 *         the container is converted.
+		 */
+		abstract Container add( int low );
+
+		abstract boolean contains( int low );
+
+		/**
+		 *
+		 * @param rank
+		 * @return the rank-th smallest value
+		 */
+		abstract int select( int rank );
+
+		abstract Container and( Container other );
+
+		abstract Container or( Container other );
+
+		/**
+		 *
+		 * @param other
+		 * @return the container which contains the values of both
+		 *         containers, it is a new one if the container is converted.
+		 */
+		abstract Container addAll( Container other );
+
+		abstract Container copy( );
+
+		abstract void write( DataOutputStream out ) throws IOException;
+	}
+
+	private static class ArrayContainer extends Container
+	{
+
+		private char[] values;
+		private int cardinality;
+
+		ArrayContainer( )
+		{
+			this( new char[4], 0 );
+		}
+
+		ArrayContainer( char[] values, int cardinality )
+		{
+			this.values = values;
+			this.cardinality = cardinality;
+		}
+
+		int cardinality( )
+		{
+			return cardinality;
+		}
+
+		Container add( int low )
+		{
+			if ( cardinality > 0 && values[cardinality - 1] < low )
+			{
+				// append in ascending order
+				return insert( cardinality, low );
+			}
+			int index = Arrays.binarySearch( values, 0, cardinality, (char) low );
+			if ( index >= 0 )
+			{
+				return this;
+			}
+			return insert( -index - 1, low );
+		}
+
+		private Container insert( int index, int low )
+		{
+			if ( cardinality >= ARRAY_MAX_SIZE )
+			{
+				return toBitmap( ).add( low );
+			}
+			if ( cardinality == values.length )
+			{
+				char[] newValues = new char[Math.min( ARRAY_MAX_SIZE,
+						values.length * 2 )];
+				System.arraycopy( values, 0, newValues, 0, cardinality );
+				values = newValues;
+			}
+			System.arraycopy( values, index, values, index + 1, cardinality
+					- index );
+			values[index] = (char) low;
+			cardinality++;
+			return this;
+		}
+
+		boolean contains( int low )
+		{
+			return Arrays.binarySearch( values, 0, cardinality, (char) low ) >= 0;
+		}
+
+		int select( int rank )
+		{
+			return values[rank];
+		}
+
+		Container and( Container other )
+		{
+			char[] result = new char[Math.min( cardinality,
+					other.cardinality( ) )];
+			int count = 0;
+			if ( other instanceof ArrayContainer )
+			{
+				ArrayContainer array = (ArrayContainer) other;
+				int i = 0, j = 0;
+				while ( i < cardinality && j < array.cardinality )
+				{
+					if ( values[i] < array.values[j] )
+					{
+						i++;
+					}
+					else if ( values[i] > array.values[j] )
+					{
+						j++;
+					}
+					else
+					{
+						result[count++] = values[i];
+						i++;
+						j++;
+					}
+				}
+			}
+			else
+			{
+				for ( int i = 0; i < cardinality; i++ )
+				{
+					if ( other.contains( values[i] ) )
+					{
+						result[count++] = values[i];
+					}
+				}
+			}
+			return new ArrayContainer( result, count );
+		}
+
+		Container or( Container other )
+		{
+			if ( other instanceof BitmapContainer )
+			{
+				return other.or( this );
+			}
+			ArrayContainer array = (ArrayContainer) other;
+			char[] result = new char[cardinality + array.cardinality];
+			int count = 0;
+			int i = 0, j = 0;
+			while ( i < cardinality || j < array.cardinality )
+			{
+				if ( j >= array.cardinality
+						|| ( i < cardinality && values[i] < array.values[j] ) )
+				{
+					result[count++] = values[i++];
+				}
+				else if ( i >= cardinality || values[i] > array.values[j] )
+				{
+					result[count++] = array.values[j++];
+				}
+				else
+				{
+					result[count++] = values[i];
+					i++;
+					j++;
+				}
+			}
+			ArrayContainer container = new ArrayContainer( result, count );
+			return count > ARRAY_MAX_SIZE ? container.toBitmap( ) : container;
+		}
+
+		Container addAll( Container other )
+		{
+			if ( other instanceof BitmapContainer )
+			{
+				return other.copy( ).addAll( this );
+			}
+			return or( other );
+		}
+
+		Container copy( )
+		{
+			char[] copy = new char[cardinality];
+			System.arraycopy( values, 0, copy, 0, cardinality );
+			return new ArrayContainer( copy, cardinality );
+		}
+
+		private BitmapContainer toBitmap( )
+		{
+			BitmapContainer bitmap = new BitmapContainer( );
+			for ( int i = 0; i < cardinality; i++ )
+			{
+				bitmap.add( values[i] );
+			}
+			return bitmap;
+		}
+
+		void write( DataOutputStream out ) throws IOException
+		{
+			out.writeByte( ARRAY_CONTAINER );
+			out.writeInt( cardinality );
+			for ( int i = 0; i < cardinality; i++ )
+			{
+				out.writeChar( values[i] );
+			}
+		}
+	}
+
+	private static class BitmapContainer extends Container
+	{
+
+		private long[] words;
+		private int cardinality;
+
+		// the word of the last select(int), which makes the sequential access
+		// fast
+		private int cursorWord;
+		private int cursorRank;
+
+		BitmapContainer( )
+		{
+			this( new long[BITMAP_WORD_COUNT], 0 );
+		}
+
+		BitmapContainer( long[] words, int cardinality )
+		{
+			this.words = words;
+			this.cardinality = cardinality;
+		}
+
+		int cardinality( )
+		{
+			return cardinality;
+		}
+
+		Container add( int low )
+		{
+			long bit = 1L << low;
+			if ( ( words[low >>> 6] & bit ) == 0 )
+			{
+				words[low >>> 6] |= bit;
+				cardinality++;
+				cursorWord = 0;
+				cursorRank = 0;
+			}
+			return this;
+		}
+
+		boolean contains( int low )
+		{
+			return ( words[low >>> 6] & ( 1L << low ) ) != 0;
+		}
+
+		int select( int rank )
+		{
+			if ( rank < cursorRank )
+			{
+				cursorWord = 0;
+				cursorRank = 0;
+			}
+			int count = Long.bitCount( words[cursorWord] );
+			while ( rank >= cursorRank + count )
+			{
+				cursorRank += count;
+				cursorWord++;
+				count = Long.bitCount( words[cursorWord] );
+			}
+			long word = words[cursorWord];
+			for ( int i = cursorRank; i < rank; i++ )
+			{
+				// clear the lowest bit
+				word &= word - 1;
+			}
+			return cursorWord * 64 + Long.numberOfTrailingZeros( word );
+		}
+
+		Container and( Container other )
+		{
+			if ( other instanceof ArrayContainer )
+			{
+				return other.and( this );
+			}
+			long[] otherWords = ( (BitmapContainer) other ).words;
+			long[] result = new long[BITMAP_WORD_COUNT];
+			int count = 0;
+			for ( int i = 0; i < result.length; i++ )
+			{
+				result[i] = words[i] & otherWords[i];
+				count += Long.bitCount( result[i] );
+			}
+			return toContainer( result, count );
+		}
+
+		Container or( Container other )
+		{
+			long[] result = new long[BITMAP_WORD_COUNT];
+			System.arraycopy( words, 0, result, 0, BITMAP_WORD_COUNT );
+			if ( other instanceof ArrayContainer )
+			{
+				BitmapContainer container = new BitmapContainer( result,
+						cardinality );
+				ArrayContainer array = (ArrayContainer) other;
+				for ( int i = 0; i < array.cardinality; i++ )
+				{
+					container.add( array.values[i] );
+				}
+				return container;
+			}
+			long[] otherWords = ( (BitmapContainer) other ).words;
+			int count = 0;
+			for ( int i = 0; i < result.length; i++ )
+			{
+				result[i] |= otherWords[i];
+				count += Long.bitCount( result[i] );
+			}
+			return new BitmapContainer( result, count );
+		}
+
+		Container addAll( Container other )
+		{
+			if ( other instanceof ArrayContainer )
+			{
+				ArrayContainer array = (ArrayContainer) other;
+				for ( int i = 0; i < array.cardinality; i++ )
+				{
+					add( array.values[i] );
+				}
+				return this;
+			}
+			long[] otherWords = ( (BitmapContainer) other ).words;
+			int count = 0;
+			for ( int i = 0; i < words.length; i++ )
+			{
+				words[i] |= otherWords[i];
+				count += Long.bitCount( words[i] );
+			}
+			cardinality = count;
+			cursorWord = 0;
+			cursorRank = 0;
+			return this;
+		}
+
+		Container copy( )
+		{
+			long[] copy = new long[BITMAP_WORD_COUNT];
+			System.arraycopy( words, 0, copy, 0, BITMAP_WORD_COUNT );
+			return new BitmapContainer( copy, cardinality );
+		}
+
+		private static Container toContainer( long[] words, int cardinality )
+		{
+			if ( cardinality > ARRAY_MAX_SIZE )
+			{
+				return new BitmapContainer( words, cardinality );
+			}
+			char[] values = new char[cardinality];
+			int count = 0;
+			for ( int i = 0; i < words.length; i++ )
+			{
+				long word = words[i];
+				while ( word != 0 )
+				{
+					values[count++] = (char) ( i * 64 + Long.numberOfTrailingZeros( word ) );
+					word &= word - 1;
+				}
+			}
+			return new ArrayContainer( values, cardinality );
+		}
+
+		void write( DataOutputStream out ) throws IOException
+		{
+			out.writeByte( BITMAP_CONTAINER );
+			out.writeInt( cardinality );
+			for ( int i = 0; i < words.length; i++ )
+			{
+				out.writeLong( words[i] );
+			}
+		}
+	}
+}
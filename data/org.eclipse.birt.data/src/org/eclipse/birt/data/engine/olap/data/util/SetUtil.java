@@ -140,6 +140,15 @@ public class SetUtil
 	public static IDiskArray getIntersection( IDiskArray array1, IDiskArray array2 )
 			throws IOException
 	{
+		if ( array1 instanceof PositionBitmap
+				&& array2 instanceof PositionBitmap )
+		{
+			IDiskArray result = PositionBitmap.and( (PositionBitmap) array1,
+					(PositionBitmap) array2 );
+			array1.close( );
+			array2.close( );
+			return result;
+		}
 		IDiskArray result = new BufferedPrimitiveDiskArray( min( array1.size( ),
 				array2.size( ),
 				Constants.LIST_BUFFER_SIZE ) );
@@ -167,6 +176,45 @@ public class SetUtil
 		return result;
 	}
 	
+	/**
+	 * Get intersection from position bitmaps.
+	 * 
+	 * @param bitmaps
+	 * @return
+	 */
+	public static PositionBitmap getIntersection( PositionBitmap[] bitmaps )
+	{
+		if ( bitmaps == null || bitmaps.length == 0 )
+		{
+			return new PositionBitmap( );
+		}
+		PositionBitmap result = bitmaps[0];
+		for ( int i = 1; i < bitmaps.length; i++ )
+		{
+			result = PositionBitmap.and( result, bitmaps[i] );
+		}
+		return result;
+	}
+	
+	/**
+	 * Get union from position bitmaps.
+	 * 
+	 * @param bitmaps
+	 * @return
+	 */
+	public static PositionBitmap getUnion( PositionBitmap[] bitmaps )
+	{
+		PositionBitmap result = new PositionBitmap( );
+		if ( bitmaps != null )
+		{
+			for ( int i = 0; i < bitmaps.length; i++ )
+			{
+				result = PositionBitmap.or( result, bitmaps[i] );
+			}
+		}
+		return result;
+	}
+	
 	/**
 	 * 
 	 * @param a
@@ -829,6 +829,22 @@ public class DataRequestSessionImpl extends DataRequestSession
 
 		backupAppContext.putAll( appContext );
 
+		Integer parallelism = DataTypeUtil.toInteger( appContext.get( DataEngine.CUBE_BUILD_PARALLELISM ) );
+		if ( parallelism != null )
+		{
+			cubeMaterializer.setParallelism( parallelism.intValue( ) );
+		}
+		Boolean positionBitmaps = DataTypeUtil.toBoolean( appContext.get( DataEngine.CUBE_LEVEL_POSITION_BITMAPS ) );
+		if ( positionBitmaps != null )
+		{
+			cubeMaterializer.setSavePositionBitmaps( positionBitmaps.booleanValue( ) );
+		}
+		Object rollupLevels = appContext.get( DataEngine.CUBE_ROLLUP_LEVELS );
+		if ( rollupLevels != null )
+		{
+			cubeMaterializer.setRollupLevels( parseRollupLevels( rollupLevels.toString( ) ) );
+		}
+
 		List measureNames = new ArrayList( );
 		Map calculatedMeasure = new HashMap( );
 		List measureGroups = cubeHandle.getContents( CubeHandle.MEASURE_GROUPS_PROP );
@@ -1114,6 +1130,41 @@ public class DataRequestSessionImpl extends DataRequestSession
 		return memoryCacheSize;
 	}
 
+	/**
+	 * Parses the value of DataEngine.CUBE_ROLLUP_LEVELS.
+	 *
+	 * @param value
+	 * @return
+	 */
+	private static DimLevel[][] parseRollupLevels( String value )
+	{
+		List<DimLevel[]> result = new ArrayList<DimLevel[]>( );
+		String[] rollups = value.split( ";" );
+		for ( int i = 0; i < rollups.length; i++ )
+		{
+			if ( rollups[i].trim( ).length( ) == 0 )
+			{
+				continue;
+			}
+			String[] levelNames = rollups[i].split( "," );
+			List<DimLevel> levels = new ArrayList<DimLevel>( );
+			for ( int j = 0; j < levelNames.length; j++ )
+			{
+				int index = levelNames[j].indexOf( '/' );
+				if ( index <= 0 )
+				{
+					logger.log( Level.WARNING, "Invalid rollup level: "
+							+ levelNames[j] );
+					continue;
+				}
+				levels.add( new DimLevel( levelNames[j].substring( 0, index )
+						.trim( ), levelNames[j].substring( index + 1 ).trim( ) ) );
+			}
+			result.add( levels.toArray( new DimLevel[levels.size( )] ) );
+		}
+		return result.toArray( new DimLevel[result.size( )][] );
+	}
+
 	private String getLevelName( TabularHierarchyHandle hierhandle, String columnName )
 	{
 		List levels = hierhandle.getContents( TabularHierarchyHandle.LEVELS_PROP );
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.javascript;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the compiled scripts shared by the javascript engines
+ */
+public class CompiledScriptCacheTest
+{
+
+	private static final String SCRIPT = "row[\"a\"] + 1";
+
+	@Test
+	public void testDisabledByDefault( )
+	{
+		if ( System.getProperty( CompiledScriptCache.PROPERTY_CACHE_SIZE ) == null )
+		{
+			assertFalse( CompiledScriptCache.getInstance( ).isEnabled( ) );
+			assertEquals( 0, CompiledScriptCache.getInstance( ).getMaxSize( ) );
+		}
+		CompiledScriptCache cache = new CompiledScriptCache( 0 );
+		assertFalse( cache.isEnabled( ) );
+		CompiledJavascript script = compile( SCRIPT );
+		assertSame( script, cache.put( null, "<inline>", 1, 0, SCRIPT,
+				script, 0 ) );
+		assertEquals( 0, cache.getSize( ) );
+	}
+
+	@Test
+	public void testHitAndMiss( )
+	{
+		CompiledScriptCache cache = new CompiledScriptCache( 10 );
+		ClassLoader loader = getClass( ).getClassLoader( );
+		assertNull( cache.get( loader, "<inline>", 1, 0, SCRIPT ) );
+		CompiledJavascript script = compile( SCRIPT );
+		assertSame( script, cache.put( loader, "<inline>", 1, 0, SCRIPT,
+				script, 0 ) );
+		assertSame( script, cache.get( loader, "<inline>", 1, 0, SCRIPT ) );
+
+		// the name, line number and optimization level are part of the key
+		assertNull( cache.get( loader, "other", 1, 0, SCRIPT ) );
+		assertNull( cache.get( loader, "<inline>", 2, 0, SCRIPT ) );
+		assertNull( cache.get( loader, "<inline>", 1, -1, SCRIPT ) );
+		assertNull( cache.get( loader, "<inline>", 1, 0, SCRIPT + " " ) );
+		assertEquals( 1, cache.getHitCount( ) );
+		assertEquals( 5, cache.getMissCount( ) );
+
+		// the script compiled first by another thread is shared
+		assertSame( script, cache.put( loader, "<inline>", 1, 0, SCRIPT,
+				compile( SCRIPT ), 0 ) );
+	}
+
+	@Test
+	public void testEvictEldestScript( )
+	{
+		CompiledScriptCache cache = new CompiledScriptCache( 2 );
+		for ( int i = 0; i < 3; i++ )
+		{
+			cache.put( null, "<inline>", i, 0, SCRIPT, compile( SCRIPT ), 0 );
+		}
+		assertEquals( 2, cache.getSize( ) );
+		assertEquals( 1, cache.getEvictionCount( ) );
+		assertNull( cache.get( null, "<inline>", 0, 0, SCRIPT ) );
+	}
+
+	@Test
+	public void testIsolateClassLoaders( )
+	{
+		CompiledScriptCache cache = new CompiledScriptCache( 10 );
+		ClassLoader loader1 = new URLClassLoader( new URL[0] );
+		ClassLoader loader2 = new URLClassLoader( new URL[0] );
+		CompiledJavascript script1 = compile( SCRIPT );
+		CompiledJavascript script2 = compile( SCRIPT );
+		cache.put( loader1, "<inline>", 1, 0, SCRIPT, script1, 0 );
+
+		assertNull( cache.get( loader2, "<inline>", 1, 0, SCRIPT ) );
+		assertNull( cache.get( null, "<inline>", 1, 0, SCRIPT ) );
+		assertSame( script2, cache.put( loader2, "<inline>", 1, 0, SCRIPT,
+				script2, 0 ) );
+		assertSame( script1, cache.get( loader1, "<inline>", 1, 0, SCRIPT ) );
+		assertSame( script2, cache.get( loader2, "<inline>", 1, 0, SCRIPT ) );
+
+		// the scripts of a discarded class loader are removed
+		cache.invalidate( loader1 );
+		assertEquals( 1, cache.getSize( ) );
+		assertNull( cache.get( loader1, "<inline>", 1, 0, SCRIPT ) );
+		assertSame( script2, cache.get( loader2, "<inline>", 1, 0, SCRIPT ) );
+	}
+
+	private CompiledJavascript compile( String script )
+	{
+		// the cache doesn't use the compiled script itself
+		return new CompiledJavascript( "<inline>", 1, script, null );
+	}
+}
@@ -0,0 +1,359 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.javascript;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A bounded LRU cache of the compiled scripts shared by all the
+ * JavascriptEngine instances of the process.
+ *
+ * A compiled script doesn't keep any state of the scope it is executed in, so
+ * it can be executed by multiple engines in multiple threads at the same time.
+ * The scripts are keyed by the application class loader, the source text, the
+ * script name, the line number and the optimization level of the context
+ * which compiles them. The script name decides the security domain of the
+ * script. The engines using different application class loaders never share
+ * the scripts.
+ *
+ * The cache is disabled unless its size is set. The class loader is weakly
+ * referred by the key, but a script compiled to Java classes refers to the
+ * class loader, so the class loader is kept until its scripts are evicted or
+ * invalidate(ClassLoader) is called.
+ */
+public class CompiledScriptCache
+{
+
+	/**
+	 * the system property defines the max number of the cached scripts, the
+	 * cache is disabled if it is not set or is 0.
+	 */
+	public static final String PROPERTY_CACHE_SIZE = "org.eclipse.birt.report.engine.javascript.COMPILED_SCRIPT_CACHE_SIZE";
+
+	static final int DEFAULT_CACHE_SIZE = 0;
+
+	private static Logger logger = Logger.getLogger( CompiledScriptCache.class
+			.getName( ) );
+
+	private static CompiledScriptCache instance;
+
+	private final int maxSize;
+
+	private final LinkedHashMap<ScriptKey, CompiledJavascript> scripts;
+
+	/**
+	 * the references of the collected class loaders
+	 */
+	private final ReferenceQueue<ClassLoader> queue = new ReferenceQueue<ClassLoader>( );
+
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+	/**
+	 * the time used to compile the scripts which are not cached, in
+	 * nanoseconds
+	 */
+	private long compileTime;
+
+	/**
+	 * @return the cache shared by the process
+	 */
+	public static synchronized CompiledScriptCache getInstance( )
+	{
+		if ( instance == null )
+		{
+			instance = new CompiledScriptCache( getDefaultCacheSize( ) );
+		}
+		return instance;
+	}
+
+	/**
+	 * Create a standalone cache. getInstance() should be used to get the cache
+	 * shared by the process.
+	 *
+	 * @param maxSize
+	 *            the max number of the cached scripts
+	 */
+	public CompiledScriptCache( int maxSize )
+	{
+		this.maxSize = maxSize;
+		this.scripts = new LinkedHashMap<ScriptKey, CompiledJavascript>( 16,
+				0.75f, true ) {
+
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(
+					Map.Entry<ScriptKey, CompiledJavascript> eldest )
+			{
+				if ( size( ) > CompiledScriptCache.this.maxSize )
+				{
+					evictionCount++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	private static int getDefaultCacheSize( )
+	{
+		String value = AccessController
+				.doPrivileged( new PrivilegedAction<String>( ) {
+
+					public String run( )
+					{
+						return System.getProperty( PROPERTY_CACHE_SIZE );
+					}
+				} );
+		if ( value != null )
+		{
+			try
+			{
+				return Integer.parseInt( value.trim( ) );
+			}
+			catch ( NumberFormatException ex )
+			{
+				logger.log( Level.WARNING, "invalid compiled script cache size "
+						+ value );
+			}
+		}
+		return DEFAULT_CACHE_SIZE;
+	}
+
+	public boolean isEnabled( )
+	{
+		return maxSize > 0;
+	}
+
+	/**
+	 * @param loader
+	 *            the application class loader of the engine, it may be null.
+	 * @return the cached script, null if the script has not been compiled.
+	 */
+	public synchronized CompiledJavascript get( ClassLoader loader, String id,
+			int lineNumber, int optimizationLevel, String source )
+	{
+		expungeStaleScripts( );
+		CompiledJavascript script = scripts.get( new ScriptKey( loader, id,
+				lineNumber, optimizationLevel, source, null ) );
+		if ( script != null )
+		{
+			hitCount++;
+		}
+		else
+		{
+			missCount++;
+		}
+		return script;
+	}
+
+	/**
+	 * add a compiled script into the cache.
+	 *
+	 * @param loader
+	 *            the application class loader of the engine, it may be null.
+	 * @param time
+	 *            the time used to compile the script, in nanoseconds
+	 * @return the script in the cache, which may be compiled by other threads
+	 *         at the same time.
+	 */
+	public synchronized CompiledJavascript put( ClassLoader loader, String id,
+			int lineNumber, int optimizationLevel, String source,
+			CompiledJavascript script, long time )
+	{
+		expungeStaleScripts( );
+		compileTime += time;
+		ScriptKey key = new ScriptKey( loader, id, lineNumber,
+				optimizationLevel, source, queue );
+		CompiledJavascript cachedScript = scripts.get( key );
+		if ( cachedScript != null )
+		{
+			return cachedScript;
+		}
+		if ( maxSize > 0 )
+		{
+			scripts.put( key, script );
+		}
+		return script;
+	}
+
+	public synchronized void clear( )
+	{
+		scripts.clear( );
+	}
+
+	/**
+	 * remove the scripts compiled with the class loader, it should be called
+	 * when the class loader is discarded.
+	 *
+	 * @param loader
+	 *            the application class loader
+	 */
+	public synchronized void invalidate( ClassLoader loader )
+	{
+		Iterator<ScriptKey> keys = scripts.keySet( ).iterator( );
+		while ( keys.hasNext( ) )
+		{
+			if ( keys.next( ).getLoader( ) == loader )
+			{
+				keys.remove( );
+			}
+		}
+	}
+
+	/**
+	 * remove the scripts whose class loaders have been collected.
+	 */
+	private void expungeStaleScripts( )
+	{
+		if ( queue.poll( ) == null )
+		{
+			return;
+		}
+		while ( queue.poll( ) != null )
+		{
+		}
+		Iterator<ScriptKey> keys = scripts.keySet( ).iterator( );
+		while ( keys.hasNext( ) )
+		{
+			if ( keys.next( ).isStale( ) )
+			{
+				keys.remove( );
+			}
+		}
+	}
+
+	public int getMaxSize( )
+	{
+		return maxSize;
+	}
+
+	public synchronized int getSize( )
+	{
+		return scripts.size( );
+	}
+
+	public synchronized long getHitCount( )
+	{
+		return hitCount;
+	}
+
+	public synchronized long getMissCount( )
+	{
+		return missCount;
+	}
+
+	public synchronized long getEvictionCount( )
+	{
+		return evictionCount;
+	}
+
+	/**
+	 * @return the total time used to compile the scripts, in milliseconds.
+	 */
+	public synchronized long getCompileTime( )
+	{
+		return compileTime / 1000000;
+	}
+
+	/**
+	 * @return the estimated time saved by the cached scripts, in milliseconds.
+	 */
+	public synchronized long getSavedCompileTime( )
+	{
+		if ( missCount == 0 )
+		{
+			return 0;
+		}
+		return compileTime / missCount * hitCount / 1000000;
+	}
+
+	public String toString( )
+	{
+		return "CompiledScriptCache(size=" + getSize( ) + ", hit="
+				+ getHitCount( ) + ", miss=" + getMissCount( ) + ", eviction="
+				+ getEvictionCount( ) + ", compileTime=" + getCompileTime( )
+				+ "ms, savedTime=" + getSavedCompileTime( ) + "ms)";
+	}
+
+	private static class ScriptKey
+	{
+
+		final WeakReference<ClassLoader> loader;
+		final String id;
+		final int lineNumber;
+		final int optimizationLevel;
+		final String source;
+		final int hashCode;
+
+		ScriptKey( ClassLoader loader, String id, int lineNumber,
+				int optimizationLevel, String source,
+				ReferenceQueue<ClassLoader> queue )
+		{
+			this.loader = loader == null
+					? null
+					: new WeakReference<ClassLoader>( loader, queue );
+			this.id = id;
+			this.lineNumber = lineNumber;
+			this.optimizationLevel = optimizationLevel;
+			this.source = source;
+			int hash = source.hashCode( );
+			hash = hash * 31 + System.identityHashCode( loader );
+			hash = hash * 31 + ( id == null ? 0 : id.hashCode( ) );
+			hash = hash * 31 + lineNumber;
+			hash = hash * 31 + optimizationLevel;
+			this.hashCode = hash;
+		}
+
+		ClassLoader getLoader( )
+		{
+			return loader == null ? null : loader.get( );
+		}
+
+		boolean isStale( )
+		{
+			return loader != null && loader.get( ) == null;
+		}
+
+		public int hashCode( )
+		{
+			return hashCode;
+		}
+
+		public boolean equals( Object obj )
+		{
+			if ( this == obj )
+			{
+				return true;
+			}
+			if ( !( obj instanceof ScriptKey ) )
+			{
+				return false;
+			}
+			ScriptKey key = (ScriptKey) obj;
+			return hashCode == key.hashCode && lineNumber == key.lineNumber
+					&& optimizationLevel == key.optimizationLevel
+					&& ( loader == null ) == ( key.loader == null )
+					&& getLoader( ) == key.getLoader( ) && !isStale( )
+					&& source.equals( key.source )
+					&& ( id == null ? key.id == null : id.equals( key.id ) );
+		}
+	}
+}
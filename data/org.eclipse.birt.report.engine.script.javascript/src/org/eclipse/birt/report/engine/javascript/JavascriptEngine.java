@@ -25,8 +25,8 @@ import org.eclipse.birt.core.i18n.ResourceConstants;
 import org.eclipse.birt.core.script.CoreJavaScriptInitializer;
 import org.eclipse.birt.core.script.CoreJavaScriptWrapper;
 import org.eclipse.birt.core.script.ICompiledScript;
+import org.eclipse.birt.core.script.IConcurrentScriptEngine;
 import org.eclipse.birt.core.script.IJavascriptWrapper;
-import org.eclipse.birt.core.script.IScriptEngine;
 import org.eclipse.birt.core.script.JavascriptEvalUtil;
 import org.eclipse.birt.core.script.ScriptContext;
 import org.eclipse.birt.core.script.functionservice.IScriptFunctionContext;
@@ -47,7 +47,7 @@ import com.ibm.icu.util.ULocale;
  * Wraps around the Rhino Script context
  * 
  */
-public class JavascriptEngine implements IScriptEngine, IDataScriptEngine
+public class JavascriptEngine implements IConcurrentScriptEngine, IDataScriptEngine
 {
 
 	/**
@@ -58,11 +58,23 @@ public class JavascriptEngine implements IScriptEngine, IDataScriptEngine
 
 	private static Script cachedScript;
 
+	/**
+	 * the key of the thread local which marks the contexts entered by
+	 * enterThread()
+	 */
+	private static final String THREAD_ENGINE = JavascriptEngine.class
+			.getName( );
+
 	/**
 	 * the JavaScript Context
 	 */
 	protected Context context;
 
+	/**
+	 * the thread which entered the context
+	 */
+	private Thread contextThread;
+
 	protected ImporterTopLevel global;
 	
 	protected ScriptableObject root;
@@ -71,6 +83,12 @@ public class JavascriptEngine implements IScriptEngine, IDataScriptEngine
 
 	private JavascriptEngineFactory factory;
 
+	/**
+	 * the application class loader set to the engine, the compiled scripts
+	 * are only shared by the engines using the same class loader.
+	 */
+	private ClassLoader applicationClassLoader;
+
 	static
 	{
 		try
@@ -95,6 +113,7 @@ public class JavascriptEngine implements IScriptEngine, IDataScriptEngine
 		try
 		{
 			this.context = Context.enter( );
+			this.contextThread = Thread.currentThread( );
 			this.global = new ImporterTopLevel( );
 			this.root = root;
 			if ( root != null )
@@ -198,6 +217,45 @@ public class JavascriptEngine implements IScriptEngine, IDataScriptEngine
 		}
 	}
 
+	public void enterThread( )
+	{
+		if ( Thread.currentThread( ) == contextThread
+				|| Context.getCurrentContext( ) != null )
+		{
+			Context.enter( );
+			return;
+		}
+		// the context of other thread is configured as the engine's context
+		Context cx = Context.enter( );
+		cx.putThreadLocal( THREAD_ENGINE, this );
+		cx.setWrapFactory( context.getWrapFactory( ) );
+		cx.setLocale( context.getLocale( ) );
+		cx.setOptimizationLevel( context.getOptimizationLevel( ) );
+		cx.setApplicationClassLoader( context.getApplicationClassLoader( ) );
+	}
+
+	public void exitThread( )
+	{
+		Context.exit( );
+	}
+
+	/**
+	 * returns the context used in the current thread, it is the context
+	 * entered by enterThread() if the engine is used in other threads.
+	 */
+	private Context getContext( )
+	{
+		if ( Thread.currentThread( ) != contextThread )
+		{
+			Context cx = Context.getCurrentContext( );
+			if ( cx != null && cx.getThreadLocal( THREAD_ENGINE ) == this )
+			{
+				return cx;
+			}
+		}
+		return context;
+	}
+
 	/**
 	 * creates a new scripting scope
 	 */
@@ -218,7 +276,7 @@ public class JavascriptEngine implements IScriptEngine, IDataScriptEngine
 		}
 		else
 		{
-			jsScope = context.newObject( parent );
+			jsScope = getContext( ).newObject( parent );
 		}
 		jsScope.setParentScope( parent );
 		return jsScope;
@@ -232,6 +290,24 @@ public class JavascriptEngine implements IScriptEngine, IDataScriptEngine
 	public CompiledJavascript compile( ScriptContext scriptContext,
 			final String id, final int lineNumber, final String script ) throws BirtException
 	{
+		// the script compiled with debug information is not shared
+		final Context context = getContext( );
+		CompiledScriptCache cache = CompiledScriptCache.getInstance( );
+		boolean cacheable = cache.isEnabled( )
+				&& context.getDebugger( ) == null
+				&& !context.isGeneratingDebug( );
+		int optimizationLevel = context.getOptimizationLevel( );
+		if ( cacheable )
+		{
+			CompiledJavascript compiledScript = cache.get(
+					applicationClassLoader, id, lineNumber, optimizationLevel,
+					script );
+			if ( compiledScript != null )
+			{
+				return compiledScript;
+			}
+		}
+		long start = System.nanoTime( );
 		Script scriptObject = AccessController
 				.doPrivileged( new PrivilegedAction<Script>( ) {
 
@@ -241,7 +317,15 @@ public class JavascriptEngine implements IScriptEngine, IDataScriptEngine
 								ScriptUtil.getSecurityDomain( id ) );
 					}
 				} );
-		return new CompiledJavascript( id, lineNumber, script, scriptObject );
+		CompiledJavascript compiledScript = new CompiledJavascript( id,
+				lineNumber, script, scriptObject );
+		if ( cacheable )
+		{
+			return cache.put( applicationClassLoader, id, lineNumber,
+					optimizationLevel, script, compiledScript, System
+							.nanoTime( ) - start );
+		}
+		return compiledScript;
 	}
 
 	private JavascriptContext createJsContext( ScriptContext context )
@@ -266,7 +350,7 @@ public class JavascriptEngine implements IScriptEngine, IDataScriptEngine
 		//Register writeStatus method in root context.
 		if ( parent == null )
 		{
-			cachedScript.exec( this.context, jsScope );
+			cachedScript.exec( getContext( ), jsScope );
 		}
 		Map<String, Object> attrs = context.getAttributes( );
 		for ( Entry<String, Object> entry : attrs.entrySet( ) )
@@ -287,7 +371,8 @@ public class JavascriptEngine implements IScriptEngine, IDataScriptEngine
 		{
 			Script script = ( (CompiledJavascript) compiledScript )
 					.getCompiledScript( );
-			Object value = script.exec( context, getJSScope( scriptContext ) );
+			Object value = script.exec( getContext( ),
+					getJSScope( scriptContext ) );
 			return jsToJava( value );
 		}
 		catch ( Throwable e )
@@ -320,6 +405,7 @@ public class JavascriptEngine implements IScriptEngine, IDataScriptEngine
 		{
 			return;
 		}
+		applicationClassLoader = appLoader;
 		ClassLoader loader = appLoader;
 		try
 		{
@@ -368,7 +454,7 @@ public class JavascriptEngine implements IScriptEngine, IDataScriptEngine
 
 	public Context getJSContext( ScriptContext scriptContext )
 	{
-		return context;
+		return getContext( );
 	}
 
 	public Scriptable getJSScope( ScriptContext scriptContext )
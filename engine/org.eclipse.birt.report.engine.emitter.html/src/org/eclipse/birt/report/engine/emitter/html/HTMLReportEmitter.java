@@ -231,6 +231,16 @@ public class HTMLReportEmitter extends ContentEmitterAdapter
 	 */
 	protected int pageNo = 0;
 
+	/**
+	 * the number of the pages output before the pages of this render
+	 */
+	protected int pageOffset = 0;
+
+	/**
+	 * the pages are followed by the pages of another render
+	 */
+	protected boolean pagesContinued = false;
+
 	/**
 	 * the <code>HTMLWriter<code> object that is used to output HTML content
 	 */
@@ -337,6 +347,17 @@ public class HTMLReportEmitter extends ContentEmitterAdapter
 	private ITableContent cachedStartTable = null;
 	
 	protected TableLayout tableLayout = new TableLayout( this );
+
+	/**
+	 * The buffer reused to build the styles of the rows, cells, containers
+	 * and texts, which are output for every row of a table.
+	 */
+	private StringBuffer reusedStyleBuffer = new StringBuffer( );
+
+	/**
+	 * The chars of the text tested for the bidi characters.
+	 */
+	private char[] bidiTestBuffer = new char[256];
 	
 	/**
 	 * the constructor
@@ -435,6 +456,14 @@ public class HTMLReportEmitter extends ContentEmitterAdapter
 			if ( isEmbeddable )
 			{
 				enableInlineStyle = htmlOption.getEnableInlineStyle( );
+				Object offset = renderOption
+						.getOption( HTMLRenderOption.HTML_PAGE_OFFSET );
+				if ( offset instanceof Number )
+				{
+					pageOffset = ( (Number) offset ).intValue( );
+				}
+				pagesContinued = Boolean.TRUE.equals( renderOption
+						.getOption( HTMLRenderOption.HTML_PAGES_CONTINUED ) );
 			}
 			browserVersion = HTMLEmitterUtil.getBrowserVersion( htmlOption.getUserAgent( ) );
 			if ( browserVersion == HTMLEmitterUtil.BROWSER_IE5
@@ -621,7 +650,18 @@ public class HTMLReportEmitter extends ContentEmitterAdapter
 		logger.log( Level.FINEST, "[HTMLReportEmitter] Start emitter." ); //$NON-NLS-1$
 
 		this.report = report;
-		writer.open( out, "UTF-8" ); //$NON-NLS-1$
+		if ( pageOffset > 0 )
+		{
+			// the styles, the scripts and the root element are output before
+			// the first page by another render, they are written here only to
+			// keep the state of the writer and the emitter
+			writer.open( new DiscardOutputStream( ), "UTF-8" ); //$NON-NLS-1$
+			pageNo = pageOffset;
+		}
+		else
+		{
+			writer.open( out, "UTF-8" ); //$NON-NLS-1$
+		}
 		
 		ReportDesignHandle designHandle= null;
 		Report reportDesign = null;
@@ -1174,6 +1214,12 @@ public class HTMLReportEmitter extends ContentEmitterAdapter
 	public void end( IReportContent report )
 	{
 		logger.log( Level.FINEST, "[HTMLReportEmitter] End body." ); //$NON-NLS-1$
+		if ( pagesContinued )
+		{
+			// the errors and the end of the root element are output after the
+			// last page by another render
+			writer.redirect( new DiscardOutputStream( ) );
+		}
 		if ( report != null )
 		{
 			List errors = report.getErrors( );
@@ -1543,6 +1589,12 @@ public class HTMLReportEmitter extends ContentEmitterAdapter
 	 */
 	public void startPage( IPageContent page ) throws BirtException
 	{
+		if ( pageOffset > 0 && pageNo == pageOffset )
+		{
+			// continue the output of the pages before
+			writer.endStartTag( );
+			writer.redirect( out );
+		}
 		pageNo++;
 
 		if ( pageNo > 1 && outputMasterPageContent == false )
@@ -2123,7 +2175,7 @@ public class HTMLReportEmitter extends ContentEmitterAdapter
 		// bookmark
 		outputBookmark(  row, null );
 
-		StringBuffer styleBuffer = new StringBuffer( );
+		StringBuffer styleBuffer = getStyleBuffer( );
 		htmlEmitter.buildRowStyle( row, styleBuffer );
 		writer.attribute( HTMLTags.ATTR_STYLE, styleBuffer.toString( ) );
 		htmlEmitter.handleRowAlign( row );
@@ -2252,7 +2304,7 @@ public class HTMLReportEmitter extends ContentEmitterAdapter
 		
 		boolean fixedCellHeight = useFixedCellHeight( cell );
 
-		StringBuffer styleBuffer = new StringBuffer( );
+		StringBuffer styleBuffer = getStyleBuffer( );
 		htmlEmitter.buildCellStyle( cell, styleBuffer, isHead, fixedCellHeight );
 		writer.attribute( HTMLTags.ATTR_STYLE, styleBuffer.toString( ) );
 
@@ -2337,6 +2389,28 @@ public class HTMLReportEmitter extends ContentEmitterAdapter
 		}
 	}
 	
+	/**
+	 * Returns the cleared buffer to build a style. The buffer is reused, the
+	 * style should be output before the buffer is requested again.
+	 */
+	private StringBuffer getStyleBuffer( )
+	{
+		reusedStyleBuffer.setLength( 0 );
+		return reusedStyleBuffer;
+	}
+
+	private boolean requiresBidi( String text )
+	{
+		int length = text.length( );
+		if ( bidiTestBuffer.length < length )
+		{
+			bidiTestBuffer = new char[Math.max( length,
+					bidiTestBuffer.length * 2 )];
+		}
+		text.getChars( 0, length, bidiTestBuffer, 0 );
+		return Bidi.requiresBidi( bidiTestBuffer, 0, length );
+	}
+
 	private boolean useFixedCellHeight( ICellContent cell )
 	{
 		// fixed cell height requires the rowspan to be 1.
@@ -2542,7 +2616,7 @@ public class HTMLReportEmitter extends ContentEmitterAdapter
 			outputBookmark( container, HTMLTags.TAG_DIV );
 		}
 
-		StringBuffer styleBuffer = new StringBuffer( );
+		StringBuffer styleBuffer = getStyleBuffer( );
 		htmlEmitter.buildContainerStyle( container, styleBuffer );
 		writer.attribute( HTMLTags.ATTR_STYLE, styleBuffer.toString( ) );
 		htmlEmitter.handleContainerAlign( container );
@@ -2590,8 +2664,7 @@ public class HTMLReportEmitter extends ContentEmitterAdapter
 		// bidi_hcg: fix for bug 307327. If text content is Bidi, treat it as
 		// a inline-block element
 		if ( display == HTMLEmitterUtil.DISPLAY_INLINE
-				&& ( text.isDirectionRTL( ) || Bidi.requiresBidi( textValue
-						.toCharArray( ), 0, textValue.length( ) ) ) )
+				&& ( text.isDirectionRTL( ) || requiresBidi( textValue ) ) )
 		{
 			display |= HTMLEmitterUtil.DISPLAY_INLINE_BLOCK;
 		}
@@ -2619,7 +2692,7 @@ public class HTMLReportEmitter extends ContentEmitterAdapter
 		// title
 		writer.attribute( HTMLTags.ATTR_TITLE, text.getHelpText( ) ); //$NON-NLS-1$
 		
-		StringBuffer styleBuffer = new StringBuffer( );
+		StringBuffer styleBuffer = getStyleBuffer( );
 		htmlEmitter.buildTextStyle( text, styleBuffer, display );
 		writer.attribute( HTMLTags.ATTR_STYLE, styleBuffer.toString( ) );
 		
@@ -3828,6 +3901,21 @@ public class HTMLReportEmitter extends ContentEmitterAdapter
 	}
 }
 
+/**
+ * The stream dropping the output which is written by another render.
+ */
+class DiscardOutputStream extends OutputStream
+{
+
+	public void write( int b )
+	{
+	}
+
+	public void write( byte[] b, int off, int len )
+	{
+	}
+}
+
 class IDGenerator
 {
 	protected int bookmarkId = 0;
@@ -410,6 +410,65 @@ public class RenderTaskTest extends EngineCase
 		removeFile( outputFileName );
 	}
 
+	public void testParallelRender( ) throws Exception
+	{
+		createReportDocument( );
+		String serial = renderEmbeddableHTML( engine );
+
+		// 2 chunks, and 3 chunks of one page each
+		for ( int parallelism = 2; parallelism <= 3; parallelism++ )
+		{
+			EngineConfig config = new EngineConfig( );
+			config.setProperty( IEngineConfig.RENDER_PARALLELISM, Integer
+					.valueOf( parallelism ) );
+			IReportEngine parallelEngine = createReportEngine( config );
+			try
+			{
+				String parallel = renderEmbeddableHTML( parallelEngine );
+				// the root element is output once
+				assertEquals( 2, parallel.split( "__BIRT_ROOT" ).length ); //$NON-NLS-1$
+				assertEquals( maskGeneratedIDs( serial ),
+						maskGeneratedIDs( parallel ) );
+			}
+			finally
+			{
+				parallelEngine.destroy( );
+			}
+		}
+	}
+
+	/**
+	 * The generated bookmarks are numbered by each render and end with a
+	 * random UUID, so they differ in every render. All the other bytes of the
+	 * output are compared.
+	 */
+	private String maskGeneratedIDs( String html )
+	{
+		return html.replaceAll( "AUTOGENBOOKMARK_\\d+_[0-9a-f\\-]+", //$NON-NLS-1$
+				"AUTOGENBOOKMARK" ); //$NON-NLS-1$
+	}
+
+	private String renderEmbeddableHTML( IReportEngine reportEngine )
+			throws Exception
+	{
+		IReportDocument reportDoc = reportEngine
+				.openReportDocument( REPORT_DOCUMENT );
+		IRenderTask task = reportEngine.createRenderTask( reportDoc );
+		HTMLRenderOption option = new HTMLRenderOption( );
+		option.setOutputFormat( "html" ); //$NON-NLS-1$
+		option.setEmbeddable( true );
+		option.setHtmlPagination( true );
+		ByteArrayOutputStream out = new ByteArrayOutputStream( );
+		option.setOutputStream( out );
+		task.setRenderOption( option );
+		task.render( );
+		assertEquals( 3, task.getPageCount( ) );
+		assertTrue( task.getErrors( ).isEmpty( ) );
+		task.close( );
+		reportDoc.close( );
+		return new String( out.toByteArray( ), "UTF-8" );
+	}
+
 	public void testRenderPDFFromDocument( ) throws Exception
 	{
 		String outputFileName = ".render_pdf_from_document.pdf";
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.api;
+
+import java.io.File;
+
+import org.eclipse.birt.report.engine.EngineCase;
+import org.eclipse.birt.report.engine.api.impl.ReportDesignCache;
+import org.eclipse.birt.report.engine.api.impl.ReportEngine;
+
+/**
+ * Test the designs cached by the report engine.
+ */
+public class ReportDesignCacheTest extends EngineCase
+{
+
+	static final String REPORT_DESIGN_RESOURCE = "org/eclipse/birt/report/engine/api/ReportRunnableTest.rptdesign";
+	static final String[] REPORT_DESIGNS = new String[]{
+			"ReportDesignCacheTest1.rptdesign",
+			"ReportDesignCacheTest2.rptdesign",
+			"ReportDesignCacheTest3.rptdesign"};
+
+	public void setUp( ) throws Exception
+	{
+		for ( String design : REPORT_DESIGNS )
+		{
+			removeFile( design );
+			copyResource( REPORT_DESIGN_RESOURCE, design );
+		}
+		EngineConfig config = new EngineConfig( );
+		config.setProperty( IEngineConfig.DESIGN_CACHE_SIZE, Integer
+				.valueOf( 2 ) );
+		engine = createReportEngine( config );
+	}
+
+	public void tearDown( )
+	{
+		if ( engine != null )
+		{
+			engine.shutdown( );
+		}
+		for ( String design : REPORT_DESIGNS )
+		{
+			removeFile( design );
+		}
+	}
+
+	public void testCacheHit( ) throws Exception
+	{
+		ReportDesignCache cache = ( (ReportEngine) engine ).getDesignCache( );
+		assertNotNull( cache );
+
+		IReportRunnable runnable1 = engine.openReportDesign( REPORT_DESIGNS[0] );
+		IReportRunnable runnable2 = engine.openReportDesign( REPORT_DESIGNS[0] );
+		assertEquals( 1, cache.getMissCount( ) );
+		assertEquals( 1, cache.getHitCount( ) );
+
+		// every call gets its own design
+		assertTrue( runnable1 != runnable2 );
+		assertTrue( runnable1.getDesignHandle( ) != runnable2
+				.getDesignHandle( ) );
+		assertEquals( runnable1.getReportName( ), runnable2.getReportName( ) );
+		assertNotNull( runnable2.getImage( "img.jpg" ) );
+
+		// another name of the same file shares the entry
+		engine.openReportDesign( "." + File.separator + REPORT_DESIGNS[0] );
+		assertEquals( 1, cache.getMissCount( ) );
+		assertEquals( 2, cache.getHitCount( ) );
+	}
+
+	public void testInvalidateChangedDesign( ) throws Exception
+	{
+		ReportDesignCache cache = ( (ReportEngine) engine ).getDesignCache( );
+		engine.openReportDesign( REPORT_DESIGNS[0] );
+
+		File file = new File( REPORT_DESIGNS[0] );
+		file.setLastModified( file.lastModified( ) + 2000 );
+		engine.openReportDesign( REPORT_DESIGNS[0] );
+		assertEquals( 2, cache.getMissCount( ) );
+		assertEquals( 1, cache.getInvalidationCount( ) );
+
+		engine.openReportDesign( REPORT_DESIGNS[0] );
+		assertEquals( 1, cache.getHitCount( ) );
+
+		cache.invalidate( file );
+		assertEquals( 0, cache.getSize( ) );
+	}
+
+	public void testEvictEldestDesign( ) throws Exception
+	{
+		ReportDesignCache cache = ( (ReportEngine) engine ).getDesignCache( );
+		engine.openReportDesign( REPORT_DESIGNS[0] );
+		engine.openReportDesign( REPORT_DESIGNS[1] );
+		// design 0 is used recently, so design 1 is evicted
+		engine.openReportDesign( REPORT_DESIGNS[0] );
+		engine.openReportDesign( REPORT_DESIGNS[2] );
+		assertEquals( 2, cache.getSize( ) );
+		assertEquals( 1, cache.getEvictionCount( ) );
+
+		engine.openReportDesign( REPORT_DESIGNS[0] );
+		assertEquals( 2, cache.getHitCount( ) );
+		engine.openReportDesign( REPORT_DESIGNS[1] );
+		assertEquals( 4, cache.getMissCount( ) );
+	}
+}
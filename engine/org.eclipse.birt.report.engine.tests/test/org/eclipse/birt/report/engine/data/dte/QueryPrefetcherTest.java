@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.data.dte;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.birt.data.engine.api.querydefn.QueryDefinition;
+import org.eclipse.birt.data.engine.api.querydefn.SubqueryDefinition;
+import org.eclipse.birt.report.engine.EngineCase;
+import org.eclipse.birt.report.engine.api.EngineConfig;
+import org.eclipse.birt.report.engine.api.HTMLRenderOption;
+import org.eclipse.birt.report.engine.api.IEngineConfig;
+import org.eclipse.birt.report.engine.api.IReportRunnable;
+import org.eclipse.birt.report.engine.api.IRunAndRenderTask;
+
+public class QueryPrefetcherTest extends EngineCase
+{
+
+	static final String PREFETCH_DESIGN = "org/eclipse/birt/report/engine/data/dte/prefetch.rptdesign";
+
+	protected void setUp( ) throws Exception
+	{
+		EngineConfig config = new EngineConfig( );
+		config.setProperty( IEngineConfig.QUERY_PREFETCH_PARALLELISM,
+				Integer.valueOf( 4 ) );
+		engine = createReportEngine( config );
+	}
+
+	protected void tearDown( ) throws Exception
+	{
+		super.tearDown( );
+		removeFile( REPORT_DESIGN );
+	}
+
+	public void testIndependentQueries( )
+	{
+		QueryDefinition query = new QueryDefinition( );
+		query.setDataSetName( "dataSet" );
+		assertTrue( QueryPrefetcher.isIndependent( query ) );
+
+		// the query without data set
+		assertFalse( QueryPrefetcher.isIndependent( new QueryDefinition( ) ) );
+
+		// the nested query
+		QueryDefinition nested = new QueryDefinition( query );
+		nested.setDataSetName( "nestedDataSet" );
+		assertFalse( QueryPrefetcher.isIndependent( nested ) );
+
+		// the sub query
+		assertFalse( QueryPrefetcher.isIndependent( new SubqueryDefinition(
+				"subQuery", query ) ) );
+
+		// the query using the results of other query
+		QueryDefinition reference = new QueryDefinition( );
+		reference.setDataSetName( "dataSet" );
+		reference.setQueryResultsID( "QuRs0" );
+		assertFalse( QueryPrefetcher.isIndependent( reference ) );
+	}
+
+	/**
+	 * The queries of the same data source are prefetched concurrently, the
+	 * data source is opened, and its beforeOpen script is executed, once.
+	 */
+	public void testOpenDataSourceOnce( ) throws Exception
+	{
+		useDesignFile( PREFETCH_DESIGN );
+		IReportRunnable runnable = engine.openReportDesign( REPORT_DESIGN );
+		IRunAndRenderTask task = engine.createRunAndRenderTask( runnable );
+		AtomicInteger openCount = new AtomicInteger( );
+		Map appContext = new HashMap( );
+		appContext.put( "openCount", openCount );
+		task.setAppContext( appContext );
+		HTMLRenderOption options = new HTMLRenderOption( );
+		ByteArrayOutputStream out = new ByteArrayOutputStream( );
+		options.setOutputStream( out );
+		options.setOutputFormat( "html" );
+		task.setRenderOption( options );
+		try
+		{
+			task.run( );
+			assertTrue( task.getErrors( ).isEmpty( ) );
+		}
+		finally
+		{
+			task.close( );
+		}
+		assertEquals( 1, openCount.get( ) );
+		// all the tables are generated
+		String html = new String( out.toByteArray( ) );
+		assertEquals( 4, getCount( html, ">9<" ) );
+	}
+}
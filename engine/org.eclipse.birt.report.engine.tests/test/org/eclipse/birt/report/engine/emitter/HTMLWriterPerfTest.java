@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.emitter;
+
+import java.io.OutputStream;
+
+import junit.framework.TestCase;
+
+/**
+ * Performance test of HTMLWriter. It writes a synthetic table of 100k rows
+ * with HTMLWriter and with the writer encoding through an OutputStreamWriter.
+ * It is not part of AllTests.
+ */
+public class HTMLWriterPerfTest extends TestCase
+{
+
+	static final int ROW_COUNT = 100000;
+	static final int RUN_COUNT = 5;
+
+	/**
+	 * HTMLWriter should not be slower than the writer encoding through an
+	 * OutputStreamWriter. The best time of the runs is compared, with a
+	 * margin for the noise of the measure.
+	 */
+	public void testWriteTableThroughput( )
+	{
+		long streamTime = Long.MAX_VALUE;
+		long time = Long.MAX_VALUE;
+		for ( int run = 0; run < RUN_COUNT; run++ )
+		{
+			streamTime = Math.min( streamTime,
+					writeTable( new StreamHTMLWriter( ) ) );
+			time = Math.min( time, writeTable( new HTMLWriter( ) ) );
+		}
+		assertTrue( time <= streamTime * 3 / 2 );
+	}
+
+	/**
+	 * @return the consumed time in ns
+	 */
+	private long writeTable( HTMLWriter writer )
+	{
+		long start = System.nanoTime( );
+		HTMLWriterTest.writeTable( writer, new OutputStream( ) {
+
+			public void write( int b )
+			{
+			}
+
+			public void write( byte[] b, int off, int len )
+			{
+			}
+		}, ROW_COUNT );
+		return System.nanoTime( ) - start;
+	}
+}
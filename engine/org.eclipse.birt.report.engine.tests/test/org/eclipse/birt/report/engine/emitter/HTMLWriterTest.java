@@ -13,6 +13,8 @@ package org.eclipse.birt.report.engine.emitter;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
 
 import junit.framework.TestCase;
 
@@ -99,4 +101,61 @@ public class HTMLWriterTest extends TestCase
 
 		stream.close( );
 	}
-}
\ No newline at end of file
+
+	/**
+	 * The output of a table written by HTMLWriter should be the same as the
+	 * output written through an OutputStreamWriter, including the escaped
+	 * texts, the characters out of the BMP and the output longer than the
+	 * buffers.
+	 */
+	public void testWriteTable( ) throws IOException
+	{
+		ByteArrayOutputStream expected = new ByteArrayOutputStream( );
+		writeTable( new StreamHTMLWriter( ), expected, 200 );
+		ByteArrayOutputStream out = new ByteArrayOutputStream( );
+		writeTable( new HTMLWriter( ), out, 200 );
+		assertTrue( Arrays.equals( expected.toByteArray( ), out.toByteArray( ) ) );
+	}
+
+	/**
+	 * Writes a synthetic table, each row has 5 cells with styles and texts.
+	 */
+	static void writeTable( HTMLWriter writer, OutputStream out, int rowCount )
+	{
+		writer.open( out );
+		StringBuffer style = new StringBuffer( );
+		writer.openTag( "table" ); //$NON-NLS-1$
+		for ( int row = 0; row < rowCount; row++ )
+		{
+			writer.openTag( "tr" ); //$NON-NLS-1$
+			writer.attribute( "class", "style_1" ); //$NON-NLS-1$ //$NON-NLS-2$
+			writer.attribute( "rowspan", 1 ); //$NON-NLS-1$
+			for ( int column = 0; column < 5; column++ )
+			{
+				writer.openTag( "td" ); //$NON-NLS-1$
+				style.setLength( 0 );
+				style.append( "border: 1px solid #000000; width: " ); //$NON-NLS-1$
+				style.append( column + 1 );
+				style.append( "in; font-family: \"Arial\"" ); //$NON-NLS-1$
+				writer.attribute( "style", style.toString( ) ); //$NON-NLS-1$
+				writer.openTag( "div" ); //$NON-NLS-1$
+				writer.text( "row " + row + " & <column> " + column //$NON-NLS-1$ //$NON-NLS-2$
+						+ "  \u00e9\u4e2d\uD840\uDC00\r\n  end" ); //$NON-NLS-1$
+				writer.closeTag( "div" ); //$NON-NLS-1$
+				writer.closeTag( "td" ); //$NON-NLS-1$
+			}
+			writer.closeTag( "tr" ); //$NON-NLS-1$
+		}
+		StringBuilder text = new StringBuilder( );
+		for ( int i = 0; i < 1000; i++ )
+		{
+			text.append( "long text <" ).append( i ).append( "> " ); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		writer.openTag( "tr" ); //$NON-NLS-1$
+		writer.text( text.toString( ), false );
+		writer.closeTag( "tr" ); //$NON-NLS-1$
+		writer.closeTag( "table" ); //$NON-NLS-1$
+		writer.endWriter( );
+		writer.close( );
+	}
+}
@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.emitter;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * The HTML writer writing the output the way it was written before the UTF-8
+ * output was encoded by the writer itself: the text is encoded through an
+ * OutputStreamWriter, the escaped text and the numeric attributes are printed
+ * as strings. It is the reference to test the output of HTMLWriter against.
+ */
+class StreamHTMLWriter extends HTMLWriter
+{
+
+	public void open( OutputStream outputStream, String encoding )
+	{
+		this.encoding = encoding;
+		try
+		{
+			writer = new OutputStreamWriter( outputStream, encoding );
+		}
+		catch ( UnsupportedEncodingException e )
+		{
+			throw new IllegalArgumentException( encoding );
+		}
+	}
+
+	public void text( String value, boolean whitespace )
+	{
+		if ( value == null || value.length( ) == 0 )
+		{
+			return;
+		}
+		if ( !bPairedFlag )
+		{
+			print( '>' );
+			bPairedFlag = true;
+		}
+		print( HTMLEncodeUtil.encodeText( value, whitespace ) );
+		bText = true;
+	}
+
+	public void attribute( String attrName, float attrValue )
+	{
+		print( ' ' + attrName + "=\"" + Float.toString( attrValue ) + '\"' ); //$NON-NLS-1$
+	}
+
+	public void attribute( String attrName, double attrValue )
+	{
+		print( ' ' + attrName + "=\"" + Double.toString( attrValue ) + '\"' ); //$NON-NLS-1$
+	}
+
+	public void attribute( String attrName, int attrValue )
+	{
+		print( ' ' + attrName + "=\"" + Integer.toString( attrValue ) + '\"' ); //$NON-NLS-1$
+	}
+}
@@ -13,6 +13,9 @@ package org.eclipse.birt.report.engine.emitter;
 
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
 
 import junit.framework.TestCase;
 
@@ -104,4 +107,29 @@ public class XMLWriterTest extends TestCase
 				out.toString( "UTF-8" ).replaceAll( "[\\r|\\n |\\t]", "" ) );
 	}
 
+	/**
+	 * The UTF-8 output is encoded by the writer itself, it should be the same
+	 * as the output of the stream writer, including the characters out of the
+	 * BMP and the text longer than the buffers.
+	 */
+	public void testUTF8Encoding( ) throws Exception
+	{
+		StringBuilder text = new StringBuilder( );
+		for ( int i = 0; i < 10000; i++ )
+		{
+			text.append( "a\u00e9\u4e2d\uD840\uDC00" );
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream( );
+		XMLWriter writer = new XMLWriter( );
+		writer.open( out, "UTF-8" );
+		writer.text( text.toString( ) );
+		writer.close( );
+
+		ByteArrayOutputStream expected = new ByteArrayOutputStream( );
+		Writer streamWriter = new OutputStreamWriter( expected, "UTF-8" );
+		streamWriter.write( text.toString( ) );
+		streamWriter.close( );
+		assertTrue( Arrays.equals( expected.toByteArray( ), out.toByteArray( ) ) );
+	}
+
 }
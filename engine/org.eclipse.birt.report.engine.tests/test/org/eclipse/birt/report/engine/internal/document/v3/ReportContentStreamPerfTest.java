@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.internal.document.v3;
+
+import java.io.File;
+
+import org.eclipse.birt.core.archive.compound.ArchiveFile;
+import org.eclipse.birt.report.engine.EngineCase;
+
+/**
+ * Performance test of loading the content stream saved in version 1 and in
+ * the current version. It is not part of AllTests.
+ */
+public class ReportContentStreamPerfTest extends EngineCase
+{
+
+	static final String ARCHIVE_FILE = "./utest/content-perf.rptdocument";
+	static final String CONTENT_STREAM = "/content/content.dat";
+	static final String CONTENT_STREAM_V1 = "/content/content.dat.v1";
+	static final int ROW_COUNT = 10000;
+	static final int RUN_COUNT = 5;
+
+	ArchiveFile archive;
+
+	public void setUp( ) throws Exception
+	{
+		super.setUp( );
+		new File( ARCHIVE_FILE ).getParentFile( ).mkdirs( );
+		new File( ARCHIVE_FILE ).delete( );
+		archive = new ArchiveFile( ARCHIVE_FILE, "rw" );
+	}
+
+	public void tearDown( ) throws Exception
+	{
+		archive.close( );
+		new File( ARCHIVE_FILE ).delete( );
+		super.tearDown( );
+	}
+
+	/**
+	 * Loading the stream of the current version should not be slower than
+	 * loading the stream of version 1. The best time of the runs is compared,
+	 * with a margin for the noise of the measure.
+	 */
+	public void testLoadTime( ) throws Exception
+	{
+		ReportContentStreamTest.writeV1( archive, CONTENT_STREAM_V1, ROW_COUNT );
+		ReportContentStreamTest.writeContents( archive, CONTENT_STREAM,
+				ROW_COUNT );
+
+		long timeV1 = Long.MAX_VALUE;
+		long time = Long.MAX_VALUE;
+		for ( int run = 0; run < RUN_COUNT; run++ )
+		{
+			timeV1 = Math.min( timeV1, loadContents( CONTENT_STREAM_V1 ) );
+			time = Math.min( time, loadContents( CONTENT_STREAM ) );
+		}
+		assertTrue( time <= timeV1 * 3 / 2 );
+	}
+
+	/**
+	 * @return the consumed time in ns
+	 */
+	private long loadContents( String name ) throws Exception
+	{
+		long start = System.nanoTime( );
+		ReportContentStreamTest.assertContents( archive, name, ROW_COUNT );
+		return System.nanoTime( ) - start;
+	}
+}
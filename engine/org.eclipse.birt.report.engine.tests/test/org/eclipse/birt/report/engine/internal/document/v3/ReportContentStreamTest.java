@@ -0,0 +1,320 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.internal.document.v3;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.birt.core.archive.RAInputStream;
+import org.eclipse.birt.core.archive.RAOutputStream;
+import org.eclipse.birt.core.archive.compound.ArchiveFile;
+import org.eclipse.birt.core.archive.compound.ArchiveReader;
+import org.eclipse.birt.core.archive.compound.ArchiveWriter;
+import org.eclipse.birt.core.util.IOUtil;
+import org.eclipse.birt.report.engine.EngineCase;
+import org.eclipse.birt.report.engine.api.DataID;
+import org.eclipse.birt.report.engine.api.DataSetID;
+import org.eclipse.birt.report.engine.api.InstanceID;
+import org.eclipse.birt.report.engine.content.IContent;
+import org.eclipse.birt.report.engine.content.ILabelContent;
+import org.eclipse.birt.report.engine.content.IRowContent;
+import org.eclipse.birt.report.engine.content.ITableContent;
+import org.eclipse.birt.report.engine.content.impl.ReportContent;
+import org.eclipse.birt.report.engine.internal.document.DocumentExtension;
+
+public class ReportContentStreamTest extends EngineCase
+{
+
+	static final String ARCHIVE_FILE = "./utest/content.rptdocument";
+	static final String CONTENT_STREAM = "/content/content.dat";
+	static final int ROW_COUNT = 100;
+
+	ArchiveFile archive;
+
+	public void setUp( ) throws Exception
+	{
+		super.setUp( );
+		new File( ARCHIVE_FILE ).getParentFile( ).mkdirs( );
+		new File( ARCHIVE_FILE ).delete( );
+		archive = new ArchiveFile( ARCHIVE_FILE, "rw" );
+	}
+
+	public void tearDown( ) throws Exception
+	{
+		archive.close( );
+		new File( ARCHIVE_FILE ).delete( );
+		super.tearDown( );
+	}
+
+	/**
+	 * The contents are read back the same, the repeated styles and data sets
+	 * are saved once.
+	 */
+	public void testReadWrite( ) throws Exception
+	{
+		long contentSize = writeContents( archive, CONTENT_STREAM, ROW_COUNT );
+		RAInputStream in = new ArchiveReader( archive )
+				.getStream( CONTENT_STREAM );
+		try
+		{
+			// the contents of version 1 are saved with 28 bytes index
+			assertTrue( in.length( ) < contentSize + 28 * ( ROW_COUNT * 2 + 1 ) );
+		}
+		finally
+		{
+			in.close( );
+		}
+		assertContents( archive, CONTENT_STREAM, ROW_COUNT );
+	}
+
+	/**
+	 * The content stream of version 1 is still read.
+	 */
+	public void testReadVersion1( ) throws Exception
+	{
+		writeV1( archive, CONTENT_STREAM, ROW_COUNT );
+		assertContents( archive, CONTENT_STREAM, ROW_COUNT );
+	}
+
+	/**
+	 * The stream saved in the current version is smaller than the stream saved
+	 * in version 1.
+	 */
+	public void testStreamSize( ) throws Exception
+	{
+		String streamV1 = CONTENT_STREAM + ".v1";
+		writeV1( archive, streamV1, ROW_COUNT );
+		writeContents( archive, CONTENT_STREAM, ROW_COUNT );
+		assertTrue( getStreamSize( archive, CONTENT_STREAM ) < getStreamSize(
+				archive, streamV1 ) );
+	}
+
+	/**
+	 * write the contents with the current version.
+	 * 
+	 * @return the size of the contents without the index.
+	 */
+	static long writeContents( ArchiveFile archive, String name, int rowCount )
+			throws IOException
+	{
+		ReportContent report = new ReportContent( );
+		ReportContentWriterV3 writer = new ReportContentWriterV3(
+				new ArchiveWriter( archive ), name );
+		long contentSize = 0;
+		try
+		{
+			writer.writeReport( report );
+			ITableContent table = createTable( report );
+			writer.writeContent( table );
+			contentSize += getContentSize( table );
+			for ( int i = 0; i < rowCount; i++ )
+			{
+				IRowContent row = createRow( report, table, i );
+				writer.writeContent( row );
+				ILabelContent label = createLabel( report, row, i );
+				writer.writeContent( label );
+				contentSize += getContentSize( row ) + getContentSize( label );
+			}
+		}
+		finally
+		{
+			writer.close( );
+		}
+		return contentSize;
+	}
+
+	static void writeV1( ArchiveFile archive, String name, int rowCount )
+			throws IOException
+	{
+		ReportContent report = new ReportContent( );
+		RAOutputStream out = new ArchiveWriter( archive )
+				.createRandomAccessStream( name );
+		try
+		{
+			out.writeInt( 1 );
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream( );
+			DataOutputStream data = new DataOutputStream( buffer );
+			IOUtil.writeInt( data, IContent.REPORT_CONTENT );
+			report.writeContent( data );
+			long offset = writeV1( out, 0, -1, buffer.toByteArray( ) );
+			ITableContent table = createTable( report );
+			long tableOffset = offset;
+			offset = writeV1( out, offset, -1, table );
+			long previous = -1;
+			for ( int i = 0; i < rowCount; i++ )
+			{
+				IRowContent row = createRow( report, table, i );
+				long rowOffset = offset;
+				if ( previous == -1 )
+				{
+					updateLinkV1( out, tableOffset + 16, rowOffset );
+				}
+				else
+				{
+					updateLinkV1( out, previous + 8, rowOffset );
+				}
+				previous = rowOffset;
+				offset = writeV1( out, offset, tableOffset, row );
+				ILabelContent label = createLabel( report, row, i );
+				updateLinkV1( out, rowOffset + 16, offset );
+				offset = writeV1( out, offset, rowOffset, label );
+			}
+		}
+		finally
+		{
+			out.close( );
+		}
+	}
+
+	static long getStreamSize( ArchiveFile archive, String name )
+			throws IOException
+	{
+		RAInputStream in = new ArchiveReader( archive ).getStream( name );
+		try
+		{
+			return in.length( );
+		}
+		finally
+		{
+			in.close( );
+		}
+	}
+
+	static void assertContents( ArchiveFile archive, String name,
+			int rowCount ) throws IOException
+	{
+		RAInputStream in = new ArchiveReader( archive ).getStream( name );
+		try
+		{
+			ReportContentReaderV3 reader = new ReportContentReaderV3(
+					new ReportContent( ), in,
+					ReportContentStreamTest.class.getClassLoader( ) );
+			try
+			{
+				assertContents( reader, rowCount );
+			}
+			finally
+			{
+				reader.close( );
+			}
+		}
+		finally
+		{
+			in.close( );
+		}
+	}
+
+	private static void assertContents( ReportContentReaderV3 reader,
+			int rowCount ) throws IOException
+	{
+		reader.setOffset( reader.getRoot( ) );
+		IContent table = reader.readContent( );
+		assertEquals( IContent.TABLE_CONTENT, table.getContentType( ) );
+		assertEquals( "/1.10(ds:0)", table.getInstanceID( ).toString( ) );
+		for ( int i = 0; i < rowCount; i++ )
+		{
+			IContent row = reader.readContent( );
+			assertEquals( IContent.ROW_CONTENT, row.getContentType( ) );
+			assertEquals( "/" + ( i * 2 + 2 ) + ".11({ds}." + i + ".q:" + i
+					+ ")", row.getInstanceID( ).toString( ) );
+			assertEquals( "bold", row.getStyle( ).getFontWeight( ) );
+
+			IContent label = reader.readContent( );
+			assertEquals( IContent.LABEL_CONTENT, label.getContentType( ) );
+			assertEquals( "/" + ( i * 2 + 3 ) + ".12({ds}." + i + ".q:c" + i
+					+ ")", label.getInstanceID( ).toString( ) );
+			assertEquals( "text" + i, ( (ILabelContent) label ).getText( ) );
+			assertEquals( i % 2 == 0 ? "right" : "left", label.getStyle( )
+					.getTextAlign( ) );
+			DocumentExtension docExt = (DocumentExtension) label
+					.getExtension( IContent.DOCUMENT_EXTENSION );
+			assertEquals( ( (DocumentExtension) row
+					.getExtension( IContent.DOCUMENT_EXTENSION ) ).getIndex( ),
+					docExt.getParent( ) );
+		}
+		assertEquals( -1, reader.getOffset( ) );
+	}
+
+	private static ITableContent createTable( ReportContent report )
+	{
+		ITableContent table = report.createTableContent( );
+		table.setInstanceID( new InstanceID( null, 1, 10, new DataID(
+				new DataSetID( "ds" ), 0 ) ) );
+		return table;
+	}
+
+	private static IRowContent createRow( ReportContent report,
+			IContent table, int rowId )
+	{
+		IRowContent row = report.createRowContent( );
+		row.setParent( table );
+		DataSetID dataSet = new DataSetID( new DataSetID( "ds" ), rowId, "q" );
+		row.setInstanceID( new InstanceID( null, rowId * 2 + 2, 11,
+				new DataID( dataSet, rowId ) ) );
+		row.getStyle( ).setFontWeight( "bold" );
+		return row;
+	}
+
+	private static ILabelContent createLabel( ReportContent report,
+			IContent row, int rowId )
+	{
+		ILabelContent label = report.createLabelContent( );
+		label.setParent( row );
+		DataSetID dataSet = new DataSetID( new DataSetID( "ds" ), rowId, "q" );
+		label.setInstanceID( new InstanceID( null, rowId * 2 + 3, 12,
+				new DataID( dataSet, "c" + rowId ) ) );
+		label.setText( "text" + rowId );
+		label.getStyle( ).setTextAlign( rowId % 2 == 0 ? "right" : "left" );
+		return label;
+	}
+
+	private static long getContentSize( IContent content ) throws IOException
+	{
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream( );
+		content.writeContent( new DataOutputStream( buffer ) );
+		return buffer.size( );
+	}
+
+	private static long writeV1( RAOutputStream out, long offset, long parent,
+			IContent content ) throws IOException
+	{
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream( );
+		DataOutputStream data = new DataOutputStream( buffer );
+		IOUtil.writeInt( data, content.getContentType( ) );
+		content.writeContent( data );
+		return writeV1( out, offset, parent, buffer.toByteArray( ) );
+	}
+
+	/**
+	 * write the content as version 1: parent, next, first child, length, data
+	 */
+	private static long writeV1( RAOutputStream out, long offset, long parent,
+			byte[] data ) throws IOException
+	{
+		out.seek( 4 + offset );
+		out.writeLong( parent );
+		out.writeLong( -1 );
+		out.writeLong( -1 );
+		out.writeInt( data.length );
+		out.write( data );
+		return offset + 28 + data.length;
+	}
+
+	private static void updateLinkV1( RAOutputStream out, long position,
+			long value ) throws IOException
+	{
+		out.seek( 4 + position );
+		out.writeLong( value );
+	}
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.layout.html;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+import org.eclipse.birt.report.engine.EngineCase;
+import org.eclipse.birt.report.engine.api.HTMLRenderOption;
+import org.eclipse.birt.report.engine.api.IReportRunnable;
+import org.eclipse.birt.report.engine.api.IRunAndRenderTask;
+
+/**
+ * Performance test of the peak heap used to run and render a table whose rows
+ * are all in one group with a dropped cell, in the HTML output without
+ * pagination. It is not part of AllTests.
+ */
+public class TableRowBufferPerfTest extends EngineCase
+{
+
+	static final String DESIGN = "org/eclipse/birt/report/engine/layout/html/table_row_buffer.rptdesign";
+
+	public void setUp( ) throws Exception
+	{
+		super.setUp( );
+		useDesignFile( DESIGN );
+	}
+
+	public void tearDown( ) throws Exception
+	{
+		removeFile( REPORT_DESIGN );
+		super.tearDown( );
+	}
+
+	/**
+	 * With the default row buffer, the peak heap stays flat as the rows
+	 * increase. The peak of 100k rows is compared to the peak of 10k rows,
+	 * with a margin for the noise of the measure. The 1M and 10M rows take
+	 * minutes and are not run.
+	 */
+	public void testRowBufferMemory( ) throws Exception
+	{
+		// run once to load the engine classes
+		measurePeakHeap( 1000 );
+		long peak = measurePeakHeap( 10000 );
+		long largePeak = measurePeakHeap( 100000 );
+		assertTrue( largePeak <= peak * 2 );
+	}
+
+	private long measurePeakHeap( int rowCount ) throws Exception
+	{
+		System.gc( );
+		for ( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans( ) )
+		{
+			pool.resetPeakUsage( );
+		}
+		IReportRunnable report = engine.openReportDesign( REPORT_DESIGN );
+		IRunAndRenderTask task = engine.createRunAndRenderTask( report );
+		task.setParameterValue( "rowCount", Integer.valueOf( rowCount ) );
+		HTMLRenderOption options = new HTMLRenderOption( );
+		options.setOutputFormat( "html" );
+		options.setHtmlPagination( false );
+		options.setOutputStream( new OutputStream( ) {
+
+			public void write( int b )
+			{
+			}
+
+			public void write( byte[] b, int off, int len )
+			{
+			}
+		} );
+		task.setRenderOption( options );
+		task.run( );
+		task.close( );
+		// the peak of the old generation, where the retained contents are
+		long peak = 0;
+		for ( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans( ) )
+		{
+			if ( pool.getType( ) == MemoryType.HEAP
+					&& pool.isUsageThresholdSupported( ) )
+			{
+				peak += pool.getPeakUsage( ).getUsed( );
+			}
+		}
+		return peak;
+	}
+}
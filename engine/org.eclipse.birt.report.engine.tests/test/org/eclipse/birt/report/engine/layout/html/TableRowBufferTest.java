@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.layout.html;
+
+import java.io.ByteArrayOutputStream;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.birt.report.engine.EngineCase;
+import org.eclipse.birt.report.engine.api.HTMLRenderOption;
+import org.eclipse.birt.report.engine.api.IRenderOption;
+import org.eclipse.birt.report.engine.api.IReportRunnable;
+import org.eclipse.birt.report.engine.api.IRunAndRenderTask;
+
+/**
+ * Test the rows buffered by a table with dropped cells in the HTML layout.
+ */
+public class TableRowBufferTest extends EngineCase
+{
+
+	static final String DESIGN = "org/eclipse/birt/report/engine/layout/html/table_row_buffer.rptdesign";
+
+	public void setUp( ) throws Exception
+	{
+		super.setUp( );
+		useDesignFile( DESIGN );
+	}
+
+	public void tearDown( ) throws Exception
+	{
+		removeFile( REPORT_DESIGN );
+		super.tearDown( );
+	}
+
+	/**
+	 * The cached rows are flushed when the buffer is full in the output
+	 * without pagination, all the rows are still output.
+	 */
+	public void testFlushCachedRows( ) throws Exception
+	{
+		String unbounded = runAndRender( 1000, Integer.valueOf( 0 ) );
+		String bounded = runAndRender( 1000, Integer.valueOf( 100 ) );
+		assertEquals( getCount( unbounded, "<tr" ), getCount( bounded, "<tr" ) );
+		assertTrue( bounded.indexOf( ">999<" ) != -1 );
+		// the dropped cell is continued after each flush
+		assertTrue( getCount( bounded, "rowspan" ) > getCount( unbounded,
+				"rowspan" ) );
+	}
+
+	/**
+	 * No more rows than the buffer size are cached, so the dropped cell spans
+	 * at most the buffer size of rows in each flush.
+	 */
+	public void testRowBufferBound( ) throws Exception
+	{
+		String unbounded = runAndRender( 1000, Integer.valueOf( 0 ) );
+		assertTrue( getMaxRowSpan( unbounded ) > 100 );
+		String bounded = runAndRender( 1000, Integer.valueOf( 100 ) );
+		int maxRowSpan = getMaxRowSpan( bounded );
+		assertTrue( maxRowSpan > 1 );
+		assertTrue( maxRowSpan <= 100 );
+	}
+
+	/**
+	 * The buffer is bounded by default, the dropped cell spans at most the
+	 * default buffer size of 10000 rows in each flush.
+	 */
+	public void testDefaultRowBufferSize( ) throws Exception
+	{
+		String html = runAndRender( 10100, null );
+		int maxRowSpan = getMaxRowSpan( html );
+		assertTrue( maxRowSpan > 1 );
+		assertTrue( maxRowSpan <= 10000 );
+		assertTrue( html.indexOf( ">10099<" ) != -1 );
+	}
+
+	private int getMaxRowSpan( String html )
+	{
+		int maxRowSpan = 0;
+		Matcher matcher = Pattern.compile( "rowspan=\"(\\d+)\"" ).matcher( html ); //$NON-NLS-1$
+		while ( matcher.find( ) )
+		{
+			maxRowSpan = Math.max( maxRowSpan, Integer.parseInt( matcher
+					.group( 1 ) ) );
+		}
+		return maxRowSpan;
+	}
+
+	private String runAndRender( int rowCount, Integer rowBufferSize )
+			throws Exception
+	{
+		IRunAndRenderTask task = createTask( rowCount );
+		HTMLRenderOption options = new HTMLRenderOption( );
+		ByteArrayOutputStream out = new ByteArrayOutputStream( );
+		options.setOutputStream( out );
+		options.setOutputFormat( "html" );
+		options.setHtmlPagination( false );
+		if ( rowBufferSize != null )
+		{
+			options.setOption( IRenderOption.TABLE_ROW_BUFFER_SIZE,
+					rowBufferSize );
+		}
+		task.setRenderOption( options );
+		task.run( );
+		assertTrue( task.getErrors( ).isEmpty( ) );
+		task.close( );
+		return new String( out.toByteArray( ), "UTF-8" );
+	}
+
+	private IRunAndRenderTask createTask( int rowCount ) throws Exception
+	{
+		IReportRunnable report = engine.openReportDesign( REPORT_DESIGN );
+		IRunAndRenderTask task = engine.createRunAndRenderTask( report );
+		task.setParameterValue( "rowCount", Integer.valueOf( rowCount ) );
+		return task;
+	}
+}
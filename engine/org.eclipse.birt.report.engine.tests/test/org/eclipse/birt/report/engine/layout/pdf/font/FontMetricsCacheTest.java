@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.layout.pdf.font;
+
+import junit.framework.TestCase;
+
+import com.lowagie.text.pdf.BaseFont;
+
+public class FontMetricsCacheTest extends TestCase
+{
+
+	static final String[] WORDS = new String[]{"Hello", "World,", "W",
+			"été", "中文", "a𠀀b", ""};
+
+	FontMetricsCache cache;
+	BaseFont bf;
+
+	public void setUp( ) throws Exception
+	{
+		cache = FontMetricsCache.getInstance( );
+		cache.clear( );
+		bf = BaseFont.createFont( BaseFont.HELVETICA, BaseFont.WINANSI, false );
+	}
+
+	public void tearDown( ) throws Exception
+	{
+		cache.clear( );
+	}
+
+	/**
+	 * The cached widths are the same as the widths measured by the font in
+	 * all the sizes.
+	 */
+	public void testWidth( )
+	{
+		float[] sizes = new float[]{1f, 9f, 10.5f, 12f, 72f};
+		for ( String word : WORDS )
+		{
+			for ( float size : sizes )
+			{
+				assertEquals( word, bf.getWidthPoint( word, size ),
+						cache.getWidthPoint( bf, word, size ), 0f );
+			}
+		}
+	}
+
+	public void testCharExists( )
+	{
+		FontMetricsCache.GlyphTable table = cache.getGlyphTable( bf );
+		for ( char c = 0; c < 0x3000; c++ )
+		{
+			assertEquals( bf.charExists( c ), table.charExists( c ) );
+		}
+	}
+
+	/**
+	 * The metrics of a character is read from the font once, and the words
+	 * with surrogates are measured by the font once.
+	 */
+	public void testCounters( )
+	{
+		cache.getWidthPoint( bf, "abca", 10f );
+		assertEquals( 3, cache.getGlyphMissCount( ) );
+		cache.getWidthPoint( bf, "cab", 12f );
+		assertEquals( 3, cache.getGlyphMissCount( ) );
+
+		String word = "a𠀀b";
+		cache.getWidthPoint( bf, word, 10f );
+		assertEquals( 1, cache.getWordMissCount( ) );
+		assertEquals( 0, cache.getWordHitCount( ) );
+		cache.getWidthPoint( bf, word, 12f );
+		assertEquals( 1, cache.getWordMissCount( ) );
+		assertEquals( 1, cache.getWordHitCount( ) );
+	}
+}
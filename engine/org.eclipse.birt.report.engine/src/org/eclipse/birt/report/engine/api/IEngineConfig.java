@@ -64,4 +64,33 @@ public interface IEngineConfig extends IPlatformConfig
 	 * The max rows per query
 	 */
 	static final String MAX_ROWS_PER_QUERY = "maxRowsPerQuery";
+
+	/**
+	 * The max number of the report designs cached by the engine. The designs
+	 * opened from files are cached and shared by all the tasks of the engine
+	 * until the design or its libraries are changed. The value is an Integer,
+	 * the cache is disabled if it is not set or is 0.
+	 */
+	static final String DESIGN_CACHE_SIZE = "designCacheSize";
+
+	/**
+	 * The max number of the queries executed concurrently by the engine before
+	 * the reports are generated. The independent top level queries of a report
+	 * are prefetched by a pool of threads shared by all the tasks of the
+	 * engine, so the data set scripts of these queries run before the report
+	 * items and may run at the same time. The value is an Integer, the
+	 * prefetch is disabled if it is not set or is 0.
+	 */
+	static final String QUERY_PREFETCH_PARALLELISM = "queryPrefetchParallelism";
+
+	/**
+	 * The max number of the page ranges rendered concurrently by the engine
+	 * from a report document. The pages to render are split into this number
+	 * of contiguous chunks, each chunk is rendered by its own task in a pool
+	 * of threads shared by all the tasks of the engine, and the outputs are
+	 * joined in the page order. Only the formats whose outputs can be joined
+	 * are rendered in parallel. The value is an Integer, the parallel render
+	 * is disabled if it is not set or is less than 2.
+	 */
+	static final String RENDER_PARALLELISM = "renderParallelism";
 }
@@ -369,4 +369,20 @@ public interface IHTMLRenderOption extends IRenderOption
 	 * the URL of head.js file
 	 */
 	static final String BIRT_JS_URL_KEY = "birtJsUrl"; //$NON-NLS-1$
+
+	/**
+	 * The number of the pages output before the pages of this render. It is
+	 * set when the pages are rendered in parallel chunks. If it is positive,
+	 * the embeddable HTML starts from the first page, without the styles, the
+	 * scripts and the root element output before it.
+	 */
+	public static final String HTML_PAGE_OFFSET = "org.eclipse.birt.report.engine.api.IHTMLRenderOption.pageOffset"; //$NON-NLS-1$
+
+	/**
+	 * Whether the pages of this render are followed by the pages of another
+	 * render. It is set when the pages are rendered in parallel chunks. If it
+	 * is <code>Boolean.TRUE</code>, the embeddable HTML ends with the last
+	 * page, without the errors and the end of the root element.
+	 */
+	public static final String HTML_PAGES_CONTINUED = "org.eclipse.birt.report.engine.api.IHTMLRenderOption.pagesContinued"; //$NON-NLS-1$
 }
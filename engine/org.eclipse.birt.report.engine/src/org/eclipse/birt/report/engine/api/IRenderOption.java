@@ -73,6 +73,17 @@ public interface IRenderOption extends ITaskOption
 	
 	public static final String REPORTLET_SIZE = "reportletSize";
 
+	/**
+	 * The max number of the rows a table buffers in the HTML layout while its
+	 * dropped or spanned cells are not resolved. When a table buffers more
+	 * rows, a page break is inserted in the paginated output, and the rows
+	 * are flushed in the output without pagination, the unresolved cells are
+	 * continued in the next rows. The value is an Integer, the default is
+	 * 10000. A value of 0 keeps the default in the paginated output, but
+	 * buffers the whole group of rows in the output without pagination.
+	 */
+	public static final String TABLE_ROW_BUFFER_SIZE = "tableRowBufferSize"; //$NON-NLS-1$
+
 	/**
 	 * @return
 	 * @deprecated use getOptions instead
@@ -1820,6 +1820,13 @@ public abstract class EngineTask implements IEngineTask
 						IPDFRenderOption.OUTPUT_DISPLAY_NONE,
 						outputDisplayNone );
 			}
+			Object tableRowBufferSize = renderOptions
+					.getOption( IRenderOption.TABLE_ROW_BUFFER_SIZE );
+			if ( tableRowBufferSize != null )
+			{
+				layoutEngine.setOption( IRenderOption.TABLE_ROW_BUFFER_SIZE,
+						tableRowBufferSize );
+			}
 			Object pdfTextWrapping = renderOptions
 					.getOption( IPDFRenderOption.PDF_TEXT_WRAPPING );
 			if ( pdfTextWrapping != null )
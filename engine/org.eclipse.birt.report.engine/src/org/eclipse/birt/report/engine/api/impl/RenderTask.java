@@ -11,11 +11,21 @@
 
 package org.eclipse.birt.report.engine.api.impl;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 
 import org.eclipse.birt.core.exception.BirtException;
@@ -32,6 +42,7 @@ import org.eclipse.birt.report.engine.api.IReportDocumentInfo;
 import org.eclipse.birt.report.engine.api.IReportRunnable;
 import org.eclipse.birt.report.engine.api.ITOCTree;
 import org.eclipse.birt.report.engine.api.InstanceID;
+import org.eclipse.birt.report.engine.api.RenderOption;
 import org.eclipse.birt.report.engine.content.IReportContent;
 import org.eclipse.birt.report.engine.emitter.IContentEmitter;
 import org.eclipse.birt.report.engine.executor.EngineExtensionManager;
@@ -63,6 +74,7 @@ import org.eclipse.birt.report.engine.presentation.IPageHint;
 import org.eclipse.birt.report.engine.toc.ITOCReader;
 import org.eclipse.birt.report.engine.toc.ITreeNode;
 import org.eclipse.birt.report.engine.toc.TOCView;
+import org.eclipse.birt.report.engine.util.FileUtil;
 import org.eclipse.birt.report.model.api.ReportDesignHandle;
 import org.eclipse.birt.report.model.api.elements.DesignChoiceConstants;
 
@@ -87,6 +99,12 @@ public class RenderTask extends EngineTask implements IRenderTask
 	// the html layout engine
 	private IReportLayoutEngine layoutEngine = null;
 
+	// the task renders a chunk of the pages of a parallel render
+	private boolean parallelChunk = false;
+
+	// the parallel render in progress
+	private volatile ParallelPageRangeRender parallelRender = null;
+
 	/**
 	 * @param engine
 	 *            the report engine
@@ -318,7 +336,18 @@ public class RenderTask extends EngineTask implements IRenderTask
 				} );
 			}
 
-			innerRender.render( );
+			InnerRender render = innerRender;
+			if ( render instanceof PageRangeRender && isOutputSplittable( ) )
+			{
+				List<List<long[]>> chunks = splitPageSequences(
+						( (PageRangeRender) render ).pageSequences,
+						engine.getRenderParallelism( ) );
+				if ( chunks.size( ) > 1 )
+				{
+					render = new ParallelPageRangeRender( chunks );
+				}
+			}
+			render.render( );
 		}
 		catch ( Throwable t )
 		{
@@ -421,6 +450,119 @@ public class RenderTask extends EngineTask implements IRenderTask
 		{
 			layoutEngine.cancel( );
 		}
+		ParallelPageRangeRender render = parallelRender;
+		if ( render != null )
+		{
+			render.cancel( );
+		}
+	}
+
+	/**
+	 * Returns whether the pages can be rendered in parallel chunks whose
+	 * outputs are joined in the page order. Only the embeddable HTML output
+	 * with HTML pagination is a sequence of the page fragments, all the other
+	 * outputs are rendered serially.
+	 * 
+	 * @return true if the output can be split by the pages.
+	 */
+	protected boolean isOutputSplittable( )
+	{
+		if ( parallelChunk || engine.getRenderParallelism( ) == 0 )
+		{
+			return false;
+		}
+		if ( !( reportDocument instanceof ReportDocumentReader ) )
+		{
+			return false;
+		}
+		if ( renderOptions.getOutputFileName( ) == null
+				&& renderOptions.getOutputStream( ) == null )
+		{
+			return false;
+		}
+		if ( !IRenderOption.OUTPUT_FORMAT_HTML.equalsIgnoreCase( renderOptions
+				.getOutputFormat( ) ) )
+		{
+			return false;
+		}
+		String emitterID = renderOptions.getEmitterID( );
+		if ( emitterID != null
+				&& !IRenderOption.OUTPUT_FORMAT_HTML
+						.equalsIgnoreCase( ExtensionManager.getInstance( )
+								.getFormat( emitterID ) ) )
+		{
+			return false;
+		}
+		HTMLRenderOption htmlOption = new HTMLRenderOption( renderOptions );
+		return htmlOption.getEmbeddable( ) && htmlOption.getHtmlPagination( );
+	}
+
+	/**
+	 * Splits the page sequences into at most the chunk count of contiguous
+	 * chunks holding about the same number of pages.
+	 * 
+	 * @param pageSequences
+	 *            the page sequences, each is the first and the last page
+	 * @param chunkCount
+	 *            the max number of the chunks
+	 * @return the page sequences of the chunks in the page order.
+	 */
+	static List<List<long[]>> splitPageSequences( List<long[]> pageSequences,
+			int chunkCount )
+	{
+		long pageCount = 0;
+		for ( long[] pages : pageSequences )
+		{
+			pageCount += pages[1] - pages[0] + 1;
+		}
+		List<List<long[]>> chunks = new ArrayList<List<long[]>>( );
+		if ( pageCount <= 0 || chunkCount <= 0 )
+		{
+			return chunks;
+		}
+		long chunkSize = ( pageCount + chunkCount - 1 ) / chunkCount;
+		List<long[]> chunk = new ArrayList<long[]>( );
+		long chunkPages = 0;
+		for ( long[] pages : pageSequences )
+		{
+			long start = pages[0];
+			while ( start <= pages[1] )
+			{
+				long end = Math.min( pages[1], start + chunkSize - chunkPages
+						- 1 );
+				chunk.add( new long[]{start, end} );
+				chunkPages += end - start + 1;
+				if ( chunkPages == chunkSize )
+				{
+					chunks.add( chunk );
+					chunk = new ArrayList<long[]>( );
+					chunkPages = 0;
+				}
+				start = end + 1;
+			}
+		}
+		if ( !chunk.isEmpty( ) )
+		{
+			chunks.add( chunk );
+		}
+		return chunks;
+	}
+
+	/**
+	 * @return the page range string of the page sequences, such as "1-3,5-5".
+	 */
+	static String toPageRange( List<long[]> pageSequences )
+	{
+		StringBuffer buffer = new StringBuffer( );
+		for ( long[] pages : pageSequences )
+		{
+			if ( buffer.length( ) > 0 )
+			{
+				buffer.append( ',' );
+			}
+			buffer.append( pages[0] ).append( '-' ).append( pages[1] );
+		}
+		return buffer.toString( );
 	}
 
 	private interface InnerRender
@@ -815,6 +957,240 @@ public class RenderTask extends EngineTask implements IRenderTask
 		}
 	}
 
+	/**
+	 * Renders the chunks of a page range concurrently. Each chunk is rendered
+	 * by its own task over a document reader sharing the archive of this
+	 * document, into a temporary file under the engine temp dir, and the files
+	 * are copied to the output in the page order. Only the first chunk writes
+	 * the styles, the scripts and the start of the root element, and only the
+	 * last chunk writes the end of it, so the joined output is the same as the
+	 * serial one.
+	 */
+	protected class ParallelPageRangeRender implements InnerRender
+	{
+
+		private List<List<long[]>> chunks;
+		private List<RenderTask> tasks = new ArrayList<RenderTask>( );
+
+		ParallelPageRangeRender( List<List<long[]>> chunks )
+		{
+			this.chunks = chunks;
+		}
+
+		public void render( ) throws Exception
+		{
+			ExecutorService executor = engine.getRenderExecutor( );
+			ReportDocumentReader document = (ReportDocumentReader) reportDocument;
+			List<ReportDocumentReader> documents = new ArrayList<ReportDocumentReader>( );
+			List<File> files = new ArrayList<File>( );
+			List<Future<Object>> futures = new ArrayList<Future<Object>>( );
+			String tempDir = engine.getConfig( ).getTempDir( );
+			long pageOffset = 0;
+			parallelRender = this;
+			try
+			{
+				for ( int i = 0; i < chunks.size( ); i++ )
+				{
+					List<long[]> chunk = chunks.get( i );
+					ReportDocumentReader chunkDocument = new ReportDocumentReader(
+							document.getSystemId( ), engine, document
+									.getArchive( ), true, document
+									.getModuleOptions( ) );
+					documents.add( chunkDocument );
+					File file = FileUtil.createTempFile( "BIRT-Render", ".html", //$NON-NLS-1$ //$NON-NLS-2$
+							tempDir );
+					if ( file == null )
+					{
+						throw new IOException( "Cannot create the file to render the pages in " //$NON-NLS-1$
+								+ tempDir );
+					}
+					files.add( file );
+
+					final RenderTask task = new RenderTask( engine,
+							chunkDocument );
+					task.parallelChunk = true;
+					task.setLocale( ulocale );
+					task.setTimeZone( timeZone );
+					task.setAppContext( getAppContext( ) );
+					HashMap options = new HashMap( renderOptions.getOptions( ) );
+					options.remove( IRenderOption.OUTPUT_STREAM );
+					// the chunks after the first one only hold the pages, and
+					// the chunks before the last one end with their pages
+					options.put( IHTMLRenderOption.HTML_PAGE_OFFSET, Long
+							.valueOf( pageOffset ) );
+					options.put( IHTMLRenderOption.HTML_PAGES_CONTINUED,
+							Boolean.valueOf( i < chunks.size( ) - 1 ) );
+					pageOffset += getPageCount( chunk );
+					RenderOption option = new RenderOption( options );
+					option.setOutputFileName( file.getPath( ) );
+					task.setRenderOption( option );
+					task.setPageRange( toPageRange( chunk ) );
+					synchronized ( this )
+					{
+						if ( executionContext.isCanceled( ) )
+						{
+							return;
+						}
+						tasks.add( task );
+					}
+					futures.add( executor.submit( new Callable<Object>( ) {
+
+						public Object call( ) throws Exception
+						{
+							task.render( );
+							return null;
+						}
+					} ) );
+				}
+
+				outputPageCount = 0;
+				for ( int i = 0; i < futures.size( ); i++ )
+				{
+					try
+					{
+						futures.get( i ).get( );
+					}
+					catch ( ExecutionException ex )
+					{
+						Throwable cause = ex.getCause( );
+						if ( cause instanceof Exception )
+						{
+							throw (Exception) cause;
+						}
+						throw ex;
+					}
+					RenderTask task = tasks.get( i );
+					outputPageCount += task.getPageCount( );
+					for ( Object error : task.getErrors( ) )
+					{
+						if ( error instanceof BirtException )
+						{
+							executionContext.addException( (BirtException) error );
+						}
+					}
+				}
+				if ( !executionContext.isCanceled( ) )
+				{
+					joinOutputs( files );
+				}
+			}
+			finally
+			{
+				parallelRender = null;
+				cancelRunningTasks( futures );
+				for ( RenderTask task : tasks )
+				{
+					task.close( );
+				}
+				for ( ReportDocumentReader chunkDocument : documents )
+				{
+					chunkDocument.close( );
+				}
+				for ( File file : files )
+				{
+					if ( !file.delete( ) )
+					{
+						file.deleteOnExit( );
+					}
+				}
+			}
+		}
+
+		private long getPageCount( List<long[]> pageSequences )
+		{
+			long pageCount = 0;
+			for ( long[] pages : pageSequences )
+			{
+				pageCount += pages[1] - pages[0] + 1;
+			}
+			return pageCount;
+		}
+
+		synchronized void cancel( )
+		{
+			for ( RenderTask task : tasks )
+			{
+				task.cancel( );
+			}
+		}
+
+		private void cancelRunningTasks( List<Future<Object>> futures )
+		{
+			// the remaining chunks are useless once one chunk fails
+			for ( Future<Object> future : futures )
+			{
+				if ( !future.isDone( ) )
+				{
+					cancel( );
+					break;
+				}
+			}
+			for ( Future<Object> future : futures )
+			{
+				try
+				{
+					future.get( );
+				}
+				catch ( Exception ex )
+				{
+				}
+			}
+		}
+
+		private void joinOutputs( List<File> files ) throws IOException
+		{
+			OutputStream out;
+			boolean closeOnExit;
+			String fileName = renderOptions.getOutputFileName( );
+			if ( fileName != null )
+			{
+				File file = new File( fileName );
+				File parent = file.getParentFile( );
+				if ( parent != null && !parent.exists( ) )
+				{
+					parent.mkdirs( );
+				}
+				out = new BufferedOutputStream( new FileOutputStream( file ) );
+				closeOnExit = true;
+			}
+			else
+			{
+				out = renderOptions.getOutputStream( );
+				Object closeOnExitValue = renderOptions
+						.getOption( IRenderOption.CLOSE_OUTPUTSTREAM_ON_EXIT );
+				closeOnExit = Boolean.TRUE.equals( closeOnExitValue );
+			}
+			try
+			{
+				byte[] buffer = new byte[8192];
+				for ( File file : files )
+				{
+					InputStream in = new FileInputStream( file );
+					try
+					{
+						int size;
+						while ( ( size = in.read( buffer ) ) != -1 )
+						{
+							out.write( buffer, 0, size );
+						}
+					}
+					finally
+					{
+						in.close( );
+					}
+				}
+				out.flush( );
+			}
+			finally
+			{
+				if ( closeOnExit )
+				{
+					out.close( );
+				}
+			}
+		}
+	}
+
 	private static class ReportExecutorWrapper implements IReportExecutor
 	{
 		IReportItemExecutor executor;
@@ -0,0 +1,320 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.api.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.birt.report.model.api.IResourceLocator;
+import org.eclipse.birt.report.model.api.LibraryHandle;
+import org.eclipse.birt.report.model.api.ReportDesignHandle;
+
+/**
+ * A bounded LRU cache of the report designs opened from files, shared by all
+ * the tasks of a report engine.
+ *
+ * An entry is keyed by the canonical path of the design file, and is valid as
+ * long as the modification time of the design file and of all the libraries
+ * it includes are not changed. A cached design is never given to the user:
+ * each call gets a copy of it, so the runnable can be changed by its tasks
+ * without affecting the others.
+ */
+public class ReportDesignCache
+{
+
+	private static Logger logger = Logger.getLogger( ReportDesignCache.class
+			.getName( ) );
+
+	private final int maxSize;
+
+	/**
+	 * the entries in access order, the eldest is evicted first
+	 */
+	private final LinkedHashMap<String, CacheEntry> entries;
+
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+	private long invalidationCount;
+
+	/**
+	 * @param maxSize
+	 *            the max number of the cached designs
+	 */
+	public ReportDesignCache( int maxSize )
+	{
+		this.maxSize = maxSize;
+		this.entries = new LinkedHashMap<String, CacheEntry>( 16, 0.75f, true ) {
+
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(
+					Map.Entry<String, CacheEntry> eldest )
+			{
+				if ( size( ) > ReportDesignCache.this.maxSize )
+				{
+					evictionCount++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * get a copy of the cached design.
+	 *
+	 * @param designFile
+	 *            the design file
+	 * @param locator
+	 *            the resource locator used to open the design
+	 * @return the runnable of the design, null if the design is not cached or
+	 *         has been changed.
+	 */
+	public ReportRunnable getReportDesign( File designFile,
+			IResourceLocator locator )
+	{
+		String key = getKey( designFile );
+		CacheEntry entry;
+		synchronized ( this )
+		{
+			entry = entries.get( key );
+			if ( entry == null || entry.locator != locator )
+			{
+				missCount++;
+				return null;
+			}
+			if ( !entry.isValid( designFile ) )
+			{
+				entries.remove( key );
+				invalidationCount++;
+				missCount++;
+				logger.log( Level.FINE, "{0} or its libraries are changed",
+						key );
+				return null;
+			}
+			hitCount++;
+		}
+		// the model is not thread safe, copy the cached design one by one
+		synchronized ( entry )
+		{
+			return entry.runnable.cloneRunnable( );
+		}
+	}
+
+	/**
+	 * cache a copy of the design opened from the file.
+	 *
+	 * @param designFile
+	 *            the design file
+	 * @param locator
+	 *            the resource locator used to open the design
+	 * @param runnable
+	 *            the opened design, it can be used by the caller after that.
+	 */
+	public void putReportDesign( File designFile, IResourceLocator locator,
+			ReportRunnable runnable )
+	{
+		String key = getKey( designFile );
+		long modified = designFile.lastModified( );
+		CacheEntry entry = new CacheEntry( runnable.cloneRunnable( ),
+				locator, modified );
+		// the libraries are checked before the design is opened again
+		List libraries = runnable.getReport( ).getAllLibraries( );
+		for ( int i = 0; i < libraries.size( ); i++ )
+		{
+			LibraryHandle library = (LibraryHandle) libraries.get( i );
+			File file = getLibraryFile( library );
+			if ( file != null )
+			{
+				entry.addLibrary( file );
+			}
+		}
+		synchronized ( this )
+		{
+			entries.put( key, entry );
+		}
+	}
+
+	/**
+	 * remove the cached designs which are opened from the file, or include
+	 * the library file.
+	 *
+	 * @param file
+	 *            the design file or library file
+	 */
+	public synchronized void invalidate( File file )
+	{
+		String key = getKey( file );
+		Iterator<Map.Entry<String, CacheEntry>> iter = entries.entrySet( )
+				.iterator( );
+		while ( iter.hasNext( ) )
+		{
+			Map.Entry<String, CacheEntry> mapEntry = iter.next( );
+			if ( key.equals( mapEntry.getKey( ) )
+					|| mapEntry.getValue( ).includes( key ) )
+			{
+				iter.remove( );
+				invalidationCount++;
+			}
+		}
+	}
+
+	/**
+	 * remove all the cached designs.
+	 */
+	public synchronized void clear( )
+	{
+		entries.clear( );
+	}
+
+	public int getMaxSize( )
+	{
+		return maxSize;
+	}
+
+	public synchronized int getSize( )
+	{
+		return entries.size( );
+	}
+
+	public synchronized long getHitCount( )
+	{
+		return hitCount;
+	}
+
+	public synchronized long getMissCount( )
+	{
+		return missCount;
+	}
+
+	public synchronized long getEvictionCount( )
+	{
+		return evictionCount;
+	}
+
+	/**
+	 * @return the number of the entries removed as the design or its
+	 *         libraries have been changed.
+	 */
+	public synchronized long getInvalidationCount( )
+	{
+		return invalidationCount;
+	}
+
+	public String toString( )
+	{
+		return "ReportDesignCache(size=" + getSize( ) + ", hit="
+				+ getHitCount( ) + ", miss=" + getMissCount( ) + ", eviction="
+				+ getEvictionCount( ) + ", invalidation="
+				+ getInvalidationCount( ) + ")";
+	}
+
+	/**
+	 * @return the canonical path of the file, so the links and the relative
+	 *         names of a design file share one entry.
+	 */
+	private static String getKey( File file )
+	{
+		try
+		{
+			return file.getCanonicalPath( );
+		}
+		catch ( IOException ex )
+		{
+			return file.getAbsoluteFile( ).toURI( ).normalize( ).getPath( );
+		}
+	}
+
+	/**
+	 * @return the file of the library, null if the library is not a local
+	 *         file, such as the library in a bundle, which can't be changed.
+	 */
+	private static File getLibraryFile( LibraryHandle library )
+	{
+		String location = library.getModule( ).getLocation( );
+		if ( location == null )
+		{
+			return null;
+		}
+		try
+		{
+			URL url = new URL( location );
+			if ( "file".equals( url.getProtocol( ) ) )
+			{
+				return new File( url.toURI( ) );
+			}
+		}
+		catch ( Exception ex )
+		{
+			logger.log( Level.FINE, "unknown library location " + location,
+					ex );
+		}
+		return null;
+	}
+
+	private static class CacheEntry
+	{
+
+		final ReportRunnable runnable;
+		final IResourceLocator locator;
+		final long modified;
+		final List<String> libraryKeys = new ArrayList<String>( );
+		final List<File> libraryFiles = new ArrayList<File>( );
+		final List<Long> libraryModified = new ArrayList<Long>( );
+
+		CacheEntry( ReportRunnable runnable, IResourceLocator locator,
+				long modified )
+		{
+			this.runnable = runnable;
+			this.locator = locator;
+			this.modified = modified;
+		}
+
+		void addLibrary( File file )
+		{
+			libraryKeys.add( getKey( file ) );
+			libraryFiles.add( file );
+			libraryModified.add( Long.valueOf( file.lastModified( ) ) );
+		}
+
+		boolean includes( String key )
+		{
+			return libraryKeys.contains( key );
+		}
+
+		boolean isValid( File designFile )
+		{
+			if ( designFile.lastModified( ) != modified )
+			{
+				return false;
+			}
+			for ( int i = 0; i < libraryFiles.size( ); i++ )
+			{
+				if ( libraryFiles.get( i ).lastModified( ) != libraryModified
+						.get( i ).longValue( ) )
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
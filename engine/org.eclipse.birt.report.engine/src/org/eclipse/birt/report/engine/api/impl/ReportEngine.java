@@ -22,6 +22,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.Map.Entry;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -281,6 +282,44 @@ public class ReportEngine implements IReportEngine
 		EngineLogger.changeLogLevel( loggerSetting, newLevel );
 	}
 
+	/**
+	 * @return the cache of the designs opened from files, null if the cache
+	 *         is disabled by IEngineConfig.DESIGN_CACHE_SIZE.
+	 */
+	public ReportDesignCache getDesignCache( )
+	{
+		return helper == null ? null : helper.getDesignCache( );
+	}
+
+	/**
+	 * @return the executor shared by the tasks to prefetch the queries, null
+	 *         if the prefetch is disabled by
+	 *         IEngineConfig.QUERY_PREFETCH_PARALLELISM.
+	 */
+	public ExecutorService getQueryPrefetchExecutor( )
+	{
+		return helper == null ? null : helper.getQueryPrefetchExecutor( );
+	}
+
+	/**
+	 * @return the max number of the page ranges rendered concurrently from a
+	 *         report document, 0 if the parallel render is disabled by
+	 *         IEngineConfig.RENDER_PARALLELISM.
+	 */
+	public int getRenderParallelism( )
+	{
+		return helper == null ? 0 : helper.getRenderParallelism( );
+	}
+
+	/**
+	 * @return the executor shared by the tasks to render the page ranges in
+	 *         parallel, null if the parallel render is disabled.
+	 */
+	public ExecutorService getRenderExecutor( )
+	{
+		return helper == null ? null : helper.getRenderExecutor( );
+	}
+
 	/**
 	 * returns the engine configuration object
 	 * 
@@ -460,6 +499,15 @@ public class ReportEngine implements IReportEngine
 	{
 		logger.fine( "ReportEngine.destroy" );
 		rootScope = null;
+		if ( helper != null && helper.getDesignCache( ) != null )
+		{
+			helper.getDesignCache( ).clear( );
+		}
+		if ( helper != null )
+		{
+			helper.shutdownQueryPrefetchExecutor( );
+			helper.shutdownRenderExecutor( );
+		}
 		helper = null;
 		synchronized ( openedDocuments )
 		{
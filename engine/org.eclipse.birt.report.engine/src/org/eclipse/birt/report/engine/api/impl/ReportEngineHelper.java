@@ -19,6 +19,10 @@ import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -30,6 +34,7 @@ import org.eclipse.birt.report.engine.api.DataExtractionFormatInfo;
 import org.eclipse.birt.report.engine.api.EmitterInfo;
 import org.eclipse.birt.report.engine.api.EngineConfig;
 import org.eclipse.birt.report.engine.api.EngineException;
+import org.eclipse.birt.report.engine.api.IEngineConfig;
 import org.eclipse.birt.report.engine.api.IDataExtractionTask;
 import org.eclipse.birt.report.engine.api.IDatasetPreviewTask;
 import org.eclipse.birt.report.engine.api.IDocumentWriter;
@@ -69,6 +74,35 @@ public class ReportEngineHelper
 
 	private EmitterInfo[] emitterInfos;
 
+	/**
+	 * the cached designs, null if the cache is disabled
+	 */
+	private ReportDesignCache designCache;
+
+	/**
+	 * the max number of the queries prefetched concurrently
+	 */
+	private int queryPrefetchParallelism;
+
+	/**
+	 * the pool executing the prefetched queries, created on demand
+	 */
+	private ExecutorService queryPrefetchExecutor;
+
+	private AtomicInteger queryPrefetchThreadCount = new AtomicInteger( );
+
+	/**
+	 * the max number of the page ranges rendered concurrently
+	 */
+	private int renderParallelism;
+
+	/**
+	 * the pool rendering the page ranges, created on demand
+	 */
+	private ExecutorService renderExecutor;
+
+	private AtomicInteger renderThreadCount = new AtomicInteger( );
+
 	/**
 	 * constructor
 	 * 
@@ -80,6 +114,140 @@ public class ReportEngineHelper
 		this.engine = engine;
 		this.logger = engine.getLogger( );
 		this.extensionMgr = ExtensionManager.getInstance( );
+		int cacheSize = getIntProperty( engine.getConfig( ),
+				IEngineConfig.DESIGN_CACHE_SIZE );
+		if ( cacheSize > 0 )
+		{
+			this.designCache = new ReportDesignCache( cacheSize );
+		}
+		this.queryPrefetchParallelism = getIntProperty( engine.getConfig( ),
+				IEngineConfig.QUERY_PREFETCH_PARALLELISM );
+		this.renderParallelism = getIntProperty( engine.getConfig( ),
+				IEngineConfig.RENDER_PARALLELISM );
+	}
+
+	private int getIntProperty( EngineConfig config, String name )
+	{
+		if ( config == null )
+		{
+			return 0;
+		}
+		Object value = config.getProperty( name );
+		if ( value instanceof Number )
+		{
+			return ( (Number) value ).intValue( );
+		}
+		if ( value instanceof String )
+		{
+			try
+			{
+				return Integer.parseInt( ( (String) value ).trim( ) );
+			}
+			catch ( NumberFormatException ex )
+			{
+				logger.log( Level.WARNING, "invalid value {0} of {1}",
+						new Object[]{value, name} );
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * @return the cache of the designs opened from files, null if the cache
+	 *         is disabled.
+	 */
+	public ReportDesignCache getDesignCache( )
+	{
+		return designCache;
+	}
+
+	/**
+	 * @return the executor of the prefetched queries, null if the prefetch is
+	 *         disabled.
+	 */
+	public synchronized ExecutorService getQueryPrefetchExecutor( )
+	{
+		if ( queryPrefetchParallelism <= 0 )
+		{
+			return null;
+		}
+		if ( queryPrefetchExecutor == null )
+		{
+			queryPrefetchExecutor = Executors.newFixedThreadPool(
+					queryPrefetchParallelism, new ThreadFactory( ) {
+
+						public Thread newThread( Runnable r )
+						{
+							Thread thread = new Thread( r,
+									"BIRT-QueryPrefetch-"
+											+ queryPrefetchThreadCount
+													.incrementAndGet( ) );
+							thread.setDaemon( true );
+							return thread;
+						}
+					} );
+		}
+		return queryPrefetchExecutor;
+	}
+
+	/**
+	 * stops the threads of the prefetched queries.
+	 */
+	public synchronized void shutdownQueryPrefetchExecutor( )
+	{
+		if ( queryPrefetchExecutor != null )
+		{
+			queryPrefetchExecutor.shutdownNow( );
+			queryPrefetchExecutor = null;
+		}
+	}
+
+	/**
+	 * @return the max number of the page ranges rendered concurrently, 0 if
+	 *         the parallel render is disabled.
+	 */
+	public int getRenderParallelism( )
+	{
+		return renderParallelism > 1 ? renderParallelism : 0;
+	}
+
+	/**
+	 * @return the executor of the page ranges rendered in parallel, null if
+	 *         the parallel render is disabled.
+	 */
+	public synchronized ExecutorService getRenderExecutor( )
+	{
+		if ( getRenderParallelism( ) == 0 )
+		{
+			return null;
+		}
+		if ( renderExecutor == null )
+		{
+			renderExecutor = Executors.newFixedThreadPool( renderParallelism,
+					new ThreadFactory( ) {
+
+						public Thread newThread( Runnable r )
+						{
+							Thread thread = new Thread( r, "BIRT-Render-"
+									+ renderThreadCount.incrementAndGet( ) );
+							thread.setDaemon( true );
+							return thread;
+						}
+					} );
+		}
+		return renderExecutor;
+	}
+
+	/**
+	 * stops the threads of the page ranges rendered in parallel.
+	 */
+	public synchronized void shutdownRenderExecutor( )
+	{
+		if ( renderExecutor != null )
+		{
+			renderExecutor.shutdownNow( );
+			renderExecutor = null;
+		}
 	}
 
 	/**
@@ -115,6 +283,16 @@ public class ReportEngineHelper
 					designName );
 		}
 
+		if ( designCache != null )
+		{
+			IReportRunnable runnable = designCache.getReportDesign( file,
+					locator );
+			if ( runnable != null )
+			{
+				return runnable;
+			}
+		}
+
 		try
 		{
 			InputStream in = new FileInputStream( file );
@@ -127,7 +305,13 @@ public class ReportEngineHelper
 			{
 				systemId = designName;
 			}
-			return openReportDesign( systemId, in, locator);
+			IReportRunnable runnable = openReportDesign( systemId, in, locator );
+			if ( designCache != null )
+			{
+				designCache.putReportDesign( file, locator,
+						(ReportRunnable) runnable );
+			}
+			return runnable;
 		}
 		catch ( FileNotFoundException ioe)
 		{
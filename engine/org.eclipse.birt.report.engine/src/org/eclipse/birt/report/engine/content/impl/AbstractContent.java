@@ -36,6 +36,8 @@ import org.eclipse.birt.report.engine.css.engine.CSSEngine;
 import org.eclipse.birt.report.engine.css.engine.value.css.CSSConstants;
 import org.eclipse.birt.report.engine.extension.IBaseResultSet;
 import org.eclipse.birt.report.engine.i18n.MessageConstants;
+import org.eclipse.birt.report.engine.internal.document.IContentDictionaryReader;
+import org.eclipse.birt.report.engine.internal.document.IContentDictionaryWriter;
 import org.eclipse.birt.report.engine.ir.DimensionType;
 import org.eclipse.birt.report.engine.ir.Expression;
 import org.eclipse.birt.report.engine.ir.ReportElementDesign;
@@ -104,6 +106,17 @@ abstract public class AbstractContent extends AbstractElement
 	
 	transient protected int version = -1;
 
+	/**
+	 * the dictionary of the content stream the content is written to, null if
+	 * the content is saved without dictionary.
+	 */
+	transient protected IContentDictionaryWriter dictionaryWriter;
+
+	/**
+	 * the dictionary of the content stream the content is read from.
+	 */
+	transient protected IContentDictionaryReader dictionaryReader;
+
 	/**
 	 * Constructor of the AbstractContent
 	 * @param report report can't be null
@@ -641,6 +654,9 @@ abstract public class AbstractContent extends AbstractElement
 	final static short FIELD_EXTENSIONS = 15;
 	final static short FIELD_ALTTEXT = 16;
 	final static short FIELD_ALTTEXTKEY = 17;
+	//the style and instance id saved through the dictionary of the stream.
+	final static short FIELD_INLINESTYLE_VERSION_2 = 18;
+	final static short FIELD_INSTANCE_ID_VERSION_2 = 19;
 
 	protected void writeFields( DataOutputStream out ) throws IOException
 	{
@@ -698,14 +714,30 @@ abstract public class AbstractContent extends AbstractElement
 		{
 			if( !inlineStyle.isEmpty( ) )
 			{
-				IOUtil.writeShort( out, FIELD_INLINESTYLE_VERSION_1 );
-				inlineStyle.write( out );
+				if ( dictionaryWriter != null )
+				{
+					IOUtil.writeShort( out, FIELD_INLINESTYLE_VERSION_2 );
+					dictionaryWriter.writeStyle( out, inlineStyle );
+				}
+				else
+				{
+					IOUtil.writeShort( out, FIELD_INLINESTYLE_VERSION_1 );
+					inlineStyle.write( out );
+				}
 			}
 		}
 		if ( instanceId != null )
 		{
-			IOUtil.writeShort( out, FIELD_INSTANCE_ID );
-			IOUtil.writeString( out, instanceId.toString( ) );
+			if ( dictionaryWriter != null )
+			{
+				IOUtil.writeShort( out, FIELD_INSTANCE_ID_VERSION_2 );
+				dictionaryWriter.writeInstanceID( out, instanceId );
+			}
+			else
+			{
+				IOUtil.writeShort( out, FIELD_INSTANCE_ID );
+				IOUtil.writeString( out, instanceId.toString( ) );
+			}
 		}
 		if ( toc != null )
 		{
@@ -821,10 +853,16 @@ abstract public class AbstractContent extends AbstractElement
 					}
 				}
 				break;
+			case FIELD_INLINESTYLE_VERSION_2 :
+				inlineStyle = getDictionaryReader( ).readStyle( in );
+				break;
 			case FIELD_INSTANCE_ID :
 				String value = IOUtil.readString( in );
 				instanceId = InstanceID.parse( value );
 				break;
+			case FIELD_INSTANCE_ID_VERSION_2 :
+				instanceId = getDictionaryReader( ).readInstanceID( in );
+				break;
 			case FIELD_TOC :
 				toc = IOUtil.readObject( in, loader );
 				break;
@@ -949,6 +987,39 @@ abstract public class AbstractContent extends AbstractElement
 		this.version = version;
 	}
 
+	/**
+	 * set the dictionary used to write the content. It should be reset to null
+	 * once the content is written.
+	 * 
+	 * @param dictionary
+	 *            the dictionary of the content stream.
+	 */
+	public void setDictionaryWriter( IContentDictionaryWriter dictionary )
+	{
+		this.dictionaryWriter = dictionary;
+	}
+
+	/**
+	 * set the dictionary used to read the content. It should be reset to null
+	 * once the content is read.
+	 * 
+	 * @param dictionary
+	 *            the dictionary of the content stream.
+	 */
+	public void setDictionaryReader( IContentDictionaryReader dictionary )
+	{
+		this.dictionaryReader = dictionary;
+	}
+
+	private IContentDictionaryReader getDictionaryReader( ) throws IOException
+	{
+		if ( dictionaryReader == null )
+		{
+			throw new IOException( "The content is saved with a dictionary" ); //$NON-NLS-1$
+		}
+		return dictionaryReader;
+	}
+
 	public boolean needSave( )
 	{
 		if ( name != null )
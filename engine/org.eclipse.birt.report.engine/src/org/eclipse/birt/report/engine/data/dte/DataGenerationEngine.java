@@ -27,6 +27,7 @@ import org.eclipse.birt.report.engine.api.impl.ReportDocumentConstants;
 import org.eclipse.birt.report.engine.data.DataEngineFactory;
 import org.eclipse.birt.report.engine.executor.ExecutionContext;
 import org.eclipse.birt.report.engine.extension.IBaseResultSet;
+import org.eclipse.birt.report.engine.ir.Report;
 
 public class DataGenerationEngine extends DteDataEngine
 {
@@ -77,6 +78,14 @@ public class DataGenerationEngine extends DteDataEngine
 		DteMetaInfoIOUtil.startMetaInfo( dos );
 	}
 
+	/**
+	 * the queries are not prefetched, as the versions of the results written
+	 * into the document are kept per thread by the data engine.
+	 */
+	protected void prefetchQueries( Report report )
+	{
+	}
+
 	protected IBaseResultSet doExecuteQuery( IBaseResultSet parentResultSet,
 			IQueryDefinition query, Object queryOwner, boolean useCache ) throws BirtException
 	{
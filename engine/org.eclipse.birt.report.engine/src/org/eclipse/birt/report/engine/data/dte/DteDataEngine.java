@@ -13,6 +13,7 @@ package org.eclipse.birt.report.engine.data.dte;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 
 import org.eclipse.birt.core.exception.BirtException;
@@ -30,6 +31,7 @@ import org.eclipse.birt.data.engine.olap.api.query.ICubeQueryDefinition;
 import org.eclipse.birt.report.data.adapter.api.DataRequestSession;
 import org.eclipse.birt.report.data.adapter.api.DataSessionContext;
 import org.eclipse.birt.report.engine.api.EngineException;
+import org.eclipse.birt.report.engine.api.impl.ReportEngine;
 import org.eclipse.birt.report.engine.data.DataEngineFactory;
 import org.eclipse.birt.report.engine.executor.ExecutionContext;
 import org.eclipse.birt.report.engine.extension.IBaseResultSet;
@@ -65,6 +67,12 @@ public class DteDataEngine extends AbstractDataEngine
 	 */
 	protected HashMap<String, String> rsetRelations2 = new HashMap<String, String>( );
 
+	/**
+	 * the queries executed before the report items, null if the engine
+	 * doesn't prefetch the queries.
+	 */
+	protected QueryPrefetcher prefetcher;
+
 	//FIXME: code review. throw out all exceptions in data engines. And throw exception not return null.	
 
 	/**
@@ -148,8 +156,16 @@ public class DteDataEngine extends AbstractDataEngine
 			}
 			if ( parentResultSet == null )
 			{
-				// this is the root query
-				dteResults = dteSession.execute( pQuery, null, scriptContext );
+				// this is the root query, which might have been prefetched
+				if ( prefetcher != null )
+				{
+					dteResults = prefetcher.takeResults( query );
+				}
+				if ( dteResults == null )
+				{
+					dteResults = dteSession.execute( pQuery, null,
+							scriptContext );
+				}
 			}
 			else
 			{
@@ -270,6 +286,37 @@ public class DteDataEngine extends AbstractDataEngine
 		// prepare report queries
 		queryIDMap.putAll( report.getQueryIDs( ) );
 		super.doPrepareQuery( report, appContext );
+		prefetchQueries( report );
+	}
+
+	/**
+	 * executes the independent top level queries concurrently if the query
+	 * prefetch is enabled by the engine.
+	 * 
+	 * @param report
+	 */
+	protected void prefetchQueries( Report report )
+	{
+		ReportEngine engine = context.getEngine( );
+		ExecutorService executor = engine == null ? null : engine
+				.getQueryPrefetchExecutor( );
+		if ( executor == null || dteSession == null )
+		{
+			return;
+		}
+		prefetcher = new QueryPrefetcher( executor, dteSession, context
+				.getScriptContext( ), context.getApplicationClassLoader( ) );
+		prefetcher.prefetch( report.getQueries( ), queryMap, needCache );
+	}
+
+	public void shutdown( )
+	{
+		if ( prefetcher != null )
+		{
+			prefetcher.close( );
+			prefetcher = null;
+		}
+		super.shutdown( );
 	}
 
 	protected void cacheResultID( IBaseResultSet parentResultSet,
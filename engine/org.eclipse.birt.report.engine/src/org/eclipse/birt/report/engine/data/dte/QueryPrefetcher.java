@@ -0,0 +1,283 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.data.dte;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.core.script.IConcurrentScriptEngine;
+import org.eclipse.birt.core.script.IScriptEngine;
+import org.eclipse.birt.core.script.ScriptContext;
+import org.eclipse.birt.data.engine.api.CloseListenerManager;
+import org.eclipse.birt.data.engine.api.DataEngineThreadLocal;
+import org.eclipse.birt.data.engine.api.IDataScriptEngine;
+import org.eclipse.birt.data.engine.api.IPreparedQuery;
+import org.eclipse.birt.data.engine.api.IQueryDefinition;
+import org.eclipse.birt.data.engine.api.IQueryResults;
+import org.eclipse.birt.data.engine.api.querydefn.BaseQueryDefinition;
+import org.eclipse.birt.report.data.adapter.api.DataRequestSession;
+
+/**
+ * Executes the independent top level queries of a report concurrently before
+ * the report is generated.
+ *
+ * A query is prefetched if it is a table query with its own data set, and it
+ * is neither nested in other query, nor based on the results of other query.
+ * The queries are executed by the executor shared by the tasks of the engine,
+ * and the report waits until all of them are finished. The results are then
+ * handed to the data engine as if the queries were executed when the report
+ * items were generated. The query failed in prefetch is executed again by the
+ * report item, so the error is reported as usual.
+ */
+class QueryPrefetcher
+{
+
+	private static Logger logger = Logger.getLogger( QueryPrefetcher.class
+			.getName( ) );
+
+	private ExecutorService executor;
+
+	private DataRequestSession session;
+
+	private ScriptContext scriptContext;
+
+	private ClassLoader classLoader;
+
+	/**
+	 * the prefetched results which have not been used
+	 */
+	private Map<IQueryDefinition, IQueryResults> results = new HashMap<IQueryDefinition, IQueryResults>( );
+
+	QueryPrefetcher( ExecutorService executor, DataRequestSession session,
+			ScriptContext scriptContext, ClassLoader classLoader )
+	{
+		this.executor = executor;
+		this.session = session;
+		this.scriptContext = scriptContext;
+		this.classLoader = classLoader;
+	}
+
+	/**
+	 * executes the independent queries concurrently and waits until they are
+	 * finished.
+	 *
+	 * @param queries
+	 *            the queries of the report
+	 * @param queryMap
+	 *            the prepared queries
+	 * @param needCache
+	 *            whether the results should be cached
+	 */
+	void prefetch( List queries, Map queryMap, boolean needCache )
+	{
+		List<IQueryDefinition> prefetchQueries = new ArrayList<IQueryDefinition>( );
+		for ( Object query : queries )
+		{
+			if ( isIndependent( query ) && queryMap.get( query ) != null )
+			{
+				prefetchQueries.add( (IQueryDefinition) query );
+			}
+		}
+		// nothing to gain from a single query
+		if ( prefetchQueries.size( ) < 2 )
+		{
+			return;
+		}
+
+		IScriptEngine engine = null;
+		try
+		{
+			engine = scriptContext
+					.getScriptEngine( IDataScriptEngine.ENGINE_NAME );
+		}
+		catch ( BirtException ex )
+		{
+			logger.log( Level.FINE, "can not prefetch the queries", ex );
+		}
+		if ( !( engine instanceof IConcurrentScriptEngine )
+				|| !( engine instanceof IDataScriptEngine ) )
+		{
+			return;
+		}
+		// creates the scope in this thread, the queries only read it
+		( (IDataScriptEngine) engine ).getJSScope( scriptContext );
+
+		Map<IQueryDefinition, Future<PrefetchedResults>> futures = new HashMap<IQueryDefinition, Future<PrefetchedResults>>( );
+		try
+		{
+			for ( IQueryDefinition query : prefetchQueries )
+			{
+				if ( needCache )
+				{
+					( (BaseQueryDefinition) query ).setCacheQueryResults( true );
+				}
+				futures.put( query, executor.submit( new PrefetchTask(
+						(IPreparedQuery) queryMap.get( query ),
+						(IConcurrentScriptEngine) engine ) ) );
+			}
+		}
+		catch ( RejectedExecutionException ex )
+		{
+			// the engine is destroyed, the queries are executed inline.
+			logger.log( Level.FINE, "can not prefetch the queries", ex );
+		}
+
+		CloseListenerManager closeListener = DataEngineThreadLocal
+				.getInstance( ).getCloseListener( );
+		Iterator<Map.Entry<IQueryDefinition, Future<PrefetchedResults>>> iter = futures
+				.entrySet( ).iterator( );
+		while ( iter.hasNext( ) )
+		{
+			Map.Entry<IQueryDefinition, Future<PrefetchedResults>> entry = iter
+					.next( );
+			try
+			{
+				PrefetchedResults prefetched = entry.getValue( ).get( );
+				closeListener.moveFrom( prefetched.closeListener );
+				results.put( entry.getKey( ), prefetched.results );
+			}
+			catch ( ExecutionException ex )
+			{
+				logger.log( Level.FINE, "failed to prefetch query "
+						+ entry.getKey( ).getName( ), ex.getCause( ) );
+			}
+			catch ( InterruptedException ex )
+			{
+				// stop waiting, the remain queries are executed inline.
+				while ( iter.hasNext( ) )
+				{
+					iter.next( ).getValue( ).cancel( true );
+				}
+				Thread.currentThread( ).interrupt( );
+				return;
+			}
+		}
+	}
+
+	/**
+	 * returns the prefetched results of the query. The results are returned
+	 * only once, the later executions of the query execute it again.
+	 *
+	 * @param query
+	 *            the query
+	 * @return the results, null if the query is not prefetched.
+	 */
+	IQueryResults takeResults( IQueryDefinition query )
+	{
+		return results.remove( query );
+	}
+
+	/**
+	 * closes the prefetched results which are never used.
+	 */
+	void close( )
+	{
+		for ( IQueryResults unused : results.values( ) )
+		{
+			try
+			{
+				unused.close( );
+			}
+			catch ( BirtException ex )
+			{
+				logger.log( Level.FINE, ex.getMessage( ), ex );
+			}
+		}
+		results.clear( );
+	}
+
+	/**
+	 * @return true if the query can be executed before other queries.
+	 */
+	static boolean isIndependent( Object query )
+	{
+		if ( !( query instanceof IQueryDefinition ) )
+		{
+			return false;
+		}
+		IQueryDefinition queryDefn = (IQueryDefinition) query;
+		return queryDefn.getParentQuery( ) == null
+				&& queryDefn.getDataSetName( ) != null
+				&& queryDefn.getQueryResultsID( ) == null
+				&& queryDefn.getSourceQuery( ) == null;
+	}
+
+	private static class PrefetchedResults
+	{
+
+		IQueryResults results;
+		CloseListenerManager closeListener;
+	}
+
+	private class PrefetchTask implements Callable<PrefetchedResults>
+	{
+
+		private IPreparedQuery query;
+		private IConcurrentScriptEngine engine;
+
+		PrefetchTask( IPreparedQuery query, IConcurrentScriptEngine engine )
+		{
+			this.query = query;
+			this.engine = engine;
+		}
+
+		public PrefetchedResults call( ) throws Exception
+		{
+			Thread thread = Thread.currentThread( );
+			ClassLoader threadLoader = thread.getContextClassLoader( );
+			if ( classLoader != null )
+			{
+				thread.setContextClassLoader( classLoader );
+			}
+			engine.enterThread( );
+			try
+			{
+				IQueryResults queryResults = (IQueryResults) session.execute(
+						query, null, scriptContext );
+				PrefetchedResults prefetched = new PrefetchedResults( );
+				prefetched.results = queryResults;
+				// the streams opened by the query are closed by the data
+				// engine of the report thread.
+				prefetched.closeListener = DataEngineThreadLocal
+						.getInstance( ).getCloseListener( );
+				try
+				{
+					// the query is executed when the iterator is created.
+					queryResults.getResultIterator( );
+				}
+				catch ( BirtException ex )
+				{
+					queryResults.close( );
+					throw ex;
+				}
+				return prefetched;
+			}
+			finally
+			{
+				DataEngineThreadLocal.getInstance( ).removeCloseListener( );
+				engine.exitThread( );
+				thread.setContextClassLoader( threadLoader );
+			}
+		}
+	}
+}
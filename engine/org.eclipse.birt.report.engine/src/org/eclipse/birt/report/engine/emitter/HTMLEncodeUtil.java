@@ -11,6 +11,7 @@
 
 package org.eclipse.birt.report.engine.emitter;
 
+import java.nio.CharBuffer;
 import java.util.logging.Level;
 
 public class HTMLEncodeUtil extends XMLEncodeUtil
@@ -37,9 +38,8 @@ public class HTMLEncodeUtil extends XMLEncodeUtil
 	 */
 	static public String encodeText( String text, boolean whitespace )
 	{
-		char[] chars = text.toCharArray( );
-		int length = chars.length;
-		int index = testEscape( chars, whitespace
+		int length = text.length( );
+		int index = testEscape( text, whitespace
 				? HTML_WHITE_SPACE_ENCODING
 				: HTML_TEXT_ENCODING );
 
@@ -48,11 +48,39 @@ public class HTMLEncodeUtil extends XMLEncodeUtil
 			return text;
 		}
 		StringBuilder sb = new StringBuilder( length * 2 );
-		sb.append( chars, 0, index );
+		sb.append( text, 0, index );
+		encodeText( text, index, whitespace, sb );
+		return sb.toString( );
+	}
+
+	/**
+	 * Appends the text with the escape characters replaced to the builder.
+	 * 
+	 * @param text
+	 *            The text needs to be replaced.
+	 * @param whitespace
+	 *            A <code>boolean</code> value indicating if the white space
+	 *            character should be converted or not.
+	 * @param sb
+	 *            the builder the replaced text is appended to
+	 */
+	static public void encodeText( CharSequence text, boolean whitespace,
+			StringBuilder sb )
+	{
+		int index = testEscape( text, whitespace
+				? HTML_WHITE_SPACE_ENCODING
+				: HTML_TEXT_ENCODING );
+		sb.append( text, 0, index );
+		encodeText( text, index, whitespace, sb );
+	}
 
+	private static void encodeText( CharSequence chars, int index,
+			boolean whitespace, StringBuilder sb )
+	{
+		int length = chars.length( );
 		while ( index < length )
 		{
-			char c = chars[index++];
+			char c = chars.charAt( index++ );
 			if ( Character.isHighSurrogate( c ) )
 			{
 				index += decodeSurrogate( c, chars, index, sb );
@@ -100,8 +128,6 @@ public class HTMLEncodeUtil extends XMLEncodeUtil
 						.valueOf( c ) );
 			}
 		}
-
-		return sb.toString( );
 	}
 
 	/**
@@ -123,12 +149,19 @@ public class HTMLEncodeUtil extends XMLEncodeUtil
 	 */
 	static public int encodeWhitespace( char c1, char[] chars, int offset,
 			StringBuilder sb )
+	{
+		return encodeWhitespace( c1, CharBuffer.wrap( chars ), offset, sb );
+	}
+
+	static int encodeWhitespace( char c1, CharSequence chars, int offset,
+			StringBuilder sb )
 	{
 		boolean isFirstLine = offset == 1;
 		int index = offset;
-		while ( index < chars.length )
+		int length = chars.length( );
+		while ( index < length )
 		{
-			char nc = chars[index++];
+			char nc = chars.charAt( index++ );
 			if ( nc == ' ' || nc == '\t' )
 			{
 				sb.append( ESCAPE_NBSP );
@@ -156,20 +189,21 @@ public class HTMLEncodeUtil extends XMLEncodeUtil
 		return index - offset;
 	}
 
-	static int encodeLineBreak( char c, char[] chars, int offset,
+	static int encodeLineBreak( char c, CharSequence chars, int offset,
 			StringBuilder sb )
 	{
 		int index = offset;
-		if ( c == '\r' && index < chars.length && chars[index] == '\n' )
+		int length = chars.length( );
+		if ( c == '\r' && index < length && chars.charAt( index ) == '\n' )
 		{
 			index++;
 		}
 		sb.append( ESCAPE_BR );
-		if ( index >= chars.length )
+		if ( index >= length )
 		{
 			return index - offset;
 		}
-		char nc = chars[index++];
+		char nc = chars.charAt( index++ );
 		if ( nc != ' ' && nc != '\t' )
 		{
 			// [br][none-white]
@@ -178,17 +212,17 @@ public class HTMLEncodeUtil extends XMLEncodeUtil
 		// [br][ws]... The first character is always replaces with nbsp
 		sb.append( ESCAPE_NBSP );
 		// test the following characters
-		while ( index < chars.length )
+		while ( index < length )
 		{
-			nc = chars[index++];
+			nc = chars.charAt( index++ );
 			if ( nc == ' ' || nc == '\t' )
 			{
-				if ( index >= chars.length )
+				if ( index >= length )
 				{
 					sb.append( ESCAPE_NBSP );
 					return index - offset;
 				}
-				char nnc = chars[index];
+				char nnc = chars.charAt( index );
 				if ( nnc == ' ' || nnc == '\t' )
 				{
 					sb.append( ESCAPE_NBSP );
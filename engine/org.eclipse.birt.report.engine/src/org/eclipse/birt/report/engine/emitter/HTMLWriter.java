@@ -89,6 +89,20 @@ public class HTMLWriter extends XMLWriter
 		print( code );
 	}
 
+	/**
+	 * Ends the start tag still open, so the following output is written as if
+	 * it follows a closed tag.
+	 */
+	public void endStartTag( )
+	{
+		if ( !super.bPairedFlag )
+		{
+			print( '>' );
+			super.bPairedFlag = true;
+		}
+		super.bText = false;
+	}
+
 	/**
 	 * Output the document type.
 	 */
@@ -131,8 +145,9 @@ public class HTMLWriter extends XMLWriter
 			bPairedFlag = true;
 		}
 
-		String stringToPrint = HTMLEncodeUtil.encodeText( value, whitespace );
-		print( stringToPrint );
+		StringBuilder sb = getEncodeBuffer( );
+		HTMLEncodeUtil.encodeText( value, whitespace, sb );
+		print( sb );
 		bText = true;
 	}
 
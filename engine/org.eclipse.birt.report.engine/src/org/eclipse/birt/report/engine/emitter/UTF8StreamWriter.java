@@ -0,0 +1,229 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.emitter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+
+/**
+ * Writer which encodes the characters to UTF-8 straight into a byte buffer
+ * and writes the buffer to the output stream. The byte buffers are pooled and
+ * reused by the writers opened later, so writing a report allocates nothing
+ * per character. The malformed surrogates are written as '?', as the
+ * OutputStreamWriter does.
+ */
+class UTF8StreamWriter extends Writer
+{
+
+	static final int BUFFER_SIZE = 8192;
+
+	// the max number of the byte buffers kept in the pool
+	static final int MAX_POOL_SIZE = 16;
+
+	private static final ArrayList<byte[]> bufferPool = new ArrayList<byte[]>( );
+
+	private OutputStream out;
+	private byte[] bytes;
+	private int count;
+
+	// the high surrogate written at the end of the last write
+	private char highSurrogate;
+
+	UTF8StreamWriter( OutputStream out )
+	{
+		this.out = out;
+		this.bytes = allocateBuffer( );
+	}
+
+	private static byte[] allocateBuffer( )
+	{
+		synchronized ( bufferPool )
+		{
+			int size = bufferPool.size( );
+			if ( size > 0 )
+			{
+				return bufferPool.remove( size - 1 );
+			}
+		}
+		return new byte[BUFFER_SIZE];
+	}
+
+	private static void releaseBuffer( byte[] buffer )
+	{
+		synchronized ( bufferPool )
+		{
+			if ( bufferPool.size( ) < MAX_POOL_SIZE )
+			{
+				bufferPool.add( buffer );
+			}
+		}
+	}
+
+	public void write( char[] cbuf, int off, int len ) throws IOException
+	{
+		ensureOpen( );
+		int index = off;
+		int end = off + len;
+		while ( index < end )
+		{
+			if ( highSurrogate == 0 )
+			{
+				// copy the ascii characters in bulk
+				byte[] b = bytes;
+				int n = count;
+				int limit = Math.min( end, index + b.length - n );
+				while ( index < limit )
+				{
+					char c = cbuf[index];
+					if ( c >= 0x80 )
+					{
+						break;
+					}
+					b[n++] = (byte) c;
+					index++;
+				}
+				count = n;
+				if ( index == limit )
+				{
+					if ( count == bytes.length )
+					{
+						flushBuffer( );
+					}
+					continue;
+				}
+			}
+			write( cbuf[index++] );
+		}
+	}
+
+	public void write( String str, int off, int len ) throws IOException
+	{
+		ensureOpen( );
+		int end = off + len;
+		for ( int i = off; i < end; i++ )
+		{
+			write( str.charAt( i ) );
+		}
+	}
+
+	public void write( int c ) throws IOException
+	{
+		ensureOpen( );
+		write( (char) c );
+	}
+
+	private void write( char c ) throws IOException
+	{
+		// a character takes at most 4 bytes
+		if ( count + 4 > bytes.length )
+		{
+			flushBuffer( );
+		}
+		if ( highSurrogate != 0 )
+		{
+			char high = highSurrogate;
+			highSurrogate = 0;
+			if ( Character.isLowSurrogate( c ) )
+			{
+				int cp = Character.toCodePoint( high, c );
+				bytes[count++] = (byte) ( 0xF0 | ( cp >> 18 ) );
+				bytes[count++] = (byte) ( 0x80 | ( ( cp >> 12 ) & 0x3F ) );
+				bytes[count++] = (byte) ( 0x80 | ( ( cp >> 6 ) & 0x3F ) );
+				bytes[count++] = (byte) ( 0x80 | ( cp & 0x3F ) );
+				return;
+			}
+			bytes[count++] = '?';
+			// the character is encoded as usual
+			if ( count + 3 > bytes.length )
+			{
+				flushBuffer( );
+			}
+		}
+		if ( c < 0x80 )
+		{
+			bytes[count++] = (byte) c;
+		}
+		else if ( c < 0x800 )
+		{
+			bytes[count++] = (byte) ( 0xC0 | ( c >> 6 ) );
+			bytes[count++] = (byte) ( 0x80 | ( c & 0x3F ) );
+		}
+		else if ( Character.isHighSurrogate( c ) )
+		{
+			highSurrogate = c;
+		}
+		else if ( Character.isLowSurrogate( c ) )
+		{
+			bytes[count++] = '?';
+		}
+		else
+		{
+			bytes[count++] = (byte) ( 0xE0 | ( c >> 12 ) );
+			bytes[count++] = (byte) ( 0x80 | ( ( c >> 6 ) & 0x3F ) );
+			bytes[count++] = (byte) ( 0x80 | ( c & 0x3F ) );
+		}
+	}
+
+	private void flushBuffer( ) throws IOException
+	{
+		if ( count > 0 )
+		{
+			out.write( bytes, 0, count );
+			count = 0;
+		}
+	}
+
+	private void ensureOpen( ) throws IOException
+	{
+		if ( out == null )
+		{
+			throw new IOException( "Stream closed" ); //$NON-NLS-1$
+		}
+	}
+
+	public void flush( ) throws IOException
+	{
+		ensureOpen( );
+		flushBuffer( );
+		out.flush( );
+	}
+
+	public void close( ) throws IOException
+	{
+		if ( out == null )
+		{
+			return;
+		}
+		try
+		{
+			if ( highSurrogate != 0 )
+			{
+				highSurrogate = 0;
+				if ( count >= bytes.length )
+				{
+					flushBuffer( );
+				}
+				bytes[count++] = '?';
+			}
+			flushBuffer( );
+			out.close( );
+		}
+		finally
+		{
+			out = null;
+			releaseBuffer( bytes );
+			bytes = null;
+		}
+	}
+}
@@ -11,6 +11,7 @@
 
 package org.eclipse.birt.report.engine.emitter;
 
+import java.nio.CharBuffer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -43,17 +44,32 @@ public class XMLEncodeUtil
 	}
 
 	protected static int testEscape( char[] chars, char[] encodings )
+	{
+		return testEscape( CharBuffer.wrap( chars ), encodings );
+	}
+
+	/**
+	 * Returns the index of the first character which should be escaped or is
+	 * invalid, the text is scanned in place.
+	 * 
+	 * @param s
+	 *            the text
+	 * @param encodings
+	 *            the characters to be escaped
+	 * @return the index, or the length of the text if nothing is escaped
+	 */
+	protected static int testEscape( CharSequence s, char[] encodings )
 	{
 		int index = 0;
-		int length = chars.length;
+		int length = s.length( );
 		while ( index < length )
 		{
-			char c1 = chars[index++];
+			char c1 = s.charAt( index++ );
 			if ( Character.isHighSurrogate( c1 ) )
 			{
 				if ( index < length )
 				{
-					char c2 = chars[index++];
+					char c2 = s.charAt( index++ );
 					if ( Character.isLowSurrogate( c2 ) )
 					{
 						int cp = Character.toCodePoint( c1, c2 );
@@ -102,23 +118,28 @@ public class XMLEncodeUtil
 	 */
 	static public String encodeText( String s )
 	{
-		char[] chars = s.toCharArray( );
-		int length = chars.length;
-		int index = testEscape( chars, XML_TEXT_ENCODE );
+		int length = s.length( );
+		int index = testEscape( s, XML_TEXT_ENCODE );
 		if ( index >= length )
 		{
 			return s;
 		}
 
 		StringBuilder sb = new StringBuilder( 2 * length );
-		sb.append( chars, 0, index );
+		sb.append( s, 0, index );
+		encodeText( s, index, sb );
+		return sb.toString( );
+	}
 
+	private static void encodeText( CharSequence s, int index, StringBuilder sb )
+	{
+		int length = s.length( );
 		while ( index < length )
 		{
-			char c = chars[index++];
+			char c = s.charAt( index++ );
 			if ( Character.isHighSurrogate( c ) )
 			{
-				index += decodeSurrogate( c, chars, index, sb );
+				index += decodeSurrogate( c, s, index, sb );
 			}
 			else if ( isValidCodePoint( c ) )
 			{
@@ -141,7 +162,6 @@ public class XMLEncodeUtil
 						.valueOf( c ) );
 			}
 		}
-		return sb.toString( );
 	}
 
 	protected static final char[] XML_ATTR_ENCODE = new char[]{'&', '<', '>',
@@ -156,23 +176,28 @@ public class XMLEncodeUtil
 	 */
 	static public String encodeAttr( String s )
 	{
-		char[] chars = s.toCharArray( );
-		int length = chars.length;
-		int index = testEscape( chars, XML_ATTR_ENCODE );
+		int length = s.length( );
+		int index = testEscape( s, XML_ATTR_ENCODE );
 		if ( index >= length )
 		{
 			return s;
 		}
 
 		StringBuilder sb = new StringBuilder( 2 * length );
-		sb.append( chars, 0, index );
+		sb.append( s, 0, index );
+		encodeAttr( s, index, sb );
+		return sb.toString( );
+	}
 
+	private static void encodeAttr( CharSequence s, int index, StringBuilder sb )
+	{
+		int length = s.length( );
 		while ( index < length )
 		{
-			char c = chars[index++];
+			char c = s.charAt( index++ );
 			if ( Character.isHighSurrogate( c ) )
 			{
-				index += decodeSurrogate( c, chars, index, sb );
+				index += decodeSurrogate( c, s, index, sb );
 			}
 			else if ( isValidCodePoint( c ) )
 			{
@@ -211,28 +236,26 @@ public class XMLEncodeUtil
 						.valueOf( c ) );
 			}
 		}
-		return sb.toString( );
 	}
 
 	static public String encodeCdata( String s )
 	{
-		char[] chars = s.toCharArray( );
-		int length = chars.length;
-		int index = testEscape( chars, null );
+		int length = s.length( );
+		int index = testEscape( s, null );
 		if ( index >= length )
 		{
 			return s;
 		}
 
 		StringBuilder sb = new StringBuilder( 2 * length );
-		sb.append( chars, 0, index );
+		sb.append( s, 0, index );
 
 		while ( index < length )
 		{
-			char c = chars[index++];
+			char c = s.charAt( index++ );
 			if ( Character.isHighSurrogate( c ) )
 			{
-				index += decodeSurrogate( c, chars, index, sb );
+				index += decodeSurrogate( c, s, index, sb );
 			}
 			else if ( isValidCodePoint( c ) )
 			{
@@ -263,12 +286,18 @@ public class XMLEncodeUtil
 	 */
 	protected static int decodeSurrogate( char c, char[] chars, int offset,
 			StringBuilder sb )
+	{
+		return decodeSurrogate( c, CharBuffer.wrap( chars ), offset, sb );
+	}
+
+	protected static int decodeSurrogate( char c, CharSequence chars,
+			int offset, StringBuilder sb )
 	{
 		if ( Character.isHighSurrogate( c ) )
 		{
-			if ( offset < chars.length )
+			if ( offset < chars.length( ) )
 			{
-				char nc = chars[offset];
+				char nc = chars.charAt( offset );
 				if ( Character.isLowSurrogate( nc ) )
 				{
 					int cp = Character.toCodePoint( c, nc );
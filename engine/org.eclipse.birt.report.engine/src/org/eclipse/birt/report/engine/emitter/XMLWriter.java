@@ -34,6 +34,13 @@ public class XMLWriter
 	protected char[] buffer = new char[MAX_BUFFER_SIZE];
 	protected int bufferSize;
 
+	/**
+	 * the builder reused to escape the text, it is dropped if it grows larger
+	 * than MAX_ENCODE_BUFFER_SIZE.
+	 */
+	protected static final int MAX_ENCODE_BUFFER_SIZE = 64 * 1024;
+	protected StringBuilder encodeBuffer;
+
 	/** the print writer for outputting */
 	protected Writer writer;
 
@@ -81,6 +88,14 @@ public class XMLWriter
 		assert ( outputStream != null );
 
 		this.encoding = encoding;
+		if ( "UTF-8".equalsIgnoreCase( encoding ) //$NON-NLS-1$
+				|| "UTF8".equalsIgnoreCase( encoding ) ) //$NON-NLS-1$
+		{
+			// encode straight to bytes without the encoder of the stream
+			// writer
+			writer = new UTF8StreamWriter( outputStream );
+			return;
+		}
 		try
 		{
 			writer = new OutputStreamWriter( outputStream, encoding );
@@ -97,6 +112,28 @@ public class XMLWriter
 		open( outputStream, "UTF-8" ); //$NON-NLS-1$
 	}
 
+	/**
+	 * Writes the following output to another stream. The output written so
+	 * far is flushed to the current stream and the tags still open are kept,
+	 * so the output continues in the new stream.
+	 * 
+	 * @param outputStream
+	 *            the stream of the following output
+	 */
+	public void redirect( OutputStream outputStream )
+	{
+		flush( );
+		try
+		{
+			writer.flush( );
+		}
+		catch ( IOException ex )
+		{
+			log.log( Level.SEVERE, ex.getMessage( ) );
+		}
+		open( outputStream, encoding );
+	}
+
 	public void close( )
 	{
 		flush( );
@@ -271,7 +308,11 @@ public class XMLWriter
 	 */
 	public void attribute( String attrName, float attrValue )
 	{
-		print( ' ' + attrName + "=\"" + Float.toString( attrValue ) + '\"' ); //$NON-NLS-1$ 
+		print( ' ' );
+		print( attrName );
+		print( "=\"" ); //$NON-NLS-1$
+		print( Float.toString( attrValue ) );
+		print( '\"' );
 	}
 
 	/**
@@ -284,7 +325,11 @@ public class XMLWriter
 	 */
 	public void attribute( String attrName, double attrValue )
 	{
-		print( ' ' + attrName + "=\"" + Double.toString( attrValue ) + '\"' ); //$NON-NLS-1$
+		print( ' ' );
+		print( attrName );
+		print( "=\"" ); //$NON-NLS-1$
+		print( Double.toString( attrValue ) );
+		print( '\"' );
 	}
 
 	/**
@@ -297,8 +342,11 @@ public class XMLWriter
 	 */
 	public void attribute( String attrName, int attrValue )
 	{
-		print( ' ' + attrName + "=\"" //$NON-NLS-1$
-				+ Integer.toString( attrValue ) + '\"' ); //$NON-NLS-1$
+		print( ' ' );
+		print( attrName );
+		print( "=\"" ); //$NON-NLS-1$
+		print( Integer.toString( attrValue ) );
+		print( '\"' );
 	}
 
 	/**
@@ -501,6 +549,46 @@ public class XMLWriter
 		}
 	}
 
+	/**
+	 * Outputs the content of the builder.
+	 * 
+	 * @param sb
+	 *            the builder
+	 */
+	public void print( StringBuilder sb )
+	{
+		int length = sb.length( );
+		int offset = 0;
+		while ( offset < length )
+		{
+			if ( bufferSize >= MAX_BUFFER_SIZE )
+			{
+				flush( );
+			}
+			int size = Math.min( length - offset, MAX_BUFFER_SIZE - bufferSize );
+			sb.getChars( offset, offset + size, buffer, bufferSize );
+			bufferSize += size;
+			offset += size;
+		}
+	}
+
+	/**
+	 * Returns the cleared builder to escape a value into. The builder is
+	 * reused, the value should be printed before it is requested again.
+	 * 
+	 * @return the builder
+	 */
+	protected StringBuilder getEncodeBuffer( )
+	{
+		if ( encodeBuffer == null
+				|| encodeBuffer.capacity( ) > MAX_ENCODE_BUFFER_SIZE )
+		{
+			encodeBuffer = new StringBuilder( MAX_BUFFER_SIZE );
+		}
+		encodeBuffer.setLength( 0 );
+		return encodeBuffer;
+	}
+
 	public void println( )
 	{
 		if ( !enableCompactMode )
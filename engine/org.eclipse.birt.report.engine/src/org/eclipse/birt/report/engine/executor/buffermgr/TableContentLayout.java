@@ -17,6 +17,7 @@ import java.util.Iterator;
 import java.util.List;
 
 import org.eclipse.birt.report.engine.api.IEngineTask;
+import org.eclipse.birt.report.engine.api.IRenderOption;
 import org.eclipse.birt.report.engine.api.InstanceID;
 import org.eclipse.birt.report.engine.api.impl.EngineTask;
 import org.eclipse.birt.report.engine.content.ICellContent;
@@ -37,6 +38,18 @@ public class TableContentLayout
 {
 	
 	public final Integer MAX_ROW_SPAN = 10000;
+
+	/**
+	 * the max number of the rows cached before the cached rows are broken
+	 */
+	protected int maxCachedRows = MAX_ROW_SPAN;
+
+	/**
+	 * the cached rows are broken at the max number even if no page break is
+	 * allowed, it is disabled by a buffer size of 0 in the render option
+	 */
+	protected boolean cachedRowsBounded = true;
+
 	/**
 	 * rows in the table layout
 	 */
@@ -84,6 +97,32 @@ public class TableContentLayout
 		this.context = context;
 		this.tableContent = tableContent;
 		this.keyString = keyString;
+		Object bufferSize = context.getLayoutEngine( ).getOption(
+				IRenderOption.TABLE_ROW_BUFFER_SIZE );
+		int size = maxCachedRows;
+		if ( bufferSize instanceof Number )
+		{
+			size = ( (Number) bufferSize ).intValue( );
+		}
+		else if ( bufferSize instanceof String )
+		{
+			try
+			{
+				size = Integer.parseInt( ( (String) bufferSize ).trim( ) );
+			}
+			catch ( NumberFormatException ex )
+			{
+			}
+		}
+		if ( size > 0 )
+		{
+			maxCachedRows = size;
+		}
+		else
+		{
+			// keep the whole group of rows if no page break is allowed
+			cachedRowsBounded = false;
+		}
 		
 		this.colCount = tableContent.getColumnCount( );
 
@@ -266,6 +305,11 @@ public class TableContentLayout
 	{
 		//keepUnresolvedCells( );
 		fillEmptyCells( 0, 0, rowBufferSize, colBufferSize );
+		// release the row contents which have been output
+		for ( int i = 0; i < rowCount; i++ )
+		{
+			rows[i].content = null;
+		}
 		rowCount = 0;
 		isRowHidden = false;
 	}
@@ -283,7 +327,29 @@ public class TableContentLayout
 	
 	public boolean exceedMaxCache()
 	{
-		return this.rowCount >= MAX_ROW_SPAN;
+		return this.rowCount >= maxCachedRows;
+	}
+
+	/**
+	 * @return true if the cached rows are broken at the max number even if no
+	 *         page break is allowed. It is false only if
+	 *         IRenderOption.TABLE_ROW_BUFFER_SIZE is set to 0.
+	 */
+	public boolean isCachedRowsBounded( )
+	{
+		return cachedRowsBounded;
+	}
+
+	/**
+	 * breaks the cached rows after the last row, so they can be output. The
+	 * dropped and spanned cells end at the last row and are continued in the
+	 * next rows as the unresolved cells.
+	 */
+	public void breakCachedRows( )
+	{
+		rowHint = null;
+		resolveDropCells( false );
+		formalized = false;
 	}
 	
 	public void setNeedFormalize( boolean formalize )
@@ -539,6 +605,9 @@ public class TableContentLayout
 	{
 		if ( newRowBufferSize > rowBufferSize )
 		{
+			// grow the buffer by half to avoid copying the rows for each new row
+			newRowBufferSize = Math.max( newRowBufferSize, rowBufferSize
+					+ ( rowBufferSize >> 1 ) );
 			Row[] newRows = new Row[newRowBufferSize];
 			if ( rows != null )
 			{
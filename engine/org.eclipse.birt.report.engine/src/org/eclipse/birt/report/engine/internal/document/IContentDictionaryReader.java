@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.report.engine.internal.document;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+
+import org.eclipse.birt.report.engine.api.InstanceID;
+import org.eclipse.birt.report.engine.content.IStyle;
+
+/**
+ * The dictionary used to read the content stream. It reads the values saved
+ * by the {@link IContentDictionaryWriter} and referred by the contents.
+ */
+public interface IContentDictionaryReader
+{
+
+	/**
+	 * read the inline style written by writeStyle.
+	 *
+	 * @param in
+	 *            the stream of the content
+	 * @return the style.
+	 * @throws IOException
+	 */
+	public IStyle readStyle( DataInputStream in ) throws IOException;
+
+	/**
+	 * read the instance id written by writeInstanceID.
+	 *
+	 * @param in
+	 *            the stream of the content
+	 * @return the instance id, only the id of the content itself is read, its
+	 *         parent is null.
+	 * @throws IOException
+	 */
+	public InstanceID readInstanceID( DataInputStream in ) throws IOException;
+}
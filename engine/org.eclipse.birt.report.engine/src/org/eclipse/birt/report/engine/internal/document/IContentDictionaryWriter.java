@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.report.engine.internal.document;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.eclipse.birt.report.engine.api.InstanceID;
+import org.eclipse.birt.report.engine.content.IStyle;
+
+/**
+ * The dictionary used to write the content stream. The values repeated by the
+ * contents, such as the inline styles and the data set of the instance ids,
+ * are saved once in the stream and referred by the contents saved later.
+ *
+ * @see IContentDictionaryReader
+ */
+public interface IContentDictionaryWriter
+{
+
+	/**
+	 * write the inline style of a content.
+	 *
+	 * @param out
+	 *            the stream of the content
+	 * @param style
+	 *            the style, it can't be empty.
+	 * @throws IOException
+	 */
+	public void writeStyle( DataOutputStream out, IStyle style )
+			throws IOException;
+
+	/**
+	 * write the instance id of a content.
+	 *
+	 * @param out
+	 *            the stream of the content
+	 * @param iid
+	 *            the instance id.
+	 * @throws IOException
+	 */
+	public void writeInstanceID( DataOutputStream out, InstanceID iid )
+			throws IOException;
+}
@@ -14,15 +14,23 @@ package org.eclipse.birt.report.engine.internal.document.v3;
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.eclipse.birt.core.archive.RAInputStream;
 import org.eclipse.birt.core.util.IOUtil;
+import org.eclipse.birt.report.engine.api.DataID;
+import org.eclipse.birt.report.engine.api.DataSetID;
+import org.eclipse.birt.report.engine.api.InstanceID;
 import org.eclipse.birt.report.engine.content.IContent;
+import org.eclipse.birt.report.engine.content.IStyle;
 import org.eclipse.birt.report.engine.content.impl.AbstractContent;
 import org.eclipse.birt.report.engine.content.impl.ReportContent;
+import org.eclipse.birt.report.engine.css.dom.StyleDeclaration;
 import org.eclipse.birt.report.engine.internal.document.DocumentExtension;
+import org.eclipse.birt.report.engine.internal.document.IContentDictionaryReader;
 
 /**
  * read the content from the content stream.
@@ -43,8 +51,11 @@ public class ReportContentReaderV3
 
 	protected final static int VERSION_0 = 0;
 	protected final static int VERSION_1 = 1;
+	protected final static int VERSION_2 = 2;
 	protected final static int VERSION_SIZE = 4;
 
+	protected final static int LINK_SIZE_V2 = 6;
+
 	/**
 	 * the current offset of the stream.
 	 */
@@ -71,7 +82,7 @@ public class ReportContentReaderV3
 			{
 				version = VERSION_0;
 			}
-			else if ( version == VERSION_1 )
+			else if ( version == VERSION_1 || version == VERSION_2 )
 			{
 				if ( length == 4 )
 				{
@@ -121,6 +132,11 @@ public class ReportContentReaderV3
 	
 	private void loadReport( ) throws IOException
 	{
+		if ( version == VERSION_2 )
+		{
+			loadReportV2( );
+			return;
+		}
 		// skip the first document extension
 		readDocumentExtensionV1( 0 );
 		int size = stream.readInt( );
@@ -140,6 +156,24 @@ public class ReportContentReaderV3
 		}
 	}
 
+	private void loadReportV2( ) throws IOException
+	{
+		// skip the first document extension
+		readDocumentExtensionV2( 0 );
+		int size = (int) IOUtil.readVarLong( stream );
+		byte[] buffer = new byte[size];
+		stream.readFully( buffer, 0, size );
+		DataInputStream oi = new DataInputStream( new ByteArrayInputStream(
+				buffer ) );
+		int contentType = (int) IOUtil.readVarLong( oi );
+		if ( contentType == IContent.REPORT_CONTENT )
+		{
+			reportContent.readContent( oi, loader );
+			offset = stream.getOffset( ) - VERSION_SIZE;
+			rootOffset = offset;
+		}
+	}
+
 	/**
 	 * read the content object from the input stream.
 	 * 
@@ -165,8 +199,50 @@ public class ReportContentReaderV3
 		stream.readFully( buffer, 0, size );
 		DataInputStream oi = new DataInputStream( new ByteArrayInputStream(
 				buffer ) );
-		AbstractContent object = null;
 		int contentType = IOUtil.readInt( oi );
+		AbstractContent object = createContent( contentType, offset );
+		object.setVersion( version );
+		object.readContent( oi, loader );
+		return object;
+	}
+
+	/**
+	 * read the content object saved in version 2. The stream must be
+	 * positioned at the length of the content.
+	 * 
+	 * @param index
+	 *            the offset of the content.
+	 * @return the object read out.
+	 * @throws IOException
+	 */
+	protected IContent readObjectV2( long index ) throws IOException
+	{
+		int size = (int) IOUtil.readVarLong( stream );
+		byte[] buffer = new byte[size];
+		stream.readFully( buffer, 0, size );
+		DataInputStream oi = new DataInputStream( new ByteArrayInputStream(
+				buffer ) );
+		int contentType = (int) IOUtil.readVarLong( oi );
+		AbstractContent object = createContent( contentType, index );
+		// the fields are saved in the same way as version 1
+		object.setVersion( VERSION_1 );
+		dictionary.contentPosition = VERSION_SIZE + index;
+		object.setDictionaryReader( dictionary );
+		try
+		{
+			object.readContent( oi, loader );
+		}
+		finally
+		{
+			object.setDictionaryReader( null );
+		}
+		return object;
+	}
+
+	private AbstractContent createContent( int contentType, long offset )
+			throws IOException
+	{
+		AbstractContent object = null;
 		switch ( contentType )
 		{
 			case IContent.CELL_CONTENT :
@@ -222,8 +298,6 @@ public class ReportContentReaderV3
 				throw new IOException( "Found invalid contentType"
 						+ contentType + " at object offset " + offset );
 		}
-		object.setVersion( version );
-		object.readContent( oi, loader );
 		return object;
 	}
 
@@ -287,6 +361,10 @@ public class ReportContentReaderV3
 		{
 			return readContentV1( index );
 		}
+		else if ( VERSION_2 == version )
+		{
+			return readContentV2( index );
+		}
 		else
 		{
 			throw new IOException( "unrecognized stream version!" );
@@ -319,9 +397,26 @@ public class ReportContentReaderV3
 		return content;
 	}
 
+	private IContent readContentV2( long index ) throws IOException
+	{
+		// the content follows its document extension
+		DocumentExtension docExt = readDocumentExtensionV2( index );
+		IContent content = readObjectV2( index );
+		if ( content != null )
+		{
+			content.setExtension( IContent.DOCUMENT_EXTENSION, docExt );
+		}
+		return content;
+	}
+
 	private DocumentExtension readDocumentExtension( long index )
 			throws IOException
 	{
+		// the root content has no parent
+		if ( index == -1 )
+		{
+			return null;
+		}
 		if ( VERSION_0 == version )
 		{
 			return readDocumentExtensionV0( index );
@@ -330,6 +425,10 @@ public class ReportContentReaderV3
 		{
 			return readDocumentExtensionV1( index );
 		}
+		else if ( VERSION_2 == version )
+		{
+			return readDocumentExtensionV2( index );
+		}
 		else
 		{
 			throw new IOException( "unrecognized stream version!" );
@@ -367,6 +466,36 @@ public class ReportContentReaderV3
 		return docExt;
 	}
 
+	private DocumentExtension readDocumentExtensionV2( long index )
+			throws IOException
+	{
+		stream.seek( VERSION_SIZE + index );
+		stream.readFully( linkBuffer, 0, LINK_SIZE_V2 * 2 );
+		long next = readLink( 0 );
+		long child = readLink( LINK_SIZE_V2 );
+		long parentDistance = IOUtil.readVarLong( stream );
+		DocumentExtension docExt = new DocumentExtension( index );
+		docExt.setParent( parentDistance == 0 ? -1 : index - parentDistance );
+		docExt.setNext( next );
+		docExt.setFirstChild( child );
+		return docExt;
+	}
+
+	private byte[] linkBuffer = new byte[LINK_SIZE_V2 * 2];
+
+	/**
+	 * the link is saved as the index + 1, so 0 is -1.
+	 */
+	private long readLink( int offset )
+	{
+		long value = 0;
+		for ( int i = 0; i < LINK_SIZE_V2; i++ )
+		{
+			value = ( value << 8 ) | ( linkBuffer[offset + i] & 0xFF );
+		}
+		return value - 1;
+	}
+
 	/**
 	 * get the current offset.
 	 * 
@@ -389,6 +518,129 @@ public class ReportContentReaderV3
 		this.offset = offset;
 	}
 
+	private DictionaryReader dictionary = new DictionaryReader( );
+
+	/**
+	 * Reads the styles and data sets saved by the dictionary of the writer.
+	 * The values read are cached, so a style is parsed once and shared by all
+	 * the contents which use it.
+	 */
+	private class DictionaryReader implements IContentDictionaryReader
+	{
+
+		/**
+		 * the stream position of the content being read.
+		 */
+		long contentPosition;
+
+		private ValueCache styles = new ValueCache( );
+		private ValueCache dataSets = new ValueCache( );
+
+		public IStyle readStyle( DataInputStream in ) throws IOException
+		{
+			long distance = IOUtil.readVarLong( in );
+			if ( distance == 0 )
+			{
+				return readStyleValue( in );
+			}
+			Long position = Long.valueOf( contentPosition - distance );
+			StyleDeclaration style = (StyleDeclaration) styles.get( position );
+			if ( style == null )
+			{
+				style = readStyleValue( seekValue( position.longValue( ) ) );
+				styles.put( position, style );
+			}
+			// the style is copied when it is changed
+			return new StyleDeclaration( style );
+		}
+
+		private StyleDeclaration readStyleValue( DataInputStream in )
+				throws IOException
+		{
+			StyleDeclaration style = new StyleDeclaration( reportContent
+					.getCSSEngine( ) );
+			style.read( in );
+			return style;
+		}
+
+		public InstanceID readInstanceID( DataInputStream in )
+				throws IOException
+		{
+			long uid = IOUtil.readVarLong( in ) - 1;
+			long designId = IOUtil.readVarLong( in ) - 1;
+			int dataIdType = (int) IOUtil.readVarLong( in );
+			DataID dataId = null;
+			if ( dataIdType != ReportContentWriterV3.DATA_ID_NONE )
+			{
+				DataSetID dataSet = readDataSet( in );
+				if ( dataIdType == ReportContentWriterV3.DATA_ID_ROW )
+				{
+					dataId = new DataID( dataSet, IOUtil.readVarLong( in ) );
+				}
+				else
+				{
+					dataId = new DataID( dataSet, IOUtil.readString( in ) );
+				}
+			}
+			return new InstanceID( null, uid, designId, dataId );
+		}
+
+		private DataSetID readDataSet( DataInputStream in ) throws IOException
+		{
+			long distance = IOUtil.readVarLong( in );
+			if ( distance == 0 )
+			{
+				return readDataSetValue( in );
+			}
+			Long position = Long.valueOf( contentPosition - distance );
+			DataSetID dataSet = (DataSetID) dataSets.get( position );
+			if ( dataSet == null )
+			{
+				dataSet = readDataSetValue( seekValue( position.longValue( ) ) );
+				dataSets.put( position, dataSet );
+			}
+			return dataSet;
+		}
+
+		private DataSetID readDataSetValue( DataInputStream in )
+				throws IOException
+		{
+			String value = IOUtil.readString( in );
+			return value == null ? null : DataSetID.parse( value );
+		}
+
+		/**
+		 * The value is saved by a content read before, the data of the
+		 * current content has been read into the buffer, so the stream can be
+		 * moved.
+		 */
+		private DataInputStream seekValue( long position ) throws IOException
+		{
+			stream.seek( position );
+			return new DataInputStream( stream );
+		}
+	}
+
+	/**
+	 * the values read from the stream positions, the least recently used ones
+	 * are removed once the cache is full.
+	 */
+	private static class ValueCache extends LinkedHashMap<Long, Object>
+	{
+
+		private static final long serialVersionUID = 1L;
+
+		ValueCache( )
+		{
+			super( 16, 0.75f, true );
+		}
+
+		protected boolean removeEldestEntry( Map.Entry<Long, Object> eldest )
+		{
+			return size( ) > ReportContentWriterV3.MAX_DICTIONARY_SIZE;
+		}
+	}
+
 	public void dump( ) throws IOException
 	{
 		IContent content = readContent( 0 );
@@ -14,7 +14,10 @@ package org.eclipse.birt.report.engine.internal.document.v3;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Stack;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -22,10 +25,16 @@ import java.util.logging.Logger;
 import org.eclipse.birt.core.archive.IDocArchiveWriter;
 import org.eclipse.birt.core.archive.RAOutputStream;
 import org.eclipse.birt.core.util.IOUtil;
+import org.eclipse.birt.report.engine.api.DataID;
+import org.eclipse.birt.report.engine.api.DataSetID;
+import org.eclipse.birt.report.engine.api.InstanceID;
 import org.eclipse.birt.report.engine.api.impl.ReportDocumentWriter;
 import org.eclipse.birt.report.engine.content.IContent;
 import org.eclipse.birt.report.engine.content.IReportContent;
+import org.eclipse.birt.report.engine.content.IStyle;
+import org.eclipse.birt.report.engine.content.impl.AbstractContent;
 import org.eclipse.birt.report.engine.internal.document.DocumentExtension;
+import org.eclipse.birt.report.engine.internal.document.IContentDictionaryWriter;
 import org.eclipse.birt.report.engine.internal.document.IReportContentWriter;
 
 public class ReportContentWriterV3 implements IReportContentWriter
@@ -54,7 +63,7 @@ public class ReportContentWriterV3 implements IReportContentWriter
 	{
 		cntStream = writer.createRandomAccessStream( name );
 		// write the version information
-		cntStream.writeInt( VERSION_1 );
+		cntStream.writeInt( VERSION_2 );
 		cntOffset = 0;
 		rootOffset = -1;
 	}
@@ -102,6 +111,16 @@ public class ReportContentWriterV3 implements IReportContentWriter
 	 */
 	protected Stack contents = new Stack( );
 
+	/**
+	 * dictionary of the styles and data sets saved in the stream.
+	 */
+	private DictionaryWriter dictionary = new DictionaryWriter( );
+
+	/**
+	 * buffer used to write the index of the content.
+	 */
+	private byte[] linkBuffer = new byte[LINK_SIZE];
+
 	/**
 	 * write the content into the stream.
 	 * 
@@ -117,15 +136,26 @@ public class ReportContentWriterV3 implements IReportContentWriter
 		
 		// get the byte[] of the content
 		buffer.reset( );
-		IOUtil.writeInt( bufferStream, content.getContentType( ) );
-		content.writeContent( bufferStream );
+		IOUtil.writeVarLong( bufferStream, content.getContentType( ) );
+		if ( content instanceof AbstractContent )
+		{
+			AbstractContent abstractContent = (AbstractContent) content;
+			abstractContent.setDictionaryWriter( dictionary );
+			try
+			{
+				content.writeContent( bufferStream );
+			}
+			finally
+			{
+				abstractContent.setDictionaryWriter( null );
+			}
+		}
+		else
+		{
+			content.writeContent( bufferStream );
+		}
 		bufferStream.flush( );
-		byte[] values = buffer.toByteArray( );
-		// write the content out as: length, data
-		cntStream.seek( cntOffset + VERSION_SIZE );
-		cntStream.writeInt( values.length );
-		cntStream.write( values );
-		cntOffset = cntOffset + 4 + values.length;
+		writeBuffer( );
 		
 		DocumentExtension docExt = (DocumentExtension) content
 				.getExtension( IContent.DOCUMENT_EXTENSION );
@@ -139,26 +169,68 @@ public class ReportContentWriterV3 implements IReportContentWriter
 	public long writeReport( IReportContent report ) throws IOException
 	{
 		cntStream.seek( VERSION_SIZE );
-		cntStream.writeLong( -1 ); // parent
-		cntStream.writeLong( -1 ); // next
-		cntStream.writeLong( -1 ); // first child
-		cntOffset += INDEX_ENTRY_SIZE;
+		writeLink( -1 ); // next
+		writeLink( -1 ); // first child
+		IOUtil.writeVarLong( cntStream, 0 ); // parent
+		cntOffset += LINK_SIZE * 2 + 1;
+		dictionary.startContent( VERSION_SIZE );
 
 		// get the byte[] of the content
 		buffer.reset( );
-		IOUtil.writeInt( bufferStream, IContent.REPORT_CONTENT );
+		IOUtil.writeVarLong( bufferStream, IContent.REPORT_CONTENT );
 		report.writeContent( bufferStream );
 		bufferStream.flush( );
-		byte[] values = buffer.toByteArray( );
-		// write the content out as: length, data
-		cntStream.seek( cntOffset + VERSION_SIZE );
-		cntStream.writeInt( values.length );
-		cntStream.write( values );
-		cntOffset = cntOffset + 4 + values.length;
+		writeBuffer( );
 
 		return cntOffset;
 	}
 
+	/**
+	 * write the content in the buffer out as: length, data
+	 * 
+	 * @throws IOException
+	 */
+	private void writeBuffer( ) throws IOException
+	{
+		int length = buffer.size( );
+		cntStream.seek( cntOffset + VERSION_SIZE );
+		IOUtil.writeVarLong( cntStream, length );
+		cntOffset += getVarLongSize( length );
+		dictionary.endContent( cntOffset + VERSION_SIZE );
+		buffer.writeTo( cntStream );
+		cntOffset += length;
+	}
+
+	/**
+	 * write the offset of a content as the index + 1 in LINK_SIZE bytes, so -1
+	 * is saved as 0.
+	 * 
+	 * @param index
+	 *            the offset of the content, -1 if there is no such content.
+	 * @throws IOException
+	 */
+	private void writeLink( long index ) throws IOException
+	{
+		long value = index + 1;
+		for ( int i = LINK_SIZE - 1; i >= 0; i-- )
+		{
+			linkBuffer[i] = (byte) value;
+			value >>>= 8;
+		}
+		cntStream.write( linkBuffer, 0, LINK_SIZE );
+	}
+
+	private static int getVarLongSize( long value )
+	{
+		int size = 1;
+		while ( ( value & ~0x7FL ) != 0 )
+		{
+			value >>>= 7;
+			size++;
+		}
+		return size;
+	}
+
 	/**
 	 * save the content and its children into the streams.
 	 * 
@@ -179,24 +251,35 @@ public class ReportContentWriterV3 implements IReportContentWriter
 		return offset;
 	}
 
-	/**
-	 * parent index
-	 */
-	final static long OFFSET_PARENT = 0;
 	/**
 	 * next index
 	 */
-	final static long OFFSET_NEXT = 8;
+	final static long OFFSET_NEXT = 0;
 	/**
 	 * first child index
 	 */
-	final static long OFFSET_CHILD = 16;
-	
-	final static int INDEX_ENTRY_SIZE = 24;
+	final static long OFFSET_CHILD = 6;
+	/**
+	 * the size of the next and first child index, the parent index follows
+	 * them as the variable length distance to the content.
+	 */
+	final static int LINK_SIZE = 6;
 	
 	final static int VERSION_SIZE = 4;
 	
 	protected final static int VERSION_1 = 1;
+
+	/**
+	 * the index and the length of the content are variable length, the
+	 * styles and data sets are saved in the dictionary.
+	 */
+	protected final static int VERSION_2 = 2;
+
+	/**
+	 * the max number of the styles and data sets remembered by the
+	 * dictionary, the values not remembered are saved again.
+	 */
+	final static int MAX_DICTIONARY_SIZE = 4096;
 	
 	/**
 	 * There is a content start from the offset, which parent start from
@@ -241,28 +324,192 @@ public class ReportContentWriterV3 implements IReportContentWriter
 			rootOffset = index;
 		}
 
+		long parent = docExt.getParent( );
+		long parentDistance = parent == -1 ? 0 : index - parent;
 		cntStream.seek( VERSION_SIZE + index );
-		cntStream.writeLong( docExt.getParent( ) ); 		// parent
-		cntStream.writeLong( docExt.getNext( ) ); 			// next
-		cntStream.writeLong(-1);							//first child
-		cntOffset += INDEX_ENTRY_SIZE;
+		writeLink( docExt.getNext( ) ); 			// next
+		writeLink( -1 );							//first child
+		IOUtil.writeVarLong( cntStream, parentDistance ); // parent
+		cntOffset += LINK_SIZE * 2 + getVarLongSize( parentDistance );
+		dictionary.startContent( VERSION_SIZE + index );
 		
 		// update the links refer to this content
 		if ( previous == -1 )
 		{
 			// it has no previous sibling 
 			// it may be the first element of its parent, always updates this field.
-			if ( docExt.getParent( ) != -1 )
+			if ( parent != -1 )
 			{
-				cntStream.seek( VERSION_SIZE + docExt.getParent( ) + OFFSET_CHILD );
-				cntStream.writeLong( index );
+				cntStream.seek( VERSION_SIZE + parent + OFFSET_CHILD );
+				writeLink( index );
 			}
 		}
 		else
 		{
 			// update the previous link
 			cntStream.seek( VERSION_SIZE + previous + OFFSET_NEXT );
-			cntStream.writeLong( index );
+			writeLink( index );
+		}
+	}
+
+	/**
+	 * The dictionary saves a style or a data set in the first content which
+	 * uses it. The contents written later refer to it by the distance from the
+	 * content to the saved value, so each content can still be read alone.
+	 * 
+	 * The value is written after a 0, a reference is written as the distance,
+	 * which is always positive.
+	 */
+	private class DictionaryWriter implements IContentDictionaryWriter
+	{
+
+		/**
+		 * the stream position of the content being written.
+		 */
+		private long contentPosition;
+
+		private ValueCache styles = new ValueCache( );
+		private ValueCache dataSets = new ValueCache( );
+
+		/**
+		 * the values saved by the content being written, they are added into
+		 * the caches once the position of the content data is known.
+		 */
+		private ArrayList<PendingValue> pendingValues = new ArrayList<PendingValue>( );
+
+		private ByteArrayOutputStream styleBuffer = new ByteArrayOutputStream( );
+		private DataOutputStream styleStream = new DataOutputStream( styleBuffer );
+
+		void startContent( long position )
+		{
+			contentPosition = position;
+			pendingValues.clear( );
+		}
+
+		/**
+		 * @param dataPosition
+		 *            the stream position of the data of the content.
+		 */
+		void endContent( long dataPosition )
+		{
+			for ( int i = 0; i < pendingValues.size( ); i++ )
+			{
+				PendingValue value = pendingValues.get( i );
+				value.cache.put( value.key, Long.valueOf( dataPosition
+						+ value.offset ) );
+			}
+			pendingValues.clear( );
+		}
+
+		public void writeStyle( DataOutputStream out, IStyle style )
+				throws IOException
+		{
+			styleBuffer.reset( );
+			style.write( styleStream );
+			styleStream.flush( );
+			// the same styles are always written into the same bytes
+			String key = styleBuffer.toString( "ISO-8859-1" ); //$NON-NLS-1$
+			if ( !writeReference( out, styles, key ) )
+			{
+				styleBuffer.writeTo( out );
+			}
+		}
+
+		public void writeInstanceID( DataOutputStream out, InstanceID iid )
+				throws IOException
+		{
+			IOUtil.writeVarLong( out, iid.getUniqueID( ) + 1 );
+			IOUtil.writeVarLong( out, iid.getComponentID( ) + 1 );
+			DataID dataId = iid.getDataID( );
+			if ( dataId == null )
+			{
+				IOUtil.writeVarLong( out, DATA_ID_NONE );
+				return;
+			}
+			long rowId = dataId.getRowID( );
+			IOUtil.writeVarLong( out, rowId != -1 ? DATA_ID_ROW : DATA_ID_CELL );
+			DataSetID dataSet = dataId.getDataSetID( );
+			String key = dataSet == null ? null : dataSet.toString( );
+			if ( !writeReference( out, dataSets, key ) )
+			{
+				IOUtil.writeString( out, key );
+			}
+			if ( rowId != -1 )
+			{
+				IOUtil.writeVarLong( out, rowId );
+			}
+			else
+			{
+				IOUtil.writeString( out, dataId.getCellID( ) );
+			}
+		}
+
+		/**
+		 * write the reference of the value if it has been saved, otherwise
+		 * write 0 and remember the value which is saved by the caller.
+		 * 
+		 * @return true if the reference is written.
+		 */
+		private boolean writeReference( DataOutputStream out,
+				ValueCache cache, String key ) throws IOException
+		{
+			assert out == bufferStream;
+			if ( key != null )
+			{
+				Long position = cache.get( key );
+				if ( position != null )
+				{
+					IOUtil.writeVarLong( out, contentPosition
+							- position.longValue( ) );
+					return true;
+				}
+			}
+			IOUtil.writeVarLong( out, 0 );
+			if ( key != null )
+			{
+				pendingValues.add( new PendingValue( cache, key, buffer
+						.size( ) ) );
+			}
+			return false;
+		}
+	}
+
+	final static int DATA_ID_NONE = 0;
+	final static int DATA_ID_ROW = 1;
+	final static int DATA_ID_CELL = 2;
+
+	private static class PendingValue
+	{
+
+		ValueCache cache;
+		String key;
+		int offset;
+
+		PendingValue( ValueCache cache, String key, int offset )
+		{
+			this.cache = cache;
+			this.key = key;
+			this.offset = offset;
+		}
+	}
+
+	/**
+	 * the stream positions of the saved values, the least recently used ones
+	 * are removed once the cache is full.
+	 */
+	private static class ValueCache extends LinkedHashMap<String, Long>
+	{
+
+		private static final long serialVersionUID = 1L;
+
+		ValueCache( )
+		{
+			super( 16, 0.75f, true );
+		}
+
+		protected boolean removeEldestEntry( Map.Entry<String, Long> eldest )
+		{
+			return size( ) > MAX_DICTIONARY_SIZE;
 		}
 	}
 }
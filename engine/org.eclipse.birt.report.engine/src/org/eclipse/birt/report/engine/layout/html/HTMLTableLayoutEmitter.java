@@ -633,7 +633,19 @@ public class HTMLTableLayoutEmitter extends ContentEmitterAdapter
 				{
 					if ( layout.exceedMaxCache( ) )
 					{
-						context.softRowBreak = true;
+						if ( allowPageBreak( ) || !layout.isCachedRowsBounded( ) )
+						{
+							context.softRowBreak = true;
+						}
+						else
+						{
+							// no page break can release the cached rows,
+							// output them and continue the cells in the next
+							// rows.
+							layout.breakCachedRows( );
+							hasDropCell = layout.hasDropCell( );
+							flush( );
+						}
 					}
 					return;
 				}
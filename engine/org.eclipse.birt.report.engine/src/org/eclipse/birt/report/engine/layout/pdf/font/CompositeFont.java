@@ -59,6 +59,11 @@ public class CompositeFont
 	 */
 	BaseFont[] baseFonts;
 
+	/**
+	 * the glyph tables of the base fonts, in the same order with usedFonts
+	 */
+	FontMetricsCache.GlyphTable[] glyphTables;
+
 	/**
 	 * index of all the chars in the composite font. It is only used when
 	 * fullIndexed.
@@ -108,9 +113,15 @@ public class CompositeFont
 		else
 		{
 			baseFonts = new BaseFont[usedFonts.length];
+			glyphTables = new FontMetricsCache.GlyphTable[usedFonts.length];
 			for ( int i = 0; i < baseFonts.length; i++ )
 			{
 				baseFonts[i] = manager.createFont( usedFonts[i], Font.NORMAL );
+				if ( baseFonts[i] != null )
+				{
+					glyphTables[i] = FontMetricsCache.getInstance( )
+							.getGlyphTable( baseFonts[i] );
+				}
 			}
 		}
 	}
@@ -177,7 +188,7 @@ public class CompositeFont
 				{
 					if ( baseFonts[i] != null )
 					{
-						if ( baseFonts[i].charExists( ch ) )
+						if ( glyphTables[i].charExists( ch ) )
 						{
 							return usedFonts[i];
 						}
@@ -56,6 +56,9 @@ public class FontHandler
 	private FontMappingManager fontManager = null;
 
 	private Map fonts = new HashMap( );
+
+	/** the glyph tables of the fonts used by the handler */
+	private Map<BaseFont, FontMetricsCache.GlyphTable> glyphTables = new HashMap<BaseFont, FontMetricsCache.GlyphTable>( );
 	
 	/**
 	 * the characters which prefer to use the font of their previous character.
@@ -181,7 +184,18 @@ public class FontHandler
 			bf = candidateFont;
 			simulation = needSimulate( bf );
 		}
-		return candidateFont.charExists( character );
+		return charExists( candidateFont, character );
+	}
+
+	private boolean charExists( BaseFont font, char c )
+	{
+		FontMetricsCache.GlyphTable table = glyphTables.get( font );
+		if ( table == null )
+		{
+			table = FontMetricsCache.getInstance( ).getGlyphTable( font );
+			glyphTables.put( font, table );
+		}
+		return table.charExists( c );
 	}
 	
 	/**
@@ -201,7 +215,7 @@ public class FontHandler
 	{	
 		if ( WEAK_FONT_CHARS.indexOf( c ) != -1 )
 		{
-			if ( bf != null && bf.charExists( c ) )
+			if ( bf != null && charExists( bf, c ) )
 			{
 				return bf;
 			}
@@ -233,7 +247,7 @@ public class FontHandler
 			else
 			{
 				BaseFont bf = createBaseFont( fontFamily );
-				if ( bf != null && bf.charExists( c ) )
+				if ( bf != null && charExists( bf, c ) )
 				{
 					return bf;
 				}
@@ -21,6 +21,8 @@ public class FontInfo
 {
 	private BaseFont bf;
 
+	private FontMetricsCache.GlyphTable glyphs;
+
 	private float fontSize;
 
 	private int fontStyle;
@@ -50,6 +52,7 @@ public class FontInfo
 	public FontInfo( FontInfo fontInfo )
 	{
 		this.bf = fontInfo.bf;
+		this.glyphs = fontInfo.glyphs;
 		this.fontStyle = fontInfo.fontStyle;
 		this.simulation = fontInfo.simulation;
 		this.fontSize = fontInfo.fontSize;
@@ -199,7 +202,12 @@ public class FontInfo
 			return word.length( ) * ( fontSize / 2 );
 		}
 
-		return bf.getWidthPoint( word, fontSize );
+		if ( glyphs == null )
+		{
+			glyphs = FontMetricsCache.getInstance( ).getGlyphTable( bf );
+		}
+		// the same as bf.getWidthPoint( word, fontSize )
+		return glyphs.getWidth( word ) * 0.001f * fontSize;
 	}
 	
 	public int getItalicAdjust( )
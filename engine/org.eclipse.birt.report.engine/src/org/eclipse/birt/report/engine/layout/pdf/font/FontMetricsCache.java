@@ -0,0 +1,317 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.layout.pdf.font;
+
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.lowagie.text.pdf.BaseFont;
+
+/**
+ * The metrics of the fonts shared by all the layout tasks of the process.
+ *
+ * The widths of the characters of a font are kept in a glyph table, so a word
+ * is measured by adding up the widths of its characters without calling the
+ * font. A word which contains surrogate pairs is measured by the font, and
+ * its width is kept in a bounded cache of words.
+ *
+ * The widths are in the text space units of the font, which is 1/1000 of the
+ * font size, so they are shared by all the sizes of a font. The cache is
+ * thread safe.
+ */
+public class FontMetricsCache
+{
+
+	/** the max number of the words kept in the word cache */
+	public static final int MAX_CACHED_WORDS = 16384;
+
+	private static final FontMetricsCache instance = new FontMetricsCache( );
+
+	public static FontMetricsCache getInstance( )
+	{
+		return instance;
+	}
+
+	private final Map<BaseFont, GlyphTable> glyphTables = new WeakHashMap<BaseFont, GlyphTable>( );
+
+	private final WordCache words = new WordCache( MAX_CACHED_WORDS );
+
+	private final AtomicLong glyphMisses = new AtomicLong( );
+	private final AtomicLong wordHits = new AtomicLong( );
+	private final AtomicLong wordMisses = new AtomicLong( );
+
+	protected FontMetricsCache( )
+	{
+	}
+
+	/**
+	 * Returns the glyph table of the font. The table should be kept by the
+	 * caller while it uses the font, so the table isn't looked up again.
+	 *
+	 * @param bf
+	 *            the font
+	 * @return the glyph table
+	 */
+	public GlyphTable getGlyphTable( BaseFont bf )
+	{
+		synchronized ( glyphTables )
+		{
+			GlyphTable table = glyphTables.get( bf );
+			if ( table == null )
+			{
+				table = new GlyphTable( bf );
+				glyphTables.put( bf, table );
+			}
+			return table;
+		}
+	}
+
+	/**
+	 * Gets the width of the word in the font. It is the same as the width
+	 * returned by BaseFont.getWidthPoint( word, fontSize ).
+	 *
+	 * @param bf
+	 *            the font
+	 * @param word
+	 *            the word
+	 * @param fontSize
+	 *            the font size
+	 * @return the points of the width
+	 */
+	public float getWidthPoint( BaseFont bf, String word, float fontSize )
+	{
+		return getGlyphTable( bf ).getWidth( word ) * 0.001f * fontSize;
+	}
+
+	/**
+	 * @return the number of the characters whose metrics are read from the
+	 *         fonts
+	 */
+	public long getGlyphMissCount( )
+	{
+		return glyphMisses.get( );
+	}
+
+	/**
+	 * @return the number of the words found in the word cache
+	 */
+	public long getWordHitCount( )
+	{
+		return wordHits.get( );
+	}
+
+	/**
+	 * @return the number of the words measured by the fonts
+	 */
+	public long getWordMissCount( )
+	{
+		return wordMisses.get( );
+	}
+
+	/**
+	 * Removes all the cached metrics and resets the counters.
+	 */
+	public void clear( )
+	{
+		synchronized ( glyphTables )
+		{
+			glyphTables.clear( );
+		}
+		synchronized ( words )
+		{
+			words.clear( );
+		}
+		glyphMisses.set( 0 );
+		wordHits.set( 0 );
+		wordMisses.set( 0 );
+	}
+
+	/**
+	 * The metrics of the characters of a font. The metrics of the 65536
+	 * characters are kept in pages of 256, a page is created when one of its
+	 * characters is first used.
+	 *
+	 * A metrics is 0 if the character hasn't been read, otherwise it is the
+	 * width shifted left by 2 bits, the KNOWN bit and the EXISTS bit. As the
+	 * metrics of a character never change, the table is shared by the threads
+	 * without locks: a thread which doesn't see the metrics written by another
+	 * one reads it from the font again.
+	 *
+	 * The table refers to the font weakly, so the font can be collected once
+	 * it isn't used.
+	 */
+	public class GlyphTable
+	{
+
+		private static final int KNOWN = 1;
+		private static final int EXISTS = 2;
+
+		private final WeakReference<BaseFont> fontRef;
+		private final int[][] pages = new int[256][];
+
+		GlyphTable( BaseFont bf )
+		{
+			this.fontRef = new WeakReference<BaseFont>( bf );
+		}
+
+		private BaseFont getFont( )
+		{
+			BaseFont bf = fontRef.get( );
+			if ( bf == null )
+			{
+				// the table is used after the font is collected
+				throw new IllegalStateException( "the font has been released" ); //$NON-NLS-1$
+			}
+			return bf;
+		}
+
+		private int getMetrics( char c )
+		{
+			int[] page = pages[c >> 8];
+			if ( page == null )
+			{
+				page = new int[256];
+				pages[c >> 8] = page;
+			}
+			int metrics = page[c & 0xFF];
+			if ( metrics == 0 )
+			{
+				BaseFont bf = getFont( );
+				metrics = ( bf.getWidth( c ) << 2 ) | KNOWN
+						| ( bf.charExists( c ) ? EXISTS : 0 );
+				page[c & 0xFF] = metrics;
+				glyphMisses.incrementAndGet( );
+			}
+			return metrics;
+		}
+
+		/**
+		 * @param c
+		 *            the character
+		 * @return the width of the character in the text space units
+		 */
+		public int getWidth( char c )
+		{
+			return getMetrics( c ) >> 2;
+		}
+
+		/**
+		 * @param c
+		 *            the character
+		 * @return if the font has the glyph of the character
+		 */
+		public boolean charExists( char c )
+		{
+			return ( getMetrics( c ) & EXISTS ) != 0;
+		}
+
+		/**
+		 * Gets the width of the word, it is the same as the width returned by
+		 * BaseFont.getWidth( word ).
+		 *
+		 * @param word
+		 *            the word
+		 * @return the width in the text space units
+		 */
+		public int getWidth( String word )
+		{
+			int width = 0;
+			int length = word.length( );
+			for ( int i = 0; i < length; i++ )
+			{
+				char c = word.charAt( i );
+				if ( c >= '\uD800' && c <= '\uDFFF' )
+				{
+					return getWordWidth( word );
+				}
+				width += getMetrics( c ) >> 2;
+			}
+			return width;
+		}
+
+		private int getWordWidth( String word )
+		{
+			BaseFont bf = getFont( );
+			WordKey key = new WordKey( bf, word );
+			Integer width;
+			synchronized ( words )
+			{
+				width = words.get( key );
+			}
+			if ( width != null )
+			{
+				wordHits.incrementAndGet( );
+				return width.intValue( );
+			}
+			wordMisses.incrementAndGet( );
+			width = Integer.valueOf( bf.getWidth( word ) );
+			synchronized ( words )
+			{
+				words.put( key, width );
+			}
+			return width.intValue( );
+		}
+	}
+
+	private static class WordKey
+	{
+
+		private final BaseFont bf;
+		private final String word;
+
+		WordKey( BaseFont bf, String word )
+		{
+			this.bf = bf;
+			this.word = word;
+		}
+
+		public int hashCode( )
+		{
+			return System.identityHashCode( bf ) * 31 + word.hashCode( );
+		}
+
+		public boolean equals( Object obj )
+		{
+			if ( !( obj instanceof WordKey ) )
+			{
+				return false;
+			}
+			WordKey key = (WordKey) obj;
+			return bf == key.bf && word.equals( key.word );
+		}
+	}
+
+	/**
+	 * The least recently used words are removed when the cache is full.
+	 */
+	private static class WordCache extends LinkedHashMap<WordKey, Integer>
+	{
+
+		private static final long serialVersionUID = 1L;
+
+		private final int maxSize;
+
+		WordCache( int maxSize )
+		{
+			super( 16, 0.75f, true );
+			this.maxSize = maxSize;
+		}
+
+		protected boolean removeEldestEntry( Map.Entry<WordKey, Integer> eldest )
+		{
+			return size( ) > maxSize;
+		}
+	}
+}
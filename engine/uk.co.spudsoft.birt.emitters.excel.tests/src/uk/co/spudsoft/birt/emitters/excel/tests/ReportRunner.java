@@ -66,6 +66,7 @@ public class ReportRunner {
 	protected boolean nestTableInLastCell;
 	protected boolean autoFilter;
 	protected boolean blankLineAfterTopLevelTable;
+	protected boolean streamingXlsx;
 	
 	protected Boolean displayFormulas = null;
 	protected Boolean displayGridlines = null;
@@ -76,6 +77,7 @@ public class ReportRunner {
 	protected Boolean groupSummaryHeader = null;
 	
 	protected Integer spannedRowHeight = null;
+	protected Integer streamingXlsxWindow = null;
 	
 	protected String templateFile = null;
 	
@@ -556,6 +558,12 @@ public class ReportRunner {
 		if( templateFile != null ) {
 			renderOptions.setOption( ExcelEmitter.TEMPLATE_FILE, templateFile );
 		}
+		if( streamingXlsx ) {
+			renderOptions.setOption( ExcelEmitter.STREAMING_XLSX, true );
+		}
+		if( streamingXlsxWindow != null ) {
+			renderOptions.setOption( ExcelEmitter.STREAMING_XLSX_WINDOW, streamingXlsxWindow );
+		}
 		
 		return renderOptions;
 	}
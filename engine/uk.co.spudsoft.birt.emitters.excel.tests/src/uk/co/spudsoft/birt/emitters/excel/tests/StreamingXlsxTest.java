@@ -0,0 +1,168 @@
+/*************************************************************************************
+ * Copyright (c) 2011, 2012, 2013 James Talbut.
+ *  jim-emitters@spudsoft.co.uk
+ *  
+ * All rights reserved. This program and the accompanying materials 
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     James Talbut - Initial implementation.
+ ************************************************************************************/
+
+package uk.co.spudsoft.birt.emitters.excel.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.eclipse.birt.core.exception.BirtException;
+import org.junit.Test;
+
+public class StreamingXlsxTest extends ReportRunner {
+
+	@Test
+	public void testSimpleTable() throws BirtException, IOException {
+
+		streamingXlsx = true;
+		streamingXlsxWindow = 1;
+		InputStream inputStream = runAndRenderReport("SimpleTable.rptdesign", "xlsx");
+		assertNotNull(inputStream);
+		try {
+			
+			XSSFWorkbook workbook = new XSSFWorkbook(inputStream);
+			assertNotNull(workbook);
+			
+			assertEquals( 1, workbook.getNumberOfSheets() );
+			assertEquals( "Simple Table Report", workbook.getSheetAt(0).getSheetName());
+			
+			Sheet sheet = workbook.getSheetAt(0);
+			assertEquals(2, firstNullRow(sheet));
+			
+			assertEquals( "1", sheet.getRow(0).getCell(0).getStringCellValue() );
+			assertEquals( "2", sheet.getRow(1).getCell(0).getStringCellValue() );
+			assertEquals( 3.0, sheet.getRow(0).getCell(1).getNumericCellValue(), 0.001 );
+			assertEquals( Cell.CELL_TYPE_BLANK, sheet.getRow(1).getCell(1).getCellType() );
+			
+			assertEquals( "Title\nSubtitle", 	sheet.getHeader().getLeft() );
+			assertEquals( "The Writer", 		sheet.getFooter().getLeft() );
+			assertEquals( "1", 					sheet.getFooter().getCenter() );
+		} finally {
+			inputStream.close();
+		}
+	}
+
+	@Test
+	public void testStylesMatchInMemoryWorkbook() throws BirtException, IOException {
+
+		int numCellStyles;
+		int numFonts;
+		InputStream inputStream = runAndRenderReport("NumberFormats.rptdesign", "xlsx");
+		assertNotNull(inputStream);
+		try {
+			XSSFWorkbook workbook = new XSSFWorkbook(inputStream);
+			numCellStyles = workbook.getNumCellStyles();
+			numFonts = workbook.getNumberOfFonts();
+			assertEquals(22, firstNullRow(workbook.getSheetAt(0)));
+		} finally {
+			inputStream.close();
+		}
+		
+		streamingXlsx = true;
+		streamingXlsxWindow = 2;
+		inputStream = runAndRenderReport("NumberFormats.rptdesign", "xlsx");
+		assertNotNull(inputStream);
+		try {
+			XSSFWorkbook workbook = new XSSFWorkbook(inputStream);
+			assertEquals( numCellStyles, workbook.getNumCellStyles() );
+			assertEquals( numFonts, workbook.getNumberOfFonts() );
+			assertEquals(22, firstNullRow(workbook.getSheetAt(0)));
+		} finally {
+			inputStream.close();
+		}
+	}
+	
+	@Test
+	public void testNestedTablesLargerThanWindow() throws BirtException, IOException {
+		// Nested tables extend the rows of their parent row after the nested rows have been written 
+		assertMatchesInMemoryWorkbook("NestedTables2.rptdesign", 1);
+	}
+	
+	@Test
+	public void testBorderedListLargerThanWindow() throws BirtException, IOException {
+		// The borders of a list are applied to all its rows when the list ends 
+		assertMatchesInMemoryWorkbook("Lists.rptdesign", 1);
+	}
+	
+	private void assertMatchesInMemoryWorkbook(String design, int window) throws BirtException, IOException {
+		streamingXlsx = false;
+		streamingXlsxWindow = null;
+		XSSFWorkbook expected;
+		InputStream inputStream = runAndRenderReport(design, "xlsx");
+		assertNotNull(inputStream);
+		try {
+			expected = new XSSFWorkbook(inputStream);
+		} finally {
+			inputStream.close();
+		}
+		
+		streamingXlsx = true;
+		streamingXlsxWindow = window;
+		XSSFWorkbook actual;
+		inputStream = runAndRenderReport(design, "xlsx");
+		assertNotNull(inputStream);
+		try {
+			actual = new XSSFWorkbook(inputStream);
+		} finally {
+			inputStream.close();
+		}
+		
+		assertEquals( expected.getNumberOfSheets(), actual.getNumberOfSheets() );
+		for( int i = 0; i < expected.getNumberOfSheets(); ++i ) {
+			Sheet expectedSheet = expected.getSheetAt(i);
+			Sheet actualSheet = actual.getSheetAt(i);
+			assertEquals( lastRow(expectedSheet), lastRow(actualSheet) );
+			for( Row expectedRow : expectedSheet ) {
+				Row actualRow = actualSheet.getRow(expectedRow.getRowNum());
+				assertNotNull( "Row " + expectedRow.getRowNum() + " of sheet " + i, actualRow );
+				assertEquals( expectedRow.getLastCellNum(), actualRow.getLastCellNum() );
+				for( Cell expectedCell : expectedRow ) {
+					String where = "[" + expectedRow.getRowNum() + "," + expectedCell.getColumnIndex() + "] of sheet " + i;
+					Cell actualCell = actualRow.getCell(expectedCell.getColumnIndex());
+					assertNotNull( where, actualCell );
+					assertEquals( where, expectedCell.toString(), actualCell.toString() );
+					CellStyle expectedStyle = expectedCell.getCellStyle();
+					CellStyle actualStyle = actualCell.getCellStyle();
+					assertEquals( where, expectedStyle.getBorderTop(), actualStyle.getBorderTop() );
+					assertEquals( where, expectedStyle.getBorderLeft(), actualStyle.getBorderLeft() );
+					assertEquals( where, expectedStyle.getBorderRight(), actualStyle.getBorderRight() );
+					assertEquals( where, expectedStyle.getBorderBottom(), actualStyle.getBorderBottom() );
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testMegaXlsx() throws BirtException, IOException {
+
+		streamingXlsx = true;
+		InputStream inputStream = runAndRenderReport("MegaSize.rptdesign", "xlsx");
+		assertNotNull(inputStream);
+		try {
+			XSSFWorkbook workbook = new XSSFWorkbook(inputStream);
+			assertTrue( lastRow(workbook.getSheetAt(0)) > 65535 );
+		} finally {
+			inputStream.close();
+		}
+	}
+	
+}
@@ -84,6 +84,10 @@ public abstract class ExcelEmitter implements IContentEmitter {
 	public static final String DISPLAYZEROS_PROP = "ExcelEmitter.DisplayZeros";
 
 	public static final String TEMPLATE_FILE = "ExcelEmitter.TemplateFile";
+
+	public static final String STREAMING_XLSX = "ExcelEmitter.StreamingXlsx";
+	public static final String STREAMING_XLSX_WINDOW = "ExcelEmitter.StreamingXlsxWindow";
+	public static final int STREAMING_XLSX_DEFAULT_WINDOW = 100;
 	
 	/**
 	 * Logger.
@@ -163,6 +167,34 @@ public abstract class ExcelEmitter implements IContentEmitter {
 	 */
 	protected abstract Workbook openWorkbook( File templateFile ) throws IOException;
 	
+	/**
+	 * <p>
+	 * Wraps a workbook so that rows are written out as they fall outside a window of recent rows, rather than being held in memory until the end of the report.
+	 * </p><p>
+	 * Once a row has been written out it can no longer be accessed, so the workbook must not write rows out by itself:
+	 * HandlerState.flushRows writes out the rows outside the window that no open table row, nested table or list will revisit.
+	 * The base implementation does not support streaming and returns the workbook unchanged.
+	 * </p>
+	 * @param wb
+	 * The workbook returned by createWorkbook or openWorkbook.
+	 * @param rowWindow
+	 * The number of rows to keep in memory for each sheet.
+	 * @return
+	 * The workbook to be processed by the emitter.
+	 */
+	protected Workbook createStreamingWorkbook( Workbook wb, int rowWindow ) {
+		log.warn( 0, "Streaming output is not supported for " + getOutputFormat() + ", the workbook will be held in memory", null );
+		return wb;
+	}
+	
+	/**
+	 * Releases any resources (such as temporary files) held by the workbook once it has been written.
+	 * @param wb
+	 * The workbook that has been processed by the emitter.
+	 */
+	protected void disposeWorkbook( Workbook wb ) {
+	}
+	
 	
 	public void initialize( IEmitterServices service ) throws BirtException {
 		renderOptions = service.getRenderOption();
@@ -210,6 +242,13 @@ public abstract class ExcelEmitter implements IContentEmitter {
 		    wb = createWorkbook();
 		}
 		
+		int rowWindow = 0;
+		if( EmitterServices.booleanOption( renderOptions, report, STREAMING_XLSX, false ) ) {
+			rowWindow = EmitterServices.integerOption( renderOptions, (IContent)null, STREAMING_XLSX_WINDOW, STREAMING_XLSX_DEFAULT_WINDOW );
+			log.debug( "Streaming workbook with a window of ", rowWindow, " rows" );
+			wb = createStreamingWorkbook( wb, rowWindow );
+		}
+		
 	    CSSEngine cssEngine = report.getRoot().getCSSEngine();
 		StyleManagerUtils smu = utilsFactory.create(log);
 	    
@@ -217,6 +256,7 @@ public abstract class ExcelEmitter implements IContentEmitter {
 	    
 		handlerState = new HandlerState(this, log, smu, wb, sm, renderOptions);
 		handlerState.setHandler( new PageHandler(log, null) );
+		handlerState.setStreamingWindow( rowWindow );
 
 		if( EmitterServices.booleanOption( handlerState.getRenderOptions(), report, ExcelEmitter.SINGLE_SHEET_PAGE_BREAKS, false ) ) {
 			handlerState.getRenderOptions().setOption(ExcelEmitter.SINGLE_SHEET, Boolean.TRUE);
@@ -275,6 +315,7 @@ public abstract class ExcelEmitter implements IContentEmitter {
 					log.debug("ex:", ex.toString());
 				}
 			}
+			disposeWorkbook( handlerState.getWb() );
 			handlerState = null;
 			reportOutputFilename = null;			
 			reportOutputStream = null;
@@ -15,7 +15,9 @@
 package uk.co.spudsoft.birt.emitters.excel;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.poi.ss.usermodel.Font;
 import org.apache.poi.ss.usermodel.FontUnderline;
@@ -52,7 +54,14 @@ public class FontManager {
 	
 	private Workbook workbook;
 	private StyleManagerUtils smu;
-	private List<FontPair> fonts = new ArrayList<FontPair>();
+	/**
+	 * The fonts created so far, bucketed by fontHash.
+	 */
+	private Map<Integer,List<FontPair>> fonts = new HashMap<Integer,List<FontPair>>();
+	/**
+	 * The fonts created so far, keyed by the index of the POI Font.
+	 */
+	private Map<Short,FontPair> fontsByIndex = new HashMap<Short,FontPair>();
 	private Font defaultFont = null;
 	private CSSEngine cssEngine;
 
@@ -138,14 +147,33 @@ public class FontManager {
 		return true;
 	}
 	
+	/**
+	 * Calculate a hash of the attributes compared by fontsEquivalent.
+	 * <br/>
+	 * Styles with equivalent fonts always have the same hash.
+	 * @param style
+	 * The BIRT style to hash.
+	 * @return
+	 * The hash of the font attributes of the style.
+	 */
+	public static int fontHash(BirtStyle style) {
+		int hash = 0;
+		for( int i = 0; i < COMPARE_CSS_PROPERTIES.length; ++i ) {
+			hash = hash * 31 + StyleManagerUtils.cssValueHash( style.getProperty( COMPARE_CSS_PROPERTIES[ i ] ) );
+		}
+		return hash;
+	}
+	
 	/**
 	 * Create a new POI Font based upon a BIRT style.
 	 * @param birtStyle
 	 * The BIRT style to base the Font upon.
+	 * @param bucket
+	 * The list of fonts with the same fontHash, to which the new font is added.
 	 * @return
 	 * The Font whose attributes are described by the BIRT style. 
 	 */
-	private Font createFont(BirtStyle birtStyle) {
+	private Font createFont(BirtStyle birtStyle, List<FontPair> bucket) {
 		Font font = workbook.createFont();
 		
 		// Family
@@ -177,7 +205,9 @@ public class FontManager {
 		// Colour
 		smu.addColourToFont( workbook, font, cleanupQuotes( birtStyle.getProperty( StyleConstants.STYLE_COLOR ) ) );
 						
-		fonts.add(new FontPair(birtStyle, font));
+		FontPair fontPair = new FontPair(birtStyle.clone(), font);
+		bucket.add(fontPair);
+		fontsByIndex.put(font.getIndex(), fontPair);
 		return font;
 	}
 	
@@ -221,20 +251,25 @@ public class FontManager {
 			return getDefaultFont();
 		}
 		
-		for(FontPair fontPair : fonts) {
+		Integer hash = fontHash(birtStyle);
+		List<FontPair> bucket = fonts.get(hash);
+		if( bucket == null ) {
+			bucket = new ArrayList<FontPair>(1);
+			fonts.put(hash, bucket);
+		}
+		for(FontPair fontPair : bucket) {
 			if(fontsEquivalent(birtStyle, fontPair.birtStyle)) {
 				return fontPair.poiFont;
 			}
 		}
 		
-		return createFont(birtStyle);
+		return createFont(birtStyle, bucket);
 	}
 	
 	private BirtStyle birtStyleFromFont( Font source ) {
-		for(FontPair fontPair : fonts) {
-			if( source.equals(fontPair.poiFont) ) {
-				return fontPair.birtStyle.clone();
-			}
+		FontPair fontPair = fontsByIndex.get(source.getIndex());
+		if( fontPair != null ) {
+			return fontPair.birtStyle.clone();
 		}
 		
 		return new BirtStyle(cssEngine);
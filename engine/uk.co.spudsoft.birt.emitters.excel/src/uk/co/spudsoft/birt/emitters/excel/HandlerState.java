@@ -13,13 +13,17 @@
 
 package uk.co.spudsoft.birt.emitters.excel;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.report.engine.api.IRenderOption;
 import org.eclipse.birt.report.engine.api.ReportEngine;
 import org.eclipse.birt.report.engine.emitter.IContentEmitter;
@@ -120,6 +124,20 @@ public class HandlerState {
      * Any other sheets that exist in the workbook may be overwritten
      */
     public Map<String,Integer> sheetNames = new HashMap<String,Integer>();
+    
+    /**
+     * The number of rows to keep in memory when the workbook is streamed, 0 if the workbook is not streamed.
+     */
+    private int streamingWindow;
+    /**
+     * The first rows of the areas that will be revisited (open table rows, nested tables and lists with borders).
+     * These rows and all the rows after them must not be written out yet.
+     */
+    private List<Integer> pinnedRows = new ArrayList<Integer>();
+    /**
+     * The number of rows held in memory at which flushRows next looks for rows to write out.
+     */
+    private int nextFlushCheck;
 	
 	/**
 	 * Constructor
@@ -268,7 +286,7 @@ public class HandlerState {
         	
         	float heightUnaccountedFor = a.height;
         	for( int componentRow = a.x.getRow(); componentRow < row; ++componentRow ) {
-        		heightUnaccountedFor -= currentSheet.getRow( componentRow ).getHeightInPoints();
+        		heightUnaccountedFor -= getRowHeightInPoints( componentRow );
         	}
         	float heightPerRowRemainig = heightUnaccountedFor / ( 1 + a.y.getRow() - row );
         	if( heightPerRowRemainig > result ) {
@@ -279,6 +297,87 @@ public class HandlerState {
     	return result;
     }
     
+    /**
+     * Get the height of a row on the current sheet.
+     * When the workbook is streamed, earlier rows may already have been written out, in which case the default row height is used.
+     * @param row
+     * The index of the row.
+     * @return
+     * The height of the row in points.
+     */
+    public float getRowHeightInPoints( int row ) {
+    	Row sheetRow = currentSheet.getRow( row );
+    	if( sheetRow == null ) {
+    		return currentSheet.getDefaultRowHeightInPoints();
+    	}
+    	return sheetRow.getHeightInPoints();
+    }
+    
+    /**
+     * Set the number of rows to keep in memory when the workbook is streamed.
+     * @param streamingWindow
+     * The number of rows, 0 if the workbook is not streamed.
+     */
+    public void setStreamingWindow( int streamingWindow ) {
+    	this.streamingWindow = streamingWindow;
+    	this.nextFlushCheck = 2 * streamingWindow;
+    }
+    
+    /**
+     * Keep a row, and all the rows after it, in memory until unpinRows is called.
+     * @param row
+     * The first row of an area that will be revisited.
+     */
+    public void pinRows( int row ) {
+    	pinnedRows.add( row );
+    }
+    
+    /**
+     * Release rows pinned by pinRows.
+     * @param row
+     * The row passed to pinRows.
+     */
+    public void unpinRows( int row ) {
+    	pinnedRows.remove( Integer.valueOf( row ) );
+    }
+    
+    /**
+     * Write out the rows of a streamed sheet that are outside the window of recent rows and are not pinned.
+     * <br/>
+     * The workbook is streamed without a window of its own, so rows are only written out once nothing will revisit them.
+     * @throws BirtException
+     */
+    public void flushRows() throws BirtException {
+    	if( ( streamingWindow <= 0 ) || ! ( currentSheet instanceof SXSSFSheet ) ) {
+    		return;
+    	}
+    	if( currentSheet.getPhysicalNumberOfRows() <= nextFlushCheck ) {
+    		return;
+    	}
+    	int firstKeptRow = rowNum - streamingWindow;
+    	for( int row : pinnedRows ) {
+    		if( row < firstKeptRow ) {
+    			firstKeptRow = row;
+    		}
+    	}
+    	int keptRows = 0;
+    	for( int row = Math.max( firstKeptRow, 0 ); row <= currentSheet.getLastRowNum(); ++row ) {
+    		if( currentSheet.getRow( row ) != null ) {
+    			++keptRows;
+    		}
+    	}
+    	try {
+    		((SXSSFSheet)currentSheet).flushRows( keptRows );
+    	} catch( IOException ex ) {
+			throw new BirtException( EmitterServices.getPluginName()
+					, "Unable to write rows to the temporary file"
+					, ex
+					);
+    	}
+    	// Look again once another window of rows has been added
+    	nextFlushCheck = Math.max( 2 * streamingWindow, keptRows + streamingWindow );
+    }
+    
     public void clearRowSpans() {
     	rowSpans.clear();
     }
@@ -14,8 +14,10 @@
 package uk.co.spudsoft.birt.emitters.excel;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.Font;
@@ -55,7 +57,14 @@ public class StyleManager {
 	
 	private Workbook workbook;
 	private FontManager fm;
-	private List<StylePair> styles = new ArrayList<StylePair>();
+	/**
+	 * The styles created so far, bucketed by styleHash so that the number of full comparisons stays small even when a report produces thousands of styles.
+	 */
+	private Map<Integer,List<StylePair>> styles = new HashMap<Integer,List<StylePair>>();
+	/**
+	 * The styles created so far, keyed by the index of the POI CellStyle.
+	 */
+	private Map<Short,StylePair> stylesByIndex = new HashMap<Short,StylePair>();
 	private StyleManagerUtils smu;
 	private CSSEngine cssEngine;
 	private Logger log;
@@ -156,14 +165,35 @@ public class StyleManager {
 		return true;
 	}
 	
+	/**
+	 * Calculate a hash of the attributes compared by stylesEquivalent.
+	 * <br/>
+	 * Styles that are equivalent always have the same hash, so only the styles in one bucket need to be compared.
+	 * @param style
+	 * The BIRT style to hash.
+	 * @return
+	 * The hash of the attributes understood by POI.
+	 */
+	private static int styleHash( BirtStyle style ) {
+		int hash = FontManager.fontHash( style );
+		for( int i = 0; i < COMPARE_CSS_PROPERTIES.length; ++i ) {
+			hash = hash * 31 + StyleManagerUtils.cssValueHash( style.getProperty( COMPARE_CSS_PROPERTIES[ i ] ) );
+		}
+		hash = hash * 31 + StyleManagerUtils.cssValueHash( style.getProperty( BirtStyle.TEXT_ROTATION ) );
+		hash = hash * 31 + StyleManagerUtils.dataFormatHash( (DataFormatValue)style.getProperty( StyleConstants.STYLE_DATA_FORMAT ) );
+		return hash;
+	}
+	
 	/**
 	 * Create a new POI CellStyle based upon a BIRT style.
 	 * @param birtStyle
 	 * The BIRT style to base the CellStyle upon.
+	 * @param bucket
+	 * The list of styles with the same styleHash, to which the new style is added.
 	 * @return
 	 * The CellStyle whose attributes are described by the BIRT style. 
 	 */
-	private CellStyle createStyle( BirtStyle birtStyle ) {
+	private CellStyle createStyle( BirtStyle birtStyle, List<StylePair> bucket ) {
 		CellStyle poiStyle = workbook.createCellStyle();
 		// Font
 		Font font = fm.getFont(birtStyle);
@@ -202,26 +232,33 @@ public class StyleManager {
 			poiStyle.setRotation( (short) ((FloatValue)rotation).getFloatValue() );
 		}
 
-		styles.add(new StylePair( birtStyle.clone(), poiStyle ) );
+		StylePair stylePair = new StylePair( birtStyle.clone(), poiStyle );
+		bucket.add( stylePair );
+		stylesByIndex.put( poiStyle.getIndex(), stylePair );
 		return poiStyle;
 	}
 
 	public CellStyle getStyle( BirtStyle birtStyle ) {
-		for(StylePair stylePair : styles) {
+		Integer hash = styleHash( birtStyle );
+		List<StylePair> bucket = styles.get( hash );
+		if( bucket == null ) {
+			bucket = new ArrayList<StylePair>( 1 );
+			styles.put( hash, bucket );
+		}
+		for(StylePair stylePair : bucket) {
 			if(stylesEquivalent(birtStyle, stylePair.birtStyle)) {
 				// System.err.println( "Equivalent :\n\t" + birtStyle + "\n\t" + stylePair.birtStyle );
 				return stylePair.poiStyle;
 			}
 		}
 		
-		return createStyle(birtStyle);		
+		return createStyle(birtStyle, bucket);		
 	}
 	
 	private BirtStyle birtStyleFromCellStyle( CellStyle source ) {
-		for(StylePair stylePair : styles) {
-			if( source.equals(stylePair.poiStyle) ) {
-				return stylePair.birtStyle.clone();
-			}
+		StylePair stylePair = stylesByIndex.get( source.getIndex() );
+		if( stylePair != null ) {
+			return stylePair.birtStyle.clone();
 		}
 		
 		return new BirtStyle(cssEngine);
@@ -116,7 +116,44 @@ public abstract class StyleManagerUtils {
         return true;
 	}
 	
+	/**
+	 * Calculate a hash of a CSS value for bucketing styles.
+	 * <br/>
+	 * The BIRT CSS values do not implement hashCode, so the CSS text is used; values that are equal always have the same CSS text.
+	 * @param value
+	 * The value to hash, may be null.
+	 * @return
+	 * The hash of the CSS text of value, or 0 if value is null.
+	 */
+	public static int cssValueHash(CSSValue value) {
+		if( value == null ) {
+			return 0;
+		}
+		String cssText = value.getCssText();
+		return ( cssText == null ) ? 1 : cssText.hashCode();
+	}
 	
+	/**
+	 * Calculate a hash of a data format that is consistent with dataFormatsEquivalent.
+	 * @param dataFormat
+	 * The data format to hash, may be null.
+	 * @return
+	 * The hash of the patterns compared by dataFormatsEquivalent.
+	 */
+	public static int dataFormatHash( DataFormatValue dataFormat ) {
+		if( dataFormat == null ) {
+			return 0;
+		}
+		int hash = objectHash( dataFormat.getNumberPattern() );
+		hash = hash * 31 + objectHash( dataFormat.getDatePattern() );
+		hash = hash * 31 + objectHash( dataFormat.getDateTimePattern() );
+		hash = hash * 31 + objectHash( dataFormat.getTimePattern() );
+		return hash;
+	}
+	
+	private static int objectHash(Object value) {
+		return ( value == null ) ? 0 : value.hashCode();
+	}
 	
 	/**
 	 * Convert a BIRT text alignment string into a POI CellStyle constant.
@@ -881,6 +918,29 @@ public abstract class StyleManagerUtils {
 	public abstract void prepareMarginDimensions(Sheet sheet, IPageContent page);
 	
 
+	/**
+	 * Check whether any of the borders of a style would be drawn by applyBordersToArea.
+	 * @param borderStyle
+	 * The BIRT border style.
+	 * @return
+	 * true if at least one border has a style, a width and a colour.
+	 */
+	public boolean hasBorders( BirtStyle borderStyle ) {
+		return hasBorder( borderStyle, StyleConstants.STYLE_BORDER_BOTTOM_STYLE, StyleConstants.STYLE_BORDER_BOTTOM_WIDTH, StyleConstants.STYLE_BORDER_BOTTOM_COLOR )
+				|| hasBorder( borderStyle, StyleConstants.STYLE_BORDER_LEFT_STYLE, StyleConstants.STYLE_BORDER_LEFT_WIDTH, StyleConstants.STYLE_BORDER_LEFT_COLOR )
+				|| hasBorder( borderStyle, StyleConstants.STYLE_BORDER_RIGHT_STYLE, StyleConstants.STYLE_BORDER_RIGHT_WIDTH, StyleConstants.STYLE_BORDER_RIGHT_COLOR )
+				|| hasBorder( borderStyle, StyleConstants.STYLE_BORDER_TOP_STYLE, StyleConstants.STYLE_BORDER_TOP_WIDTH, StyleConstants.STYLE_BORDER_TOP_COLOR );
+	}
+	
+	private boolean hasBorder( BirtStyle borderStyle, int styleProp, int widthProp, int colourProp ) {
+		CSSValue style = borderStyle.getProperty( styleProp );
+		CSSValue width = borderStyle.getProperty( widthProp );
+		CSSValue colour = borderStyle.getProperty( colourProp );
+		return ( style != null ) && ! CSSConstants.CSS_NONE_VALUE.equals( style.getCssText() )
+				&& ( width != null ) && ! "0".equals( width.getCssText() )
+				&& ( colour != null ) && ! CSSConstants.CSS_TRANSPARENT_VALUE.equals( colour.getCssText() );
+	}
+	
 	/**
 	 * Place a border around a region on the current sheet.
 	 * This is used to apply borders to entire rows or entire tables.
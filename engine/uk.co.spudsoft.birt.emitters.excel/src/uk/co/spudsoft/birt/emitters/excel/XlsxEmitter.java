@@ -19,6 +19,7 @@ import java.io.IOException;
 import java.io.InputStream;
 
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 /**
@@ -52,4 +53,18 @@ public class XlsxEmitter extends ExcelEmitter {
 		}
 	}
 
+	protected Workbook createStreamingWorkbook( Workbook wb, int rowWindow ) {
+		// Rows are written out by HandlerState.flushRows, rows that are still to be revisited must stay in memory.
+		// Temporary files are compressed, they can be much larger than the final output 
+		return new SXSSFWorkbook( (XSSFWorkbook)wb, -1, true );
+	}
+
+	protected void disposeWorkbook( Workbook wb ) {
+		if( wb instanceof SXSSFWorkbook ) {
+			if( ! ((SXSSFWorkbook)wb).dispose() ) {
+				log.debug( "Failed to delete all the temporary files of the streaming workbook" );
+			}
+		}
+	}
+
 }
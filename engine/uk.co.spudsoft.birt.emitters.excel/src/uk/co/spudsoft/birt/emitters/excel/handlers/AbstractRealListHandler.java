@@ -32,6 +32,8 @@ public class AbstractRealListHandler extends AbstractHandler implements NestedTa
 
 	protected int startRow;
 	protected int startCol;
+	// The rows of a list with borders are kept in memory until the borders have been applied
+	private boolean rowsPinned;
 	
 	private IListGroupContent currentGroup;
 	private IListBandContent currentBand;
@@ -84,6 +86,10 @@ public class AbstractRealListHandler extends AbstractHandler implements NestedTa
 		startRow = state.rowNum;
 		startCol = state.colNum;
 		log.debug( "List started at [", startRow, ",", startCol, "]" );
+		rowsPinned = state.getSmu().hasBorders( new BirtStyle( list ) );
+		if( rowsPinned ) {
+			state.pinRows( startRow );
+		}
 	}
 	
 	@Override
@@ -104,6 +110,10 @@ public class AbstractRealListHandler extends AbstractHandler implements NestedTa
 		}
 		
 		state.getSmu().applyBordersToArea( state.getSm(), state.currentSheet, colStart, colEnd, startRow, endRow, new BirtStyle( list ) );
+		if( rowsPinned ) {
+			state.unpinRows( startRow );
+			rowsPinned = false;
+		}
 		
 		if( borderDefn != null ) {
 			state.removeBorderOverload(borderDefn);
@@ -144,6 +154,7 @@ public class AbstractRealListHandler extends AbstractHandler implements NestedTa
 		state.colNum = startCol;
 
 		currentBand = null;
+		state.flushRows();
 	}
 
 	@Override
@@ -53,6 +53,8 @@ public abstract class AbstractRealTableRowHandler extends AbstractHandler {
 		state.colNum = this.startCol;
 		birtRowStartedAtPoiRow = state.rowNum;
 		birtRowStartedAtPoiCol = state.colNum;
+		// Nested tables in this row extend the rows it started on, so they must not be streamed out yet
+		state.pinRows( birtRowStartedAtPoiRow );
 		resumeRow(state);
 	}
 
@@ -67,6 +69,9 @@ public abstract class AbstractRealTableRowHandler extends AbstractHandler {
 			state.currentSheet.setRowBreak( state.rowNum - 1 );
 		}
 		
+		state.unpinRows( birtRowStartedAtPoiRow );
+		state.flushRows();
+
 		state.setHandler(parent);		
 	}
 	
@@ -65,6 +65,7 @@ public class NestedTableHandler extends AbstractRealTableHandler {
 		--state.colNum;
 		topLeft = new Coordinate(state.rowNum, state.colNum);
 		log.debug( "startTable called with topLeft = [", topLeft.getRow(), ", ", topLeft.getCol(), "]" );
+		state.pinRows( topLeft.getRow() );
 		super.startTable(state, table);
 		if( ( state.sheetName == null ) || state.sheetName.isEmpty() ) {
 			String name = table.getName();
@@ -112,6 +113,7 @@ public class NestedTableHandler extends AbstractRealTableHandler {
 		if( bottomRight.getRow() < topLeft.getRow() + parentRowSpan - 1 ) {
 			state.getSmu().extendRows( state, topLeft.getRow(), topLeft.getCol(), topLeft.getRow() + parentRowSpan, bottomRight.getCol() );
 		}
+		state.unpinRows( topLeft.getRow() );
 
 		state.setHandler(parent);
 	}